@@ -16,6 +16,7 @@
  */
 package org.apache.nifi.components;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.nifi.controller.ControllerService;
@@ -324,6 +325,36 @@ public interface PropertyValue {
      */
     PropertyValue evaluateAttributeExpressions(FlowFile flowFile, AttributeValueDecorator decorator) throws ProcessException;
 
+    /**
+     * <p>
+     * Evaluates the Expression Language of this Property Value against each of the given FlowFiles. The value
+     * that is stored at index <code>i</code> of the returned array is the same value that would be returned by
+     * calling <code>evaluateAttributeExpressions(flowFiles.get(i)).getValue()</code>, but implementations may
+     * avoid creating a new evaluation context and PropertyValue for each FlowFile. This is intended for
+     * Processors that evaluate the same property against many FlowFiles in a single invocation of onTrigger.
+     * </p>
+     *
+     * @param flowFiles the FlowFiles to evaluate the Expression Language against
+     * @param results an array to store the results in. If <code>null</code> or shorter than the List of FlowFiles,
+     * a new array is created. The array returned by a previous call may be provided so that it is reused.
+     *
+     * @return the array holding the evaluated values, whose first <code>flowFiles.size()</code> elements
+     * correspond to the given FlowFiles
+     *
+     * @throws ProcessException if the Expression cannot be compiled or
+     * evaluating the Expression against any of the FlowFiles causes an
+     * Exception to be thrown
+     */
+    default String[] evaluateAttributeExpressions(List<FlowFile> flowFiles, String[] results) throws ProcessException {
+        final int count = flowFiles.size();
+        final String[] evaluated = (results == null || results.length < count) ? new String[count] : results;
+        for (int i = 0; i < count; i++) {
+            evaluated[i] = evaluateAttributeExpressions(flowFiles.get(i)).getValue();
+        }
+
+        return evaluated;
+    }
+
     /**
      * <p>
      * Indicates whether the value of the property uses Expression Language.
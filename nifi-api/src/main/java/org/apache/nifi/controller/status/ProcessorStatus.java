@@ -39,6 +39,7 @@ public class ProcessorStatus implements Cloneable {
     private long bytesWritten;
     private int invocations;
     private long processingNanos;
+    private long bytesAllocated;
     private int flowFilesRemoved;
     private long averageLineageDuration;
     private int activeThreadCount;
@@ -161,6 +162,14 @@ public class ProcessorStatus implements Cloneable {
         this.processingNanos = processingNanos;
     }
 
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public void setBytesAllocated(final long bytesAllocated) {
+        this.bytesAllocated = bytesAllocated;
+    }
+
     public long getAverageLineageDuration(final TimeUnit timeUnit) {
         return TimeUnit.MILLISECONDS.convert(averageLineageDuration, timeUnit);
     }
@@ -261,6 +270,7 @@ public class ProcessorStatus implements Cloneable {
         clonedObj.outputBytes = outputBytes;
         clonedObj.outputCount = outputCount;
         clonedObj.processingNanos = processingNanos;
+        clonedObj.bytesAllocated = bytesAllocated;
         clonedObj.averageLineageDuration = averageLineageDuration;
         clonedObj.flowFilesRemoved = flowFilesRemoved;
         clonedObj.runStatus = runStatus;
@@ -301,6 +311,8 @@ public class ProcessorStatus implements Cloneable {
         builder.append(invocations);
         builder.append(", processingNanos=");
         builder.append(processingNanos);
+        builder.append(", bytesAllocated=");
+        builder.append(bytesAllocated);
         builder.append(", activeThreadCount=");
         builder.append(activeThreadCount);
         builder.append(", terminatedThreadCount=");
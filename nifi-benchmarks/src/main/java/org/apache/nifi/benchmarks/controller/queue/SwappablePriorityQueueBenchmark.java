@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.controller.queue;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.queue.SwappablePriorityQueue;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.StandardFlowFileRecord;
+import org.apache.nifi.events.EventReporter;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures put/poll/acknowledge throughput of the SwappablePriorityQueue that backs every FlowFile Queue, with several threads
+ * contending for the queue's lock. The queue is kept well below its swap threshold so that only in-memory operations are measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class SwappablePriorityQueueBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class QueueState {
+        SwappablePriorityQueue queue;
+
+        @Setup
+        public void setup() {
+            final FlowFileQueue flowFileQueue = Mockito.mock(FlowFileQueue.class, Mockito.withSettings().stubOnly());
+            Mockito.when(flowFileQueue.getIdentifier()).thenReturn("benchmark-queue");
+            final FlowFileSwapManager swapManager = Mockito.mock(FlowFileSwapManager.class, Mockito.withSettings().stubOnly());
+
+            queue = new SwappablePriorityQueue(swapManager, 1_000_000, EventReporter.NO_OP, flowFileQueue, (flowFiles, requestor) -> new QueueSize(0, 0L), null);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final List<FlowFileRecord> batch = new ArrayList<>(BATCH_SIZE);
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        FlowFileRecord flowFile;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(createFlowFile(i));
+            }
+
+            flowFile = batch.get(0);
+        }
+
+        private FlowFileRecord createFlowFile(final long id) {
+            return new StandardFlowFileRecord.Builder()
+                .id(id)
+                .entryDate(System.currentTimeMillis())
+                .size(1024L)
+                .addAttribute("uuid", UUID.randomUUID().toString())
+                .addAttribute("filename", "file-" + id)
+                .build();
+        }
+    }
+
+    @Benchmark
+    public void putPollAcknowledge(final QueueState queueState, final ThreadState threadState, final Blackhole blackhole) {
+        final SwappablePriorityQueue queue = queueState.queue;
+        queue.put(threadState.flowFile);
+
+        final FlowFileRecord polled = queue.poll(threadState.expired, 0L);
+        if (polled != null) {
+            queue.acknowledge(polled);
+        }
+
+        blackhole.consume(polled);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void putAllPollBatchAcknowledge(final QueueState queueState, final ThreadState threadState, final Blackhole blackhole) {
+        final SwappablePriorityQueue queue = queueState.queue;
+        queue.putAll(threadState.batch);
+
+        final List<FlowFileRecord> polled = queue.poll(BATCH_SIZE, threadState.expired, 0L);
+        queue.acknowledge(polled);
+
+        blackhole.consume(polled);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.controller.repository;
+
+import org.apache.nifi.controller.repository.FileSystemRepository;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.util.NiFiProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and reading small Content Claims with the FileSystemRepository. Archiving is disabled, and a new repository
+ * is created for each iteration so that content written by earlier iterations does not affect later ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileSystemRepositoryBenchmark {
+    private static final int READ_CLAIM_COUNT = 1000;
+
+    @Param({"128", "4096"})
+    private int contentSize;
+
+    private File repositoryDirectory;
+    private FileSystemRepository repository;
+    private byte[] content;
+    private byte[] readBuffer;
+    private ContentClaim[] readClaims;
+    private int readIndex;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        repositoryDirectory = Files.createTempDirectory("nifi-benchmark-content").toFile();
+
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(NiFiProperties.REPOSITORY_CONTENT_PREFIX + "default", repositoryDirectory.getAbsolutePath());
+        properties.put(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "false");
+        properties.put(NiFiProperties.MAX_APPENDABLE_CLAIM_SIZE, NiFiProperties.DEFAULT_MAX_APPENDABLE_CLAIM_SIZE);
+        properties.put(NiFiProperties.MAX_FLOWFILES_PER_CLAIM, String.valueOf(NiFiProperties.DEFAULT_MAX_FLOWFILES_PER_CLAIM));
+        final NiFiProperties nifiProperties = NiFiProperties.createBasicNiFiProperties("", properties);
+
+        repository = new FileSystemRepository(nifiProperties);
+        repository.initialize(new StandardResourceClaimManager());
+
+        content = new byte[contentSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        readBuffer = new byte[8192];
+
+        readClaims = new ContentClaim[READ_CLAIM_COUNT];
+        for (int i = 0; i < READ_CLAIM_COUNT; i++) {
+            readClaims[i] = write();
+        }
+        readIndex = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        repository.shutdown();
+        deleteRecursively(repositoryDirectory);
+    }
+
+    @Benchmark
+    public ContentClaim write() throws IOException {
+        final ContentClaim claim = repository.create(false);
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(content);
+        }
+
+        return claim;
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        final ContentClaim claim = readClaims[readIndex++ % READ_CLAIM_COUNT];
+
+        long total = 0L;
+        try (final InputStream in = repository.read(claim)) {
+            int len;
+            while ((len = in.read(readBuffer)) > 0) {
+                total += len;
+            }
+        }
+
+        return total;
+    }
+
+    private void deleteRecursively(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursively(child);
+            }
+        }
+
+        file.delete();
+    }
+}
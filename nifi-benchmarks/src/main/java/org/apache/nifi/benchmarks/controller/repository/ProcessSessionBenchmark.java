@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.controller.repository;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.connectable.ConnectableType;
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.ProcessScheduler;
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.controller.queue.NopConnectionEventListener;
+import org.apache.nifi.controller.queue.StandardFlowFileQueue;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.StandardCounterRepository;
+import org.apache.nifi.controller.repository.StandardProcessSession;
+import org.apache.nifi.controller.repository.StandardRepositoryContext;
+import org.apache.nifi.controller.repository.VolatileContentRepository;
+import org.apache.nifi.controller.repository.VolatileFlowFileRepository;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.controller.repository.metrics.RingBufferEventRepository;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.groups.ProcessGroup;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.provenance.VolatileProvenanceRepository;
+import org.apache.nifi.util.NiFiProperties;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the cost of the Process Session lifecycle: creating a FlowFile, writing a small amount of content, updating attributes,
+ * transferring the FlowFile and committing the session. Volatile repositories are used so that the session itself, rather than disk I/O,
+ * is what is measured. The Connectable and Connection are stubbed with stub-only mocks, which add a small but constant overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessSessionBenchmark {
+    private static final Relationship REL_SUCCESS = new Relationship.Builder().name("success").build();
+    private static final Relationship REL_TERMINATED = new Relationship.Builder().name("terminated").build();
+
+    @Param({"0", "1024"})
+    private int contentSize;
+
+    private VolatileContentRepository contentRepository;
+    private VolatileProvenanceRepository provenanceRepository;
+    private StandardRepositoryContext context;
+    private byte[] content;
+
+    @Setup
+    public void setup() throws IOException {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(VolatileContentRepository.MAX_SIZE_PROPERTY, "512 MB");
+        final NiFiProperties nifiProperties = NiFiProperties.createBasicNiFiProperties("", properties);
+
+        final ResourceClaimManager claimManager = new StandardResourceClaimManager();
+        contentRepository = new VolatileContentRepository(nifiProperties);
+        contentRepository.initialize(claimManager);
+
+        final VolatileFlowFileRepository flowFileRepository = new VolatileFlowFileRepository();
+        flowFileRepository.initialize(claimManager);
+
+        provenanceRepository = new VolatileProvenanceRepository(10_000, null, null);
+
+        final Connectable connectable = Mockito.mock(Connectable.class, Mockito.withSettings().stubOnly());
+        final ProcessGroup processGroup = Mockito.mock(ProcessGroup.class, Mockito.withSettings().stubOnly());
+        Mockito.when(processGroup.getIdentifier()).thenReturn("benchmark-group");
+
+        final FlowFileSwapManager swapManager = Mockito.mock(FlowFileSwapManager.class, Mockito.withSettings().stubOnly());
+        final ProcessScheduler scheduler = Mockito.mock(ProcessScheduler.class, Mockito.withSettings().stubOnly());
+        final FlowFileQueue queue = new StandardFlowFileQueue("benchmark-connection", new NopConnectionEventListener(), flowFileRepository, provenanceRepository,
+            claimManager, scheduler, swapManager, EventReporter.NO_OP, 20_000, 0L, "0 B");
+
+        final Connection connection = Mockito.mock(Connection.class, Mockito.withSettings().stubOnly());
+        Mockito.when(connection.getIdentifier()).thenReturn("benchmark-connection");
+        Mockito.when(connection.getFlowFileQueue()).thenReturn(queue);
+        Mockito.when(connection.getSource()).thenReturn(connectable);
+        Mockito.when(connection.getDestination()).thenReturn(connectable);
+        Mockito.when(connection.poll(Mockito.any(Set.class))).thenAnswer((Answer<FlowFile>) invocation -> queue.poll(invocation.getArgument(0)));
+
+        final Set<Connection> connections = Collections.singleton(connection);
+        Mockito.when(connectable.getIdentifier()).thenReturn("benchmark-component");
+        Mockito.when(connectable.getConnectableType()).thenReturn(ConnectableType.INPUT_PORT);
+        Mockito.when(connectable.getComponentType()).thenReturn("Benchmark");
+        Mockito.when(connectable.getProcessGroup()).thenReturn(processGroup);
+        Mockito.when(connectable.hasIncomingConnection()).thenReturn(true);
+        Mockito.when(connectable.getIncomingConnections()).thenReturn(Collections.singletonList(connection));
+        Mockito.when(connectable.getConnections()).thenReturn(connections);
+        Mockito.when(connectable.getConnections(REL_SUCCESS)).thenReturn(connections);
+        Mockito.when(connectable.getConnections(REL_TERMINATED)).thenReturn(new HashSet<>());
+        Mockito.when(connectable.isAutoTerminated(REL_TERMINATED)).thenReturn(true);
+
+        context = new StandardRepositoryContext(connectable, new AtomicLong(0L), contentRepository, flowFileRepository, new RingBufferEventRepository(1),
+            new StandardCounterRepository(), provenanceRepository, null);
+
+        content = new byte[contentSize];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        contentRepository.shutdown();
+        provenanceRepository.close();
+    }
+
+    @Benchmark
+    public FlowFile createTransferCommit() {
+        final StandardProcessSession session = new StandardProcessSession(context, () -> false);
+        FlowFile flowFile = session.create();
+        flowFile = session.putAttribute(flowFile, "benchmark.attribute", "value");
+        if (content.length > 0) {
+            flowFile = session.write(flowFile, out -> out.write(content));
+        }
+
+        session.transfer(flowFile, REL_TERMINATED);
+        session.commit();
+        return flowFile;
+    }
+
+    @Benchmark
+    public FlowFile createTransferCommitThenConsume() {
+        final StandardProcessSession producer = new StandardProcessSession(context, () -> false);
+        FlowFile created = producer.create();
+        created = producer.putAttribute(created, "benchmark.attribute", "value");
+        if (content.length > 0) {
+            created = producer.write(created, out -> out.write(content));
+        }
+
+        producer.transfer(created, REL_SUCCESS);
+        producer.commit();
+
+        final StandardProcessSession consumer = new StandardProcessSession(context, () -> false);
+        FlowFile consumed = consumer.get();
+        consumed = consumer.putAttribute(consumed, "benchmark.consumed", "true");
+        consumer.remove(consumed);
+        consumer.commit();
+        return consumed;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.benchmarks.distributed.cache;
+
+import org.apache.nifi.distributed.cache.server.EvictionPolicy;
+import org.apache.nifi.distributed.cache.server.map.ConcurrentMapCache;
+import org.apache.nifi.distributed.cache.server.map.MapCache;
+import org.apache.nifi.distributed.cache.server.map.SimpleMapCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the MapCache implementations that back DistributedMapCacheServer, for an increasing number of
+ * concurrent clients. Each operation is a get (50%), putIfAbsent (30%) or put (20%) of a random key, drawn from a key space
+ * twice the size of the cache so that the cache is kept full and updates regularly cause evictions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MapCacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        @Param({"SimpleMapCache", "ConcurrentMapCache"})
+        private String implementation;
+
+        @Param({"LRU", "LFU"})
+        private EvictionPolicy evictionPolicy;
+
+        @Param({"10000"})
+        private int maxSize;
+
+        private MapCache cache;
+        private ByteBuffer[] keys;
+        private ByteBuffer value;
+
+        @Setup
+        public void setup() throws IOException {
+            if (implementation.equals("ConcurrentMapCache")) {
+                cache = new ConcurrentMapCache("benchmark", maxSize, evictionPolicy);
+            } else {
+                cache = new SimpleMapCache("benchmark", maxSize, evictionPolicy);
+            }
+
+            keys = new ByteBuffer[maxSize * 2];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = ByteBuffer.wrap(("benchmark-key-" + i).getBytes(StandardCharsets.UTF_8));
+            }
+
+            value = ByteBuffer.wrap(new byte[128]);
+            for (int i = 0; i < maxSize; i++) {
+                cache.put(keys[i], value);
+            }
+        }
+
+        Object operate(final SplittableRandom random) throws IOException {
+            final ByteBuffer key = keys[random.nextInt(keys.length)];
+            final int operation = random.nextInt(100);
+            if (operation < 50) {
+                return cache.get(key);
+            } else if (operation < 80) {
+                return cache.putIfAbsent(key, value);
+            } else {
+                return cache.put(key, value);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object clients01(final CacheState cacheState, final ClientState clientState) throws IOException {
+        return cacheState.operate(clientState.random);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object clients04(final CacheState cacheState, final ClientState clientState) throws IOException {
+        return cacheState.operate(clientState.random);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object clients16(final CacheState cacheState, final ClientState clientState) throws IOException {
+        return cacheState.operate(clientState.random);
+    }
+}
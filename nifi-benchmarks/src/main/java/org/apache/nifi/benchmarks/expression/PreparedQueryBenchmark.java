@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.expression;
+
+import org.apache.nifi.attribute.expression.language.PreparedQuery;
+import org.apache.nifi.attribute.expression.language.Query;
+import org.apache.nifi.attribute.expression.language.StandardEvaluationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluation of Expression Language through StandardPreparedQuery, both for a query that has already been prepared
+ * and for preparing the query on each evaluation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class PreparedQueryBenchmark {
+
+    @Param({
+        "${filename}",
+        "prefix-${filename}-${uuid}-suffix",
+        "${filename:toUpper():substringBefore('.'):append('-copy')}",
+        "${fileSize:toNumber():gt(1000):and(${mime.type:equals('application/json')})}",
+        "${literal('a,b,c'):replaceAll(',', ';'):length()}"
+    })
+    private String expression;
+
+    private PreparedQuery preparedQuery;
+    private StandardEvaluationContext evaluationContext;
+
+    @Setup
+    public void setup() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "benchmark-data.json");
+        attributes.put("uuid", "6e8a3e2c-4bd4-4c29-8d4b-3b0bb28c3d9f");
+        attributes.put("fileSize", "4096");
+        attributes.put("mime.type", "application/json");
+        attributes.put("path", "./");
+
+        evaluationContext = new StandardEvaluationContext(attributes);
+        preparedQuery = Query.prepare(expression);
+    }
+
+    @Benchmark
+    public String evaluatePrepared() {
+        return preparedQuery.evaluateExpressions(evaluationContext, null);
+    }
+
+    @Benchmark
+    public String prepareAndEvaluate() {
+        return Query.prepare(expression).evaluateExpressions(evaluationContext, null);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.record;
+
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.serialization.record.type.RecordDataType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schemas and records that are shared by the record-oriented benchmarks. The nested schema contains a child record and an array
+ * of strings; the flat schema contains only scalar fields so that it can also be used with CSV.
+ */
+public class BenchmarkRecords {
+    public static final int RECORD_COUNT = 1000;
+
+    public static RecordSchema createFlatSchema() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("id", RecordFieldType.INT.getDataType()));
+        fields.add(new RecordField("name", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("email", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("balance", RecordFieldType.DOUBLE.getDataType()));
+        fields.add(new RecordField("active", RecordFieldType.BOOLEAN.getDataType()));
+        return new SimpleRecordSchema(fields);
+    }
+
+    public static RecordSchema createNestedSchema() {
+        final List<RecordField> addressFields = new ArrayList<>();
+        addressFields.add(new RecordField("street", RecordFieldType.STRING.getDataType()));
+        addressFields.add(new RecordField("city", RecordFieldType.STRING.getDataType()));
+        addressFields.add(new RecordField("zip", RecordFieldType.STRING.getDataType()));
+        final RecordSchema addressSchema = new SimpleRecordSchema(addressFields);
+
+        final List<RecordField> fields = new ArrayList<>(createFlatSchema().getFields());
+        fields.add(new RecordField("address", RecordFieldType.RECORD.getRecordDataType(addressSchema)));
+        fields.add(new RecordField("tags", RecordFieldType.ARRAY.getArrayDataType(RecordFieldType.STRING.getDataType())));
+        return new SimpleRecordSchema(fields);
+    }
+
+    public static List<Record> createRecords(final RecordSchema schema, final int count) {
+        final RecordSchema addressSchema = schema.getField("address")
+            .map(field -> ((RecordDataType) field.getDataType()).getChildSchema())
+            .orElse(null);
+
+        final List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Map<String, Object> values = new HashMap<>();
+            values.put("id", i);
+            values.put("name", "User " + i);
+            values.put("email", "user" + i + "@example.com");
+            values.put("balance", i * 1.5D);
+            values.put("active", i % 2 == 0);
+
+            if (addressSchema != null) {
+                final Map<String, Object> address = new HashMap<>();
+                address.put("street", i + " Main Street");
+                address.put("city", i % 3 == 0 ? "Boston" : "Denver");
+                address.put("zip", String.valueOf(10000 + i));
+                values.put("address", new MapRecord(addressSchema, address));
+                values.put("tags", new Object[] {"tag-" + (i % 10), "group-" + (i % 4)});
+            }
+
+            records.add(new MapRecord(schema, values));
+        }
+
+        return records;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.record;
+
+import org.apache.nifi.json.JsonStreamingRowRecordReader;
+import org.apache.nifi.json.JsonTreeRowRecordReader;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.DataType;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.util.MockComponentLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON Record Reader that reads each object into a tree of JsonNodes with the one that reads the stream of tokens directly into
+ * the fields of each Record. The 'wide' document has many scalar fields, the 'nested' document contains a child record and an array, and the
+ * 'partial' document is the wide document read with a schema that contains only a few of its fields, so that most fields are skipped.
+ * Scores are reported per record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonRecordReaderBenchmark {
+    private static final int WIDE_FIELD_COUNT = 100;
+    private static final int PARTIAL_FIELD_COUNT = 10;
+
+    private final ComponentLog logger = new MockComponentLog("benchmark", this);
+
+    @Param({"wide", "nested", "partial"})
+    private String document;
+
+    private RecordSchema readSchema;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        final RecordSchema writeSchema;
+        final List<Record> records;
+        switch (document) {
+            case "nested":
+                writeSchema = BenchmarkRecords.createNestedSchema();
+                readSchema = writeSchema;
+                records = BenchmarkRecords.createRecords(writeSchema, BenchmarkRecords.RECORD_COUNT);
+                break;
+            case "partial":
+                writeSchema = createWideSchema(WIDE_FIELD_COUNT);
+                readSchema = createWideSchema(PARTIAL_FIELD_COUNT);
+                records = createWideRecords(writeSchema, BenchmarkRecords.RECORD_COUNT);
+                break;
+            case "wide":
+            default:
+                writeSchema = createWideSchema(WIDE_FIELD_COUNT);
+                readSchema = writeSchema;
+                records = createWideRecords(writeSchema, BenchmarkRecords.RECORD_COUNT);
+                break;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordWriterBenchmark.write(RecordWriterBenchmark.createJsonWriter(logger, writeSchema, out), records);
+        json = out.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public void readTree(final Blackhole blackhole) throws IOException, MalformedRecordException {
+        read(new JsonTreeRowRecordReader(new ByteArrayInputStream(json), logger, readSchema, null, null, null), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public void readStreaming(final Blackhole blackhole) throws IOException, MalformedRecordException {
+        read(new JsonStreamingRowRecordReader(new ByteArrayInputStream(json), logger, readSchema, null, null, null), blackhole);
+    }
+
+    private void read(final RecordReader reader, final Blackhole blackhole) throws IOException, MalformedRecordException {
+        try (final RecordReader recordReader = reader) {
+            Record record;
+            while ((record = recordReader.nextRecord()) != null) {
+                blackhole.consume(record);
+            }
+        }
+    }
+
+    private static RecordSchema createWideSchema(final int fieldCount) {
+        final List<RecordField> fields = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            fields.add(new RecordField("field" + i, getWideFieldType(i).getDataType()));
+        }
+        return new SimpleRecordSchema(fields);
+    }
+
+    private static RecordFieldType getWideFieldType(final int index) {
+        switch (index % 4) {
+            case 0:
+                return RecordFieldType.STRING;
+            case 1:
+                return RecordFieldType.INT;
+            case 2:
+                return RecordFieldType.DOUBLE;
+            default:
+                return RecordFieldType.BOOLEAN;
+        }
+    }
+
+    private static List<Record> createWideRecords(final RecordSchema schema, final int count) {
+        final List<Record> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Map<String, Object> values = new HashMap<>();
+            for (int j = 0; j < schema.getFieldCount(); j++) {
+                final RecordField field = schema.getField(j);
+                final DataType dataType = field.getDataType();
+                switch (dataType.getFieldType()) {
+                    case STRING:
+                        values.put(field.getFieldName(), "value " + i + "-" + j);
+                        break;
+                    case INT:
+                        values.put(field.getFieldName(), i * j);
+                        break;
+                    case DOUBLE:
+                        values.put(field.getFieldName(), i * 0.5D + j);
+                        break;
+                    default:
+                        values.put(field.getFieldName(), (i + j) % 2 == 0);
+                        break;
+                }
+            }
+            records.add(new MapRecord(schema, values));
+        }
+        return records;
+    }
+}
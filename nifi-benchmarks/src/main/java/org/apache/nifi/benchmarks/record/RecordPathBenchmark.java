@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.record;
+
+import org.apache.nifi.record.path.RecordPath;
+import org.apache.nifi.serialization.record.Record;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluation of a compiled RecordPath against records with a nested child record and an array field.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordPathBenchmark {
+
+    @Param({
+        "/name",
+        "/address/city",
+        "/tags[0]",
+        "//city",
+        "/address[./city = 'Boston']/zip",
+        "concat(/name, ' <', /email, '>')"
+    })
+    private String path;
+
+    private RecordPath recordPath;
+    private List<Record> records;
+    private int index;
+
+    @Setup
+    public void setup() {
+        recordPath = RecordPath.compile(path);
+        records = BenchmarkRecords.createRecords(BenchmarkRecords.createNestedSchema(), BenchmarkRecords.RECORD_COUNT);
+    }
+
+    @Benchmark
+    public void evaluate(final Blackhole blackhole) {
+        final Record record = records.get(index++ % BenchmarkRecords.RECORD_COUNT);
+        recordPath.evaluate(record).getSelectedFields().forEach(blackhole::consume);
+    }
+}
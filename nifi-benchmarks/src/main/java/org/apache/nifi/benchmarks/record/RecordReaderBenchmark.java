@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.record;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.nifi.avro.AvroReaderWithEmbeddedSchema;
+import org.apache.nifi.avro.AvroTypeUtil;
+import org.apache.nifi.avro.WriteAvroResultWithSchema;
+import org.apache.nifi.csv.CSVRecordReader;
+import org.apache.nifi.json.JsonTreeRowRecordReader;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.util.MockComponentLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a batch of records with the JSON, CSV and Avro Record Readers. The serialized input is produced once, using the
+ * corresponding writers, before measurement begins. Scores are reported per record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordReaderBenchmark {
+    private final ComponentLog logger = new MockComponentLog("benchmark", this);
+
+    private RecordSchema flatSchema;
+    private RecordSchema nestedSchema;
+    private byte[] json;
+    private byte[] csv;
+    private byte[] avro;
+
+    @Setup
+    public void setup() throws IOException {
+        flatSchema = BenchmarkRecords.createFlatSchema();
+        nestedSchema = BenchmarkRecords.createNestedSchema();
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordWriterBenchmark.write(RecordWriterBenchmark.createJsonWriter(logger, nestedSchema, out), BenchmarkRecords.createRecords(nestedSchema, BenchmarkRecords.RECORD_COUNT));
+        json = out.toByteArray();
+
+        out.reset();
+        RecordWriterBenchmark.write(RecordWriterBenchmark.createCsvWriter(flatSchema, out), BenchmarkRecords.createRecords(flatSchema, BenchmarkRecords.RECORD_COUNT));
+        csv = out.toByteArray();
+
+        out.reset();
+        RecordWriterBenchmark.write(new WriteAvroResultWithSchema(AvroTypeUtil.extractAvroSchema(nestedSchema), out, CodecFactory.nullCodec()),
+            BenchmarkRecords.createRecords(nestedSchema, BenchmarkRecords.RECORD_COUNT));
+        avro = out.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public void readJson(final Blackhole blackhole) throws IOException, MalformedRecordException {
+        read(new JsonTreeRowRecordReader(new ByteArrayInputStream(json), logger, nestedSchema, null, null, null), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public void readCsv(final Blackhole blackhole) throws IOException, MalformedRecordException {
+        read(new CSVRecordReader(new ByteArrayInputStream(csv), logger, flatSchema, CSVFormat.DEFAULT, true, false, null, null, null, "UTF-8"), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public void readAvro(final Blackhole blackhole) throws IOException, MalformedRecordException {
+        read(new AvroReaderWithEmbeddedSchema(new ByteArrayInputStream(avro)), blackhole);
+    }
+
+    private void read(final RecordReader reader, final Blackhole blackhole) throws IOException, MalformedRecordException {
+        try (final RecordReader recordReader = reader) {
+            Record record;
+            while ((record = recordReader.nextRecord()) != null) {
+                blackhole.consume(record);
+            }
+        }
+    }
+}
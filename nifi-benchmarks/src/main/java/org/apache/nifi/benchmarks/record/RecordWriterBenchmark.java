@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.record;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.nifi.avro.AvroTypeUtil;
+import org.apache.nifi.avro.WriteAvroResultWithSchema;
+import org.apache.nifi.csv.WriteCSVResult;
+import org.apache.nifi.json.OutputGrouping;
+import org.apache.nifi.json.WriteJsonResult;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.record.NullSuppression;
+import org.apache.nifi.schema.access.NopSchemaAccessWriter;
+import org.apache.nifi.serialization.RecordSetWriter;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.util.MockComponentLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a batch of records with the JSON, CSV and Avro Record Set Writers. Scores are reported per record.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordWriterBenchmark {
+    private final ComponentLog logger = new MockComponentLog("benchmark", this);
+
+    private RecordSchema flatSchema;
+    private RecordSchema nestedSchema;
+    private Schema avroSchema;
+    private List<Record> flatRecords;
+    private List<Record> nestedRecords;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() {
+        flatSchema = BenchmarkRecords.createFlatSchema();
+        nestedSchema = BenchmarkRecords.createNestedSchema();
+        avroSchema = AvroTypeUtil.extractAvroSchema(nestedSchema);
+        flatRecords = BenchmarkRecords.createRecords(flatSchema, BenchmarkRecords.RECORD_COUNT);
+        nestedRecords = BenchmarkRecords.createRecords(nestedSchema, BenchmarkRecords.RECORD_COUNT);
+        out = new ByteArrayOutputStream(1024 * 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public int writeJson() throws IOException {
+        out.reset();
+        return write(createJsonWriter(logger, nestedSchema, out), nestedRecords);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public int writeCsv() throws IOException {
+        out.reset();
+        return write(createCsvWriter(flatSchema, out), flatRecords);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkRecords.RECORD_COUNT)
+    public int writeAvro() throws IOException {
+        out.reset();
+        return write(new WriteAvroResultWithSchema(avroSchema, out, CodecFactory.nullCodec()), nestedRecords);
+    }
+
+    static RecordSetWriter createJsonWriter(final ComponentLog logger, final RecordSchema schema, final OutputStream out) throws IOException {
+        return new WriteJsonResult(logger, schema, new NopSchemaAccessWriter(), out, false, NullSuppression.NEVER_SUPPRESS, OutputGrouping.OUTPUT_ARRAY, null, null, null);
+    }
+
+    static RecordSetWriter createCsvWriter(final RecordSchema schema, final OutputStream out) throws IOException {
+        return new WriteCSVResult(CSVFormat.DEFAULT, schema, new NopSchemaAccessWriter(), out, null, null, null, true, "UTF-8");
+    }
+
+    static int write(final RecordSetWriter writer, final List<Record> records) throws IOException {
+        try (final RecordSetWriter recordSetWriter = writer) {
+            recordSetWriter.beginRecordSet();
+            for (final Record record : records) {
+                recordSetWriter.write(record);
+            }
+
+            return recordSetWriter.finishRecordSet().getRecordCount();
+        }
+    }
+}
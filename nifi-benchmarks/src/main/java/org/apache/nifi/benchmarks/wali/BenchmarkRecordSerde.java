@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.wali;
+
+import org.wali.SerDe;
+import org.wali.UpdateType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+public class BenchmarkRecordSerde implements SerDe<BenchmarkRecord> {
+
+    @Override
+    public void serializeEdit(final BenchmarkRecord previousRecordState, final BenchmarkRecord newRecordState, final DataOutputStream out) throws IOException {
+        serializeRecord(newRecordState, out);
+    }
+
+    @Override
+    public void serializeRecord(final BenchmarkRecord record, final DataOutputStream out) throws IOException {
+        out.writeLong(record.getId());
+        out.writeUTF(record.getUpdateType().name());
+        out.writeInt(record.getPayload().length);
+        out.write(record.getPayload());
+    }
+
+    @Override
+    public BenchmarkRecord deserializeEdit(final DataInputStream in, final Map<Object, BenchmarkRecord> currentRecordStates, final int version) throws IOException {
+        return deserializeRecord(in, version);
+    }
+
+    @Override
+    public BenchmarkRecord deserializeRecord(final DataInputStream in, final int version) throws IOException {
+        final long id = in.readLong();
+        final UpdateType updateType = UpdateType.valueOf(in.readUTF());
+        final byte[] payload = new byte[in.readInt()];
+        in.readFully(payload);
+        return new BenchmarkRecord(id, updateType, payload);
+    }
+
+    @Override
+    public Object getRecordIdentifier(final BenchmarkRecord record) {
+        return record.getId();
+    }
+
+    @Override
+    public UpdateType getUpdateType(final BenchmarkRecord record) {
+        return record.getUpdateType();
+    }
+
+    @Override
+    public String getLocation(final BenchmarkRecord record) {
+        return null;
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+}
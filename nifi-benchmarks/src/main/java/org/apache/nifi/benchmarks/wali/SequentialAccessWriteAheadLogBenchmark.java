@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.benchmarks.wali;
+
+import org.apache.nifi.wali.SequentialAccessWriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wali.SingletonSerDeFactory;
+import org.wali.UpdateType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SequentialAccessWriteAheadLog.update() with several concurrent writers, with and without a sync to disk for each update.
+ * Records are updated in place so that the snapshot stays a fixed size, and the log is checkpointed before each iteration
+ * so that journal files do not accumulate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SequentialAccessWriteAheadLogBenchmark {
+    private static final int RECORD_COUNT = 10_000;
+
+    @Param({"1", "100"})
+    private int recordsPerUpdate;
+
+    @Param({"false", "true"})
+    private boolean forceSync;
+
+    private File storageDirectory;
+    private SequentialAccessWriteAheadLog<BenchmarkRecord> writeAheadLog;
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        storageDirectory = Files.createTempDirectory("nifi-benchmark-wal").toFile();
+        writeAheadLog = new SequentialAccessWriteAheadLog<>(storageDirectory, new SingletonSerDeFactory<>(new BenchmarkRecordSerde()));
+        writeAheadLog.recoverRecords();
+
+        payload = new byte[256];
+        ThreadLocalRandom.current().nextBytes(payload);
+
+        final List<BenchmarkRecord> records = new ArrayList<>(RECORD_COUNT);
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            records.add(new BenchmarkRecord(i, UpdateType.CREATE, payload));
+        }
+
+        writeAheadLog.update(records, false);
+    }
+
+    @Setup(Level.Iteration)
+    public void checkpoint() throws IOException {
+        writeAheadLog.checkpoint();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writeAheadLog.shutdown();
+        deleteRecursively(storageDirectory);
+    }
+
+    @Benchmark
+    public int update() throws IOException {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final List<BenchmarkRecord> records = new ArrayList<>(recordsPerUpdate);
+        for (int i = 0; i < recordsPerUpdate; i++) {
+            records.add(new BenchmarkRecord(random.nextInt(RECORD_COUNT), UpdateType.UPDATE, payload));
+        }
+
+        return writeAheadLog.update(records, forceSync);
+    }
+
+    private void deleteRecursively(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                deleteRecursively(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.nifi.attribute.expression.language;
 
 import org.antlr.runtime.tree.Tree;
+import org.apache.nifi.attribute.expression.language.compile.EvaluatorCompiler.StringFunction;
 import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
 import org.apache.nifi.expression.AttributeValueDecorator;
 
@@ -28,12 +29,19 @@ public class CompiledExpression implements Expression {
     private final Tree tree;
     private final String expression;
     private final Set<Evaluator<?>> allEvaluators;
+    private final StringFunction compiledFunction;
 
     public CompiledExpression(final String expression, final Evaluator<?> rootEvaluator, final Tree tree, final Set<Evaluator<?>> allEvaluators) {
+        this(expression, rootEvaluator, tree, allEvaluators, null);
+    }
+
+    public CompiledExpression(final String expression, final Evaluator<?> rootEvaluator, final Tree tree, final Set<Evaluator<?>> allEvaluators,
+                              final StringFunction compiledFunction) {
         this.rootEvaluator = rootEvaluator;
         this.tree = tree;
         this.expression = expression;
         this.allEvaluators = allEvaluators;
+        this.compiledFunction = compiledFunction;
     }
 
     public Evaluator<?> getRootEvaluator() {
@@ -52,8 +60,24 @@ public class CompiledExpression implements Expression {
         return allEvaluators;
     }
 
+    /**
+     * @return <code>true</code> if the expression has been compiled and will be evaluated without walking the tree of Evaluators
+     */
+    public boolean isCompiled() {
+        return compiledFunction != null;
+    }
+
     @Override
     public String evaluate(final EvaluationContext evaluationContext, final AttributeValueDecorator decorator) {
-        return Query.evaluateExpression(tree, rootEvaluator, expression, evaluationContext, decorator);
+        if (compiledFunction == null) {
+            return Query.evaluateExpression(tree, rootEvaluator, expression, evaluationContext, decorator);
+        }
+
+        final String value = compiledFunction.evaluate(evaluationContext);
+        if (value == null) {
+            return null;
+        }
+
+        return decorator == null ? value : decorator.decorate(value);
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import org.apache.nifi.attribute.expression.language.evaluation.EvaluatorState;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.parameter.Parameter;
+import org.apache.nifi.parameter.ParameterLookup;
+import org.apache.nifi.registry.VariableRegistry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An EvaluationContext that is reused in order to evaluate the same Expression against many FlowFiles. Values are looked up in the same order
+ * as a {@link ValueLookup} that is created for a single FlowFile: first the FlowFile's properties, then its attributes, then the variable registry.
+ * Because variables and parameters do not depend on the FlowFile, they are resolved only once and then held for the lifetime of the context.
+ * Like {@link StandardEvaluationContext}, this class is not thread-safe.
+ */
+final class FlowFileEvaluationContext implements EvaluationContext {
+    private static final List<String> FLOWFILE_PROPERTY_NAMES = Arrays.asList("flowFileId", "fileSize", "entryDate", "lineageStartDate", "lastQueueDate", "queueDateIndex");
+
+    private final VariableRegistry registry;
+    private final ParameterLookup parameterLookup;
+    private final Map<String, String> stateMap;
+    private final EvaluatorState evaluatorState = new EvaluatorState();
+    private final Map<String, String> variableValues = new HashMap<>();
+    private final Map<String, Parameter> parameters = new HashMap<>();
+    private FlowFile flowFile;
+
+    FlowFileEvaluationContext(final VariableRegistry registry, final ParameterLookup parameterLookup, final Map<String, String> stateMap) {
+        this.registry = registry == null ? VariableRegistry.EMPTY_REGISTRY : registry;
+        this.parameterLookup = parameterLookup == null ? ParameterLookup.EMPTY : parameterLookup;
+        this.stateMap = stateMap;
+    }
+
+    /**
+     * Points this context at the given FlowFile and discards any state that Evaluators stored while evaluating the previous FlowFile
+     *
+     * @param flowFile the FlowFile that the next evaluation is for
+     */
+    void setFlowFile(final FlowFile flowFile) {
+        this.flowFile = flowFile;
+        evaluatorState.clear();
+    }
+
+    @Override
+    public String getExpressionValue(final String name) {
+        if (name == null) {
+            return null;
+        }
+
+        if (flowFile != null) {
+            final String propertyValue = getFlowFileProperty(name);
+            if (propertyValue != null) {
+                return propertyValue;
+            }
+
+            final String attributeValue = flowFile.getAttribute(name);
+            if (attributeValue != null) {
+                return attributeValue;
+            }
+        }
+
+        if (variableValues.containsKey(name)) {
+            return variableValues.get(name);
+        }
+
+        final String variableValue = registry.getVariableValue(name);
+        variableValues.put(name, variableValue);
+        return variableValue;
+    }
+
+    private String getFlowFileProperty(final String name) {
+        switch (name) {
+            case "flowFileId":
+                return String.valueOf(flowFile.getId());
+            case "fileSize":
+                return String.valueOf(flowFile.getSize());
+            case "entryDate":
+                return String.valueOf(flowFile.getEntryDate());
+            case "lineageStartDate":
+                return String.valueOf(flowFile.getLineageStartDate());
+            case "lastQueueDate":
+                return String.valueOf(flowFile.getLastQueueDate());
+            case "queueDateIndex":
+                return String.valueOf(flowFile.getQueueDateIndex());
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Set<String> getExpressionKeys() {
+        final Set<String> keys = new HashSet<>();
+        if (flowFile != null) {
+            keys.addAll(FLOWFILE_PROPERTY_NAMES);
+            keys.addAll(flowFile.getAttributes().keySet());
+        }
+        return keys;
+    }
+
+    @Override
+    public String getState(final String key) {
+        return stateMap == null ? null : stateMap.get(key);
+    }
+
+    @Override
+    public Parameter getParameter(final String parameterName) {
+        if (parameters.containsKey(parameterName)) {
+            return parameters.get(parameterName);
+        }
+
+        final Parameter parameter = parameterLookup.getParameter(parameterName).orElse(null);
+        parameters.put(parameterName, parameter);
+        return parameter;
+    }
+
+    @Override
+    public EvaluatorState getEvaluatorState() {
+        return evaluatorState;
+    }
+}
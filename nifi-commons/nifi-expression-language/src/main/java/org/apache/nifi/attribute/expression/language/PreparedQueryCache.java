@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import org.apache.nifi.attribute.expression.language.exception.AttributeExpressionLanguageParsingException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A size-bounded cache of {@link PreparedQuery} instances, keyed by the text of the query. A PreparedQuery holds no state between evaluations,
+ * so a single instance can be shared by every component that is configured with the same property value, rather than each component holding
+ * its own tree of Evaluators and compiled Patterns.
+ * </p>
+ *
+ * <p>
+ * Lookups do not acquire any lock. When the number of cached queries exceeds the maximum size, the least recently used tenth of the cache
+ * is evicted by whichever thread first notices, so that the cost of eviction is spread over many insertions.
+ * </p>
+ */
+public class PreparedQueryCache {
+    public static final int DEFAULT_MAX_SIZE = 10_000;
+
+    /**
+     * Values longer than this, such as scripts or Jolt specifications, are rarely shared between components and are not cached
+     */
+    static final int MAX_CACHEABLE_LENGTH = 16 * 1024;
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int EXPRESSION_OVERHEAD_BYTES = 32;
+    private static final int EVALUATOR_OVERHEAD_BYTES = 64;
+
+    private final ConcurrentMap<CacheKey, CachedQuery> queries = new ConcurrentHashMap<>();
+    private final AtomicLong accessCounter = new AtomicLong(0L);
+    private final AtomicLong estimatedBytes = new AtomicLong(0L);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Lock evictionLock = new ReentrantLock();
+    private volatile int maxSize;
+
+    public PreparedQueryCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the PreparedQuery for the given text, equivalent to {@link Query#prepare(String)}
+     *
+     * @param query the query to prepare
+     * @return the cached PreparedQuery, or a newly prepared one if the query is not cached
+     */
+    public PreparedQuery prepare(final String query) throws AttributeExpressionLanguageParsingException {
+        return getOrPrepare(query, false);
+    }
+
+    /**
+     * Returns the PreparedQuery for the given text, equivalent to {@link Query#prepareWithParametersPreEvaluated(String)}
+     *
+     * @param query the query to prepare
+     * @return the cached PreparedQuery, or a newly prepared one if the query is not cached
+     */
+    public PreparedQuery prepareWithParametersPreEvaluated(final String query) throws AttributeExpressionLanguageParsingException {
+        return getOrPrepare(query, true);
+    }
+
+    private PreparedQuery getOrPrepare(final String query, final boolean parametersPreEvaluated) {
+        if (query == null || maxSize <= 0 || query.length() > MAX_CACHEABLE_LENGTH) {
+            return prepareQuery(query, parametersPreEvaluated);
+        }
+
+        final CacheKey key = new CacheKey(query, parametersPreEvaluated);
+        final CachedQuery cached = queries.get(key);
+        if (cached != null) {
+            hits.increment();
+            cached.lastAccess = accessCounter.incrementAndGet();
+            return cached.preparedQuery;
+        }
+
+        misses.increment();
+        final PreparedQuery preparedQuery = prepareQuery(query, parametersPreEvaluated);
+        final CachedQuery created = new CachedQuery(preparedQuery, estimateSize(query, preparedQuery), accessCounter.incrementAndGet());
+        final CachedQuery existing = queries.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.preparedQuery;
+        }
+
+        estimatedBytes.addAndGet(created.estimatedBytes);
+        if (queries.size() > maxSize) {
+            evict();
+        }
+
+        return preparedQuery;
+    }
+
+    private PreparedQuery prepareQuery(final String query, final boolean parametersPreEvaluated) {
+        return parametersPreEvaluated ? Query.prepareWithParametersPreEvaluated(query) : Query.prepare(query);
+    }
+
+    private void evict() {
+        // If another thread is already evicting, there is no need to wait for it.
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+
+        try {
+            final int max = maxSize;
+            final int size = queries.size();
+            if (size <= max) {
+                return;
+            }
+
+            final int toEvict = size - max + max / 10;
+            final List<Map.Entry<CacheKey, CachedQuery>> entries = new ArrayList<>(queries.entrySet());
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+
+            for (int i = 0; i < toEvict && i < entries.size(); i++) {
+                final Map.Entry<CacheKey, CachedQuery> entry = entries.get(i);
+                if (queries.remove(entry.getKey(), entry.getValue())) {
+                    estimatedBytes.addAndGet(-entry.getValue().estimatedBytes);
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static long estimateSize(final String query, final PreparedQuery preparedQuery) {
+        long size = ENTRY_OVERHEAD_BYTES + 2L * query.length();
+
+        if (preparedQuery instanceof StandardPreparedQuery) {
+            for (final Expression expression : ((StandardPreparedQuery) preparedQuery).getExpressions()) {
+                size += EXPRESSION_OVERHEAD_BYTES;
+
+                if (expression instanceof CompiledExpression) {
+                    final CompiledExpression compiledExpression = (CompiledExpression) expression;
+                    size += 2L * compiledExpression.getExpression().length();
+                    size += (long) EVALUATOR_OVERHEAD_BYTES * compiledExpression.getAllEvaluators().size();
+                }
+            }
+        }
+
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Updates the maximum number of queries to cache. A value of 0 or less disables the cache and clears any queries that it holds.
+     *
+     * @param maxSize the maximum number of queries to cache
+     */
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+
+        if (maxSize <= 0) {
+            clear();
+        } else if (queries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (final CacheKey key : new ArrayList<>(queries.keySet())) {
+                final CachedQuery removed = queries.remove(key);
+                if (removed != null) {
+                    estimatedBytes.addAndGet(-removed.estimatedBytes);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of queries that are currently cached
+     */
+    public int getSize() {
+        return queries.size();
+    }
+
+    /**
+     * @return a rough estimate of the number of bytes of heap used by the cached queries, based on the length of their text and the number of
+     * Evaluators that make up each query
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of lookups, between 0 and 1, that were served from the cache
+     */
+    public double getHitRate() {
+        final long hitCount = hits.sum();
+        final long total = hitCount + misses.sum();
+        return total == 0 ? 0D : (double) hitCount / total;
+    }
+
+    private static class CachedQuery {
+        private final PreparedQuery preparedQuery;
+        private final long estimatedBytes;
+        private volatile long lastAccess;
+
+        private CachedQuery(final PreparedQuery preparedQuery, final long estimatedBytes, final long lastAccess) {
+            this.preparedQuery = preparedQuery;
+            this.estimatedBytes = estimatedBytes;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class CacheKey {
+        private final String query;
+        private final boolean parametersPreEvaluated;
+
+        private CacheKey(final String query, final boolean parametersPreEvaluated) {
+            this.query = query;
+            this.parametersPreEvaluated = parametersPreEvaluated;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+
+            final CacheKey other = (CacheKey) obj;
+            return parametersPreEvaluated == other.parametersPreEvaluated && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * query.hashCode() + (parametersPreEvaluated ? 1 : 0);
+        }
+    }
+}
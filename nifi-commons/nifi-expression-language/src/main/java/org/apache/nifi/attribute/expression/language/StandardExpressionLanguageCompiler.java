@@ -24,6 +24,7 @@ import org.apache.nifi.parameter.ParameterLookup;
 import org.apache.nifi.registry.VariableRegistry;
 
 public class StandardExpressionLanguageCompiler implements ExpressionLanguageCompiler {
+    private static final PreparedQueryCache preparedQueryCache = new PreparedQueryCache(PreparedQueryCache.DEFAULT_MAX_SIZE);
 
     private final VariableRegistry variableRegistry;
     private final ParameterLookup parameterLookup;
@@ -65,4 +66,32 @@ public class StandardExpressionLanguageCompiler implements ExpressionLanguageCom
             throw new IllegalArgumentException(e);
         }
     }
+
+    /**
+     * @return the cache of PreparedQuery instances that is shared by all components in this JVM
+     */
+    public static PreparedQueryCache getPreparedQueryCache() {
+        return preparedQueryCache;
+    }
+
+    /**
+     * Prepares the given query, as {@link Query#prepare(String)} does, sharing the result with any other caller that prepares the same query
+     *
+     * @param query the query to prepare
+     * @return the PreparedQuery
+     */
+    public static PreparedQuery prepare(final String query) throws AttributeExpressionLanguageParsingException {
+        return preparedQueryCache.prepare(query);
+    }
+
+    /**
+     * Prepares the given query, as {@link Query#prepareWithParametersPreEvaluated(String)} does, sharing the result with any other caller that
+     * prepares the same query
+     *
+     * @param query the query to prepare
+     * @return the PreparedQuery
+     */
+    public static PreparedQuery prepareWithParametersPreEvaluated(final String query) throws AttributeExpressionLanguageParsingException {
+        return preparedQueryCache.prepareWithParametersPreEvaluated(query);
+    }
 }
@@ -67,6 +67,10 @@ public class StandardPreparedQuery implements PreparedQuery {
     }
 
 
+    List<Expression> getExpressions() {
+        return expressions;
+    }
+
     @Override
     public boolean isExpressionLanguagePresent() {
         for (Expression expression : expressions) {
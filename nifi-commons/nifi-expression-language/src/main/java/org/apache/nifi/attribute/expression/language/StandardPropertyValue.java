@@ -27,6 +27,8 @@ import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.registry.VariableRegistry;
 import org.apache.nifi.util.FormatUtils;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -167,6 +169,31 @@ public class StandardPropertyValue implements PropertyValue {
         return new StandardPropertyValue(evaluated, serviceLookup, parameterLookup, new EmptyPreparedQuery(evaluated), null);
     }
 
+    @Override
+    public String[] evaluateAttributeExpressions(final List<FlowFile> flowFiles, final String[] results) throws ProcessException {
+        final int count = flowFiles.size();
+        final String[] evaluated = (results == null || results.length < count) ? new String[count] : results;
+        if (rawValue == null || preparedQuery == null) {
+            Arrays.fill(evaluated, 0, count, rawValue);
+            return evaluated;
+        }
+
+        final FlowFileEvaluationContext evaluationContext = new FlowFileEvaluationContext(variableRegistry, parameterLookup, null);
+
+        // If the value does not reference the FlowFile, it evaluates to the same value for every FlowFile.
+        if (!preparedQuery.isExpressionLanguagePresent()) {
+            Arrays.fill(evaluated, 0, count, preparedQuery.evaluateExpressions(evaluationContext, null));
+            return evaluated;
+        }
+
+        for (int i = 0; i < count; i++) {
+            evaluationContext.setFlowFile(flowFiles.get(i));
+            evaluated[i] = preparedQuery.evaluateExpressions(evaluationContext, null);
+        }
+
+        return evaluated;
+    }
+
     @Override
     public String toString() {
         return rawValue;
@@ -0,0 +1,547 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import org.apache.nifi.attribute.expression.language.EvaluationContext;
+import org.apache.nifi.attribute.expression.language.StandardEvaluationContext;
+import org.apache.nifi.attribute.expression.language.evaluation.Evaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.cast.StringCastEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.AndEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.AppendEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.ContainsEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.EndsWithEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.EqualsEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.EqualsIgnoreCaseEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.FindEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.IsEmptyEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.IsNullEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.MatchesEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.NotEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.NotNullEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.OrEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.PrependEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.ReplaceEmptyEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.ReplaceNullEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.StartsWithEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.SubstringAfterEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.SubstringAfterLastEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.SubstringBeforeEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.SubstringBeforeLastEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.ToLowerEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.ToUpperEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.functions.TrimEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.literals.BooleanLiteralEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.literals.StringLiteralEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.reduce.ReduceEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.selection.AttributeEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.selection.IteratingEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.selection.MappingEvaluator;
+import org.apache.nifi.attribute.expression.language.evaluation.selection.MultiAttributeEvaluator;
+import org.apache.nifi.expression.AttributeExpression.ResultType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * Optional compilation tier for the Expression Language. Rather than walking the tree of {@link Evaluator}s for every evaluation, which
+ * wraps each intermediate value in a new QueryResult object, the tree is translated once into a composition of specialized lambdas that pass
+ * Strings and primitive booleans directly to one another.
+ * </p>
+ *
+ * <p>
+ * Only the most commonly used String and boolean functions are compiled. Any sub-expression that makes use of a function that is not supported
+ * is evaluated by the interpreter, exactly as it would be if compilation were disabled. Expressions that reference multiple attributes, such as
+ * <code>anyAttribute</code> or <code>allMatchingAttributes</code>, are never compiled, as the interpreter evaluates them several times per
+ * evaluation.
+ * </p>
+ *
+ * <p>
+ * Compilation is disabled by default and is enabled for the entire JVM by calling {@link #setEnabled(boolean)}.
+ * </p>
+ */
+public class EvaluatorCompiler {
+    private static final AtomicLong compiledCount = new AtomicLong(0L);
+    private static final AtomicLong partiallyCompiledCount = new AtomicLong(0L);
+    private static final AtomicLong interpretedCount = new AtomicLong(0L);
+    private static volatile boolean enabled = false;
+
+    private int interpretedSubExpressions = 0;
+
+    private EvaluatorCompiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(final boolean enabled) {
+        EvaluatorCompiler.enabled = enabled;
+    }
+
+    /**
+     * @return the number of expressions that have been compiled in their entirety since the JVM was started
+     */
+    public static long getCompiledCount() {
+        return compiledCount.get();
+    }
+
+    /**
+     * @return the number of expressions that have been compiled but that rely on the interpreter for at least one sub-expression
+     */
+    public static long getPartiallyCompiledCount() {
+        return partiallyCompiledCount.get();
+    }
+
+    /**
+     * @return the number of expressions that were not compiled while compilation was enabled and are therefore evaluated by the interpreter
+     */
+    public static long getInterpretedCount() {
+        return interpretedCount.get();
+    }
+
+    /**
+     * Compiles the given Evaluator tree, if compilation is enabled and the root of the tree is supported
+     *
+     * @param rootEvaluator the root of the Evaluator tree
+     * @param allEvaluators all of the Evaluators that make up the tree
+     * @return a function that produces the same String as evaluating the root Evaluator and converting its result to a String,
+     * or <code>null</code> if the tree was not compiled
+     */
+    public static StringFunction compile(final Evaluator<?> rootEvaluator, final Collection<Evaluator<?>> allEvaluators) {
+        if (!enabled) {
+            return null;
+        }
+
+        for (final Evaluator<?> evaluator : allEvaluators) {
+            if (evaluator instanceof MultiAttributeEvaluator || evaluator instanceof IteratingEvaluator || evaluator instanceof MappingEvaluator
+                || evaluator instanceof ReduceEvaluator) {
+                interpretedCount.incrementAndGet();
+                return null;
+            }
+        }
+
+        final EvaluatorCompiler compiler = new EvaluatorCompiler();
+        final StringFunction function = compiler.compileRoot(rootEvaluator);
+        if (function == null) {
+            interpretedCount.incrementAndGet();
+        } else if (compiler.interpretedSubExpressions > 0) {
+            partiallyCompiledCount.incrementAndGet();
+        } else {
+            compiledCount.incrementAndGet();
+        }
+
+        return function;
+    }
+
+    private StringFunction compileRoot(final Evaluator<?> rootEvaluator) {
+        final BooleanFunction booleanFunction = compileBoolean(rootEvaluator);
+        if (booleanFunction != null) {
+            return context -> String.valueOf(booleanFunction.evaluate(context));
+        }
+
+        return compileString(rootEvaluator);
+    }
+
+    /**
+     * Compiles the given String Evaluator, falling back to the interpreter for the Evaluator itself if it is not supported
+     */
+    private StringFunction compileStringOrInterpret(final Evaluator<?> evaluator) {
+        if (evaluator.getResultType() != ResultType.STRING) {
+            return null;
+        }
+
+        final StringFunction function = compileString(evaluator);
+        if (function != null) {
+            return function;
+        }
+
+        interpretedSubExpressions++;
+
+        @SuppressWarnings("unchecked")
+        final Evaluator<String> stringEvaluator = (Evaluator<String>) evaluator;
+        return context -> stringEvaluator.evaluate(context).getValue();
+    }
+
+    private StringFunction compileString(final Evaluator<?> evaluator) {
+        if (evaluator instanceof StringLiteralEvaluator) {
+            final String value = ((StringLiteralEvaluator) evaluator).evaluate(new StandardEvaluationContext(Collections.emptyMap())).getValue();
+            return context -> value;
+        }
+
+        if (evaluator instanceof AttributeEvaluator) {
+            final Evaluator<String> nameEvaluator = ((AttributeEvaluator) evaluator).getNameEvaluator();
+            if (nameEvaluator instanceof StringLiteralEvaluator) {
+                final String attributeName = nameEvaluator.evaluate(new StandardEvaluationContext(Collections.emptyMap())).getValue();
+                return context -> context.getExpressionValue(attributeName);
+            }
+
+            final StringFunction name = compileStringOrInterpret(nameEvaluator);
+            if (name == null) {
+                return null;
+            }
+            return context -> context.getExpressionValue(name.evaluate(context));
+        }
+
+        if (evaluator instanceof StringCastEvaluator) {
+            final Evaluator<?> subjectEvaluator = evaluator.getSubjectEvaluator();
+            final BooleanFunction booleanSubject = compileBoolean(subjectEvaluator);
+            if (booleanSubject != null) {
+                return context -> String.valueOf(booleanSubject.evaluate(context));
+            }
+
+            // Any other type of subject is already a String, or is not something that we compile
+            return compileStringOrInterpret(subjectEvaluator);
+        }
+
+        if (evaluator instanceof ToUpperEvaluator || evaluator instanceof ToLowerEvaluator || evaluator instanceof TrimEvaluator) {
+            final StringFunction subject = compileStringOrInterpret(evaluator.getSubjectEvaluator());
+            if (subject == null) {
+                return null;
+            }
+
+            if (evaluator instanceof ToUpperEvaluator) {
+                return context -> {
+                    final String subjectValue = subject.evaluate(context);
+                    return subjectValue == null ? null : subjectValue.toUpperCase();
+                };
+            } else if (evaluator instanceof ToLowerEvaluator) {
+                return context -> {
+                    final String subjectValue = subject.evaluate(context);
+                    return subjectValue == null ? null : subjectValue.toLowerCase();
+                };
+            } else {
+                return context -> {
+                    final String subjectValue = subject.evaluate(context);
+                    return subjectValue == null ? null : subjectValue.trim();
+                };
+            }
+        }
+
+        if (evaluator instanceof SubstringBeforeEvaluator) {
+            return compileSubstringBefore(evaluator.getSubjectEvaluator(), ((SubstringBeforeEvaluator) evaluator).getBeforeEvaluator());
+        }
+        if (evaluator instanceof SubstringAfterEvaluator) {
+            return compileSubstringAfter(evaluator.getSubjectEvaluator(), ((SubstringAfterEvaluator) evaluator).getAfterEvaluator());
+        }
+        if (evaluator instanceof SubstringBeforeLastEvaluator) {
+            return compileSubstringBeforeLast(evaluator.getSubjectEvaluator(), ((SubstringBeforeLastEvaluator) evaluator).getBeforeEvaluator());
+        }
+        if (evaluator instanceof SubstringAfterLastEvaluator) {
+            return compileSubstringAfterLast(evaluator.getSubjectEvaluator(), ((SubstringAfterLastEvaluator) evaluator).getAfterEvaluator());
+        }
+
+        if (evaluator instanceof AppendEvaluator || evaluator instanceof PrependEvaluator) {
+            final boolean append = evaluator instanceof AppendEvaluator;
+            final StringFunction subject = compileStringOrInterpret(evaluator.getSubjectEvaluator());
+            final StringFunction argument = compileStringOrInterpret(append ? ((AppendEvaluator) evaluator).getAppendEvaluator() : ((PrependEvaluator) evaluator).getPrependEvaluator());
+            if (subject == null || argument == null) {
+                return null;
+            }
+
+            return context -> {
+                final String subjectValue = subject.evaluate(context);
+                final String argumentValue = argument.evaluate(context);
+                final String lhs = subjectValue == null ? "" : subjectValue;
+                final String rhs = argumentValue == null ? "" : argumentValue;
+                return append ? lhs + rhs : rhs + lhs;
+            };
+        }
+
+        if (evaluator instanceof ReplaceNullEvaluator) {
+            final StringFunction subject = compileStringOrInterpret(evaluator.getSubjectEvaluator());
+            final StringFunction replacement = compileStringOrInterpret(((ReplaceNullEvaluator) evaluator).getResultEvaluator());
+            if (subject == null || replacement == null) {
+                return null;
+            }
+
+            return context -> {
+                final String subjectValue = subject.evaluate(context);
+                return subjectValue == null ? replacement.evaluate(context) : subjectValue;
+            };
+        }
+
+        if (evaluator instanceof ReplaceEmptyEvaluator) {
+            final StringFunction subject = compileStringOrInterpret(evaluator.getSubjectEvaluator());
+            final StringFunction replacement = compileStringOrInterpret(((ReplaceEmptyEvaluator) evaluator).getReplacementEvaluator());
+            if (subject == null || replacement == null) {
+                return null;
+            }
+
+            return context -> {
+                final String subjectValue = subject.evaluate(context);
+                return subjectValue == null || subjectValue.trim().isEmpty() ? replacement.evaluate(context) : subjectValue;
+            };
+        }
+
+        return null;
+    }
+
+    private StringFunction compileSubstringBefore(final Evaluator<?> subjectEvaluator, final Evaluator<?> beforeEvaluator) {
+        final StringFunction subject = compileStringOrInterpret(subjectEvaluator);
+        final StringFunction before = compileStringOrInterpret(beforeEvaluator);
+        if (subject == null || before == null) {
+            return null;
+        }
+
+        return context -> {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final String beforeValue = before.evaluate(context);
+            if (beforeValue == null || beforeValue.isEmpty()) {
+                return subjectValue;
+            }
+            final int index = subjectValue.indexOf(beforeValue);
+            return index < 0 ? subjectValue : subjectValue.substring(0, index);
+        };
+    }
+
+    private StringFunction compileSubstringAfter(final Evaluator<?> subjectEvaluator, final Evaluator<?> afterEvaluator) {
+        final StringFunction subject = compileStringOrInterpret(subjectEvaluator);
+        final StringFunction after = compileStringOrInterpret(afterEvaluator);
+        if (subject == null || after == null) {
+            return null;
+        }
+
+        return context -> {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final String afterValue = after.evaluate(context);
+            if (afterValue == null || afterValue.isEmpty()) {
+                return subjectValue;
+            }
+            final int index = subjectValue.indexOf(afterValue);
+            return index < 0 ? subjectValue : subjectValue.substring(index + afterValue.length());
+        };
+    }
+
+    private StringFunction compileSubstringBeforeLast(final Evaluator<?> subjectEvaluator, final Evaluator<?> beforeEvaluator) {
+        final StringFunction subject = compileStringOrInterpret(subjectEvaluator);
+        final StringFunction before = compileStringOrInterpret(beforeEvaluator);
+        if (subject == null || before == null) {
+            return null;
+        }
+
+        return context -> {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final int index = subjectValue.lastIndexOf(before.evaluate(context));
+            return index < 0 ? subjectValue : subjectValue.substring(0, index);
+        };
+    }
+
+    private StringFunction compileSubstringAfterLast(final Evaluator<?> subjectEvaluator, final Evaluator<?> afterEvaluator) {
+        final StringFunction subject = compileStringOrInterpret(subjectEvaluator);
+        final StringFunction after = compileStringOrInterpret(afterEvaluator);
+        if (subject == null || after == null) {
+            return null;
+        }
+
+        return context -> {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return "";
+            }
+            final String afterValue = after.evaluate(context);
+            final int index = subjectValue.lastIndexOf(afterValue);
+            if (index < 0 || index >= subjectValue.length()) {
+                return subjectValue;
+            }
+            return subjectValue.substring(index + afterValue.length());
+        };
+    }
+
+    /**
+     * Compiles the given Boolean Evaluator. Unlike String Evaluators, a Boolean Evaluator that is not supported is never handed back to the
+     * interpreter, because the interpreter may produce a <code>null</code> Boolean, which cannot be represented by a primitive boolean.
+     * Instead, the enclosing Evaluator is not compiled either.
+     */
+    private BooleanFunction compileBoolean(final Evaluator<?> evaluator) {
+        if (evaluator instanceof BooleanLiteralEvaluator) {
+            final boolean value = ((BooleanLiteralEvaluator) evaluator).evaluate(new StandardEvaluationContext(Collections.emptyMap())).getValue();
+            return context -> value;
+        }
+
+        if (evaluator instanceof NotEvaluator) {
+            final BooleanFunction subject = compileBoolean(evaluator.getSubjectEvaluator());
+            if (subject == null) {
+                return null;
+            }
+            return context -> !subject.evaluate(context);
+        }
+
+        if (evaluator instanceof AndEvaluator) {
+            final BooleanFunction subject = compileBoolean(evaluator.getSubjectEvaluator());
+            final BooleanFunction rhs = compileBoolean(((AndEvaluator) evaluator).getRhsEvaluator());
+            if (subject == null || rhs == null) {
+                return null;
+            }
+            return context -> subject.evaluate(context) && rhs.evaluate(context);
+        }
+
+        if (evaluator instanceof OrEvaluator) {
+            final BooleanFunction subject = compileBoolean(evaluator.getSubjectEvaluator());
+            final BooleanFunction rhs = compileBoolean(((OrEvaluator) evaluator).getRhsEvaluator());
+            if (subject == null || rhs == null) {
+                return null;
+            }
+            return context -> subject.evaluate(context) || rhs.evaluate(context);
+        }
+
+        if (evaluator instanceof IsNullEvaluator || evaluator instanceof NotNullEvaluator || evaluator instanceof IsEmptyEvaluator) {
+            final StringFunction subject = compileStringOrInterpret(evaluator.getSubjectEvaluator());
+            if (subject == null) {
+                return null;
+            }
+
+            if (evaluator instanceof IsNullEvaluator) {
+                return context -> subject.evaluate(context) == null;
+            } else if (evaluator instanceof NotNullEvaluator) {
+                return context -> subject.evaluate(context) != null;
+            } else {
+                return context -> {
+                    final String subjectValue = subject.evaluate(context);
+                    return subjectValue == null || subjectValue.trim().isEmpty();
+                };
+            }
+        }
+
+        if (evaluator instanceof EqualsEvaluator || evaluator instanceof EqualsIgnoreCaseEvaluator) {
+            final boolean ignoreCase = evaluator instanceof EqualsIgnoreCaseEvaluator;
+            final Evaluator<?> compareToEvaluator = ignoreCase ? ((EqualsIgnoreCaseEvaluator) evaluator).getCompareToEvaluator() : ((EqualsEvaluator) evaluator).getCompareToEvaluator();
+
+            // Comparisons between different types of values require normalization, which is left to the interpreter
+            final StringFunction subject = compileStringOrInterpret(evaluator.getSubjectEvaluator());
+            final StringFunction compareTo = compileStringOrInterpret(compareToEvaluator);
+            if (subject == null || compareTo == null) {
+                return null;
+            }
+
+            return context -> {
+                final String subjectValue = subject.evaluate(context);
+                if (subjectValue == null) {
+                    return false;
+                }
+                final String compareToValue = compareTo.evaluate(context);
+                if (compareToValue == null) {
+                    return false;
+                }
+                return ignoreCase ? subjectValue.equalsIgnoreCase(compareToValue) : subjectValue.equals(compareToValue);
+            };
+        }
+
+        if (evaluator instanceof StartsWithEvaluator) {
+            return compileSearch(evaluator.getSubjectEvaluator(), ((StartsWithEvaluator) evaluator).getSearchEvaluator(), SearchType.STARTS_WITH);
+        }
+        if (evaluator instanceof EndsWithEvaluator) {
+            return compileSearch(evaluator.getSubjectEvaluator(), ((EndsWithEvaluator) evaluator).getSearchEvaluator(), SearchType.ENDS_WITH);
+        }
+        if (evaluator instanceof ContainsEvaluator) {
+            return compileSearch(evaluator.getSubjectEvaluator(), ((ContainsEvaluator) evaluator).getSearchEvaluator(), SearchType.CONTAINS);
+        }
+
+        if (evaluator instanceof MatchesEvaluator) {
+            return compilePattern(evaluator.getSubjectEvaluator(), ((MatchesEvaluator) evaluator).getSearchEvaluator(), true);
+        }
+        if (evaluator instanceof FindEvaluator) {
+            return compilePattern(evaluator.getSubjectEvaluator(), ((FindEvaluator) evaluator).getSearchEvaluator(), false);
+        }
+
+        return null;
+    }
+
+    private BooleanFunction compileSearch(final Evaluator<?> subjectEvaluator, final Evaluator<?> searchEvaluator, final SearchType searchType) {
+        final StringFunction subject = compileStringOrInterpret(subjectEvaluator);
+        final StringFunction search = compileStringOrInterpret(searchEvaluator);
+        if (subject == null || search == null) {
+            return null;
+        }
+
+        return context -> {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return false;
+            }
+            final String searchValue = search.evaluate(context);
+            if (searchValue == null) {
+                return false;
+            }
+
+            switch (searchType) {
+                case STARTS_WITH:
+                    return subjectValue.startsWith(searchValue);
+                case ENDS_WITH:
+                    return subjectValue.endsWith(searchValue);
+                case CONTAINS:
+                default:
+                    return subjectValue.contains(searchValue);
+            }
+        };
+    }
+
+    /**
+     * Compiles a call to matches() or find(). Only literal patterns are compiled, as a pattern that is computed for each evaluation must
+     * be compiled each time, which dwarfs any cost that this tier could save.
+     */
+    private BooleanFunction compilePattern(final Evaluator<?> subjectEvaluator, final Evaluator<?> searchEvaluator, final boolean matchEntireValue) {
+        if (!(searchEvaluator instanceof StringLiteralEvaluator)) {
+            return null;
+        }
+
+        final StringFunction subject = compileStringOrInterpret(subjectEvaluator);
+        if (subject == null) {
+            return null;
+        }
+
+        final Pattern pattern = Pattern.compile(((StringLiteralEvaluator) searchEvaluator).evaluate(new StandardEvaluationContext(Collections.emptyMap())).getValue());
+        return context -> {
+            final String subjectValue = subject.evaluate(context);
+            if (subjectValue == null) {
+                return false;
+            }
+            return matchEntireValue ? pattern.matcher(subjectValue).matches() : pattern.matcher(subjectValue).find();
+        };
+    }
+
+    private enum SearchType {
+        STARTS_WITH,
+        ENDS_WITH,
+        CONTAINS;
+    }
+
+    /**
+     * A compiled Evaluator that produces a String value, which may be <code>null</code>
+     */
+    public interface StringFunction {
+        String evaluate(EvaluationContext context);
+    }
+
+    /**
+     * A compiled Evaluator that produces a primitive boolean value
+     */
+    public interface BooleanFunction {
+        boolean evaluate(EvaluationContext context);
+    }
+}
@@ -269,7 +269,8 @@ public class ExpressionCompiler {
             final Set<Evaluator<?>> allEvaluators = new HashSet<>(evaluators);
             this.evaluators.clear();
 
-            return new CompiledExpression(expression, evaluator, tree, allEvaluators);
+            final EvaluatorCompiler.StringFunction compiledFunction = EvaluatorCompiler.compile(evaluator, allEvaluators);
+            return new CompiledExpression(expression, evaluator, tree, allEvaluators, compiledFunction);
         } catch (final AttributeExpressionLanguageParsingException e) {
             throw e;
         } catch (final Exception e) {
@@ -50,4 +50,11 @@ public class EvaluatorState {
         statePerEvaluator.put(evaluator, state);
     }
 
+    /**
+     * Discards the state of all Evaluators so that this EvaluatorState can be used for another evaluation
+     */
+    public void clear() {
+        statePerEvaluator.clear();
+    }
+
 }
@@ -74,4 +74,8 @@ public class FindEvaluator extends BooleanEvaluator {
         return subject;
     }
 
+    public Evaluator<String> getSearchEvaluator() {
+        return search;
+    }
+
 }
@@ -73,4 +73,8 @@ public class MatchesEvaluator extends BooleanEvaluator {
         return subject;
     }
 
+    public Evaluator<String> getSearchEvaluator() {
+        return search;
+    }
+
 }
@@ -51,4 +51,8 @@ public class SubstringBeforeLastEvaluator extends StringEvaluator {
         return subject;
     }
 
+    public Evaluator<String> getBeforeEvaluator() {
+        return beforeEvaluator;
+    }
+
 }
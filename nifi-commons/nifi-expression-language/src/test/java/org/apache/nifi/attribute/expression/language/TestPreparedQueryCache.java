@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPreparedQueryCache {
+
+    @Test
+    public void testSameQueryIsShared() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+
+        final PreparedQuery first = cache.prepare("${filename:substringBefore('.'):toUpper()}");
+        final PreparedQuery second = cache.prepare("${filename:substringBefore('.'):toUpper()}");
+        assertSame(first, second);
+        assertEquals("ABC", second.evaluateExpressions(new StandardEvaluationContext(Collections.singletonMap("filename", "abc.txt")), null));
+
+        assertEquals(1, cache.getSize());
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(0.5D, cache.getHitRate(), 0.0001D);
+        assertTrue(cache.getEstimatedBytes() > 0L);
+    }
+
+    @Test
+    public void testParametersPreEvaluatedCachedSeparately() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+
+        final PreparedQuery prepared = cache.prepare("#{param}");
+        final PreparedQuery preEvaluated = cache.prepareWithParametersPreEvaluated("#{param}");
+        assertNotSame(prepared, preEvaluated);
+        assertSame(preEvaluated, cache.prepareWithParametersPreEvaluated("#{param}"));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+
+        final PreparedQuery retained = cache.prepare("${attr0}");
+        for (int i = 1; i <= 10; i++) {
+            cache.prepare("${attr" + i + "}");
+            // keep the first query in use so that it is never the least recently used
+            assertSame(retained, cache.prepare("${attr0}"));
+        }
+
+        assertTrue(cache.getSize() <= 10);
+        assertTrue(cache.getEvictionCount() > 0L);
+        assertSame(retained, cache.prepare("${attr0}"));
+    }
+
+    @Test
+    public void testDisabled() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+        cache.prepare("${attr}");
+        assertEquals(1, cache.getSize());
+
+        cache.setMaxSize(0);
+        assertEquals(0, cache.getSize());
+        assertEquals(0L, cache.getEstimatedBytes());
+        assertNotSame(cache.prepare("${attr}"), cache.prepare("${attr}"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testLongValuesNotCached() {
+        final PreparedQueryCache cache = new PreparedQueryCache(10);
+
+        final StringBuilder sb = new StringBuilder("${attr}");
+        while (sb.length() <= PreparedQueryCache.MAX_CACHEABLE_LENGTH) {
+            sb.append("0123456789");
+        }
+
+        final String value = sb.toString();
+        assertNotSame(cache.prepare(value), cache.prepare(value));
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.attribute.expression.language.compile;
+
+import org.apache.nifi.attribute.expression.language.CompiledExpression;
+import org.apache.nifi.attribute.expression.language.StandardEvaluationContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestEvaluatorCompiler {
+
+    @After
+    public void disableCompilation() {
+        EvaluatorCompiler.setEnabled(false);
+    }
+
+    @Test
+    public void testNotCompiledWhenDisabled() {
+        final long compiled = EvaluatorCompiler.getCompiledCount();
+        final long interpreted = EvaluatorCompiler.getInterpretedCount();
+
+        assertFalse(new ExpressionCompiler().compile("${filename:toUpper()}").isCompiled());
+        assertEquals(compiled, EvaluatorCompiler.getCompiledCount());
+        assertEquals(interpreted, EvaluatorCompiler.getInterpretedCount());
+    }
+
+    @Test
+    public void testCounters() {
+        EvaluatorCompiler.setEnabled(true);
+
+        final long compiled = EvaluatorCompiler.getCompiledCount();
+        final long partiallyCompiled = EvaluatorCompiler.getPartiallyCompiledCount();
+        final long interpreted = EvaluatorCompiler.getInterpretedCount();
+
+        assertTrue(new ExpressionCompiler().compile("${filename:substringBefore('.'):toUpper():equals(${x})}").isCompiled());
+        assertEquals(compiled + 1, EvaluatorCompiler.getCompiledCount());
+
+        assertTrue(new ExpressionCompiler().compile("${filename:replace('a', 'b'):toUpper()}").isCompiled());
+        assertEquals(partiallyCompiled + 1, EvaluatorCompiler.getPartiallyCompiledCount());
+
+        assertFalse(new ExpressionCompiler().compile("${filename:length()}").isCompiled());
+        assertFalse(new ExpressionCompiler().compile("${anyAttribute('a', 'b'):equals('x')}").isCompiled());
+        assertEquals(interpreted + 2, EvaluatorCompiler.getInterpretedCount());
+    }
+
+    @Test
+    public void testNullValues() {
+        EvaluatorCompiler.setEnabled(true);
+
+        final CompiledExpression expression = new ExpressionCompiler().compile("${missing:toUpper()}");
+        assertTrue(expression.isCompiled());
+        assertNull(expression.evaluate(new StandardEvaluationContext(new HashMap<>()), null));
+        assertEquals("true", new ExpressionCompiler().compile("${missing:toUpper():isNull()}").evaluate(new StandardEvaluationContext(new HashMap<>()), null));
+    }
+
+    @Test
+    public void testDecorator() {
+        EvaluatorCompiler.setEnabled(true);
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "file.txt");
+
+        final CompiledExpression expression = new ExpressionCompiler().compile("${filename:substringAfter('.')}");
+        assertTrue(expression.isCompiled());
+        assertEquals("[txt]", expression.evaluate(new StandardEvaluationContext(attributes), value -> "[" + value + "]"));
+    }
+
+    @Test
+    public void testCompiledResultsMatchInterpreter() {
+        final List<String> expressions = Arrays.asList(
+            "${filename}",
+            "${${name}}",
+            "${filename:toUpper()}",
+            "${filename:toLower():trim()}",
+            "${filename:substringBefore('.')}",
+            "${filename:substringBefore('')}",
+            "${filename:substringAfter('.')}",
+            "${filename:substringBeforeLast('.')}",
+            "${filename:substringAfterLast('.')}",
+            "${missing:substringBefore('.')}",
+            "${filename:append('.bak'):prepend('/tmp/')}",
+            "${missing:append(${other})}",
+            "${missing:replaceNull('default')}",
+            "${blank:replaceEmpty(${filename})}",
+            "${filename:substringBefore('.'):toUpper():equals(${x})}",
+            "${filename:equalsIgnoreCase('MY.FILE.TXT')}",
+            "${filename:startsWith('my'):and(${filename:endsWith('.txt')})}",
+            "${filename:contains('file'):not():or(${missing:isNull()})}",
+            "${blank:isEmpty()}",
+            "${filename:notNull()}",
+            "${filename:matches('.*\\.txt')}",
+            "${filename:find('file')}",
+            "${filename:equals(${missing})}",
+            "${missing:startsWith('a')}",
+            "${filename:contains(${missing})}",
+            "${filename:replace('.', '_'):toUpper()}",
+            "${filename:toUpper():length()}",
+            "${filename:length():equals(11)}",
+            "${filename:contains('file'):toString():toUpper()}",
+            "${filename:equals('my.file.txt'):ifElse('yes', 'no')}",
+            "${literal('abc'):toUpper()}",
+            "${'filename'}"
+        );
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "my.file.txt");
+        attributes.put("name", "filename");
+        attributes.put("x", "MY");
+        attributes.put("blank", "   ");
+        attributes.put("other", "value");
+
+        for (final String expression : expressions) {
+            EvaluatorCompiler.setEnabled(false);
+            final String expected = new ExpressionCompiler().compile(expression).evaluate(new StandardEvaluationContext(attributes), null);
+
+            EvaluatorCompiler.setEnabled(true);
+            final String actual = new ExpressionCompiler().compile(expression).evaluate(new StandardEvaluationContext(attributes), null);
+
+            assertEquals(expression, expected, actual);
+        }
+    }
+}
@@ -82,9 +82,14 @@ public abstract class NiFiProperties {
     public static final String TEMPLATE_DIRECTORY = "nifi.templates.directory";
     public static final String ADMINISTRATIVE_YIELD_DURATION = "nifi.administrative.yield.duration";
     public static final String BORED_YIELD_DURATION = "nifi.bored.yield.duration";
+    public static final String TIMER_DRIVEN_SCHEDULING_MODE = "nifi.timer.driven.scheduling.mode";
+    public static final String TIMER_DRIVEN_DISPATCHER_THREADS = "nifi.timer.driven.dispatcher.threads";
+    public static final String TIMER_DRIVEN_MAX_IDLE_DURATION = "nifi.timer.driven.max.idle.duration";
     public static final String PROCESSOR_SCHEDULING_TIMEOUT = "nifi.processor.scheduling.timeout";
     public static final String BACKPRESSURE_COUNT = "nifi.queue.backpressure.count";
     public static final String BACKPRESSURE_SIZE = "nifi.queue.backpressure.size";
+    public static final String EXPRESSION_LANGUAGE_COMPILATION_ENABLED = "nifi.expression.language.compilation.enabled";
+    public static final String EXPRESSION_LANGUAGE_CACHE_SIZE = "nifi.expression.language.cache.size";
 
     // content repository properties
     public static final String REPOSITORY_CONTENT_PREFIX = "nifi.content.repository.directory.";
@@ -96,6 +101,19 @@ public abstract class NiFiProperties {
     public static final String CONTENT_ARCHIVE_BACK_PRESSURE_PERCENTAGE = "nifi.content.repository.archive.backpressure.percentage";
     public static final String CONTENT_ARCHIVE_ENABLED = "nifi.content.repository.archive.enabled";
     public static final String CONTENT_ARCHIVE_CLEANUP_FREQUENCY = "nifi.content.repository.archive.cleanup.frequency";
+    public static final String CONTENT_ARCHIVE_CLEANUP_MODE = "nifi.content.repository.archive.cleanup.mode";
+    public static final String CONTENT_ARCHIVE_CLEANUP_THREADS = "nifi.content.repository.archive.cleanup.threads";
+    public static final String CONTENT_REPOSITORY_WRITE_MODE = "nifi.content.repository.write.mode";
+    public static final String CONTENT_REPOSITORY_WRITE_BUFFER_SIZE = "nifi.content.repository.write.buffer.size";
+    public static final String CONTENT_REPOSITORY_READ_MODE = "nifi.content.repository.read.mode";
+    public static final String CONTENT_REPOSITORY_READ_MAPPED_MAX_SIZE = "nifi.content.repository.read.mapped.max.size";
+    public static final String CONTENT_REPOSITORY_DEDUPLICATION_ENABLED = "nifi.content.repository.deduplication.enabled";
+    public static final String CONTENT_REPOSITORY_DEDUPLICATION_MAX_CONTENT_SIZE = "nifi.content.repository.deduplication.max.content.size";
+    public static final String CONTENT_REPOSITORY_DEDUPLICATION_MAX_ENTRIES = "nifi.content.repository.deduplication.max.entries";
+    public static final String REPOSITORY_CONTENT_TIERED_COLD_PREFIX = "nifi.content.repository.tiered.cold.directory.";
+    public static final String CONTENT_REPOSITORY_TIERED_MIGRATION_AGE = "nifi.content.repository.tiered.migration.age";
+    public static final String CONTENT_REPOSITORY_TIERED_MIGRATION_FREQUENCY = "nifi.content.repository.tiered.migration.frequency";
+    public static final String CONTENT_REPOSITORY_TIERED_HOT_MAX_USAGE_PERCENTAGE = "nifi.content.repository.tiered.hot.max.usage.percentage";
     public static final String CONTENT_VIEWER_URL = "nifi.content.viewer.url";
     public static final String CONTENT_REPOSITORY_ENCRYPTION_KEY = "nifi.content.repository.encryption.key";
     public static final String CONTENT_REPOSITORY_ENCRYPTION_KEY_ID = "nifi.content.repository.encryption.key.id";
@@ -114,6 +132,7 @@ public abstract class NiFiProperties {
     public static final String FLOWFILE_REPOSITORY_ENCRYPTION_KEY_PROVIDER_LOCATION = "nifi.flowfile.repository.encryption.key.provider.location";
     public static final String FLOWFILE_SWAP_MANAGER_IMPLEMENTATION = "nifi.swap.manager.implementation";
     public static final String QUEUE_SWAP_THRESHOLD = "nifi.queue.swap.threshold";
+    public static final String QUEUE_STRIPES = "nifi.queue.stripes";
 
     // provenance properties
     public static final String PROVENANCE_REPO_IMPLEMENTATION_CLASS = "nifi.provenance.repository.implementation";
@@ -126,6 +145,13 @@ public abstract class NiFiProperties {
     public static final String PROVENANCE_QUERY_THREAD_POOL_SIZE = "nifi.provenance.repository.query.threads";
     public static final String PROVENANCE_INDEX_THREAD_POOL_SIZE = "nifi.provenance.repository.index.threads";
     public static final String PROVENANCE_COMPRESS_ON_ROLLOVER = "nifi.provenance.repository.compress.on.rollover";
+    public static final String PROVENANCE_EVENT_FILE_FORMAT = "nifi.provenance.repository.event.file.format";
+    public static final String PROVENANCE_COLUMNAR_CODEC = "nifi.provenance.repository.columnar.codec";
+    public static final String PROVENANCE_INDEX_TYPE = "nifi.provenance.repository.index.type";
+    public static final String PROVENANCE_REGISTRATION_MODE = "nifi.provenance.repository.registration.mode";
+    public static final String PROVENANCE_REGISTRATION_DURABILITY = "nifi.provenance.repository.registration.durability";
+    public static final String PROVENANCE_REGISTRATION_QUEUE_SIZE = "nifi.provenance.repository.registration.queue.size";
+    public static final String PROVENANCE_REGISTRATION_THREADS = "nifi.provenance.repository.registration.threads";
     public static final String PROVENANCE_INDEXED_FIELDS = "nifi.provenance.repository.indexed.fields";
     public static final String PROVENANCE_INDEXED_ATTRIBUTES = "nifi.provenance.repository.indexed.attributes";
     public static final String PROVENANCE_INDEX_SHARD_SIZE = "nifi.provenance.repository.index.shard.size";
@@ -301,12 +327,43 @@ public abstract class NiFiProperties {
     public static final String DEFAULT_FLOWFILE_CHECKPOINT_INTERVAL = "20 secs";
     public static final int DEFAULT_MAX_FLOWFILES_PER_CLAIM = 100;
     public static final String DEFAULT_MAX_APPENDABLE_CLAIM_SIZE = "1 MB";
+    public static final String CONTENT_REPOSITORY_WRITE_MODE_STREAM = "stream";
+    public static final String CONTENT_REPOSITORY_WRITE_MODE_BATCHED = "batched";
+    public static final String DEFAULT_CONTENT_REPOSITORY_WRITE_MODE = CONTENT_REPOSITORY_WRITE_MODE_STREAM;
+    public static final String DEFAULT_CONTENT_REPOSITORY_WRITE_BUFFER_SIZE = "64 KB";
+    public static final String CONTENT_REPOSITORY_READ_MODE_STREAM = "stream";
+    public static final String CONTENT_REPOSITORY_READ_MODE_MAPPED = "mapped";
+    public static final String DEFAULT_CONTENT_REPOSITORY_READ_MODE = CONTENT_REPOSITORY_READ_MODE_STREAM;
+    public static final String DEFAULT_CONTENT_REPOSITORY_READ_MAPPED_MAX_SIZE = "512 MB";
+    public static final boolean DEFAULT_CONTENT_REPOSITORY_DEDUPLICATION_ENABLED = false;
+    public static final String DEFAULT_CONTENT_REPOSITORY_DEDUPLICATION_MAX_CONTENT_SIZE = "1 MB";
+    public static final int DEFAULT_CONTENT_REPOSITORY_DEDUPLICATION_MAX_ENTRIES = 100000;
+    public static final String DEFAULT_CONTENT_REPOSITORY_TIERED_MIGRATION_AGE = "10 mins";
+    public static final String DEFAULT_CONTENT_REPOSITORY_TIERED_MIGRATION_FREQUENCY = "30 secs";
+    public static final String DEFAULT_CONTENT_REPOSITORY_TIERED_HOT_MAX_USAGE_PERCENTAGE = "75%";
+    public static final String CONTENT_ARCHIVE_CLEANUP_MODE_SCAN = "scan";
+    public static final String CONTENT_ARCHIVE_CLEANUP_MODE_INDEXED = "indexed";
+    public static final String DEFAULT_CONTENT_ARCHIVE_CLEANUP_MODE = CONTENT_ARCHIVE_CLEANUP_MODE_SCAN;
+    public static final int DEFAULT_CONTENT_ARCHIVE_CLEANUP_THREADS = 4;
     public static final int DEFAULT_QUEUE_SWAP_THRESHOLD = 20000;
+    public static final int DEFAULT_QUEUE_STRIPES = 1;
     public static final long DEFAULT_BACKPRESSURE_COUNT = 10_000L;
     public static final String DEFAULT_BACKPRESSURE_SIZE = "1 GB";
+    public static final String DEFAULT_EXPRESSION_LANGUAGE_COMPILATION_ENABLED = "false";
+    public static final int DEFAULT_EXPRESSION_LANGUAGE_CACHE_SIZE = 10_000;
     public static final String DEFAULT_ADMINISTRATIVE_YIELD_DURATION = "30 sec";
     public static final String DEFAULT_COMPONENT_STATUS_SNAPSHOT_FREQUENCY = "5 mins";
     public static final String DEFAULT_BORED_YIELD_DURATION = "10 millis";
+    public static final String TIMER_DRIVEN_SCHEDULING_MODE_FIXED_DELAY = "fixed-delay";
+    public static final String TIMER_DRIVEN_SCHEDULING_MODE_EVENT_LOOP = "event-loop";
+    public static final String DEFAULT_TIMER_DRIVEN_SCHEDULING_MODE = TIMER_DRIVEN_SCHEDULING_MODE_FIXED_DELAY;
+    public static final int DEFAULT_TIMER_DRIVEN_DISPATCHER_THREADS = 1;
+    public static final String DEFAULT_TIMER_DRIVEN_MAX_IDLE_DURATION = "1 sec";
+    public static final String DEFAULT_PROVENANCE_EVENT_FILE_FORMAT = "row";
+    public static final String DEFAULT_PROVENANCE_COLUMNAR_CODEC = "deflate";
+    public static final String DEFAULT_PROVENANCE_INDEX_TYPE = "lucene";
+    public static final String DEFAULT_PROVENANCE_REGISTRATION_MODE = "sync";
+    public static final String DEFAULT_PROVENANCE_REGISTRATION_DURABILITY = "write";
     public static final String DEFAULT_ZOOKEEPER_CONNECT_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_SESSION_TIMEOUT = "3 secs";
     public static final String DEFAULT_ZOOKEEPER_ROOT_NODE = "/nifi";
@@ -427,6 +484,23 @@ public abstract class NiFiProperties {
         }
     }
 
+    /**
+     * @return the number of independently locked stripes that each standalone FlowFile Queue is divided into. A value of 1
+     * indicates that queues are not striped.
+     */
+    public int getQueueStripeCount() {
+        final String stripeValue = getProperty(QUEUE_STRIPES);
+        if (stripeValue == null || stripeValue.trim().isEmpty()) {
+            return DEFAULT_QUEUE_STRIPES;
+        }
+
+        try {
+            return Math.max(1, Integer.parseInt(stripeValue.trim()));
+        } catch (final NumberFormatException e) {
+            return DEFAULT_QUEUE_STRIPES;
+        }
+    }
+
     public Integer getIntegerProperty(final String propertyName, final Integer defaultValue) {
         final String value = getProperty(propertyName);
         if (value == null || value.trim().isEmpty()) {
@@ -1339,6 +1413,27 @@ public abstract class NiFiProperties {
         return contentRepositoryPaths;
     }
 
+    /**
+     * Returns the cold tier paths of a tiered content repository. This method returns a
+     * mapping of content repository name to the path of the directory that content from
+     * that content repository is moved to once it is no longer recently written. It simply
+     * returns the values configured. No directories will be created as a result of this
+     * operation.
+     *
+     * @return the name of each content repository that has a cold tier and the path of that tier
+     */
+    public Map<String, Path> getContentRepositoryColdPaths() {
+        final Map<String, Path> coldPaths = new HashMap<>();
+
+        for (String propertyName : getPropertyKeys()) {
+            if (StringUtils.startsWith(propertyName, REPOSITORY_CONTENT_TIERED_COLD_PREFIX)) {
+                final String key = StringUtils.substringAfter(propertyName, REPOSITORY_CONTENT_TIERED_COLD_PREFIX);
+                coldPaths.put(key, Paths.get(getProperty(propertyName)));
+            }
+        }
+        return coldPaths;
+    }
+
     /**
      * Returns the provenance repository paths. This method returns a mapping of
      * file repository name to file repository paths. It simply returns the
@@ -1403,6 +1498,44 @@ public abstract class NiFiProperties {
         return getProperty(BORED_YIELD_DURATION, DEFAULT_BORED_YIELD_DURATION);
     }
 
+    /**
+     * @return the mode used to schedule Timer-Driven components: either {@link #TIMER_DRIVEN_SCHEDULING_MODE_FIXED_DELAY}, which gives each
+     * concurrent task its own periodic task in the Timer-Driven thread pool, or {@link #TIMER_DRIVEN_SCHEDULING_MODE_EVENT_LOOP}, which runs
+     * components only when they are ready to do work
+     */
+    public String getTimerDrivenSchedulingMode() {
+        final String mode = getProperty(TIMER_DRIVEN_SCHEDULING_MODE);
+        if (mode == null || mode.trim().isEmpty()) {
+            return DEFAULT_TIMER_DRIVEN_SCHEDULING_MODE;
+        }
+
+        return mode.trim().toLowerCase();
+    }
+
+    /**
+     * @return the number of threads that dispatch Timer-Driven components to the Timer-Driven thread pool when the event-loop scheduling mode is used
+     */
+    public int getTimerDrivenDispatcherThreadCount() {
+        final String threadValue = getProperty(TIMER_DRIVEN_DISPATCHER_THREADS);
+        if (threadValue == null || threadValue.trim().isEmpty()) {
+            return DEFAULT_TIMER_DRIVEN_DISPATCHER_THREADS;
+        }
+
+        try {
+            return Math.max(1, Integer.parseInt(threadValue.trim()));
+        } catch (final NumberFormatException e) {
+            return DEFAULT_TIMER_DRIVEN_DISPATCHER_THREADS;
+        }
+    }
+
+    /**
+     * @return the longest amount of time that an idle component waits before checking for work on its own, when the event-loop scheduling
+     * mode is used
+     */
+    public String getTimerDrivenMaxIdleDuration() {
+        return getProperty(TIMER_DRIVEN_MAX_IDLE_DURATION, DEFAULT_TIMER_DRIVEN_MAX_IDLE_DURATION);
+    }
+
     public File getStateManagementConfigFile() {
         return new File(getProperty(STATE_MANAGEMENT_CONFIG_FILE, DEFAULT_STATE_MANAGEMENT_CONFIG_FILE));
     }
@@ -1855,6 +1988,31 @@ public abstract class NiFiProperties {
         return getProperty(BACKPRESSURE_SIZE, DEFAULT_BACKPRESSURE_SIZE);
     }
 
+    /**
+     * @return <code>true</code> if Expression Language expressions should be compiled into specialized functions, rather than being
+     * interpreted each time that they are evaluated
+     */
+    public boolean isExpressionLanguageCompilationEnabled() {
+        return Boolean.parseBoolean(getProperty(EXPRESSION_LANGUAGE_COMPILATION_ENABLED, DEFAULT_EXPRESSION_LANGUAGE_COMPILATION_ENABLED).trim());
+    }
+
+    /**
+     * @return the maximum number of prepared Expression Language queries that are cached and shared between components, or 0 if they should
+     * not be cached
+     */
+    public int getExpressionLanguageCacheSize() {
+        final String cacheSize = getProperty(EXPRESSION_LANGUAGE_CACHE_SIZE);
+        if (cacheSize == null || cacheSize.trim().isEmpty()) {
+            return DEFAULT_EXPRESSION_LANGUAGE_CACHE_SIZE;
+        }
+
+        try {
+            return Math.max(0, Integer.parseInt(cacheSize.trim()));
+        } catch (final NumberFormatException e) {
+            return DEFAULT_EXPRESSION_LANGUAGE_CACHE_SIZE;
+        }
+    }
+
     /**
      * Creates an instance of NiFiProperties. This should likely not be called
      * by any classes outside of the NiFi framework but can be useful by the
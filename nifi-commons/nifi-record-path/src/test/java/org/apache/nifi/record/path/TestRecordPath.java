@@ -19,6 +19,7 @@ package org.apache.nifi.record.path;
 
 import org.apache.nifi.record.path.exception.RecordPathException;
 import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.DataType;
 import org.apache.nifi.serialization.record.MapRecord;
 import org.apache.nifi.serialization.record.Record;
@@ -1748,6 +1749,60 @@ public class TestRecordPath {
         assertEquals(Uuid5Util.fromString(input, null), value);
     }
 
+    @Test
+    public void testArrayRecordSameAsMapRecord() {
+        final Map<String, Object> accountValues = new HashMap<>();
+        accountValues.put("id", 1);
+        accountValues.put("balance", 123.45D);
+
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("city", "New York");
+        attributes.put("state", "NY");
+
+        final RecordSchema schema = new SimpleRecordSchema(getDefaultFields());
+        final Map<String, Object> values = new HashMap<>();
+        values.put("id", 48);
+        values.put("name", "John Doe");
+        values.put("attributes", attributes);
+        values.put("mainAccount", new MapRecord(getAccountSchema(), accountValues));
+        values.put("numbers", new Object[] {1, 2, 3});
+        values.put("accounts", new Object[] {new MapRecord(getAccountSchema(), accountValues)});
+        final Record mapRecord = new MapRecord(schema, values);
+
+        final Record arrayAccountRecord = new ArrayRecord(getAccountSchema(), new Object[] {1, 123.45D});
+        final Record arrayRecord = new ArrayRecord(schema, new Object[] {48, "John Doe", new HashMap<>(attributes), arrayAccountRecord, new Object[] {1, 2, 3},
+            new Object[] {new ArrayRecord(getAccountSchema(), new Object[] {1, 123.45D})}});
+
+        final List<String> paths = Arrays.asList("/id", "/name", "/*", "//id", "/mainAccount/balance", "/accounts[0]/balance", "/accounts[*][./balance > 100]/id",
+            "/attributes['city']", "/attributes[*]", "/numbers[1]", "/numbers[0..-1]", "/missing", "/name[contains(., 'Doe')]", "substringAfter(/name, ' ')");
+        for (final String path : paths) {
+            final RecordPath recordPath = RecordPath.compile(path);
+            final List<Object> expected = recordPath.evaluate(mapRecord).getSelectedFields().map(FieldValue::getValue).collect(Collectors.toList());
+            final List<Object> actual = recordPath.evaluate(arrayRecord).getSelectedFields().map(FieldValue::getValue).collect(Collectors.toList());
+            assertEquals(path, expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                if (expected.get(i) instanceof Object[]) {
+                    assertArrayEquals(path, (Object[]) expected.get(i), (Object[]) actual.get(i));
+                } else {
+                    assertEquals(path, expected.get(i), actual.get(i));
+                }
+            }
+        }
+
+        RecordPath.compile("/mainAccount/balance").evaluate(arrayRecord).getSelectedFields().forEach(field -> field.updateValue(122.44D));
+        assertEquals(122.44D, arrayAccountRecord.getValue("balance"));
+
+        RecordPath.compile("/attributes['city']").evaluate(arrayRecord).getSelectedFields().forEach(field -> field.updateValue("Boston"));
+        assertEquals("Boston", ((Map<?, ?>) arrayRecord.getValue("attributes")).get("city"));
+
+        RecordPath.compile("/numbers[1]").evaluate(arrayRecord).getSelectedFields().forEach(field -> field.updateValue(8));
+        assertArrayEquals(new Object[] {1, 8, 3}, (Object[]) arrayRecord.getValue("numbers"));
+
+        RecordPath.compile("/name").evaluate(arrayRecord).getSelectedFields().forEach(field -> field.updateValue("Jane Doe"));
+        assertEquals("Jane Doe", arrayRecord.getValue("name"));
+        assertEquals("Jane Doe", arrayRecord.getValue(1));
+    }
+
     private List<RecordField> getDefaultFields() {
         final List<RecordField> fields = new ArrayList<>();
         fields.add(new RecordField("id", RecordFieldType.INT.getDataType()));
@@ -0,0 +1,729 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.serialization.record;
+
+import org.apache.nifi.serialization.SchemaValidationException;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.type.ArrayDataType;
+import org.apache.nifi.serialization.record.type.ChoiceDataType;
+import org.apache.nifi.serialization.record.type.MapDataType;
+import org.apache.nifi.serialization.record.type.RecordDataType;
+import org.apache.nifi.serialization.record.util.DataTypeUtils;
+import org.apache.nifi.serialization.record.util.IllegalTypeConversionException;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * A Record whose values are held in an array that is ordered in the same way as the fields of its schema, so that the value of a field
+ * is found by the field's {@link RecordSchema#getFieldIndex(String) index} rather than by hashing its name, and so that a Record
+ * does not need its own Map. Values for fields that are not part of the schema are kept in a separate Map, which is created
+ * only when such a field is present.
+ * </p>
+ *
+ * <p>
+ * An ArrayRecord behaves in the same way as, and is equal to, a {@link MapRecord} that contains the same values. A field that has no value at all,
+ * as opposed to a value of <code>null</code>, is indicated by placing {@link #ABSENT} at its position in the array.
+ * </p>
+ */
+public class ArrayRecord implements Record {
+    /**
+     * May be placed in the array of values given to an ArrayRecord to indicate that the field at that position is not present in the
+     * Record. It is never returned by any method of the Record.
+     */
+    public static final Object ABSENT = new Object() {
+        @Override
+        public String toString() {
+            return "ABSENT";
+        }
+    };
+
+    private RecordSchema schema;
+    private Object[] values;
+    private Map<String, Object> unknownValues;
+    private Optional<SerializedForm> serializedForm;
+    private final boolean checkTypes;
+    private final boolean dropUnknownFields;
+    private Set<RecordField> inactiveFields = null;
+
+    public ArrayRecord(final RecordSchema schema, final Object[] values) {
+        this(schema, values, null, null, false, false);
+    }
+
+    public ArrayRecord(final RecordSchema schema, final Object[] values, final boolean checkTypes, final boolean dropUnknownFields) {
+        this(schema, values, null, null, checkTypes, dropUnknownFields);
+    }
+
+    public ArrayRecord(final RecordSchema schema, final Object[] values, final SerializedForm serializedForm) {
+        this(schema, values, null, serializedForm, false, false);
+    }
+
+    /**
+     * @param schema the schema of the Record
+     * @param values the values of the Record, ordered in the same way as the fields of the schema. The array is used directly rather than copied.
+     * @param unknownValues the values of fields that are not part of the schema, keyed by field name, or <code>null</code> if there are none
+     * @param serializedForm the serialized form of the Record, or <code>null</code> if it is not available
+     * @param checkTypes whether or not the values should be validated against the schema
+     * @param dropUnknownFields whether or not fields that are not part of the schema should be ignored
+     */
+    public ArrayRecord(final RecordSchema schema, final Object[] values, final Map<String, Object> unknownValues, final SerializedForm serializedForm,
+                       final boolean checkTypes, final boolean dropUnknownFields) {
+        Objects.requireNonNull(values);
+        this.schema = Objects.requireNonNull(schema);
+
+        if (values.length != schema.getFieldCount()) {
+            throw new IllegalArgumentException("Record has " + values.length + " values but its schema has " + schema.getFieldCount() + " fields");
+        }
+
+        this.values = values;
+        this.unknownValues = unknownValues;
+        this.serializedForm = Optional.ofNullable(serializedForm);
+        this.checkTypes = checkTypes;
+        this.dropUnknownFields = dropUnknownFields;
+
+        if (checkTypes) {
+            checkTypes();
+        }
+    }
+
+    private void checkTypes() {
+        for (int i = 0; i < values.length; i++) {
+            final RecordField field = schema.getField(i);
+            final Object value = getExplicitValue(i);
+
+            if (value == null) {
+                if (field.isNullable() || field.getDefaultValue() != null) {
+                    continue;
+                }
+
+                throw new SchemaValidationException("Field " + field.getFieldName() + " cannot be null");
+            }
+
+            if (!DataTypeUtils.isCompatibleDataType(value, field.getDataType())) {
+                throw new SchemaValidationException("Field " + field.getFieldName() + " has a value of " + value
+                    + ", which cannot be coerced into the appropriate data type of " + field.getDataType());
+            }
+        }
+    }
+
+    @Override
+    public boolean isDropUnknownFields() {
+        return dropUnknownFields;
+    }
+
+    @Override
+    public boolean isTypeChecked() {
+        return checkTypes;
+    }
+
+    @Override
+    public RecordSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public Object[] getValues() {
+        final Object[] copy = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            copy[i] = getValue(i);
+        }
+        return copy;
+    }
+
+    @Override
+    public Object getValue(final int fieldIndex) {
+        final Object value = values[fieldIndex];
+        if (value != null && value != ABSENT) {
+            return value;
+        }
+
+        return schema.getField(fieldIndex).getDefaultValue();
+    }
+
+    @Override
+    public Object getValue(final String fieldName) {
+        final int index = schema.getFieldIndex(fieldName);
+        if (index >= 0) {
+            return getValue(index);
+        }
+
+        if (dropUnknownFields || unknownValues == null) {
+            return null;
+        }
+
+        return unknownValues.get(fieldName);
+    }
+
+    @Override
+    public Object getValue(final RecordField field) {
+        final Object explicitValue = getExplicitValue(field);
+        if (explicitValue != null) {
+            return explicitValue;
+        }
+
+        final Object defaultValue = field.getDefaultValue();
+        if (defaultValue != null) {
+            return defaultValue;
+        }
+
+        // The field given may not be the one in the schema, but may share its name or one of its aliases
+        int index = schema.getFieldIndex(field.getFieldName());
+        if (index < 0) {
+            for (final String alias : field.getAliases()) {
+                index = schema.getFieldIndex(alias);
+                if (index >= 0) {
+                    break;
+                }
+            }
+        }
+
+        return index < 0 ? null : schema.getField(index).getDefaultValue();
+    }
+
+    private Object getExplicitValue(final RecordField field) {
+        // As with MapRecord, a null value for the field's name falls back to the value for each of its aliases, in order
+        Object value = getExplicitValue(field.getFieldName());
+        if (value != null) {
+            return value;
+        }
+
+        for (final String alias : field.getAliases()) {
+            value = getExplicitValue(alias);
+            if (value != null) {
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    private Object getExplicitValue(final String fieldName) {
+        final int index = schema.getFieldIndex(fieldName);
+        if (index >= 0) {
+            return getExplicitValue(index);
+        }
+
+        return unknownValues == null ? null : unknownValues.get(fieldName);
+    }
+
+    private Object getExplicitValue(final int index) {
+        final Object value = values[index];
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public String getAsString(final String fieldName) {
+        final Optional<DataType> dataTypeOption = schema.getDataType(fieldName);
+        if (dataTypeOption.isPresent()) {
+            return convertToString(getValue(fieldName), dataTypeOption.get().getFormat());
+        }
+
+        return DataTypeUtils.toString(getValue(fieldName), (Supplier<DateFormat>) null);
+    }
+
+    @Override
+    public String getAsString(final String fieldName, final String format) {
+        return convertToString(getValue(fieldName), format);
+    }
+
+    @Override
+    public String getAsString(final RecordField field, final String format) {
+        return convertToString(getValue(field), format);
+    }
+
+    private String convertToString(final Object value, final String format) {
+        if (value == null) {
+            return null;
+        }
+
+        return DataTypeUtils.toString(value, format);
+    }
+
+    @Override
+    public Long getAsLong(final String fieldName) {
+        return DataTypeUtils.toLong(getValue(fieldName), fieldName);
+    }
+
+    @Override
+    public Integer getAsInt(final String fieldName) {
+        return DataTypeUtils.toInteger(getValue(fieldName), fieldName);
+    }
+
+    @Override
+    public Double getAsDouble(final String fieldName) {
+        return DataTypeUtils.toDouble(getValue(fieldName), fieldName);
+    }
+
+    @Override
+    public Float getAsFloat(final String fieldName) {
+        return DataTypeUtils.toFloat(getValue(fieldName), fieldName);
+    }
+
+    @Override
+    public Record getAsRecord(final String fieldName, final RecordSchema schema) {
+        return DataTypeUtils.toRecord(getValue(fieldName), schema, fieldName);
+    }
+
+    @Override
+    public Boolean getAsBoolean(final String fieldName) {
+        return DataTypeUtils.toBoolean(getValue(fieldName), fieldName);
+    }
+
+    @Override
+    public Date getAsDate(final String fieldName, final String format) {
+        return DataTypeUtils.toDate(getValue(fieldName), () -> DataTypeUtils.getDateFormat(format), fieldName);
+    }
+
+    @Override
+    public Object[] getAsArray(final String fieldName) {
+        return DataTypeUtils.toArray(getValue(fieldName), fieldName, null, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int hashCode() {
+        // Computed in the same way as the hash code of a MapRecord with the same values, without creating the Map
+        int valuesHashCode = unknownValues == null ? 0 : unknownValues.hashCode();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != ABSENT) {
+                valuesHashCode += schema.getField(i).getFieldName().hashCode() ^ Objects.hashCode(values[i]);
+            }
+        }
+
+        return 31 + 41 * valuesHashCode + 7 * schema.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (!(obj instanceof ArrayRecord) && !(obj instanceof MapRecord)) {
+            return false;
+        }
+
+        final Record other = (Record) obj;
+        if (other instanceof ArrayRecord && ((ArrayRecord) other).schema == schema) {
+            final ArrayRecord otherArrayRecord = (ArrayRecord) other;
+            return Arrays.equals(values, otherArrayRecord.values) && getUnknownValues().equals(otherArrayRecord.getUnknownValues());
+        }
+
+        return schema.equals(other.getSchema()) && toMap().equals(other.toMap());
+    }
+
+    private Map<String, Object> getUnknownValues() {
+        return unknownValues == null ? Collections.emptyMap() : unknownValues;
+    }
+
+    @Override
+    public String toString() {
+        return "ArrayRecord[" + toMap() + "]";
+    }
+
+    @Override
+    public Optional<SerializedForm> getSerializedForm() {
+        return serializedForm;
+    }
+
+    @Override
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new LinkedHashMap<>(values.length * 2);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != ABSENT) {
+                map.put(schema.getField(i).getFieldName(), values[i]);
+            }
+        }
+
+        if (unknownValues != null) {
+            map.putAll(unknownValues);
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public void setValue(final RecordField field, final Object value) {
+        final boolean existingField = setValueAndGetField(field.getFieldName(), value);
+
+        if (!existingField) {
+            if (inactiveFields == null) {
+                inactiveFields = new LinkedHashSet<>();
+            }
+
+            inactiveFields.add(field);
+        }
+    }
+
+    @Override
+    public void setValue(final String fieldName, final Object value) {
+        final boolean existingField = setValueAndGetField(fieldName, value);
+
+        if (!existingField) {
+            if (inactiveFields == null) {
+                inactiveFields = new LinkedHashSet<>();
+            }
+
+            final DataType inferredDataType = DataTypeUtils.inferDataType(value, RecordFieldType.STRING.getDataType());
+            final RecordField field = new RecordField(fieldName, inferredDataType);
+            inactiveFields.add(field);
+        }
+    }
+
+    private boolean setValueAndGetField(final String fieldName, final Object value) {
+        final int index = schema.getFieldIndex(fieldName);
+        if (index < 0) {
+            if (dropUnknownFields) {
+                return false;
+            }
+
+            if (unknownValues == null) {
+                unknownValues = new LinkedHashMap<>();
+            }
+
+            final boolean present = unknownValues.containsKey(fieldName);
+            final Object previousValue = unknownValues.put(fieldName, value);
+            if (!present || !Objects.equals(value, previousValue)) {
+                serializedForm = Optional.empty();
+            }
+
+            return false;
+        }
+
+        final Object coerced = isTypeChecked() ? DataTypeUtils.convertType(value, schema.getField(index).getDataType(), fieldName) : value;
+        final Object previousValue = values[index];
+        values[index] = coerced;
+        if (previousValue == ABSENT || !Objects.equals(coerced, previousValue)) {
+            serializedForm = Optional.empty();
+        }
+
+        return true;
+    }
+
+    @Override
+    public void setArrayValue(final String fieldName, final int arrayIndex, final Object value) {
+        final int index = schema.getFieldIndex(fieldName);
+        if (index < 0) {
+            return;
+        }
+
+        final DataType dataType = schema.getField(index).getDataType();
+        if (dataType.getFieldType() != RecordFieldType.ARRAY) {
+            throw new IllegalTypeConversionException("Cannot set the value of an array index on Record because the field '" + fieldName
+                + "' is of type '" + dataType + "' and cannot be coerced into an ARRAY type");
+        }
+
+        final Object arrayObject = values[index];
+        if (!(arrayObject instanceof Object[])) {
+            return;
+        }
+
+        final Object[] array = (Object[]) arrayObject;
+        if (arrayIndex >= array.length) {
+            return;
+        }
+
+        final ArrayDataType arrayDataType = (ArrayDataType) dataType;
+        final DataType elementType = arrayDataType.getElementType();
+        final Object coerced = DataTypeUtils.convertType(value, elementType, fieldName);
+
+        final boolean update = !Objects.equals(coerced, array[arrayIndex]);
+        if (update) {
+            array[arrayIndex] = coerced;
+            serializedForm = Optional.empty();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setMapValue(final String fieldName, final String mapKey, final Object value) {
+        final int index = schema.getFieldIndex(fieldName);
+        if (index < 0) {
+            return;
+        }
+
+        final DataType dataType = schema.getField(index).getDataType();
+        if (dataType.getFieldType() != RecordFieldType.MAP) {
+            throw new IllegalTypeConversionException("Cannot set the value of map entry on Record because the field '" + fieldName
+                + "' is of type '" + dataType + "' and cannot be coerced into an MAP type");
+        }
+
+        Object mapObject = getExplicitValue(index);
+        if (mapObject == null) {
+            mapObject = new HashMap<String, Object>();
+        }
+        if (!(mapObject instanceof Map)) {
+            return;
+        }
+
+        final Map<String, Object> map = (Map<String, Object>) mapObject;
+
+        final MapDataType mapDataType = (MapDataType) dataType;
+        final DataType valueDataType = mapDataType.getValueType();
+        final Object coerced = DataTypeUtils.convertType(value, valueDataType, fieldName);
+
+        final Object replaced = map.put(mapKey, coerced);
+        if (replaced == null || !replaced.equals(coerced)) {
+            serializedForm = Optional.empty();
+        }
+    }
+
+    @Override
+    public void incorporateSchema(final RecordSchema other) {
+        setSchema(DataTypeUtils.merge(this.schema, other));
+    }
+
+    @Override
+    public void incorporateInactiveFields() {
+        final List<RecordField> updatedFields = new ArrayList<>();
+
+        boolean fieldUpdated = false;
+        for (int i = 0; i < values.length; i++) {
+            final RecordField field = schema.getField(i);
+            final RecordField updated = getUpdatedRecordField(field, getValue(i));
+            if (!updated.equals(field)) {
+                fieldUpdated = true;
+            }
+
+            updatedFields.add(updated);
+        }
+
+        if (!fieldUpdated && (inactiveFields == null || inactiveFields.isEmpty())) {
+            return;
+        }
+
+        if (inactiveFields != null) {
+            for (final RecordField field : inactiveFields) {
+                if (!updatedFields.contains(field)) {
+                    updatedFields.add(field);
+                }
+            }
+        }
+
+        setSchema(new SimpleRecordSchema(updatedFields));
+    }
+
+    /**
+     * Replaces the schema of this Record, moving each value to the index of its field in the new schema. Values of fields that were not
+     * part of the previous schema but are part of the new one are moved out of the unknown values.
+     */
+    private void setSchema(final RecordSchema updatedSchema) {
+        final Object[] updatedValues = new Object[updatedSchema.getFieldCount()];
+        for (int i = 0; i < updatedValues.length; i++) {
+            final String fieldName = updatedSchema.getField(i).getFieldName();
+            final int previousIndex = schema.getFieldIndex(fieldName);
+
+            if (previousIndex >= 0) {
+                updatedValues[i] = values[previousIndex];
+            } else if (unknownValues != null && unknownValues.containsKey(fieldName)) {
+                updatedValues[i] = unknownValues.remove(fieldName);
+            } else {
+                updatedValues[i] = ABSENT;
+            }
+        }
+
+        this.schema = updatedSchema;
+        this.values = updatedValues;
+    }
+
+    private RecordField getUpdatedRecordField(final RecordField field, final Object value) {
+        final DataType dataType = field.getDataType();
+        final RecordFieldType fieldType = dataType.getFieldType();
+
+        if (isSimpleType(fieldType)) {
+            return field;
+        }
+
+        if (value == null) {
+            return field;
+        }
+
+        if (fieldType == RecordFieldType.RECORD && value instanceof Record) {
+            final Record childRecord = (Record) value;
+            childRecord.incorporateInactiveFields();
+
+            final RecordSchema definedChildSchema = ((RecordDataType) dataType).getChildSchema();
+            final RecordSchema actualChildSchema = childRecord.getSchema();
+            final RecordSchema combinedChildSchema = DataTypeUtils.merge(definedChildSchema, actualChildSchema);
+            final DataType combinedDataType = RecordFieldType.RECORD.getRecordDataType(combinedChildSchema);
+
+            return new RecordField(field.getFieldName(), combinedDataType, field.getDefaultValue(), field.getAliases(), field.isNullable());
+        }
+
+        if (fieldType == RecordFieldType.ARRAY && value instanceof Object[]) {
+            final DataType elementType = ((ArrayDataType) dataType).getElementType();
+            final RecordFieldType elementFieldType = elementType.getFieldType();
+
+            if (elementFieldType == RecordFieldType.RECORD) {
+                final Object[] array = (Object[]) value;
+                RecordSchema mergedSchema = ((RecordDataType) elementType).getChildSchema();
+
+                for (final Object element : array) {
+                    if (element == null) {
+                        continue;
+                    }
+
+                    final Record record = (Record) element;
+                    record.incorporateInactiveFields();
+                    mergedSchema = DataTypeUtils.merge(mergedSchema, record.getSchema());
+                }
+
+                final DataType mergedRecordType = RecordFieldType.RECORD.getRecordDataType(mergedSchema);
+                final DataType mergedDataType = RecordFieldType.ARRAY.getArrayDataType(mergedRecordType);
+                return new RecordField(field.getFieldName(), mergedDataType, field.getDefaultValue(), field.getAliases(), field.isNullable());
+            }
+
+            return field;
+        }
+
+        if (fieldType == RecordFieldType.CHOICE) {
+            final ChoiceDataType choiceDataType = (ChoiceDataType) dataType;
+            final List<DataType> possibleTypes = choiceDataType.getPossibleSubTypes();
+
+            final DataType chosenDataType = DataTypeUtils.chooseDataType(value, choiceDataType);
+            if (chosenDataType.getFieldType() != RecordFieldType.RECORD || !(value instanceof Record)) {
+                return field;
+            }
+
+            final RecordDataType recordDataType = (RecordDataType) chosenDataType;
+            final Record childRecord = (Record) value;
+            childRecord.incorporateInactiveFields();
+
+            final RecordSchema definedChildSchema = recordDataType.getChildSchema();
+            final RecordSchema actualChildSchema = childRecord.getSchema();
+            final RecordSchema combinedChildSchema = DataTypeUtils.merge(definedChildSchema, actualChildSchema);
+            final DataType combinedDataType = RecordFieldType.RECORD.getRecordDataType(combinedChildSchema);
+
+            final List<DataType> updatedPossibleTypes = new ArrayList<>(possibleTypes.size());
+            for (final DataType possibleType : possibleTypes) {
+                if (possibleType.equals(chosenDataType)) {
+                    updatedPossibleTypes.add(combinedDataType);
+                } else {
+                    updatedPossibleTypes.add(possibleType);
+                }
+            }
+
+            final DataType mergedDataType = RecordFieldType.CHOICE.getChoiceDataType(updatedPossibleTypes);
+            return new RecordField(field.getFieldName(), mergedDataType, field.getDefaultValue(), field.getAliases(), field.isNullable());
+        }
+
+        return field;
+    }
+
+    private boolean isSimpleType(final RecordFieldType fieldType) {
+        switch (fieldType) {
+            case ARRAY:
+            case RECORD:
+            case MAP:
+            case CHOICE:
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public Set<String> getRawFieldNames() {
+        return new RawFieldNames();
+    }
+
+    /**
+     * A view of the names of the fields that are present in the Record, so that checking whether or not a single field is present
+     * does not require a new Set to be populated.
+     */
+    private class RawFieldNames extends AbstractSet<String> {
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+
+            final int index = schema.getFieldIndex((String) o);
+            if (index >= 0) {
+                return values[index] != ABSENT;
+            }
+
+            return unknownValues != null && unknownValues.containsKey(o);
+        }
+
+        @Override
+        public int size() {
+            int size = unknownValues == null ? 0 : unknownValues.size();
+            for (final Object value : values) {
+                if (value != ABSENT) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            final Iterator<String> unknownNames = unknownValues == null ? Collections.emptyIterator() : unknownValues.keySet().iterator();
+
+            return new Iterator<String>() {
+                private int index = nextPresentIndex(0);
+
+                @Override
+                public boolean hasNext() {
+                    return index < values.length || unknownNames.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    if (index < values.length) {
+                        final String fieldName = schema.getField(index).getFieldName();
+                        index = nextPresentIndex(index + 1);
+                        return fieldName;
+                    }
+
+                    if (!unknownNames.hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return unknownNames.next();
+                }
+            };
+        }
+
+        private int nextPresentIndex(final int start) {
+            int index = start;
+            while (index < values.length && values[index] == ABSENT) {
+                index++;
+            }
+            return index;
+        }
+    }
+}
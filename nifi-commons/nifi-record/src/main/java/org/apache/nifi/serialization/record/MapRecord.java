@@ -293,6 +293,10 @@ public class MapRecord implements Record {
         if (obj == null) {
             return false;
         }
+        if (obj instanceof ArrayRecord) {
+            final ArrayRecord other = (ArrayRecord) obj;
+            return schema.equals(other.getSchema()) && values.equals(other.toMap());
+        }
         if (!(obj instanceof MapRecord)) {
             return false;
         }
@@ -90,6 +90,20 @@ public interface Record {
 
     Object getValue(RecordField field);
 
+    /**
+     * Returns the value of the field at the given index of this Record's schema. This is equivalent to calling
+     * {@link #getValue(RecordField)} with the field returned by {@link RecordSchema#getField(int)}, but allows implementations
+     * that store their values by position to avoid looking up the field by name.
+     *
+     * @param fieldIndex the 0-based index of the field in this Record's schema
+     * @return the value of the field, or its default value if the field has no value
+     *
+     * @throws IndexOutOfBoundsException if the index is &lt; 0 or &gt;= the number of fields in this Record's schema
+     */
+    default Object getValue(final int fieldIndex) {
+        return getValue(getSchema().getField(fieldIndex));
+    }
+
     String getAsString(String fieldName);
 
     String getAsString(String fieldName, String format);
@@ -72,6 +72,18 @@ public interface RecordSchema {
      */
     Optional<RecordField> getField(String fieldName);
 
+    /**
+     * Returns the position of the field with the given name or alias in the List returned by {@link #getFields()}. The index of a field
+     * does not change for the lifetime of the schema, so it may be used to address the values of Records that use this schema.
+     *
+     * @param fieldName the name or alias of the field
+     * @return the 0-based index of the field with the given name or alias, or <code>-1</code> if the schema does not contain such a field
+     */
+    default int getFieldIndex(final String fieldName) {
+        final Optional<RecordField> field = getField(fieldName);
+        return field.isPresent() ? getFields().indexOf(field.get()) : -1;
+    }
+
     /**
      * @return the SchemaIdentifier, which provides various attributes for identifying a schema
      */
@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class TestSimpleRecordSchema {
@@ -110,6 +111,20 @@ public class TestSimpleRecordSchema {
         Mockito.verify(schema2, Mockito.never()).getFields();
     }
 
+    @Test
+    public void testFieldIndex() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("hello", RecordFieldType.STRING.getDataType(), null, set("foo", "bar")));
+        fields.add(new RecordField("goodbye", RecordFieldType.STRING.getDataType()));
+
+        final SimpleRecordSchema schema = new SimpleRecordSchema(fields);
+        assertEquals(0, schema.getFieldIndex("hello"));
+        assertEquals(0, schema.getFieldIndex("foo"));
+        assertEquals(0, schema.getFieldIndex("bar"));
+        assertEquals(1, schema.getFieldIndex("goodbye"));
+        assertEquals(-1, schema.getFieldIndex("other"));
+    }
+
     private Set<String> set(final String... values) {
         final Set<String> set = new HashSet<>();
         for (final String value : values) {
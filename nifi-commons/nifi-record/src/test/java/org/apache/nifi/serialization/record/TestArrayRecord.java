@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.serialization.record;
+
+import org.apache.nifi.serialization.SchemaValidationException;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestArrayRecord {
+
+    @Test
+    public void testDefaultValue() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("noDefault", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("defaultOfHello", RecordFieldType.STRING.getDataType(), "hello"));
+
+        final RecordSchema schema = new SimpleRecordSchema(fields);
+        final Record record = new ArrayRecord(schema, new Object[] {ArrayRecord.ABSENT, null});
+
+        assertNull(record.getValue("noDefault"));
+        assertEquals("hello", record.getValue("defaultOfHello"));
+        assertEquals("hello", record.getValue(1));
+        assertArrayEquals(new Object[] {null, "hello"}, record.getValues());
+
+        final RecordField newField = new RecordField("noDefault", RecordFieldType.STRING.getDataType(), "new");
+        assertEquals("new", record.getValue(newField));
+    }
+
+    @Test
+    public void testAliases() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("foo", RecordFieldType.STRING.getDataType(), "hello", set("bar", "baz")));
+
+        final RecordSchema schema = new SimpleRecordSchema(fields);
+        final Record record = new ArrayRecord(schema, new Object[] {33});
+        assertEquals(33, record.getValue("foo"));
+        assertEquals(33, record.getValue("bar"));
+        assertEquals(33, record.getValue("baz"));
+
+        final RecordField noAlias = new RecordField("hello", RecordFieldType.STRING.getDataType());
+        assertNull(record.getValue(noAlias));
+
+        final RecordField withAlias = new RecordField("hello", RecordFieldType.STRING.getDataType(), null, set("baz"));
+        assertEquals(33, record.getValue(withAlias));
+        assertEquals("33", record.getAsString(withAlias, withAlias.getDataType().getFormat()));
+
+        final Record defaultRecord = new ArrayRecord(schema, new Object[] {ArrayRecord.ABSENT});
+        assertEquals("hello", defaultRecord.getValue("bar"));
+        assertEquals("hello", defaultRecord.getValue(withAlias));
+    }
+
+    @Test
+    public void testSameValuesAsMapRecord() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("id", RecordFieldType.INT.getDataType()));
+        fields.add(new RecordField("name", RecordFieldType.STRING.getDataType(), null, set("fullName")));
+        fields.add(new RecordField("balance", RecordFieldType.DOUBLE.getDataType(), 0D));
+        final RecordSchema schema = new SimpleRecordSchema(fields);
+
+        final Map<String, Object> values = new LinkedHashMap<>();
+        values.put("id", 48);
+        values.put("name", "John Doe");
+        values.put("extra", "unknown");
+
+        final Record mapRecord = new MapRecord(schema, values);
+        final Record arrayRecord = new ArrayRecord(schema, new Object[] {48, "John Doe", ArrayRecord.ABSENT}, Collections.singletonMap("extra", "unknown"),
+            null, false, false);
+
+        assertArrayEquals(mapRecord.getValues(), arrayRecord.getValues());
+        for (final String fieldName : Arrays.asList("id", "name", "fullName", "balance", "extra", "missing")) {
+            assertEquals(mapRecord.getValue(fieldName), arrayRecord.getValue(fieldName));
+            assertEquals(mapRecord.getAsString(fieldName), arrayRecord.getAsString(fieldName));
+        }
+        for (final RecordField field : fields) {
+            assertEquals(mapRecord.getValue(field), arrayRecord.getValue(field));
+        }
+
+        assertEquals(mapRecord.getRawFieldNames(), arrayRecord.getRawFieldNames());
+        assertEquals(mapRecord.toMap(), arrayRecord.toMap());
+    }
+
+    @Test
+    public void testAbsentAndNullValuesAreDistinct() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("present", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("explicitNull", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("absent", RecordFieldType.STRING.getDataType()));
+
+        final RecordSchema schema = new SimpleRecordSchema(fields);
+        final Record record = new ArrayRecord(schema, new Object[] {"value", null, ArrayRecord.ABSENT});
+
+        final Set<String> rawFieldNames = record.getRawFieldNames();
+        assertEquals(2, rawFieldNames.size());
+        assertTrue(rawFieldNames.contains("present"));
+        assertTrue(rawFieldNames.contains("explicitNull"));
+        assertFalse(rawFieldNames.contains("absent"));
+        assertEquals(Arrays.asList("present", "explicitNull"), new ArrayList<>(rawFieldNames));
+
+        assertNull(record.getValue("absent"));
+        assertFalse(record.toMap().containsKey("absent"));
+        assertTrue(record.toMap().containsKey("explicitNull"));
+    }
+
+    @Test
+    public void testUnknownFields() {
+        final RecordSchema schema = new SimpleRecordSchema(Collections.singletonList(new RecordField("known", RecordFieldType.STRING.getDataType())));
+
+        final Record keepUnknown = new ArrayRecord(schema, new Object[] {"a"});
+        keepUnknown.setValue("unknown", "b");
+        assertEquals("b", keepUnknown.getValue("unknown"));
+        assertEquals(new HashSet<>(Arrays.asList("known", "unknown")), keepUnknown.getRawFieldNames());
+
+        keepUnknown.incorporateInactiveFields();
+        assertEquals(Arrays.asList("known", "unknown"), keepUnknown.getSchema().getFieldNames());
+        assertEquals("b", keepUnknown.getValue(1));
+        assertEquals(2, keepUnknown.getRawFieldNames().size());
+
+        final Record dropUnknown = new ArrayRecord(schema, new Object[] {"a"}, false, true);
+        dropUnknown.setValue("unknown", "b");
+        assertNull(dropUnknown.getValue("unknown"));
+        assertEquals(Collections.singleton("known"), dropUnknown.getRawFieldNames());
+    }
+
+    @Test
+    public void testIncorporateSchemaKeepsValues() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("b", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("c", RecordFieldType.INT.getDataType()));
+        final Record record = new ArrayRecord(new SimpleRecordSchema(fields), new Object[] {"hello", 8});
+
+        final List<RecordField> otherFields = new ArrayList<>();
+        otherFields.add(new RecordField("a", RecordFieldType.LONG.getDataType()));
+        otherFields.add(new RecordField("c", RecordFieldType.STRING.getDataType()));
+        record.incorporateSchema(new SimpleRecordSchema(otherFields));
+
+        final RecordSchema mergedSchema = record.getSchema();
+        assertEquals(3, mergedSchema.getFieldCount());
+        assertEquals("hello", record.getValue("b"));
+        assertEquals(8, record.getValue("c"));
+        assertNull(record.getValue("a"));
+        assertEquals(8, record.getValue(mergedSchema.getFieldIndex("c")));
+    }
+
+    @Test
+    public void testSetValues() {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("count", RecordFieldType.INT.getDataType()));
+        fields.add(new RecordField("names", RecordFieldType.ARRAY.getArrayDataType(RecordFieldType.STRING.getDataType())));
+        fields.add(new RecordField("attributes", RecordFieldType.MAP.getMapDataType(RecordFieldType.STRING.getDataType())));
+
+        final Map<String, Object> attributes = new HashMap<>();
+        final Record record = new ArrayRecord(new SimpleRecordSchema(fields), new Object[] {1, new Object[] {"a", "b"}, attributes}, true, false);
+
+        record.setValue("count", "42");
+        assertEquals(42, record.getValue("count"));
+
+        record.setArrayValue("names", 1, "c");
+        assertArrayEquals(new Object[] {"a", "c"}, (Object[]) record.getValue("names"));
+
+        record.setMapValue("attributes", "key", "value");
+        assertEquals("value", attributes.get("key"));
+    }
+
+    @Test(expected = SchemaValidationException.class)
+    public void testCheckTypes() {
+        final RecordField field = new RecordField("id", RecordFieldType.INT.getDataType(), false);
+        new ArrayRecord(new SimpleRecordSchema(Collections.singletonList(field)), new Object[] {null}, true, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfValues() {
+        final RecordField field = new RecordField("id", RecordFieldType.INT.getDataType());
+        new ArrayRecord(new SimpleRecordSchema(Collections.singletonList(field)), new Object[] {1, 2});
+    }
+
+    @Test
+    public void testEquals() {
+        final RecordSchema schema = new SimpleRecordSchema(Collections.singletonList(new RecordField("id", RecordFieldType.INT.getDataType())));
+
+        assertEquals(new ArrayRecord(schema, new Object[] {1}), new ArrayRecord(schema, new Object[] {1}));
+        assertEquals(new ArrayRecord(schema, new Object[] {1}).hashCode(), new ArrayRecord(schema, new Object[] {1}).hashCode());
+        assertFalse(new ArrayRecord(schema, new Object[] {1}).equals(new ArrayRecord(schema, new Object[] {2})));
+        assertFalse(new ArrayRecord(schema, new Object[] {null}).equals(new ArrayRecord(schema, new Object[] {ArrayRecord.ABSENT})));
+
+        final Record mapRecord = new MapRecord(schema, Collections.singletonMap("id", 1));
+        final Record arrayRecord = new ArrayRecord(schema, new Object[] {1});
+        assertEquals(mapRecord, arrayRecord);
+        assertEquals(arrayRecord, mapRecord);
+        assertEquals(mapRecord.hashCode(), arrayRecord.hashCode());
+        assertFalse(new MapRecord(schema, Collections.emptyMap()).equals(arrayRecord));
+        assertFalse(arrayRecord.equals(new MapRecord(schema, Collections.emptyMap())));
+    }
+
+    private Set<String> set(final String... values) {
+        final Set<String> set = new HashSet<>();
+        for (final String value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+}
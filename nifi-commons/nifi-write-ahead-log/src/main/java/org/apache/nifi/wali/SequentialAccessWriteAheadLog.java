@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -53,6 +54,14 @@ import org.wali.WriteAheadRepository;
  * that records are recovered correctly if two threads simultaneously update the write-ahead log
  * with updates for the same record.
  * </p>
+ *
+ * <p>
+ * If a group commit window is provided, updates that request a sync do not each sync the journal individually.
+ * Instead, the first such update waits up to the given window for other updates to be written to the journal and then
+ * performs a single sync on behalf of all of them. Every update is returned to its caller only after a sync that includes it
+ * has completed, so the durability guarantee is unchanged, but the number of syncs performed is reduced significantly
+ * when many threads update the repository concurrently.
+ * </p>
  */
 public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T> {
     private static final int PARTITION_INDEX = 0;
@@ -83,11 +92,39 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
     private WriteAheadJournal<T> journal;
     private volatile long nextTransactionId = 0L;
 
+    private final long groupCommitWindowNanos;
+    private final Object syncMonitor = new Object();
+    private long writeSequence = 0L; // guarded by syncMonitor
+    private long syncedSequence = 0L; // guarded by syncMonitor
+    private boolean syncInProgress = false; // guarded by syncMonitor
+    private long syncCount = 0L; // guarded by syncMonitor
+    private long syncedUpdateCount = 0L; // guarded by syncMonitor
+    private long maxBatchSize = 0L; // guarded by syncMonitor
+    private long totalSyncNanos = 0L; // guarded by syncMonitor
+    private long maxSyncNanos = 0L; // guarded by syncMonitor
+
     public SequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory) throws IOException {
         this(storageDirectory, serdeFactory, SyncListener.NOP_SYNC_LISTENER);
     }
 
     public SequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory, final SyncListener syncListener) throws IOException {
+        this(storageDirectory, serdeFactory, syncListener, -1L, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a Write-Ahead Log that uses group commit for updates that request a sync
+     *
+     * @param storageDirectory the directory to store the snapshot and journals in
+     * @param serdeFactory the factory for the SerDe to use
+     * @param syncListener a listener that is notified when the journal is synced to disk
+     * @param groupCommitWindow the maximum amount of time that an update that requests a sync will wait for other updates to be written
+     *            so that they can all be synced together. A value of 0 means that only updates that are written while another sync is in progress
+     *            are grouped together. A negative value disables group commit so that each update performs its own sync.
+     * @param timeUnit the unit of the group commit window
+     * @throws IOException if unable to create the storage directory
+     */
+    public SequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory, final SyncListener syncListener,
+                                         final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
         if (!storageDirectory.exists() && !storageDirectory.mkdirs()) {
             throw new IOException("Directory " + storageDirectory + " does not exist and cannot be created");
         }
@@ -109,6 +146,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
 
         this.serdeFactory = serdeFactory;
         this.syncListener = (syncListener == null) ? SyncListener.NOP_SYNC_LISTENER : syncListener;
+        this.groupCommitWindowNanos = groupCommitWindow < 0 ? -1L : timeUnit.toNanos(groupCommitWindow);
     }
 
     @Override
@@ -122,8 +160,14 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
             journal.update(records, recordLookup);
 
             if (forceSync) {
-                journal.fsync();
-                syncListener.onSync(PARTITION_INDEX);
+                if (groupCommitWindowNanos < 0) {
+                    final long syncStart = System.nanoTime();
+                    journal.fsync();
+                    syncListener.onSync(PARTITION_INDEX);
+                    recordSync(1L, System.nanoTime() - syncStart);
+                } else {
+                    groupSync();
+                }
             }
 
             snapshot.update(records);
@@ -134,6 +178,80 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         return PARTITION_INDEX;
     }
 
+    /**
+     * Blocks until the journal has been synced to disk with a sync that was started after this thread's update was written to the journal.
+     * If no sync is in progress, this thread becomes responsible for syncing on behalf of all updates that have been written so far. Must be
+     * called while holding the journal read lock so that the journal cannot be replaced by a checkpoint in the meantime.
+     */
+    private void groupSync() throws IOException {
+        final long sequence;
+        synchronized (syncMonitor) {
+            sequence = ++writeSequence;
+
+            while (syncInProgress && syncedSequence < sequence) {
+                try {
+                    syncMonitor.wait();
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for Write-Ahead Log at " + storageDirectory + " to sync to disk", ie);
+                }
+            }
+
+            if (syncedSequence >= sequence) {
+                return;
+            }
+
+            syncInProgress = true;
+        }
+
+        long syncedThrough = -1L;
+        try {
+            if (groupCommitWindowNanos > 0) {
+                LockSupport.parkNanos(groupCommitWindowNanos);
+            }
+
+            final long targetSequence;
+            final long batchSize;
+            synchronized (syncMonitor) {
+                targetSequence = writeSequence;
+                batchSize = targetSequence - syncedSequence;
+            }
+
+            final long syncStart = System.nanoTime();
+            journal.fsync();
+            syncListener.onSync(PARTITION_INDEX);
+            recordSync(batchSize, System.nanoTime() - syncStart);
+
+            syncedThrough = targetSequence;
+        } finally {
+            synchronized (syncMonitor) {
+                // If the sync failed, any thread that is waiting will become responsible for the next sync attempt.
+                syncedSequence = Math.max(syncedSequence, syncedThrough);
+                syncInProgress = false;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void recordSync(final long batchSize, final long syncNanos) {
+        synchronized (syncMonitor) {
+            syncCount++;
+            syncedUpdateCount += batchSize;
+            maxBatchSize = Math.max(maxBatchSize, batchSize);
+            totalSyncNanos += syncNanos;
+            maxSyncNanos = Math.max(maxSyncNanos, syncNanos);
+        }
+    }
+
+    /**
+     * @return statistics about the syncs that have been performed on behalf of updates that requested a sync
+     */
+    public SyncStatistics getSyncStatistics() {
+        synchronized (syncMonitor) {
+            return new StandardSyncStatistics(syncCount, syncedUpdateCount, maxBatchSize, totalSyncNanos, maxSyncNanos);
+        }
+    }
+
     @Override
     public synchronized Collection<T> recoverRecords() throws IOException {
         if (recovered) {
@@ -325,6 +443,7 @@ public class SequentialAccessWriteAheadLog<T> implements WriteAheadRepository<T>
         final long millis = TimeUnit.NANOSECONDS.toMillis(totalNanos);
         logger.info("Checkpointed Write-Ahead Log with {} Records and {} Swap Files in {} milliseconds (Stop-the-world time = {} milliseconds), max Transaction ID {}",
                 snapshotCapture.getRecords().size(), snapshotCapture.getSwapLocations().size(), millis, stopTheWorldMillis, snapshotCapture.getMaxTransactionId());
+        logger.debug("Journal sync statistics for Write-Ahead Log at {}: {}", storageDirectory, getSyncStatistics());
 
         return snapshotCapture.getRecords().size();
     }
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.wali;
+
+public class StandardSyncStatistics implements SyncStatistics {
+    private final long syncCount;
+    private final long syncedUpdateCount;
+    private final long maxBatchSize;
+    private final long totalSyncNanos;
+    private final long maxSyncNanos;
+
+    public StandardSyncStatistics(final long syncCount, final long syncedUpdateCount, final long maxBatchSize, final long totalSyncNanos, final long maxSyncNanos) {
+        this.syncCount = syncCount;
+        this.syncedUpdateCount = syncedUpdateCount;
+        this.maxBatchSize = maxBatchSize;
+        this.totalSyncNanos = totalSyncNanos;
+        this.maxSyncNanos = maxSyncNanos;
+    }
+
+    @Override
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    @Override
+    public long getSyncedUpdateCount() {
+        return syncedUpdateCount;
+    }
+
+    @Override
+    public long getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public double getAverageBatchSize() {
+        return syncCount == 0 ? 0D : (double) syncedUpdateCount / syncCount;
+    }
+
+    @Override
+    public long getTotalSyncNanos() {
+        return totalSyncNanos;
+    }
+
+    @Override
+    public long getMaxSyncNanos() {
+        return maxSyncNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncStatistics[syncs=" + syncCount + ", syncedUpdates=" + syncedUpdateCount + ", maxBatchSize=" + maxBatchSize
+            + ", totalSyncNanos=" + totalSyncNanos + ", maxSyncNanos=" + maxSyncNanos + "]";
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.wali;
+
+public interface SyncStatistics {
+    /**
+     * @return the number of times that the journal has been synced to disk on behalf of updates that requested a sync
+     */
+    long getSyncCount();
+
+    /**
+     * @return the number of updates that have been made durable by those syncs
+     */
+    long getSyncedUpdateCount();
+
+    /**
+     * @return the largest number of updates that were made durable by a single sync
+     */
+    long getMaxBatchSize();
+
+    /**
+     * @return the average number of updates that were made durable by a single sync, or 0 if no sync has occurred
+     */
+    double getAverageBatchSize();
+
+    /**
+     * @return the total amount of time, in nanoseconds, that was spent syncing the journal
+     */
+    long getTotalSyncNanos();
+
+    /**
+     * @return the longest amount of time, in nanoseconds, that a single sync of the journal took
+     */
+    long getMaxSyncNanos();
+}
@@ -41,6 +41,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -187,6 +190,64 @@ public class TestSequentialAccessWriteAheadLog {
         assertEquals(expected, new HashSet<>(recovered));
     }
 
+    @Test
+    public void testSyncStatisticsWithoutGroupCommit() throws IOException {
+        final SequentialAccessWriteAheadLog<DummyRecord> repo = createWriteRepo();
+
+        for (int i = 0; i < 10; i++) {
+            repo.update(Collections.singleton(new DummyRecord(String.valueOf(i), UpdateType.CREATE)), true);
+        }
+        repo.update(Collections.singleton(new DummyRecord("10", UpdateType.CREATE)), false);
+
+        final SyncStatistics statistics = repo.getSyncStatistics();
+        assertEquals(10, statistics.getSyncCount());
+        assertEquals(10, statistics.getSyncedUpdateCount());
+        assertEquals(1, statistics.getMaxBatchSize());
+        repo.shutdown();
+    }
+
+    @Test(timeout = 30000)
+    public void testGroupCommitCoalescesConcurrentSyncs() throws Exception {
+        final SequentialAccessWriteAheadLog<DummyRecord> repo = createWriteRepo(new DummyRecordSerde(), 5L, TimeUnit.MILLISECONDS);
+
+        final int numThreads = 16;
+        final int updatesPerThread = 50;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        final Set<DummyRecord> expected = Collections.synchronizedSet(new HashSet<>());
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int threadIndex = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < updatesPerThread; i++) {
+                        final DummyRecord record = new DummyRecord(threadIndex + "-" + i, UpdateType.CREATE);
+                        repo.update(Collections.singleton(record), true);
+                        expected.add(record);
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final SyncStatistics statistics = repo.getSyncStatistics();
+        assertEquals(numThreads * updatesPerThread, statistics.getSyncedUpdateCount());
+        assertTrue(statistics.getSyncCount() < numThreads * updatesPerThread);
+        assertTrue(statistics.getMaxBatchSize() > 1);
+        repo.shutdown();
+
+        final SequentialAccessWriteAheadLog<DummyRecord> recoveryRepo = createRecoveryRepo();
+        final Collection<DummyRecord> recovered = recoveryRepo.recoverRecords();
+        assertEquals(expected, new HashSet<>(recovered));
+    }
+
     private SequentialAccessWriteAheadLog<DummyRecord> createRecoveryRepo() throws IOException {
         final File targetDir = new File("target");
         final File storageDir = new File(targetDir, testName.getMethodName());
@@ -203,13 +264,17 @@ public class TestSequentialAccessWriteAheadLog {
     }
 
     private SequentialAccessWriteAheadLog<DummyRecord> createWriteRepo(final DummyRecordSerde serde) throws IOException {
+        return createWriteRepo(serde, -1L, TimeUnit.MILLISECONDS);
+    }
+
+    private SequentialAccessWriteAheadLog<DummyRecord> createWriteRepo(final DummyRecordSerde serde, final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
         final File targetDir = new File("target");
         final File storageDir = new File(targetDir, testName.getMethodName());
         deleteRecursively(storageDir);
         assertTrue(storageDir.mkdirs());
 
         final SerDeFactory<DummyRecord> serdeFactory = new SingletonSerDeFactory<>(serde);
-        final SequentialAccessWriteAheadLog<DummyRecord> repo = new SequentialAccessWriteAheadLog<>(storageDir, serdeFactory);
+        final SequentialAccessWriteAheadLog<DummyRecord> repo = new SequentialAccessWriteAheadLog<>(storageDir, serdeFactory, null, groupCommitWindow, timeUnit);
 
         final Collection<DummyRecord> recovered = repo.recoverRecords();
         assertNotNull(recovered);
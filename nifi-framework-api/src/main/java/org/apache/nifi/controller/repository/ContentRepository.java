@@ -105,6 +105,18 @@ public interface ContentRepository {
      */
     int incrementClaimaintCount(ContentClaim claim);
 
+    /**
+     * Increments the number of claimants for the given claim, but only if the claim is already referenced by at least one claimant.
+     * This allows content that is already stored to be shared with another FlowFile without the risk of the content being destroyed
+     * concurrently. Repositories that do not support sharing content in this way return <code>false</code>.
+     *
+     * @param claim to increment
+     * @return <code>true</code> if the number of claimants was incremented, <code>false</code> otherwise
+     */
+    default boolean incrementClaimantCountIfReferenced(ContentClaim claim) {
+        return false;
+    }
+
     /**
      * Obtains the current number of claimants for the given claim
      *
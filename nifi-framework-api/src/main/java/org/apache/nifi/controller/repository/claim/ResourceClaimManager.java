@@ -90,6 +90,22 @@ public interface ResourceClaimManager {
      */
     int incrementClaimantCount(ResourceClaim claim, boolean newClaim);
 
+    /**
+     * Increases by 1 the count of how many FlowFiles hold a claim to a
+     * particular piece of FlowFile content, but only if at least one
+     * FlowFile already holds a claim to it. Checking the count and
+     * incrementing it are performed atomically, so a ResourceClaim that is
+     * no longer referenced, and may therefore be destroyed at any time, is
+     * never claimed again by this method. Managers that cannot perform the
+     * check and increment atomically return <code>false</code>.
+     *
+     * @param claim to increment
+     * @return <code>true</code> if the count was incremented, <code>false</code> if the claim is not referenced
+     */
+    default boolean incrementClaimantCountIfReferenced(ResourceClaim claim) {
+        return false;
+    }
+
     /**
      * Indicates that the given ResourceClaim can now be destroyed by the
      * appropriate Content Repository. This should be done only after it is
@@ -35,7 +35,7 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.nifi.serialization.SimpleRecordSchema;
 import org.apache.nifi.serialization.record.DataType;
-import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.Record;
 import org.apache.nifi.serialization.record.RecordField;
 import org.apache.nifi.serialization.record.RecordFieldType;
@@ -580,8 +580,9 @@ public class AvroTypeUtil {
         final GenericRecord rec = new GenericData.Record(avroSchema);
         final RecordSchema recordSchema = record.getSchema();
 
-        for (final RecordField recordField : recordSchema.getFields()) {
-            final Object rawValue = record.getValue(recordField);
+        for (int i = 0; i < recordSchema.getFieldCount(); i++) {
+            final RecordField recordField = recordSchema.getField(i);
+            final Object rawValue = record.getValue(i);
 
             Pair<String, Field> fieldPair = lookupField(avroSchema, recordField);
             final String fieldName = fieldPair.getLeft();
@@ -846,11 +847,38 @@ public class AvroTypeUtil {
     }
 
     public static Map<String, Object> convertAvroRecordToMap(final GenericRecord avroRecord, final RecordSchema recordSchema, final Charset charset) {
-        final Map<String, Object> values = new HashMap<>(recordSchema.getFieldCount());
+        final Object[] values = convertAvroRecordToValues(avroRecord, recordSchema, charset);
 
-        for (final RecordField recordField : recordSchema.getFields()) {
+        final Map<String, Object> map = new HashMap<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            map.put(recordSchema.getField(i).getFieldName(), values[i]);
+        }
+
+        return map;
+    }
+
+    public static Object[] convertAvroRecordToValues(final GenericRecord avroRecord, final RecordSchema recordSchema) {
+        return convertAvroRecordToValues(avroRecord, recordSchema, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Converts the given Avro record into the values of a Record, ordered in the same way as the fields of the given schema so that
+     * they can be used to create an {@link ArrayRecord}.
+     */
+    public static Object[] convertAvroRecordToValues(final GenericRecord avroRecord, final RecordSchema recordSchema, final Charset charset) {
+        final Schema avroSchema = avroRecord.getSchema();
+        final Object[] values = new Object[recordSchema.getFieldCount()];
+
+        for (int i = 0; i < values.length; i++) {
+            final RecordField recordField = recordSchema.getField(i);
+            final String fieldName = recordField.getFieldName();
+
+            final Field avroField = avroSchema.getField(fieldName);
+            if (avroField == null) {
+                continue;
+            }
 
-            Object value = avroRecord.get(recordField.getFieldName());
+            Object value = avroRecord.get(avroField.pos());
             if (value == null) {
                 for (final String alias : recordField.getAliases()) {
                     value = avroRecord.get(alias);
@@ -860,23 +888,14 @@ public class AvroTypeUtil {
                 }
             }
 
-            final String fieldName = recordField.getFieldName();
             try {
-            final Field avroField = avroRecord.getSchema().getField(fieldName);
-            if (avroField == null) {
-                values.put(fieldName, null);
-                continue;
-            }
-
-            final Schema fieldSchema = avroField.schema();
-            final Object rawValue = normalizeValue(value, fieldSchema, fieldName);
-
-            final DataType desiredType = recordField.getDataType();
-            final Object coercedValue = DataTypeUtils.convertType(rawValue, desiredType, fieldName, charset);
+                final Schema fieldSchema = avroField.schema();
+                final Object rawValue = normalizeValue(value, fieldSchema, fieldName);
 
-            values.put(fieldName, coercedValue);
+                final DataType desiredType = recordField.getDataType();
+                values[i] = DataTypeUtils.convertType(rawValue, desiredType, fieldName, charset);
             } catch (Exception ex) {
-                logger.debug("fail to convert field " + fieldName, ex );
+                logger.debug("fail to convert field " + fieldName, ex);
                 throw ex;
             }
         }
@@ -1021,14 +1040,14 @@ public class AvroTypeUtil {
                 final GenericData.Record record = (GenericData.Record) value;
                 final Schema recordSchema = record.getSchema();
                 final List<Field> recordFields = recordSchema.getFields();
-                final Map<String, Object> values = new HashMap<>(recordFields.size());
+                // The fields of the child schema are created in the same order as the fields of the Avro schema
+                final Object[] values = new Object[recordFields.size()];
                 for (final Field field : recordFields) {
-                    final Object avroFieldValue = record.get(field.name());
-                    final Object fieldValue = normalizeValue(avroFieldValue, field.schema(), fieldName + "/" + field.name());
-                    values.put(field.name(), fieldValue);
+                    final Object avroFieldValue = record.get(field.pos());
+                    values[field.pos()] = normalizeValue(avroFieldValue, field.schema(), fieldName + "/" + field.name());
                 }
                 final RecordSchema childSchema = AvroTypeUtil.createSchema(recordSchema, false);
-                return new MapRecord(childSchema, values);
+                return new ArrayRecord(childSchema, values);
             case BYTES:
                 final ByteBuffer bb = (ByteBuffer) value;
                 final LogicalType logicalType = avroSchema.getLogicalType();
@@ -37,7 +37,6 @@ import org.apache.nifi.groups.ProcessGroup;
 import org.apache.nifi.processor.FlowFileFilter;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.remote.RemoteGroupPort;
-import org.apache.nifi.scheduling.SchedulingStrategy;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -146,16 +145,12 @@ public final class StandardConnection implements Connection, ConnectionEventList
 
     @Override
     public void triggerDestinationEvent() {
-        if (getDestination().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
-            scheduler.registerEvent(getDestination());
-        }
+        scheduler.registerEvent(getDestination());
     }
 
     @Override
     public void triggerSourceEvent() {
-        if (getSource().getSchedulingStrategy() == SchedulingStrategy.EVENT_DRIVEN) {
-            scheduler.registerEvent(getSource());
-        }
+        scheduler.registerEvent(getSource());
     }
 
     @Override
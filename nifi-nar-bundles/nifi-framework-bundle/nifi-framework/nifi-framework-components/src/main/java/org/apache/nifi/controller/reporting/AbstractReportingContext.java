@@ -18,7 +18,7 @@
 package org.apache.nifi.controller.reporting;
 
 import org.apache.nifi.attribute.expression.language.PreparedQuery;
-import org.apache.nifi.attribute.expression.language.Query;
+import org.apache.nifi.attribute.expression.language.StandardExpressionLanguageCompiler;
 import org.apache.nifi.attribute.expression.language.StandardPropertyValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
@@ -68,7 +68,7 @@ public abstract class AbstractReportingContext implements ReportingContext {
                 value = desc.getDefaultValue();
             }
 
-            final PreparedQuery pq = Query.prepare(value);
+            final PreparedQuery pq = StandardExpressionLanguageCompiler.prepare(value);
             preparedQueries.put(desc, pq);
         }
     }
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.connectable.Connection;
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Scratch collections that a {@link StandardProcessSession} needs only while it is checkpointing or committing. Every commit
+ * otherwise allocates several maps and sets, along with a List per destination queue and a BitSet per FlowFile, all of which become
+ * garbage as soon as the commit completes. Because a thread commits only one session at a time, these collections are kept
+ * per-thread and cleared, rather than re-allocated, for each commit.
+ * </p>
+ *
+ * <p>
+ * A state is obtained via {@link #acquire()} and must be returned via {@link #release()} once the commit no longer references any of
+ * its collections. If the thread's state is already in use, for instance because a session is committed from within another session's
+ * commit, a new state is returned that is simply discarded upon release. Collections that grew unusually large are discarded upon
+ * release as well, so that a single large commit does not pin a large amount of heap to the thread.
+ * </p>
+ *
+ * <b>Not Thread Safe</b> - each instance is confined to the thread that acquired it.
+ */
+final class SessionCommitState {
+    static final int MAX_RETAINED_SIZE = 10_000;
+
+    private static final ThreadLocal<SessionCommitState> threadLocalState = ThreadLocal.withInitial(SessionCommitState::new);
+
+    private final List<Connection> destinations = new ArrayList<>();
+    private Map<Long, StandardRepositoryRecord> recordsToAdd = new HashMap<>();
+    private Map<FlowFileQueue, List<FlowFileRecord>> flowFilesPerQueue = new HashMap<>();
+    private Set<ProvenanceEventRecord> eventsToSubmit = new LinkedHashSet<>();
+    private Map<String, BitSet> eventTypesPerFlowFileId = new HashMap<>();
+    private Map<String, FlowFileRecord> flowFilesByUuid = new HashMap<>();
+
+    private final List<List<FlowFileRecord>> flowFileListPool = new ArrayList<>();
+    private int flowFileListsInUse = 0;
+    private final List<BitSet> bitSetPool = new ArrayList<>();
+    private int bitSetsInUse = 0;
+
+    private boolean inUse = false;
+
+    /**
+     * @return the current thread's commit state if it is not already in use, otherwise a new commit state
+     */
+    static SessionCommitState acquire() {
+        final SessionCommitState state = threadLocalState.get();
+        if (state.inUse) {
+            final SessionCommitState nested = new SessionCommitState();
+            nested.inUse = true;
+            return nested;
+        }
+
+        state.inUse = true;
+        return state;
+    }
+
+    /**
+     * Clears all collections so that they may be used for the next commit on this thread. After this method is called, none of the
+     * collections that were obtained from this state may be used.
+     */
+    void release() {
+        destinations.clear();
+        recordsToAdd = clear(recordsToAdd);
+        eventsToSubmit = clear(eventsToSubmit);
+        eventTypesPerFlowFileId = clear(eventTypesPerFlowFileId);
+        flowFilesByUuid = clear(flowFilesByUuid);
+        flowFilesPerQueue = clear(flowFilesPerQueue);
+
+        for (int i = 0; i < flowFileListsInUse; i++) {
+            final List<FlowFileRecord> flowFiles = flowFileListPool.get(i);
+            if (flowFiles.size() > MAX_RETAINED_SIZE) {
+                flowFileListPool.set(i, new ArrayList<>());
+            } else {
+                flowFiles.clear();
+            }
+        }
+        flowFileListsInUse = 0;
+        if (flowFileListPool.size() > MAX_RETAINED_SIZE) {
+            flowFileListPool.subList(MAX_RETAINED_SIZE, flowFileListPool.size()).clear();
+        }
+
+        for (int i = 0; i < bitSetsInUse; i++) {
+            bitSetPool.get(i).clear();
+        }
+        bitSetsInUse = 0;
+        if (bitSetPool.size() > MAX_RETAINED_SIZE) {
+            bitSetPool.subList(MAX_RETAINED_SIZE, bitSetPool.size()).clear();
+        }
+
+        inUse = false;
+    }
+
+    private static <K, V> Map<K, V> clear(final Map<K, V> map) {
+        if (map.size() > MAX_RETAINED_SIZE) {
+            return new HashMap<>();
+        }
+
+        map.clear();
+        return map;
+    }
+
+    private static <T> Set<T> clear(final Set<T> set) {
+        if (set.size() > MAX_RETAINED_SIZE) {
+            return new LinkedHashSet<>();
+        }
+
+        set.clear();
+        return set;
+    }
+
+    /**
+     * Returns a copy of the given connections, so that the copy may be modified and will not reflect any concurrent changes to the flow.
+     * The returned List is reused by each call to this method.
+     *
+     * @param connections the connections for a Relationship
+     * @return a List containing the given connections
+     */
+    List<Connection> getDestinations(final Collection<Connection> connections) {
+        destinations.clear();
+        for (final Connection connection : connections) {
+            destinations.add(connection);
+        }
+
+        return destinations;
+    }
+
+    /**
+     * @return an empty Map into which records that are cloned during a checkpoint can be placed
+     */
+    Map<Long, StandardRepositoryRecord> getRecordsToAdd() {
+        return recordsToAdd;
+    }
+
+    /**
+     * @return an empty, insertion-ordered Set of the Provenance Events to register with the Provenance Repository
+     */
+    Set<ProvenanceEventRecord> getEventsToSubmit() {
+        return eventsToSubmit;
+    }
+
+    /**
+     * @return an empty Map of FlowFile UUID to the most recent version of that FlowFile
+     */
+    Map<String, FlowFileRecord> getFlowFilesByUuid() {
+        return flowFilesByUuid;
+    }
+
+    /**
+     * Adds the given FlowFile to the list of FlowFiles that are to be transferred to the given queue
+     *
+     * @param queue the destination queue
+     * @param flowFile the FlowFile to transfer
+     */
+    void addFlowFileForQueue(final FlowFileQueue queue, final FlowFileRecord flowFile) {
+        List<FlowFileRecord> flowFiles = flowFilesPerQueue.get(queue);
+        if (flowFiles == null) {
+            if (flowFileListsInUse == flowFileListPool.size()) {
+                flowFileListPool.add(new ArrayList<>());
+            }
+
+            flowFiles = flowFileListPool.get(flowFileListsInUse++);
+            flowFilesPerQueue.put(queue, flowFiles);
+        }
+
+        flowFiles.add(flowFile);
+    }
+
+    /**
+     * @return a Map of each destination queue to the FlowFiles that were added via {@link #addFlowFileForQueue(FlowFileQueue, FlowFileRecord)}.
+     *         The lists are reused for subsequent commits, so the queue must not retain a reference to them.
+     */
+    Map<FlowFileQueue, List<FlowFileRecord>> getFlowFilesPerQueue() {
+        return flowFilesPerQueue;
+    }
+
+    /**
+     * Records that an event of the given type has been registered for the FlowFile with the given UUID
+     *
+     * @param flowFileUuid the UUID of the FlowFile
+     * @param eventType the type of event
+     */
+    void addEventType(final String flowFileUuid, final ProvenanceEventType eventType) {
+        BitSet eventTypes = eventTypesPerFlowFileId.get(flowFileUuid);
+        if (eventTypes == null) {
+            if (bitSetsInUse == bitSetPool.size()) {
+                bitSetPool.add(new BitSet());
+            }
+
+            eventTypes = bitSetPool.get(bitSetsInUse++);
+            eventTypesPerFlowFileId.put(flowFileUuid, eventTypes);
+        }
+
+        eventTypes.set(eventType.ordinal());
+    }
+
+    /**
+     * @param flowFileUuid the UUID of the FlowFile
+     * @return the types of events that have been registered for the FlowFile, as ordinals of {@link ProvenanceEventType}, or <code>null</code>
+     *         if no events have been registered for it
+     */
+    BitSet getEventTypes(final String flowFileUuid) {
+        return eventTypesPerFlowFileId.get(flowFileUuid);
+    }
+
+    boolean isInUse() {
+        return inUse;
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.nifi.controller.queue.FlowFileQueue;
 import org.apache.nifi.controller.queue.QueueSize;
 import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.controller.repository.claim.ContentClaimWriteCache;
+import org.apache.nifi.controller.repository.claim.DeduplicatedContent;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.io.ContentClaimInputStream;
 import org.apache.nifi.controller.repository.io.DisableOnCloseInputStream;
@@ -126,7 +127,8 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
     private final TaskTermination taskTermination;
     private final Map<FlowFile, Integer> readRecursionSet = new HashMap<>();// set used to track what is currently being operated on to prevent logic failures if recursive calls occurring
     private final Set<FlowFile> writeRecursionSet = new HashSet<>();
-    private final Map<FlowFile, Path> deleteOnCommit = new HashMap<>();
+    // deleteOnCommit, generatedProvenanceEvents, and forkEventBuilders are empty for most sessions, so they are allocated only when first needed
+    private Map<FlowFile, Path> deleteOnCommit = Collections.emptyMap();
     private final long sessionId;
     private final String connectableDescription;
 
@@ -157,11 +159,11 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
     // maps a FlowFile to all Provenance Events that were generated for that FlowFile.
     // we do this so that if we generate a Fork event, for example, and then remove the event in the same
     // Session, we will not send that event to the Provenance Repository
-    private final Map<FlowFile, List<ProvenanceEventRecord>> generatedProvenanceEvents = new HashMap<>();
+    private Map<FlowFile, List<ProvenanceEventRecord>> generatedProvenanceEvents = Collections.emptyMap();
 
     // when Forks are generated for a single parent, we add the Fork event to this map, with the Key being the parent
     // so that we are able to aggregate many into a single Fork Event.
-    private final Map<FlowFile, ProvenanceEventBuilder> forkEventBuilders = new HashMap<>();
+    private Map<FlowFile, ProvenanceEventBuilder> forkEventBuilders = Collections.emptyMap();
 
     private Checkpoint checkpoint = null;
     private final ContentClaimWriteCache claimCache;
@@ -242,13 +244,25 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
             return;
         }
 
+        // validate that all records have a transfer relationship for them and if so determine the destination node and clone as necessary
+        final List<ProvenanceEventRecord> autoTerminatedEvents;
+        final SessionCommitState commitState = SessionCommitState.acquire();
+        try {
+            autoTerminatedEvents = checkpointRecords(commitState);
+        } finally {
+            commitState.release();
+        }
+
+        checkpoint.checkpoint(this, autoTerminatedEvents, copyCollections);
+    }
+
+    private List<ProvenanceEventRecord> checkpointRecords(final SessionCommitState commitState) {
         // any drop event that is the result of an auto-terminate should happen at the very end, so we keep the
         // records in a separate List so that they can be persisted to the Provenance Repo after all of the
         // Processor-reported events.
         List<ProvenanceEventRecord> autoTerminatedEvents = null;
 
-        // validate that all records have a transfer relationship for them and if so determine the destination node and clone as necessary
-        final Map<Long, StandardRepositoryRecord> toAdd = new HashMap<>();
+        final Map<Long, StandardRepositoryRecord> toAdd = commitState.getRecordsToAdd();
         for (final StandardRepositoryRecord record : records.values()) {
             if (record.isMarkedForDelete()) {
                 continue;
@@ -258,7 +272,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
                 rollback();
                 throw new FlowFileHandlingException(record.getCurrent() + " transfer relationship not specified");
             }
-            final List<Connection> destinations = new ArrayList<>(context.getConnections(relationship));
+            final List<Connection> destinations = commitState.getDestinations(context.getConnections(relationship));
             if (destinations.isEmpty() && !context.getConnectable().isAutoTerminated(relationship)) {
                 if (relationship != Relationship.SELF) {
                     rollback();
@@ -320,9 +334,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         }
 
         records.putAll(toAdd);
-        toAdd.clear();
-
-        checkpoint.checkpoint(this, autoTerminatedEvents, copyCollections);
+        return autoTerminatedEvents;
     }
 
     @Override
@@ -388,25 +400,24 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
             final long updateEventRepositoryNanos = updateEventRepositoryFinishNanos - flowFileRepoUpdateFinishNanos;
 
             // transfer the flowfiles to the connections' queues.
-            final Map<FlowFileQueue, Collection<FlowFileRecord>> recordMap = new HashMap<>();
-            for (final StandardRepositoryRecord record : checkpoint.records.values()) {
-                if (record.isMarkedForAbort() || record.isMarkedForDelete()) {
-                    continue; // these don't need to be transferred
-                }
-                // record.getCurrent() will return null if this record was created in this session --
-                // in this case, we just ignore it, and it will be cleaned up by clearing the records map.
-                if (record.getCurrent() != null) {
-                    Collection<FlowFileRecord> collection = recordMap.get(record.getDestination());
-                    if (collection == null) {
-                        collection = new ArrayList<>();
-                        recordMap.put(record.getDestination(), collection);
+            final SessionCommitState commitState = SessionCommitState.acquire();
+            try {
+                for (final StandardRepositoryRecord record : checkpoint.records.values()) {
+                    if (record.isMarkedForAbort() || record.isMarkedForDelete()) {
+                        continue; // these don't need to be transferred
+                    }
+                    // record.getCurrent() will return null if this record was created in this session --
+                    // in this case, we just ignore it, and it will be cleaned up by clearing the records map.
+                    if (record.getCurrent() != null) {
+                        commitState.addFlowFileForQueue(record.getDestination(), record.getCurrent());
                     }
-                    collection.add(record.getCurrent());
                 }
-            }
 
-            for (final Map.Entry<FlowFileQueue, Collection<FlowFileRecord>> entry : recordMap.entrySet()) {
-                entry.getKey().putAll(entry.getValue());
+                for (final Map.Entry<FlowFileQueue, List<FlowFileRecord>> entry : commitState.getFlowFilesPerQueue().entrySet()) {
+                    entry.getKey().putAll(entry.getValue());
+                }
+            } finally {
+                commitState.release();
             }
 
             final long enqueueFlowFileFinishNanos = System.nanoTime();
@@ -567,24 +578,27 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         return combined;
     }
 
-    private void addEventType(final Map<String, BitSet> map, final String id, final ProvenanceEventType eventType) {
-        final BitSet eventTypes = map.computeIfAbsent(id, key -> new BitSet());
-        eventTypes.set(eventType.ordinal());
-    }
-
     private StandardRepositoryRecord getRecord(final FlowFile flowFile) {
         return records.get(flowFile.getId());
     }
 
     protected void updateProvenanceRepo(final Checkpoint checkpoint) {
+        final SessionCommitState commitState = SessionCommitState.acquire();
+        try {
+            updateProvenanceRepo(checkpoint, commitState);
+        } finally {
+            commitState.release();
+        }
+    }
+
+    private void updateProvenanceRepo(final Checkpoint checkpoint, final SessionCommitState commitState) {
         // Update Provenance Repository
         final ProvenanceEventRepository provenanceRepo = context.getProvenanceRepository();
 
         // We need to de-dupe the events that we've created and those reported to the provenance reporter,
         // in case the Processor developer submitted the same events to the reporter. So we use a LinkedHashSet
         // for this, so that we are able to ensure that the events are submitted in the proper order.
-        final Set<ProvenanceEventRecord> recordsToSubmit = new LinkedHashSet<>();
-        final Map<String, BitSet> eventTypesPerFlowFileId = new HashMap<>();
+        final Set<ProvenanceEventRecord> recordsToSubmit = commitState.getEventsToSubmit();
 
         final Set<ProvenanceEventRecord> processorGenerated = checkpoint.reportedEvents;
 
@@ -608,10 +622,10 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
 
                 // Register the FORK event for each child and each parent.
                 for (final String childUuid : event.getChildUuids()) {
-                    addEventType(eventTypesPerFlowFileId, childUuid, event.getEventType());
+                    commitState.addEventType(childUuid, event.getEventType());
                 }
                 for (final String parentUuid : event.getParentUuids()) {
-                    addEventType(eventTypesPerFlowFileId, parentUuid, event.getEventType());
+                    commitState.addEventType(parentUuid, event.getEventType());
                 }
             }
         }
@@ -622,7 +636,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
                 final ProvenanceEventType eventType = event.getEventType();
                 if (eventType == ProvenanceEventType.JOIN) {
                     recordsToSubmit.add(event);
-                    addEventType(eventTypesPerFlowFileId, event.getFlowFileUuid(), event.getEventType());
+                    commitState.addEventType(event.getFlowFileUuid(), event.getEventType());
                 }
             }
         }
@@ -640,12 +654,12 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
             }
 
             recordsToSubmit.add(event);
-            addEventType(eventTypesPerFlowFileId, event.getFlowFileUuid(), event.getEventType());
+            commitState.addEventType(event.getFlowFileUuid(), event.getEventType());
 
             final List<String> childUuids = event.getChildUuids();
             if (childUuids != null) {
                 for (final String childUuid : childUuids) {
-                    addEventType(eventTypesPerFlowFileId, childUuid, event.getEventType());
+                    commitState.addEventType(childUuid, event.getEventType());
                 }
             }
         }
@@ -662,7 +676,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
                 }
 
                 recordsToSubmit.add(event);
-                addEventType(eventTypesPerFlowFileId, event.getFlowFileUuid(), event.getEventType());
+                commitState.addEventType(event.getFlowFileUuid(), event.getEventType());
             }
         }
 
@@ -683,12 +697,12 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
             final boolean newFlowFile = repoRecord.getOriginal() == null;
             if (contentChanged && !newFlowFile) {
                 recordsToSubmit.add(provenanceReporter.build(curFlowFile, ProvenanceEventType.CONTENT_MODIFIED).build());
-                addEventType(eventTypesPerFlowFileId, flowFileId, ProvenanceEventType.CONTENT_MODIFIED);
+                commitState.addEventType(flowFileId, ProvenanceEventType.CONTENT_MODIFIED);
                 eventAdded = true;
             }
 
             if (checkpoint.createdFlowFiles.contains(flowFileId)) {
-                final BitSet registeredTypes = eventTypesPerFlowFileId.get(flowFileId);
+                final BitSet registeredTypes = commitState.getEventTypes(flowFileId);
                 boolean creationEventRegistered = false;
                 if (registeredTypes != null) {
                     if (registeredTypes.get(ProvenanceEventType.CREATE.ordinal())
@@ -713,9 +727,9 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
                 // created for the FlowFile. We do this because all events contain both the
                 // newest and the original attributes, so generating an ATTRIBUTES_MODIFIED
                 // event is redundant if another already exists.
-                if (!eventTypesPerFlowFileId.containsKey(flowFileId)) {
+                if (commitState.getEventTypes(flowFileId) == null) {
                     recordsToSubmit.add(provenanceReporter.build(curFlowFile, ProvenanceEventType.ATTRIBUTES_MODIFIED).build());
-                    addEventType(eventTypesPerFlowFileId, flowFileId, ProvenanceEventType.ATTRIBUTES_MODIFIED);
+                    commitState.addEventType(flowFileId, ProvenanceEventType.ATTRIBUTES_MODIFIED);
                 }
             }
         }
@@ -731,7 +745,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         // This is done in a similar veign to how Java 8's streams work, iterating over the events and returning a processed version
         // one-at-a-time as opposed to iterating over the entire Collection and putting the results in another Collection. However,
         // we don't want to change the Framework to require Java 8 at this time, because it's not yet as prevalent as we would desire
-        final Map<String, FlowFileRecord> flowFileRecordMap = new HashMap<>();
+        final Map<String, FlowFileRecord> flowFileRecordMap = commitState.getFlowFilesByUuid();
         for (final StandardRepositoryRecord repoRecord : checkpoint.records.values()) {
             final FlowFileRecord flowFile = repoRecord.getCurrent();
             flowFileRecordMap.put(flowFile.getAttribute(CoreAttributes.UUID.key()), flowFile);
@@ -1139,11 +1153,16 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
      *
      * @param claim claim to destroy
      */
-    private void destroyContent(final ContentClaim claim, final StandardRepositoryRecord repoRecord) {
-        if (claim == null) {
+    private void destroyContent(final ContentClaim writtenClaim, final StandardRepositoryRecord repoRecord) {
+        if (writtenClaim == null) {
             return;
         }
 
+        // If the content that was written was found to be identical to content that is already stored, the claim to the written
+        // Content Claim has already been released in favor of a claim to the stored content, so that is the claim to destroy.
+        final DeduplicatedContent deduplicated = claimCache.getDeduplicatedContent(writtenClaim);
+        final ContentClaim claim = deduplicated == null ? writtenClaim : deduplicated.getContentClaim();
+
         final int decrementedClaimCount = context.getContentRepository().decrementClaimantCount(claim);
         boolean removed = false;
         if (decrementedClaimCount <= 0) {
@@ -1190,6 +1209,27 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         processingStartTime = System.nanoTime();
     }
 
+    private Map<FlowFile, Path> getDeleteOnCommit() {
+        if (deleteOnCommit == Collections.<FlowFile, Path> emptyMap()) {
+            deleteOnCommit = new HashMap<>();
+        }
+        return deleteOnCommit;
+    }
+
+    private Map<FlowFile, List<ProvenanceEventRecord>> getGeneratedProvenanceEvents() {
+        if (generatedProvenanceEvents == Collections.<FlowFile, List<ProvenanceEventRecord>> emptyMap()) {
+            generatedProvenanceEvents = new HashMap<>();
+        }
+        return generatedProvenanceEvents;
+    }
+
+    private Map<FlowFile, ProvenanceEventBuilder> getForkEventBuilders() {
+        if (forkEventBuilders == Collections.<FlowFile, ProvenanceEventBuilder> emptyMap()) {
+            forkEventBuilders = new HashMap<>();
+        }
+        return forkEventBuilders;
+    }
+
     private void acknowledgeRecords() {
         final Iterator<Map.Entry<FlowFileQueue, Set<FlowFileRecord>>> itr = unacknowledgedFlowFiles.entrySet().iterator();
         while (itr.hasNext()) {
@@ -1291,7 +1331,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
             }
 
             if (copy != null) {
-                newOwner.forkEventBuilders.put(eventFlowFile, copy);
+                newOwner.getForkEventBuilders().put(eventFlowFile, copy);
             }
         }
 
@@ -1347,7 +1387,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
 
             final List<ProvenanceEventRecord> events = generatedProvenanceEvents.remove(flowFile);
             if (events != null) {
-                newOwner.generatedProvenanceEvents.put(flowFile, events);
+                newOwner.getGeneratedProvenanceEvents().put(flowFile, events);
             }
 
             final ContentClaim currentClaim = repoRecord.getCurrentClaim();
@@ -1360,7 +1400,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
 
             final Path toDelete = deleteOnCommit.remove(flowFile);
             if (toDelete != null) {
-                newOwner.deleteOnCommit.put(flowFile, toDelete);
+                newOwner.getDeleteOnCommit().put(flowFile, toDelete);
             }
         }
 
@@ -1875,7 +1915,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
             eventBuilder.addParentFlowFile(parent);
 
             updateEventContentClaims(eventBuilder, parent, getRecord(parent));
-            forkEventBuilders.put(parent, eventBuilder);
+            getForkEventBuilders().put(parent, eventBuilder);
         }
 
         eventBuilder.addChildFlowFile(child);
@@ -1883,7 +1923,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
 
     private void registerJoinEvent(final FlowFile child, final Collection<FlowFile> parents) {
         final ProvenanceEventRecord eventRecord = provenanceReporter.generateJoinEvent(parents, child);
-        final List<ProvenanceEventRecord> existingRecords = generatedProvenanceEvents.computeIfAbsent(child, k -> new ArrayList<>());
+        final List<ProvenanceEventRecord> existingRecords = getGeneratedProvenanceEvents().computeIfAbsent(child, k -> new ArrayList<>());
         existingRecords.add(eventRecord);
     }
 
@@ -2721,15 +2761,15 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
                     }
 
                     flush();
-                    removeTemporaryClaim(record);
 
-                    final FlowFileRecord newFile = new StandardFlowFileRecord.Builder()
-                        .fromFlowFile(record.getCurrent())
-                        .contentClaim(updatedClaim)
-                        .contentClaimOffset(Math.max(0, updatedClaim.getLength() - bytesWritten))
-                        .size(bytesWritten)
-                        .build();
+                    // A deduplicating cache compares the content with stored content only when its stream is closed, so the stream must be closed
+                    // before the FlowFile is created. Otherwise, the stream is left open, as it always has been, until the session's cache is reset.
+                    if (claimCache.isDeduplicating()) {
+                        rawStream.close();
+                    }
+                    removeTemporaryClaim(record);
 
+                    final FlowFileRecord newFile = createWrittenFlowFile(record, updatedClaim, bytesWritten);
                     record.setWorking(newFile, true);
                 }
             };
@@ -2803,12 +2843,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         }
 
         removeTemporaryClaim(record);
-        final FlowFileRecord newFile = new StandardFlowFileRecord.Builder()
-            .fromFlowFile(record.getCurrent())
-            .contentClaim(newClaim)
-            .contentClaimOffset(Math.max(0, newClaim.getLength() - writtenToFlowFile))
-            .size(writtenToFlowFile)
-            .build();
+        final FlowFileRecord newFile = createWrittenFlowFile(record, newClaim, writtenToFlowFile);
 
         record.setWorking(newFile, true);
         return newFile;
@@ -2931,6 +2966,25 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         return newFile;
     }
 
+    /**
+     * Creates the FlowFile whose content is the content that was just written to the given Content Claim. If the Content Claim Write Cache
+     * found identical content that is already stored, the FlowFile references that content rather than the given Content Claim.
+     */
+    private FlowFileRecord createWrittenFlowFile(final StandardRepositoryRecord record, final ContentClaim claim, final long bytesWritten) {
+        final StandardFlowFileRecord.Builder builder = new StandardFlowFileRecord.Builder()
+            .fromFlowFile(record.getCurrent())
+            .size(bytesWritten);
+
+        final DeduplicatedContent deduplicated = claimCache.getDeduplicatedContent(claim);
+        if (deduplicated == null) {
+            builder.contentClaim(claim).contentClaimOffset(Math.max(0L, claim.getLength() - bytesWritten));
+        } else {
+            builder.contentClaim(deduplicated.getContentClaim()).contentClaimOffset(deduplicated.getOffset());
+        }
+
+        return builder.build();
+    }
+
     /**
      * Checks if the ContentClaim associated with this record should be removed,
      * since the record is about to be updated to point to a new content claim.
@@ -3069,12 +3123,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         }
 
         removeTemporaryClaim(record);
-        final FlowFileRecord newFile = new StandardFlowFileRecord.Builder()
-            .fromFlowFile(record.getCurrent())
-            .contentClaim(newClaim)
-            .contentClaimOffset(Math.max(0L, newClaim.getLength() - writtenToFlowFile))
-            .size(writtenToFlowFile)
-            .build();
+        final FlowFileRecord newFile = createWrittenFlowFile(record, newClaim, writtenToFlowFile);
 
         record.setWorking(newFile, true);
 
@@ -3127,7 +3176,7 @@ public class StandardProcessSession implements ProcessSession, ProvenanceEventEn
         record.setWorking(newFile, CoreAttributes.FILENAME.key(), source.toFile().getName(), true);
 
         if (!keepSourceFile) {
-            deleteOnCommit.put(newFile, source);
+            getDeleteOnCommit().put(newFile, source);
         }
 
         return newFile;
@@ -32,4 +32,28 @@ public interface ContentClaimWriteCache {
     void flush(ResourceClaim claim) throws IOException;
 
     void flush() throws IOException;
+
+    /**
+     * Indicates whether this cache may use identical content that is already stored in place of the content that is written to it. If so, the
+     * content written to a Content Claim is compared with stored content only when the OutputStream returned by {@link #write(ContentClaim)} is closed.
+     *
+     * @return <code>true</code> if this cache deduplicates content, <code>false</code> otherwise
+     */
+    default boolean isDeduplicating() {
+        return false;
+    }
+
+    /**
+     * Returns the location of identical content that was used instead of the content most recently written to the given Content Claim,
+     * if the cache deduplicates content and found such content. In that case, the content was not written to the given Content Claim,
+     * the caller's claim to the given Content Claim has been released, and the caller holds a claim to the returned Content Claim instead.
+     * This must be called after the OutputStream returned by {@link #write(ContentClaim)} has been closed and before the Content Claim is
+     * written to again.
+     *
+     * @param contentClaim the Content Claim that the content was written to
+     * @return the location of the identical content, or <code>null</code> if the content was written to the given Content Claim
+     */
+    default DeduplicatedContent getDeduplicatedContent(ContentClaim contentClaim) {
+        return null;
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.claim;
+
+/**
+ * The location of content that was found to be identical to content that was written through a {@link ContentClaimWriteCache}.
+ * Rather than storing the content again, the FlowFile that the content was written for references this location.
+ */
+public class DeduplicatedContent {
+    private final ContentClaim contentClaim;
+    private final long offset;
+
+    public DeduplicatedContent(final ContentClaim contentClaim, final long offset) {
+        this.contentClaim = contentClaim;
+        this.offset = offset;
+    }
+
+    /**
+     * @return the Content Claim that holds the content
+     */
+    public ContentClaim getContentClaim() {
+        return contentClaim;
+    }
+
+    /**
+     * @return the offset of the content within the Content Claim, which is to be used as the FlowFile's content claim offset
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "DeduplicatedContent[claim=" + contentClaim + ", offset=" + offset + "]";
+    }
+}
@@ -41,6 +41,7 @@ public class EventSumValue {
     private long bytesReceived = 0;
     private long bytesSent = 0;
     private long processingNanos = 0;
+    private long bytesAllocated = 0;
     private long aggregateLineageMillis = 0;
     private int invocations = 0;
     private Map<String, Long> counters;
@@ -70,6 +71,7 @@ public class EventSumValue {
         this.flowFilesSent += flowFileEvent.getFlowFilesSent();
         this.invocations += flowFileEvent.getInvocations();
         this.processingNanos += flowFileEvent.getProcessingNanoseconds();
+        this.bytesAllocated += flowFileEvent.getBytesAllocated();
 
         final Map<String, Long> eventCounters = flowFileEvent.getCounters();
         if (eventCounters != null) {
@@ -106,6 +108,7 @@ public class EventSumValue {
         event.setFlowFilesSent(flowFilesSent);
         event.setInvocations(invocations);
         event.setProcessingNanos(processingNanos);
+        event.setBytesAllocated(bytesAllocated);
         event.setCounters(this.counters == null ? Collections.emptyMap() : Collections.unmodifiableMap(this.counters));
         return event;
     }
@@ -131,6 +134,7 @@ public class EventSumValue {
             this.flowFilesSent += other.flowFilesSent;
             this.invocations += other.invocations;
             this.processingNanos += other.processingNanos;
+            this.bytesAllocated += other.bytesAllocated;
 
             final Map<String, Long> eventCounters = other.counters;
             if (eventCounters != null) {
@@ -169,6 +173,7 @@ public class EventSumValue {
             this.flowFilesSent -= other.flowFilesSent;
             this.invocations -= other.invocations;
             this.processingNanos -= other.processingNanos;
+            this.bytesAllocated -= other.bytesAllocated;
 
             final Map<String, Long> eventCounters = other.counters;
             if (eventCounters != null) {
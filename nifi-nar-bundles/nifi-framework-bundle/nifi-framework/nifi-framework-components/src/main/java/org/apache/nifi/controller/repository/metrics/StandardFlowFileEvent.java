@@ -32,6 +32,7 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
     private long bytesRead;
     private long bytesWritten;
     private long processingNanos;
+    private long bytesAllocated;
     private long aggregateLineageMillis;
     private int flowFilesReceived;
     private long bytesReceived;
@@ -124,6 +125,15 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         this.processingNanos = processingNanos;
     }
 
+    @Override
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    public void setBytesAllocated(final long bytesAllocated) {
+        this.bytesAllocated = bytesAllocated;
+    }
+
     @Override
     public int getInvocations() {
         return invocations;
@@ -206,6 +216,7 @@ public final class StandardFlowFileEvent implements FlowFileEvent, Cloneable {
         bytesRead += event.getBytesRead();
         bytesWritten += event.getBytesWritten();
         processingNanos += event.getProcessingNanoseconds();
+        bytesAllocated += event.getBytesAllocated();
         aggregateLineageMillis += event.getAggregateLineageMillis();
         flowFilesReceived += event.getFlowFilesReceived();
         bytesReceived += event.getBytesReceived();
@@ -17,7 +17,7 @@
 package org.apache.nifi.controller.service;
 
 import org.apache.nifi.attribute.expression.language.PreparedQuery;
-import org.apache.nifi.attribute.expression.language.Query;
+import org.apache.nifi.attribute.expression.language.StandardExpressionLanguageCompiler;
 import org.apache.nifi.attribute.expression.language.StandardPropertyValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
@@ -66,7 +66,7 @@ public class StandardConfigurationContext implements ConfigurationContext {
                 value = desc.getDefaultValue();
             }
 
-            final PreparedQuery pq = Query.prepare(value);
+            final PreparedQuery pq = StandardExpressionLanguageCompiler.prepare(value);
             preparedQueries.put(desc, pq);
         }
     }
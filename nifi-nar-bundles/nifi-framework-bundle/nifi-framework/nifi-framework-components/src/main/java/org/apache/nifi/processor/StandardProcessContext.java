@@ -19,6 +19,7 @@ package org.apache.nifi.processor;
 import org.apache.nifi.attribute.expression.language.PreparedQuery;
 import org.apache.nifi.attribute.expression.language.Query;
 import org.apache.nifi.attribute.expression.language.Query.Range;
+import org.apache.nifi.attribute.expression.language.StandardExpressionLanguageCompiler;
 import org.apache.nifi.attribute.expression.language.StandardPropertyValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.components.PropertyValue;
@@ -75,7 +76,7 @@ public class StandardProcessContext implements ProcessContext, ControllerService
             }
 
             if (value != null) {
-                final PreparedQuery pq = Query.prepare(value);
+                final PreparedQuery pq = StandardExpressionLanguageCompiler.prepare(value);
                 preparedQueries.put(desc, pq);
             }
         }
@@ -126,7 +127,7 @@ public class StandardProcessContext implements ProcessContext, ControllerService
     @Override
     public PropertyValue newPropertyValue(final String rawValue) {
         verifyTaskActive();
-        return new StandardPropertyValue(rawValue, this, procNode.getParameterLookup(), Query.prepareWithParametersPreEvaluated(rawValue), procNode.getVariableRegistry());
+        return new StandardPropertyValue(rawValue, this, procNode.getParameterLookup(), StandardExpressionLanguageCompiler.prepareWithParametersPreEvaluated(rawValue), procNode.getVariableRegistry());
     }
 
     @Override
@@ -91,7 +91,7 @@ public class StandardValidationContext extends AbstractValidationContext impleme
                 value = desc.getDefaultValue();
             }
 
-            final PreparedQuery pq = Query.prepare(value);
+            final PreparedQuery pq = StandardExpressionLanguageCompiler.prepare(value);
             preparedQueries.put(desc, pq);
         }
 
@@ -103,7 +103,7 @@ public class StandardValidationContext extends AbstractValidationContext impleme
 
     @Override
     public PropertyValue newPropertyValue(final String rawValue) {
-        return new StandardPropertyValue(rawValue, controllerServiceProvider, parameterContext, Query.prepareWithParametersPreEvaluated(rawValue), variableRegistry);
+        return new StandardPropertyValue(rawValue, controllerServiceProvider, parameterContext, StandardExpressionLanguageCompiler.prepareWithParametersPreEvaluated(rawValue), variableRegistry);
     }
 
     @Override
@@ -591,6 +591,7 @@ public abstract class AbstractEventAccess implements EventAccess {
             status.setBytesWritten(writtenBytes);
 
             status.setProcessingNanos(flowFileEvent.getProcessingNanoseconds());
+            status.setBytesAllocated(flowFileEvent.getBytesAllocated());
             status.setInvocations(flowFileEvent.getInvocations());
 
             status.setAverageLineageDuration(flowFileEvent.getAverageLineageMillis());
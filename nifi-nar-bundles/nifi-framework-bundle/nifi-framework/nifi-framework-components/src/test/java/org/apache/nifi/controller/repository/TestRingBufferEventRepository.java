@@ -48,6 +48,17 @@ public class TestRingBufferEventRepository {
         repo.close();
     }
 
+    @Test
+    public void testBytesAllocatedAggregated() throws IOException {
+        final FlowFileEventRepository repo = new RingBufferEventRepository(5);
+        repo.updateRepository(generateEvent(), "component1");
+        repo.updateRepository(generateEvent(), "component1");
+
+        final FlowFileEvent entry = repo.reportTransferEvents(System.currentTimeMillis()).getReportEntry("component1");
+        Assert.assertEquals(32768L, entry.getBytesAllocated());
+        repo.close();
+    }
+
     @Test
     public void testPurge() throws IOException {
         final FlowFileEventRepository repo = new RingBufferEventRepository(5);
@@ -123,6 +134,11 @@ public class TestRingBufferEventRepository {
                 return 234782;
             }
 
+            @Override
+            public long getBytesAllocated() {
+                return 16384;
+            }
+
             @Override
             public int getInvocations() {
                 return 1;
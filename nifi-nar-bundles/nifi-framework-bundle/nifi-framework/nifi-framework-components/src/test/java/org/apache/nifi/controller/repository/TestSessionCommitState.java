@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.controller.queue.FlowFileQueue;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestSessionCommitState {
+
+    private FlowFileRecord createFlowFile(final long id) {
+        return new StandardFlowFileRecord.Builder().id(id).addAttribute("uuid", "uuid-" + id).build();
+    }
+
+    @Test
+    public void testCollectionsReusedAfterRelease() {
+        final FlowFileQueue queue = Mockito.mock(FlowFileQueue.class);
+
+        final SessionCommitState state = SessionCommitState.acquire();
+        final Map<Long, StandardRepositoryRecord> recordsToAdd = state.getRecordsToAdd();
+        state.addFlowFileForQueue(queue, createFlowFile(1L));
+        state.addFlowFileForQueue(queue, createFlowFile(2L));
+        final List<FlowFileRecord> queueFlowFiles = state.getFlowFilesPerQueue().get(queue);
+        assertEquals(2, queueFlowFiles.size());
+
+        state.addEventType("uuid-1", ProvenanceEventType.CREATE);
+        state.addEventType("uuid-1", ProvenanceEventType.ROUTE);
+        final BitSet eventTypes = state.getEventTypes("uuid-1");
+        assertTrue(eventTypes.get(ProvenanceEventType.CREATE.ordinal()));
+        assertTrue(eventTypes.get(ProvenanceEventType.ROUTE.ordinal()));
+        assertFalse(eventTypes.get(ProvenanceEventType.DROP.ordinal()));
+        state.release();
+
+        final SessionCommitState reacquired = SessionCommitState.acquire();
+        try {
+            assertSame(state, reacquired);
+            assertSame(recordsToAdd, reacquired.getRecordsToAdd());
+            assertTrue(reacquired.getFlowFilesPerQueue().isEmpty());
+            assertNull(reacquired.getEventTypes("uuid-1"));
+
+            // Pooled lists and BitSets are handed out again, cleared
+            reacquired.addFlowFileForQueue(queue, createFlowFile(3L));
+            assertSame(queueFlowFiles, reacquired.getFlowFilesPerQueue().get(queue));
+            assertEquals(1, queueFlowFiles.size());
+
+            reacquired.addEventType("uuid-3", ProvenanceEventType.DROP);
+            assertSame(eventTypes, reacquired.getEventTypes("uuid-3"));
+            assertEquals(1, eventTypes.cardinality());
+        } finally {
+            reacquired.release();
+        }
+    }
+
+    @Test
+    public void testNestedAcquireReturnsNewState() {
+        final SessionCommitState outer = SessionCommitState.acquire();
+        try {
+            final SessionCommitState nested = SessionCommitState.acquire();
+            assertNotSame(outer, nested);
+            assertTrue(nested.isInUse());
+            nested.release();
+
+            assertTrue(outer.isInUse());
+        } finally {
+            outer.release();
+        }
+
+        assertFalse(outer.isInUse());
+        final SessionCommitState state = SessionCommitState.acquire();
+        state.release();
+        assertSame(outer, state);
+    }
+
+    @Test
+    public void testLargeCollectionsNotRetained() {
+        final SessionCommitState state = SessionCommitState.acquire();
+        final Map<String, FlowFileRecord> flowFilesByUuid = state.getFlowFilesByUuid();
+        for (int i = 0; i <= SessionCommitState.MAX_RETAINED_SIZE; i++) {
+            flowFilesByUuid.put("uuid-" + i, createFlowFile(i));
+        }
+        state.release();
+
+        final SessionCommitState reacquired = SessionCommitState.acquire();
+        try {
+            assertNotSame(flowFilesByUuid, reacquired.getFlowFilesByUuid());
+            assertTrue(reacquired.getFlowFilesByUuid().isEmpty());
+        } finally {
+            reacquired.release();
+        }
+    }
+}
@@ -25,13 +25,19 @@ import org.apache.nifi.controller.repository.StandardFlowFileRecord;
 import org.apache.nifi.flowfile.FlowFile;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 
 public class TestStandardPropertyValue {
@@ -136,6 +142,61 @@ public class TestStandardPropertyValue {
         assertFalse(elPresent);
     }
 
+    @Test
+    public void testBatchEvaluationMatchesSingleEvaluation() {
+        final List<String> expressions = Arrays.asList(
+            "Hello, ${audience}!",
+            "${fileSize}",
+            "${audience:isNull():or(${audience:equals('World')})}",
+            "${audience:notNull():and(${comma:isNull()})}",
+            "${allAttributes('audience', 'comma'):isNull()}",
+            "${anyMatchingAttribute('a.*'):equals('World')}",
+            "${audience:replaceNull('nobody'):toUpper()}",
+            "${'${a}${b}'}",
+            "No expressions");
+
+        final List<FlowFile> flowFiles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            if (i % 2 == 0) {
+                attributes.put("audience", "World");
+            }
+            if (i % 3 == 0) {
+                attributes.put("comma", ",");
+            }
+            attributes.put("a", String.valueOf(i));
+            attributes.put("b", "x");
+            attributes.put(i + "x", "value" + i);
+            flowFiles.add(new StandardFlowFileRecord.Builder().id(i).size(i * 10L).addAttributes(attributes).build());
+        }
+
+        for (final String expression : expressions) {
+            final PropertyValue value = new StandardPropertyValue(expression, lookup, ParameterLookup.EMPTY);
+            final String[] results = value.evaluateAttributeExpressions(flowFiles, null);
+            assertEquals(flowFiles.size(), results.length);
+
+            for (int i = 0; i < flowFiles.size(); i++) {
+                assertEquals(expression, value.evaluateAttributeExpressions(flowFiles.get(i)).getValue(), results[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchEvaluationReusesResults() {
+        final PropertyValue value = new StandardPropertyValue("${audience}", lookup, ParameterLookup.EMPTY);
+        final String[] results = new String[4];
+
+        final List<FlowFile> flowFiles = Arrays.asList(createFlowFile(Collections.singletonMap("audience", "World")), createFlowFile(Collections.emptyMap()));
+        assertSame(results, value.evaluateAttributeExpressions(flowFiles, results));
+        assertEquals("World", results[0]);
+        assertEquals("", results[1]);
+
+        final PropertyValue unset = new StandardPropertyValue(null, lookup, ParameterLookup.EMPTY, null, null);
+        assertSame(results, unset.evaluateAttributeExpressions(flowFiles, results));
+        assertNull(results[0]);
+        assertNull(results[1]);
+    }
+
     private FlowFile createFlowFile(final Map<String, String> attributes) {
         return new StandardFlowFileRecord.Builder().addAttributes(attributes).build();
     }
@@ -183,7 +183,8 @@ public interface ProcessScheduler {
     boolean isScheduled(Object scheduled);
 
     /**
-     * Registers a relevant event for an Event-Driven worker
+     * Registers a relevant event, such as a FlowFile being queued for the worker or removed from one of its
+     * outgoing connections. The event is passed along to the Scheduling Agent for the worker's Scheduling Strategy.
      *
      * @param worker to register
      */
@@ -38,6 +38,12 @@ public interface FlowFileEvent {
 
     long getProcessingNanoseconds();
 
+    /**
+     * @return the number of bytes of heap that were allocated by the threads that performed the work, or 0 if the JVM does not support
+     * measuring thread allocation
+     */
+    long getBytesAllocated();
+
     long getAverageLineageMillis();
 
     long getAggregateLineageMillis();
@@ -21,6 +21,8 @@ import org.apache.nifi.admin.service.AuditService;
 import org.apache.nifi.annotation.lifecycle.OnConfigurationRestored;
 import org.apache.nifi.annotation.notification.OnPrimaryNodeStateChange;
 import org.apache.nifi.annotation.notification.PrimaryNodeState;
+import org.apache.nifi.attribute.expression.language.StandardExpressionLanguageCompiler;
+import org.apache.nifi.attribute.expression.language.compile.EvaluatorCompiler;
 import org.apache.nifi.authorization.Authorizer;
 import org.apache.nifi.authorization.Resource;
 import org.apache.nifi.authorization.resource.Authorizable;
@@ -66,6 +68,7 @@ import org.apache.nifi.controller.queue.FlowFileQueueFactory;
 import org.apache.nifi.controller.queue.LoadBalanceStrategy;
 import org.apache.nifi.controller.queue.QueueSize;
 import org.apache.nifi.controller.queue.StandardFlowFileQueue;
+import org.apache.nifi.controller.queue.StripedFlowFileQueue;
 import org.apache.nifi.controller.queue.clustered.ContentRepositoryFlowFileAccess;
 import org.apache.nifi.controller.queue.clustered.SocketLoadBalancedFlowFileQueue;
 import org.apache.nifi.controller.queue.clustered.client.StandardLoadBalanceFlowFileCodec;
@@ -94,6 +97,7 @@ import org.apache.nifi.controller.repository.StandardRepositoryRecord;
 import org.apache.nifi.controller.repository.SwapManagerInitializationContext;
 import org.apache.nifi.controller.repository.SwapSummary;
 import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ContentDeduplicationIndex;
 import org.apache.nifi.controller.repository.claim.ContentDirection;
 import org.apache.nifi.controller.repository.claim.ResourceClaim;
 import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
@@ -101,8 +105,10 @@ import org.apache.nifi.controller.repository.claim.StandardContentClaim;
 import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
 import org.apache.nifi.controller.repository.io.LimitedInputStream;
 import org.apache.nifi.controller.scheduling.EventDrivenSchedulingAgent;
+import org.apache.nifi.controller.scheduling.EventLoopSchedulingAgent;
 import org.apache.nifi.controller.scheduling.QuartzSchedulingAgent;
 import org.apache.nifi.controller.scheduling.RepositoryContextFactory;
+import org.apache.nifi.controller.scheduling.SchedulingAgent;
 import org.apache.nifi.controller.scheduling.StandardProcessScheduler;
 import org.apache.nifi.controller.scheduling.TimerDrivenSchedulingAgent;
 import org.apache.nifi.controller.serialization.FlowSerializationException;
@@ -145,6 +151,7 @@ import org.apache.nifi.nar.NarThreadContextClassLoader;
 import org.apache.nifi.parameter.ParameterContextManager;
 import org.apache.nifi.parameter.ParameterLookup;
 import org.apache.nifi.parameter.StandardParameterContextManager;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.processor.Processor;
 import org.apache.nifi.processor.Relationship;
 import org.apache.nifi.provenance.ComponentIdentifierLookup;
@@ -312,6 +319,7 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
     private final ParameterContextManager parameterContextManager;
     private final StandardFlowManager flowManager;
     private final RepositoryContextFactory repositoryContextFactory;
+    private final ContentDeduplicationIndex contentDeduplicationIndex;
     private final RingBufferGarbageCollectionLog gcLog;
 
     /**
@@ -521,7 +529,9 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
         eventDrivenWorkerQueue = new EventDrivenWorkerQueue(false, false, processScheduler);
 
         parameterContextManager = new StandardParameterContextManager();
-        repositoryContextFactory = new RepositoryContextFactory(contentRepository, flowFileRepository, flowFileEventRepository, counterRepositoryRef.get(), provenanceRepository, stateManagerProvider);
+        contentDeduplicationIndex = createContentDeduplicationIndex(nifiProperties);
+        repositoryContextFactory = new RepositoryContextFactory(contentRepository, flowFileRepository, flowFileEventRepository, counterRepositoryRef.get(), provenanceRepository,
+            stateManagerProvider, contentDeduplicationIndex);
         flowManager = new StandardFlowManager(nifiProperties, sslContext, this, flowFileEventRepository, parameterContextManager);
 
         controllerServiceProvider = new StandardControllerServiceProvider(processScheduler, bulletinRepository, flowManager, extensionManager);
@@ -533,12 +543,20 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
         processScheduler.setSchedulingAgent(SchedulingStrategy.EVENT_DRIVEN, eventDrivenSchedulingAgent);
 
         final QuartzSchedulingAgent quartzSchedulingAgent = new QuartzSchedulingAgent(this, timerDrivenEngineRef.get(), repositoryContextFactory, encryptor);
-        final TimerDrivenSchedulingAgent timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), repositoryContextFactory, encryptor, this.nifiProperties);
+        final SchedulingAgent timerDrivenAgent;
+        if (NiFiProperties.TIMER_DRIVEN_SCHEDULING_MODE_EVENT_LOOP.equals(nifiProperties.getTimerDrivenSchedulingMode())) {
+            timerDrivenAgent = new EventLoopSchedulingAgent(this, timerDrivenEngineRef.get(), repositoryContextFactory, encryptor, this.nifiProperties);
+        } else {
+            timerDrivenAgent = new TimerDrivenSchedulingAgent(this, timerDrivenEngineRef.get(), repositoryContextFactory, encryptor, this.nifiProperties);
+        }
         processScheduler.setSchedulingAgent(SchedulingStrategy.TIMER_DRIVEN, timerDrivenAgent);
         // PRIMARY_NODE_ONLY is deprecated, but still exists to handle processors that are still defined with it (they haven't been re-configured with executeNode = PRIMARY).
         processScheduler.setSchedulingAgent(SchedulingStrategy.PRIMARY_NODE_ONLY, timerDrivenAgent);
         processScheduler.setSchedulingAgent(SchedulingStrategy.CRON_DRIVEN, quartzSchedulingAgent);
 
+        EvaluatorCompiler.setEnabled(nifiProperties.isExpressionLanguageCompilationEnabled());
+        StandardExpressionLanguageCompiler.getPreparedQueryCache().setMaxSize(nifiProperties.getExpressionLanguageCacheSize());
+
         startConnectablesAfterInitialization = new ArrayList<>();
         startRemoteGroupPortsAfterInitialization = new ArrayList<>();
 
@@ -800,6 +818,23 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
         }
     }
 
+    private static ContentDeduplicationIndex createContentDeduplicationIndex(final NiFiProperties properties) {
+        final String enabled = properties.getProperty(NiFiProperties.CONTENT_REPOSITORY_DEDUPLICATION_ENABLED,
+            String.valueOf(NiFiProperties.DEFAULT_CONTENT_REPOSITORY_DEDUPLICATION_ENABLED));
+        if (!Boolean.parseBoolean(enabled.trim())) {
+            return null;
+        }
+
+        final String maxContentSize = properties.getProperty(NiFiProperties.CONTENT_REPOSITORY_DEDUPLICATION_MAX_CONTENT_SIZE,
+            NiFiProperties.DEFAULT_CONTENT_REPOSITORY_DEDUPLICATION_MAX_CONTENT_SIZE);
+        final int maxEntries = properties.getIntegerProperty(NiFiProperties.CONTENT_REPOSITORY_DEDUPLICATION_MAX_ENTRIES,
+            NiFiProperties.DEFAULT_CONTENT_REPOSITORY_DEDUPLICATION_MAX_ENTRIES);
+
+        final ContentDeduplicationIndex index = new ContentDeduplicationIndex(maxEntries, DataUnit.parseDataSize(maxContentSize, DataUnit.B).longValue());
+        LOG.info("Content deduplication is enabled for content up to {} using {}", maxContentSize, index);
+        return index;
+    }
+
     public FlowFileSwapManager createSwapManager() {
         final String implementationClassName = nifiProperties.getProperty(NiFiProperties.FLOWFILE_SWAP_MANAGER_IMPLEMENTATION, DEFAULT_SWAP_MANAGER_IMPLEMENTATION);
         if (implementationClassName == null) {
@@ -900,7 +935,7 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
 
             // Begin expiring FlowFiles that are old
             final RepositoryContextFactory contextFactory = new RepositoryContextFactory(contentRepository, flowFileRepository,
-                    flowFileEventRepository, counterRepositoryRef.get(), provenanceRepository, stateManagerProvider);
+                    flowFileEventRepository, counterRepositoryRef.get(), provenanceRepository, stateManagerProvider, contentDeduplicationIndex);
             processScheduler.scheduleFrameworkTask(new ExpireFlowFiles(this, contextFactory), "Expire FlowFiles", 30L, 30L, TimeUnit.SECONDS);
 
             // now that we've loaded the FlowFiles, this has restored our ContentClaims' states, so we can tell the
@@ -1863,6 +1898,10 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
         return clusterCoordinator;
     }
 
+    public ConnectionLoadBalanceServer getLoadBalanceServer() {
+        return loadBalanceServer;
+    }
+
     /**
      * Creates a connection between two Connectable objects.
      *
@@ -1915,8 +1954,16 @@ public class FlowController implements ReportingTaskProvider, Authorizable, Node
                 final FlowFileQueue flowFileQueue;
 
                 if (clusterCoordinator == null) {
-                    flowFileQueue = new StandardFlowFileQueue(id, eventListener, flowFileRepository, provenanceRepository, resourceClaimManager, processScheduler, swapManager,
-                            eventReporter, nifiProperties.getQueueSwapThreshold(), nifiProperties.getDefaultBackPressureObjectThreshold(), nifiProperties.getDefaultBackPressureDataSizeThreshold());
+                    final int stripeCount = nifiProperties.getQueueStripeCount();
+                    if (stripeCount > 1) {
+                        flowFileQueue = new StripedFlowFileQueue(id, eventListener, flowFileRepository, provenanceRepository, resourceClaimManager, processScheduler, swapManager,
+                                eventReporter, nifiProperties.getQueueSwapThreshold(), stripeCount, nifiProperties.getDefaultBackPressureObjectThreshold(),
+                                nifiProperties.getDefaultBackPressureDataSizeThreshold());
+                    } else {
+                        flowFileQueue = new StandardFlowFileQueue(id, eventListener, flowFileRepository, provenanceRepository, resourceClaimManager, processScheduler, swapManager,
+                                eventReporter, nifiProperties.getQueueSwapThreshold(), nifiProperties.getDefaultBackPressureObjectThreshold(),
+                                nifiProperties.getDefaultBackPressureDataSizeThreshold());
+                    }
                 } else {
                     flowFileQueue = new SocketLoadBalancedFlowFileQueue(id, eventListener, processScheduler, flowFileRepository, provenanceRepository, contentRepository, resourceClaimManager,
                             clusterCoordinator, loadBalanceClientRegistry, swapManager, nifiProperties.getQueueSwapThreshold(), eventReporter);
@@ -0,0 +1,594 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.queue;
+
+import org.apache.nifi.controller.ProcessScheduler;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.FlowFileSwapManager;
+import org.apache.nifi.controller.repository.SwapSummary;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.controller.swap.StandardSwapSummary;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.reporting.Severity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A FlowFileQueue that spreads its FlowFiles across several independently locked {@link SwappablePriorityQueue} stripes
+ * so that many concurrent producers and consumers of the same Connection do not serialize on a single queue lock.
+ * </p>
+ *
+ * <p>
+ * When no prioritizers are configured, FlowFiles are placed on a randomly chosen stripe and consumers poll starting from a
+ * randomly chosen stripe, moving on to the next stripe when one is empty. As a result, ordering is only approximately FIFO across
+ * stripes, though it remains ordered within each stripe. When one or more prioritizers are configured, all FlowFiles are
+ * consolidated onto the first stripe and the queue behaves exactly as a {@link StandardFlowFileQueue}, so that the prioritizers are
+ * honored across the entire queue.
+ * </p>
+ *
+ * <p>
+ * Each stripe swaps to its own swap partition, named <code>stripe-&lt;index&gt;</code>. Upon recovery, any swap file that belongs to
+ * this queue but not to one of the current stripes (for example, because the number of stripes was changed or because the Connection
+ * previously used a {@link StandardFlowFileQueue}) is assigned to the first stripe. The stripe's own unacknowledged counters are not used;
+ * instead, FlowFiles are acknowledged against the stripe immediately upon being polled and are tracked as unacknowledged by this queue, so
+ * that a FlowFile may be acknowledged without knowing which stripe it came from.
+ * </p>
+ */
+public class StripedFlowFileQueue extends AbstractFlowFileQueue implements FlowFileQueue {
+    private static final Logger logger = LoggerFactory.getLogger(StripedFlowFileQueue.class);
+
+    private final SwappablePriorityQueue[] stripes;
+    private final ConnectionEventListener eventListener;
+    private final FlowFileSwapManager swapManager;
+    private final EventReporter eventReporter;
+    private final AtomicReference<QueueSize> unacknowledgedSize = new AtomicReference<>(new QueueSize(0, 0L));
+    private final ReentrantLock externalLock = new ReentrantLock();
+
+    private volatile boolean prioritized = false;
+
+    public StripedFlowFileQueue(final String identifier, final ConnectionEventListener eventListener, final FlowFileRepository flowFileRepo, final ProvenanceEventRepository provRepo,
+                                final ResourceClaimManager resourceClaimManager, final ProcessScheduler scheduler, final FlowFileSwapManager swapManager, final EventReporter eventReporter,
+                                final int swapThreshold, final int stripeCount, final long defaultBackPressureObjectThreshold, final String defaultBackPressureDataSizeThreshold) {
+
+        super(identifier, scheduler, flowFileRepo, provRepo, resourceClaimManager);
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe Count must be at least 1 but was " + stripeCount);
+        }
+
+        this.swapManager = swapManager;
+        this.eventListener = eventListener;
+        this.eventReporter = eventReporter;
+
+        final int stripeSwapThreshold = Math.max(1, swapThreshold / stripeCount);
+        stripes = new SwappablePriorityQueue[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new SwappablePriorityQueue(swapManager, stripeSwapThreshold, eventReporter, this, this::drop, getStripeName(i));
+        }
+
+        setBackPressureDataSizeThreshold(defaultBackPressureDataSizeThreshold);
+        setBackPressureObjectThreshold(defaultBackPressureObjectThreshold);
+    }
+
+    private static String getStripeName(final int index) {
+        return "stripe-" + index;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    @Override
+    public void startLoadBalancing() {
+    }
+
+    @Override
+    public void stopLoadBalancing() {
+    }
+
+    @Override
+    public void offloadQueue() {
+    }
+
+    @Override
+    public void resetOffloadedQueue() {
+    }
+
+    @Override
+    public boolean isActivelyLoadBalancing() {
+        return false;
+    }
+
+    @Override
+    public synchronized void setPriorities(final List<FlowFilePrioritizer> newPriorities) {
+        for (final SwappablePriorityQueue stripe : stripes) {
+            stripe.setPriorities(newPriorities);
+        }
+
+        prioritized = !newPriorities.isEmpty();
+        if (prioritized) {
+            consolidateStripes();
+        }
+    }
+
+    @Override
+    public List<FlowFilePrioritizer> getPriorities() {
+        return stripes[0].getPriorities();
+    }
+
+    /**
+     * Moves all FlowFiles, including any swapped out FlowFiles, from every stripe other than the first onto the first stripe. This is
+     * done whenever prioritizers are configured. Because producers do not coordinate with one another, a producer that chose a stripe just
+     * before prioritizers were configured may still add a FlowFile to that stripe, so this method is also called before polling while the
+     * queue is prioritized. The check for whether or not a stripe holds any data is lock-free, so this is inexpensive when there is nothing to move.
+     */
+    private void consolidateStripes() {
+        final SwappablePriorityQueue primary = stripes[0];
+
+        for (int i = 1; i < stripes.length; i++) {
+            final SwappablePriorityQueue stripe = stripes[i];
+            final FlowFileQueueSize stripeSize = stripe.getFlowFileQueueSize();
+            if (stripeSize.getActiveCount() == 0 && stripeSize.getSwappedCount() == 0) {
+                continue;
+            }
+
+            final FlowFileQueueContents contents = stripe.packageForRebalance(getStripeName(0));
+            primary.inheritQueueContents(contents);
+            logger.debug("Moved {} active FlowFiles and {} Swap Files from {} to {} because prioritizers are configured",
+                contents.getActiveFlowFiles().size(), contents.getSwapLocations().size(), getStripeName(i), getStripeName(0));
+        }
+    }
+
+    @Override
+    protected List<FlowFileRecord> getListableFlowFiles() {
+        final List<FlowFileRecord> listable = new ArrayList<>();
+        for (final SwappablePriorityQueue stripe : stripes) {
+            listable.addAll(stripe.getActiveFlowFiles());
+        }
+
+        return listable;
+    }
+
+    @Override
+    public QueueDiagnostics getQueueDiagnostics() {
+        boolean anyPenalized = false;
+        boolean allPenalized = true;
+        boolean anyActive = false;
+
+        for (final SwappablePriorityQueue stripe : stripes) {
+            final LocalQueuePartitionDiagnostics stripeDiagnostics = stripe.getQueueDiagnostics();
+            if (stripeDiagnostics.getActiveQueueSize().getObjectCount() == 0) {
+                continue;
+            }
+
+            anyActive = true;
+            anyPenalized |= stripeDiagnostics.isAnyActiveFlowFilePenalized();
+            allPenalized &= stripeDiagnostics.isAllActiveFlowFilesPenalized();
+        }
+
+        final LocalQueuePartitionDiagnostics diagnostics = new StandardLocalQueuePartitionDiagnostics(getFlowFileQueueSize(), anyPenalized, anyActive && allPenalized);
+        return new StandardQueueDiagnostics(diagnostics, Collections.emptyList());
+    }
+
+    private SwappablePriorityQueue selectStripe() {
+        if (prioritized || stripes.length == 1) {
+            return stripes[0];
+        }
+
+        return stripes[ThreadLocalRandom.current().nextInt(stripes.length)];
+    }
+
+    @Override
+    public void put(final FlowFileRecord file) {
+        selectStripe().put(file);
+
+        eventListener.triggerDestinationEvent();
+    }
+
+    @Override
+    public void putAll(final Collection<FlowFileRecord> files) {
+        selectStripe().putAll(files);
+
+        eventListener.triggerDestinationEvent();
+    }
+
+    @Override
+    public FlowFileRecord poll(final Set<FlowFileRecord> expiredRecords) {
+        final long expirationMillis = getFlowFileExpiration(TimeUnit.MILLISECONDS);
+
+        if (prioritized) {
+            consolidateStripes();
+            return markUnacknowledged(stripes[0], stripes[0].poll(expiredRecords, expirationMillis));
+        }
+
+        final int startIndex = ThreadLocalRandom.current().nextInt(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            final SwappablePriorityQueue stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.isEmpty()) {
+                continue;
+            }
+
+            // SwappablePriorityQueue uses the size of the given Set to update its counters, so each stripe must be given an empty Set.
+            final Set<FlowFileRecord> stripeExpired = new HashSet<>();
+            final FlowFileRecord flowFile = stripe.poll(stripeExpired, expirationMillis);
+            expiredRecords.addAll(stripeExpired);
+
+            if (flowFile != null) {
+                return markUnacknowledged(stripe, flowFile);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final int maxResults, final Set<FlowFileRecord> expiredRecords) {
+        final long expirationMillis = getFlowFileExpiration(TimeUnit.MILLISECONDS);
+
+        if (prioritized) {
+            consolidateStripes();
+            return markUnacknowledged(stripes[0], stripes[0].poll(maxResults, expiredRecords, expirationMillis));
+        }
+
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        final int startIndex = ThreadLocalRandom.current().nextInt(stripes.length);
+        for (int i = 0; i < stripes.length && polled.size() < maxResults; i++) {
+            final SwappablePriorityQueue stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.isEmpty()) {
+                continue;
+            }
+
+            final Set<FlowFileRecord> stripeExpired = new HashSet<>();
+            final List<FlowFileRecord> stripeRecords = stripe.poll(maxResults - polled.size(), stripeExpired, expirationMillis);
+            expiredRecords.addAll(stripeExpired);
+            polled.addAll(markUnacknowledged(stripe, stripeRecords));
+        }
+
+        return polled;
+    }
+
+    @Override
+    public List<FlowFileRecord> poll(final FlowFileFilter filter, final Set<FlowFileRecord> expiredRecords) {
+        final long expirationMillis = getFlowFileExpiration(TimeUnit.MILLISECONDS);
+
+        if (prioritized) {
+            consolidateStripes();
+            return markUnacknowledged(stripes[0], stripes[0].poll(filter, expiredRecords, expirationMillis));
+        }
+
+        // A stripe stops polling either because the filter indicated that no more FlowFiles should be pulled or because the remaining
+        // FlowFiles in that stripe are penalized. Only the former should prevent us from moving on to the next stripe.
+        final TerminationTrackingFilter trackingFilter = new TerminationTrackingFilter(filter);
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        final int startIndex = ThreadLocalRandom.current().nextInt(stripes.length);
+        for (int i = 0; i < stripes.length && !trackingFilter.isTerminated(); i++) {
+            final SwappablePriorityQueue stripe = stripes[(startIndex + i) % stripes.length];
+            if (stripe.isEmpty()) {
+                continue;
+            }
+
+            final Set<FlowFileRecord> stripeExpired = new HashSet<>();
+            final List<FlowFileRecord> stripeRecords = stripe.poll(trackingFilter, stripeExpired, expirationMillis);
+            expiredRecords.addAll(stripeExpired);
+            polled.addAll(markUnacknowledged(stripe, stripeRecords));
+        }
+
+        return polled;
+    }
+
+    private FlowFileRecord markUnacknowledged(final SwappablePriorityQueue stripe, final FlowFileRecord flowFile) {
+        if (flowFile == null) {
+            return null;
+        }
+
+        // Increment our own counter before decrementing the stripe's so that the queue never appears to be empty while the FlowFile is outstanding.
+        incrementUnacknowledgedQueueSize(1, flowFile.getSize());
+        stripe.acknowledge(flowFile);
+        return flowFile;
+    }
+
+    private List<FlowFileRecord> markUnacknowledged(final SwappablePriorityQueue stripe, final List<FlowFileRecord> flowFiles) {
+        if (flowFiles.isEmpty()) {
+            return flowFiles;
+        }
+
+        long bytes = 0L;
+        for (final FlowFileRecord flowFile : flowFiles) {
+            bytes += flowFile.getSize();
+        }
+
+        incrementUnacknowledgedQueueSize(flowFiles.size(), bytes);
+        stripe.acknowledge(flowFiles);
+        return flowFiles;
+    }
+
+    private void incrementUnacknowledgedQueueSize(final int count, final long bytes) {
+        boolean updated = false;
+        while (!updated) {
+            final QueueSize original = unacknowledgedSize.get();
+            final QueueSize newSize = new QueueSize(original.getObjectCount() + count, original.getByteCount() + bytes);
+            updated = unacknowledgedSize.compareAndSet(original, newSize);
+
+            if (updated && (newSize.getObjectCount() < 0 || newSize.getByteCount() < 0)) {
+                logger.error("Updated Unacknowledged Size of " + this + " from " + original + " to " + newSize, new RuntimeException("Cannot create negative queue size"));
+            }
+        }
+    }
+
+    @Override
+    public void acknowledge(final FlowFileRecord flowFile) {
+        incrementUnacknowledgedQueueSize(-1, -flowFile.getSize());
+
+        eventListener.triggerSourceEvent();
+    }
+
+    @Override
+    public void acknowledge(final Collection<FlowFileRecord> flowFiles) {
+        long bytes = 0L;
+        for (final FlowFile flowFile : flowFiles) {
+            bytes += flowFile.getSize();
+        }
+
+        incrementUnacknowledgedQueueSize(-flowFiles.size(), -bytes);
+
+        eventListener.triggerSourceEvent();
+    }
+
+    @Override
+    public boolean isUnacknowledgedFlowFile() {
+        return unacknowledgedSize.get().getObjectCount() > 0;
+    }
+
+    /**
+     * @return the sum of the sizes of all stripes, along with the number of FlowFiles that have been polled but not yet acknowledged. Because each
+     * stripe's size is updated independently, the result is not an atomic snapshot of the entire queue, but every individual value is accurate.
+     */
+    private FlowFileQueueSize getFlowFileQueueSize() {
+        int activeCount = 0;
+        long activeBytes = 0L;
+        int swappedCount = 0;
+        long swappedBytes = 0L;
+        int swapFileCount = 0;
+
+        for (final SwappablePriorityQueue stripe : stripes) {
+            final FlowFileQueueSize stripeSize = stripe.getFlowFileQueueSize();
+            activeCount += stripeSize.getActiveCount();
+            activeBytes += stripeSize.getActiveBytes();
+            swappedCount += stripeSize.getSwappedCount();
+            swappedBytes += stripeSize.getSwappedBytes();
+            swapFileCount += stripeSize.getSwapFileCount();
+        }
+
+        final QueueSize unacknowledged = unacknowledgedSize.get();
+        return new FlowFileQueueSize(activeCount, activeBytes, swappedCount, swappedBytes, swapFileCount, unacknowledged.getObjectCount(), unacknowledged.getByteCount());
+    }
+
+    @Override
+    public QueueSize size() {
+        return getFlowFileQueueSize().toQueueSize();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (unacknowledgedSize.get().getObjectCount() > 0) {
+            return false;
+        }
+
+        for (final SwappablePriorityQueue stripe : stripes) {
+            if (!stripe.isEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean isActiveQueueEmpty() {
+        for (final SwappablePriorityQueue stripe : stripes) {
+            if (!stripe.isActiveQueueEmpty()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public void purgeSwapFiles() {
+        swapManager.purge();
+    }
+
+    @Override
+    public synchronized SwapSummary recoverSwappedFlowFiles() {
+        final List<SwapSummary> summaries = new ArrayList<>(stripes.length);
+        final Set<String> stripeSwapLocations = new HashSet<>();
+
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                stripeSwapLocations.addAll(swapManager.recoverSwapLocations(this, getStripeName(i)));
+
+                final SwapSummary summary = stripes[i].recoverSwappedFlowFiles();
+                if (summary != null) {
+                    summaries.add(summary);
+                }
+            }
+
+            // Any Swap File that belongs to this queue but not to one of our stripes was written either with a different number of stripes
+            // or by a queue that was not striped at all. Those are moved to the first stripe so that they are not lost.
+            final Set<String> partitionNames = swapManager.getSwappedPartitionNames(this);
+            final List<String> foreignSwapLocations = new ArrayList<>(swapManager.recoverSwapLocations(this, null));
+            for (final String partitionName : partitionNames) {
+                foreignSwapLocations.addAll(swapManager.recoverSwapLocations(this, partitionName));
+            }
+
+            final Set<String> handled = new HashSet<>(stripeSwapLocations);
+            for (final String swapLocation : foreignSwapLocations) {
+                if (!handled.add(swapLocation)) {
+                    continue;
+                }
+
+                final SwapSummary swapSummary = swapManager.getSwapSummary(swapLocation);
+                summaries.add(swapSummary);
+
+                final String updatedSwapLocation = swapManager.changePartitionName(swapLocation, getStripeName(0));
+                final FlowFileQueueContents queueContents = new FlowFileQueueContents(Collections.emptyList(), Collections.singletonList(updatedSwapLocation), swapSummary.getQueueSize());
+                stripes[0].inheritQueueContents(queueContents);
+                logger.info("Recovered Swap File {} for {}, which did not belong to any current stripe; assigned it to {}", swapLocation, this, getStripeName(0));
+            }
+        } catch (final IOException ioe) {
+            logger.error("Failed to recover Swap Files for FlowFile Queue {}", getIdentifier(), ioe);
+            if (eventReporter != null) {
+                eventReporter.reportEvent(Severity.ERROR, "FlowFile Swapping", "Failed to recover Swap Files for FlowFile Queue " + getIdentifier() + "; see logs for more details");
+            }
+        }
+
+        Long maxId = null;
+        int flowFileCount = 0;
+        long byteCount = 0L;
+        final List<ResourceClaim> resourceClaims = new ArrayList<>();
+
+        for (final SwapSummary summary : summaries) {
+            final Long summaryMaxId = summary.getMaxFlowFileId();
+            if (summaryMaxId != null && (maxId == null || summaryMaxId > maxId)) {
+                maxId = summaryMaxId;
+            }
+
+            flowFileCount += summary.getQueueSize().getObjectCount();
+            byteCount += summary.getQueueSize().getByteCount();
+            resourceClaims.addAll(summary.getResourceClaims());
+        }
+
+        return new StandardSwapSummary(new QueueSize(flowFileCount, byteCount), maxId, resourceClaims);
+    }
+
+    @Override
+    public String toString() {
+        return "FlowFileQueue[id=" + getIdentifier() + ", stripes=" + stripes.length + "]";
+    }
+
+    @Override
+    public FlowFileRecord getFlowFile(final String flowFileUuid) throws IOException {
+        for (final SwappablePriorityQueue stripe : stripes) {
+            final FlowFileRecord flowFile = stripe.getFlowFile(flowFileUuid);
+            if (flowFile != null) {
+                return flowFile;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    protected void dropFlowFiles(final DropFlowFileRequest dropRequest, final String requestor) {
+        dropRequest.setOriginalSize(size());
+        dropRequest.setState(DropFlowFileState.DROPPING_FLOWFILES);
+
+        int droppedCount = 0;
+        long droppedBytes = 0L;
+
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                final DropFlowFileRequest stripeRequest = new DropFlowFileRequest(dropRequest.getRequestIdentifier() + "-" + getStripeName(i));
+                stripes[i].dropFlowFiles(stripeRequest, requestor);
+
+                droppedCount += stripeRequest.getDroppedSize().getObjectCount();
+                droppedBytes += stripeRequest.getDroppedSize().getByteCount();
+                dropRequest.setDroppedSize(new QueueSize(droppedCount, droppedBytes));
+                dropRequest.setCurrentSize(size());
+
+                if (stripeRequest.getState() == DropFlowFileState.FAILURE) {
+                    dropRequest.setState(DropFlowFileState.FAILURE, stripeRequest.getFailureReason());
+                    break;
+                }
+
+                if (dropRequest.getState() == DropFlowFileState.CANCELED) {
+                    logger.info("Cancel requested for DropFlowFileRequest {}", dropRequest.getRequestIdentifier());
+                    break;
+                }
+            }
+
+            if (dropRequest.getState() == DropFlowFileState.DROPPING_FLOWFILES) {
+                dropRequest.setState(DropFlowFileState.COMPLETE);
+            }
+        } catch (final Exception e) {
+            logger.error("Failed to drop FlowFiles for {}", this, e);
+            dropRequest.setState(DropFlowFileState.FAILURE, "Failed to drop FlowFiles due to " + e.getMessage() + ". See log for more details.");
+        }
+    }
+
+    /**
+     * Lock the queue so that other threads are unable to obtain the lock. Note that this does not prevent FlowFiles from being added to or polled from the stripes.
+     */
+    @Override
+    public void lock() {
+        externalLock.lock();
+    }
+
+    /**
+     * Unlock the queue
+     */
+    @Override
+    public void unlock() {
+        externalLock.unlock();
+    }
+
+
+    /**
+     * Wraps a FlowFileFilter in order to record whether or not the filter has indicated that no further FlowFiles should be pulled from the queue.
+     */
+    private static class TerminationTrackingFilter implements FlowFileFilter {
+        private final FlowFileFilter delegate;
+        private boolean terminated = false;
+
+        public TerminationTrackingFilter(final FlowFileFilter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public FlowFileFilterResult filter(final FlowFile flowFile) {
+            final FlowFileFilterResult result = delegate.filter(flowFile);
+            if (!result.isContinue()) {
+                terminated = true;
+            }
+
+            return result;
+        }
+
+        public boolean isTerminated() {
+            return terminated;
+        }
+    }
+}
@@ -29,7 +29,6 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
-import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
@@ -51,9 +50,7 @@ public class ClusterLoadBalanceAuthorizer implements LoadBalanceAuthorizer {
     }
 
     @Override
-    public String authorize(SSLSocket sslSocket) throws NotAuthorizedException, IOException {
-        final SSLSession sslSession = sslSocket.getSession();
-
+    public String authorize(final SSLSession sslSession, final String peerHostname) throws NotAuthorizedException, IOException {
         final Set<String> clientIdentities;
         try {
             clientIdentities = getCertificateIdentities(sslSession);
@@ -77,9 +74,8 @@ public class ClusterLoadBalanceAuthorizer implements LoadBalanceAuthorizer {
         // If there are no matches of Client IDs, try to verify it by HostnameVerifier. In this way, we can support wildcard certificates.
         for (final String nodeId : nodeIds) {
             if (hostnameVerifier.verify(nodeId, sslSession)) {
-                final String clientId = sslSocket.getInetAddress().getHostName();
-                logger.debug("The request was verified with node '{}'. The hostname derived from the socket is '{}'. Authorizing Client to Load Balance data", nodeId, clientId);
-                return clientId;
+                logger.debug("The request was verified with node '{}'. The hostname of the peer is '{}'. Authorizing Client to Load Balance data", nodeId, peerHostname);
+                return peerHostname;
             }
         }
 
@@ -17,45 +17,77 @@
 
 package org.apache.nifi.controller.queue.clustered.server;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLPeerUnverifiedException;
-import javax.net.ssl.SSLServerSocket;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.reporting.Severity;
 import org.apache.nifi.security.util.CertificateUtils;
 import org.apache.nifi.security.util.TlsConfiguration;
+import org.apache.nifi.util.timebuffer.CountSizeEntityAccess;
+import org.apache.nifi.util.timebuffer.TimedBuffer;
+import org.apache.nifi.util.timebuffer.TimedCountSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>
+ * Receives data from the other nodes in the cluster that are load balancing data to this node. Connections are accepted and monitored by a single
+ * thread using a Selector, so a peer that is idle does not occupy a thread. When data is available from a peer, the peer is handed to a pool of
+ * threads, whose size is configured by the number of threads given to the constructor. A thread receives a single transaction from the peer and then
+ * returns the peer to the Selector, so that peers are serviced in turn and a single busy peer cannot keep other peers from being serviced.
+ * </p>
+ *
+ * <p>
+ * The number of FlowFiles and bytes that are received are tracked, both for all peers and for each node that data has been received from, and are
+ * made available as rates averaged over the last five minutes, via {@link #getReceiveRate()} and {@link #getReceiveRatesByNode()}. A node is
+ * identified by its hostname, so its rate is retained when it reconnects.
+ * </p>
+ */
 public class ConnectionLoadBalanceServer {
     private static final Logger logger = LoggerFactory.getLogger(ConnectionLoadBalanceServer.class);
     private static final AtomicLong threadCounter = new AtomicLong(1L);
+    private static final int STATISTICS_SECONDS = 300;
 
     private final String hostname;
     private final int port;
     private final SSLContext sslContext;
+    private final int numThreads;
     private final LoadBalanceProtocol loadBalanceProtocol;
     private final int connectionTimeoutMillis;
     private final EventReporter eventReporter;
 
     private final List<CommunicateAction> communicationActions = Collections.synchronizedList(new ArrayList<>());
+    private final Queue<SelectionKey> keysToResume = new ConcurrentLinkedQueue<>();
+    private final TimedBuffer<TimedCountSize> received = new TimedBuffer<>(TimeUnit.SECONDS, STATISTICS_SECONDS, new CountSizeEntityAccess());
+    private final ConcurrentMap<String, TimedBuffer<TimedCountSize>> receivedByNode = new ConcurrentHashMap<>();
 
     private volatile AcceptConnection acceptConnection;
-    private volatile ServerSocket serverSocket;
+    private volatile ServerSocketChannel serverSocketChannel;
+    private volatile Selector selector;
+    private volatile ExecutorService communicationThreadPool;
     private volatile boolean stopped = true;
 
     public ConnectionLoadBalanceServer(final String hostname, final int port, final SSLContext sslContext, final int numThreads, final LoadBalanceProtocol loadBalanceProtocol,
@@ -63,6 +95,7 @@ public class ConnectionLoadBalanceServer {
         this.hostname = hostname;
         this.port = port;
         this.sslContext = sslContext;
+        this.numThreads = numThreads;
         this.loadBalanceProtocol = loadBalanceProtocol;
         this.connectionTimeoutMillis = connectionTimeoutMillis;
         this.eventReporter = eventReporter;
@@ -74,61 +107,191 @@ public class ConnectionLoadBalanceServer {
         }
 
         stopped = false;
-        if (serverSocket != null) {
+        if (serverSocketChannel != null) {
             return;
         }
 
+        Selector newSelector = null;
+        ServerSocketChannel newServerSocketChannel = null;
         try {
-            serverSocket = createServerSocket();
+            newSelector = Selector.open();
+            newServerSocketChannel = createServerSocketChannel();
+            newServerSocketChannel.register(newSelector, SelectionKey.OP_ACCEPT);
         } catch (final Exception e) {
+            closeQuietly(newServerSocketChannel, newSelector);
+            stopped = true;
             throw new IOException("Could not begin listening for incoming connections in order to load balance data across the cluster. Please verify the values of the " +
                     "'nifi.cluster.load.balance.port' and 'nifi.cluster.load.balance.host' properties as well as the 'nifi.security.*' properties", e);
         }
 
-        acceptConnection = new AcceptConnection(serverSocket);
+        selector = newSelector;
+        serverSocketChannel = newServerSocketChannel;
+        communicationThreadPool = Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable);
+            thread.setName("Load-Balance Server Thread-" + threadCounter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        acceptConnection = new AcceptConnection(serverSocketChannel, selector);
         final Thread receiveConnectionThread = new Thread(acceptConnection);
         receiveConnectionThread.setName("Receive Queue Load-Balancing Connections");
         receiveConnectionThread.start();
     }
 
     public int getPort() {
-        return serverSocket.getLocalPort();
+        return serverSocketChannel.socket().getLocalPort();
     }
 
     public void stop() {
-        stopped = false;
+        stopped = true;
 
         if (acceptConnection != null) {
             acceptConnection.stop();
+            acceptConnection = null;
+        }
+
+        if (communicationThreadPool != null) {
+            communicationThreadPool.shutdown();
+            communicationThreadPool = null;
         }
 
-        final Iterator<CommunicateAction> itr = communicationActions.iterator();
-        while (itr.hasNext()) {
-            itr.next().stop();
-            itr.remove();
+        synchronized (communicationActions) {
+            final Iterator<CommunicateAction> itr = communicationActions.iterator();
+            while (itr.hasNext()) {
+                itr.next().stop();
+                itr.remove();
+            }
         }
+
+        keysToResume.clear();
+        serverSocketChannel = null;
+        selector = null;
+    }
+
+    /**
+     * @return the rate at which data has been received from all peers, averaged over the last five minutes
+     */
+    public ReceiveRate getReceiveRate() {
+        return ReceiveRate.of(received);
     }
 
-    private ServerSocket createServerSocket() throws IOException {
+    /**
+     * @return a Map of node hostname to the rate at which data has been received from that node, averaged over the last five minutes, for each
+     * node that data has been received from
+     */
+    public Map<String, ReceiveRate> getReceiveRatesByNode() {
+        final Map<String, ReceiveRate> rates = new HashMap<>();
+        receivedByNode.forEach((node, buffer) -> rates.put(node, ReceiveRate.of(buffer)));
+        return rates;
+    }
+
+    private ServerSocketChannel createServerSocketChannel() throws IOException {
         final InetAddress inetAddress = hostname == null ? null : InetAddress.getByName(hostname);
 
-        if (sslContext == null) {
-            return new ServerSocket(port, 50, InetAddress.getByName(hostname));
+        final ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.configureBlocking(false);
+        serverSocketChannel.socket().bind(new InetSocketAddress(inetAddress, port), 50);
+        return serverSocketChannel;
+    }
+
+    SSLEngine createSslEngine() {
+        final SSLEngine sslEngine = sslContext.createSSLEngine();
+        sslEngine.setUseClientMode(false);
+        sslEngine.setNeedClientAuth(true);
+        // Enforce custom protocols on engine
+        sslEngine.setEnabledProtocols(TlsConfiguration.getCurrentSupportedTlsProtocolVersions());
+        return sslEngine;
+    }
+
+    private void accept(final ServerSocketChannel serverSocketChannel, final Selector selector) throws IOException {
+        final SocketChannel socketChannel = serverSocketChannel.accept();
+        if (socketChannel == null) {
+            return;
+        }
+
+        try {
+            socketChannel.configureBlocking(false);
+            socketChannel.socket().setTcpNoDelay(true);
+
+            final SSLEngine sslEngine = sslContext == null ? null : createSslEngine();
+            final PeerConnection peerConnection = new PeerConnection(socketChannel, sslEngine, connectionTimeoutMillis);
+            final CommunicateAction communicateAction = new CommunicateAction(loadBalanceProtocol, peerConnection, eventReporter);
+
+            socketChannel.register(selector, SelectionKey.OP_READ, communicateAction);
+            communicationActions.add(communicateAction);
+            logger.debug("Accepted connection from Peer {}", peerConnection.getPeerDescription());
+        } catch (final Exception e) {
+            socketChannel.close();
+            throw e;
+        }
+    }
+
+    private void submit(final SelectionKey key, final CommunicateAction communicateAction) {
+        final ExecutorService threadPool = communicationThreadPool;
+        if (threadPool == null) {
+            communicateAction.stop();
+            return;
+        }
+
+        try {
+            threadPool.submit(() -> communicate(key, communicateAction));
+        } catch (final RejectedExecutionException ree) {
+            // The server has been stopped.
+            communicateAction.stop();
+        }
+    }
+
+    private void communicate(final SelectionKey key, final CommunicateAction communicateAction) {
+        final TimedCountSize transaction = communicateAction.communicate();
+        if (transaction == null) {
+            key.cancel();
+            communicationActions.remove(communicateAction);
+            return;
+        }
+
+        received.add(transaction);
+        // Only peers that have completed a transaction, and so have been authorized as nodes in the cluster, are tracked
+        receivedByNode.computeIfAbsent(communicateAction.getPeerHostname(), node -> new TimedBuffer<>(TimeUnit.SECONDS, STATISTICS_SECONDS, new CountSizeEntityAccess()))
+            .add(transaction);
+
+        if (stopped) {
+            communicateAction.stop();
+            return;
+        }
+
+        // If data from the peer has already been read from the channel, the Selector will not indicate that the channel is readable,
+        // so the peer must be serviced again without waiting. Submitting it again places it behind any other peers that are waiting.
+        if (communicateAction.hasBufferedInput()) {
+            submit(key, communicateAction);
         } else {
-            final SSLServerSocket serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(port, 50, inetAddress);
-            serverSocket.setNeedClientAuth(true);
-            // Enforce custom protocols on socket
-            serverSocket.setEnabledProtocols(TlsConfiguration.getCurrentSupportedTlsProtocolVersions());
-            return serverSocket;
+            keysToResume.add(key);
+            key.selector().wakeup();
+        }
+    }
+
+    private static void closeQuietly(final ServerSocketChannel serverSocketChannel, final Selector selector) {
+        try {
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
+            }
+        } catch (final Exception e) {
+            logger.warn("Failed to properly shutdown Server Socket for Load Balancing", e);
+        }
+
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (final Exception e) {
+            logger.warn("Failed to properly shutdown Selector for Load Balancing", e);
         }
     }
 
     // Use a static nested class and pass the ER in the constructor to avoid instantiation issues in tests
-    protected static class CommunicateAction implements Runnable {
+    protected static class CommunicateAction {
         private final LoadBalanceProtocol loadBalanceProtocol;
-        private final Socket socket;
-        private final InputStream in;
-        private final OutputStream out;
+        private final PeerConnection peerConnection;
         private final EventReporter eventReporter;
 
         private volatile boolean stopped = false;
@@ -137,54 +300,81 @@ public class ConnectionLoadBalanceServer {
         private static int EXCEPTION_THRESHOLD_MILLIS = 10_000;
         private volatile long tlsErrorLastSeen = -1;
 
-        public CommunicateAction(final LoadBalanceProtocol loadBalanceProtocol, final Socket socket, final EventReporter eventReporter) throws IOException {
+        public CommunicateAction(final LoadBalanceProtocol loadBalanceProtocol, final PeerConnection peerConnection, final EventReporter eventReporter) {
             this.loadBalanceProtocol = loadBalanceProtocol;
-            this.socket = socket;
+            this.peerConnection = peerConnection;
             this.eventReporter = eventReporter;
-
-            this.in = new BufferedInputStream(socket.getInputStream());
-            this.out = new BufferedOutputStream(socket.getOutputStream());
         }
 
         public void stop() {
             this.stopped = true;
+
+            try {
+                peerConnection.close();
+            } catch (final IOException ioe) {
+                logger.debug("Failed to close connection to Peer {}", peerConnection.getPeerDescription(), ioe);
+            }
         }
 
-        @Override
-        public void run() {
-            String peerDescription = "<Unknown Client>";
+        String getPeerHostname() {
+            final String peerHostname = peerConnection.getPeerHostname();
+            return peerHostname == null ? peerConnection.getPeerDescription() : peerHostname;
+        }
 
-            while (!stopped) {
-                try {
-                    peerDescription = socket.getRemoteSocketAddress().toString();
+        boolean hasBufferedInput() {
+            try {
+                return peerConnection.hasBufferedInput();
+            } catch (final IOException ioe) {
+                // The failure will be encountered again, and handled, when the next transaction is received.
+                return true;
+            }
+        }
 
-                    logger.debug("Receiving FlowFiles from Peer {}", peerDescription);
-                    loadBalanceProtocol.receiveFlowFiles(socket, in, out);
+        /**
+         * Receives a single transaction from the peer
+         *
+         * @return the number of FlowFiles and bytes received, or <code>null</code> if the connection to the peer has been closed
+         */
+        public TimedCountSize communicate() {
+            final String peerDescription = peerConnection.getPeerDescription();
+            if (stopped) {
+                return null;
+            }
 
-                    if (socket.isClosed()) {
-                        logger.debug("Finished Receiving FlowFiles from Peer {}", peerDescription);
-                        break;
-                    }
-                } catch (final Exception e) {
-                    if (socket != null) {
-                        try {
-                            socket.close();
-                        } catch (final IOException ioe) {
-                            e.addSuppressed(ioe);
-                        }
-                    }
+            try {
+                peerConnection.performHandshake();
 
-                    /* The exceptions can fill the log very quickly and make it difficult to use. SSLPeerUnverifiedExceptions
-                    especially repeat and have a long stacktrace, and are not likely to be resolved instantaneously. Suppressing
-                    them for a period of time is helpful */
-                    if (CertificateUtils.isTlsError(e)) {
-                        handleTlsError(peerDescription, e);
-                    } else {
-                        logger.error("Failed to communicate with Peer {}", peerDescription, e);
-                        eventReporter.reportEvent(Severity.ERROR, "Load Balanced Connection", "Failed to receive FlowFiles for Load Balancing due to " + e);
-                    }
-                    return;
+                logger.debug("Receiving FlowFiles from Peer {}", peerDescription);
+                final long bytesReceivedBefore = peerConnection.getBytesReceived();
+                final int flowFileCount = loadBalanceProtocol.receiveFlowFiles(peerConnection.getPeerHostname(), peerConnection.getSslSession(),
+                    peerConnection.getInputStream(), peerConnection.getOutputStream());
+
+                if (flowFileCount < 0) {
+                    logger.debug("Finished Receiving FlowFiles from Peer {}", peerDescription);
+                    stop();
+                    return null;
+                }
+
+                return new TimedCountSize(flowFileCount, peerConnection.getBytesReceived() - bytesReceivedBefore);
+            } catch (final Exception e) {
+                final boolean stoppedExternally = stopped;
+                stop();
+
+                if (stoppedExternally) {
+                    logger.debug("Stopped receiving FlowFiles from Peer {} because the server is shutting down", peerDescription, e);
+                    return null;
+                }
+
+                /* The exceptions can fill the log very quickly and make it difficult to use. SSLPeerUnverifiedExceptions
+                especially repeat and have a long stacktrace, and are not likely to be resolved instantaneously. Suppressing
+                them for a period of time is helpful */
+                if (CertificateUtils.isTlsError(e)) {
+                    handleTlsError(peerDescription, e);
+                } else {
+                    logger.error("Failed to communicate with Peer {}", peerDescription, e);
+                    eventReporter.reportEvent(Severity.ERROR, "Load Balanced Connection", "Failed to receive FlowFiles for Load Balancing due to " + e);
                 }
+                return null;
             }
         }
 
@@ -230,53 +420,98 @@ public class ConnectionLoadBalanceServer {
     }
 
 
+
+
     private class AcceptConnection implements Runnable {
-        private final ServerSocket serverSocket;
+        private final ServerSocketChannel serverSocketChannel;
+        private final Selector selector;
         private volatile boolean stopped = false;
 
-        public AcceptConnection(final ServerSocket serverSocket) {
-            this.serverSocket = serverSocket;
+        public AcceptConnection(final ServerSocketChannel serverSocketChannel, final Selector selector) {
+            this.serverSocketChannel = serverSocketChannel;
+            this.selector = selector;
         }
 
         public void stop() {
             stopped = true;
+            selector.wakeup();
         }
 
         @Override
         public void run() {
-            try {
-                serverSocket.setSoTimeout(1000);
-            } catch (final Exception e) {
-                logger.error("Failed to set soTimeout on Server Socket for Load Balancing data across cluster", e);
-            }
-
             while (!stopped) {
                 try {
-                    final Socket socket;
-                    try {
-                        socket = serverSocket.accept();
-                    } catch (final SocketTimeoutException ste) {
-                        continue;
+                    selector.select(1000);
+
+                    SelectionKey keyToResume;
+                    while ((keyToResume = keysToResume.poll()) != null) {
+                        if (keyToResume.isValid()) {
+                            keyToResume.interestOps(SelectionKey.OP_READ);
+                        }
                     }
 
-                    socket.setSoTimeout(connectionTimeoutMillis);
+                    final Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        final SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
 
-                    final CommunicateAction communicateAction = new CommunicateAction(loadBalanceProtocol, socket, eventReporter);
-                    final Thread commsThread = new Thread(communicateAction);
-                    commsThread.setName("Load-Balance Server Thread-" + threadCounter.getAndIncrement());
-                    commsThread.start();
+                        if (!key.isValid()) {
+                            continue;
+                        }
 
-                    communicationActions.add(communicateAction);
+                        if (key.isAcceptable()) {
+                            try {
+                                accept(serverSocketChannel, selector);
+                            } catch (final Exception e) {
+                                logger.error("{} Failed to accept connection from other node in cluster", ConnectionLoadBalanceServer.this, e);
+                            }
+                        } else if (key.isReadable()) {
+                            // Stop watching the peer while a thread is receiving from it. The thread returns it to the Selector when finished.
+                            key.interestOps(0);
+                            submit(key, (CommunicateAction) key.attachment());
+                        }
+                    }
                 } catch (final Exception e) {
-                    logger.error("{} Failed to accept connection from other node in cluster", ConnectionLoadBalanceServer.this, e);
+                    logger.error("{} Failed to determine which nodes in the cluster have data available", ConnectionLoadBalanceServer.this, e);
                 }
             }
 
-            try {
-                serverSocket.close();
-            } catch (final Exception e) {
-                logger.warn("Failed to properly shutdown Server Socket for Load Balancing", e);
+            closeQuietly(serverSocketChannel, selector);
+        }
+    }
+
+    /**
+     * The rate at which FlowFiles and bytes have been received, averaged over the last five minutes
+     */
+    public static class ReceiveRate {
+        private final double flowFilesPerSecond;
+        private final double bytesPerSecond;
+
+        public ReceiveRate(final double flowFilesPerSecond, final double bytesPerSecond) {
+            this.flowFilesPerSecond = flowFilesPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        private static ReceiveRate of(final TimedBuffer<TimedCountSize> buffer) {
+            final TimedCountSize aggregate = buffer.getAggregateValue(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(STATISTICS_SECONDS));
+            if (aggregate == null) {
+                return new ReceiveRate(0D, 0D);
             }
+
+            return new ReceiveRate(aggregate.getCount() / (double) STATISTICS_SECONDS, aggregate.getSize() / (double) STATISTICS_SECONDS);
+        }
+
+        public double getFlowFilesPerSecond() {
+            return flowFilesPerSecond;
+        }
+
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "ReceiveRate[flowFilesPerSecond=" + flowFilesPerSecond + ", bytesPerSecond=" + bytesPerSecond + "]";
         }
     }
 
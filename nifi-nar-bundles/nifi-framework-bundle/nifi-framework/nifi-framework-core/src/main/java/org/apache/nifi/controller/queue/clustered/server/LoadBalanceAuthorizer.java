@@ -17,17 +17,18 @@
 
 package org.apache.nifi.controller.queue.clustered.server;
 
-import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSession;
 import java.io.IOException;
 
 public interface LoadBalanceAuthorizer {
     /**
-     * Checks if the given SSLSocket (which includes identities) is allowed to load balance data. If so, the identity that has been
-     * permitted or hostname derived from the socket is returned. If not, a NotAuthorizedException is thrown.
+     * Checks if the peer of the given SSLSession (which includes identities) is allowed to load balance data. If so, the identity that has been
+     * permitted or the given hostname of the peer is returned. If not, a NotAuthorizedException is thrown.
      *
-     * @param sslSocket the SSLSocket which includes identities to check
+     * @param sslSession the SSLSession which includes identities to check
+     * @param peerHostname the hostname of the peer
      * @return the identity that is authorized, or null if the given collection of identities is null
      * @throws NotAuthorizedException if none of the given identities is authorized to load balance data
      */
-    String authorize(SSLSocket sslSocket) throws NotAuthorizedException, IOException;
+    String authorize(SSLSession sslSession, String peerHostname) throws NotAuthorizedException, IOException;
 }
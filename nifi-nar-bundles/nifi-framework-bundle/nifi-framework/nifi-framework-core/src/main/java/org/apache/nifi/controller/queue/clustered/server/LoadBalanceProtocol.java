@@ -17,25 +17,28 @@
 
 package org.apache.nifi.controller.queue.clustered.server;
 
+import javax.net.ssl.SSLSession;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
 
 public interface LoadBalanceProtocol {
 
     /**
-     * Receives FlowFiles from the peer attached to the socket
+     * Receives a single transaction of FlowFiles from the given peer. The connection to the peer is owned by the caller, which is expected to call
+     * this method again for the same peer once more data is available from it.
      *
-     * @param socket the socket to read from and write to
-     * @param in the InputStream to read from. The Socket's InputStream is wrapped with a BufferedInputStream, which is provided
-     * here. If this method were to wrap the InputStream itself, a second call to the method may discard some data that was consumed
-     * by the previous call's BufferedInputStream
+     * @param peerHostname the hostname of the peer
+     * @param sslSession the TLS session that was established with the peer, or <code>null</code> if communications are not secure
+     * @param in the InputStream to read from. The same InputStream is provided for every call for a given peer, so any data that it has
+     * buffered is retained between calls. If this method were to wrap the InputStream itself, a second call to the method may discard some
+     * data that was consumed by the previous call's wrapper
      * @param out the OutputStream to write to
+     * @return the number of FlowFiles that were received, or <code>-1</code> if the peer closed the connection
      *
      * @throws TransactionAbortedException if the transaction was aborted
      * @throws IOException if unable to communicate with the peer
      */
-    void receiveFlowFiles(Socket socket, InputStream in, OutputStream out) throws IOException;
+    int receiveFlowFiles(String peerHostname, SSLSession sslSession, InputStream in, OutputStream out) throws IOException;
 
 }
@@ -0,0 +1,458 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller.queue.clustered.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLSession;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * <p>
+ * The server side of a connection from a peer that is load balancing data to this node. The underlying SocketChannel is in non-blocking mode so that
+ * it can be registered with the server's Selector while the peer is idle. While a transaction is in progress, the connection is read from and written to
+ * through the InputStream and OutputStream that it provides. These streams block, waiting for the channel to become readable or writable using a Selector
+ * that is dedicated to this connection, and throw a SocketTimeoutException if no progress is made within the configured timeout.
+ * </p>
+ *
+ * <p>
+ * If an SSLEngine is provided, all data is encrypted and decrypted using it, and {@link #performHandshake()} must be called before any data is
+ * exchanged. Instances of this class are not thread-safe, but they may be handed from one thread to another between transactions.
+ * </p>
+ */
+class PeerConnection implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PeerConnection.class);
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private final SocketChannel socketChannel;
+    private final SSLEngine sslEngine;
+    private final int timeoutMillis;
+    private final InetSocketAddress peerAddress;
+    private final String peerDescription;
+    private volatile String peerHostname; // resolved when first needed
+
+    private final InputStream in = new PeerInputStream();
+    private final OutputStream out = new PeerOutputStream();
+
+    private ByteBuffer networkIn; // data read from the channel that has not yet been decrypted. Always ready to be written to.
+    private ByteBuffer networkOut; // encrypted data that is ready to be written to the channel. Always ready to be read from.
+    private ByteBuffer applicationIn; // decrypted data that is ready to be consumed. Always ready to be read from.
+    private final ByteBuffer applicationOut = ByteBuffer.allocate(BUFFER_SIZE); // data that has been written but not yet sent. Always ready to be written to.
+
+    private Selector waitSelector;
+    private SelectionKey waitKey;
+    private boolean handshakeComplete = false;
+    private long bytesReceived = 0L;
+
+    PeerConnection(final SocketChannel socketChannel, final SSLEngine sslEngine, final int timeoutMillis) {
+        this.socketChannel = socketChannel;
+        this.sslEngine = sslEngine;
+        this.timeoutMillis = timeoutMillis;
+
+        final SocketAddress remoteAddress = socketChannel.socket().getRemoteSocketAddress();
+        this.peerAddress = remoteAddress instanceof InetSocketAddress ? (InetSocketAddress) remoteAddress : null;
+        this.peerDescription = remoteAddress == null ? "<Unknown Client>" : remoteAddress.toString();
+
+        if (sslEngine == null) {
+            networkIn = null;
+            networkOut = null;
+            applicationIn = ByteBuffer.allocate(BUFFER_SIZE);
+        } else {
+            final SSLSession session = sslEngine.getSession();
+            networkIn = ByteBuffer.allocate(session.getPacketBufferSize());
+            networkOut = ByteBuffer.allocate(session.getPacketBufferSize());
+            applicationIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+        }
+
+        applicationIn.flip();
+        if (networkOut != null) {
+            networkOut.flip();
+        }
+    }
+
+    SocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+
+    /**
+     * Returns the hostname of the peer. Determining the hostname may require a reverse DNS lookup, so it is determined when first requested,
+     * by the thread that communicates with the peer, rather than when the connection is accepted, by the thread that services the Selector.
+     *
+     * @return the hostname of the peer, or <code>null</code> if the peer's address is not known
+     */
+    String getPeerHostname() {
+        if (peerHostname == null && peerAddress != null) {
+            peerHostname = peerAddress.getHostName();
+        }
+
+        return peerHostname;
+    }
+
+    String getPeerDescription() {
+        return peerDescription;
+    }
+
+    /**
+     * @return the TLS session that was established with the peer, or <code>null</code> if communications are not secure
+     */
+    SSLSession getSslSession() {
+        return sslEngine == null ? null : sslEngine.getSession();
+    }
+
+    InputStream getInputStream() {
+        return in;
+    }
+
+    OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * @return the number of bytes of (decrypted) data that have been consumed from the InputStream
+     */
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Indicates whether or not data has already been read from the channel but not yet consumed from the InputStream. The server's Selector will not
+     * indicate that the channel is readable for such data, so the connection must be serviced again without waiting for the Selector.
+     *
+     * @return <code>true</code> if data is available to be consumed without reading from the channel
+     * @throws IOException if unable to decrypt the data that has been read from the channel
+     */
+    boolean hasBufferedInput() throws IOException {
+        if (applicationIn.hasRemaining()) {
+            return true;
+        }
+
+        if (sslEngine == null || networkIn.position() == 0) {
+            return false;
+        }
+
+        unwrap();
+        return applicationIn.hasRemaining();
+    }
+
+    /**
+     * Performs the TLS handshake with the peer, if it has not already been performed. Does nothing if communications are not secure.
+     *
+     * @throws IOException if unable to complete the handshake
+     */
+    void performHandshake() throws IOException {
+        if (sslEngine == null || handshakeComplete) {
+            return;
+        }
+
+        sslEngine.beginHandshake();
+        completeHandshake();
+        handshakeComplete = true;
+        logger.debug("Completed TLS Handshake with Peer {}", peerDescription);
+    }
+
+    private void completeHandshake() throws IOException {
+        while (true) {
+            switch (sslEngine.getHandshakeStatus()) {
+                case FINISHED:
+                case NOT_HANDSHAKING:
+                    return;
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = sslEngine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    break;
+                case NEED_WRAP:
+                    wrap(EMPTY_BUFFER);
+                    break;
+                default:
+                    // NEED_UNWRAP, or NEED_UNWRAP_AGAIN when running on newer versions of Java
+                    if (unwrap() == SSLEngineResult.Status.BUFFER_UNDERFLOW && readNetwork(networkIn) < 0) {
+                        throw new EOFException("Peer " + peerDescription + " closed the connection during the TLS Handshake");
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Decrypts as much of the data that has already been read from the channel as possible into the application buffer
+     */
+    private SSLEngineResult.Status unwrap() throws IOException {
+        while (true) {
+            networkIn.flip();
+            applicationIn.compact();
+
+            final SSLEngineResult result;
+            try {
+                result = sslEngine.unwrap(networkIn, applicationIn);
+            } finally {
+                applicationIn.flip();
+                networkIn.compact();
+            }
+
+            switch (result.getStatus()) {
+                case BUFFER_OVERFLOW:
+                    applicationIn = enlarge(applicationIn, sslEngine.getSession().getApplicationBufferSize(), true);
+                    continue;
+                case BUFFER_UNDERFLOW:
+                    if (!networkIn.hasRemaining()) {
+                        networkIn = enlarge(networkIn, sslEngine.getSession().getPacketBufferSize(), false);
+                    }
+                    return result.getStatus();
+                default:
+                    return result.getStatus();
+            }
+        }
+    }
+
+    /**
+     * Encrypts all of the given data and writes it to the channel
+     */
+    private void wrap(final ByteBuffer plaintext) throws IOException {
+        do {
+            networkOut.compact();
+
+            final SSLEngineResult result;
+            try {
+                result = sslEngine.wrap(plaintext, networkOut);
+            } finally {
+                networkOut.flip();
+            }
+
+            switch (result.getStatus()) {
+                case BUFFER_OVERFLOW:
+                    networkOut = enlarge(networkOut, sslEngine.getSession().getPacketBufferSize(), true);
+                    break;
+                case CLOSED:
+                    throw new IOException("Failed to send data to Peer " + peerDescription + " because the TLS session has been closed");
+                default:
+                    break;
+            }
+
+            writeNetwork(networkOut);
+        } while (plaintext.hasRemaining());
+    }
+
+    private static ByteBuffer enlarge(final ByteBuffer buffer, final int additionalBytes, final boolean readable) {
+        final ByteBuffer enlarged = ByteBuffer.allocate(buffer.capacity() + additionalBytes);
+        if (readable) {
+            enlarged.put(buffer);
+            enlarged.flip();
+        } else {
+            buffer.flip();
+            enlarged.put(buffer);
+        }
+
+        return enlarged;
+    }
+
+    /**
+     * Ensures that decrypted data is available to be consumed, reading from the channel as necessary
+     *
+     * @return <code>false</code> if the end of the stream has been reached, <code>true</code> otherwise
+     */
+    private boolean fill() throws IOException {
+        while (!applicationIn.hasRemaining()) {
+            if (sslEngine == null) {
+                applicationIn.clear();
+                final int bytesRead;
+                try {
+                    bytesRead = readNetwork(applicationIn);
+                } finally {
+                    applicationIn.flip();
+                }
+
+                if (bytesRead < 0) {
+                    return false;
+                }
+
+                continue;
+            }
+
+            final SSLEngineResult.Status status = unwrap();
+            if (status == SSLEngineResult.Status.CLOSED) {
+                return false;
+            }
+            if (sslEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
+                // The peer may send post-handshake messages, such as a TLS 1.3 key update, which must be handled before reading more data
+                completeHandshake();
+            }
+            if (status == SSLEngineResult.Status.BUFFER_UNDERFLOW && readNetwork(networkIn) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int readNetwork(final ByteBuffer destination) throws IOException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (true) {
+            final int bytesRead = socketChannel.read(destination);
+            if (bytesRead != 0) {
+                return bytesRead;
+            }
+
+            await(SelectionKey.OP_READ, deadline);
+        }
+    }
+
+    private void writeNetwork(final ByteBuffer source) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (source.hasRemaining()) {
+            final int bytesWritten = socketChannel.write(source);
+            if (bytesWritten > 0) {
+                deadline = System.currentTimeMillis() + timeoutMillis;
+                continue;
+            }
+
+            await(SelectionKey.OP_WRITE, deadline);
+        }
+    }
+
+    private void await(final int operation, final long deadline) throws IOException {
+        if (waitSelector == null) {
+            waitSelector = Selector.open();
+            waitKey = socketChannel.register(waitSelector, operation);
+        } else {
+            waitKey.interestOps(operation);
+        }
+
+        final long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Timed out waiting for Peer " + peerDescription + " after " + timeoutMillis + " milliseconds");
+        }
+
+        waitSelector.select(remaining);
+        waitSelector.selectedKeys().clear();
+    }
+
+    private void flushApplicationOut() throws IOException {
+        applicationOut.flip();
+        try {
+            if (sslEngine == null) {
+                writeNetwork(applicationOut);
+            } else {
+                wrap(applicationOut);
+            }
+        } finally {
+            applicationOut.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (waitSelector != null) {
+                waitSelector.close();
+            }
+        } finally {
+            socketChannel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PeerConnection[peer=" + peerDescription + ", secure=" + (sslEngine != null) + "]";
+    }
+
+
+    private class PeerInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+
+            bytesReceived++;
+            return applicationIn.get() & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+
+            final int bytesToCopy = Math.min(len, applicationIn.remaining());
+            applicationIn.get(b, off, bytesToCopy);
+            bytesReceived += bytesToCopy;
+            return bytesToCopy;
+        }
+
+        @Override
+        public int available() {
+            return applicationIn.remaining();
+        }
+    }
+
+    private class PeerOutputStream extends OutputStream {
+        @Override
+        public void write(final int b) throws IOException {
+            if (!applicationOut.hasRemaining()) {
+                flushApplicationOut();
+            }
+
+            applicationOut.put((byte) b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (!applicationOut.hasRemaining()) {
+                    flushApplicationOut();
+                }
+
+                final int bytesToCopy = Math.min(remaining, applicationOut.remaining());
+                applicationOut.put(b, offset, bytesToCopy);
+                offset += bytesToCopy;
+                remaining -= bytesToCopy;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (applicationOut.position() > 0) {
+                flushApplicationOut();
+            }
+        }
+    }
+}
@@ -45,13 +45,12 @@ import org.apache.nifi.stream.io.StreamUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSession;
 import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
@@ -110,27 +109,26 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
 
 
     @Override
-    public void receiveFlowFiles(final Socket socket, final InputStream in, final OutputStream out) throws IOException {
-        String peerDescription = socket.getInetAddress().getHostName();
-        if (socket instanceof SSLSocket) {
+    public int receiveFlowFiles(final String peerHostname, final SSLSession sslSession, final InputStream in, final OutputStream out) throws IOException {
+        String peerDescription = peerHostname;
+        if (sslSession != null) {
             logger.debug("Connection received from peer {}", peerDescription);
 
-            peerDescription = authorizer.authorize((SSLSocket) socket);
+            peerDescription = authorizer.authorize(sslSession, peerHostname);
             logger.debug("Client Identities are authorized to load balance data for peer {}", peerDescription);
         }
 
         final int version = negotiateProtocolVersion(in, out, peerDescription);
 
         if (version == SOCKET_CLOSED) {
-            socket.close();
-            return;
+            return SOCKET_CLOSED;
         }
         if (version == NO_DATA_AVAILABLE) {
-            logger.debug("No data is available from {}", socket.getRemoteSocketAddress());
-            return;
+            logger.debug("No data is available from {}", peerHostname);
+            return 0;
         }
 
-        receiveFlowFiles(in, out, peerDescription, version);
+        return receiveFlowFiles(in, out, peerDescription, version);
     }
 
 
@@ -184,7 +182,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
     }
 
 
-    protected void receiveFlowFiles(final InputStream in, final OutputStream out, final String peerDescription, final int protocolVersion) throws IOException {
+    protected int receiveFlowFiles(final InputStream in, final OutputStream out, final String peerDescription, final int protocolVersion) throws IOException {
         logger.debug("Receiving FlowFiles from {}", peerDescription);
         final long startTimestamp = System.currentTimeMillis();
 
@@ -195,7 +193,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         final String connectionId = getConnectionID(dataIn, peerDescription);
         if (connectionId == null) {
             logger.debug("Received no Connection ID from Peer {}. Will consider receipt of FlowFiles complete", peerDescription);
-            return;
+            return 0;
         }
 
         final Connection connection = flowController.getFlowManager().getConnection(connectionId);
@@ -222,7 +220,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
                 logger.debug("Received a 'Check Space' request from Peer {} for Connection with ID {}; responding with QUEUE_FULL", peerDescription, connectionId);
                 out.write(QUEUE_FULL);
                 out.flush();
-                return; // we're finished receiving flowfiles for now, and we'll restart the communication process.
+                return 0; // we're finished receiving flowfiles for now, and we'll restart the communication process.
             } else {
                 logger.debug("Received a 'Check Space' request from Peer {} for Connection with ID {}; responding with SPACE_AVAILABLE", peerDescription, connectionId);
                 out.write(SPACE_AVAILABLE);
@@ -290,6 +288,7 @@ public class StandardLoadBalanceProtocol implements LoadBalanceProtocol {
         }
 
         logger.debug("Successfully received {} FlowFiles from Peer {} to Load Balance for Connection {}", flowFilesReceived.size(), peerDescription, connectionId);
+        return flowFilesReceived.size();
     }
 
     private void completeTransaction(final InputStream in, final OutputStream out, final String peerDescription, final List<RemoteFlowFileRecord> flowFilesReceived,
@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.stream.io.ByteCountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * A persistent manifest of the files in a single section's archive directory, in the order in which they were archived. An entry is appended
+ * to the manifest before a file is moved into the archive directory, and entries are removed from the start of the manifest as the files that
+ * they describe are deleted. As a result, finding and deleting the files that were archived before a given time requires reading only the
+ * entries for those files, rather than listing the archive directory.
+ * </p>
+ *
+ * <p>
+ * The manifest is stored in the archive directory in a file named {@value #FILENAME}. The file begins with a header that holds the offsets of the
+ * first and last entries, so that entries that have been removed are skipped, and the file is compacted once the removed entries make up most of
+ * it. The header is written after each entry, so an entry that was only partially written, because NiFi was stopped while writing it, is
+ * overwritten by the next entry. An entry whose file was never moved into the archive directory is harmless, as deleting a file that does not exist
+ * is a no-op.
+ * </p>
+ */
+class ArchiveManifest {
+    static final String FILENAME = "archive.manifest";
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveManifest.class);
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 4 + 8 + 8 + 8;
+    private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+
+    private final Path archiveDirectory;
+    private final Path manifestPath;
+
+    private long headOffset = HEADER_LENGTH;
+    private long tailOffset = HEADER_LENGTH;
+    private long entryCount = 0L;
+    private long oldestArchiveTime = -1L;
+
+    ArchiveManifest(final Path archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+        this.manifestPath = archiveDirectory.resolve(FILENAME);
+    }
+
+    /**
+     * Reads the manifest's header and its first entry
+     *
+     * @return <code>true</code> if the manifest was read, <code>false</code> if there is no manifest
+     * @throws IOException if unable to read the manifest, or if the manifest is not valid
+     */
+    synchronized boolean load() throws IOException {
+        reset();
+
+        if (!Files.exists(manifestPath)) {
+            return false;
+        }
+
+        try (final RandomAccessFile raf = new RandomAccessFile(manifestPath.toFile(), "r")) {
+            final int version = raf.readInt();
+            if (version != VERSION) {
+                throw new IOException("Archive manifest " + manifestPath + " has unsupported version " + version);
+            }
+
+            final long head = raf.readLong();
+            final long tail = raf.readLong();
+            final long count = raf.readLong();
+            if (head < HEADER_LENGTH || tail < head || tail > raf.length() || count < 0) {
+                throw new IOException("Archive manifest " + manifestPath + " has an invalid header");
+            }
+
+            headOffset = head;
+            tailOffset = tail;
+            entryCount = count;
+
+            if (headOffset < tailOffset) {
+                raf.seek(headOffset);
+                oldestArchiveTime = raf.readLong();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the manifest with one that lists every file that is currently in the archive directory, ordered by the time that each file was
+     * last modified. This is used when there is no manifest for an archive directory, or when the manifest cannot be read.
+     *
+     * @throws IOException if unable to list the archive directory or write the manifest
+     */
+    synchronized void rebuild() throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        if (Files.exists(archiveDirectory)) {
+            try (final DirectoryStream<Path> stream = Files.newDirectoryStream(archiveDirectory)) {
+                for (final Path file : stream) {
+                    // Skip the manifest itself, along with any temporary manifest that was left behind
+                    final String filename = file.getFileName().toString();
+                    if (filename.startsWith(FILENAME)) {
+                        continue;
+                    }
+
+                    final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        entries.add(new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), filename));
+                    }
+                }
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::getArchiveTime));
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        for (final Entry entry : entries) {
+            entry.writeTo(out);
+        }
+
+        Files.createDirectories(archiveDirectory);
+        writeManifest(baos.toByteArray(), entries.size());
+
+        if (!entries.isEmpty()) {
+            oldestArchiveTime = entries.get(0).getArchiveTime();
+        }
+    }
+
+    /**
+     * Adds an entry for a file that is about to be moved into the archive directory
+     *
+     * @param filename the name of the file
+     * @param size the size of the file
+     * @param archiveTime the time at which the file is archived
+     * @throws IOException if unable to update the manifest
+     */
+    synchronized void append(final String filename, final long size, final long archiveTime) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+        new Entry(archiveTime, size, filename).writeTo(new DataOutputStream(baos));
+        final byte[] entry = baos.toByteArray();
+
+        RandomAccessFile raf;
+        try {
+            raf = new RandomAccessFile(manifestPath.toFile(), "rw");
+        } catch (final FileNotFoundException fnfe) {
+            // The archive directory does not exist yet.
+            Files.createDirectories(archiveDirectory);
+            raf = new RandomAccessFile(manifestPath.toFile(), "rw");
+        }
+
+        try {
+            if (raf.length() < HEADER_LENGTH) {
+                headOffset = HEADER_LENGTH;
+                tailOffset = HEADER_LENGTH;
+                entryCount = 0L;
+            }
+
+            raf.seek(tailOffset);
+            raf.write(entry);
+            tailOffset += entry.length;
+            entryCount++;
+            writeHeader(raf);
+        } finally {
+            raf.close();
+        }
+
+        if (oldestArchiveTime < 0) {
+            oldestArchiveTime = archiveTime;
+        }
+    }
+
+    /**
+     * Deletes all files that were archived before the given time and removes their entries from the manifest. The entry of a file that could
+     * not be deleted is kept, so that deleting the file is attempted again by the next call.
+     *
+     * @param archivedBefore files that were archived before this time are deleted
+     * @return the number of files and bytes that were deleted
+     * @throws IOException if unable to read or update the manifest
+     */
+    Expiration expire(final long archivedBefore) throws IOException {
+        return expire(archivedBefore, filename -> { });
+    }
+
+    /**
+     * Deletes all files that were archived before the given time and removes their entries from the manifest, as {@link #expire(long)} does
+     *
+     * @param archivedBefore files that were archived before this time are deleted
+     * @param removedFileConsumer notified of the name of each file whose entry is removed from the manifest
+     * @return the number of files and bytes that were deleted
+     * @throws IOException if unable to read or update the manifest
+     */
+    synchronized Expiration expire(final long archivedBefore, final Consumer<String> removedFileConsumer) throws IOException {
+        final Expiration expiration = new Expiration();
+        if (oldestArchiveTime < 0 || oldestArchiveTime >= archivedBefore) {
+            return expiration;
+        }
+
+        long position = headOffset;
+        long nextArchiveTime = -1L;
+        final List<Entry> retained = new ArrayList<>();
+        try (final FileChannel channel = FileChannel.open(manifestPath, StandardOpenOption.READ)) {
+            channel.position(headOffset);
+            final ByteCountingInputStream countingIn = new ByteCountingInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            final DataInputStream in = new DataInputStream(countingIn);
+
+            while (position < tailOffset) {
+                final Entry entry;
+                try {
+                    entry = Entry.readFrom(in);
+                } catch (final EOFException eof) {
+                    logger.warn("Archive manifest {} ends before the end of its last entry; entries after offset {} will be ignored", manifestPath, position);
+                    tailOffset = position;
+                    break;
+                }
+
+                if (entry.getArchiveTime() >= archivedBefore) {
+                    nextArchiveTime = entry.getArchiveTime();
+                    break;
+                }
+
+                final Path file = archiveDirectory.resolve(entry.getFilename());
+                try {
+                    if (Files.deleteIfExists(file)) {
+                        expiration.filesDeleted++;
+                        expiration.bytesDeleted += entry.getSize();
+                    }
+                    removedFileConsumer.accept(entry.getFilename());
+                } catch (final IOException ioe) {
+                    logger.warn("Failed to delete archived file {} due to {}; will attempt to delete it again later", file, ioe.toString());
+                    retained.add(entry);
+                }
+
+                position = headOffset + countingIn.getBytesConsumed();
+                entryCount = Math.max(0L, entryCount - 1);
+            }
+        }
+
+        headOffset = position;
+        oldestArchiveTime = retained.isEmpty() ? nextArchiveTime : retained.get(0).getArchiveTime();
+
+        if (!retained.isEmpty()) {
+            // The retained entries are older than all of the remaining entries, so they are written ahead of them.
+            compact(retained);
+        } else if (headOffset >= tailOffset) {
+            // Every entry has been removed, so start over with an empty manifest.
+            writeManifest(new byte[0], 0L);
+        } else if (headOffset - HEADER_LENGTH > COMPACTION_THRESHOLD && headOffset - HEADER_LENGTH > tailOffset - headOffset) {
+            compact(Collections.emptyList());
+        } else {
+            try (final RandomAccessFile raf = new RandomAccessFile(manifestPath.toFile(), "rw")) {
+                writeHeader(raf);
+            }
+        }
+
+        return expiration;
+    }
+
+    private void compact(final List<Entry> leadingEntries) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(baos);
+        for (final Entry entry : leadingEntries) {
+            entry.writeTo(out);
+        }
+
+        final byte[] remaining = new byte[(int) (tailOffset - headOffset)];
+        try (final RandomAccessFile raf = new RandomAccessFile(manifestPath.toFile(), "r")) {
+            raf.seek(headOffset);
+            raf.readFully(remaining);
+        }
+        out.write(remaining);
+
+        writeManifest(baos.toByteArray(), entryCount + leadingEntries.size());
+    }
+
+    private void writeManifest(final byte[] entries, final long count) throws IOException {
+        headOffset = HEADER_LENGTH;
+        tailOffset = HEADER_LENGTH + entries.length;
+        entryCount = count;
+
+        final Path tempPath = archiveDirectory.resolve(FILENAME + ".tmp");
+        try (final RandomAccessFile raf = new RandomAccessFile(tempPath.toFile(), "rw")) {
+            raf.setLength(0L);
+            writeHeader(raf);
+            raf.write(entries);
+        }
+
+        Files.move(tempPath, manifestPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeHeader(final RandomAccessFile raf) throws IOException {
+        raf.seek(0L);
+        raf.writeInt(VERSION);
+        raf.writeLong(headOffset);
+        raf.writeLong(tailOffset);
+        raf.writeLong(entryCount);
+    }
+
+    /**
+     * Forgets all entries. This does not delete the manifest; it is used when the repository has been purged.
+     */
+    synchronized void reset() {
+        headOffset = HEADER_LENGTH;
+        tailOffset = HEADER_LENGTH;
+        entryCount = 0L;
+        oldestArchiveTime = -1L;
+    }
+
+    Path getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    /**
+     * @return the time at which the oldest file in the manifest was archived, or <code>-1</code> if the manifest is empty
+     */
+    synchronized long getOldestArchiveTime() {
+        return oldestArchiveTime;
+    }
+
+    synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ArchiveManifest[" + archiveDirectory + "]";
+    }
+
+
+    static class Expiration {
+        private long filesDeleted;
+        private long bytesDeleted;
+
+        long getFilesDeleted() {
+            return filesDeleted;
+        }
+
+        long getBytesDeleted() {
+            return bytesDeleted;
+        }
+
+        void add(final Expiration other) {
+            filesDeleted += other.filesDeleted;
+            bytesDeleted += other.bytesDeleted;
+        }
+    }
+
+    private static class Entry {
+        private final long archiveTime;
+        private final long size;
+        private final String filename;
+
+        Entry(final long archiveTime, final long size, final String filename) {
+            this.archiveTime = archiveTime;
+            this.size = size;
+            this.filename = filename;
+        }
+
+        static Entry readFrom(final DataInputStream in) throws IOException {
+            final long archiveTime = in.readLong();
+            final long size = in.readLong();
+            final String filename = in.readUTF();
+            return new Entry(archiveTime, size, filename);
+        }
+
+        void writeTo(final DataOutputStream out) throws IOException {
+            out.writeLong(archiveTime);
+            out.writeLong(size);
+            out.writeUTF(filename);
+        }
+
+        long getArchiveTime() {
+            return archiveTime;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        String getFilename() {
+            return filename;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.engine.FlowEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Writes the Resource Claims of a single container on behalf of the threads that write Content Claims. Rather than issuing a write (and, if
+ * the repository is configured to always sync, a sync) for each Content Claim, the bytes written to a {@link ClaimOutputStream} are buffered
+ * in memory and handed to a dedicated writer thread when the buffer fills or the Content Claim is completed. The writer thread combines all of
+ * the buffers that are queued for the same file into a single gathering write and then, if any of the queued requests requires it, syncs that
+ * file to disk once on behalf of all of them.
+ * </p>
+ *
+ * <p>
+ * Bytes are appended to the Resource Claim's file in exactly the order in which they were written, so the layout of Resource Claims and Content
+ * Claims on disk is the same as when the content is written directly, and the files are read in the same way regardless of how they were written.
+ * </p>
+ */
+class BatchingClaimWriter {
+    private static final Logger logger = LoggerFactory.getLogger(BatchingClaimWriter.class);
+    static final int MAX_REQUESTS_PER_BATCH = 1024;
+    private static final int MAX_POOLED_BUFFERS = 32;
+    private static final long POLL_MILLIS = 100L;
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final String containerName;
+    private final int bufferSize;
+    private final LinkedBlockingQueue<WriteRequest> queue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+    private final ExecutorService writerExecutor;
+    private volatile boolean shutdown = false;
+
+    private final LongAdder requestsWritten = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder syncRequests = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+
+    BatchingClaimWriter(final String containerName, final int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Content Repository write buffer size must be at least 1 byte but was " + bufferSize);
+        }
+
+        this.containerName = containerName;
+        this.bufferSize = bufferSize;
+
+        writerExecutor = new FlowEngine(1, "FileSystemRepository Claim Writer for Container " + containerName, true);
+        writerExecutor.submit(this::drainQueue);
+    }
+
+    /**
+     * Opens the given Resource Claim file for appending
+     *
+     * @param file the file to append to
+     * @return an OutputStream whose bytes are written by this writer
+     * @throws IOException if unable to open the file
+     */
+    ClaimOutputStream open(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new ClaimOutputStream(file, channel);
+    }
+
+    private void enqueue(final WriteRequest request) {
+        queue.offer(request);
+
+        if (shutdown) {
+            // The writer thread may have already stopped, so write the request, along with anything queued ahead of it, on this thread.
+            drainInline();
+        }
+    }
+
+    private void drainQueue() {
+        final List<WriteRequest> batch = new ArrayList<>();
+
+        while (true) {
+            final WriteRequest request;
+            try {
+                request = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (request == null) {
+                if (shutdown) {
+                    return;
+                }
+                continue;
+            }
+
+            batch.add(request);
+            queue.drainTo(batch, MAX_REQUESTS_PER_BATCH - 1);
+
+            synchronized (this) {
+                writeBatch(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void drainInline() {
+        synchronized (this) {
+            final List<WriteRequest> batch = new ArrayList<>();
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    private void writeBatch(final List<WriteRequest> batch) {
+        // Group the requests by stream, retaining the order of the requests for each stream so that bytes are appended in the order written.
+        final Map<ClaimOutputStream, List<WriteRequest>> requestsByStream = new LinkedHashMap<>();
+        for (final WriteRequest request : batch) {
+            requestsByStream.computeIfAbsent(request.getStream(), stream -> new ArrayList<>()).add(request);
+        }
+
+        for (final Map.Entry<ClaimOutputStream, List<WriteRequest>> entry : requestsByStream.entrySet()) {
+            writeRequests(entry.getKey(), entry.getValue());
+        }
+
+        batchesWritten.increment();
+        requestsWritten.add(batch.size());
+    }
+
+    private void writeRequests(final ClaimOutputStream stream, final List<WriteRequest> requests) {
+        final List<ByteBuffer> buffers = new ArrayList<>(requests.size());
+        boolean sync = false;
+        long byteCount = 0L;
+        for (final WriteRequest request : requests) {
+            final ByteBuffer data = request.getData();
+            if (data != null) {
+                buffers.add(data);
+                byteCount += data.remaining();
+            }
+
+            if (request.isSync()) {
+                sync = true;
+                syncRequests.increment();
+            }
+        }
+
+        try {
+            final IOException previousFailure = stream.getFailure();
+            if (previousFailure != null) {
+                throw new IOException("Cannot write to " + stream.getFile() + " because a previous write to the file failed", previousFailure);
+            }
+
+            final FileChannel channel = stream.getChannel();
+            if (!buffers.isEmpty()) {
+                final ByteBuffer[] bufferArray = buffers.toArray(new ByteBuffer[buffers.size()]);
+                long remaining = byteCount;
+                while (remaining > 0) {
+                    remaining -= channel.write(bufferArray);
+                }
+                bytesWritten.add(byteCount);
+            }
+
+            if (sync) {
+                channel.force(true);
+                syncs.increment();
+            }
+
+            for (final WriteRequest request : requests) {
+                request.getFuture().complete(null);
+            }
+        } catch (final Throwable t) {
+            final IOException failure = t instanceof IOException ? (IOException) t : new IOException(t);
+            stream.setFailure(failure);
+            logger.error("Failed to write {} bytes to {}", byteCount, stream.getFile(), t);
+
+            for (final WriteRequest request : requests) {
+                request.getFuture().completeExceptionally(failure);
+            }
+        } finally {
+            for (final ByteBuffer buffer : buffers) {
+                releaseBuffer(buffer);
+            }
+        }
+    }
+
+    private ByteBuffer acquireBuffer() {
+        final ByteBuffer pooled = bufferPool.poll();
+        return pooled == null ? ByteBuffer.allocate(bufferSize) : pooled;
+    }
+
+    private void releaseBuffer(final ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+
+    /**
+     * Stops the writer thread once all requests that have already been queued have been written. Any request that is queued after this method
+     * is called is written by the thread that queues it.
+     */
+    void shutdown() {
+        shutdown = true;
+
+        writerExecutor.shutdown();
+        try {
+            if (!writerExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Claim Writer for Container {} did not finish writing queued content within 1 minute", containerName);
+                writerExecutor.shutdownNow();
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        // A request may have been queued after the writer thread observed the shutdown flag.
+        drainInline();
+    }
+
+    long getRequestsWritten() {
+        return requestsWritten.sum();
+    }
+
+    long getBatchesWritten() {
+        return batchesWritten.sum();
+    }
+
+    long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    long getSyncRequestCount() {
+        return syncRequests.sum();
+    }
+
+    long getSyncCount() {
+        return syncs.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchingClaimWriter[container=" + containerName + ", requestsWritten=" + getRequestsWritten() + ", batchesWritten=" + getBatchesWritten()
+            + ", bytesWritten=" + getBytesWritten() + ", syncRequests=" + getSyncRequestCount() + ", syncs=" + getSyncCount() + "]";
+    }
+
+
+    /**
+     * An OutputStream that appends to a Resource Claim file by way of the writer thread. Bytes are buffered until the buffer is full, until
+     * {@link #flush()} is called, or until the Content Claim that is being written is completed by calling {@link #submit(boolean)}. A call
+     * to {@link #flush()} or {@link #close()} returns only once all bytes written to the stream have been written to the file.
+     */
+    class ClaimOutputStream extends OutputStream {
+        private final File file;
+        private final FileChannel channel;
+        private ByteBuffer buffer;
+        private CompletableFuture<Void> lastSubmitted = COMPLETED;
+        private volatile IOException failure;
+        private boolean closed = false;
+
+        private ClaimOutputStream(final File file, final FileChannel channel) {
+            this.file = file;
+            this.channel = channel;
+        }
+
+        @Override
+        public synchronized void write(final int b) throws IOException {
+            verifyWritable();
+
+            if (buffer == null) {
+                buffer = acquireBuffer();
+            }
+
+            buffer.put((byte) b);
+            if (!buffer.hasRemaining()) {
+                submitFullBuffer();
+            }
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) throws IOException {
+            verifyWritable();
+
+            int offset = off;
+            int remaining = len;
+            while (remaining > 0) {
+                if (buffer == null) {
+                    buffer = acquireBuffer();
+                }
+
+                final int toCopy = Math.min(remaining, buffer.remaining());
+                buffer.put(b, offset, toCopy);
+                offset += toCopy;
+                remaining -= toCopy;
+
+                if (!buffer.hasRemaining()) {
+                    submitFullBuffer();
+                }
+            }
+        }
+
+        private void submitFullBuffer() throws IOException {
+            // Allow one full buffer to be written while the next one is filled, but no more, so that a large Content Claim
+            // does not queue an unbounded amount of data in memory.
+            final CompletableFuture<Void> previous = lastSubmitted;
+            submit(false);
+            await(previous);
+        }
+
+        /**
+         * Hands any buffered bytes to the writer thread without waiting for them to be written.
+         *
+         * @param sync whether or not the file should be synced to disk once the bytes have been written
+         * @return a Future that completes once the bytes have been written and, if requested, synced
+         * @throws IOException if a previous write to the file failed
+         */
+        synchronized CompletableFuture<Void> submit(final boolean sync) throws IOException {
+            verifyWritable();
+
+            final ByteBuffer data;
+            if (buffer != null && buffer.position() > 0) {
+                buffer.flip();
+                data = buffer;
+                buffer = null;
+            } else if (sync) {
+                data = null;
+            } else {
+                return lastSubmitted;
+            }
+
+            final WriteRequest request = new WriteRequest(this, data, sync);
+            lastSubmitted = request.getFuture();
+            enqueue(request);
+            return lastSubmitted;
+        }
+
+        /**
+         * Waits for the given Future, obtained from {@link #submit(boolean)}, to complete
+         *
+         * @param future the future to wait for
+         * @throws IOException if the bytes could not be written or synced, or if interrupted while waiting
+         */
+        void await(final CompletableFuture<Void> future) throws IOException {
+            try {
+                future.get();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for content to be written to " + file, ie);
+            } catch (final ExecutionException ee) {
+                throw new IOException("Failed to write content to " + file, ee.getCause());
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            final CompletableFuture<Void> future;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+
+                future = submit(false);
+            }
+
+            await(future);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            try {
+                if (failure == null) {
+                    await(submit(false));
+                }
+            } finally {
+                closed = true;
+                if (buffer != null) {
+                    releaseBuffer(buffer);
+                    buffer = null;
+                }
+
+                channel.close();
+            }
+        }
+
+        private void verifyWritable() throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed");
+            }
+
+            final IOException previousFailure = failure;
+            if (previousFailure != null) {
+                throw new IOException("Cannot write to " + file + " because a previous write to the file failed", previousFailure);
+            }
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        FileChannel getChannel() {
+            return channel;
+        }
+
+        IOException getFailure() {
+            return failure;
+        }
+
+        void setFailure(final IOException failure) {
+            this.failure = failure;
+        }
+
+        @Override
+        public String toString() {
+            return "ClaimOutputStream[" + file + "]";
+        }
+    }
+
+    private static class WriteRequest {
+        private final ClaimOutputStream stream;
+        private final ByteBuffer data;
+        private final boolean sync;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        WriteRequest(final ClaimOutputStream stream, final ByteBuffer data, final boolean sync) {
+            this.stream = stream;
+            this.data = data;
+            this.sync = sync;
+        }
+
+        ClaimOutputStream getStream() {
+            return stream;
+        }
+
+        ByteBuffer getData() {
+            return data;
+        }
+
+        boolean isSync() {
+            return sync;
+        }
+
+        CompletableFuture<Void> getFuture() {
+            return future;
+        }
+    }
+}
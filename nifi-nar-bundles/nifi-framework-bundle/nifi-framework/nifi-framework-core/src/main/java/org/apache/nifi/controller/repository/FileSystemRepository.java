@@ -62,6 +62,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
@@ -87,6 +88,8 @@ public class FileSystemRepository implements ContentRepository {
     public static final long MIN_CLEANUP_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1L);
     public static final long DEFAULT_CLEANUP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1L);
     public static final String ARCHIVE_DIR_NAME = "archive";
+    // When deleting the oldest archived data to free space, the range of archive times to delete at once, as a fraction of the age of the oldest data
+    private static final int ARCHIVE_SPACE_EXPIRATION_STEPS = 64;
     // 100 MB cap for the configurable NiFiProperties.MAX_APPENDABLE_CLAIM_SIZE property to prevent
     // unnecessarily large resource claim files
     public static final String APPENDABLE_CLAIM_LENGTH_CAP = "100 MB";
@@ -122,6 +125,13 @@ public class FileSystemRepository implements ContentRepository {
     private final long maxArchiveMillis;
     private final Map<String, Long> minUsableContainerBytesForArchive = new HashMap<>();
     private final boolean alwaysSync;
+    private final Map<String, BatchingClaimWriter> claimWriters = new HashMap<>();
+    private final MappedClaimCache mappedClaimCache;
+    private final boolean indexedArchiveCleanup;
+    private final ExecutorService archiveCleanupExecutor;
+    // Archive manifests, keyed by container name and by archive directory. Populated only if the archive cleanup mode is 'indexed'.
+    private final Map<String, List<ArchiveManifest>> containerArchiveManifests = new HashMap<>();
+    private final Map<Path, ArchiveManifest> archiveManifests = new HashMap<>();
     private final ScheduledExecutorService containerCleanupExecutor;
 
     private ResourceClaimManager resourceClaimManager; // effectively final
@@ -140,6 +150,9 @@ public class FileSystemRepository implements ContentRepository {
     public FileSystemRepository() {
         containers = null;
         containerNames = null;
+        mappedClaimCache = null;
+        indexedArchiveCleanup = false;
+        archiveCleanupExecutor = null;
         index = null;
         archiveData = false;
         maxArchiveMillis = 0;
@@ -249,6 +262,45 @@ public class FileSystemRepository implements ContentRepository {
 
         this.alwaysSync = Boolean.parseBoolean(nifiProperties.getProperty("nifi.content.repository.always.sync"));
         LOG.info("Initializing FileSystemRepository with 'Always Sync' set to {}", alwaysSync);
+
+        final String writeMode = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE, NiFiProperties.DEFAULT_CONTENT_REPOSITORY_WRITE_MODE).trim();
+        if (NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE_BATCHED.equalsIgnoreCase(writeMode)) {
+            final String bufferSize = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_WRITE_BUFFER_SIZE, NiFiProperties.DEFAULT_CONTENT_REPOSITORY_WRITE_BUFFER_SIZE);
+            final int writeBufferSize = DataUnit.parseDataSize(bufferSize, DataUnit.B).intValue();
+            for (final String containerName : containerNames) {
+                claimWriters.put(containerName, new BatchingClaimWriter(containerName, writeBufferSize));
+            }
+        } else if (!NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE_STREAM.equalsIgnoreCase(writeMode)) {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE + ": " + writeMode + "; valid values are '"
+                + NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE_STREAM + "' and '" + NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE_BATCHED + "'");
+        }
+        LOG.info("Initializing FileSystemRepository with 'Write Mode' set to {}", writeMode);
+
+        final String readMode = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_READ_MODE, NiFiProperties.DEFAULT_CONTENT_REPOSITORY_READ_MODE).trim();
+        if (NiFiProperties.CONTENT_REPOSITORY_READ_MODE_MAPPED.equalsIgnoreCase(readMode)) {
+            final String maxMappedSize = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_READ_MAPPED_MAX_SIZE, NiFiProperties.DEFAULT_CONTENT_REPOSITORY_READ_MAPPED_MAX_SIZE);
+            mappedClaimCache = new MappedClaimCache(DataUnit.parseDataSize(maxMappedSize, DataUnit.B).longValue());
+        } else if (NiFiProperties.CONTENT_REPOSITORY_READ_MODE_STREAM.equalsIgnoreCase(readMode)) {
+            mappedClaimCache = null;
+        } else {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.CONTENT_REPOSITORY_READ_MODE + ": " + readMode + "; valid values are '"
+                + NiFiProperties.CONTENT_REPOSITORY_READ_MODE_STREAM + "' and '" + NiFiProperties.CONTENT_REPOSITORY_READ_MODE_MAPPED + "'");
+        }
+        LOG.info("Initializing FileSystemRepository with 'Read Mode' set to {}", readMode);
+
+        final String cleanupMode = nifiProperties.getProperty(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE, NiFiProperties.DEFAULT_CONTENT_ARCHIVE_CLEANUP_MODE).trim();
+        if (NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE_INDEXED.equalsIgnoreCase(cleanupMode)) {
+            indexedArchiveCleanup = true;
+            final int cleanupThreads = nifiProperties.getIntegerProperty(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_THREADS, NiFiProperties.DEFAULT_CONTENT_ARCHIVE_CLEANUP_THREADS);
+            archiveCleanupExecutor = new FlowEngine(Math.max(1, cleanupThreads), "Remove Archived Content FileSystemRepository", true);
+        } else if (NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE_SCAN.equalsIgnoreCase(cleanupMode)) {
+            indexedArchiveCleanup = false;
+            archiveCleanupExecutor = null;
+        } else {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE + ": " + cleanupMode + "; valid values are '"
+                + NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE_SCAN + "' and '" + NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE_INDEXED + "'");
+        }
+        LOG.info("Initializing FileSystemRepository with 'Archive Cleanup Mode' set to {}", cleanupMode);
         initializeRepository();
 
         containerCleanupExecutor = new FlowEngine(containers.size(), "Cleanup FileSystemRepository Container", true);
@@ -279,6 +331,9 @@ public class FileSystemRepository implements ContentRepository {
     public void shutdown() {
         executor.shutdown();
         containerCleanupExecutor.shutdown();
+        if (archiveCleanupExecutor != null) {
+            archiveCleanupExecutor.shutdown();
+        }
 
         // Close any of the writable claim streams that are currently open.
         // Other threads may be writing to these streams, and that's okay.
@@ -293,9 +348,19 @@ public class FileSystemRepository implements ContentRepository {
             } catch (final IOException ioe) {
             }
         }
+
+        for (final BatchingClaimWriter claimWriter : claimWriters.values()) {
+            claimWriter.shutdown();
+            LOG.info("Shut down {}", claimWriter);
+        }
+
+        if (mappedClaimCache != null) {
+            LOG.info("Releasing {}", mappedClaimCache);
+            mappedClaimCache.clear();
+        }
     }
 
-    private static double getRatio(final String value) {
+    protected static double getRatio(final String value) {
         final String trimmed = value.trim();
         final String percentage = trimmed.substring(0, trimmed.length() - 1);
         return Integer.parseInt(percentage) / 100D;
@@ -328,6 +393,20 @@ public class FileSystemRepository implements ContentRepository {
 
             realPathMap.put(containerName, realPath);
 
+            if (indexedArchiveCleanup) {
+                final List<ArchiveManifest> manifests = new ArrayList<>(SECTIONS_PER_CONTAINER);
+                for (int i = 0; i < SECTIONS_PER_CONTAINER; i++) {
+                    final ArchiveManifest manifest = new ArchiveManifest(realPath.resolve(String.valueOf(i)).resolve(ARCHIVE_DIR_NAME));
+                    manifests.add(manifest);
+                    archiveManifests.put(manifest.getArchiveDirectory(), manifest);
+                }
+                containerArchiveManifests.put(containerName, manifests);
+
+                // Rather than scanning the container, read the start of each section's archive manifest, which provides the oldest archive date.
+                futures.add(executor.submit(() -> loadArchiveManifests(containerName, manifests)));
+                continue;
+            }
+
             // We need to scan the archive directories to find out the oldest timestamp so that know whether or not we
             // will have to delete archived data based on time threshold. Scanning all of the directories can be very
             // expensive because of all of the disk accesses. So we do this in multiple threads. Since containers are
@@ -352,6 +431,13 @@ public class FileSystemRepository implements ContentRepository {
                                 return FileVisitResult.CONTINUE;
                             }
 
+                            // Archive manifests are maintained only while the archive cleanup mode is 'indexed'. Any that exist now are out of date
+                            // and are removed so that they will be rebuilt if that mode is used again.
+                            if (ArchiveManifest.FILENAME.equals(file.getFileName().toString())) {
+                                Files.deleteIfExists(file);
+                                return FileVisitResult.CONTINUE;
+                            }
+
                             // Check if this is an 'archive' directory
                             final Path relativePath = realPath.relativize(file);
                             if (relativePath.getNameCount() > 3 && ARCHIVE_DIR_NAME.equals(relativePath.subpath(1, 2).toString())) {
@@ -397,6 +483,31 @@ public class FileSystemRepository implements ContentRepository {
         containers.putAll(realPathMap);
     }
 
+    private long loadArchiveManifests(final String containerName, final List<ArchiveManifest> manifests) throws IOException {
+        final ContainerState containerState = containerStateMap.get(containerName);
+        for (final ArchiveManifest manifest : manifests) {
+            boolean loaded;
+            try {
+                loaded = manifest.load();
+            } catch (final IOException ioe) {
+                LOG.warn("Failed to read {}; will rebuild it from the contents of the archive directory", manifest, ioe);
+                loaded = false;
+            }
+
+            if (!loaded) {
+                manifest.rebuild();
+                if (manifest.getEntryCount() > 0) {
+                    LOG.info("Built {} with {} archived files", manifest, manifest.getEntryCount());
+                }
+            }
+
+            containerState.incrementArchiveCount(manifest.getEntryCount());
+        }
+
+        final long oldestArchiveTime = getOldestArchiveTime(manifests);
+        return oldestArchiveTime < 0 ? System.currentTimeMillis() : oldestArchiveTime;
+    }
+
     @Override
     public Set<String> getContainerNames() {
         return new HashSet<>(containerNames);
@@ -456,7 +567,7 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
-    private void removeIncompleteContent(final String containerName, final Path containerPath, final Path fileToRemove) {
+    protected void removeIncompleteContent(final String containerName, final Path containerPath, final Path fileToRemove) {
         if (Files.isDirectory(fileToRemove)) {
             final Path lastPathName = fileToRemove.subpath(1, fileToRemove.getNameCount());
             final String fileName = lastPathName.toFile().getName();
@@ -539,13 +650,24 @@ public class FileSystemRepository implements ContentRepository {
         return activeResourceClaims;
     }
 
+    /**
+     * Returns the directory of the container that holds the given Resource Claim's file. By default, this is the directory of the container
+     * that the Resource Claim belongs to; subclasses that move content out of that directory override this to locate the moved content.
+     *
+     * @param resourceClaim the Resource Claim
+     * @return the directory that holds the Resource Claim's section directories, or <code>null</code> if the Resource Claim's container is not known
+     */
+    protected Path getContainerPath(final ResourceClaim resourceClaim) {
+        return containers.get(resourceClaim.getContainer());
+    }
+
     private Path getPath(final ContentClaim claim) {
         final ResourceClaim resourceClaim = claim.getResourceClaim();
         return getPath(resourceClaim);
     }
 
     private Path getPath(final ResourceClaim resourceClaim) {
-        final Path containerPath = containers.get(resourceClaim.getContainer());
+        final Path containerPath = getContainerPath(resourceClaim);
         if (containerPath == null) {
             return null;
         }
@@ -554,7 +676,7 @@ public class FileSystemRepository implements ContentRepository {
 
     public Path getPath(final ContentClaim claim, final boolean verifyExists) throws ContentNotFoundException {
         final ResourceClaim resourceClaim = claim.getResourceClaim();
-        final Path containerPath = containers.get(resourceClaim.getContainer());
+        final Path containerPath = getContainerPath(resourceClaim);
         if (containerPath == null) {
             if (verifyExists) {
                 throw new ContentNotFoundException(claim);
@@ -618,7 +740,7 @@ public class FileSystemRepository implements ContentRepository {
             // and when we call create(), it will remove it from the Queue, which means that no other
             // thread will get the same Claim until we've finished writing to it.
             final File file = getPath(resourceClaim).toFile();
-            ByteCountingOutputStream claimStream = new SynchronizedByteCountingOutputStream(new FileOutputStream(file, true), file.length());
+            ByteCountingOutputStream claimStream = new SynchronizedByteCountingOutputStream(openClaimStream(containerName, file), file.length());
             writableClaimStreams.put(resourceClaim, claimStream);
 
             incrementClaimantCount(resourceClaim, true);
@@ -634,6 +756,15 @@ public class FileSystemRepository implements ContentRepository {
         return scc;
     }
 
+    private OutputStream openClaimStream(final String containerName, final File file) throws IOException {
+        final BatchingClaimWriter claimWriter = claimWriters.get(containerName);
+        if (claimWriter == null) {
+            return new FileOutputStream(file, true);
+        }
+
+        return claimWriter.open(file);
+    }
+
     @Override
     public int incrementClaimaintCount(final ContentClaim claim) {
         return incrementClaimantCount(claim == null ? null : claim.getResourceClaim(), false);
@@ -647,6 +778,15 @@ public class FileSystemRepository implements ContentRepository {
         return resourceClaimManager.incrementClaimantCount(resourceClaim, newClaim);
     }
 
+    @Override
+    public boolean incrementClaimantCountIfReferenced(final ContentClaim claim) {
+        if (claim == null) {
+            return false;
+        }
+
+        return resourceClaimManager.incrementClaimantCountIfReferenced(claim.getResourceClaim());
+    }
+
     @Override
     public int getClaimantCount(final ContentClaim claim) {
         if (claim == null) {
@@ -701,15 +841,29 @@ public class FileSystemRepository implements ContentRepository {
             }
         }
 
+        if (mappedClaimCache != null) {
+            mappedClaimCache.evict(claim);
+        }
+
         final File file = path.toFile();
         if (!file.delete() && file.exists()) {
             LOG.warn("Unable to delete {} at path {}", new Object[]{claim, path});
             return false;
         }
 
+        resourceClaimRemoved(claim);
         return true;
     }
 
+    /**
+     * Called once the file of the given Resource Claim has been deleted because the Resource Claim is no longer in use. Does nothing by default;
+     * subclasses that keep track of where content is stored override this to stop tracking the Resource Claim.
+     *
+     * @param resourceClaim the Resource Claim that was removed
+     */
+    protected void resourceClaimRemoved(final ResourceClaim resourceClaim) {
+    }
+
     @Override
     public ContentClaim clone(final ContentClaim original, final boolean lossTolerant) throws IOException {
         if (original == null) {
@@ -880,6 +1034,15 @@ public class FileSystemRepository implements ContentRepository {
             return new ByteArrayInputStream(new byte[0]);
         }
         final Path path = getPath(claim, true);
+        if (isReadFromMappedCache(claim, path)) {
+            final InputStream mappedStream = mappedClaimCache.read(claim.getResourceClaim(), path, claim.getOffset(), claim.getLength());
+            if (mappedStream == null) {
+                throw new ContentNotFoundException(claim, "Content Claim has an offset of " + claim.getOffset() + " but Resource Claim " + path + " is only " + Files.size(path) + " bytes");
+            }
+
+            return mappedStream;
+        }
+
         final FileInputStream fis = new FileInputStream(path.toFile());
         if (claim.getOffset() > 0L) {
             try {
@@ -915,6 +1078,21 @@ public class FileSystemRepository implements ContentRepository {
         }
     }
 
+    private boolean isReadFromMappedCache(final ContentClaim claim, final Path path) {
+        if (mappedClaimCache == null || claim.getLength() < 0) {
+            return false;
+        }
+
+        // Only Resource Claims that have been frozen, and so will never be written to again, are mapped, as a mapped segment is never
+        // refreshed. Archived files are not mapped, since they are destroyed by path rather than by Resource Claim, so their mappings
+        // could not be evicted.
+        if (claim.getResourceClaim().isWritable()) {
+            return false;
+        }
+
+        return !ARCHIVE_DIR_NAME.equals(path.getParent().toFile().getName());
+    }
+
     @Override
     public OutputStream write(final ContentClaim claim) throws IOException {
         return write(claim, false);
@@ -989,6 +1167,14 @@ public class FileSystemRepository implements ContentRepository {
         }
 
         resourceClaimManager.purge();
+
+        if (mappedClaimCache != null) {
+            mappedClaimCache.clear();
+        }
+
+        for (final ArchiveManifest manifest : archiveManifests.values()) {
+            manifest.reset();
+        }
     }
 
     private class BinDestructableClaims implements Runnable {
@@ -1040,7 +1226,7 @@ public class FileSystemRepository implements ContentRepository {
 
     private Path getArchivePath(final ResourceClaim claim) {
         final String claimId = claim.getId();
-        final Path containerPath = containers.get(claim.getContainer());
+        final Path containerPath = getContainerPath(claim);
         final Path archivePath = containerPath.resolve(claim.getSection()).resolve(ARCHIVE_DIR_NAME).resolve(claimId);
         return archivePath;
     }
@@ -1086,6 +1272,10 @@ public class FileSystemRepository implements ContentRepository {
             }
         }
 
+        if (mappedClaimCache != null) {
+            mappedClaimCache.evict(claim);
+        }
+
         final Path curPath = getPath(claim);
         if (curPath == null) {
             return false;
@@ -1096,6 +1286,11 @@ public class FileSystemRepository implements ContentRepository {
         return archived;
     }
 
+    // visible for testing
+    MappedClaimCache getMappedClaimCache() {
+        return mappedClaimCache;
+    }
+
     protected int getOpenStreamCount() {
         return writableClaimStreams.size();
     }
@@ -1138,6 +1333,20 @@ public class FileSystemRepository implements ContentRepository {
             return false;
         }
 
+        // Record the file in the archive manifest before moving it, so that the file cannot be archived without being in the manifest.
+        final ArchiveManifest manifest = archiveManifests.get(archivePath.getParent());
+        if (manifest != null) {
+            final long size;
+            try {
+                size = Files.size(curPath);
+            } catch (final NoSuchFileException nsfe) {
+                // The content was removed or has already been archived.
+                return false;
+            }
+
+            manifest.append(archivePath.getFileName().toString(), size, System.currentTimeMillis());
+        }
+
         try {
             Files.move(curPath, archivePath);
             return true;
@@ -1402,6 +1611,118 @@ public class FileSystemRepository implements ContentRepository {
         return oldestContainerArchive;
     }
 
+    long destroyExpiredArchivesFromManifests(final String containerName) throws IOException {
+        archiveExpirationLog.debug("Destroying Expired Archives for Container {} using archive manifests", containerName);
+
+        // determine how much space we must have in order to stop deleting old data
+        final Long minRequiredSpace = minUsableContainerBytesForArchive.get(containerName);
+        if (minRequiredSpace == null) {
+            archiveExpirationLog.debug("Could not determine minimum required space so will not destroy any archived data");
+            return -1L;
+        }
+
+        final List<ArchiveManifest> manifests = containerArchiveManifests.get(containerName);
+        final long startNanos = System.nanoTime();
+        final long now = System.currentTimeMillis();
+
+        // First, delete everything that has been archived for longer than the max retention period.
+        final ArchiveManifest.Expiration expiration = new ArchiveManifest.Expiration();
+        if (maxArchiveMillis < now) {
+            expiration.add(expireArchives(containerName, manifests, now - maxArchiveMillis));
+        }
+
+        // Then, while the container does not have enough usable space, delete the oldest archived data. Files are deleted in small ranges of time
+        // so that all sections can be cleaned up in parallel, while deleting little more than is necessary. Files that cannot be deleted remain
+        // in the manifests, so each range begins where the previous one ended rather than at the oldest archived file.
+        long usableSpace = getContainerUsableSpace(containerName);
+        long archivedBefore = -1L;
+        int stalledIterations = 0;
+        while (usableSpace < minRequiredSpace) {
+            final long oldestArchiveTime = getOldestArchiveTime(manifests);
+            if (oldestArchiveTime < 0) {
+                break;
+            }
+
+            // Each time that a range frees nothing, the next range is twice as long, so that the ranges quickly pass any files that cannot be deleted
+            final long step = Math.max(1L, (now - oldestArchiveTime) / ARCHIVE_SPACE_EXPIRATION_STEPS) << stalledIterations;
+            archivedBefore = Math.max(archivedBefore, oldestArchiveTime) + step;
+            archiveExpirationLog.debug("Currently {} bytes free for Container {}; requirement is {} byte free, so deleting data archived before {}",
+                usableSpace, containerName, minRequiredSpace, new Date(archivedBefore));
+
+            final ArchiveManifest.Expiration rangeExpiration = expireArchives(containerName, manifests, archivedBefore);
+            expiration.add(rangeExpiration);
+            usableSpace = getContainerUsableSpace(containerName);
+
+            if (rangeExpiration.getFilesDeleted() == 0 && getOldestArchiveTime(manifests) == oldestArchiveTime) {
+                if (archivedBefore > now) {
+                    // Every file that was archived before this cleanup began has been considered. Those that could not be deleted
+                    // remain in the manifests and will be deleted by a later cleanup.
+                    LOG.warn("Container {} has {} bytes free, which is less than the {} bytes required, but no more archived data could be deleted",
+                        containerName, usableSpace, minRequiredSpace);
+                    break;
+                }
+
+                stalledIterations++;
+            } else {
+                stalledIterations = 0;
+            }
+        }
+
+        final long oldestArchiveTime = getOldestArchiveTime(manifests);
+        final long oldestArchiveDate = oldestArchiveTime < 0 ? System.currentTimeMillis() : oldestArchiveTime;
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (expiration.getFilesDeleted() > 0) {
+            LOG.info("Deleted {} files ({}) from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis",
+                expiration.getFilesDeleted(), FormatUtils.formatDataSize(expiration.getBytesDeleted()), containerName, new Date(oldestArchiveDate), millis);
+        } else {
+            LOG.debug("Deleted 0 files from archive for Container {}; oldest Archive Date is now {}; container cleanup took {} millis", containerName, new Date(oldestArchiveDate), millis);
+        }
+
+        return oldestArchiveDate;
+    }
+
+    private ArchiveManifest.Expiration expireArchives(final String containerName, final List<ArchiveManifest> manifests, final long archivedBefore) {
+        final List<Future<ArchiveManifest.Expiration>> futures = new ArrayList<>();
+        for (final ArchiveManifest manifest : manifests) {
+            final long oldestArchiveTime = manifest.getOldestArchiveTime();
+            if (oldestArchiveTime >= 0 && oldestArchiveTime < archivedBefore) {
+                futures.add(archiveCleanupExecutor.submit(() -> manifest.expire(archivedBefore)));
+            }
+        }
+
+        final ContainerState containerState = containerStateMap.get(containerName);
+        final ArchiveManifest.Expiration expiration = new ArchiveManifest.Expiration();
+        for (final Future<ArchiveManifest.Expiration> future : futures) {
+            try {
+                final ArchiveManifest.Expiration sectionExpiration = future.get();
+                containerState.decrementArchiveCount(sectionExpiration.getFilesDeleted());
+                expiration.add(sectionExpiration);
+            } catch (final ExecutionException e) {
+                LOG.warn("Failed to delete archived data for Container {} due to {}", containerName, e.getCause().toString());
+                if (LOG.isDebugEnabled()) {
+                    LOG.warn("", e.getCause());
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return expiration;
+    }
+
+    private static long getOldestArchiveTime(final List<ArchiveManifest> manifests) {
+        long oldest = -1L;
+        for (final ArchiveManifest manifest : manifests) {
+            final long manifestOldest = manifest.getOldestArchiveTime();
+            if (manifestOldest >= 0 && (oldest < 0 || manifestOldest < oldest)) {
+                oldest = manifestOldest;
+            }
+        }
+
+        return oldest;
+    }
+
     private class ArchiveOrDestroyDestructableClaims implements Runnable {
 
         @Override
@@ -1533,7 +1854,11 @@ public class FileSystemRepository implements ContentRepository {
                 final long oldestContainerArchive;
 
                 try {
-                    oldestContainerArchive = destroyExpiredArchives(containerName, containerPath);
+                    if (indexedArchiveCleanup) {
+                        oldestContainerArchive = destroyExpiredArchivesFromManifests(containerName);
+                    } else {
+                        oldestContainerArchive = destroyExpiredArchives(containerName, containerPath);
+                    }
 
                     final ContainerState containerState = containerStateMap.get(containerName);
                     containerState.signalCreationReady(); // indicate that we've finished cleaning up the archive.
@@ -1681,6 +2006,14 @@ public class FileSystemRepository implements ContentRepository {
         public void decrementArchiveCount() {
             archivedFileCount.decrementAndGet();
         }
+
+        public void incrementArchiveCount(final long count) {
+            archivedFileCount.addAndGet(count);
+        }
+
+        public void decrementArchiveCount(final long count) {
+            archivedFileCount.addAndGet(-count);
+        }
     }
 
     protected static class ClaimLengthPair {
@@ -1740,7 +2073,7 @@ public class FileSystemRepository implements ContentRepository {
      * 1 second (1000 milliseconds). If attempt is made to set lower value a
      * warning will be logged and the method will return minimum value of 1000
      */
-    private long determineCleanupInterval(NiFiProperties properties) {
+    protected long determineCleanupInterval(NiFiProperties properties) {
         long cleanupInterval = DEFAULT_CLEANUP_INTERVAL_MILLIS;
         String archiveCleanupFrequency = properties.getProperty(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_FREQUENCY);
         if (archiveCleanupFrequency != null) {
@@ -1925,7 +2258,15 @@ public class FileSystemRepository implements ContentRepository {
         public synchronized void close() throws IOException {
             closed = true;
 
-            if (alwaysSync) {
+            // When the Resource Claim is written by a BatchingClaimWriter, hand off the buffered bytes now but wait for them to be
+            // written only after the Resource Claim has been made available for reuse. This allows the next Content Claim to be
+            // appended to the Resource Claim while the bytes are being written and synced, so that both can be written together.
+            BatchingClaimWriter.ClaimOutputStream batchedStream = null;
+            CompletableFuture<Void> pendingWrite = null;
+            if (bcos.getWrappedStream() instanceof BatchingClaimWriter.ClaimOutputStream) {
+                batchedStream = (BatchingClaimWriter.ClaimOutputStream) bcos.getWrappedStream();
+                pendingWrite = batchedStream.submit(alwaysSync);
+            } else if (alwaysSync) {
                 ((FileOutputStream) bcos.getWrappedStream()).getFD().sync();
             }
 
@@ -1939,45 +2280,71 @@ public class FileSystemRepository implements ContentRepository {
             // is called. In this case, we don't have to actually close the file stream. Instead, we
             // can just add it onto the queue and continue to use it for the next content claim.
             final long resourceClaimLength = scc.getOffset() + scc.getLength();
-            if (recycle && resourceClaimLength < maxAppendableClaimLength) {
-                final ClaimLengthPair pair = new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength);
-
-                // We are checking that writableClaimStreams contains the resource claim as a key, as a sanity check.
-                // It should always be there. However, we have encountered a bug before where we archived content before
-                // we should have. As a result, the Resource Claim and the associated OutputStream were removed from the
-                // writableClaimStreams map, and this caused a NullPointerException. Worse, the call here to
-                // writableClaimQueue.offer() means that the ResourceClaim was then reused, which resulted in an endless
-                // loop of NullPointerException's being thrown. As a result, we simply ensure that the Resource Claim does
-                // in fact have an OutputStream associated with it before adding it back to the writableClaimQueue.
-                final boolean enqueued = writableClaimStreams.get(scc.getResourceClaim()) != null && writableClaimQueue.offer(pair);
-
-                if (enqueued) {
-                    LOG.debug("Claim length less than max; Adding {} back to Writable Claim Queue", this);
+
+            // A frozen Resource Claim may be read through the mapped claim cache, which assumes that the file is complete. So if the claim is
+            // not to be reused, it is frozen only once any bytes that were handed to the BatchingClaimWriter have been written.
+            boolean freeze = false;
+            try {
+                if (recycle && resourceClaimLength < maxAppendableClaimLength) {
+                    final ClaimLengthPair pair = new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength);
+
+                    // We are checking that writableClaimStreams contains the resource claim as a key, as a sanity check.
+                    // It should always be there. However, we have encountered a bug before where we archived content before
+                    // we should have. As a result, the Resource Claim and the associated OutputStream were removed from the
+                    // writableClaimStreams map, and this caused a NullPointerException. Worse, the call here to
+                    // writableClaimQueue.offer() means that the ResourceClaim was then reused, which resulted in an endless
+                    // loop of NullPointerException's being thrown. As a result, we simply ensure that the Resource Claim does
+                    // in fact have an OutputStream associated with it before adding it back to the writableClaimQueue.
+                    final boolean enqueued = writableClaimStreams.get(scc.getResourceClaim()) != null && writableClaimQueue.offer(pair);
+
+                    if (enqueued) {
+                        LOG.debug("Claim length less than max; Adding {} back to Writable Claim Queue", this);
+                    } else {
+                        writableClaimStreams.remove(scc.getResourceClaim());
+                        freeze = true;
+
+                        bcos.close();
+
+                        LOG.debug("Claim length less than max; Closing {} because could not add back to queue", this);
+                        if (LOG.isTraceEnabled()) {
+                            LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
+                        }
+                    }
                 } else {
-                    writableClaimStreams.remove(scc.getResourceClaim());
-                    resourceClaimManager.freeze(scc.getResourceClaim());
+                    // we've reached the limit for this claim. Don't add it back to our queue.
+                    // Instead, just remove it and move on.
 
-                    bcos.close();
+                    // Mark the claim as no longer being able to be written to
+                    freeze = true;
 
-                    LOG.debug("Claim length less than max; Closing {} because could not add back to queue", this);
+                    // ensure that the claim is no longer on the queue
+                    writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
+
+                    bcos.close();
+                    LOG.debug("Claim lenth >= max; Closing {}", this);
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
                     }
                 }
-            } else {
-                // we've reached the limit for this claim. Don't add it back to our queue.
-                // Instead, just remove it and move on.
-
-                // Mark the claim as no longer being able to be written to
-                resourceClaimManager.freeze(scc.getResourceClaim());
 
-                // ensure that the claim is no longer on the queue
-                writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
+                if (pendingWrite != null) {
+                    try {
+                        batchedStream.await(pendingWrite);
+                    } catch (final IOException ioe) {
+                        // The Resource Claim may already have been handed out again. The stream refuses any further writes once a write
+                        // has failed, so ensure that the claim is not reused and that its stream is closed.
+                        resourceClaimManager.freeze(scc.getResourceClaim());
+                        writableClaimQueue.remove(new ClaimLengthPair(scc.getResourceClaim(), resourceClaimLength));
+                        if (writableClaimStreams.remove(scc.getResourceClaim()) != null) {
+                            IOUtils.closeQuietly(bcos);
+                        }
 
-                bcos.close();
-                LOG.debug("Claim lenth >= max; Closing {}", this);
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("Stack trace: ", new RuntimeException("Stack Trace for closing " + this));
+                        throw new IOException("Failed to write to " + this, ioe);
+                    }
+                }
+            } finally {
+                if (freeze) {
+                    resourceClaimManager.freeze(scc.getResourceClaim());
                 }
             }
         }
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A bounded cache of memory-mapped segments of Resource Claim files. Only Resource Claims that can no longer be written to should be read through
+ * this cache, as a segment is mapped once and is assumed to never change. Each segment covers {@link #getSegmentSize()} bytes of the file (or less,
+ * for the last segment of the file), so a Content Claim is read by copying directly from the mapped memory rather than by opening the file and skipping
+ * to the Content Claim's offset.
+ * </p>
+ *
+ * <p>
+ * The total number of bytes that are mapped by the cache is bounded. When mapping a segment would exceed that bound, the least recently used segments
+ * are removed from the cache. The mapping itself is released by the JVM only when the segment is garbage collected, so a stream that is reading
+ * from an evicted segment is able to continue reading. Until then, the evicted segment continues to occupy address space and, if its file has been
+ * deleted, the file's disk space.
+ * </p>
+ *
+ * <p>
+ * A segment records the size of the file at the time that it was mapped. A segment is never used to read a range that extends beyond that size;
+ * instead, the segment is mapped again. If the file is still too small, the segment is not cached, so that a file whose last bytes have not yet
+ * reached the disk is never cached in part.
+ * </p>
+ */
+class MappedClaimCache {
+    static final long MAX_SEGMENT_SIZE = 8L * 1024 * 1024;
+
+    private final long maxMappedBytes;
+    private final long segmentSize;
+    private final Map<SegmentKey, MappedSegment> segments = new LinkedHashMap<>(16, 0.75F, true);
+    private long mappedBytes = 0L;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    MappedClaimCache(final long maxMappedBytes) {
+        this(maxMappedBytes, Math.min(MAX_SEGMENT_SIZE, maxMappedBytes));
+    }
+
+    MappedClaimCache(final long maxMappedBytes, final long segmentSize) {
+        if (maxMappedBytes < 1) {
+            throw new IllegalArgumentException("Maximum number of bytes to map must be at least 1 but was " + maxMappedBytes);
+        }
+        if (segmentSize < 1 || segmentSize > maxMappedBytes) {
+            throw new IllegalArgumentException("Segment size must be between 1 and " + maxMappedBytes + " but was " + segmentSize);
+        }
+
+        this.maxMappedBytes = maxMappedBytes;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Returns an InputStream that reads the given range of the given Resource Claim's file from memory-mapped segments
+     *
+     * @param resourceClaim the Resource Claim whose file is to be read. The Resource Claim must no longer be writable.
+     * @param path the path of the Resource Claim's file
+     * @param offset the offset into the file at which to start reading
+     * @param length the number of bytes to read. If the file ends before this many bytes are read, the stream ends with the file.
+     * @return an InputStream for the range, or <code>null</code> if the file does not contain the given offset
+     * @throws IOException if unable to map the file
+     */
+    InputStream read(final ResourceClaim resourceClaim, final Path path, final long offset, final long length) throws IOException {
+        final MappedSegment segment = getSegment(resourceClaim, path, offset / segmentSize, offset + length);
+        if (offset > segment.getFileSize()) {
+            return null;
+        }
+
+        final long end = Math.min(segment.getFileSize(), offset + length);
+        return new MappedClaimInputStream(resourceClaim, path, segment, offset, end, offset + length);
+    }
+
+    /**
+     * Returns the given segment of the given file, mapping it if it is not cached or if the cached segment was mapped when the file was smaller
+     * than <code>requiredFileSize</code>
+     */
+    private MappedSegment getSegment(final ResourceClaim resourceClaim, final Path path, final long segmentIndex, final long requiredFileSize) throws IOException {
+        final SegmentKey key = new SegmentKey(resourceClaim, segmentIndex);
+        synchronized (this) {
+            final MappedSegment segment = segments.get(key);
+            if (segment != null) {
+                if (segment.getFileSize() >= requiredFileSize) {
+                    hits.increment();
+                    return segment;
+                }
+
+                // The segment was mapped before the file was complete, so it may be missing the end of the range. Map it again.
+                segments.remove(key);
+                mappedBytes -= segment.getBuffer().capacity();
+            }
+        }
+
+        misses.increment();
+        final MappedSegment mapped = map(path, segmentIndex);
+        if (mapped.getFileSize() < requiredFileSize) {
+            // The file does not yet hold the entire range. Do not cache the segment, so that the file is mapped again once it does.
+            return mapped;
+        }
+
+        synchronized (this) {
+            // Another thread may have mapped the same segment while we were doing so. If so, use the segment that is already cached.
+            final MappedSegment existing = segments.get(key);
+            if (existing != null && existing.getFileSize() >= requiredFileSize) {
+                return existing;
+            }
+            if (existing != null) {
+                mappedBytes -= existing.getBuffer().capacity();
+            }
+
+            segments.put(key, mapped);
+            mappedBytes += mapped.getBuffer().capacity();
+
+            final Iterator<MappedSegment> itr = segments.values().iterator();
+            while (mappedBytes > maxMappedBytes && itr.hasNext()) {
+                final MappedSegment eldest = itr.next();
+                if (eldest == mapped) {
+                    continue;
+                }
+
+                itr.remove();
+                mappedBytes -= eldest.getBuffer().capacity();
+                evictions.increment();
+            }
+        }
+
+        return mapped;
+    }
+
+    private MappedSegment map(final Path path, final long segmentIndex) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final long start = Math.min(segmentIndex * segmentSize, fileSize);
+            final long mapLength = Math.min(segmentSize, fileSize - start);
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, mapLength);
+            return new MappedSegment(buffer, start, fileSize);
+        }
+    }
+
+    /**
+     * Removes all segments of the given Resource Claim from the cache. This should be called whenever the Resource Claim's file is moved or deleted.
+     *
+     * @param resourceClaim the Resource Claim to remove
+     */
+    synchronized void evict(final ResourceClaim resourceClaim) {
+        final Iterator<Map.Entry<SegmentKey, MappedSegment>> itr = segments.entrySet().iterator();
+        while (itr.hasNext()) {
+            final Map.Entry<SegmentKey, MappedSegment> entry = itr.next();
+            if (entry.getKey().getResourceClaim().equals(resourceClaim)) {
+                itr.remove();
+                mappedBytes -= entry.getValue().getBuffer().capacity();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        segments.clear();
+        mappedBytes = 0L;
+    }
+
+    long getSegmentSize() {
+        return segmentSize;
+    }
+
+    synchronized long getMappedBytes() {
+        return mappedBytes;
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedClaimCache[segments=" + getSegmentCount() + ", mappedBytes=" + getMappedBytes() + ", maxMappedBytes=" + maxMappedBytes
+            + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+
+    private static class MappedSegment {
+        private final ByteBuffer buffer;
+        private final long fileOffset;
+        private final long fileSize;
+
+        MappedSegment(final ByteBuffer buffer, final long fileOffset, final long fileSize) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+            this.fileSize = fileSize;
+        }
+
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        long getFileOffset() {
+            return fileOffset;
+        }
+
+        long getFileSize() {
+            return fileSize;
+        }
+    }
+
+    private static class SegmentKey {
+        private final ResourceClaim resourceClaim;
+        private final long segmentIndex;
+
+        SegmentKey(final ResourceClaim resourceClaim, final long segmentIndex) {
+            this.resourceClaim = resourceClaim;
+            this.segmentIndex = segmentIndex;
+        }
+
+        ResourceClaim getResourceClaim() {
+            return resourceClaim;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SegmentKey)) {
+                return false;
+            }
+
+            final SegmentKey other = (SegmentKey) obj;
+            return segmentIndex == other.segmentIndex && resourceClaim.equals(other.resourceClaim);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(resourceClaim, segmentIndex);
+        }
+    }
+
+    /**
+     * Reads a range of a Resource Claim's file, moving from one mapped segment to the next as the range crosses segment boundaries.
+     */
+    private class MappedClaimInputStream extends InputStream {
+        private final ResourceClaim resourceClaim;
+        private final Path path;
+        private final long end;
+        private final long requiredFileSize;
+        private MappedSegment segment;
+        private ByteBuffer view;
+        private long position;
+        private long markPosition;
+
+        MappedClaimInputStream(final ResourceClaim resourceClaim, final Path path, final MappedSegment segment, final long position, final long end,
+                               final long requiredFileSize) {
+            this.resourceClaim = resourceClaim;
+            this.path = path;
+            this.end = end;
+            this.requiredFileSize = requiredFileSize;
+            this.position = position;
+            this.markPosition = position;
+            setSegment(segment);
+        }
+
+        private void setSegment(final MappedSegment segment) {
+            this.segment = segment;
+            this.view = segment.getBuffer().duplicate();
+        }
+
+        private boolean positionView() throws IOException {
+            if (position >= end) {
+                return false;
+            }
+
+            final long segmentEnd = segment.getFileOffset() + segment.getBuffer().capacity();
+            if (position < segment.getFileOffset() || position >= segmentEnd) {
+                setSegment(getSegment(resourceClaim, path, position / segmentSize, requiredFileSize));
+            }
+
+            view.position((int) (position - segment.getFileOffset()));
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!positionView()) {
+                return -1;
+            }
+
+            position++;
+            return view.get() & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!positionView()) {
+                return -1;
+            }
+
+            final int toRead = (int) Math.min(len, Math.min(view.remaining(), end - position));
+            view.get(b, off, toRead);
+            position += toRead;
+            return toRead;
+        }
+
+        @Override
+        public long skip(final long n) {
+            final long skipped = Math.max(0L, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(final int readlimit) {
+            markPosition = position;
+        }
+
+        @Override
+        public void reset() {
+            position = markPosition;
+        }
+
+        @Override
+        public String toString() {
+            return "MappedClaimInputStream[" + resourceClaim + ", position=" + position + ", end=" + end + "]";
+        }
+    }
+}
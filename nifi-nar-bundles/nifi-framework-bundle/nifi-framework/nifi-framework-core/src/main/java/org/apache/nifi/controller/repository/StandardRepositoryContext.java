@@ -19,21 +19,36 @@ package org.apache.nifi.controller.repository;
 import org.apache.nifi.components.state.StateManager;
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.controller.repository.claim.ContentClaimWriteCache;
+import org.apache.nifi.controller.repository.claim.ContentDeduplicationIndex;
 import org.apache.nifi.controller.repository.claim.StandardContentClaimWriteCache;
 import org.apache.nifi.provenance.ProvenanceEventRepository;
 
 import java.util.concurrent.atomic.AtomicLong;
 
 public class StandardRepositoryContext extends AbstractRepositoryContext implements RepositoryContext {
+    private static final int CONTENT_CLAIM_BUFFER_SIZE = 8192;
+
+    private final ContentDeduplicationIndex contentDeduplicationIndex;
 
     public StandardRepositoryContext(final Connectable connectable, final AtomicLong connectionIndex, final ContentRepository contentRepository, final FlowFileRepository flowFileRepository,
                                      final FlowFileEventRepository flowFileEventRepository, final CounterRepository counterRepository, final ProvenanceEventRepository provenanceRepository,
                                      final StateManager stateManager) {
+        this(connectable, connectionIndex, contentRepository, flowFileRepository, flowFileEventRepository, counterRepository, provenanceRepository, stateManager, null);
+    }
+
+    public StandardRepositoryContext(final Connectable connectable, final AtomicLong connectionIndex, final ContentRepository contentRepository, final FlowFileRepository flowFileRepository,
+                                     final FlowFileEventRepository flowFileEventRepository, final CounterRepository counterRepository, final ProvenanceEventRepository provenanceRepository,
+                                     final StateManager stateManager, final ContentDeduplicationIndex contentDeduplicationIndex) {
         super(connectable, connectionIndex, contentRepository, flowFileRepository, flowFileEventRepository, counterRepository, provenanceRepository, stateManager);
+        this.contentDeduplicationIndex = contentDeduplicationIndex;
     }
 
     @Override
     public ContentClaimWriteCache createContentClaimWriteCache() {
-        return new StandardContentClaimWriteCache(getContentRepository());
+        if (contentDeduplicationIndex == null) {
+            return new StandardContentClaimWriteCache(getContentRepository());
+        }
+
+        return new StandardContentClaimWriteCache(getContentRepository(), CONTENT_CLAIM_BUFFER_SIZE, contentDeduplicationIndex);
     }
 }
@@ -0,0 +1,714 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.util.FormatUtils;
+import org.apache.nifi.util.NiFiProperties;
+import org.apache.nifi.util.file.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A {@link FileSystemRepository} that stores content in two tiers. New content is always written to the configured content repository
+ * directories, which form the hot tier and are expected to be on fast storage. Each of those directories may be paired with a cold tier
+ * directory, on larger and slower storage, by configuring a property named
+ * {@value NiFiProperties#REPOSITORY_CONTENT_TIERED_COLD_PREFIX}&lt;container name&gt;.
+ * </p>
+ *
+ * <p>
+ * A background task for each container moves Resource Claims that can no longer be written to from the hot tier to the cold tier, oldest
+ * first, once they are older than the configured migration age or while the hot tier's disk usage is above the configured percentage. A
+ * Resource Claim's file keeps the same section and name in the cold tier, so Content Claims are unchanged. The tier that holds a Resource
+ * Claim's file is determined by checking the hot tier and then the cold tier the first time that the file is accessed, and is then kept in
+ * a cache of recently accessed Resource Claims that is bounded in size, so memory use and startup time do not grow with the size of the
+ * cold tier. The cache is updated as files are moved between tiers, and the file system is checked again if a file is not found where it is
+ * expected. A file is first copied to the cold tier and is removed from the hot tier on the next run of the task, so that a reader that has
+ * just located the file in the hot tier is still able to open it.
+ * </p>
+ *
+ * <p>
+ * Content that is archived after it has been moved to the cold tier is archived in the cold tier, and is removed according to the same
+ * retention period and maximum usage percentage as the rest of the archive.
+ * </p>
+ */
+public class TieredFileSystemRepository extends FileSystemRepository {
+    static final String MIGRATION_DIR_NAME = "migrating";
+
+    private static final Logger LOG = LoggerFactory.getLogger(TieredFileSystemRepository.class);
+    private static final int ARCHIVE_SPACE_EXPIRATION_STEPS = 64;
+    static final int MAX_CACHED_LOCATIONS = 100_000;
+
+    private final Map<String, Path> hotContainers;
+    private final Map<String, Path> coldContainers;
+    private final long migrationAgeMillis;
+    private final long migrationFrequencyMillis;
+    private final double hotMaxUsageRatio;
+    private final long maxArchiveMillis;
+    private final double maxArchiveRatio;
+    private final long archiveCleanupMillis;
+    private final ScheduledExecutorService migrationExecutor;
+
+    // Archive manifests of the cold tier, keyed by container name and then by archive directory
+    private final Map<String, ConcurrentMap<Path, ArchiveManifest>> coldArchiveManifests = new HashMap<>();
+    // Files that have been copied to the cold tier but not yet removed from the hot tier, keyed by container name
+    private final Map<String, Queue<MigratedClaim>> migratedClaims = new HashMap<>();
+    // The container directory, hot or cold, that holds the file of each recently accessed Resource Claim, keyed by container name and then by
+    // Resource Claim identifier. Entries are changed only while holding the Resource Claim's lock, as are the files that they refer to.
+    private final Map<String, Map<String, Path>> claimLocations = new HashMap<>();
+
+    private final AtomicLong migratedFileCount = new AtomicLong(0L);
+    private final AtomicLong migratedBytes = new AtomicLong(0L);
+
+    private ResourceClaimManager resourceClaimManager; // effectively final
+
+    /**
+     * Default no args constructor for service loading only
+     */
+    public TieredFileSystemRepository() {
+        super();
+        hotContainers = null;
+        coldContainers = null;
+        migrationAgeMillis = 0L;
+        migrationFrequencyMillis = 0L;
+        hotMaxUsageRatio = 0D;
+        maxArchiveMillis = 0L;
+        maxArchiveRatio = 0D;
+        archiveCleanupMillis = 0L;
+        migrationExecutor = null;
+    }
+
+    public TieredFileSystemRepository(final NiFiProperties nifiProperties) throws IOException {
+        super(nifiProperties);
+
+        hotContainers = new HashMap<>();
+        for (final Map.Entry<String, Path> entry : nifiProperties.getContentRepositoryPaths().entrySet()) {
+            hotContainers.put(entry.getKey(), entry.getValue().toRealPath());
+        }
+
+        coldContainers = new HashMap<>();
+        for (final Map.Entry<String, Path> entry : nifiProperties.getContentRepositoryColdPaths().entrySet()) {
+            final String containerName = entry.getKey();
+            final Path hotPath = hotContainers.get(containerName);
+            if (hotPath == null) {
+                throw new IllegalArgumentException("Property " + NiFiProperties.REPOSITORY_CONTENT_TIERED_COLD_PREFIX + containerName
+                    + " does not refer to a configured content repository directory; expected a property named " + NiFiProperties.REPOSITORY_CONTENT_PREFIX + containerName);
+            }
+
+            Files.createDirectories(entry.getValue());
+            final Path coldPath = entry.getValue().toRealPath();
+            if (coldPath.startsWith(hotPath) || hotPath.startsWith(coldPath)) {
+                throw new IllegalArgumentException("The cold tier directory for container " + containerName + " (" + coldPath + ") must not contain or be contained by its content repository directory " + hotPath);
+            }
+
+            // Remove any file that was being copied to the cold tier when NiFi was stopped
+            final Path migrationPath = coldPath.resolve(MIGRATION_DIR_NAME);
+            if (Files.exists(migrationPath)) {
+                FileUtils.deleteFilesInDir(migrationPath.toFile(), null, LOG, true);
+            }
+
+            coldContainers.put(containerName, coldPath);
+            coldArchiveManifests.put(containerName, loadArchiveManifests(coldPath));
+            migratedClaims.put(containerName, new ConcurrentLinkedQueue<>());
+            claimLocations.put(containerName, createLocationCache());
+        }
+
+        if (coldContainers.isEmpty()) {
+            LOG.warn("No properties with prefix '{}' are set, so all content will remain in the content repository directories", NiFiProperties.REPOSITORY_CONTENT_TIERED_COLD_PREFIX);
+        }
+
+        final String migrationAge = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_TIERED_MIGRATION_AGE, NiFiProperties.DEFAULT_CONTENT_REPOSITORY_TIERED_MIGRATION_AGE);
+        migrationAgeMillis = FormatUtils.getTimeDuration(migrationAge.trim(), TimeUnit.MILLISECONDS);
+
+        final String migrationFrequency = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_TIERED_MIGRATION_FREQUENCY,
+            NiFiProperties.DEFAULT_CONTENT_REPOSITORY_TIERED_MIGRATION_FREQUENCY);
+        migrationFrequencyMillis = Math.max(MIN_CLEANUP_INTERVAL_MILLIS, FormatUtils.getTimeDuration(migrationFrequency.trim(), TimeUnit.MILLISECONDS));
+
+        final String hotMaxUsage = nifiProperties.getProperty(NiFiProperties.CONTENT_REPOSITORY_TIERED_HOT_MAX_USAGE_PERCENTAGE,
+            NiFiProperties.DEFAULT_CONTENT_REPOSITORY_TIERED_HOT_MAX_USAGE_PERCENTAGE);
+        if (!MAX_ARCHIVE_SIZE_PATTERN.matcher(hotMaxUsage.trim()).matches()) {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.CONTENT_REPOSITORY_TIERED_HOT_MAX_USAGE_PERCENTAGE + ": " + hotMaxUsage
+                + "; value must be in format: <XX>%");
+        }
+        hotMaxUsageRatio = getRatio(hotMaxUsage);
+
+        final String maxArchiveUsage = nifiProperties.getProperty(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE);
+        final String maxArchiveRetentionPeriod = nifiProperties.getProperty(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD);
+        if (maxArchiveUsage != null && MAX_ARCHIVE_SIZE_PATTERN.matcher(maxArchiveUsage.trim()).matches()) {
+            maxArchiveRatio = getRatio(maxArchiveUsage);
+            maxArchiveMillis = maxArchiveRetentionPeriod == null || maxArchiveRetentionPeriod.trim().isEmpty()
+                ? Long.MAX_VALUE : FormatUtils.getTimeDuration(maxArchiveRetentionPeriod.trim(), TimeUnit.MILLISECONDS);
+        } else {
+            maxArchiveRatio = 0D;
+            maxArchiveMillis = 0L;
+        }
+
+        archiveCleanupMillis = determineCleanupInterval(nifiProperties);
+        migrationExecutor = new FlowEngine(Math.max(1, coldContainers.size()), "Migrate Content TieredFileSystemRepository", true);
+
+        LOG.info("Initializing TieredFileSystemRepository with cold tier directories {}; content will be migrated once older than {} or while content repository disk usage exceeds {}",
+            coldContainers, migrationAge, hotMaxUsage);
+    }
+
+    private ConcurrentMap<Path, ArchiveManifest> loadArchiveManifests(final Path coldPath) throws IOException {
+        final ConcurrentMap<Path, ArchiveManifest> manifests = new ConcurrentHashMap<>();
+        for (int i = 0; i < SECTIONS_PER_CONTAINER; i++) {
+            final Path archivePath = coldPath.resolve(String.valueOf(i)).resolve(ARCHIVE_DIR_NAME);
+            if (!Files.exists(archivePath)) {
+                continue;
+            }
+
+            final ArchiveManifest manifest = new ArchiveManifest(archivePath);
+            boolean loaded;
+            try {
+                loaded = manifest.load();
+            } catch (final IOException ioe) {
+                LOG.warn("Failed to read {}; will rebuild it from the contents of the archive directory", manifest, ioe);
+                loaded = false;
+            }
+
+            if (!loaded) {
+                manifest.rebuild();
+            }
+
+            manifests.put(archivePath, manifest);
+        }
+
+        return manifests;
+    }
+
+    private static Map<String, Path> createLocationCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Path>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Path> eldest) {
+                return size() > MAX_CACHED_LOCATIONS;
+            }
+        });
+    }
+
+    @Override
+    public void initialize(final ResourceClaimManager claimManager) {
+        super.initialize(claimManager);
+        this.resourceClaimManager = claimManager;
+
+        for (final Map.Entry<String, Path> entry : coldContainers.entrySet()) {
+            final String containerName = entry.getKey();
+            migrationExecutor.scheduleWithFixedDelay(new MigrateContent(containerName), migrationFrequencyMillis, migrationFrequencyMillis, TimeUnit.MILLISECONDS);
+            migrationExecutor.scheduleWithFixedDelay(new DestroyExpiredColdArchives(containerName, entry.getValue()), archiveCleanupMillis, archiveCleanupMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (migrationExecutor != null) {
+            migrationExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void purge() {
+        super.purge();
+
+        for (final Map.Entry<String, Path> entry : coldContainers.entrySet()) {
+            FileUtils.deleteFilesInDir(entry.getValue().toFile(), null, LOG, true);
+            coldArchiveManifests.get(entry.getKey()).clear();
+            migratedClaims.get(entry.getKey()).clear();
+            claimLocations.get(entry.getKey()).clear();
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        super.cleanup();
+
+        for (final Map.Entry<String, Path> entry : coldContainers.entrySet()) {
+            final File[] sectionFiles = entry.getValue().toFile().listFiles();
+            if (sectionFiles == null) {
+                continue;
+            }
+
+            for (final File sectionFile : sectionFiles) {
+                if (!MIGRATION_DIR_NAME.equals(sectionFile.getName())) {
+                    removeIncompleteContent(entry.getKey(), entry.getValue(), sectionFile.toPath());
+                }
+            }
+
+            // Forget the locations of the files that were removed
+            claimLocations.get(entry.getKey()).clear();
+        }
+    }
+
+    @Override
+    protected Path getContainerPath(final ResourceClaim resourceClaim) {
+        final Path hotPath = super.getContainerPath(resourceClaim);
+        final Path coldPath = coldContainers == null ? null : coldContainers.get(resourceClaim.getContainer());
+        if (hotPath == null || coldPath == null) {
+            return hotPath;
+        }
+
+        final Path cachedPath = claimLocations.get(resourceClaim.getContainer()).get(resourceClaim.getId());
+        return cachedPath == null ? locate(resourceClaim, hotPath, coldPath) : cachedPath;
+    }
+
+    @Override
+    public InputStream read(final ContentClaim claim) throws IOException {
+        try {
+            return super.read(claim);
+        } catch (final FileNotFoundException | NoSuchFileException | ContentNotFoundException e) {
+            // The file may have been removed from the hot tier, having been migrated to the cold tier, after it was located but before it was opened.
+            // Otherwise, the file is not in the tier that it was cached in, so check the file system to determine where it is.
+            final ResourceClaim resourceClaim = claim.getResourceClaim();
+            final Path hotPath = super.getContainerPath(resourceClaim);
+            final Path coldPath = coldContainers == null ? null : coldContainers.get(resourceClaim.getContainer());
+            if (hotPath == null || coldPath == null) {
+                throw e;
+            }
+
+            locate(resourceClaim, hotPath, coldPath);
+            return super.read(claim);
+        }
+    }
+
+    /**
+     * Checks the file system to determine which tier holds the given Resource Claim's file, and caches the result. If the file is in neither
+     * tier, as is the case for a Resource Claim that has not yet been written to, the hot tier is used.
+     */
+    private Path locate(final ResourceClaim resourceClaim, final Path hotPath, final Path coldPath) {
+        synchronized (resourceClaim) {
+            final Path location = !exists(hotPath, resourceClaim) && exists(coldPath, resourceClaim) ? coldPath : hotPath;
+            claimLocations.get(resourceClaim.getContainer()).put(resourceClaim.getId(), location);
+            return location;
+        }
+    }
+
+    private static boolean exists(final Path containerPath, final ResourceClaim resourceClaim) {
+        final Path sectionPath = containerPath.resolve(resourceClaim.getSection());
+        return Files.exists(sectionPath.resolve(resourceClaim.getId())) || Files.exists(sectionPath.resolve(ARCHIVE_DIR_NAME).resolve(resourceClaim.getId()));
+    }
+
+    @Override
+    protected void resourceClaimRemoved(final ResourceClaim resourceClaim) {
+        final Map<String, Path> locations = claimLocations.get(resourceClaim.getContainer());
+        if (locations != null) {
+            locations.remove(resourceClaim.getId());
+        }
+    }
+
+    @Override
+    protected boolean archive(final Path curPath) throws IOException {
+        final Path archivePath = getArchivePath(curPath);
+        final ConcurrentMap<Path, ArchiveManifest> manifests = getColdArchiveManifests(curPath);
+        if (manifests == null || curPath.equals(archivePath) || ARCHIVE_DIR_NAME.equals(curPath.getParent().getFileName().toString())) {
+            return super.archive(curPath);
+        }
+
+        // Record the file in the cold tier's archive manifest before moving it, so that the file cannot be archived without being in the manifest.
+        final long size;
+        try {
+            size = Files.size(curPath);
+        } catch (final NoSuchFileException nsfe) {
+            return false;
+        }
+
+        final ArchiveManifest manifest = manifests.computeIfAbsent(archivePath.getParent(), ArchiveManifest::new);
+        manifest.append(archivePath.getFileName().toString(), size, System.currentTimeMillis());
+        return super.archive(curPath);
+    }
+
+    private ConcurrentMap<Path, ArchiveManifest> getColdArchiveManifests(final Path path) {
+        for (final Map.Entry<String, Path> entry : coldContainers.entrySet()) {
+            if (path.startsWith(entry.getValue())) {
+                return coldArchiveManifests.get(entry.getKey());
+            }
+        }
+
+        return null;
+    }
+
+    private void migrateContent(final String containerName) throws IOException {
+        final Path hotPath = hotContainers.get(containerName);
+        final Path coldPath = coldContainers.get(containerName);
+
+        // Remove the files that were copied to the cold tier on the previous run before determining how much space is used.
+        removeMigratedFiles(containerName);
+
+        final long capacity = getContainerCapacity(containerName);
+        final long usedBytes = capacity - getContainerUsableSpace(containerName);
+        long bytesToMigrate = usedBytes - (long) (capacity * hotMaxUsageRatio);
+        final long migrateCreatedBefore = System.currentTimeMillis() - migrationAgeMillis;
+
+        final List<MigrationCandidate> candidates = findMigrationCandidates(hotPath);
+        candidates.sort(Comparator.comparingLong(MigrationCandidate::getCreationTime));
+
+        final long startNanos = System.nanoTime();
+        int fileCount = 0;
+        long byteCount = 0L;
+        for (final MigrationCandidate candidate : candidates) {
+            if (candidate.getCreationTime() >= migrateCreatedBefore && bytesToMigrate <= 0) {
+                break;
+            }
+
+            // If the Resource Claim is not known, it is not referenced by any FlowFile, and the content repository will remove or archive it.
+            final ResourceClaim resourceClaim = resourceClaimManager.getResourceClaim(containerName, candidate.getSection(), candidate.getId());
+            if (resourceClaim == null) {
+                continue;
+            }
+
+            final long migrated = migrate(containerName, resourceClaim, hotPath, coldPath);
+            if (migrated >= 0) {
+                fileCount++;
+                byteCount += migrated;
+                bytesToMigrate -= migrated;
+            }
+        }
+
+        if (fileCount > 0) {
+            migratedFileCount.addAndGet(fileCount);
+            migratedBytes.addAndGet(byteCount);
+            LOG.info("Copied {} files ({}) from Container {} to its cold tier in {} millis", fileCount, FormatUtils.formatDataSize(byteCount), containerName,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    private List<MigrationCandidate> findMigrationCandidates(final Path hotPath) {
+        final List<MigrationCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < SECTIONS_PER_CONTAINER; i++) {
+            final String section = String.valueOf(i);
+            final File[] files = hotPath.resolve(section).toFile().listFiles();
+            if (files == null) {
+                continue;
+            }
+
+            for (final File file : files) {
+                final String filename = file.getName();
+                if (!ARCHIVE_DIR_NAME.equals(filename)) {
+                    candidates.add(new MigrationCandidate(section, filename, getCreationTime(file)));
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    private static long getCreationTime(final File file) {
+        // Resource Claim identifiers begin with the time at which the Resource Claim was created, followed by a dash. Older identifiers do not,
+        // in which case the file's last modified time is used.
+        final String filename = file.getName();
+        final int dashIndex = filename.indexOf('-');
+        if (dashIndex > 0) {
+            try {
+                return Long.parseLong(filename.substring(0, dashIndex));
+            } catch (final NumberFormatException nfe) {
+            }
+        }
+
+        return file.lastModified();
+    }
+
+    /**
+     * Copies the given Resource Claim's file to the cold tier. The file is removed from the hot tier by {@link #removeMigratedFiles(String)}.
+     *
+     * @return the size of the file, or <code>-1</code> if the file was not copied
+     */
+    private long migrate(final String containerName, final ResourceClaim resourceClaim, final Path hotPath, final Path coldPath) throws IOException {
+        if (resourceClaim.isWritable() || resourceClaimManager.getClaimantCount(resourceClaim) == 0) {
+            return -1L;
+        }
+
+        final Path hotFile = hotPath.resolve(resourceClaim.getSection()).resolve(resourceClaim.getId());
+        final Path coldFile = coldPath.resolve(resourceClaim.getSection()).resolve(resourceClaim.getId());
+        final Path tempFile = coldPath.resolve(MIGRATION_DIR_NAME).resolve(resourceClaim.getId());
+        Files.createDirectories(tempFile.getParent());
+        Files.createDirectories(coldFile.getParent());
+
+        final long size;
+        try (final FileChannel in = FileChannel.open(hotFile, StandardOpenOption.READ);
+             final FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            size = in.size();
+            long position = 0L;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        } catch (final NoSuchFileException nsfe) {
+            // The file was removed or archived.
+            Files.deleteIfExists(tempFile);
+            return -1L;
+        }
+
+        // A Resource Claim that is no longer writable can never be referenced again once its claimant count reaches 0. Holding the lock that guards the
+        // claimant count ensures that the Resource Claim is not destroyed while its file is being moved into place.
+        synchronized (resourceClaim) {
+            if (resourceClaimManager.getClaimantCount(resourceClaim) == 0) {
+                Files.deleteIfExists(tempFile);
+                return -1L;
+            }
+
+            Files.move(tempFile, coldFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            claimLocations.get(containerName).put(resourceClaim.getId(), coldPath);
+        }
+
+        migratedClaims.get(containerName).add(new MigratedClaim(resourceClaim, hotFile, coldFile));
+        return size;
+    }
+
+    private void removeMigratedFiles(final String containerName) {
+        final Queue<MigratedClaim> queue = migratedClaims.get(containerName);
+        final Map<String, Path> locations = claimLocations.get(containerName);
+        final Path coldPath = coldContainers.get(containerName);
+        MigratedClaim migrated;
+        while ((migrated = queue.poll()) != null) {
+            final ResourceClaim resourceClaim = migrated.getResourceClaim();
+            try {
+                synchronized (resourceClaim) {
+                    if (resourceClaimManager.getClaimantCount(resourceClaim) > 0) {
+                        // The Resource Claim may have been located in the hot tier while both copies existed
+                        Files.deleteIfExists(migrated.getHotFile());
+                        locations.put(resourceClaim.getId(), coldPath);
+                    } else if (Files.exists(migrated.getHotFile()) && Files.exists(migrated.getColdFile())) {
+                        // The Resource Claim is no longer referenced but has not yet been removed or archived. Remove the copy, so that
+                        // the Resource Claim is removed or archived from the hot tier.
+                        locations.remove(resourceClaim.getId());
+                        Files.deleteIfExists(migrated.getColdFile());
+                    } else if (Files.exists(migrated.getHotFile())) {
+                        // The Resource Claim was removed or archived from the cold tier, so the original is not needed.
+                        locations.remove(resourceClaim.getId());
+                        Files.deleteIfExists(migrated.getHotFile());
+                    } else {
+                        // The Resource Claim was removed or archived from the hot tier before it was recorded as being in the cold tier,
+                        // so the copy is not needed.
+                        locations.remove(resourceClaim.getId());
+                        Files.deleteIfExists(migrated.getColdFile());
+                    }
+                }
+            } catch (final IOException ioe) {
+                LOG.warn("Failed to remove migrated copy of {} due to {}", resourceClaim, ioe.toString());
+            }
+        }
+    }
+
+    private void destroyExpiredColdArchives(final String containerName, final Path coldPath) throws IOException {
+        final Collection<ArchiveManifest> manifests = coldArchiveManifests.get(containerName).values();
+        final long startNanos = System.nanoTime();
+        final long now = System.currentTimeMillis();
+
+        final Map<String, Path> locations = claimLocations.get(containerName);
+
+        final ArchiveManifest.Expiration expiration = new ArchiveManifest.Expiration();
+        if (maxArchiveMillis < now) {
+            expiration.add(expire(manifests, now - maxArchiveMillis, locations));
+        }
+
+        if (maxArchiveRatio > 0D) {
+            // As in the content repository's own archive, files that cannot be deleted remain in the manifests, so each range of time begins
+            // where the previous one ended, and the cleanup ends once every file that was archived before it began has been considered.
+            final long minUsableBytes = (long) (FileUtils.getContainerCapacity(coldPath) * (1D - maxArchiveRatio));
+            long archivedBefore = -1L;
+            int stalledIterations = 0;
+            while (FileUtils.getContainerUsableSpace(coldPath) < minUsableBytes) {
+                final long oldestArchiveTime = getOldestArchiveTime(manifests);
+                if (oldestArchiveTime < 0) {
+                    break;
+                }
+
+                archivedBefore = Math.max(archivedBefore, oldestArchiveTime) + (Math.max(1L, (now - oldestArchiveTime) / ARCHIVE_SPACE_EXPIRATION_STEPS) << stalledIterations);
+                final ArchiveManifest.Expiration rangeExpiration = expire(manifests, archivedBefore, locations);
+                expiration.add(rangeExpiration);
+
+                if (rangeExpiration.getFilesDeleted() == 0 && getOldestArchiveTime(manifests) == oldestArchiveTime) {
+                    if (archivedBefore > now) {
+                        LOG.warn("Cold tier of Container {} is above its maximum archive usage, but no more archived data could be deleted", containerName);
+                        break;
+                    }
+
+                    stalledIterations++;
+                } else {
+                    stalledIterations = 0;
+                }
+            }
+        }
+
+        if (expiration.getFilesDeleted() > 0) {
+            final long oldestArchiveTime = getOldestArchiveTime(manifests);
+            LOG.info("Deleted {} files ({}) from cold tier archive for Container {}; oldest Archive Date is now {}; cleanup took {} millis", expiration.getFilesDeleted(),
+                FormatUtils.formatDataSize(expiration.getBytesDeleted()), containerName, new Date(oldestArchiveTime < 0 ? now : oldestArchiveTime),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    private static ArchiveManifest.Expiration expire(final Collection<ArchiveManifest> manifests, final long archivedBefore, final Map<String, Path> locations) throws IOException {
+        final ArchiveManifest.Expiration expiration = new ArchiveManifest.Expiration();
+        for (final ArchiveManifest manifest : manifests) {
+            expiration.add(manifest.expire(archivedBefore, locations::remove));
+        }
+
+        return expiration;
+    }
+
+    private static long getOldestArchiveTime(final Collection<ArchiveManifest> manifests) {
+        long oldest = -1L;
+        for (final ArchiveManifest manifest : manifests) {
+            final long manifestOldest = manifest.getOldestArchiveTime();
+            if (manifestOldest >= 0 && (oldest < 0 || manifestOldest < oldest)) {
+                oldest = manifestOldest;
+            }
+        }
+
+        return oldest;
+    }
+
+    // visible for testing
+    void migrateContentNow(final String containerName) throws IOException {
+        migrateContent(containerName);
+    }
+
+    // visible for testing
+    void destroyExpiredColdArchivesNow(final String containerName) throws IOException {
+        destroyExpiredColdArchives(containerName, coldContainers.get(containerName));
+    }
+
+    long getMigratedFileCount() {
+        return migratedFileCount.get();
+    }
+
+    long getMigratedBytes() {
+        return migratedBytes.get();
+    }
+
+    int getCachedLocationCount(final String containerName) {
+        return claimLocations.get(containerName).size();
+    }
+
+
+    private class MigrateContent implements Runnable {
+        private final String containerName;
+
+        MigrateContent(final String containerName) {
+            this.containerName = containerName;
+        }
+
+        @Override
+        public void run() {
+            try {
+                migrateContent(containerName);
+            } catch (final Throwable t) {
+                LOG.error("Failed to migrate content from Container {} to its cold tier due to {}", containerName, t.toString());
+                LOG.error("", t);
+            }
+        }
+    }
+
+    private class DestroyExpiredColdArchives implements Runnable {
+        private final String containerName;
+        private final Path coldPath;
+
+        DestroyExpiredColdArchives(final String containerName, final Path coldPath) {
+            this.containerName = containerName;
+            this.coldPath = coldPath;
+        }
+
+        @Override
+        public void run() {
+            try {
+                destroyExpiredColdArchives(containerName, coldPath);
+            } catch (final Throwable t) {
+                LOG.error("Failed to cleanup cold tier archive for Container {} due to {}", containerName, t.toString());
+                LOG.error("", t);
+            }
+        }
+    }
+
+    private static class MigrationCandidate {
+        private final String section;
+        private final String id;
+        private final long creationTime;
+
+        MigrationCandidate(final String section, final String id, final long creationTime) {
+            this.section = section;
+            this.id = id;
+            this.creationTime = creationTime;
+        }
+
+        String getSection() {
+            return section;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        long getCreationTime() {
+            return creationTime;
+        }
+    }
+
+    private static class MigratedClaim {
+        private final ResourceClaim resourceClaim;
+        private final Path hotFile;
+        private final Path coldFile;
+
+        MigratedClaim(final ResourceClaim resourceClaim, final Path hotFile, final Path coldFile) {
+            this.resourceClaim = resourceClaim;
+            this.hotFile = hotFile;
+            this.coldFile = coldFile;
+        }
+
+        ResourceClaim getResourceClaim() {
+            return resourceClaim;
+        }
+
+        Path getHotFile() {
+            return hotFile;
+        }
+
+        Path getColdFile() {
+            return coldFile;
+        }
+    }
+}
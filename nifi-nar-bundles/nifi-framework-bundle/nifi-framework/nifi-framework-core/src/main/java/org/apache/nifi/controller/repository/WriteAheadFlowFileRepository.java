@@ -90,6 +90,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
     private static final String WRITE_AHEAD_LOG_IMPL = "nifi.flowfile.repository.wal.implementation";
     private static final String RETAIN_ORPHANED_FLOWFILES = "nifi.flowfile.repository.retain.orphaned.flowfiles";
     private static final String FLOWFILE_REPO_CACHE_SIZE = "nifi.flowfile.repository.wal.cache.characters";
+    private static final String GROUP_COMMIT_WINDOW = "nifi.flowfile.repository.wal.group.commit.window";
 
     static final String SEQUENTIAL_ACCESS_WAL = "org.apache.nifi.wali.SequentialAccessWriteAheadLog";
     static final String ENCRYPTED_SEQUENTIAL_ACCESS_WAL = "org.apache.nifi.wali.EncryptedSequentialAccessWriteAheadLog";
@@ -112,6 +113,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
     private final List<File> recoveryFiles = new ArrayList<>();
     private final ScheduledExecutorService checkpointExecutor;
     private final int maxCharactersToCache;
+    private final long groupCommitWindowNanos;
 
     private volatile Collection<SerializedRepositoryRecord> recoveredRecords = null;
     private final Set<ResourceClaim> orphanedResourceClaims = Collections.synchronizedSet(new HashSet<>());
@@ -158,6 +160,7 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         nifiProperties = null;
         retainOrphanedFlowFiles = true;
         maxCharactersToCache = 0;
+        groupCommitWindowNanos = -1L;
     }
 
     public WriteAheadFlowFileRepository(final NiFiProperties nifiProperties) {
@@ -196,6 +199,14 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
 
         checkpointDelayMillis = FormatUtils.getTimeDuration(nifiProperties.getFlowFileRepositoryCheckpointInterval(), TimeUnit.MILLISECONDS);
 
+        // Group commit is only relevant when updates are synced to disk. If no window is configured, each update performs its own sync.
+        final String groupCommitWindow = nifiProperties.getProperty(GROUP_COMMIT_WINDOW);
+        if (groupCommitWindow == null || groupCommitWindow.trim().isEmpty()) {
+            groupCommitWindowNanos = -1L;
+        } else {
+            groupCommitWindowNanos = FormatUtils.getTimeDuration(groupCommitWindow.trim(), TimeUnit.NANOSECONDS);
+        }
+
         checkpointExecutor = Executors.newSingleThreadScheduledExecutor();
     }
 
@@ -242,9 +253,10 @@ public class WriteAheadFlowFileRepository implements FlowFileRepository, SyncLis
         this.serdeFactory = serdeFactory;
 
         // The specified implementation can be plaintext or encrypted; the only difference is the serde factory
-        if (isSequentialAccessWAL(walImplementation)) {
-            // TODO: May need to instantiate ESAWAL for clarity?
-            wal = new SequentialAccessWriteAheadLog<>(flowFileRepositoryPaths.get(0), serdeFactory, this);
+        if (walImplementation.equals(ENCRYPTED_SEQUENTIAL_ACCESS_WAL)) {
+            wal = new EncryptedSequentialAccessWriteAheadLog<>(flowFileRepositoryPaths.get(0), serdeFactory, this, groupCommitWindowNanos, TimeUnit.NANOSECONDS);
+        } else if (walImplementation.equals(SEQUENTIAL_ACCESS_WAL)) {
+            wal = new SequentialAccessWriteAheadLog<>(flowFileRepositoryPaths.get(0), serdeFactory, this, groupCommitWindowNanos, TimeUnit.NANOSECONDS);
         } else if (walImplementation.equals(MINIMAL_LOCKING_WALI)) {
             final SortedSet<Path> paths = flowFileRepositoryPaths.stream()
                     .map(File::toPath)
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository.claim;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * An index of recently written content, keyed by a hash of the content, that is shared by all {@link StandardContentClaimWriteCache}s so that
+ * content that is identical to content that is already stored can reference the stored content rather than being written again.
+ * </p>
+ *
+ * <p>
+ * The index does not hold a claim to the content that it references. An entry may therefore refer to content whose Resource Claim has since been
+ * destroyed. Such entries are detected when the content is claimed by {@link org.apache.nifi.controller.repository.ContentRepository#incrementClaimantCountIfReferenced},
+ * which fails for any Resource Claim that is no longer referenced, and are then removed. The number of entries is bounded, and the least recently
+ * used entries are removed first.
+ * </p>
+ */
+public class ContentDeduplicationIndex {
+    private final int maxEntries;
+    private final long maxContentSize;
+    private final Map<ContentKey, DeduplicatedContent> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesDeduplicated = new LongAdder();
+
+    public ContentDeduplicationIndex(final int maxEntries, final long maxContentSize) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximum number of entries must be at least 1 but was " + maxEntries);
+        }
+        if (maxContentSize < 1 || maxContentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Maximum content size must be between 1 and " + Integer.MAX_VALUE + " bytes but was " + maxContentSize);
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxContentSize = maxContentSize;
+        this.entries = new LinkedHashMap<ContentKey, DeduplicatedContent>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ContentKey, DeduplicatedContent> eldest) {
+                return size() > ContentDeduplicationIndex.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the largest content, in bytes, that should be considered for deduplication
+     */
+    public long getMaxContentSize() {
+        return maxContentSize;
+    }
+
+    synchronized DeduplicatedContent get(final ContentKey key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(final ContentKey key, final DeduplicatedContent content) {
+        entries.put(key, content);
+    }
+
+    synchronized void putAll(final Map<ContentKey, DeduplicatedContent> content) {
+        entries.putAll(content);
+    }
+
+    /**
+     * Removes the entry for the given key, but only if it still refers to the given content
+     */
+    synchronized void remove(final ContentKey key, final DeduplicatedContent content) {
+        entries.remove(key, content);
+    }
+
+    void recordHit(final long contentLength) {
+        hits.increment();
+        bytesDeduplicated.add(contentLength);
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getBytesDeduplicated() {
+        return bytesDeduplicated.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ContentDeduplicationIndex[entries=" + getEntryCount() + ", maxEntries=" + maxEntries + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+            + ", bytesDeduplicated=" + getBytesDeduplicated() + "]";
+    }
+
+
+    /**
+     * Identifies a piece of content by its hash and its length
+     */
+    static class ContentKey {
+        private final byte[] hash;
+        private final long length;
+        private final int hashCode;
+
+        ContentKey(final byte[] hash, final long length) {
+            this.hash = hash;
+            this.length = length;
+            this.hashCode = 31 * Arrays.hashCode(hash) + Long.hashCode(length);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ContentKey)) {
+                return false;
+            }
+
+            final ContentKey other = (ContentKey) obj;
+            return length == other.length && Arrays.equals(hash, other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -18,14 +18,19 @@
 package org.apache.nifi.controller.repository.claim;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.nifi.controller.repository.ContentRepository;
+import org.apache.nifi.controller.repository.claim.ContentDeduplicationIndex.ContentKey;
 
 public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
     private final ContentRepository contentRepo;
@@ -33,13 +38,43 @@ public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
     private final Queue<ContentClaim> queue = new LinkedList<>();
     private final int bufferSize;
 
+    private final ContentDeduplicationIndex deduplicationIndex;
+    private final MessageDigest messageDigest;
+    // Content written by this cache is added to the shared index only once it has been flushed, so that no other session can reference content that
+    // is not yet in the Content Repository. Until then, it can be deduplicated only against other content that is written by this cache.
+    private final Map<ContentKey, DeduplicatedContent> unflushedContent = new HashMap<>();
+    private final Map<ContentClaim, DeduplicatedContent> deduplicatedContent = new HashMap<>();
+
     public StandardContentClaimWriteCache(final ContentRepository contentRepo) {
         this(contentRepo, 8192);
     }
 
     public StandardContentClaimWriteCache(final ContentRepository contentRepo, final int bufferSize) {
+        this(contentRepo, bufferSize, null);
+    }
+
+    /**
+     * Creates a cache that, if the given index is not <code>null</code>, hashes the content that is written to it and, rather than writing content
+     * that is identical to content that is already stored, references the stored content.
+     *
+     * @param contentRepo the Content Repository to write to
+     * @param bufferSize the size of the buffer to use for each Resource Claim that is written to
+     * @param deduplicationIndex the index of content that has already been written, or <code>null</code> to always write content
+     */
+    public StandardContentClaimWriteCache(final ContentRepository contentRepo, final int bufferSize, final ContentDeduplicationIndex deduplicationIndex) {
         this.contentRepo = contentRepo;
         this.bufferSize = bufferSize;
+        this.deduplicationIndex = deduplicationIndex;
+
+        if (deduplicationIndex == null) {
+            this.messageDigest = null;
+        } else {
+            try {
+                this.messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Cannot deduplicate content because SHA-256 is not supported", e);
+            }
+        }
     }
 
     @Override
@@ -49,6 +84,8 @@ public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
         } finally {
             streamMap.clear();
             queue.clear();
+            unflushedContent.clear();
+            deduplicatedContent.clear();
         }
     }
 
@@ -87,9 +124,10 @@ public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
 
         final StandardContentClaim scc = (StandardContentClaim) claim;
         final long initialLength = Math.max(0L, scc.getLength());
+        deduplicatedContent.remove(claim);
 
         final OutputStream bcos = out;
-        return new OutputStream() {
+        final OutputStream claimStream = new OutputStream() {
             private long bytesWritten = 0L;
 
             @Override
@@ -121,6 +159,22 @@ public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
                 queue.offer(claim);
             }
         };
+
+        if (deduplicationIndex == null) {
+            return claimStream;
+        }
+
+        return new DeduplicatingOutputStream(claim, initialLength, claimStream);
+    }
+
+    @Override
+    public boolean isDeduplicating() {
+        return deduplicationIndex != null;
+    }
+
+    @Override
+    public DeduplicatedContent getDeduplicatedContent(final ContentClaim contentClaim) {
+        return deduplicatedContent.remove(contentClaim);
     }
 
     @Override
@@ -143,6 +197,11 @@ public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
     @Override
     public void flush() throws IOException {
         forEachStream(OutputStream::flush);
+
+        if (!unflushedContent.isEmpty()) {
+            deduplicationIndex.putAll(unflushedContent);
+            unflushedContent.clear();
+        }
     }
 
     private void forEachStream(final StreamProcessor proc) throws IOException {
@@ -169,4 +228,123 @@ public class StandardContentClaimWriteCache implements ContentClaimWriteCache {
     private interface StreamProcessor {
         void process(final OutputStream out) throws IOException;
     }
+
+    /**
+     * Buffers the content that is written for a Content Claim, up to the index's maximum content size. When closed, the content is hashed and, if identical
+     * content that is still referenced is found, the content is not written. Instead, the writer's claim is moved to the identical content. Content that
+     * exceeds the maximum content size is written through to the Content Claim.
+     */
+    private class DeduplicatingOutputStream extends OutputStream {
+        private final ContentClaim claim;
+        private final long offset;
+        private final OutputStream claimStream;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean closed = false;
+
+        DeduplicatingOutputStream(final ContentClaim claim, final long offset, final OutputStream claimStream) {
+            this.claim = claim;
+            this.offset = offset;
+            this.claimStream = claimStream;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (buffer != null && buffer.size() + 1 > deduplicationIndex.getMaxContentSize()) {
+                writeThrough();
+            }
+
+            if (buffer == null) {
+                claimStream.write(b);
+            } else {
+                buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (buffer != null && buffer.size() + (long) len > deduplicationIndex.getMaxContentSize()) {
+                writeThrough();
+            }
+
+            if (buffer == null) {
+                claimStream.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void write(final byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        private void writeThrough() throws IOException {
+            final ByteArrayOutputStream buffered = buffer;
+            buffer = null;
+            buffered.writeTo(claimStream);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // do nothing - do not flush underlying stream.
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            try {
+                if (buffer != null && buffer.size() > 0) {
+                    final byte[] content = buffer.toByteArray();
+                    buffer = null;
+                    writeOrDeduplicate(content);
+                }
+            } finally {
+                claimStream.close();
+            }
+        }
+
+        private void writeOrDeduplicate(final byte[] content) throws IOException {
+            final ContentKey key = new ContentKey(messageDigest.digest(content), content.length);
+
+            final DeduplicatedContent existing = claimExisting(key);
+            if (existing == null) {
+                claimStream.write(content);
+                unflushedContent.put(key, new DeduplicatedContent(claim, offset));
+                deduplicationIndex.recordMiss();
+                return;
+            }
+
+            // The identical content has been claimed, so release the claim that was obtained for writing the content.
+            contentRepo.decrementClaimantCount(claim);
+            deduplicatedContent.put(claim, existing);
+            deduplicationIndex.recordHit(content.length);
+        }
+
+        private DeduplicatedContent claimExisting(final ContentKey key) {
+            final DeduplicatedContent unflushed = unflushedContent.get(key);
+            if (unflushed != null) {
+                if (contentRepo.incrementClaimantCountIfReferenced(unflushed.getContentClaim())) {
+                    return unflushed;
+                }
+
+                unflushedContent.remove(key);
+            }
+
+            final DeduplicatedContent indexed = deduplicationIndex.get(key);
+            if (indexed != null) {
+                if (contentRepo.incrementClaimantCountIfReferenced(indexed.getContentClaim())) {
+                    return indexed;
+                }
+
+                // The content is no longer referenced and may already have been destroyed.
+                deduplicationIndex.remove(key, indexed);
+            }
+
+            return null;
+        }
+    }
 }
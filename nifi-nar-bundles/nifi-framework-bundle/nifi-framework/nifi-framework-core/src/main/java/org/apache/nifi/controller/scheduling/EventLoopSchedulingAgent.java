@@ -0,0 +1,561 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.controller.FlowController;
+import org.apache.nifi.controller.ReportingTaskNode;
+import org.apache.nifi.controller.tasks.ConnectableTask;
+import org.apache.nifi.controller.tasks.InvocationResult;
+import org.apache.nifi.controller.tasks.ReportingTaskWrapper;
+import org.apache.nifi.encrypt.StringEncryptor;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.util.FormatUtils;
+import org.apache.nifi.util.NiFiProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A SchedulingAgent for Timer-Driven components that tracks whether each concurrent task of a component is ready to run, rather than
+ * giving each concurrent task its own periodic task in the {@link FlowEngine}. The {@link TimerDrivenSchedulingAgent} cancels and
+ * re-submits a periodic task every time a component yields or has no work to do, so a flow with many mostly-idle components keeps the
+ * Timer-Driven thread pool's delay queue constantly busy.
+ * </p>
+ *
+ * <p>
+ * Here, a task that runs and has work to do is handed directly back to the thread pool (or waits for the component's Run Schedule).
+ * A task that has no work to do is parked. It is woken as soon as a FlowFile is queued for the component, or FlowFiles are removed from
+ * one of its outgoing connections, via {@link #onEvent(Connectable)}. Parked tasks also wake on their own, after the configured bored
+ * yield duration, doubling each time that no work is found, up to a maximum idle duration. This covers any condition that is not
+ * signaled by an event. Tasks that are yielded wait for the yield to expire. All waiting is tracked by a small number of dispatcher threads,
+ * each of which owns a heap of wake-up times, so idle components do not occupy the thread pool at all.
+ * </p>
+ */
+public class EventLoopSchedulingAgent extends AbstractSchedulingAgent {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopSchedulingAgent.class);
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final long noWorkYieldNanos;
+    private final long maxIdleNanos;
+
+    private final FlowController flowController;
+    private final RepositoryContextFactory contextFactory;
+    private final StringEncryptor encryptor;
+
+    private final Dispatcher[] dispatchers;
+    private final AtomicInteger dispatcherIndex = new AtomicInteger(0);
+    private final ConcurrentMap<Connectable, ScheduledComponent> scheduledComponents = new ConcurrentHashMap<>();
+
+    private volatile String adminYieldDuration = "1 sec";
+
+    public EventLoopSchedulingAgent(final FlowController flowController, final FlowEngine flowEngine, final RepositoryContextFactory contextFactory,
+                                    final StringEncryptor encryptor, final NiFiProperties nifiProperties) {
+        super(flowEngine);
+        this.flowController = flowController;
+        this.contextFactory = contextFactory;
+        this.encryptor = encryptor;
+
+        final String boredYieldDuration = nifiProperties.getBoredYieldDuration();
+        try {
+            noWorkYieldNanos = FormatUtils.getTimeDuration(boredYieldDuration, TimeUnit.NANOSECONDS);
+        } catch (final IllegalArgumentException e) {
+            throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.BORED_YIELD_DURATION + " property is set to an invalid time duration: " + boredYieldDuration);
+        }
+
+        final String maxIdleDuration = nifiProperties.getTimerDrivenMaxIdleDuration();
+        try {
+            maxIdleNanos = Math.max(noWorkYieldNanos, FormatUtils.getTimeDuration(maxIdleDuration, TimeUnit.NANOSECONDS));
+        } catch (final IllegalArgumentException e) {
+            throw new RuntimeException("Failed to create SchedulingAgent because the " + NiFiProperties.TIMER_DRIVEN_MAX_IDLE_DURATION + " property is set to an invalid time duration: "
+                + maxIdleDuration);
+        }
+
+        final int dispatcherCount = nifiProperties.getTimerDrivenDispatcherThreadCount();
+        dispatchers = new Dispatcher[dispatcherCount];
+        for (int i = 0; i < dispatcherCount; i++) {
+            dispatchers[i] = new Dispatcher();
+
+            final Thread dispatcherThread = new Thread(dispatchers[i], "Timer-Driven Dispatcher-" + (i + 1));
+            dispatcherThread.setDaemon(true);
+            dispatcherThread.start();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (final Dispatcher dispatcher : dispatchers) {
+            dispatcher.shutdown();
+        }
+
+        flowEngine.shutdown();
+    }
+
+    @Override
+    public void doSchedule(final ReportingTaskNode taskNode, final LifecycleState scheduleState) {
+        final Runnable reportingTaskWrapper = new ReportingTaskWrapper(taskNode, scheduleState, flowController.getExtensionManager());
+        final long schedulingNanos = taskNode.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+
+        final ScheduledFuture<?> future = flowEngine.scheduleWithFixedDelay(reportingTaskWrapper, 0L, schedulingNanos, TimeUnit.NANOSECONDS);
+        final List<ScheduledFuture<?>> futures = new ArrayList<>(1);
+        futures.add(future);
+        scheduleState.setFutures(futures);
+
+        logger.info("{} started.", taskNode.getReportingTask());
+    }
+
+    @Override
+    public void doSchedule(final Connectable connectable, final LifecycleState scheduleState) {
+        final ConnectableTask connectableTask = createConnectableTask(connectable, scheduleState);
+        final Dispatcher dispatcher = dispatchers[Math.floorMod(dispatcherIndex.getAndIncrement(), dispatchers.length)];
+        final ScheduledComponent component = new ScheduledComponent(connectable, connectableTask, scheduleState, dispatcher, connectable.getMaxConcurrentTasks());
+
+        final ScheduledComponent previous = scheduledComponents.put(connectable, component);
+        if (previous != null) {
+            previous.stop();
+        }
+
+        scheduleState.setFutures(Collections.emptyList());
+        component.start();
+        logger.info("Scheduled {} to run with {} threads", connectable, connectable.getMaxConcurrentTasks());
+    }
+
+    protected ConnectableTask createConnectableTask(final Connectable connectable, final LifecycleState scheduleState) {
+        return new ConnectableTask(this, connectable, flowController, contextFactory, scheduleState, encryptor);
+    }
+
+    @Override
+    public void doUnschedule(final Connectable connectable, final LifecycleState scheduleState) {
+        final ScheduledComponent component = scheduledComponents.remove(connectable);
+        if (component != null) {
+            component.stop();
+        }
+
+        logger.info("Stopped scheduling {} to run", connectable);
+    }
+
+    @Override
+    public void doUnschedule(final ReportingTaskNode taskNode, final LifecycleState scheduleState) {
+        for (final ScheduledFuture<?> future : scheduleState.getFutures()) {
+            // stop scheduling to run but do not interrupt currently running tasks.
+            future.cancel(false);
+        }
+
+        logger.info("Stopped scheduling {} to run", taskNode.getReportingTask());
+    }
+
+    @Override
+    public void onEvent(final Connectable connectable) {
+        final ScheduledComponent component = scheduledComponents.get(connectable);
+        if (component != null) {
+            component.onEvent();
+        }
+    }
+
+    @Override
+    public void setAdministrativeYieldDuration(final String yieldDuration) {
+        this.adminYieldDuration = yieldDuration;
+    }
+
+    @Override
+    public String getAdministrativeYieldDuration() {
+        return adminYieldDuration;
+    }
+
+    @Override
+    public long getAdministrativeYieldDuration(final TimeUnit timeUnit) {
+        return FormatUtils.getTimeDuration(adminYieldDuration, timeUnit);
+    }
+
+    @Override
+    public void setMaxThreadCount(final int maxThreads) {
+    }
+
+    @Override
+    public void incrementMaxThreadCount(int toAdd) {
+        final int corePoolSize = flowEngine.getCorePoolSize();
+        if (toAdd < 0 && corePoolSize + toAdd < 1) {
+            throw new IllegalStateException("Cannot remove " + (-toAdd) + " threads from pool because there are only " + corePoolSize + " threads in the pool");
+        }
+
+        flowEngine.setCorePoolSize(corePoolSize + toAdd);
+    }
+
+    /**
+     * @return the number of concurrent tasks, across all scheduled components, that are currently parked waiting for work
+     */
+    int getIdleTaskCount() {
+        int count = 0;
+        for (final ScheduledComponent component : scheduledComponents.values()) {
+            for (final TaskSlot slot : component.slots) {
+                if (slot.state.get() == TaskSlot.IDLE) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+
+    private class ScheduledComponent {
+        private final Connectable connectable;
+        private final ConnectableTask connectableTask;
+        private final LifecycleState scheduleState;
+        private final Dispatcher dispatcher;
+        private final TaskSlot[] slots;
+
+        // Incremented for every event so that a task that finds no work can detect an event that arrived while it was running
+        private final AtomicLong eventCount = new AtomicLong(0L);
+        private volatile boolean stopped = false;
+
+        private ScheduledComponent(final Connectable connectable, final ConnectableTask connectableTask, final LifecycleState scheduleState, final Dispatcher dispatcher,
+                                   final int concurrentTasks) {
+            this.connectable = connectable;
+            this.connectableTask = connectableTask;
+            this.scheduleState = scheduleState;
+            this.dispatcher = dispatcher;
+
+            this.slots = new TaskSlot[Math.max(1, concurrentTasks)];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new TaskSlot(this);
+            }
+        }
+
+        private boolean isScheduled() {
+            return !stopped && scheduleState.isScheduled();
+        }
+
+        private void start() {
+            for (final TaskSlot slot : slots) {
+                slot.submit();
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            for (final TaskSlot slot : slots) {
+                slot.stop();
+            }
+        }
+
+        private void onEvent() {
+            eventCount.incrementAndGet();
+            wakeIdleSlot();
+        }
+
+        private void wakeIdleSlot() {
+            for (final TaskSlot slot : slots) {
+                if (slot.wake()) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A single concurrent task of a scheduled component. At any point in time, a slot is queued in or running on the thread pool,
+     * parked until an event or its wake-up time (IDLE), waiting only for its wake-up time (TIMED), or stopped.
+     */
+    private class TaskSlot implements Runnable {
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int IDLE = 2;
+        private static final int TIMED = 3;
+        private static final int STOPPED = 4;
+
+        private final ScheduledComponent component;
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        // Only accessed by the thread that is running the slot
+        private int consecutiveIdleCount = 0;
+
+        // Guarded by the Dispatcher's lock
+        private long wakeNanos = Dispatcher.NONE;
+        private Wakeup pendingWakeup;
+
+        private TaskSlot(final ScheduledComponent component) {
+            this.component = component;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+
+            if (!component.isScheduled()) {
+                state.set(STOPPED);
+                return;
+            }
+
+            final long eventCountBefore = component.eventCount.get();
+            InvocationResult invocationResult = InvocationResult.DO_NOT_YIELD;
+            try {
+                invocationResult = component.connectableTask.invoke();
+            } catch (final Throwable t) {
+                logger.error("Failed to run {}", component.connectable, t);
+            } finally {
+                afterInvocation(invocationResult, eventCountBefore);
+            }
+        }
+
+        private void afterInvocation(final InvocationResult invocationResult, final long eventCountBefore) {
+            if (!component.isScheduled()) {
+                state.set(STOPPED);
+                return;
+            }
+
+            final Connectable connectable = component.connectable;
+            if (invocationResult.isYield()) {
+                logger.debug("Yielding {} due to {}", connectable, invocationResult.getYieldExplanation());
+            }
+
+            final long schedulingNanos = connectable.getSchedulingPeriod(TimeUnit.NANOSECONDS);
+            final long yieldExpiration = connectable.getYieldExpiration();
+            final long now = System.currentTimeMillis();
+            if (yieldExpiration > now) {
+                final long yieldNanos = TimeUnit.MILLISECONDS.toNanos(yieldExpiration - now);
+                park(TIMED, Math.max(schedulingNanos, yieldNanos));
+                return;
+            }
+
+            if (noWorkYieldNanos > 0L && invocationResult.isYield()) {
+                // No work to do. Wait for an event, backing off further each time that a wake-up finds nothing to do.
+                final long idleNanos = Math.min(maxIdleNanos, noWorkYieldNanos << Math.min(consecutiveIdleCount, MAX_BACKOFF_SHIFT));
+                consecutiveIdleCount++;
+
+                park(IDLE, Math.max(schedulingNanos, idleNanos));
+
+                // If an event arrived while the component was running, it may have found no IDLE slot to wake.
+                if (component.eventCount.get() != eventCountBefore) {
+                    wake();
+                }
+                return;
+            }
+
+            consecutiveIdleCount = 0;
+            if (!invocationResult.isYield()) {
+                // The component had work to do, so there may be more work than this slot alone can keep up with.
+                component.wakeIdleSlot();
+            }
+
+            if (schedulingNanos > 0L) {
+                park(TIMED, schedulingNanos);
+            } else {
+                state.set(QUEUED);
+                execute();
+            }
+        }
+
+        private void park(final int parkedState, final long delayNanos) {
+            state.set(parkedState);
+            component.dispatcher.schedule(this, System.nanoTime() + delayNanos);
+        }
+
+        /**
+         * Wakes this slot if it is parked waiting for work.
+         *
+         * @return <code>true</code> if the slot was woken, <code>false</code> if it was not parked waiting for work
+         */
+        private boolean wake() {
+            if (state.compareAndSet(IDLE, QUEUED)) {
+                component.dispatcher.cancel(this);
+                execute();
+                return true;
+            }
+
+            return false;
+        }
+
+        private void onWakeupTime() {
+            if (state.compareAndSet(IDLE, QUEUED) || state.compareAndSet(TIMED, QUEUED)) {
+                execute();
+            }
+        }
+
+        private void submit() {
+            state.set(QUEUED);
+            execute();
+        }
+
+        private void stop() {
+            while (true) {
+                final int currentState = state.get();
+                if (currentState == RUNNING || currentState == STOPPED) {
+                    // A running slot will observe that the component is stopped when it finishes.
+                    return;
+                }
+
+                if (state.compareAndSet(currentState, STOPPED)) {
+                    component.dispatcher.cancel(this);
+                    return;
+                }
+            }
+        }
+
+        private void execute() {
+            try {
+                flowEngine.execute(this);
+            } catch (final RejectedExecutionException ree) {
+                state.set(STOPPED);
+                logger.debug("Could not run {} because the Timer-Driven thread pool is shut down", component.connectable);
+            }
+        }
+    }
+
+
+    private static class Wakeup implements Comparable<Wakeup> {
+        private final TaskSlot slot;
+        private final long wakeNanos;
+
+        private Wakeup(final TaskSlot slot, final long wakeNanos) {
+            this.slot = slot;
+            this.wakeNanos = wakeNanos;
+        }
+
+        @Override
+        public int compareTo(final Wakeup other) {
+            return Long.compare(wakeNanos - other.wakeNanos, 0L);
+        }
+    }
+
+
+    /**
+     * Owns a heap of wake-up times. Each slot has at most one live entry in the heap. If a slot asks to be woken later than its live entry,
+     * the entry is re-inserted for the later time when it comes due; if it asks to be woken earlier, a new entry replaces the live one and
+     * the old entry is discarded when it comes due. This means that a slot that is repeatedly parked and woken does not add to the heap
+     * each time.
+     */
+    private class Dispatcher implements Runnable {
+        private static final long NONE = Long.MIN_VALUE;
+
+        private final PriorityQueue<Wakeup> wakeups = new PriorityQueue<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition wakeupsChanged = lock.newCondition();
+        private volatile boolean shutdown = false;
+
+        private void schedule(final TaskSlot slot, final long wakeNanos) {
+            lock.lock();
+            try {
+                slot.wakeNanos = wakeNanos;
+                if (slot.pendingWakeup != null && slot.pendingWakeup.wakeNanos - wakeNanos <= 0L) {
+                    return;
+                }
+
+                final Wakeup wakeup = new Wakeup(slot, wakeNanos);
+                slot.pendingWakeup = wakeup;
+                wakeups.add(wakeup);
+                if (wakeups.peek() == wakeup) {
+                    wakeupsChanged.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cancel(final TaskSlot slot) {
+            lock.lock();
+            try {
+                slot.wakeNanos = NONE;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void shutdown() {
+            shutdown = true;
+
+            lock.lock();
+            try {
+                wakeupsChanged.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                final TaskSlot dueSlot;
+
+                lock.lock();
+                try {
+                    final Wakeup next = wakeups.peek();
+                    if (next == null) {
+                        wakeupsChanged.await();
+                        continue;
+                    }
+
+                    final long waitNanos = next.wakeNanos - System.nanoTime();
+                    if (waitNanos > 0L) {
+                        wakeupsChanged.awaitNanos(waitNanos);
+                        continue;
+                    }
+
+                    wakeups.poll();
+                    dueSlot = next.slot;
+                    if (dueSlot.pendingWakeup != next) {
+                        continue; // superseded by an earlier wake-up
+                    }
+
+                    dueSlot.pendingWakeup = null;
+                    if (dueSlot.wakeNanos == NONE) {
+                        continue; // cancelled
+                    }
+
+                    if (dueSlot.wakeNanos - next.wakeNanos > 0L) {
+                        // the slot has since been parked again, for longer
+                        final Wakeup later = new Wakeup(dueSlot, dueSlot.wakeNanos);
+                        dueSlot.pendingWakeup = later;
+                        wakeups.add(later);
+                        continue;
+                    }
+
+                    dueSlot.wakeNanos = NONE;
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    dueSlot.onWakeupTime();
+                } catch (final Throwable t) {
+                    logger.error("Failed to dispatch {}", dueSlot.component.connectable, t);
+                }
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.nifi.controller.repository.FlowFileEventRepository;
 import org.apache.nifi.controller.repository.FlowFileRepository;
 import org.apache.nifi.controller.repository.RepositoryContext;
 import org.apache.nifi.controller.repository.StandardRepositoryContext;
+import org.apache.nifi.controller.repository.claim.ContentDeduplicationIndex;
 import org.apache.nifi.provenance.ProvenanceRepository;
 
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,10 +38,18 @@ public class RepositoryContextFactory {
     private final CounterRepository counterRepo;
     private final ProvenanceRepository provenanceRepo;
     private final StateManagerProvider stateManagerProvider;
+    private final ContentDeduplicationIndex contentDeduplicationIndex;
 
     public RepositoryContextFactory(final ContentRepository contentRepository, final FlowFileRepository flowFileRepository,
             final FlowFileEventRepository flowFileEventRepository, final CounterRepository counterRepository,
             final ProvenanceRepository provenanceRepository, final StateManagerProvider stateManagerProvider) {
+        this(contentRepository, flowFileRepository, flowFileEventRepository, counterRepository, provenanceRepository, stateManagerProvider, null);
+    }
+
+    public RepositoryContextFactory(final ContentRepository contentRepository, final FlowFileRepository flowFileRepository,
+            final FlowFileEventRepository flowFileEventRepository, final CounterRepository counterRepository,
+            final ProvenanceRepository provenanceRepository, final StateManagerProvider stateManagerProvider,
+            final ContentDeduplicationIndex contentDeduplicationIndex) {
 
         this.contentRepo = contentRepository;
         this.flowFileRepo = flowFileRepository;
@@ -48,11 +57,13 @@ public class RepositoryContextFactory {
         this.counterRepo = counterRepository;
         this.provenanceRepo = provenanceRepository;
         this.stateManagerProvider = stateManagerProvider;
+        this.contentDeduplicationIndex = contentDeduplicationIndex;
     }
 
     public RepositoryContext newProcessContext(final Connectable connectable, final AtomicLong connectionIndex) {
         final StateManager stateManager = stateManagerProvider.getStateManager(connectable.getIdentifier());
-        return new StandardRepositoryContext(connectable, connectionIndex, contentRepo, flowFileRepo, flowFileEventRepo, counterRepo, provenanceRepo, stateManager);
+        return new StandardRepositoryContext(connectable, connectionIndex, contentRepo, flowFileRepo, flowFileEventRepo, counterRepo, provenanceRepo, stateManager,
+            contentDeduplicationIndex);
     }
 
     public ContentRepository getContentRepository() {
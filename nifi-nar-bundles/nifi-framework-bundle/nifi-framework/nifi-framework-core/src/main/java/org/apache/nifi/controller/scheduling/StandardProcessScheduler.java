@@ -447,7 +447,10 @@ public final class StandardProcessScheduler implements ProcessScheduler {
 
     @Override
     public void registerEvent(final Connectable worker) {
-        getSchedulingAgent(worker).onEvent(worker);
+        final SchedulingAgent agent = getSchedulingAgent(worker);
+        if (agent != null) {
+            agent.onEvent(worker);
+        }
     }
 
     @Override
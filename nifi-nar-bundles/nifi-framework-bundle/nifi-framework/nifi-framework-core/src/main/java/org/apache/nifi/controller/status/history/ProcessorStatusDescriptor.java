@@ -164,7 +164,14 @@ public enum ProcessorStatusDescriptor {
             }
         },
         true
-    );
+    ),
+
+    BYTES_ALLOCATED(
+        "bytesAllocated",
+        "Bytes Allocated (5 mins)",
+        "The total number of bytes of heap that were allocated by the threads running this Processor's tasks in the past 5 minutes",
+        Formatter.DATA_SIZE,
+        ProcessorStatus::getBytesAllocated);
 
 
 
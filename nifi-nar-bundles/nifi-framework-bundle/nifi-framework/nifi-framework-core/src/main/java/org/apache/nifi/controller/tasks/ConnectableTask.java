@@ -16,6 +16,7 @@
  */
 package org.apache.nifi.controller.tasks;
 
+import com.sun.management.ThreadMXBean;
 import org.apache.nifi.components.state.StateManager;
 import org.apache.nifi.connectable.Connectable;
 import org.apache.nifi.connectable.ConnectableType;
@@ -50,6 +51,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -60,6 +62,7 @@ import java.util.concurrent.atomic.AtomicLong;
 public class ConnectableTask {
 
     private static final Logger logger = LoggerFactory.getLogger(ConnectableTask.class);
+    private static final ThreadMXBean allocationMXBean = getAllocationMXBean();
 
     private final SchedulingAgent schedulingAgent;
     private final Connectable connectable;
@@ -91,6 +94,38 @@ public class ConnectableTask {
         repositoryContext = contextFactory.newProcessContext(connectable, new AtomicLong(0L));
     }
 
+    private static ThreadMXBean getAllocationMXBean() {
+        final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof ThreadMXBean)) {
+            logger.info("JVM does not support measuring thread allocation; Bytes Allocated will not be reported for Processors");
+            return null;
+        }
+
+        final ThreadMXBean allocationBean = (ThreadMXBean) threadMXBean;
+        try {
+            if (!allocationBean.isThreadAllocatedMemorySupported()) {
+                logger.info("JVM does not support measuring thread allocation; Bytes Allocated will not be reported for Processors");
+                return null;
+            }
+
+            if (!allocationBean.isThreadAllocatedMemoryEnabled()) {
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+            }
+        } catch (final Exception e) {
+            logger.warn("Unable to enable measurement of thread allocation; Bytes Allocated will not be reported for Processors", e);
+            return null;
+        }
+
+        return allocationBean;
+    }
+
+    /**
+     * @return the number of bytes that the current thread has allocated since it started, or -1 if this cannot be determined
+     */
+    private static long getCurrentThreadAllocatedBytes() {
+        return allocationMXBean == null ? -1L : allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
     public Connectable getConnectable() {
         return connectable;
     }
@@ -201,6 +236,7 @@ public class ConnectableTask {
         scheduleState.incrementActiveThreadCount(activeSessionFactory);
 
         final long startNanos = System.nanoTime();
+        final long startAllocatedBytes = getCurrentThreadAllocatedBytes();
         final long finishIfBackpressureEngaged = startNanos + (batchNanos / 25L);
         final long finishNanos = startNanos + batchNanos;
         int invocationCount = 0;
@@ -275,11 +311,14 @@ public class ConnectableTask {
                 }
 
                 final long processingNanos = System.nanoTime() - startNanos;
+                final long endAllocatedBytes = getCurrentThreadAllocatedBytes();
+                final long bytesAllocated = (startAllocatedBytes < 0 || endAllocatedBytes < 0) ? 0L : endAllocatedBytes - startAllocatedBytes;
 
                 try {
                     final StandardFlowFileEvent procEvent = new StandardFlowFileEvent();
                     procEvent.setProcessingNanos(processingNanos);
                     procEvent.setInvocations(invocationCount);
+                    procEvent.setBytesAllocated(bytesAllocated);
                     repositoryContext.getFlowFileEventRepository().updateRepository(procEvent, connectable.getIdentifier());
                 } catch (final IOException e) {
                     logger.error("Unable to update FlowFileEvent Repository for {}; statistics may be inaccurate. Reason for failure: {}", connectable.getRunnableComponent(), e.toString());
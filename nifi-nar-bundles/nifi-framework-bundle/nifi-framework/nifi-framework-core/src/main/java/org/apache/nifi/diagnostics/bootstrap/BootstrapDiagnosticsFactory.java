@@ -27,6 +27,7 @@ import org.apache.nifi.diagnostics.bootstrap.tasks.ComponentCountTask;
 import org.apache.nifi.diagnostics.bootstrap.tasks.ContentRepositoryScanTask;
 import org.apache.nifi.diagnostics.bootstrap.tasks.DataValveDiagnosticsTask;
 import org.apache.nifi.diagnostics.bootstrap.tasks.DiagnosticAnalysisTask;
+import org.apache.nifi.diagnostics.bootstrap.tasks.ExpressionLanguageDiagnosticTask;
 import org.apache.nifi.diagnostics.bootstrap.tasks.FlowConfigurationDiagnosticTask;
 import org.apache.nifi.diagnostics.bootstrap.tasks.GarbageCollectionDiagnosticTask;
 import org.apache.nifi.diagnostics.bootstrap.tasks.JVMDiagnosticTask;
@@ -78,6 +79,7 @@ public class BootstrapDiagnosticsFactory implements DiagnosticsFactory {
         tasks.add(new ClusterDiagnosticTask(flowController));
         tasks.add(new GarbageCollectionDiagnosticTask(flowController));
         tasks.add(new MemoryPoolPeakUsageTask());
+        tasks.add(new ExpressionLanguageDiagnosticTask());
         tasks.add(new RepositoryDiagnosticTask(flowController));
         tasks.add(new ComponentCountTask(flowController));
         tasks.add(new NiFiPropertiesDiagnosticTask(nifiProperties));
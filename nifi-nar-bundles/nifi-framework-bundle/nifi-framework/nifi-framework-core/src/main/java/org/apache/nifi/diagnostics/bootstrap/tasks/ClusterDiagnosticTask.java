@@ -22,6 +22,7 @@ import org.apache.nifi.cluster.coordination.node.NodeConnectionStatus;
 import org.apache.nifi.cluster.protocol.NodeIdentifier;
 import org.apache.nifi.controller.FlowController;
 import org.apache.nifi.controller.leader.election.LeaderElectionManager;
+import org.apache.nifi.controller.queue.clustered.server.ConnectionLoadBalanceServer;
 import org.apache.nifi.diagnostics.DiagnosticTask;
 import org.apache.nifi.diagnostics.DiagnosticsDumpElement;
 import org.apache.nifi.diagnostics.StandardDiagnosticsDumpElement;
@@ -84,6 +85,17 @@ public class ClusterDiagnosticTask implements DiagnosticTask {
                 + leaderElectionManager.getAveragePollTime(TimeUnit.MILLISECONDS) + " millis");
         }
 
+        final ConnectionLoadBalanceServer loadBalanceServer = flowController.getLoadBalanceServer();
+        if (loadBalanceServer != null) {
+            details.add("In the past 5 minutes, load-balanced data has been received from all nodes at " + formatRate(loadBalanceServer.getReceiveRate()));
+            loadBalanceServer.getReceiveRatesByNode().forEach((node, rate) ->
+                details.add("In the past 5 minutes, load-balanced data has been received from " + node + " at " + formatRate(rate)));
+        }
+
         return new StandardDiagnosticsDumpElement("Cluster Details", details);
     }
+
+    private static String formatRate(final ConnectionLoadBalanceServer.ReceiveRate rate) {
+        return String.format("%.2f FlowFiles/sec, %.2f bytes/sec", rate.getFlowFilesPerSecond(), rate.getBytesPerSecond());
+    }
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.diagnostics.bootstrap.tasks;
+
+import org.apache.nifi.attribute.expression.language.PreparedQueryCache;
+import org.apache.nifi.attribute.expression.language.StandardExpressionLanguageCompiler;
+import org.apache.nifi.attribute.expression.language.compile.EvaluatorCompiler;
+import org.apache.nifi.diagnostics.DiagnosticTask;
+import org.apache.nifi.diagnostics.DiagnosticsDumpElement;
+import org.apache.nifi.diagnostics.StandardDiagnosticsDumpElement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ExpressionLanguageDiagnosticTask implements DiagnosticTask {
+    @Override
+    public DiagnosticsDumpElement captureDump(final boolean verbose) {
+        final List<String> details = new ArrayList<>();
+        details.add("Compilation Enabled: " + EvaluatorCompiler.isEnabled());
+        details.add(String.format("Compiled Expressions: %1$,d", EvaluatorCompiler.getCompiledCount()));
+        details.add(String.format("Partially Compiled Expressions: %1$,d", EvaluatorCompiler.getPartiallyCompiledCount()));
+        details.add(String.format("Interpreted Expressions: %1$,d", EvaluatorCompiler.getInterpretedCount()));
+
+        final PreparedQueryCache cache = StandardExpressionLanguageCompiler.getPreparedQueryCache();
+        details.add(String.format("Prepared Query Cache Size: %1$,d of %2$,d", cache.getSize(), cache.getMaxSize()));
+        details.add(String.format("Prepared Query Cache Estimated Heap Usage: %1$,d bytes", cache.getEstimatedBytes()));
+        details.add(String.format("Prepared Query Cache Hits: %1$,d, Misses: %2$,d, Hit Rate: %3$.2f%%", cache.getHitCount(), cache.getMissCount(), cache.getHitRate() * 100D));
+        details.add(String.format("Prepared Query Cache Evictions: %1$,d", cache.getEvictionCount()));
+
+        return new StandardDiagnosticsDumpElement("Expression Language", details);
+    }
+}
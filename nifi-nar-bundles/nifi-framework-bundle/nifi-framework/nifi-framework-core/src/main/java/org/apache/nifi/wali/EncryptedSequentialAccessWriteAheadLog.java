@@ -19,6 +19,7 @@ package org.apache.nifi.wali;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wali.SerDeFactory;
@@ -49,4 +50,9 @@ public class EncryptedSequentialAccessWriteAheadLog<T> extends SequentialAccessW
     public EncryptedSequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory, final SyncListener syncListener) throws IOException {
         super(storageDirectory, serdeFactory, syncListener);
     }
+
+    public EncryptedSequentialAccessWriteAheadLog(final File storageDirectory, final SerDeFactory<T> serdeFactory, final SyncListener syncListener,
+                                                  final long groupCommitWindow, final TimeUnit timeUnit) throws IOException {
+        super(storageDirectory, serdeFactory, syncListener, groupCommitWindow, timeUnit);
+    }
 }
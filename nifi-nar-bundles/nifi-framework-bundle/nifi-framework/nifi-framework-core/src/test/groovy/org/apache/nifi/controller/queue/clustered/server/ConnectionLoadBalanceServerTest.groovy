@@ -35,8 +35,10 @@ import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
 import javax.net.ssl.SSLContext
+import javax.net.ssl.SSLEngine
 import javax.net.ssl.SSLPeerUnverifiedException
-import javax.net.ssl.SSLServerSocket
+import javax.net.ssl.SSLSession
+import java.nio.channels.SocketChannel
 import java.security.Security
 
 @RunWith(JUnit4.class)
@@ -102,7 +104,7 @@ class ConnectionLoadBalanceServerTest extends GroovyTestCase {
         logger.info("Created SSL Context: ${KeyStoreUtils.sslContextToString(sslContext)}")
 
         def mockLBP = [
-                receiveFlowFiles: { Socket s, InputStream i, OutputStream o -> null }
+                receiveFlowFiles: { String h, SSLSession ss, InputStream i, OutputStream o -> 0 }
         ] as LoadBalanceProtocol
         def mockER = [:] as EventReporter
 
@@ -119,11 +121,12 @@ class ConnectionLoadBalanceServerTest extends GroovyTestCase {
         assertProtocolVersions(defaultSSLParameters.protocols, TlsPlatform.supportedProtocols)
         assert !defaultSSLParameters.needClientAuth
 
-        // Assert that the actual socket is set correctly due to the override in the LB server
-        SSLServerSocket socket = lbServer.serverSocket as SSLServerSocket
-        logger.info("Created SSL server socket: ${KeyStoreUtils.sslServerSocketToString(socket)}" as String)
-        assertProtocolVersions(socket.enabledProtocols, TlsPlatform.preferredProtocols)
-        assert socket.needClientAuth
+        // Assert that the engine used for each peer is set correctly due to the override in the LB server
+        SSLEngine engine = lbServer.createSslEngine()
+        logger.info("Created SSL engine with protocols: ${engine.enabledProtocols}" as String)
+        assertProtocolVersions(engine.enabledProtocols, TlsPlatform.preferredProtocols)
+        assert engine.needClientAuth
+        assert !engine.useClientMode
 
         // Clean up
         lbServer.stop()
@@ -139,15 +142,9 @@ class ConnectionLoadBalanceServerTest extends GroovyTestCase {
         final String peerDescription = "Test peer"
         final SSLPeerUnverifiedException e = new SSLPeerUnverifiedException("Test exception")
 
-        InputStream socketInputStream = new ByteArrayInputStream("This is the socket input stream".bytes)
-        OutputStream socketOutputStream = new ByteArrayOutputStream()
-
-        Socket mockSocket = [
-                getInputStream : { -> socketInputStream },
-                getOutputStream: { -> socketOutputStream },
-        ] as Socket
+        PeerConnection peerConnection = new PeerConnection(SocketChannel.open(), null, TIMEOUT_MS)
         LoadBalanceProtocol mockLBProtocol = [
-                receiveFlowFiles: { Socket s, InputStream i, OutputStream o -> null }
+                receiveFlowFiles: { String h, SSLSession ss, InputStream i, OutputStream o -> 0 }
         ] as LoadBalanceProtocol
         EventReporter mockER = [
                 reportEvent: { Severity s, String c, String m -> logger.mock("${s}: ${c} | ${m}") }
@@ -155,7 +152,7 @@ class ConnectionLoadBalanceServerTest extends GroovyTestCase {
 
         def output = [debug: 0, error: 0]
 
-        ConnectionLoadBalanceServer.CommunicateAction communicateAction = new ConnectionLoadBalanceServer.CommunicateAction(mockLBProtocol, mockSocket, mockER)
+        ConnectionLoadBalanceServer.CommunicateAction communicateAction = new ConnectionLoadBalanceServer.CommunicateAction(mockLBProtocol, peerConnection, mockER)
 
         // Override the threshold to 100 ms
         communicateAction.EXCEPTION_THRESHOLD_MILLIS = 100
@@ -49,8 +49,10 @@ import org.slf4j.LoggerFactory
 import org.wali.SerDe
 import org.wali.SerDeFactory
 import org.wali.SingletonSerDeFactory
+import org.wali.SyncListener
 
 import java.security.Security
+import java.util.concurrent.TimeUnit
 
 import static org.apache.nifi.security.kms.CryptoUtils.STATIC_KEY_PROVIDER_CLASS_NAME
 import static org.junit.Assert.assertNotNull
@@ -217,6 +219,39 @@ class EncryptedSequentialAccessWriteAheadLogTest extends GroovyTestCase {
         logger.debug("Re-enabled DEBUG logging")
     }
 
+    /** This test syncs each update through the group commit path of the encrypted WAL and then recovers the records */
+    @Test
+    void testShouldUpdateWithGroupCommit() {
+        // Arrange
+        final File storageDir = new File(new File("target"), testName.methodName)
+        deleteRecursively(storageDir)
+        assertTrue(storageDir.mkdirs())
+
+        final SerDeFactory<SerializedRepositoryRecord> serdeFactory = new SingletonSerDeFactory<>(buildEncryptedSerDe())
+        final EncryptedSequentialAccessWriteAheadLog<SerializedRepositoryRecord> repo = new EncryptedSequentialAccessWriteAheadLog<>(storageDir, serdeFactory,
+                SyncListener.NOP_SYNC_LISTENER, 1, TimeUnit.MILLISECONDS)
+        assert repo.recoverRecords().isEmpty()
+
+        final List<SerializedRepositoryRecord> records = new ArrayList<>()
+        10.times { int i ->
+            def attributes = [name: "User ${i}" as String, age: "${i}" as String]
+            records.add(buildCreateRecord(flowFileQueue, attributes))
+        }
+
+        // Act
+        records.each { repo.update([it], true) }
+        final SyncStatistics statistics = repo.getSyncStatistics()
+        repo.shutdown()
+
+        // Assert
+        assert statistics.syncedUpdateCount == records.size()
+        assert statistics.syncCount > 0
+
+        final Collection<SerializedRepositoryRecord> recovered = createRecoveryRepo().recoverRecords()
+        assert recovered.size() == records.size()
+        assert recovered.every { (it as SerializedRepositoryRecord).getFlowFileRecord() in records*.getFlowFileRecord() }
+    }
+
     private EncryptedSchemaRepositoryRecordSerde buildEncryptedSerDe(FlowFileRepositoryEncryptionConfiguration ffrec = flowFileREC) {
         final StandardRepositoryRecordSerdeFactory factory = new StandardRepositoryRecordSerdeFactory(claimManager)
         SchemaRepositoryRecordSerde wrappedSerDe = factory.createSerDe() as SchemaRepositoryRecordSerde
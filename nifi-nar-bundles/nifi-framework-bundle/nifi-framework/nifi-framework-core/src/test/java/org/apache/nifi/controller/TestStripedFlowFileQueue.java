@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller;
+
+import org.apache.nifi.controller.queue.DropFlowFileState;
+import org.apache.nifi.controller.queue.DropFlowFileStatus;
+import org.apache.nifi.controller.queue.NopConnectionEventListener;
+import org.apache.nifi.controller.queue.QueueSize;
+import org.apache.nifi.controller.queue.StripedFlowFileQueue;
+import org.apache.nifi.controller.repository.FlowFileRecord;
+import org.apache.nifi.controller.repository.FlowFileRepository;
+import org.apache.nifi.controller.repository.SwapSummary;
+import org.apache.nifi.controller.repository.claim.ResourceClaimManager;
+import org.apache.nifi.flowfile.FlowFilePrioritizer;
+import org.apache.nifi.processor.FlowFileFilter;
+import org.apache.nifi.provenance.ProvenanceEventRepository;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestStripedFlowFileQueue {
+    private static final int STRIPES = 4;
+
+    private MockSwapManager swapManager = null;
+    private StripedFlowFileQueue queue = null;
+
+    private FlowFileRepository flowFileRepo = null;
+    private ProvenanceEventRepository provRepo = null;
+    private ResourceClaimManager claimManager = null;
+    private ProcessScheduler scheduler = null;
+
+    @Before
+    public void setup() {
+        scheduler = Mockito.mock(ProcessScheduler.class);
+        swapManager = new MockSwapManager();
+
+        flowFileRepo = Mockito.mock(FlowFileRepository.class);
+        provRepo = Mockito.mock(ProvenanceEventRepository.class);
+        claimManager = Mockito.mock(ResourceClaimManager.class);
+        Mockito.when(provRepo.eventBuilder()).thenReturn(new StandardProvenanceEventRecord.Builder());
+
+        queue = createQueue(40000);
+        MockFlowFileRecord.resetIdGenerator();
+    }
+
+    private StripedFlowFileQueue createQueue(final int swapThreshold) {
+        return new StripedFlowFileQueue("id", new NopConnectionEventListener(), flowFileRepo, provRepo, claimManager, scheduler, swapManager, null, swapThreshold, STRIPES, 0L, "0 B");
+    }
+
+    @Test
+    public void testPutPollAcknowledge() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(new MockFlowFileRecord(10L));
+        }
+
+        assertEquals(new QueueSize(100, 1000L), queue.size());
+        assertFalse(queue.isEmpty());
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = new ArrayList<>();
+        FlowFileRecord flowFile;
+        while ((flowFile = queue.poll(expired)) != null) {
+            polled.add(flowFile);
+        }
+
+        assertEquals(100, polled.size());
+        assertTrue(expired.isEmpty());
+        assertTrue(queue.isActiveQueueEmpty());
+        assertFalse(queue.isEmpty());
+        assertTrue(queue.isUnacknowledgedFlowFile());
+        assertEquals(100, queue.getQueueDiagnostics().getLocalQueuePartitionDiagnostics().getUnacknowledgedQueueSize().getObjectCount());
+        assertEquals(new QueueSize(100, 1000L), queue.size());
+
+        queue.acknowledge(polled);
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.isUnacknowledgedFlowFile());
+        assertEquals(new QueueSize(0, 0L), queue.size());
+    }
+
+    @Test
+    public void testPollMaxResultsSpansStripes() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(new MockFlowFileRecord());
+        }
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        final List<FlowFileRecord> polled = queue.poll(80, expired);
+        assertEquals(80, polled.size());
+        assertEquals(20, queue.getQueueDiagnostics().getLocalQueuePartitionDiagnostics().getActiveQueueSize().getObjectCount());
+
+        assertEquals(20, queue.poll(1000, expired).size());
+        assertTrue(queue.isActiveQueueEmpty());
+    }
+
+    @Test
+    public void testExpiredRecordsCountedPerStripe() throws InterruptedException {
+        queue.setFlowFileExpiration("1 ms");
+        for (int i = 0; i < 100; i++) {
+            queue.put(new MockFlowFileRecord());
+        }
+
+        Thread.sleep(50L);
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        assertTrue(queue.poll(100, expired).isEmpty());
+        assertEquals(100, expired.size());
+        assertEquals(0, queue.size().getObjectCount());
+        assertFalse(queue.isUnacknowledgedFlowFile());
+    }
+
+    @Test
+    public void testFilterTerminationStopsAtFirstStripe() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(new MockFlowFileRecord());
+        }
+
+        final AtomicInteger accepted = new AtomicInteger(0);
+        final FlowFileFilter filter = flowFile -> accepted.incrementAndGet() < 3 ? FlowFileFilter.FlowFileFilterResult.ACCEPT_AND_CONTINUE
+            : FlowFileFilter.FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+
+        final List<FlowFileRecord> polled = queue.poll(filter, new HashSet<>());
+        assertEquals(3, polled.size());
+        assertEquals(97, queue.getQueueDiagnostics().getLocalQueuePartitionDiagnostics().getActiveQueueSize().getObjectCount());
+    }
+
+    @Test
+    public void testPrioritizersConsolidateStripes() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(new MockFlowFileRecord(i));
+        }
+
+        final FlowFilePrioritizer largestFirst = (o1, o2) -> Long.compare(o2.getSize(), o1.getSize());
+        queue.setPriorities(Collections.singletonList(largestFirst));
+
+        final Set<FlowFileRecord> expired = new HashSet<>();
+        for (int i = 99; i >= 0; i--) {
+            final FlowFileRecord flowFile = queue.poll(expired);
+            assertNotNull(flowFile);
+            assertEquals(i, flowFile.getSize());
+        }
+
+        assertNull(queue.poll(expired));
+    }
+
+    @Test
+    public void testSwapOutAndRecoverForeignSwapFiles() {
+        queue = createQueue(4000);
+
+        for (int i = 0; i < 80000; i++) {
+            queue.put(new MockFlowFileRecord());
+        }
+
+        assertEquals(80000, queue.size().getObjectCount());
+        assertTrue(swapManager.swappedOut.size() >= STRIPES);
+        assertTrue(swapManager.swappedOut.keySet().stream().allMatch(location -> location.contains(".stripe-")));
+
+        // Simulate a swap file written by an unstriped queue.
+        final List<FlowFileRecord> unstriped = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            unstriped.add(new MockFlowFileRecord());
+        }
+        swapManager.swappedOut.put("unstriped.null", unstriped);
+
+        final int swapFiles = swapManager.swappedOut.size();
+        final StripedFlowFileQueue recovered = createQueue(4000);
+        final SwapSummary summary = recovered.recoverSwappedFlowFiles();
+        assertEquals(swapFiles, recovered.getQueueDiagnostics().getLocalQueuePartitionDiagnostics().getSwapFileCount());
+        assertEquals(summary.getQueueSize(), recovered.size());
+        assertFalse(swapManager.swappedOut.containsKey("unstriped.null"));
+    }
+
+    @Test
+    public void testDropFlowFiles() throws InterruptedException {
+        queue = createQueue(4000);
+        for (int i = 0; i < 50000; i++) {
+            queue.put(new MockFlowFileRecord());
+        }
+
+        final DropFlowFileStatus status = queue.dropFlowFiles("1", "Unit Test");
+        while (status.getState() != DropFlowFileState.COMPLETE) {
+            assertTrue(status.getState() != DropFlowFileState.FAILURE);
+            Thread.sleep(10L);
+        }
+
+        assertEquals(50000, status.getDroppedSize().getObjectCount());
+        assertTrue(queue.isEmpty());
+        assertTrue(swapManager.swappedOut.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int producers = 8;
+        final int perProducer = 5000;
+        final ExecutorService executor = Executors.newFixedThreadPool(producers * 2);
+        final AtomicInteger consumed = new AtomicInteger(0);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < producers; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < perProducer; j++) {
+                        queue.put(new MockFlowFileRecord());
+                    }
+                }));
+
+                futures.add(executor.submit(() -> {
+                    final Set<FlowFileRecord> expired = new HashSet<>();
+                    while (consumed.get() < producers * perProducer) {
+                        final List<FlowFileRecord> polled = queue.poll(100, expired);
+                        if (polled.isEmpty()) {
+                            Thread.yield();
+                            continue;
+                        }
+
+                        queue.acknowledge(polled);
+                        consumed.addAndGet(polled.size());
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get(20, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(producers * perProducer, consumed.get());
+        assertTrue(queue.isEmpty());
+        assertEquals(new QueueSize(0, 0L), queue.size());
+    }
+}
@@ -104,8 +104,8 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 public class LoadBalancedQueueIT {
-    private final LoadBalanceAuthorizer ALWAYS_AUTHORIZED = (sslSocket) -> sslSocket == null ? null : "authorized.mydomain.com";
-    private final LoadBalanceAuthorizer NEVER_AUTHORIZED = (sslSocket) -> {
+    private final LoadBalanceAuthorizer ALWAYS_AUTHORIZED = (sslSession, peerHostname) -> sslSession == null ? null : "authorized.mydomain.com";
+    private final LoadBalanceAuthorizer NEVER_AUTHORIZED = (sslSession, peerHostname) -> {
         throw new NotAuthorizedException("Intentional Unit Test Failure - Not Authorized");
     };
 
@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.controller.queue.clustered.server;
+
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.security.util.CertificateUtils;
+import org.apache.nifi.security.util.TlsConfiguration;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TestConnectionLoadBalanceServer {
+    private final RecordingProtocol protocol = new RecordingProtocol();
+    private ConnectionLoadBalanceServer server;
+
+    @After
+    public void cleanup() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testManyPeersServicedByFewThreads() throws IOException, InterruptedException {
+        server = startServer(null, 2);
+
+        final List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 10; i++) {
+                sockets.add(new Socket("localhost", server.getPort()));
+            }
+
+            for (int transaction = 0; transaction < 5; transaction++) {
+                for (final Socket socket : sockets) {
+                    sendTransaction(socket, new byte[100]);
+                }
+                for (final Socket socket : sockets) {
+                    assertEquals(1, socket.getInputStream().read());
+                }
+            }
+        } finally {
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        assertEquals(50, protocol.transactions.size());
+        assertTrue("Expected at most 2 threads but used " + protocol.threads, protocol.threads.size() <= 2);
+
+        waitForTransactions(50);
+        final ConnectionLoadBalanceServer.ReceiveRate rate = server.getReceiveRate();
+        assertEquals(50 / 300.0D, rate.getFlowFilesPerSecond(), 0.0001D);
+        assertEquals(50 * 104 / 300.0D, rate.getBytesPerSecond(), 0.0001D);
+    }
+
+    @Test(timeout = 20000)
+    public void testPeerWithBufferedDataDoesNotStarveOtherPeers() throws IOException {
+        server = startServer(null, 1);
+
+        try (final Socket busy = new Socket("localhost", server.getPort());
+             final Socket quiet = new Socket("localhost", server.getPort())) {
+
+            // Send all of the busy peer's transactions at once so that they are buffered by the server
+            final DataOutputStream busyOut = new DataOutputStream(busy.getOutputStream());
+            for (int i = 0; i < 50; i++) {
+                busyOut.writeInt(1);
+                busyOut.write('B');
+            }
+            busyOut.flush();
+            assertEquals(1, busy.getInputStream().read());
+
+            sendTransaction(quiet, new byte[] {'Q'});
+            assertEquals(1, quiet.getInputStream().read());
+
+            for (int i = 1; i < 50; i++) {
+                assertEquals(1, busy.getInputStream().read());
+            }
+        }
+
+        final int quietIndex = protocol.transactions.indexOf("Q");
+        assertTrue(quietIndex > 0);
+        assertTrue("Quiet peer was serviced only after the busy peer finished", quietIndex < protocol.transactions.size() - 1);
+    }
+
+    @Test(timeout = 20000)
+    public void testReceiveRatesByNode() throws IOException, InterruptedException {
+        server = startServer(null, 2);
+
+        // Connections from the same node are tracked together, and the node's rate is retained after it disconnects
+        try (final Socket first = new Socket("localhost", server.getPort())) {
+            sendTransaction(first, new byte[10]);
+            assertEquals(1, first.getInputStream().read());
+        }
+        try (final Socket second = new Socket("localhost", server.getPort())) {
+            sendTransaction(second, new byte[20]);
+            assertEquals(1, second.getInputStream().read());
+        }
+
+        waitForTransactions(2);
+        final Map<String, ConnectionLoadBalanceServer.ReceiveRate> rates = server.getReceiveRatesByNode();
+        assertEquals(1, rates.size());
+
+        final ConnectionLoadBalanceServer.ReceiveRate rate = rates.values().iterator().next();
+        assertEquals(2 / 300.0D, rate.getFlowFilesPerSecond(), 0.0001D);
+        assertEquals((14 + 24) / 300.0D, rate.getBytesPerSecond(), 0.0001D);
+    }
+
+    @Test(timeout = 20000)
+    public void testSecureConnection() throws Exception {
+        final SSLContext sslContext = createSslContext();
+        server = startServer(sslContext, 1);
+
+        try (final Socket socket = sslContext.getSocketFactory().createSocket("localhost", server.getPort())) {
+            // Send enough data that it spans several TLS records
+            final byte[] data = new byte[100_000];
+            for (int transaction = 0; transaction < 3; transaction++) {
+                sendTransaction(socket, data);
+                assertEquals(1, socket.getInputStream().read());
+            }
+        }
+
+        assertEquals(3, protocol.transactions.size());
+        assertNotNull(protocol.sslSession);
+        waitForTransactions(3);
+        assertEquals(3.0D * 100_004 / 300.0D, server.getReceiveRate().getBytesPerSecond(), 0.0001D);
+    }
+
+    // The response to a transaction is sent before the server records the transaction
+    private void waitForTransactions(final int count) throws InterruptedException {
+        while (server.getReceiveRate().getFlowFilesPerSecond() < count / 300.0D - 0.0001D) {
+            Thread.sleep(10L);
+        }
+    }
+
+    private SSLContext createSslContext() throws Exception {
+        final KeyPair keyPair = KeyPairGenerator.getInstance("RSA").generateKeyPair();
+        final X509Certificate certificate = CertificateUtils.generateSelfSignedX509Certificate(keyPair, "CN=localhost", "SHA256withRSA", 1);
+        final char[] password = "password".toCharArray();
+
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("localhost", keyPair.getPrivate(), password, new Certificate[] {certificate});
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+
+        final KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("localhost", certificate);
+        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+
+        final SSLContext sslContext = SSLContext.getInstance(TlsConfiguration.getHighestCurrentSupportedTlsProtocolVersion());
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+
+    private ConnectionLoadBalanceServer startServer(final SSLContext sslContext, final int numThreads) throws IOException {
+        final ConnectionLoadBalanceServer server = new ConnectionLoadBalanceServer("localhost", 0, sslContext, numThreads, protocol, mock(EventReporter.class), 5000);
+        server.start();
+        return server;
+    }
+
+    private void sendTransaction(final Socket socket, final byte[] data) throws IOException {
+        final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(data.length);
+        out.write(data);
+        out.flush();
+    }
+
+    /**
+     * Receives transactions consisting of a length-prefixed payload and acknowledges each one with a single byte
+     */
+    private static class RecordingProtocol implements LoadBalanceProtocol {
+        private final List<String> transactions = Collections.synchronizedList(new ArrayList<>());
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        private volatile SSLSession sslSession;
+
+        @Override
+        public int receiveFlowFiles(final String peerHostname, final SSLSession sslSession, final InputStream in, final OutputStream out) throws IOException {
+            final DataInputStream dataIn = new DataInputStream(in);
+            final byte[] data;
+            try {
+                data = new byte[dataIn.readInt()];
+            } catch (final EOFException eof) {
+                return -1;
+            }
+
+            dataIn.readFully(data);
+            if (data.length == 1 && data[0] == 'B') {
+                // Make the busy peer's transactions slow enough that the quiet peer's transaction arrives while they are still being received
+                try {
+                    Thread.sleep(20L);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            this.sslSession = sslSession;
+            threads.add(Thread.currentThread().getName());
+            transactions.add(data.length == 1 ? String.valueOf((char) data[0]) : String.valueOf(data.length));
+
+            out.write(1);
+            out.flush();
+            return 1;
+        }
+    }
+}
@@ -2152,6 +2152,46 @@ public class StandardProcessSessionIT {
         assertEquals(new String(buffer), "hello, world");
     }
 
+    @Test
+    public void testWriteToOutputStreamThenAppendAndOverwrite() throws IOException {
+        FlowFile first = session.create();
+        try (final OutputStream out = session.write(first)) {
+            out.write("Hello".getBytes());
+        }
+        // Obtain the most recent version of the FlowFile, which was updated when the stream was closed
+        first = session.putAttribute(first, "written", "true");
+        first = session.append(first, out -> out.write(", World".getBytes()));
+
+        // Writing another FlowFile in between must not change the content that is appended to
+        FlowFile second = session.create();
+        try (final OutputStream out = session.write(second)) {
+            out.write("Other".getBytes());
+        }
+        first = session.append(first, out -> out.write("!".getBytes()));
+        second = session.putAttribute(second, "written", "true");
+
+        assertEquals("Hello, World!", readContent(first));
+        assertEquals("Other", readContent(second));
+
+        try (final OutputStream out = session.write(first)) {
+            out.write("Goodbye".getBytes());
+        }
+        first = session.putAttribute(first, "written", "true");
+        first = session.append(first, out -> out.write(", World".getBytes()));
+
+        assertEquals("Goodbye, World", readContent(first));
+        assertEquals("Other", readContent(second));
+    }
+
+    private String readContent(final FlowFile flowFile) throws IOException {
+        final byte[] buffer = new byte[(int) flowFile.getSize()];
+        try (final InputStream in = session.read(flowFile)) {
+            StreamUtils.fillBuffer(in, buffer);
+        }
+
+        return new String(buffer);
+    }
+
     @Test
     public void testWriteToOutputStreamWhileReading() throws IOException {
         final ContentClaim claim = contentRepo.create(false);
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.controller.repository.util.DiskUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestArchiveManifest {
+    private final File directory = new File("target/archive-manifest/archive");
+
+    @Before
+    public void setup() {
+        if (directory.exists()) {
+            DiskUtils.deleteRecursively(directory);
+        }
+        assertTrue(directory.mkdirs());
+    }
+
+    @Test
+    public void testAppendThenLoad() throws IOException {
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+        assertFalse(manifest.load());
+        assertEquals(-1L, manifest.getOldestArchiveTime());
+
+        manifest.append("claim-1", 10, 1000L);
+        manifest.append("claim-2", 20, 2000L);
+        assertEquals(1000L, manifest.getOldestArchiveTime());
+
+        final ArchiveManifest reloaded = new ArchiveManifest(directory.toPath());
+        assertTrue(reloaded.load());
+        assertEquals(2, reloaded.getEntryCount());
+        assertEquals(1000L, reloaded.getOldestArchiveTime());
+    }
+
+    @Test
+    public void testExpireDeletesOnlyOlderFiles() throws IOException {
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+        for (int i = 1; i <= 3; i++) {
+            createFile("claim-" + i, i * 10);
+            manifest.append("claim-" + i, i * 10, i * 1000L);
+        }
+
+        final ArchiveManifest.Expiration expiration = manifest.expire(2500L);
+        assertEquals(2, expiration.getFilesDeleted());
+        assertEquals(30, expiration.getBytesDeleted());
+        assertFalse(new File(directory, "claim-1").exists());
+        assertFalse(new File(directory, "claim-2").exists());
+        assertTrue(new File(directory, "claim-3").exists());
+        assertEquals(3000L, manifest.getOldestArchiveTime());
+        assertEquals(1, manifest.getEntryCount());
+
+        // Nothing is archived before the oldest entry, so the manifest does not need to be read
+        assertEquals(0, manifest.expire(3000L).getFilesDeleted());
+
+        // The removed entries are not read again after a restart
+        final ArchiveManifest reloaded = new ArchiveManifest(directory.toPath());
+        assertTrue(reloaded.load());
+        assertEquals(1, reloaded.getEntryCount());
+        assertEquals(3000L, reloaded.getOldestArchiveTime());
+
+        assertEquals(1, reloaded.expire(Long.MAX_VALUE).getFilesDeleted());
+        assertEquals(-1L, reloaded.getOldestArchiveTime());
+        assertEquals(0, reloaded.getEntryCount());
+        assertFalse(new File(directory, "claim-3").exists());
+
+        // Once every entry is removed, new entries are written to an empty manifest
+        reloaded.append("claim-4", 40, 4000L);
+        assertEquals(4000L, reloaded.getOldestArchiveTime());
+        assertEquals(1, reloaded.getEntryCount());
+    }
+
+    @Test
+    public void testExpireIgnoresMissingFiles() throws IOException {
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+
+        // An entry whose file was never moved into the archive directory
+        manifest.append("claim-1", 10, 1000L);
+        createFile("claim-2", 20);
+        manifest.append("claim-2", 20, 2000L);
+
+        final ArchiveManifest.Expiration expiration = manifest.expire(Long.MAX_VALUE);
+        assertEquals(1, expiration.getFilesDeleted());
+        assertEquals(20, expiration.getBytesDeleted());
+        assertEquals(0, manifest.getEntryCount());
+    }
+
+    @Test
+    public void testExpireRetainsFilesThatCannotBeDeleted() throws IOException {
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+
+        // A non-empty directory cannot be deleted, so the second entry's deletion fails
+        createFile("claim-1", 10);
+        manifest.append("claim-1", 10, 1000L);
+        final File undeletable = new File(directory, "claim-2");
+        assertTrue(undeletable.mkdir());
+        Files.write(new File(undeletable, "child").toPath(), new byte[20]);
+        manifest.append("claim-2", 20, 2000L);
+        createFile("claim-3", 30);
+        manifest.append("claim-3", 30, 3000L);
+        createFile("claim-4", 40);
+        manifest.append("claim-4", 40, 4000L);
+
+        final ArchiveManifest.Expiration expiration = manifest.expire(3500L);
+        assertEquals(2, expiration.getFilesDeleted());
+        assertEquals(40, expiration.getBytesDeleted());
+        assertEquals(2000L, manifest.getOldestArchiveTime());
+        assertEquals(2, manifest.getEntryCount());
+
+        // The retained entry precedes the entries that were not yet expired, including after a restart
+        final ArchiveManifest reloaded = new ArchiveManifest(directory.toPath());
+        assertTrue(reloaded.load());
+        assertEquals(2, reloaded.getEntryCount());
+        assertEquals(2000L, reloaded.getOldestArchiveTime());
+
+        assertEquals(0, reloaded.expire(3500L).getFilesDeleted());
+        assertEquals(2000L, reloaded.getOldestArchiveTime());
+
+        // Once the file can be deleted, the next expiration deletes it
+        DiskUtils.deleteRecursively(new File(undeletable, "child"));
+        assertEquals(1, reloaded.expire(3500L).getFilesDeleted());
+        assertFalse(undeletable.exists());
+        assertEquals(4000L, reloaded.getOldestArchiveTime());
+        assertEquals(1, reloaded.getEntryCount());
+    }
+
+    @Test
+    public void testRebuildOrdersByLastModifiedTime() throws IOException {
+        createFile("claim-1", 10);
+        createFile("claim-2", 20);
+        createFile("claim-3", 30);
+        Files.setLastModifiedTime(new File(directory, "claim-1").toPath(), FileTime.fromMillis(3000L));
+        Files.setLastModifiedTime(new File(directory, "claim-2").toPath(), FileTime.fromMillis(1000L));
+        Files.setLastModifiedTime(new File(directory, "claim-3").toPath(), FileTime.fromMillis(2000L));
+
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+        assertFalse(manifest.load());
+        manifest.rebuild();
+        assertEquals(3, manifest.getEntryCount());
+        assertEquals(1000L, manifest.getOldestArchiveTime());
+
+        final ArchiveManifest.Expiration expiration = manifest.expire(2500L);
+        assertEquals(2, expiration.getFilesDeleted());
+        assertTrue(new File(directory, "claim-1").exists());
+        assertEquals(3000L, manifest.getOldestArchiveTime());
+    }
+
+    @Test
+    public void testInvalidManifest() throws IOException {
+        Files.write(new File(directory, ArchiveManifest.FILENAME).toPath(), "not a manifest".getBytes(StandardCharsets.UTF_8));
+
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+        try {
+            manifest.load();
+            fail("Expected IOException for invalid manifest");
+        } catch (final IOException expected) {
+        }
+
+        // Rebuilding the manifest replaces the invalid one
+        createFile("claim-1", 10);
+        manifest.rebuild();
+        assertTrue(manifest.load());
+        assertEquals(1, manifest.getEntryCount());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        final ArchiveManifest manifest = new ArchiveManifest(directory.toPath());
+        final Path manifestPath = new File(directory, ArchiveManifest.FILENAME).toPath();
+
+        final int entryCount = 100_000;
+        for (int i = 0; i < entryCount; i++) {
+            manifest.append("claim-" + i, 1, i);
+        }
+        final long fullLength = Files.size(manifestPath);
+
+        // Once most of the manifest has been removed, the remaining entries are moved to the start of the file
+        manifest.expire(entryCount * 3 / 4);
+        assertTrue(Files.size(manifestPath) < fullLength / 2);
+        assertEquals(entryCount / 4, manifest.getEntryCount());
+
+        final ArchiveManifest reloaded = new ArchiveManifest(directory.toPath());
+        assertTrue(reloaded.load());
+        assertEquals(entryCount / 4, reloaded.getEntryCount());
+        assertEquals(entryCount * 3 / 4, reloaded.getOldestArchiveTime());
+    }
+
+    private void createFile(final String name, final int size) throws IOException {
+        Files.write(new File(directory, name).toPath(), new byte[size]);
+    }
+}
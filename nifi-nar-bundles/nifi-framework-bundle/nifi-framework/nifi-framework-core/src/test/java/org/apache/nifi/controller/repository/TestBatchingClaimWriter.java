@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.controller.repository.util.DiskUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBatchingClaimWriter {
+    private final File directory = new File("target/batching-claim-writer");
+    private BatchingClaimWriter writer;
+
+    @Before
+    public void setup() {
+        if (directory.exists()) {
+            DiskUtils.deleteRecursively(directory);
+        }
+        assertTrue(directory.mkdirs());
+
+        writer = new BatchingClaimWriter("default", 16);
+    }
+
+    @After
+    public void cleanup() {
+        writer.shutdown();
+    }
+
+    @Test(timeout = 10000)
+    public void testBytesAppendedInOrder() throws IOException {
+        final File file = new File(directory, "claim");
+        Files.write(file.toPath(), "existing-".getBytes(StandardCharsets.UTF_8));
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write("existing-".getBytes(StandardCharsets.UTF_8));
+
+        try (final BatchingClaimWriter.ClaimOutputStream out = writer.open(file)) {
+            for (int i = 0; i < 20; i++) {
+                // Alternate between writes that are smaller and larger than the buffer
+                final byte[] bytes = (i % 2 == 0 ? "small-" + i : "a larger write that spans several buffers-" + i).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                expected.write(bytes);
+
+                out.write('|');
+                expected.write('|');
+            }
+        }
+
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+        assertEquals(expected.size() - "existing-".length(), writer.getBytesWritten());
+    }
+
+    @Test(timeout = 10000)
+    public void testSubmittedBytesReadableOnceWritten() throws IOException {
+        final File file = new File(directory, "claim");
+
+        try (final BatchingClaimWriter.ClaimOutputStream out = writer.open(file)) {
+            out.write("hello".getBytes(StandardCharsets.UTF_8));
+            assertEquals(0, file.length());
+
+            out.await(out.submit(false));
+            assertEquals("hello", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+            out.write(" world".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("hello world", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testQueuedSyncsCoalesced() throws IOException {
+        final File file = new File(directory, "claim");
+
+        try (final BatchingClaimWriter.ClaimOutputStream out = writer.open(file)) {
+            final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            // Hold the writer's lock so that the requests queue up behind any request that the writer thread has already taken.
+            synchronized (writer) {
+                for (int i = 0; i < 5; i++) {
+                    out.write(("claim-" + i).getBytes(StandardCharsets.UTF_8));
+                    futures.add(out.submit(true));
+                }
+            }
+
+            for (final CompletableFuture<Void> future : futures) {
+                out.await(future);
+            }
+        }
+
+        assertEquals("claim-0claim-1claim-2claim-3claim-4", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals(5, writer.getSyncRequestCount());
+        assertTrue("Expected syncs to be coalesced but performed " + writer.getSyncCount(), writer.getSyncCount() <= 2);
+    }
+
+    @Test(timeout = 10000)
+    public void testFailedWriteReportedAndStreamNoLongerWritable() throws IOException {
+        final File file = new File(directory, "claim");
+
+        final BatchingClaimWriter.ClaimOutputStream out = writer.open(file);
+        out.getChannel().close();
+
+        out.write("hello".getBytes(StandardCharsets.UTF_8));
+        try {
+            out.flush();
+            fail("Expected flush to fail because the channel is closed");
+        } catch (final IOException expected) {
+        }
+
+        try {
+            out.write("world".getBytes(StandardCharsets.UTF_8));
+            fail("Expected write to fail because a previous write failed");
+        } catch (final IOException expected) {
+        }
+
+        out.close();
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteAfterShutdown() throws IOException {
+        final File file = new File(directory, "claim");
+
+        writer.shutdown();
+        try (final BatchingClaimWriter.ClaimOutputStream out = writer.open(file)) {
+            out.write("written inline".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals("written inline", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
@@ -569,6 +569,203 @@ public class TestFileSystemRepository {
         assertTrue(Arrays.equals(data, Files.readAllBytes(path)));
     }
 
+    @Test
+    public void testBatchedWriteMode() throws IOException {
+        // We are going to construct our own repository using different properties, so
+        // we need to shutdown the existing one.
+        shutdown();
+
+        final Map<String, String> addProps = new HashMap<>();
+        addProps.put(NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE, NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE_BATCHED);
+        addProps.put(NiFiProperties.CONTENT_REPOSITORY_WRITE_BUFFER_SIZE, "1 KB");
+        addProps.put("nifi.content.repository.always.sync", "true");
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(TestFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), addProps);
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        final List<ContentClaim> claims = new ArrayList<>();
+        final List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final ContentClaim claim = repository.create(false);
+            final byte[] data = String.join("", Collections.nCopies(i * 100 + 1, String.valueOf(i))).getBytes(StandardCharsets.UTF_8);
+            try (final OutputStream out = repository.write(claim)) {
+                out.write(data);
+            }
+
+            claims.add(claim);
+            contents.add(data);
+        }
+
+        // The claims share a Resource Claim, and the content of each must be readable as soon as its stream is closed.
+        assertEquals(claims.get(0).getResourceClaim(), claims.get(9).getResourceClaim());
+        for (int i = 0; i < claims.size(); i++) {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            repository.exportTo(claims.get(i), baos);
+            assertArrayEquals(contents.get(i), baos.toByteArray());
+        }
+    }
+
+    @Test
+    public void testMappedReadMode() throws IOException {
+        // We are going to construct our own repository using different properties, so
+        // we need to shutdown the existing one.
+        shutdown();
+
+        final Map<String, String> addProps = new HashMap<>();
+        addProps.put(NiFiProperties.CONTENT_REPOSITORY_READ_MODE, NiFiProperties.CONTENT_REPOSITORY_READ_MODE_MAPPED);
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(TestFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), addProps);
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        final ContentClaim smallClaim = repository.create(false);
+        try (final OutputStream out = repository.write(smallClaim)) {
+            out.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // The Resource Claim is still writable, so it must not be mapped
+        assertEquals("hello", new String(readFully(smallClaim), StandardCharsets.UTF_8));
+        assertEquals(0, repository.getMappedClaimCache().getSegmentCount());
+
+        // Fill the Resource Claim so that it is no longer writable
+        final ContentClaim largeClaim = repository.create(false);
+        assertEquals(smallClaim.getResourceClaim(), largeClaim.getResourceClaim());
+        final byte[] largeContent = new byte[DataUnit.parseDataSize(nifiProperties.getMaxAppendableClaimSize(), DataUnit.B).intValue()];
+        new Random().nextBytes(largeContent);
+        try (final OutputStream out = repository.write(largeClaim)) {
+            out.write(largeContent);
+        }
+
+        assertEquals("hello", new String(readFully(smallClaim), StandardCharsets.UTF_8));
+        assertArrayEquals(largeContent, readFully(largeClaim));
+        assertEquals(1, repository.getMappedClaimCache().getSegmentCount());
+
+        repository.decrementClaimantCount(smallClaim);
+        repository.decrementClaimantCount(largeClaim);
+        assertTrue(repository.remove(largeClaim));
+        assertEquals(0, repository.getMappedClaimCache().getSegmentCount());
+    }
+
+    @Test
+    public void testIndexedArchiveCleanupMode() throws IOException {
+        shutdown();
+
+        final Map<String, String> addProps = new HashMap<>();
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "true");
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "99%");
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE, NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE_INDEXED);
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(TestFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), addProps);
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        final ContentClaim claim = repository.create(false);
+        final byte[] content = new byte[DataUnit.parseDataSize(nifiProperties.getMaxAppendableClaimSize(), DataUnit.B).intValue()];
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(content);
+        }
+
+        repository.decrementClaimantCount(claim);
+        final long archiveTime = System.currentTimeMillis();
+        assertTrue(repository.archive(claim.getResourceClaim()));
+
+        final Path archivePath = FileSystemRepository.getArchivePath(getPath(claim));
+        assertTrue(Files.exists(archivePath));
+
+        // The archived file is recorded in the section's manifest, so it is found after a restart without scanning the archive directory
+        repository.shutdown();
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+
+        final ArchiveManifest manifest = new ArchiveManifest(archivePath.getParent());
+        assertTrue(manifest.load());
+        assertEquals(1, manifest.getEntryCount());
+        assertTrue(manifest.getOldestArchiveTime() >= archiveTime);
+
+        final ArchiveManifest.Expiration expiration = manifest.expire(System.currentTimeMillis() + 1);
+        assertEquals(1, expiration.getFilesDeleted());
+        assertEquals(content.length, expiration.getBytesDeleted());
+        assertFalse(Files.exists(archivePath));
+    }
+
+    @Test(timeout = 30000)
+    public void testIndexedArchiveCleanupEndsWhenArchivedFileCannotBeDeleted() throws IOException {
+        shutdown();
+
+        // The archive is always over its limit, and the scheduled cleanup is not expected to run during the test
+        final Map<String, String> addProps = new HashMap<>();
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "true");
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "2%");
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_FREQUENCY, "1 hour");
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE, NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE_INDEXED);
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(TestFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), addProps);
+        repository = new FileSystemRepository(localProps);
+        repository.initialize(new StandardResourceClaimManager());
+        repository.purge();
+
+        final ContentClaim claim = repository.create(false);
+        final byte[] content = new byte[DataUnit.parseDataSize(nifiProperties.getMaxAppendableClaimSize(), DataUnit.B).intValue()];
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(content);
+        }
+
+        repository.decrementClaimantCount(claim);
+        assertTrue(repository.archive(claim.getResourceClaim()));
+
+        // Replace the archived file with a non-empty directory, which cannot be deleted
+        final Path archivePath = FileSystemRepository.getArchivePath(getPath(claim));
+        Files.delete(archivePath);
+        Files.createDirectory(archivePath);
+        Files.write(archivePath.resolve("child"), content);
+
+        repository.destroyExpiredArchivesFromManifests("default");
+        assertTrue(Files.exists(archivePath));
+
+        // The entry is kept, so the file is deleted by a later cleanup once it can be
+        Files.delete(archivePath.resolve("child"));
+        repository.destroyExpiredArchivesFromManifests("default");
+        assertFalse(Files.exists(archivePath));
+    }
+
+    @Test
+    public void testInvalidArchiveCleanupMode() throws IOException {
+        shutdown();
+
+        final Map<String, String> addProps = new HashMap<>();
+        addProps.put(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_MODE, "bogus");
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(TestFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), addProps);
+        try {
+            repository = new FileSystemRepository(localProps);
+            Assert.fail("Expected IllegalArgumentException for invalid archive cleanup mode");
+        } catch (final IllegalArgumentException expected) {
+            repository = new FileSystemRepository(nifiProperties);
+        }
+    }
+
+    private byte[] readFully(final ContentClaim claim) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final InputStream in = repository.read(claim)) {
+            StreamUtils.copy(in, baos);
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    public void testInvalidWriteMode() throws IOException {
+        shutdown();
+
+        final Map<String, String> addProps = new HashMap<>();
+        addProps.put(NiFiProperties.CONTENT_REPOSITORY_WRITE_MODE, "bogus");
+        final NiFiProperties localProps = NiFiProperties.createBasicNiFiProperties(TestFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), addProps);
+        try {
+            repository = new FileSystemRepository(localProps);
+            Assert.fail("Expected IllegalArgumentException for invalid write mode");
+        } catch (final IllegalArgumentException expected) {
+            repository = new FileSystemRepository(nifiProperties);
+        }
+    }
+
     @Test
     public void testRemoveWhileWritingToClaim() throws IOException {
         final ContentClaim claim = repository.create(false);
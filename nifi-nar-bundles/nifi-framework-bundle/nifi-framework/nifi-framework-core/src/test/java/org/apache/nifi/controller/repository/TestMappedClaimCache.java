@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.nifi.controller.repository.claim.ResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.controller.repository.util.DiskUtils;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestMappedClaimCache {
+    private final File directory = new File("target/mapped-claim-cache");
+    private final StandardResourceClaimManager claimManager = new StandardResourceClaimManager();
+    private final byte[] content = new byte[200];
+
+    @Before
+    public void setup() {
+        if (directory.exists()) {
+            DiskUtils.deleteRecursively(directory);
+        }
+        assertTrue(directory.mkdirs());
+
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+    }
+
+    @Test
+    public void testReadAcrossSegments() throws IOException {
+        final Path path = createFile("claim-1");
+        final ResourceClaim resourceClaim = createResourceClaim("claim-1");
+        final MappedClaimCache cache = new MappedClaimCache(1024, 64);
+
+        assertArrayEquals(Arrays.copyOfRange(content, 50, 120), readFully(cache.read(resourceClaim, path, 50, 70)));
+        assertEquals(2, cache.getSegmentCount());
+        assertEquals(128, cache.getMappedBytes());
+
+        // The first segment is already mapped
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), readFully(cache.read(resourceClaim, path, 0, 10)));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testSingleByteReadsSkipAndMark() throws IOException {
+        final Path path = createFile("claim-1");
+        final ResourceClaim resourceClaim = createResourceClaim("claim-1");
+        final MappedClaimCache cache = new MappedClaimCache(1024, 64);
+
+        try (final InputStream in = cache.read(resourceClaim, path, 60, 10)) {
+            assertEquals(10, in.available());
+            assertEquals(60, in.read());
+            in.mark(10);
+            assertEquals(4, in.skip(4));
+            assertEquals(65, in.read());
+            in.reset();
+            assertEquals(61, in.read());
+            assertEquals(8, in.skip(100));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testReadBeyondEndOfFile() throws IOException {
+        final Path path = createFile("claim-1");
+        final ResourceClaim resourceClaim = createResourceClaim("claim-1");
+        final MappedClaimCache cache = new MappedClaimCache(1024, 64);
+
+        // The range is truncated at the end of the file
+        assertArrayEquals(Arrays.copyOfRange(content, 190, 200), readFully(cache.read(resourceClaim, path, 190, 100)));
+
+        // An empty claim at the very end of the file is readable but the file does not contain an offset past its end
+        assertEquals(0, readFully(cache.read(resourceClaim, path, 200, 0)).length);
+        assertNull(cache.read(resourceClaim, path, 201, 1));
+    }
+
+    @Test
+    public void testSegmentOfIncompleteFileNotUsedBeyondFileSize() throws IOException {
+        final Path path = new File(directory, "claim-1").toPath();
+        Files.write(path, Arrays.copyOfRange(content, 0, 100));
+        final ResourceClaim resourceClaim = createResourceClaim("claim-1");
+        final MappedClaimCache cache = new MappedClaimCache(1024, 64);
+
+        // The first segment is cached while the file holds only 100 bytes
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), readFully(cache.read(resourceClaim, path, 0, 10)));
+        assertEquals(1, cache.getSegmentCount());
+
+        // A range that extends beyond the end of the file is read but its segments are not cached
+        assertArrayEquals(Arrays.copyOfRange(content, 50, 100), readFully(cache.read(resourceClaim, path, 50, 100)));
+        assertEquals(0, cache.getSegmentCount());
+        assertEquals(0, cache.getMappedBytes());
+
+        // Once the rest of the file has been written, the segments are mapped again and cached
+        Files.write(path, content);
+        assertArrayEquals(Arrays.copyOfRange(content, 50, 150), readFully(cache.read(resourceClaim, path, 50, 100)));
+        assertEquals(3, cache.getSegmentCount());
+        assertEquals(192, cache.getMappedBytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSegmentsEvicted() throws IOException {
+        final Path path1 = createFile("claim-1");
+        final Path path2 = createFile("claim-2");
+        final ResourceClaim resourceClaim1 = createResourceClaim("claim-1");
+        final ResourceClaim resourceClaim2 = createResourceClaim("claim-2");
+        final MappedClaimCache cache = new MappedClaimCache(128, 64);
+
+        readFully(cache.read(resourceClaim1, path1, 0, 10));
+        readFully(cache.read(resourceClaim2, path2, 0, 10));
+        readFully(cache.read(resourceClaim1, path1, 0, 10));
+        assertEquals(0, cache.getEvictionCount());
+
+        // Mapping a third segment evicts the least recently used segment, which belongs to the second claim
+        readFully(cache.read(resourceClaim1, path1, 100, 10));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getSegmentCount());
+        assertTrue(cache.getMappedBytes() <= 128);
+
+        final long misses = cache.getMissCount();
+        readFully(cache.read(resourceClaim1, path1, 0, 10));
+        assertEquals(misses, cache.getMissCount());
+        readFully(cache.read(resourceClaim2, path2, 0, 10));
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    public void testStreamReadableAfterSegmentEvicted() throws IOException {
+        final Path path = createFile("claim-1");
+        final ResourceClaim resourceClaim = createResourceClaim("claim-1");
+        final MappedClaimCache cache = new MappedClaimCache(1024, 64);
+
+        try (final InputStream in = cache.read(resourceClaim, path, 10, 100)) {
+            assertEquals(10, in.read());
+            cache.evict(resourceClaim);
+            assertEquals(0, cache.getSegmentCount());
+            assertEquals(0, cache.getMappedBytes());
+
+            final byte[] remaining = readFully(in);
+            assertArrayEquals(Arrays.copyOfRange(content, 11, 110), remaining);
+        }
+    }
+
+    private Path createFile(final String name) throws IOException {
+        final Path path = new File(directory, name).toPath();
+        Files.write(path, content);
+        return path;
+    }
+
+    private ResourceClaim createResourceClaim(final String id) {
+        return new StandardResourceClaim(claimManager, "default", "0", id, false);
+    }
+
+    private byte[] readFully(final InputStream in) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        StreamUtils.copy(in, baos);
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.apache.commons.lang3.SystemUtils;
+import org.apache.nifi.controller.repository.claim.ContentClaim;
+import org.apache.nifi.controller.repository.claim.StandardResourceClaimManager;
+import org.apache.nifi.controller.repository.util.DiskUtils;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestTieredFileSystemRepository {
+    private final File hotDirectory = new File("target/content_repository");
+    private final File coldDirectory = new File("target/content_repository_cold");
+
+    private TieredFileSystemRepository repository;
+    private StandardResourceClaimManager claimManager;
+
+    @BeforeClass
+    public static void setupClass() {
+        Assume.assumeTrue("Test only runs on *nix", !SystemUtils.IS_OS_WINDOWS);
+    }
+
+    @Before
+    public void setup() throws IOException {
+        if (hotDirectory.exists()) {
+            DiskUtils.deleteRecursively(hotDirectory);
+        }
+        if (coldDirectory.exists()) {
+            DiskUtils.deleteRecursively(coldDirectory);
+        }
+
+        repository = new TieredFileSystemRepository(createProperties(coldTierProperties()));
+        claimManager = new StandardResourceClaimManager();
+        repository.initialize(claimManager);
+        repository.purge();
+    }
+
+    @After
+    public void shutdown() {
+        repository.shutdown();
+    }
+
+    @Test
+    public void testContentMigratedToColdTier() throws IOException {
+        final byte[] content = createContent();
+        final ContentClaim claim = writeFrozenClaim(content);
+        final Path hotFile = repository.getPath(claim, true);
+        assertTrue(hotFile.startsWith(hotDirectory.toPath().toRealPath()));
+
+        // The file is copied to the cold tier but remains in the hot tier until the next migration, so that it can still be read from there.
+        repository.migrateContentNow("default");
+        assertEquals(1, repository.getMigratedFileCount());
+        assertEquals(content.length, repository.getMigratedBytes());
+        assertTrue(Files.exists(hotFile));
+        assertArrayEquals(content, readFully(claim));
+
+        repository.migrateContentNow("default");
+        assertFalse(Files.exists(hotFile));
+        assertEquals(1, repository.getMigratedFileCount());
+
+        final Path coldFile = repository.getPath(claim, true);
+        assertTrue(coldFile.startsWith(coldDirectory.toPath().toRealPath()));
+        assertArrayEquals(content, readFully(claim));
+        assertTrue(repository.isAccessible(claim));
+    }
+
+    @Test
+    public void testWritableAndUnreferencedContentNotMigrated() throws IOException {
+        final ContentClaim unreferencedClaim = writeFrozenClaim(createContent());
+        repository.decrementClaimantCount(unreferencedClaim);
+
+        final ContentClaim writableClaim = repository.create(false);
+        try (final OutputStream out = repository.write(writableClaim)) {
+            out.write("hello".getBytes());
+        }
+        assertTrue(writableClaim.getResourceClaim().isWritable());
+
+        repository.migrateContentNow("default");
+        assertEquals(0, repository.getMigratedFileCount());
+        assertTrue(repository.getPath(writableClaim, true).startsWith(hotDirectory.toPath().toRealPath()));
+    }
+
+    @Test
+    public void testMigratedContentArchivedInColdTier() throws IOException, InterruptedException {
+        final ContentClaim claim = writeFrozenClaim(createContent());
+        repository.migrateContentNow("default");
+        repository.migrateContentNow("default");
+
+        repository.decrementClaimantCount(claim);
+        assertTrue(repository.archive(claim.getResourceClaim()));
+
+        final Path archivedFile = repository.getPath(claim, true);
+        assertTrue(archivedFile.startsWith(coldDirectory.toPath().toRealPath()));
+        assertEquals(FileSystemRepository.ARCHIVE_DIR_NAME, archivedFile.getParent().getFileName().toString());
+
+        // The archived file is removed once it is older than the retention period
+        Thread.sleep(10L);
+        repository.destroyExpiredColdArchivesNow("default");
+        assertEquals(0, repository.getCachedLocationCount("default"));
+        assertFalse(Files.exists(archivedFile));
+        assertFalse(repository.isAccessible(claim));
+    }
+
+    @Test
+    public void testColdTierLocationsCached() throws IOException {
+        final byte[] content = createContent();
+        final ContentClaim claim = writeFrozenClaim(content);
+        final ContentClaim removedClaim = writeFrozenClaim(createContent());
+        repository.migrateContentNow("default");
+        repository.migrateContentNow("default");
+        assertEquals(2, repository.getCachedLocationCount("default"));
+        assertTrue(repository.getPath(claim, true).startsWith(coldDirectory.toPath().toRealPath()));
+
+        repository.decrementClaimantCount(removedClaim);
+        assertTrue(repository.remove(removedClaim));
+        assertEquals(1, repository.getCachedLocationCount("default"));
+
+        // After a restart, nothing is cached, and the files in the cold tier are found when first accessed without being migrated again
+        repository.shutdown();
+        repository = new TieredFileSystemRepository(createProperties(coldTierProperties()));
+        repository.initialize(claimManager);
+        assertEquals(0, repository.getCachedLocationCount("default"));
+        assertTrue(repository.getPath(claim, true).startsWith(coldDirectory.toPath().toRealPath()));
+        assertEquals(1, repository.getCachedLocationCount("default"));
+        assertArrayEquals(content, readFully(claim));
+    }
+
+    @Test
+    public void testFileMovedToColdTierLocatedOnRead() throws IOException {
+        final byte[] content = createContent();
+        final ContentClaim claim = writeFrozenClaim(content);
+        final Path hotFile = repository.getPath(claim, true);
+
+        // Move the file without the repository's knowledge. It is found in the cold tier once it is not found in the hot tier.
+        final Path coldFile = coldDirectory.toPath().resolve(claim.getResourceClaim().getSection()).resolve(claim.getResourceClaim().getId());
+        Files.createDirectories(coldFile.getParent());
+        Files.move(hotFile, coldFile);
+
+        assertArrayEquals(content, readFully(claim));
+        assertEquals(1, repository.getCachedLocationCount("default"));
+        assertTrue(repository.getPath(claim, true).startsWith(coldDirectory.toPath().toRealPath()));
+    }
+
+    @Test
+    public void testColdTierForUnknownContainer() throws IOException {
+        repository.shutdown();
+
+        final Map<String, String> additionalProperties = new HashMap<>();
+        additionalProperties.put(NiFiProperties.REPOSITORY_CONTENT_TIERED_COLD_PREFIX + "unknown", coldDirectory.getPath());
+        try {
+            repository = new TieredFileSystemRepository(createProperties(additionalProperties));
+            fail("Expected IllegalArgumentException for cold tier of unknown container");
+        } catch (final IllegalArgumentException expected) {
+            repository = new TieredFileSystemRepository(createProperties(new HashMap<>()));
+        }
+    }
+
+    private Map<String, String> coldTierProperties() {
+        final Map<String, String> additionalProperties = new HashMap<>();
+        additionalProperties.put(NiFiProperties.REPOSITORY_CONTENT_TIERED_COLD_PREFIX + "default", coldDirectory.getPath());
+        // Content is migrated as soon as it can be, regardless of its age, because the hot tier's usage is always above 0%
+        additionalProperties.put(NiFiProperties.CONTENT_REPOSITORY_TIERED_HOT_MAX_USAGE_PERCENTAGE, "0%");
+        additionalProperties.put(NiFiProperties.CONTENT_REPOSITORY_TIERED_MIGRATION_FREQUENCY, "1 hour");
+        additionalProperties.put(NiFiProperties.CONTENT_ARCHIVE_ENABLED, "true");
+        additionalProperties.put(NiFiProperties.CONTENT_ARCHIVE_MAX_USAGE_PERCENTAGE, "99%");
+        additionalProperties.put(NiFiProperties.CONTENT_ARCHIVE_MAX_RETENTION_PERIOD, "1 millis");
+        additionalProperties.put(NiFiProperties.CONTENT_ARCHIVE_CLEANUP_FREQUENCY, "1 hour");
+        return additionalProperties;
+    }
+
+    private NiFiProperties createProperties(final Map<String, String> additionalProperties) {
+        return NiFiProperties.createBasicNiFiProperties(TestTieredFileSystemRepository.class.getResource("/conf/nifi.properties").getFile(), additionalProperties);
+    }
+
+    private byte[] createContent() {
+        // Content that fills a Resource Claim, so that the Resource Claim can no longer be written to
+        final byte[] content = new byte[DataUnit.parseDataSize("1 MB", DataUnit.B).intValue()];
+        new Random().nextBytes(content);
+        return content;
+    }
+
+    private ContentClaim writeFrozenClaim(final byte[] content) throws IOException {
+        final ContentClaim claim = repository.create(false);
+        try (final OutputStream out = repository.write(claim)) {
+            out.write(content);
+        }
+
+        assertFalse(claim.getResourceClaim().isWritable());
+        return claim;
+    }
+
+    private byte[] readFully(final ContentClaim claim) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final InputStream in = repository.read(claim)) {
+            StreamUtils.copy(in, baos);
+        }
+        return baos.toByteArray();
+    }
+}
@@ -19,11 +19,15 @@ package org.apache.nifi.controller.repository.claim;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import org.apache.nifi.controller.repository.FileSystemRepository;
 import org.apache.nifi.controller.repository.TestFileSystemRepository;
 import org.apache.nifi.controller.repository.util.DiskUtils;
@@ -93,4 +97,130 @@ public class TestContentClaimWriteCache {
         Assert.assertArrayEquals("good-dayhello".getBytes(), buff2);
     }
 
+    @Test
+    public void testIdenticalContentDeduplicated() throws IOException {
+        final ContentDeduplicationIndex index = new ContentDeduplicationIndex(100, 1024);
+        final ContentClaimWriteCache cache = new StandardContentClaimWriteCache(repository, 4, index);
+
+        final ContentClaim claim1 = cache.getContentClaim();
+        try (final OutputStream out = cache.write(claim1)) {
+            out.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+        assertNull(cache.getDeduplicatedContent(claim1));
+        assertEquals(5L, claim1.getLength());
+        assertEquals(1, repository.getClaimantCount(claim1));
+
+        final ContentClaim claim2 = cache.getContentClaim();
+        assertSame(claim1, claim2);
+        try (final OutputStream out = cache.write(claim2)) {
+            out.write("hel".getBytes(StandardCharsets.UTF_8));
+            out.write("lo".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // The content was not written again; the second claimant references the content that was already written
+        final DeduplicatedContent deduplicated = cache.getDeduplicatedContent(claim2);
+        assertNotNull(deduplicated);
+        assertSame(claim1, deduplicated.getContentClaim());
+        assertEquals(0L, deduplicated.getOffset());
+        assertEquals(5L, claim1.getLength());
+        assertEquals(2, repository.getClaimantCount(claim1));
+        assertNull(cache.getDeduplicatedContent(claim2));
+
+        // Different content is written after the existing content
+        final ContentClaim claim3 = cache.getContentClaim();
+        try (final OutputStream out = cache.write(claim3)) {
+            out.write("good-bye".getBytes(StandardCharsets.UTF_8));
+        }
+        assertNull(cache.getDeduplicatedContent(claim3));
+        assertEquals(13L, claim3.getLength());
+
+        cache.flush();
+        assertEquals("hellogood-bye", read(claim3));
+        assertEquals(1, index.getHitCount());
+        assertEquals(2, index.getMissCount());
+        assertEquals(5, index.getBytesDeduplicated());
+    }
+
+    @Test
+    public void testContentSharedAcrossCachesOnlyOnceFlushed() throws IOException {
+        final ContentDeduplicationIndex index = new ContentDeduplicationIndex(100, 1024);
+        final ContentClaimWriteCache cache1 = new StandardContentClaimWriteCache(repository, 4, index);
+        final ContentClaimWriteCache cache2 = new StandardContentClaimWriteCache(repository, 4, index);
+        final ContentClaimWriteCache cache3 = new StandardContentClaimWriteCache(repository, 4, index);
+
+        final ContentClaim claim1 = write(cache1, "hello");
+        assertNull(cache1.getDeduplicatedContent(claim1));
+
+        // The content of the first cache may not yet be in the repository, so it cannot be shared
+        final ContentClaim claim2 = write(cache2, "hello");
+        assertNull(cache2.getDeduplicatedContent(claim2));
+
+        cache1.flush();
+        final ContentClaim claim3 = write(cache3, "hello");
+        final DeduplicatedContent deduplicated = cache3.getDeduplicatedContent(claim3);
+        assertNotNull(deduplicated);
+        assertEquals(claim1.getResourceClaim(), deduplicated.getContentClaim().getResourceClaim());
+        assertEquals("hello", read(deduplicated.getContentClaim()).substring((int) deduplicated.getOffset()));
+
+        cache1.reset();
+        cache2.reset();
+        cache3.reset();
+    }
+
+    @Test
+    public void testUnreferencedContentNotShared() throws IOException {
+        final ContentDeduplicationIndex index = new ContentDeduplicationIndex(100, 1024);
+        final ContentClaimWriteCache cache = new StandardContentClaimWriteCache(repository, 4, index);
+
+        // Fill the Resource Claim beyond the max appendable size of 1 MB so that it is no longer writable once the cache is reset
+        final ContentClaim claim1 = write(cache, "hello");
+        final ContentClaim filler = write(cache, new String(new byte[1024 * 1024], StandardCharsets.UTF_8));
+        cache.flush();
+        cache.reset();
+
+        // Once nothing references the content, it may be destroyed, so it must not be shared
+        repository.decrementClaimantCount(claim1);
+        repository.decrementClaimantCount(filler);
+        assertEquals(0, repository.getClaimantCount(claim1));
+        assertEquals(1, index.getEntryCount());
+
+        final ContentClaim claim2 = write(cache, "hello");
+        assertNull(cache.getDeduplicatedContent(claim2));
+        assertNotSame(claim1.getResourceClaim(), claim2.getResourceClaim());
+        assertEquals(0, repository.getClaimantCount(claim1));
+        assertEquals(0, index.getEntryCount());
+        assertEquals(0, index.getHitCount());
+    }
+
+    @Test
+    public void testLargeContentNotDeduplicated() throws IOException {
+        final ContentDeduplicationIndex index = new ContentDeduplicationIndex(100, 8);
+        final ContentClaimWriteCache cache = new StandardContentClaimWriteCache(repository, 4, index);
+
+        final ContentClaim claim1 = write(cache, "hellogood-bye");
+        final ContentClaim claim2 = write(cache, "hellogood-bye");
+        assertNull(cache.getDeduplicatedContent(claim1));
+        assertNull(cache.getDeduplicatedContent(claim2));
+
+        cache.flush();
+        assertEquals("hellogood-byehellogood-bye", read(claim2));
+        assertEquals(0, index.getEntryCount());
+        assertEquals(0, index.getMissCount());
+    }
+
+    private ContentClaim write(final ContentClaimWriteCache cache, final String content) throws IOException {
+        final ContentClaim claim = cache.getContentClaim();
+        try (final OutputStream out = cache.write(claim)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return claim;
+    }
+
+    private String read(final ContentClaim claim) throws IOException {
+        try (final InputStream in = repository.read(claim)) {
+            final byte[] buff = new byte[(int) claim.getLength()];
+            StreamUtils.fillBuffer(in, buff);
+            return new String(buff, StandardCharsets.UTF_8);
+        }
+    }
 }
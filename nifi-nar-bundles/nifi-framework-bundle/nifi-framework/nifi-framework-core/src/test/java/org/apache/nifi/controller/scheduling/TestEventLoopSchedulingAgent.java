@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.scheduling;
+
+import org.apache.nifi.connectable.Connectable;
+import org.apache.nifi.controller.tasks.ConnectableTask;
+import org.apache.nifi.controller.tasks.InvocationResult;
+import org.apache.nifi.engine.FlowEngine;
+import org.apache.nifi.util.NiFiProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestEventLoopSchedulingAgent {
+
+    private FlowEngine flowEngine;
+    private EventLoopSchedulingAgent agent;
+    private Connectable connectable;
+    private final AtomicLong yieldExpiration = new AtomicLong(0L);
+    private final AtomicInteger invocations = new AtomicInteger(0);
+    private volatile Supplier<InvocationResult> resultSupplier = () -> InvocationResult.yield("No work to do");
+
+    @Before
+    public void setup() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(NiFiProperties.BORED_YIELD_DURATION, "10 millis");
+        properties.put(NiFiProperties.TIMER_DRIVEN_MAX_IDLE_DURATION, "10 mins");
+        final NiFiProperties nifiProperties = NiFiProperties.createBasicNiFiProperties(null, properties);
+
+        flowEngine = new FlowEngine(2, "Timer-Driven Process", true);
+        agent = new EventLoopSchedulingAgent(null, flowEngine, null, null, nifiProperties) {
+            @Override
+            protected ConnectableTask createConnectableTask(final Connectable connectable, final LifecycleState scheduleState) {
+                final ConnectableTask task = mock(ConnectableTask.class);
+                when(task.invoke()).thenAnswer(invocation -> {
+                    invocations.incrementAndGet();
+                    return resultSupplier.get();
+                });
+                return task;
+            }
+        };
+
+        connectable = mock(Connectable.class);
+        when(connectable.getMaxConcurrentTasks()).thenReturn(1);
+        when(connectable.getSchedulingPeriod(any(TimeUnit.class))).thenReturn(0L);
+        when(connectable.getYieldExpiration()).thenAnswer(invocation -> yieldExpiration.get());
+    }
+
+    @After
+    public void shutdown() {
+        agent.shutdown();
+    }
+
+    private static void waitFor(final Supplier<Boolean> condition) throws InterruptedException {
+        final long stopTime = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.get()) {
+            assertTrue("Condition was not met in time", System.currentTimeMillis() < stopTime);
+            Thread.sleep(5L);
+        }
+    }
+
+    @Test
+    public void testIdleComponentWokenByEvent() throws InterruptedException {
+        final LifecycleState scheduleState = new DummyScheduleState(true);
+        agent.doSchedule(connectable, scheduleState);
+
+        // Each time that no work is found, the time until the next check doubles: 10 ms, 20 ms, 40 ms, ...
+        waitFor(() -> invocations.get() >= 3);
+        Thread.sleep(300L);
+        final int idleInvocations = invocations.get();
+        assertTrue("Idle component was invoked " + idleInvocations + " times", idleInvocations < 10);
+        assertEquals(1, agent.getIdleTaskCount());
+
+        agent.onEvent(connectable);
+        waitFor(() -> invocations.get() > idleInvocations);
+
+        agent.doUnschedule(connectable, scheduleState);
+    }
+
+    @Test
+    public void testRunsContinuouslyWhileWorkAvailable() throws InterruptedException {
+        resultSupplier = () -> InvocationResult.DO_NOT_YIELD;
+
+        final LifecycleState scheduleState = new DummyScheduleState(true);
+        agent.doSchedule(connectable, scheduleState);
+        waitFor(() -> invocations.get() >= 1000);
+
+        // Once there is no more work, the component is parked rather than invoked continually
+        resultSupplier = () -> InvocationResult.yield("No work to do");
+        waitFor(() -> agent.getIdleTaskCount() == 1);
+
+        agent.doUnschedule(connectable, scheduleState);
+    }
+
+    @Test
+    public void testYieldHonored() throws InterruptedException {
+        resultSupplier = () -> {
+            yieldExpiration.set(System.currentTimeMillis() + 500L);
+            return InvocationResult.DO_NOT_YIELD;
+        };
+
+        final LifecycleState scheduleState = new DummyScheduleState(true);
+        agent.doSchedule(connectable, scheduleState);
+        waitFor(() -> invocations.get() == 1);
+
+        // Events do not wake a yielded component
+        agent.onEvent(connectable);
+        Thread.sleep(250L);
+        assertEquals(1, invocations.get());
+
+        waitFor(() -> invocations.get() == 2);
+        agent.doUnschedule(connectable, scheduleState);
+    }
+
+    @Test
+    public void testUnscheduleStopsInvocations() throws InterruptedException {
+        resultSupplier = () -> InvocationResult.DO_NOT_YIELD;
+
+        final LifecycleState scheduleState = new DummyScheduleState(true);
+        agent.doSchedule(connectable, scheduleState);
+        waitFor(() -> invocations.get() > 10);
+
+        scheduleState.setScheduled(false);
+        agent.doUnschedule(connectable, scheduleState);
+        Thread.sleep(50L);
+
+        final int invocationsAfterStop = invocations.get();
+        agent.onEvent(connectable);
+        Thread.sleep(100L);
+        assertEquals(invocationsAfterStop, invocations.get());
+        assertEquals(0, agent.getIdleTaskCount());
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * An immutable, sorted set of attribute keys, along with an index that maps each key to its position. Many FlowFiles in a flow
+ * carry exactly the same set of attribute keys, so a single AttributeKeySet is shared by all of them, and each FlowFile needs to
+ * hold only an array of values.
+ * </p>
+ *
+ * <p>
+ * Key sets are canonicalized through a node-wide dictionary that holds each key set only weakly. A key set stays in the dictionary
+ * for as long as some FlowFile refers to it and is dropped once no FlowFile does, so flows whose attribute names change over time
+ * continue to share key sets without the dictionary growing beyond the key sets that are in use.
+ * </p>
+ *
+ * <p>
+ * Small key sets are searched linearly rather than through a HashMap index, as a scan of a few keys is faster than hashing and
+ * avoids the cost of a map for each key set.
+ * </p>
+ */
+final class AttributeKeySet {
+    static final int MAX_LINEAR_SCAN_KEYS = 8;
+
+    private static final ConcurrentMap<KeyArray, KeySetReference> dictionary = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<AttributeKeySet> collectedKeySets = new ReferenceQueue<>();
+
+    static final AttributeKeySet EMPTY = new AttributeKeySet(new String[0]);
+
+    private final String[] keys;
+    private final Map<String, Integer> indices;
+    private final int hashCode;
+
+    private AttributeKeySet(final String[] sortedKeys) {
+        this(sortedKeys, Arrays.hashCode(sortedKeys));
+    }
+
+    private AttributeKeySet(final String[] sortedKeys, final int hashCode) {
+        this.keys = sortedKeys;
+        this.hashCode = hashCode;
+
+        if (sortedKeys.length <= MAX_LINEAR_SCAN_KEYS) {
+            this.indices = null;
+        } else {
+            this.indices = new HashMap<>((int) (sortedKeys.length / 0.75f) + 1);
+            for (int i = 0; i < sortedKeys.length; i++) {
+                indices.put(sortedKeys[i], i);
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical key set for the given keys. The given array is sorted in place and, if no equal key set is already known,
+     * becomes the backing array of the returned key set, so the caller must not modify it afterward.
+     *
+     * @param keys the attribute keys; must not contain duplicates or null values
+     * @return the canonical key set for the given keys
+     */
+    static AttributeKeySet of(final String[] keys) {
+        if (keys.length == 0) {
+            return EMPTY;
+        }
+
+        Arrays.sort(keys);
+        expungeCollectedKeySets();
+
+        final KeyArray keyArray = new KeyArray(keys);
+        final KeySetReference existingReference = dictionary.get(keyArray);
+        if (existingReference != null) {
+            final AttributeKeySet existing = existingReference.get();
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        final AttributeKeySet keySet = new AttributeKeySet(keys, keyArray.hashCode);
+        final KeySetReference reference = new KeySetReference(keySet, keyArray);
+        while (true) {
+            final KeySetReference current = dictionary.putIfAbsent(keyArray, reference);
+            if (current == null) {
+                return keySet;
+            }
+
+            final AttributeKeySet raced = current.get();
+            if (raced != null) {
+                return raced;
+            }
+
+            // The key set that was registered has been collected but not yet expunged; take its place.
+            if (dictionary.replace(keyArray, current, reference)) {
+                return keySet;
+            }
+        }
+    }
+
+    private static void expungeCollectedKeySets() {
+        KeySetReference reference;
+        while ((reference = (KeySetReference) collectedKeySets.poll()) != null) {
+            dictionary.remove(reference.keyArray, reference);
+        }
+    }
+
+    static int getCachedKeySetCount() {
+        expungeCollectedKeySets();
+        return dictionary.size();
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    String getKey(final int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param key the attribute key
+     * @return the position of the given key, or -1 if the key is not part of this set
+     */
+    int indexOf(final Object key) {
+        if (indices == null) {
+            if (key == null) {
+                return -1;
+            }
+
+            for (int i = 0; i < keys.length; i++) {
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        final Integer index = indices.get(key);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AttributeKeySet)) {
+            return false;
+        }
+
+        final AttributeKeySet other = (AttributeKeySet) obj;
+        return hashCode == other.hashCode && Arrays.equals(keys, other.keys);
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeKeySet" + Arrays.toString(keys);
+    }
+
+    /**
+     * Dictionary key for a sorted array of attribute keys. It refers to the keys but not to the AttributeKeySet, so that the key set
+     * itself can be collected once it is no longer in use.
+     */
+    private static final class KeyArray {
+        private final String[] keys;
+        private final int hashCode;
+
+        private KeyArray(final String[] keys) {
+            this.keys = keys;
+            this.hashCode = Arrays.hashCode(keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof KeyArray)) {
+                return false;
+            }
+
+            final KeyArray other = (KeyArray) obj;
+            return hashCode == other.hashCode && Arrays.equals(keys, other.keys);
+        }
+    }
+
+    private static final class KeySetReference extends WeakReference<AttributeKeySet> {
+        private final KeyArray keyArray;
+
+        private KeySetReference(final AttributeKeySet keySet, final KeyArray keyArray) {
+            super(keySet, collectedKeySets);
+            this.keyArray = keyArray;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * An immutable Map of FlowFile attributes that stores only an array of values, along with a reference to an {@link AttributeKeySet}
+ * that is shared by every FlowFile having the same attribute keys. This avoids the per-entry node objects of a HashMap as well as the
+ * duplicate copies of attribute keys that are otherwise held by each FlowFile in a queue.
+ * </p>
+ *
+ * <p>
+ * When a FlowFile is derived from another FlowFile and only the values of its attributes change, the new map shares the key set of the
+ * original, and any value that did not change is shared by reference.
+ * </p>
+ *
+ * <b>Immutable - Thread Safe</b>
+ */
+final class CompactAttributeMap extends AbstractMap<String, String> {
+    static final CompactAttributeMap EMPTY = new CompactAttributeMap(AttributeKeySet.EMPTY, new String[0]);
+
+    private final AttributeKeySet keySet;
+    private final String[] values;
+
+    private CompactAttributeMap(final AttributeKeySet keySet, final String[] values) {
+        this.keySet = keySet;
+        this.values = values;
+    }
+
+    /**
+     * Creates a CompactAttributeMap that contains the same entries as the given attributes. If the given attributes are already
+     * a CompactAttributeMap, it is returned as-is. If the given attributes have exactly the same keys as the given base map, the key set
+     * of the base is reused without having to consult the shared key dictionary.
+     *
+     * @param attributes the attributes to copy; null keys and values are not permitted
+     * @param base the map that the attributes were derived from, or <code>null</code> if not known
+     * @return a CompactAttributeMap containing the same entries as the given attributes
+     */
+    static CompactAttributeMap of(final Map<String, String> attributes, final CompactAttributeMap base) {
+        if (attributes instanceof CompactAttributeMap) {
+            return (CompactAttributeMap) attributes;
+        }
+        if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+
+        final int size = attributes.size();
+        if (base != null && base.size() == size && base.hasSameKeys(attributes)) {
+            final AttributeKeySet baseKeys = base.keySet;
+            final String[] values = new String[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = attributes.get(baseKeys.getKey(i));
+            }
+
+            return new CompactAttributeMap(baseKeys, values);
+        }
+
+        final String[] keys = attributes.keySet().toArray(new String[size]);
+        final AttributeKeySet keySet = AttributeKeySet.of(keys);
+        final String[] values = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = attributes.get(keySet.getKey(i));
+        }
+
+        return new CompactAttributeMap(keySet, values);
+    }
+
+    private boolean hasSameKeys(final Map<String, String> attributes) {
+        for (int i = 0; i < values.length; i++) {
+            if (!attributes.containsKey(keySet.getKey(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    AttributeKeySet getAttributeKeySet() {
+        return keySet;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int index = keySet.indexOf(key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return keySet.indexOf(key) >= 0;
+    }
+
+    @Override
+    public String put(final String key, final String value) {
+        throw new UnsupportedOperationException("FlowFile Attributes cannot be modified");
+    }
+
+    @Override
+    public String remove(final Object key) {
+        throw new UnsupportedOperationException("FlowFile Attributes cannot be modified");
+    }
+
+    @Override
+    public void putAll(final Map<? extends String, ? extends String> m) {
+        throw new UnsupportedOperationException("FlowFile Attributes cannot be modified");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("FlowFile Attributes cannot be modified");
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < values.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (index >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+
+                        final Entry<String, String> entry = new SimpleImmutableEntry<>(keySet.getKey(index), values[index]);
+                        index++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+}
@@ -24,7 +24,6 @@ import org.apache.nifi.controller.repository.claim.ContentClaim;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -48,7 +47,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
     private final long lineageStartIndex;
     private final long size;
     private final long penaltyExpirationMs;
-    private final Map<String, String> attributes;
+    private final CompactAttributeMap attributes;
     private final ContentClaim claim;
     private final long claimOffset;
     private final long lastQueueDate;
@@ -56,7 +55,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     private StandardFlowFileRecord(final Builder builder) {
         this.id = builder.bId;
-        this.attributes = builder.bAttributes == null ? Collections.emptyMap() : builder.bAttributes;
+        this.attributes = CompactAttributeMap.of(builder.bAttributes, builder.bBaseAttributes);
         this.entryDate = builder.bEntryDate;
         this.lineageStartDate = builder.bLineageStartDate;
         this.lineageStartIndex = builder.bLineageStartIndex;
@@ -105,7 +104,8 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
 
     @Override
     public Map<String, String> getAttributes() {
-        return Collections.unmodifiableMap(this.attributes);
+        // CompactAttributeMap is immutable, so there is no need to wrap it in an unmodifiable Map.
+        return this.attributes;
     }
 
     @Override
@@ -180,6 +180,7 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
         private long bLastQueueDate = System.currentTimeMillis();
         private long bQueueDateIndex = 0L;
         private Map<String, String> bAttributes;
+        private CompactAttributeMap bBaseAttributes;
         private boolean bAttributesCopied = false;
 
         public Builder id(final long id) {
@@ -318,12 +319,15 @@ public final class StandardFlowFileRecord implements FlowFile, FlowFileRecord {
             bLineageIdentifiers.clear();
             bPenaltyExpirationMs = specFlowFile.getPenaltyExpirationMillis();
             bSize = specFlowFile.getSize();
-            // If this is a StandardFlowFileRecord, access the attributes map directly. Do not use the
-            // getAttributes() method, because that will wrap the original in an UnmodifiableMap. As a result,
-            // a Processor that continually calls session.append() for instance will have a FlowFile whose attributes
-            // Map is wrapped thousands of times until it hits a StackOverflowError. We want the getter to return
-            // UnmodifiableMap, though, so that Processors cannot directly modify that Map.
-            bAttributes = specFlowFile instanceof StandardFlowFileRecord ? ((StandardFlowFileRecord) specFlowFile).attributes : specFlowFile.getAttributes();
+            // If this is a StandardFlowFileRecord, keep a reference to its immutable attributes. If the attributes are not modified,
+            // the new FlowFile will share them outright. If only attribute values are modified, the new FlowFile will share the key set.
+            if (specFlowFile instanceof StandardFlowFileRecord) {
+                bBaseAttributes = ((StandardFlowFileRecord) specFlowFile).attributes;
+                bAttributes = bBaseAttributes;
+            } else {
+                bBaseAttributes = null;
+                bAttributes = specFlowFile.getAttributes();
+            }
             bAttributesCopied = false;
             bClaim = specFlowFile.getContentClaim();
             bClaimOffset = specFlowFile.getContentClaimOffset();
@@ -37,6 +37,7 @@ public class StandardRepositoryRecord implements RepositoryRecord {
     private String swapLocation;
     private final Map<String, String> originalAttributes;
     private Map<String, String> updatedAttributes = null;
+    private boolean updatedAttributesCopied = false;
     private List<ContentClaim> transientClaims;
     private final long startNanos = System.nanoTime();
     private boolean contentModified;
@@ -119,6 +120,10 @@ public class StandardRepositoryRecord implements RepositoryRecord {
     private Map<String, String> initializeUpdatedAttributes() {
         if (updatedAttributes == null) {
             updatedAttributes = new HashMap<>();
+            updatedAttributesCopied = true;
+        } else if (!updatedAttributesCopied) {
+            updatedAttributes = new HashMap<>(updatedAttributes);
+            updatedAttributesCopied = true;
         }
 
         return updatedAttributes;
@@ -226,7 +231,9 @@ public class StandardRepositoryRecord implements RepositoryRecord {
         if (this.type == RepositoryRecordType.CREATE) {
             // Because we don't copy updated attributes to `this.updatedAttributes` for CREATE records, we need to ensure
             // that if a record is changed from CREATE to anything else that we do properly update the `this.updatedAttributes` field.
-            this.updatedAttributes = new HashMap<>(getCurrent().getAttributes());
+            // FlowFile attributes are immutable, so we hold a reference to them and only copy them if they are subsequently updated.
+            this.updatedAttributes = getCurrent().getAttributes();
+            this.updatedAttributesCopied = false;
         }
 
         this.type = newType;
@@ -141,6 +141,25 @@ public class StandardResourceClaimManager implements ResourceClaimManager {
         }
     }
 
+    @Override
+    public boolean incrementClaimantCountIfReferenced(final ResourceClaim claim) {
+        if (claim == null) {
+            return false;
+        }
+
+        synchronized (claim) {
+            // Do not create a counter if there is none, as that would indicate that the claim is not referenced.
+            final ClaimCount counter = claimantCounts.get(claim);
+            if (counter == null || counter.getCount().get() < 1) {
+                return false;
+            }
+
+            final int newClaimantCount = counter.getCount().incrementAndGet();
+            logger.debug("Incrementing claimant count for referenced claim {} to {}", claim, newClaimantCount);
+            return true;
+        }
+    }
+
     @Override
     public void markDestructable(final ResourceClaim claim) {
         if (claim == null) {
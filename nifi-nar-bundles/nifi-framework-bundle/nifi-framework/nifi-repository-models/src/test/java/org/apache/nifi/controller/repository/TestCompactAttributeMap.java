@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.controller.repository;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestCompactAttributeMap {
+
+    private FlowFileRecord createFlowFile(final Map<String, String> attributes) {
+        return new StandardFlowFileRecord.Builder()
+            .id(1L)
+            .addAttribute("uuid", UUID.randomUUID().toString())
+            .addAttributes(attributes)
+            .build();
+    }
+
+    @Test
+    public void testEqualsHashMap() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "abc.txt");
+        attributes.put("path", "./");
+        attributes.put("mime.type", "text/plain");
+
+        final CompactAttributeMap compact = CompactAttributeMap.of(attributes, null);
+        assertEquals(attributes, compact);
+        assertEquals(compact, attributes);
+        assertEquals(attributes.hashCode(), compact.hashCode());
+        assertEquals("abc.txt", compact.get("filename"));
+        assertTrue(compact.containsKey("mime.type"));
+        assertFalse(compact.containsKey("other"));
+        assertNull(compact.get("other"));
+        assertEquals(3, compact.size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        final FlowFileRecord flowFile = createFlowFile(new HashMap<>());
+        flowFile.getAttributes().put("a", "b");
+    }
+
+    @Test
+    public void testKeySetSharedAcrossFlowFiles() {
+        final Map<String, String> first = new HashMap<>();
+        first.put("filename", "1.txt");
+        first.put("path", "./");
+
+        final Map<String, String> second = new HashMap<>();
+        second.put("path", "/tmp");
+        second.put("filename", "2.txt");
+
+        final CompactAttributeMap firstAttributes = (CompactAttributeMap) createFlowFile(first).getAttributes();
+        final CompactAttributeMap secondAttributes = (CompactAttributeMap) createFlowFile(second).getAttributes();
+        assertSame(firstAttributes.getAttributeKeySet(), secondAttributes.getAttributeKeySet());
+        assertEquals("2.txt", secondAttributes.get("filename"));
+    }
+
+    @Test
+    public void testStructuralSharingWithParent() {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "1.txt");
+        final FlowFileRecord parent = createFlowFile(attributes);
+
+        // Unmodified attributes are shared outright
+        final FlowFileRecord unmodified = new StandardFlowFileRecord.Builder().fromFlowFile(parent).size(100L).build();
+        assertSame(parent.getAttributes(), unmodified.getAttributes());
+
+        // Modifying only values shares the key set
+        final FlowFileRecord valueChanged = new StandardFlowFileRecord.Builder().fromFlowFile(parent).addAttribute("filename", "2.txt").build();
+        assertSame(((CompactAttributeMap) parent.getAttributes()).getAttributeKeySet(), ((CompactAttributeMap) valueChanged.getAttributes()).getAttributeKeySet());
+        assertEquals("2.txt", valueChanged.getAttribute("filename"));
+        assertEquals("1.txt", parent.getAttribute("filename"));
+        assertSame(parent.getAttribute("uuid"), valueChanged.getAttribute("uuid"));
+
+        // Adding and removing attributes produces a new key set without affecting the parent
+        final FlowFileRecord keysChanged = new StandardFlowFileRecord.Builder().fromFlowFile(parent).addAttribute("path", "./").removeAttributes("filename").build();
+        assertEquals("./", keysChanged.getAttribute("path"));
+        assertNull(keysChanged.getAttribute("filename"));
+        assertEquals(2, keysChanged.getAttributes().size());
+        assertEquals(2, parent.getAttributes().size());
+        assertNull(parent.getAttribute("path"));
+    }
+
+    @Test
+    public void testKeySetsSharedAfterManyDistinctKeySets() {
+        for (int i = 0; i < 20_000; i++) {
+            CompactAttributeMap.of(Collections.singletonMap("attr-" + i, "value"), null);
+        }
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("filename", "1.txt");
+        attributes.put("churn.test", "true");
+
+        final CompactAttributeMap first = CompactAttributeMap.of(attributes, null);
+        final CompactAttributeMap second = CompactAttributeMap.of(new HashMap<>(attributes), null);
+        assertSame(first.getAttributeKeySet(), second.getAttributeKeySet());
+    }
+
+    @Test
+    public void testLargeKeySet() {
+        final Map<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < AttributeKeySet.MAX_LINEAR_SCAN_KEYS * 2; i++) {
+            attributes.put("attr-" + i, String.valueOf(i));
+        }
+
+        final CompactAttributeMap compact = CompactAttributeMap.of(attributes, null);
+        assertEquals(attributes, compact);
+        for (int i = 0; i < AttributeKeySet.MAX_LINEAR_SCAN_KEYS * 2; i++) {
+            assertEquals(String.valueOf(i), compact.get("attr-" + i));
+        }
+        assertNull(compact.get("attr-x"));
+        assertNull(compact.get(null));
+    }
+
+    @Test
+    public void testEmptyAttributes() {
+        final FlowFileRecord flowFile = new StandardFlowFileRecord.Builder().id(1L).build();
+        assertTrue(flowFile.getAttributes().isEmpty());
+        assertFalse(flowFile.getAttributes().entrySet().iterator().hasNext());
+    }
+}
@@ -61,6 +61,27 @@ public class TestStandardResourceClaimManager {
     }
 
 
+    @Test
+    public void testIncrementIfReferenced() {
+        final StandardResourceClaimManager manager = new StandardResourceClaimManager();
+        final ResourceClaim resourceClaim = manager.newResourceClaim("container", "section", "id", false, true);
+
+        // A claim that nothing references cannot be claimed
+        Assert.assertFalse(manager.incrementClaimantCountIfReferenced(resourceClaim));
+        assertEquals(0, manager.getClaimantCount(resourceClaim));
+
+        manager.incrementClaimantCount(resourceClaim);
+        assertTrue(manager.incrementClaimantCountIfReferenced(resourceClaim));
+        assertEquals(2, manager.getClaimantCount(resourceClaim));
+
+        // Once the claim is frozen and its count drops to 0, it may be destroyed and must not be claimed again
+        manager.freeze(resourceClaim);
+        manager.decrementClaimantCount(resourceClaim);
+        manager.decrementClaimantCount(resourceClaim);
+        Assert.assertFalse(manager.incrementClaimantCountIfReferenced(resourceClaim));
+        assertEquals(0, manager.getClaimantCount(resourceClaim));
+    }
+
     @Test
     @Ignore("Unit test was created to repeat a concurrency bug in StandardResourceClaimManager. "
         + "However, now that the concurrency bug has been fixed, the test will deadlock. Leaving here for now in case it's valuable before the commit is pushed")
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.provenance.columnar.BlockCodecs;
 import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.security.kms.CryptoUtils;
 import org.apache.nifi.util.FormatUtils;
@@ -69,6 +70,13 @@ public class RepositoryConfiguration {
     private boolean allowRollover = true;
     private int concurrentMergeThreads = 4;
     private Integer warmCacheFrequencyMinutes = null;
+    private boolean columnarEventFiles = false;
+    private String columnarCodec = BlockCodecs.DEFLATE;
+    private boolean compactIndex = false;
+    private boolean asyncRegistration = false;
+    private boolean registrationWaitForWrite = true;
+    private int registrationQueueCapacity = 100_000;
+    private int registrationThreadCount = 2;
 
     public void setAllowRollover(final boolean allow) {
         this.allowRollover = allow;
@@ -233,6 +241,98 @@ public class RepositoryConfiguration {
         this.compress = compress;
     }
 
+    /**
+     * @return whether or not event files will be written in the columnar, block-compressed format
+     */
+    public boolean isColumnarEventFiles() {
+        return columnarEventFiles;
+    }
+
+    /**
+     * @param columnarEventFiles if true, event files will be written in the columnar, block-compressed format
+     */
+    public void setColumnarEventFiles(final boolean columnarEventFiles) {
+        this.columnarEventFiles = columnarEventFiles;
+    }
+
+    /**
+     * @return the name of the {@link org.apache.nifi.provenance.columnar.BlockCodec} used to compress the blocks of columnar event files
+     */
+    public String getColumnarCodec() {
+        return columnarCodec;
+    }
+
+    /**
+     * @param columnarCodec the name of the codec used to compress the blocks of columnar event files
+     */
+    public void setColumnarCodec(final String columnarCodec) {
+        this.columnarCodec = columnarCodec;
+    }
+
+    /**
+     * @return whether or not events will be indexed by the {@link org.apache.nifi.provenance.index.compact.CompactEventIndex} rather than by Lucene
+     */
+    public boolean isCompactIndex() {
+        return compactIndex;
+    }
+
+    /**
+     * @param compactIndex if true, events will be indexed by the compact, non-Lucene index
+     */
+    public void setCompactIndex(final boolean compactIndex) {
+        this.compactIndex = compactIndex;
+    }
+
+    /**
+     * @return whether or not Provenance Events are handed to dedicated threads to be written, rather than being written by the thread that registers them
+     */
+    public boolean isAsyncRegistration() {
+        return asyncRegistration;
+    }
+
+    public void setAsyncRegistration(final boolean asyncRegistration) {
+        this.asyncRegistration = asyncRegistration;
+    }
+
+    /**
+     * @return whether or not a thread that registers Provenance Events asynchronously waits until the events have been written
+     */
+    public boolean isRegistrationWaitForWrite() {
+        return registrationWaitForWrite;
+    }
+
+    public void setRegistrationWaitForWrite(final boolean registrationWaitForWrite) {
+        this.registrationWaitForWrite = registrationWaitForWrite;
+    }
+
+    /**
+     * @return the maximum number of asynchronously registered events that may be waiting to be written before registration blocks
+     */
+    public int getRegistrationQueueCapacity() {
+        return registrationQueueCapacity;
+    }
+
+    public void setRegistrationQueueCapacity(final int registrationQueueCapacity) {
+        if (registrationQueueCapacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.registrationQueueCapacity = registrationQueueCapacity;
+    }
+
+    /**
+     * @return the number of threads to use to write asynchronously registered events
+     */
+    public int getRegistrationThreadCount() {
+        return registrationThreadCount;
+    }
+
+    public void setRegistrationThreadCount(final int registrationThreadCount) {
+        if (registrationThreadCount < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.registrationThreadCount = registrationThreadCount;
+    }
+
     /**
      * @return the number of threads to use to query the repo
      */
@@ -449,7 +549,44 @@ public class RepositoryConfiguration {
         final long rolloverMillis = FormatUtils.getTimeDuration(rolloverTime, TimeUnit.MILLISECONDS);
         final long rolloverBytes = DataUnit.parseDataSize(rolloverSize, DataUnit.B).longValue();
 
-        final boolean compressOnRollover = Boolean.parseBoolean(nifiProperties.getProperty(NiFiProperties.PROVENANCE_COMPRESS_ON_ROLLOVER));
+        boolean compressOnRollover = Boolean.parseBoolean(nifiProperties.getProperty(NiFiProperties.PROVENANCE_COMPRESS_ON_ROLLOVER));
+        final String eventFileFormat = nifiProperties.getProperty(NiFiProperties.PROVENANCE_EVENT_FILE_FORMAT, NiFiProperties.DEFAULT_PROVENANCE_EVENT_FILE_FORMAT).trim();
+        final boolean columnarEventFiles = "columnar".equalsIgnoreCase(eventFileFormat);
+        if (!columnarEventFiles && !NiFiProperties.DEFAULT_PROVENANCE_EVENT_FILE_FORMAT.equalsIgnoreCase(eventFileFormat)) {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.PROVENANCE_EVENT_FILE_FORMAT + ": " + eventFileFormat
+                + "; valid values are 'row' and 'columnar'");
+        }
+        final String columnarCodec = nifiProperties.getProperty(NiFiProperties.PROVENANCE_COLUMNAR_CODEC, NiFiProperties.DEFAULT_PROVENANCE_COLUMNAR_CODEC).trim();
+        if (columnarEventFiles) {
+            // validate eagerly so that a misconfigured codec is reported at startup
+            BlockCodecs.getCodec(columnarCodec);
+
+            if (compressOnRollover) {
+                logger.info("Columnar Provenance Event Files are compressed as they are written, so {} will be ignored", NiFiProperties.PROVENANCE_COMPRESS_ON_ROLLOVER);
+                compressOnRollover = false;
+            }
+        }
+        final String indexType = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEX_TYPE, NiFiProperties.DEFAULT_PROVENANCE_INDEX_TYPE).trim();
+        final boolean compactIndex = "compact".equalsIgnoreCase(indexType);
+        if (!compactIndex && !NiFiProperties.DEFAULT_PROVENANCE_INDEX_TYPE.equalsIgnoreCase(indexType)) {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.PROVENANCE_INDEX_TYPE + ": " + indexType
+                + "; valid values are 'lucene' and 'compact'");
+        }
+        final String registrationMode = nifiProperties.getProperty(NiFiProperties.PROVENANCE_REGISTRATION_MODE, NiFiProperties.DEFAULT_PROVENANCE_REGISTRATION_MODE).trim();
+        final boolean asyncRegistration = "async".equalsIgnoreCase(registrationMode);
+        if (!asyncRegistration && !NiFiProperties.DEFAULT_PROVENANCE_REGISTRATION_MODE.equalsIgnoreCase(registrationMode)) {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.PROVENANCE_REGISTRATION_MODE + ": " + registrationMode
+                + "; valid values are 'sync' and 'async'");
+        }
+        final String registrationDurability = nifiProperties.getProperty(NiFiProperties.PROVENANCE_REGISTRATION_DURABILITY,
+            NiFiProperties.DEFAULT_PROVENANCE_REGISTRATION_DURABILITY).trim();
+        final boolean registrationWaitForWrite = NiFiProperties.DEFAULT_PROVENANCE_REGISTRATION_DURABILITY.equalsIgnoreCase(registrationDurability);
+        if (!registrationWaitForWrite && !"none".equalsIgnoreCase(registrationDurability)) {
+            throw new IllegalArgumentException("Invalid value for property " + NiFiProperties.PROVENANCE_REGISTRATION_DURABILITY + ": " + registrationDurability
+                + "; valid values are 'write' and 'none'");
+        }
+        final int registrationQueueCapacity = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_REGISTRATION_QUEUE_SIZE, 100_000);
+        final int registrationThreads = nifiProperties.getIntegerProperty(NiFiProperties.PROVENANCE_REGISTRATION_THREADS, 2);
         final String indexedFieldString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_FIELDS);
         final String indexedAttrString = nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_ATTRIBUTES);
 
@@ -483,6 +620,13 @@ public class RepositoryConfiguration {
             config.addStorageDirectory(entry.getKey(), entry.getValue().toFile());
         }
         config.setCompressOnRollover(compressOnRollover);
+        config.setColumnarEventFiles(columnarEventFiles);
+        config.setColumnarCodec(columnarCodec);
+        config.setCompactIndex(compactIndex);
+        config.setAsyncRegistration(asyncRegistration);
+        config.setRegistrationWaitForWrite(registrationWaitForWrite);
+        config.setRegistrationQueueCapacity(registrationQueueCapacity);
+        config.setRegistrationThreadCount(registrationThreads);
         config.setSearchableFields(searchableFields);
         config.setSearchableAttributes(searchableAttributes);
         config.setMaxEventFileCapacity(rolloverBytes);
@@ -24,7 +24,11 @@ import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.events.EventReporter;
 import org.apache.nifi.provenance.authorization.EventAuthorizer;
 import org.apache.nifi.provenance.authorization.UserEventAuthorizer;
+import org.apache.nifi.provenance.columnar.BlockCodec;
+import org.apache.nifi.provenance.columnar.BlockCodecs;
+import org.apache.nifi.provenance.columnar.ColumnarRecordWriter;
 import org.apache.nifi.provenance.index.EventIndex;
+import org.apache.nifi.provenance.index.compact.CompactEventIndex;
 import org.apache.nifi.provenance.index.lucene.LuceneEventIndex;
 import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
 import org.apache.nifi.provenance.lucene.IndexManager;
@@ -34,6 +38,7 @@ import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchableField;
 import org.apache.nifi.provenance.serialization.RecordReaders;
 import org.apache.nifi.provenance.serialization.StorageSummary;
+import org.apache.nifi.provenance.store.AsyncEventRegistrar;
 import org.apache.nifi.provenance.store.EventFileManager;
 import org.apache.nifi.provenance.store.EventStore;
 import org.apache.nifi.provenance.store.PartitionedWriteAheadEventStore;
@@ -79,6 +84,8 @@ import java.util.Set;
  * very high throughput. However, this high throughput is gained by avoiding continual 'commits' of the Index Writer. As a result, on restart, this Repository
  * may take a minute or two to re-index some of the Provenance Events, as some of the Events may have been added to the index without committing the Index Writer.
  * Given the substantial performance improvement gained by committing the Index Writer only periodically, this trade-off is generally well accepted.
+ * Alternatively, the Repository may be configured to use the {@link CompactEventIndex}, which avoids the cost of Lucene altogether in exchange for
+ * supporting fast searches on only a subset of fields.
  * </p>
  *
  * <p>
@@ -90,6 +97,7 @@ import java.util.Set;
 public class WriteAheadProvenanceRepository implements ProvenanceRepository {
     private static final Logger logger = LoggerFactory.getLogger(WriteAheadProvenanceRepository.class);
     static final int BLOCK_SIZE = 1024 * 32;
+    static final int COLUMNAR_BLOCK_SIZE = 1024 * 256;
     public static final String EVENT_CATEGORY = "Provenance Repository";
 
     private final RepositoryConfiguration config;
@@ -100,6 +108,7 @@ public class WriteAheadProvenanceRepository implements ProvenanceRepository {
     private EventReporter eventReporter;
     private Authorizer authorizer;
     private ProvenanceAuthorizableFactory resourceFactory;
+    private AsyncEventRegistrar asyncRegistrar;
 
     /**
      * This constructor exists solely for the use of the Java Service Loader mechanism and should not be used.
@@ -119,10 +128,20 @@ public class WriteAheadProvenanceRepository implements ProvenanceRepository {
     @Override
     public synchronized void initialize(final EventReporter eventReporter, final Authorizer authorizer, final ProvenanceAuthorizableFactory resourceFactory,
         final IdentifierLookup idLookup) throws IOException {
-        final RecordWriterFactory recordWriterFactory = (file, idGenerator, compressed, createToc) -> {
-            final TocWriter tocWriter = createToc ? new StandardTocWriter(TocUtil.getTocFile(file), false, false) : null;
-            return new EventIdFirstSchemaRecordWriter(file, idGenerator, tocWriter, compressed, BLOCK_SIZE, idLookup);
-        };
+        final RecordWriterFactory recordWriterFactory;
+        if (config.isColumnarEventFiles()) {
+            // Columnar Event Files are block-compressed as they are written and always require a Table of Contents to locate their blocks
+            final BlockCodec codec = BlockCodecs.getCodec(config.getColumnarCodec());
+            recordWriterFactory = (file, idGenerator, compressed, createToc) -> {
+                final TocWriter tocWriter = new StandardTocWriter(TocUtil.getTocFile(file), false, false);
+                return new ColumnarRecordWriter(file, idGenerator, tocWriter, codec, COLUMNAR_BLOCK_SIZE);
+            };
+        } else {
+            recordWriterFactory = (file, idGenerator, compressed, createToc) -> {
+                final TocWriter tocWriter = createToc ? new StandardTocWriter(TocUtil.getTocFile(file), false, false) : null;
+                return new EventIdFirstSchemaRecordWriter(file, idGenerator, tocWriter, compressed, BLOCK_SIZE, idLookup);
+            };
+        }
 
         final EventFileManager fileManager = new EventFileManager();
         final RecordReaderFactory recordReaderFactory = (file, logs, maxChars) -> {
@@ -144,8 +163,12 @@ public class WriteAheadProvenanceRepository implements ProvenanceRepository {
 
         eventStore = new PartitionedWriteAheadEventStore(config, recordWriterFactory, recordReaderFactory, eventReporter, fileManager);
 
-        final IndexManager indexManager = new StandardIndexManager(config);
-        eventIndex = new LuceneEventIndex(config, indexManager, eventReporter);
+        if (config.isCompactIndex()) {
+            eventIndex = new CompactEventIndex(config, eventReporter);
+        } else {
+            final IndexManager indexManager = new StandardIndexManager(config);
+            eventIndex = new LuceneEventIndex(config, indexManager, eventReporter);
+        }
 
         this.eventReporter = eventReporter;
         this.authorizer = authorizer;
@@ -154,6 +177,13 @@ public class WriteAheadProvenanceRepository implements ProvenanceRepository {
         eventStore.initialize();
         eventIndex.initialize(eventStore);
 
+        if (config.isAsyncRegistration()) {
+            asyncRegistrar = new AsyncEventRegistrar(this::writeEvents, config.getRegistrationQueueCapacity(), config.getRegistrationThreadCount(),
+                config.isRegistrationWaitForWrite());
+            logger.info("Provenance Events will be registered asynchronously using {} threads and a queue of {} events; registering threads {} wait for events to be written",
+                config.getRegistrationThreadCount(), config.getRegistrationQueueCapacity(), config.isRegistrationWaitForWrite() ? "will" : "will not");
+        }
+
         if (eventIndex.isReindexNecessary()) {
             try {
                 eventStore.reindexLatestEvents(eventIndex);
@@ -178,6 +208,15 @@ public class WriteAheadProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public void registerEvents(final Iterable<ProvenanceEventRecord> events) {
+        final AsyncEventRegistrar registrar = asyncRegistrar;
+        if (registrar == null) {
+            writeEvents(events);
+        } else {
+            registrar.register(events);
+        }
+    }
+
+    private void writeEvents(final Iterable<ProvenanceEventRecord> events) {
         final StorageResult storageResult;
 
         try {
@@ -211,6 +250,13 @@ public class WriteAheadProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public void close() {
+        final AsyncEventRegistrar registrar = asyncRegistrar;
+        if (registrar != null) {
+            // Write any events that are still queued before closing the Event Store and Index
+            registrar.shutdown();
+            logger.info("Asynchronous Provenance Event registration statistics: {}", registrar);
+        }
+
         CloseableUtil.closeQuietly(eventStore, eventIndex);
     }
 
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import java.io.IOException;
+
+/**
+ * A compression algorithm that is applied to each block of a columnar Provenance Event File. The name of the codec is
+ * written to the header of each Event File, so a codec's name and encoding must never change once it has been used to write data.
+ */
+public interface BlockCodec {
+
+    /**
+     * @return the name that identifies this codec in the header of an Event File
+     */
+    String getName();
+
+    /**
+     * Compresses the given data
+     *
+     * @param data the buffer holding the data to compress
+     * @param length the number of bytes at the start of the buffer to compress
+     * @return the compressed data
+     * @throws IOException if unable to compress the data
+     */
+    byte[] compress(byte[] data, int length) throws IOException;
+
+    /**
+     * Decompresses data that was compressed using {@link #compress(byte[], int)}
+     *
+     * @param compressed the compressed data
+     * @param uncompressedLength the number of bytes that the data occupied before it was compressed
+     * @return the decompressed data
+     * @throws IOException if the data could not be decompressed, such as if it is corrupt
+     */
+    byte[] decompress(byte[] compressed, int uncompressedLength) throws IOException;
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.apache.nifi.stream.io.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The {@link BlockCodec}s that are available for columnar Provenance Event Files.
+ */
+public class BlockCodecs {
+    public static final String NONE = "none";
+    public static final String DEFLATE = "deflate";
+    public static final String ZSTD = "zstd";
+
+    private static final Map<String, BlockCodec> codecs;
+
+    static {
+        final Map<String, BlockCodec> codecMap = new LinkedHashMap<>();
+        codecMap.put(NONE, new NoCompressionCodec());
+        codecMap.put(DEFLATE, new DeflateCodec());
+        codecMap.put(ZSTD, new StreamCodec(ZSTD) {
+            @Override
+            protected OutputStream compressionStream(final OutputStream out, final int length) throws IOException {
+                return new ZstdCompressorOutputStream(out);
+            }
+
+            @Override
+            protected InputStream decompressionStream(final InputStream in) throws IOException {
+                return new ZstdCompressorInputStream(in);
+            }
+        });
+
+        codecs = Collections.unmodifiableMap(codecMap);
+    }
+
+    /**
+     * @return the names of all codecs, including those that may not be available in this environment
+     */
+    public static Set<String> getCodecNames() {
+        return codecs.keySet();
+    }
+
+    /**
+     * Returns the codec with the given name
+     *
+     * @param name the name of the codec, ignoring case
+     * @return the codec with the given name
+     * @throws IllegalArgumentException if there is no codec with the given name, or the codec requires a library that is not available.
+     *             Zstandard compression, for instance, requires that the zstd-jni library be added to NiFi's classpath.
+     */
+    public static BlockCodec getCodec(final String name) {
+        final String normalizedName = name == null ? "" : name.trim().toLowerCase();
+        final BlockCodec codec = codecs.get(normalizedName);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown Provenance block codec '" + name + "'; valid values are " + codecs.keySet());
+        }
+
+        if (ZSTD.equals(normalizedName) && !ZstdUtils.isZstdCompressionAvailable()) {
+            throw new IllegalArgumentException("Cannot use the Provenance block codec '" + ZSTD + "' because the zstd-jni library is not available on the classpath");
+        }
+
+        return codec;
+    }
+
+
+    private static class NoCompressionCodec implements BlockCodec {
+        @Override
+        public String getName() {
+            return NONE;
+        }
+
+        @Override
+        public byte[] compress(final byte[] data, final int length) {
+            return Arrays.copyOf(data, length);
+        }
+
+        @Override
+        public byte[] decompress(final byte[] compressed, final int uncompressedLength) throws IOException {
+            if (compressed.length != uncompressedLength) {
+                throw new IOException("Expected block of " + uncompressedLength + " bytes but block contains " + compressed.length + " bytes");
+            }
+
+            return compressed;
+        }
+    }
+
+    private static class DeflateCodec implements BlockCodec {
+        @Override
+        public String getName() {
+            return DEFLATE;
+        }
+
+        @Override
+        public byte[] compress(final byte[] data, final int length) {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(data, 0, length);
+                deflater.finish();
+
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(64, length / 2));
+                final byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    final int len = deflater.deflate(buffer);
+                    baos.write(buffer, 0, len);
+                }
+
+                return baos.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public byte[] decompress(final byte[] compressed, final int uncompressedLength) throws IOException {
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+
+                final byte[] uncompressed = new byte[uncompressedLength];
+                int offset = 0;
+                while (offset < uncompressedLength) {
+                    final int len = inflater.inflate(uncompressed, offset, uncompressedLength - offset);
+                    if (len == 0 && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Expected block of " + uncompressedLength + " bytes but block contains only " + offset + " bytes");
+                    }
+                    offset += len;
+                }
+
+                return uncompressed;
+            } catch (final DataFormatException e) {
+                throw new IOException("Block is not valid Deflate data", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private abstract static class StreamCodec implements BlockCodec {
+        private final String name;
+
+        StreamCodec(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] compress(final byte[] data, final int length) throws IOException {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(64, length / 2));
+            try (final OutputStream out = compressionStream(baos, length)) {
+                out.write(data, 0, length);
+            }
+
+            return baos.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(final byte[] compressed, final int uncompressedLength) throws IOException {
+            final byte[] uncompressed = new byte[uncompressedLength];
+            try (final InputStream in = decompressionStream(new ByteArrayInputStream(compressed))) {
+                StreamUtils.fillBuffer(in, uncompressed);
+            }
+
+            return uncompressed;
+        }
+
+        protected abstract OutputStream compressionStream(OutputStream out, int length) throws IOException;
+
+        protected abstract InputStream decompressionStream(InputStream in) throws IOException;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.ALTERNATE_IDENTIFIER;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.CHILD_UUIDS;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.COLUMN_COUNT;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.COMPONENT_ID;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.COMPONENT_TYPE;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.CONTENT_CLAIM;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.DETAILS;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.EVENT_DURATION;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.EVENT_ID;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.EVENT_TIME;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.EVENT_TYPE;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.FLOWFILE_ENTRY_DATE;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.FLOWFILE_UUID;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.LINEAGE_START_DATE;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.PARENT_UUIDS;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.PREVIOUS_ATTRIBUTES;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.PREVIOUS_CONTENT_CLAIM;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.RELATIONSHIP;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.SOURCE_QUEUE_IDENTIFIER;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.SOURCE_SYSTEM_FLOWFILE_IDENTIFIER;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.TRANSIT_URI;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.UPDATED_ATTRIBUTES;
+import static org.apache.nifi.provenance.columnar.ColumnarBlockEncoder.UUID_BINARY;
+
+/**
+ * Decodes a block that was produced by {@link ColumnarBlockEncoder} back into Provenance Events.
+ */
+final class ColumnarBlockDecoder {
+
+    private ColumnarBlockDecoder() {
+    }
+
+    /**
+     * Decodes the given block
+     *
+     * @param block the uncompressed block
+     * @param filename the name of the Event File that the block belongs to
+     * @param blockOffset the offset of the block within the Event File
+     * @param maxAttributeChars the maximum number of characters to retain for each attribute value
+     * @return the events in the block, in the order in which they were written
+     * @throws IOException if the block is not valid
+     */
+    static List<StandardProvenanceEventRecord> decode(final byte[] block, final String filename, final long blockOffset, final int maxAttributeChars) throws IOException {
+        try {
+            return decodeBlock(block, filename, blockOffset, maxAttributeChars);
+        } catch (final ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Block at offset " + blockOffset + " of Provenance Event File " + filename + " is corrupt", e);
+        }
+    }
+
+    private static List<StandardProvenanceEventRecord> decodeBlock(final byte[] block, final String filename, final long blockOffset, final int maxAttributeChars) throws IOException {
+        final ColumnReader header = new ColumnReader(block, 0, block.length);
+        final int eventCount = (int) header.readVarLong();
+        final long firstEventId = header.readLong();
+        final long firstEventTime = header.readLong();
+
+        final int dictionarySize = (int) header.readVarLong();
+        final String[] dictionary = new String[dictionarySize];
+        for (int i = 0; i < dictionarySize; i++) {
+            dictionary[i] = header.readString();
+        }
+
+        final int[] columnLengths = new int[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columnLengths[i] = (int) header.readVarLong();
+        }
+
+        final ColumnReader[] columns = new ColumnReader[COLUMN_COUNT];
+        int columnOffset = header.position;
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new ColumnReader(block, columnOffset, columnLengths[i]);
+            columnOffset += columnLengths[i];
+        }
+        if (columnOffset != block.length) {
+            throw new IOException("Block at offset " + blockOffset + " of Provenance Event File " + filename + " has " + block.length
+                + " bytes but its columns account for " + columnOffset + " bytes");
+        }
+
+        final List<StandardProvenanceEventRecord> events = new ArrayList<>(eventCount);
+        long eventId = firstEventId;
+        long eventTime = firstEventTime;
+        for (int i = 0; i < eventCount; i++) {
+            eventId += columns[EVENT_ID].readSignedVarLong();
+            eventTime += columns[EVENT_TIME].readSignedVarLong();
+
+            final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder()
+                .setEventId(eventId)
+                .setEventTime(eventTime)
+                .setFlowFileEntryDate(eventTime - columns[FLOWFILE_ENTRY_DATE].readSignedVarLong())
+                .setLineageStartDate(eventTime - columns[LINEAGE_START_DATE].readSignedVarLong())
+                .setEventDuration(columns[EVENT_DURATION].readSignedVarLong())
+                .setEventType(toEventType(columns[EVENT_TYPE].readDictionaryValue(dictionary)))
+                .setComponentId(columns[COMPONENT_ID].readDictionaryValue(dictionary))
+                .setComponentType(columns[COMPONENT_TYPE].readDictionaryValue(dictionary))
+                .setSourceQueueIdentifier(columns[SOURCE_QUEUE_IDENTIFIER].readDictionaryValue(dictionary))
+                .setFlowFileUUID(columns[FLOWFILE_UUID].readUuid());
+
+            final List<String> parentUuids = columns[PARENT_UUIDS].readUuids();
+            if (parentUuids != null) {
+                builder.setParentUuids(parentUuids);
+            }
+            final List<String> childUuids = columns[CHILD_UUIDS].readUuids();
+            if (childUuids != null) {
+                builder.setChildUuids(childUuids);
+            }
+
+            builder.setTransitUri(columns[TRANSIT_URI].readDictionaryValue(dictionary))
+                .setAlternateIdentifierUri(columns[ALTERNATE_IDENTIFIER].readString())
+                .setSourceSystemFlowFileIdentifier(columns[SOURCE_SYSTEM_FLOWFILE_IDENTIFIER].readString())
+                .setDetails(columns[DETAILS].readDictionaryValue(dictionary))
+                .setRelationship(columns[RELATIONSHIP].readDictionaryValue(dictionary));
+
+            final Map<String, String> previousAttributes = columns[PREVIOUS_ATTRIBUTES].readAttributes(dictionary, maxAttributeChars);
+            final Map<String, String> updatedAttributes = columns[UPDATED_ATTRIBUTES].readAttributes(dictionary, maxAttributeChars);
+            builder.setAttributes(previousAttributes == null ? Collections.emptyMap() : previousAttributes,
+                updatedAttributes == null ? Collections.emptyMap() : updatedAttributes);
+
+            final ColumnReader claimColumn = columns[CONTENT_CLAIM];
+            final String container = claimColumn.readDictionaryValue(dictionary);
+            final String section = claimColumn.readDictionaryValue(dictionary);
+            final String identifier = claimColumn.readString();
+            final Long offset = claimColumn.readNullableLong();
+            final long size = claimColumn.readVarLong();
+            builder.setCurrentContentClaim(container, section, identifier, offset, size);
+
+            final ColumnReader previousClaimColumn = columns[PREVIOUS_CONTENT_CLAIM];
+            final String previousContainer = previousClaimColumn.readDictionaryValue(dictionary);
+            final String previousSection = previousClaimColumn.readDictionaryValue(dictionary);
+            final String previousIdentifier = previousClaimColumn.readString();
+            final Long previousOffset = previousClaimColumn.readNullableLong();
+            final Long previousSize = previousClaimColumn.readNullableLong();
+            if (previousSize != null) {
+                builder.setPreviousContentClaim(previousContainer, previousSection, previousIdentifier, previousOffset, previousSize);
+            }
+
+            builder.setStorageLocation(filename, blockOffset);
+            events.add(builder.build());
+        }
+
+        return events;
+    }
+
+    private static ProvenanceEventType toEventType(final String name) {
+        if (name == null) {
+            return ProvenanceEventType.UNKNOWN;
+        }
+
+        try {
+            return ProvenanceEventType.valueOf(name);
+        } catch (final IllegalArgumentException iae) {
+            return ProvenanceEventType.UNKNOWN;
+        }
+    }
+
+    private static String truncate(final String value, final int maxChars) {
+        if (value == null || value.length() <= maxChars) {
+            return value;
+        }
+
+        return value.substring(0, maxChars);
+    }
+
+
+    /**
+     * Reads the primitive encodings written by {@link ColumnarBlockEncoder.ColumnBuffer} from a region of a block
+     */
+    private static final class ColumnReader {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        ColumnReader(final byte[] data, final int offset, final int length) {
+            this.data = data;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        private int read() {
+            if (position >= limit) {
+                throw new ArrayIndexOutOfBoundsException("Attempted to read past the end of a column");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0L;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException("Variable-length integer is longer than 10 bytes");
+        }
+
+        long readSignedVarLong() {
+            final long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        Long readNullableLong() {
+            return read() == 0 ? null : readSignedVarLong();
+        }
+
+        long readLong() {
+            long value = 0L;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | read();
+            }
+            return value;
+        }
+
+        String readString() {
+            final int length = (int) readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > limit - position) {
+                throw new ArrayIndexOutOfBoundsException("String of " + length + " bytes extends past the end of the column");
+            }
+
+            final String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String readDictionaryValue(final String[] dictionary) {
+            final int index = (int) readVarLong();
+            return index == 0 ? null : dictionary[index - 1];
+        }
+
+        String readUuid() {
+            if (read() == UUID_BINARY) {
+                return new UUID(readLong(), readLong()).toString();
+            }
+            return readString();
+        }
+
+        List<String> readUuids() {
+            final int count = (int) readVarLong() - 1;
+            if (count < 0) {
+                return null;
+            }
+
+            final List<String> uuids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                uuids.add(readUuid());
+            }
+            return uuids;
+        }
+
+        Map<String, String> readAttributes(final String[] dictionary, final int maxAttributeChars) {
+            final int count = (int) readVarLong() - 1;
+            if (count < 0) {
+                return null;
+            }
+
+            final Map<String, String> attributes = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                final String key = readDictionaryValue(dictionary);
+                final String value = truncate(readDictionaryValue(dictionary), maxAttributeChars);
+                attributes.put(key, value);
+            }
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <p>
+ * Accumulates Provenance Events into a single block, storing each field of the events in its own column. Values within a column tend to be
+ * very similar to one another, so a block encoded this way compresses far better than the same events serialized one after another:
+ * </p>
+ *
+ * <ul>
+ * <li>Event IDs and Event Times are stored as the difference from the previous event's value, and the FlowFile Entry Date and
+ * Lineage Start Date as the difference from the event's time, all as variable-length integers.</li>
+ * <li>Component IDs, Component Types, Queue IDs, Event Types, Relationships, Transit URIs, Details, Content Claim containers and sections,
+ * and both the keys and values of attributes are stored as indices into a dictionary that holds each distinct value once per block.</li>
+ * <li>UUIDs are stored as 16 bytes rather than 36 characters.</li>
+ * </ul>
+ *
+ * <p>
+ * A block is laid out as: event count, first event ID, first event time, dictionary, the length of each column, and then each column.
+ * </p>
+ *
+ * <b>Not Thread Safe</b>
+ */
+final class ColumnarBlockEncoder {
+    static final int EVENT_ID = 0;
+    static final int EVENT_TIME = 1;
+    static final int FLOWFILE_ENTRY_DATE = 2;
+    static final int LINEAGE_START_DATE = 3;
+    static final int EVENT_DURATION = 4;
+    static final int EVENT_TYPE = 5;
+    static final int COMPONENT_ID = 6;
+    static final int COMPONENT_TYPE = 7;
+    static final int SOURCE_QUEUE_IDENTIFIER = 8;
+    static final int FLOWFILE_UUID = 9;
+    static final int PARENT_UUIDS = 10;
+    static final int CHILD_UUIDS = 11;
+    static final int TRANSIT_URI = 12;
+    static final int ALTERNATE_IDENTIFIER = 13;
+    static final int SOURCE_SYSTEM_FLOWFILE_IDENTIFIER = 14;
+    static final int DETAILS = 15;
+    static final int RELATIONSHIP = 16;
+    static final int PREVIOUS_ATTRIBUTES = 17;
+    static final int UPDATED_ATTRIBUTES = 18;
+    static final int CONTENT_CLAIM = 19;
+    static final int PREVIOUS_CONTENT_CLAIM = 20;
+    static final int COLUMN_COUNT = 21;
+
+    static final int UUID_STRING = 0;
+    static final int UUID_BINARY = 1;
+
+    private final ColumnBuffer[] columns = new ColumnBuffer[COLUMN_COUNT];
+    private final Map<String, Integer> dictionaryIndices = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private int dictionaryBytes = 0;
+
+    private int eventCount = 0;
+    private long firstEventId;
+    private long firstEventTime;
+    private long previousEventId;
+    private long previousEventTime;
+
+    ColumnarBlockEncoder() {
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new ColumnBuffer();
+        }
+    }
+
+    /**
+     * Adds the given event to the block
+     *
+     * @param event the event to add
+     * @param eventId the ID of the event
+     * @return the number of bytes that the event added to the block, before compression
+     */
+    int addEvent(final ProvenanceEventRecord event, final long eventId) {
+        final int sizeBefore = getEncodedSize();
+
+        if (eventCount == 0) {
+            firstEventId = eventId;
+            firstEventTime = event.getEventTime();
+            previousEventId = eventId;
+            previousEventTime = firstEventTime;
+        }
+
+        final long eventTime = event.getEventTime();
+        columns[EVENT_ID].writeSignedVarLong(eventId - previousEventId);
+        columns[EVENT_TIME].writeSignedVarLong(eventTime - previousEventTime);
+        columns[FLOWFILE_ENTRY_DATE].writeSignedVarLong(eventTime - event.getFlowFileEntryDate());
+        columns[LINEAGE_START_DATE].writeSignedVarLong(eventTime - event.getLineageStartDate());
+        columns[EVENT_DURATION].writeSignedVarLong(event.getEventDuration());
+        previousEventId = eventId;
+        previousEventTime = eventTime;
+
+        writeDictionaryValue(columns[EVENT_TYPE], event.getEventType().name());
+        writeDictionaryValue(columns[COMPONENT_ID], event.getComponentId());
+        writeDictionaryValue(columns[COMPONENT_TYPE], event.getComponentType());
+        writeDictionaryValue(columns[SOURCE_QUEUE_IDENTIFIER], event.getSourceQueueIdentifier());
+
+        writeUuid(columns[FLOWFILE_UUID], event.getFlowFileUuid());
+        writeUuids(columns[PARENT_UUIDS], event.getParentUuids());
+        writeUuids(columns[CHILD_UUIDS], event.getChildUuids());
+
+        writeDictionaryValue(columns[TRANSIT_URI], event.getTransitUri());
+        columns[ALTERNATE_IDENTIFIER].writeString(event.getAlternateIdentifierUri());
+        columns[SOURCE_SYSTEM_FLOWFILE_IDENTIFIER].writeString(event.getSourceSystemFlowFileIdentifier());
+        writeDictionaryValue(columns[DETAILS], event.getDetails());
+        writeDictionaryValue(columns[RELATIONSHIP], event.getRelationship());
+
+        writeAttributes(columns[PREVIOUS_ATTRIBUTES], event.getPreviousAttributes());
+        writeAttributes(columns[UPDATED_ATTRIBUTES], event.getUpdatedAttributes());
+
+        final ColumnBuffer claimColumn = columns[CONTENT_CLAIM];
+        writeDictionaryValue(claimColumn, event.getContentClaimContainer());
+        writeDictionaryValue(claimColumn, event.getContentClaimSection());
+        claimColumn.writeString(event.getContentClaimIdentifier());
+        claimColumn.writeNullableLong(event.getContentClaimOffset());
+        claimColumn.writeVarLong(event.getFileSize());
+
+        final ColumnBuffer previousClaimColumn = columns[PREVIOUS_CONTENT_CLAIM];
+        writeDictionaryValue(previousClaimColumn, event.getPreviousContentClaimContainer());
+        writeDictionaryValue(previousClaimColumn, event.getPreviousContentClaimSection());
+        previousClaimColumn.writeString(event.getPreviousContentClaimIdentifier());
+        previousClaimColumn.writeNullableLong(event.getPreviousContentClaimOffset());
+        previousClaimColumn.writeNullableLong(event.getPreviousFileSize());
+
+        eventCount++;
+        return getEncodedSize() - sizeBefore;
+    }
+
+    /**
+     * @return the number of events in the block
+     */
+    int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the approximate number of bytes that the block will occupy once encoded, before compression
+     */
+    int getEncodedSize() {
+        int size = dictionaryBytes;
+        for (final ColumnBuffer column : columns) {
+            size += column.size();
+        }
+        return size;
+    }
+
+    /**
+     * Encodes the block and resets this encoder so that it may be used for the next block
+     *
+     * @return the encoded block
+     */
+    ColumnBuffer encode() {
+        final ColumnBuffer block = snapshot();
+        reset();
+        return block;
+    }
+
+    /**
+     * Encodes the events that have been added so far without resetting this encoder, so that more events may still be added to the block
+     *
+     * @return the encoded block
+     */
+    ColumnBuffer snapshot() {
+        final ColumnBuffer block = new ColumnBuffer(getEncodedSize() + 64 + COLUMN_COUNT * 5);
+        block.writeVarLong(eventCount);
+        block.writeLong(firstEventId);
+        block.writeLong(firstEventTime);
+
+        block.writeVarLong(dictionary.size());
+        for (final String value : dictionary) {
+            block.writeString(value);
+        }
+
+        for (final ColumnBuffer column : columns) {
+            block.writeVarLong(column.size());
+        }
+        for (final ColumnBuffer column : columns) {
+            block.write(column.getBuffer(), 0, column.size());
+        }
+
+        return block;
+    }
+
+    private void reset() {
+        for (final ColumnBuffer column : columns) {
+            column.reset();
+        }
+        dictionaryIndices.clear();
+        dictionary.clear();
+        dictionaryBytes = 0;
+        eventCount = 0;
+    }
+
+    private void writeDictionaryValue(final ColumnBuffer column, final String value) {
+        if (value == null) {
+            column.writeVarLong(0);
+            return;
+        }
+
+        Integer index = dictionaryIndices.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndices.put(value, index);
+            dictionaryBytes += value.length() + 1;
+        }
+
+        column.writeVarLong(index + 1);
+    }
+
+    private void writeAttributes(final ColumnBuffer column, final Map<String, String> attributes) {
+        if (attributes == null) {
+            column.writeVarLong(0);
+            return;
+        }
+
+        column.writeVarLong(attributes.size() + 1);
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            writeDictionaryValue(column, entry.getKey());
+            writeDictionaryValue(column, entry.getValue());
+        }
+    }
+
+    private void writeUuids(final ColumnBuffer column, final List<String> uuids) {
+        if (uuids == null) {
+            column.writeVarLong(0);
+            return;
+        }
+
+        column.writeVarLong(uuids.size() + 1);
+        for (final String uuid : uuids) {
+            writeUuid(column, uuid);
+        }
+    }
+
+    private void writeUuid(final ColumnBuffer column, final String value) {
+        final UUID uuid = toUuid(value);
+        if (uuid == null) {
+            column.write(UUID_STRING);
+            column.writeString(value);
+        } else {
+            column.write(UUID_BINARY);
+            column.writeLong(uuid.getMostSignificantBits());
+            column.writeLong(uuid.getLeastSignificantBits());
+        }
+    }
+
+    /**
+     * @return the UUID that the given value represents, if the value is exactly the canonical (lower-case) form of a UUID, <code>null</code> otherwise
+     */
+    private static UUID toUuid(final String value) {
+        if (value == null || value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-' || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return null;
+        }
+
+        final UUID uuid;
+        try {
+            uuid = UUID.fromString(value);
+        } catch (final IllegalArgumentException iae) {
+            return null;
+        }
+
+        return uuid.toString().equals(value) ? uuid : null;
+    }
+
+
+    /**
+     * A growable byte buffer with methods for writing the primitive encodings that are used by columnar blocks
+     */
+    static final class ColumnBuffer extends ByteArrayOutputStream {
+        ColumnBuffer() {
+            super(256);
+        }
+
+        ColumnBuffer(final int initialSize) {
+            super(initialSize);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0L) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSignedVarLong(final long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeNullableLong(final Long value) {
+            if (value == null) {
+                write(0);
+            } else {
+                write(1);
+                writeSignedVarLong(value);
+            }
+        }
+
+        void writeLong(final long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        void writeString(final String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.stream.io.ByteCountingInputStream;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads Provenance Event Files that were written by {@link ColumnarRecordWriter}. Blocks are read, decompressed, and decoded
+ * only as events are requested, and the Table of Contents is used to skip directly to the block that holds a requested event.
+ * If the file is still being written to, the events of the block that the writer has not yet written are obtained from the writer
+ * once all of the blocks in the file have been read.
+ */
+public class ColumnarRecordReader implements RecordReader {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarRecordReader.class);
+
+    private final ByteCountingInputStream byteCountingIn;
+    private final DataInputStream dis;
+    private final String filename;
+    private final TocReader tocReader;
+    private final int maxAttributeChars;
+    private final BlockCodec codec;
+    private final ColumnarRecordWriter activeWriter;
+
+    private List<StandardProvenanceEventRecord> currentBlock = Collections.emptyList();
+    private long currentBlockOffset = -1L;
+    private int nextEventIndex = 0;
+    private StandardProvenanceEventRecord pushbackEvent = null;
+    private boolean openBlockRead = false;
+
+    public ColumnarRecordReader(final InputStream in, final String filename, final TocReader tocReader, final int maxAttributeChars) throws IOException {
+        this(in, filename, tocReader, maxAttributeChars, null);
+    }
+
+    /**
+     * @param in the stream to read the Provenance Event File from
+     * @param filename the name of the Provenance Event File
+     * @param tocReader the Table of Contents of the file
+     * @param maxAttributeChars the maximum number of characters to retain for each attribute value
+     * @param activeWriter the writer that is writing to the file, or <code>null</code> if the file is complete
+     */
+    public ColumnarRecordReader(final InputStream in, final String filename, final TocReader tocReader, final int maxAttributeChars,
+                                final ColumnarRecordWriter activeWriter) throws IOException {
+        logger.trace("Creating Columnar RecordReader for {}", filename);
+
+        if (tocReader == null) {
+            throw new IOException("Cannot read Provenance Event File " + filename + " because it is a columnar Event File and no Table-of-Contents file was found for it");
+        }
+
+        this.byteCountingIn = new ByteCountingInputStream(new BufferedInputStream(in, 65536));
+        this.dis = new DataInputStream(byteCountingIn);
+        this.filename = filename;
+        this.tocReader = tocReader;
+        this.maxAttributeChars = maxAttributeChars;
+        this.activeWriter = activeWriter;
+
+        final String serializationName = dis.readUTF();
+        if (!ColumnarRecordWriter.SERIALIZATION_NAME.equals(serializationName)) {
+            throw new IOException("Cannot read Provenance Event File " + filename + " as a columnar Event File because it was written by " + serializationName);
+        }
+
+        final int serializationVersion = dis.readInt();
+        if (serializationVersion > ColumnarRecordWriter.SERIALIZATION_VERSION) {
+            throw new IOException("Unable to read Provenance Event File " + filename + " because its serialization version is " + serializationVersion
+                + " but this version of NiFi supports only up to version " + ColumnarRecordWriter.SERIALIZATION_VERSION);
+        }
+
+        final String codecName = dis.readUTF();
+        try {
+            this.codec = BlockCodecs.getCodec(codecName);
+        } catch (final IllegalArgumentException iae) {
+            throw new IOException("Unable to read Provenance Event File " + filename + " because its blocks cannot be decompressed", iae);
+        }
+
+        dis.readLong(); // first event id
+    }
+
+    /**
+     * Reads the next block from the stream, replacing the current block
+     *
+     * @return <code>true</code> if a block was read, <code>false</code> if there are no more complete blocks
+     * @throws IOException if unable to read or decode the block
+     */
+    private boolean readNextBlock() throws IOException {
+        final long blockOffset = byteCountingIn.getBytesConsumed();
+
+        if (activeWriter != null) {
+            if (openBlockRead) {
+                return false;
+            }
+
+            // Every block before the offset of the open block has been written to the file in full. Once we reach that offset, the
+            // remaining events are those of the open block, so we obtain them from the writer rather than from the file.
+            final ColumnarRecordWriter.OpenBlock openBlock = activeWriter.getOpenBlock();
+            if (openBlock != null && blockOffset >= openBlock.getOffset()) {
+                if (openBlock.getEvents() == null) {
+                    return false;
+                }
+
+                currentBlock = ColumnarBlockDecoder.decode(openBlock.getEvents(), filename, blockOffset, maxAttributeChars);
+                currentBlockOffset = blockOffset;
+                nextEventIndex = 0;
+                openBlockRead = true;
+                return true;
+            }
+        }
+
+        final byte[] compressed;
+        final int uncompressedLength;
+        try {
+            uncompressedLength = dis.readInt();
+            final int compressedLength = dis.readInt();
+            compressed = new byte[compressedLength];
+            StreamUtils.fillBuffer(dis, compressed);
+        } catch (final EOFException eof) {
+            // This happens at the end of the file or if NiFi was stopped while a block was being written. Any partially
+            // written block can be ignored, as its events will not have been acknowledged.
+            if (byteCountingIn.getBytesConsumed() > blockOffset) {
+                logger.warn("Provenance Event File {} ends with an incomplete block at offset {}; events in this block will be ignored", filename, blockOffset);
+            }
+            return false;
+        }
+
+        final byte[] uncompressed = codec.decompress(compressed, uncompressedLength);
+        currentBlock = ColumnarBlockDecoder.decode(uncompressed, filename, blockOffset, maxAttributeChars);
+        currentBlockOffset = blockOffset;
+        nextEventIndex = 0;
+        return true;
+    }
+
+    private boolean isCurrentBlockExhausted() {
+        return nextEventIndex >= currentBlock.size();
+    }
+
+    @Override
+    public StandardProvenanceEventRecord nextRecord() throws IOException {
+        if (pushbackEvent != null) {
+            final StandardProvenanceEventRecord toReturn = pushbackEvent;
+            pushbackEvent = null;
+            return toReturn;
+        }
+
+        while (isCurrentBlockExhausted()) {
+            if (!readNextBlock()) {
+                return null;
+            }
+        }
+
+        return currentBlock.get(nextEventIndex++);
+    }
+
+    @Override
+    public void skip(final long bytesToSkip) throws IOException {
+        throw new IOException("Cannot skip by byte offset in columnar Provenance Event File " + filename + "; events must be located by block");
+    }
+
+    @Override
+    public void skipTo(final long position) throws IOException {
+        throw new IOException("Cannot skip to a byte offset in columnar Provenance Event File " + filename + "; events must be located by block");
+    }
+
+    @Override
+    public void skipToBlock(final int blockIndex) throws IOException {
+        if (blockIndex < 0) {
+            throw new IllegalArgumentException("Cannot skip to block " + blockIndex + " because the value is negative");
+        }
+
+        final long offset = tocReader.getBlockOffset(blockIndex);
+        if (offset < 0) {
+            throw new IOException("Unable to find block " + blockIndex + " in Provenance Log " + filename);
+        }
+
+        if (offset == currentBlockOffset) {
+            return;
+        }
+
+        final long curOffset = byteCountingIn.getBytesConsumed();
+        final long bytesToSkip = offset - curOffset;
+        if (bytesToSkip < 0) {
+            throw new IOException("Cannot skip to block " + blockIndex + " of Provenance Log " + filename + " because the reader is already at byte offset "
+                + curOffset + ", beyond the start of the block at offset " + offset);
+        }
+
+        try {
+            StreamUtils.skip(dis, bytesToSkip);
+            logger.debug("Skipped stream from offset {} to {} ({} bytes skipped)", curOffset, offset, bytesToSkip);
+        } catch (final EOFException eof) {
+            throw new EOFException("Attempted to skip to byte offset " + offset + " for " + filename + " but file does not have that many bytes (TOC Reader=" + getTocReader() + ")");
+        }
+
+        currentBlock = Collections.emptyList();
+        currentBlockOffset = -1L;
+        nextEventIndex = 0;
+        pushbackEvent = null;
+    }
+
+    @Override
+    public Optional<ProvenanceEventRecord> skipToEvent(final long eventId) throws IOException {
+        if (pushbackEvent != null) {
+            if (pushbackEvent.getEventId() >= eventId) {
+                return Optional.of(pushbackEvent);
+            }
+            pushbackEvent = null;
+        }
+
+        final Integer blockIndex = tocReader.getBlockIndexForEventId(eventId);
+        if (blockIndex != null) {
+            final long blockOffset = tocReader.getBlockOffset(blockIndex);
+            if (blockOffset >= byteCountingIn.getBytesConsumed()) {
+                skipToBlock(blockIndex);
+            }
+        }
+
+        StandardProvenanceEventRecord event;
+        while ((event = nextRecord()) != null) {
+            if (event.getEventId() >= eventId) {
+                pushbackEvent = event;
+                return Optional.of(event);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public int getBlockIndex() {
+        final long offset = isCurrentBlockExhausted() ? byteCountingIn.getBytesConsumed() : currentBlockOffset;
+        return tocReader.getBlockIndex(offset);
+    }
+
+    @Override
+    public boolean isBlockIndexAvailable() {
+        return true;
+    }
+
+    @Override
+    public TocReader getTocReader() {
+        return tocReader;
+    }
+
+    @Override
+    public long getBytesConsumed() {
+        return byteCountingIn.getBytesConsumed();
+    }
+
+    @Override
+    public long getMaxEventId() throws IOException {
+        // The last block in the Table of Contents may never have been written if NiFi was stopped before the block was flushed,
+        // so we start with the block before it.
+        final int lastBlockIndex = tocReader.getBlockIndex(tocReader.getLastBlockOffset());
+        final int startBlockIndex = Math.max(0, lastBlockIndex - 1);
+        final long startOffset = tocReader.getBlockOffset(startBlockIndex);
+        if (startOffset >= byteCountingIn.getBytesConsumed()) {
+            skipToBlock(startBlockIndex);
+        }
+
+        ProvenanceEventRecord record;
+        ProvenanceEventRecord lastRecord = null;
+        while ((record = nextRecord()) != null) {
+            lastRecord = record;
+        }
+
+        return lastRecord == null ? -1L : lastRecord.getEventId();
+    }
+
+    @Override
+    public boolean isData() {
+        if (pushbackEvent != null || !isCurrentBlockExhausted()) {
+            return true;
+        }
+
+        try {
+            while (isCurrentBlockExhausted()) {
+                if (!readNextBlock()) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (final IOException ioe) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        logger.trace("Closing Record Reader for {}", filename);
+
+        try {
+            dis.close();
+        } finally {
+            tocReader.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarRecordReader[file=" + filename + ", codec=" + codec.getName() + "]";
+    }
+}
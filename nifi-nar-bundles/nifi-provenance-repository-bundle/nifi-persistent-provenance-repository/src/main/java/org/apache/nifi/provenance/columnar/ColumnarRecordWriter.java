@@ -0,0 +1,340 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import org.apache.nifi.provenance.AbstractRecordWriter;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.StorageSummary;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.provenance.util.NamedThreadFactory;
+import org.apache.nifi.stream.io.ByteCountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A Record Writer that buffers events in memory and writes them to disk as blocks, each of which holds its events in the
+ * columnar layout described by {@link ColumnarBlockEncoder} and is compressed using a {@link BlockCodec}. The offset of each
+ * block is recorded in the Table of Contents, so that readers are able to seek directly to the block that holds a given event.
+ * </p>
+ *
+ * <p>
+ * A file is laid out as a header (serialization name, serialization version, codec name, first event id) followed by blocks.
+ * Each block is written as the number of bytes that the block occupies before compression, the number of bytes that it occupies
+ * after compression, and the compressed block.
+ * </p>
+ *
+ * <p>
+ * The Repository flushes the writer after every batch of events, which often holds only a few events. Writing a block on each flush
+ * would leave too few events in a block for the columnar layout and the dictionaries to be of much use, so the current block is kept
+ * open across flushes. It is written once it reaches the configured block size, once it has been open for {@link #MAX_OPEN_BLOCK_MILLIS}
+ * milliseconds, when the writer is synced, and when the writer is closed. A block that has reached that age is written by the next call
+ * to {@link #flush()} or, if no more events are added to the writer, by a background thread that checks the open block of every active
+ * writer, so the events that the Repository has already indexed are not held only in memory for longer than about that age. Until the
+ * block is written, a {@link ColumnarRecordReader} that reads the file obtains the events of the open block from this writer via
+ * {@link #getActiveWriter(File)}, so events are readable as soon as the Repository has flushed them.
+ * </p>
+ */
+public class ColumnarRecordWriter extends AbstractRecordWriter {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarRecordWriter.class);
+
+    public static final String SERIALIZATION_NAME = "ColumnarRecordWriter";
+    public static final int SERIALIZATION_VERSION = 1;
+
+    static final long MAX_OPEN_BLOCK_MILLIS = 1000L;
+    private static final long MAX_OPEN_BLOCK_NANOS = TimeUnit.MILLISECONDS.toNanos(MAX_OPEN_BLOCK_MILLIS);
+
+    private static final ConcurrentMap<File, ColumnarRecordWriter> activeWriters = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService openBlockExecutor = Executors.newSingleThreadScheduledExecutor(
+        new NamedThreadFactory("Write Columnar Provenance Blocks", true));
+
+    static {
+        final long checkMillis = MAX_OPEN_BLOCK_MILLIS / 4;
+        openBlockExecutor.scheduleWithFixedDelay(ColumnarRecordWriter::writeExpiredBlocks, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private final FileOutputStream fos;
+    private final ByteCountingOutputStream rawOutStream;
+    private final DataOutputStream out;
+    private final AtomicLong idGenerator;
+    private final BlockCodec codec;
+    private final int uncompressedBlockSize;
+    private final ColumnarBlockEncoder encoder = new ColumnarBlockEncoder();
+
+    private int recordCount = 0;
+    private long blockStartNanos;
+
+    public ColumnarRecordWriter(final File file, final AtomicLong idGenerator, final TocWriter tocWriter, final BlockCodec codec, final int uncompressedBlockSize) throws IOException {
+        super(file, tocWriter);
+        logger.trace("Creating Columnar Record Writer for {} using {} compression", file.getName(), codec.getName());
+
+        if (tocWriter == null) {
+            throw new IllegalArgumentException("A Table of Contents Writer is required in order to write columnar Provenance Event Files");
+        }
+
+        this.fos = new FileOutputStream(file);
+        this.rawOutStream = new ByteCountingOutputStream(new BufferedOutputStream(fos, 65536));
+        this.out = new DataOutputStream(rawOutStream);
+        this.idGenerator = idGenerator;
+        this.codec = codec;
+        this.uncompressedBlockSize = uncompressedBlockSize;
+
+        activeWriters.put(file.getAbsoluteFile(), this);
+    }
+
+    /**
+     * Returns the writer that is currently writing to the given file, if any, so that a reader is able to obtain the events that have not
+     * yet been written to the file
+     *
+     * @param file the Provenance Event File
+     * @return the writer that is writing to the file, or <code>null</code> if the file is not being written to
+     */
+    public static ColumnarRecordWriter getActiveWriter(final File file) {
+        return activeWriters.get(file.getAbsoluteFile());
+    }
+
+    @Override
+    public synchronized void writeHeader(final long firstEventId) throws IOException {
+        if (isDirty()) {
+            throw new IOException("Cannot update Provenance Repository because this Record Writer has already failed to write to the Repository");
+        }
+
+        try {
+            out.writeUTF(SERIALIZATION_NAME);
+            out.writeInt(SERIALIZATION_VERSION);
+            out.writeUTF(codec.getName());
+            out.writeLong(firstEventId);
+            out.flush();
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public synchronized StorageSummary writeRecord(final ProvenanceEventRecord record) throws IOException {
+        if (isDirty()) {
+            throw new IOException("Cannot update Provenance Repository because this Record Writer has already failed to write to the Repository");
+        }
+
+        try {
+            final long recordIdentifier = record.getEventId() == -1L ? idGenerator.getAndIncrement() : record.getEventId();
+
+            final TocWriter tocWriter = getTocWriter();
+            if (encoder.getEventCount() == 0) {
+                tocWriter.addBlockOffset(rawOutStream.getBytesWritten(), recordIdentifier);
+                blockStartNanos = System.nanoTime();
+            }
+
+            final int serializedLength = encoder.addEvent(record, recordIdentifier);
+            recordCount++;
+
+            final Integer blockIndex = tocWriter.getCurrentBlockIndex();
+            final long bytesWritten = getBytesWritten();
+            if (encoder.getEncodedSize() >= uncompressedBlockSize) {
+                writeBlock();
+            }
+
+            return new StorageSummary(recordIdentifier, getStorageLocation(), blockIndex, serializedLength, bytesWritten);
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (encoder.getEventCount() == 0) {
+            return;
+        }
+
+        final ColumnarBlockEncoder.ColumnBuffer block = encoder.encode();
+        final byte[] compressed = codec.compress(block.getBuffer(), block.size());
+
+        out.writeInt(block.size());
+        out.writeInt(compressed.length);
+        out.write(compressed);
+
+        // Every complete block is flushed to the file so that a reader can rely on all bytes before the open block being present in the file
+        out.flush();
+    }
+
+    /**
+     * Returns the events that have been added to the block that is currently open, encoded but not compressed, along with the offset at which
+     * the block will be written. Every block that precedes that offset has been written to the file in full.
+     *
+     * @return the open block, or <code>null</code> if this writer has been closed or has failed
+     */
+    synchronized OpenBlock getOpenBlock() {
+        if (isClosed() || isDirty()) {
+            return null;
+        }
+
+        final byte[] events;
+        if (encoder.getEventCount() == 0) {
+            events = null;
+        } else {
+            final ColumnarBlockEncoder.ColumnBuffer block = encoder.snapshot();
+            events = block.toByteArray();
+        }
+
+        return new OpenBlock(rawOutStream.getBytesWritten(), events);
+    }
+
+    private static void writeExpiredBlocks() {
+        for (final ColumnarRecordWriter writer : activeWriters.values()) {
+            try {
+                writer.writeBlockIfExpired();
+            } catch (final Exception e) {
+                logger.error("Failed to write open block of Provenance Events to {}", writer.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Writes the open block if it holds events and has been open for at least {@link #MAX_OPEN_BLOCK_MILLIS} milliseconds
+     *
+     * @return <code>true</code> if the block was written, <code>false</code> otherwise
+     * @throws IOException if unable to write the block
+     */
+    synchronized boolean writeBlockIfExpired() throws IOException {
+        if (isClosed() || isDirty() || encoder.getEventCount() == 0 || System.nanoTime() - blockStartNanos < MAX_OPEN_BLOCK_NANOS) {
+            return false;
+        }
+
+        try {
+            writeBlock();
+            return true;
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public synchronized long getBytesWritten() {
+        return rawOutStream.getBytesWritten() + encoder.getEncodedSize();
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        // If dirty, the block may hold a partially encoded event, so we must not write it out.
+        if (isDirty()) {
+            return;
+        }
+
+        try {
+            if (isClosed() || System.nanoTime() - blockStartNanos >= MAX_OPEN_BLOCK_NANOS) {
+                writeBlock();
+            }
+            out.flush();
+        } catch (final IOException ioe) {
+            markDirty();
+            throw ioe;
+        }
+    }
+
+    @Override
+    public synchronized void sync() throws IOException {
+        // Syncing guarantees that events are on disk, so the open block must be written first. If dirty, the block may hold a
+        // partially encoded event, so we must not write it out.
+        if (!isDirty()) {
+            try {
+                writeBlock();
+                out.flush();
+            } catch (final IOException ioe) {
+                markDirty();
+                throw ioe;
+            }
+        }
+
+        super.sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            activeWriters.remove(getFile().getAbsoluteFile(), this);
+        }
+    }
+
+    @Override
+    public synchronized int getRecordsWritten() {
+        return recordCount;
+    }
+
+    @Override
+    protected synchronized OutputStream getBufferedOutputStream() {
+        return out;
+    }
+
+    @Override
+    protected synchronized OutputStream getUnderlyingOutputStream() {
+        return fos;
+    }
+
+    @Override
+    protected synchronized void syncUnderlyingOutputStream() throws IOException {
+        fos.getFD().sync();
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnarRecordWriter[file=" + getFile() + ", codec=" + codec.getName() + "]";
+    }
+
+    /**
+     * A block that has not yet been written to the file
+     */
+    static final class OpenBlock {
+        private final long offset;
+        private final byte[] events;
+
+        private OpenBlock(final long offset, final byte[] events) {
+            this.offset = offset;
+            this.events = events;
+        }
+
+        /**
+         * @return the offset in the file at which the block will be written
+         */
+        long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the encoded, uncompressed events of the block, or <code>null</code> if the block holds no events
+         */
+        byte[] getEvents() {
+            return events;
+        }
+    }
+}
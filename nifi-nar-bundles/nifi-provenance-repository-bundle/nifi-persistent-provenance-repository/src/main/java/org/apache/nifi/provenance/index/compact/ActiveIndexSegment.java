@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.search.SearchableField;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The segment of a partition to which newly indexed events are added. The segment is held entirely in memory until it is
+ * {@link #persist(File) persisted}, after which it is replaced by a {@link PersistedIndexSegment}.
+ */
+final class ActiveIndexSegment implements IndexSegment {
+    private static final long[] EMPTY = new long[0];
+
+    private final LongList eventIds = new LongList();
+    private final LongList identifierHashes = new LongList();
+    private final LongList identifierEventIds = new LongList();
+    private final Map<SearchableField, Map<String, LongList>> postings = new HashMap<>();
+
+    private long minEventId = Long.MAX_VALUE;
+    private long maxEventId = -1L;
+    private long minEventTime = Long.MAX_VALUE;
+    private long maxEventTime = -1L;
+
+    ActiveIndexSegment() {
+        for (final SearchableField field : SegmentFormat.POSTING_FIELDS) {
+            postings.put(field, new HashMap<>());
+        }
+    }
+
+    synchronized void addEvent(final ProvenanceEventRecord event, final long eventId) {
+        eventIds.add(eventId);
+        minEventId = Math.min(minEventId, eventId);
+        maxEventId = Math.max(maxEventId, eventId);
+        minEventTime = Math.min(minEventTime, event.getEventTime());
+        maxEventTime = Math.max(maxEventTime, event.getEventTime());
+
+        for (final String identifier : SegmentFormat.getLineageIdentifiers(event)) {
+            identifierHashes.add(SegmentFormat.hashIdentifier(identifier));
+            identifierEventIds.add(eventId);
+        }
+
+        for (final Map.Entry<SearchableField, Map<String, LongList>> entry : postings.entrySet()) {
+            final String term = SegmentFormat.getPostingTerm(event, entry.getKey());
+            if (term != null) {
+                entry.getValue().computeIfAbsent(term, key -> new LongList()).add(eventId);
+            }
+        }
+    }
+
+    @Override
+    public synchronized long getMinEventId() {
+        return minEventId;
+    }
+
+    @Override
+    public synchronized long getMaxEventId() {
+        return maxEventId;
+    }
+
+    @Override
+    public synchronized long getMinEventTime() {
+        return minEventTime;
+    }
+
+    @Override
+    public synchronized long getMaxEventTime() {
+        return maxEventTime;
+    }
+
+    @Override
+    public synchronized int getEventCount() {
+        return eventIds.size();
+    }
+
+    @Override
+    public synchronized long[] getEventIds() {
+        return eventIds.toSortedArray();
+    }
+
+    @Override
+    public synchronized long[] getEventIds(final SearchableField field, final String term) {
+        final Map<String, LongList> fieldPostings = postings.get(field);
+        if (fieldPostings == null) {
+            throw new IllegalArgumentException("Field " + field + " is not indexed by the Provenance Index Segment");
+        }
+
+        final LongList matching = fieldPostings.get(term);
+        return matching == null ? EMPTY : matching.toSortedArray();
+    }
+
+    @Override
+    public synchronized long[] getEventIdsForIdentifiers(final Collection<String> identifiers) {
+        final Set<Long> hashes = new HashSet<>(identifiers.size());
+        for (final String identifier : identifiers) {
+            hashes.add(SegmentFormat.hashIdentifier(identifier));
+        }
+
+        final LongList matching = new LongList();
+        for (int i = 0; i < identifierHashes.size(); i++) {
+            if (hashes.contains(identifierHashes.get(i))) {
+                matching.add(identifierEventIds.get(i));
+            }
+        }
+
+        return distinct(matching.toSortedArray());
+    }
+
+    @Override
+    public long getSize() {
+        return 0L;
+    }
+
+    /**
+     * Writes the segment to the given file and returns a segment that reads from that file. The file is first written to a temporary file
+     * and synced to disk before being renamed, so that a segment file that exists is always complete.
+     *
+     * @param file the file to write to
+     * @return a segment that is backed by the given file
+     * @throws IOException if unable to write the segment
+     */
+    synchronized PersistedIndexSegment persist(final File file) throws IOException {
+        final long[] sortedEventIds = eventIds.toSortedArray();
+        final ByteArrayOutputStream eventIdBytes = new ByteArrayOutputStream(sortedEventIds.length * 2);
+        try (final DataOutputStream out = new DataOutputStream(eventIdBytes)) {
+            SegmentFormat.writeEventIds(out, sortedEventIds);
+        }
+
+        final ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(postingBytes)) {
+            out.writeInt(postings.size());
+            for (final Map.Entry<SearchableField, Map<String, LongList>> fieldEntry : postings.entrySet()) {
+                out.writeUTF(fieldEntry.getKey().getSearchableFieldName());
+                out.writeInt(fieldEntry.getValue().size());
+                for (final Map.Entry<String, LongList> termEntry : fieldEntry.getValue().entrySet()) {
+                    final long[] termEventIds = termEntry.getValue().toSortedArray();
+                    out.writeUTF(termEntry.getKey());
+                    out.writeInt(termEventIds.length);
+                    SegmentFormat.writeEventIds(out, termEventIds);
+                }
+            }
+        }
+
+        // Sort the identifier entries by hash so that they can be binary searched.
+        final int identifierCount = identifierHashes.size();
+        final Integer[] order = new Integer[identifierCount];
+        for (int i = 0; i < identifierCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            final int hashComparison = Long.compare(identifierHashes.get(a), identifierHashes.get(b));
+            return hashComparison == 0 ? Long.compare(identifierEventIds.get(a), identifierEventIds.get(b)) : hashComparison;
+        });
+
+        final BloomFilter bloomFilter = BloomFilter.create(identifierCount);
+        for (int i = 0; i < identifierCount; i++) {
+            bloomFilter.add(identifierHashes.get(i));
+        }
+
+        final long eventIdsOffset = SegmentFormat.HEADER_LENGTH + bloomFilter.getSerializedLength();
+        final long identifiersOffset = eventIdsOffset + eventIdBytes.size();
+        final long postingsOffset = identifiersOffset + (long) identifierCount * SegmentFormat.IDENTIFIER_ENTRY_LENGTH;
+
+        final File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (final FileOutputStream fos = new FileOutputStream(tempFile);
+             final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536))) {
+
+            out.writeInt(SegmentFormat.VERSION);
+            out.writeLong(minEventId);
+            out.writeLong(maxEventId);
+            out.writeLong(minEventTime);
+            out.writeLong(maxEventTime);
+            out.writeInt(sortedEventIds.length);
+            out.writeLong(eventIdsOffset);
+            out.writeInt(eventIdBytes.size());
+            out.writeLong(identifiersOffset);
+            out.writeInt(identifierCount);
+            out.writeLong(postingsOffset);
+            out.writeInt(postingBytes.size());
+
+            bloomFilter.write(out);
+            eventIdBytes.writeTo(out);
+            for (final Integer index : order) {
+                out.writeLong(identifierHashes.get(index));
+                out.writeLong(identifierEventIds.get(index));
+            }
+            postingBytes.writeTo(out);
+
+            out.flush();
+            fos.getFD().sync();
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return new PersistedIndexSegment(file, minEventId, maxEventId, minEventTime, maxEventTime, sortedEventIds.length, bloomFilter,
+            eventIdsOffset, eventIdBytes.size(), identifiersOffset, identifierCount, postingsOffset, postingBytes.size());
+    }
+
+    static long[] distinct(final long[] sorted) {
+        if (sorted.length < 2) {
+            return sorted;
+        }
+
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[count - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ActiveIndexSegment[events=" + eventIds.size() + ", eventIds=" + minEventId + "-" + maxEventId + "]";
+    }
+
+    /**
+     * A growable list of primitive longs, which avoids boxing every event id that is indexed.
+     */
+    static final class LongList {
+        private long[] values = new long[16];
+        private int size = 0;
+
+        void add(final long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(final int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toSortedArray() {
+            final long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A simple Bloom Filter over 64-bit hashes, sized for roughly a 1% false-positive rate. Each of the hash functions is derived from the two
+ * halves of the given hash, so the hashes must already be well distributed (see {@link SegmentFormat#hashIdentifier(String)}).
+ */
+final class BloomFilter {
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final long[] words;
+    private final int hashFunctions;
+    private final long bitCount;
+
+    private BloomFilter(final long[] words, final int hashFunctions) {
+        this.words = words;
+        this.hashFunctions = hashFunctions;
+        this.bitCount = (long) words.length * 64L;
+    }
+
+    static BloomFilter create(final int expectedElements) {
+        final long bits = Math.max(64L, (long) expectedElements * BITS_PER_ELEMENT);
+        final int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        return new BloomFilter(new long[wordCount], HASH_FUNCTIONS);
+    }
+
+    static BloomFilter read(final DataInput in) throws IOException {
+        final int wordCount = in.readInt();
+        final int hashFunctions = in.readInt();
+        final long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = in.readLong();
+        }
+        return new BloomFilter(words, hashFunctions);
+    }
+
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(words.length);
+        out.writeInt(hashFunctions);
+        for (final long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    void add(final long hash) {
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            final long bit = getBit(hash1, hash2, i);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(final long hash) {
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            final long bit = getBit(hash1, hash2, i);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long getBit(final int hash1, final int hash2, final int index) {
+        int combined = hash1 + index * hash2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % bitCount;
+    }
+
+    int getSerializedLength() {
+        return 8 + words.length * 8;
+    }
+}
@@ -0,0 +1,824 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.authorization.AccessDeniedException;
+import org.apache.nifi.authorization.user.NiFiUser;
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.provenance.AsyncLineageSubmission;
+import org.apache.nifi.provenance.AsyncQuerySubmission;
+import org.apache.nifi.provenance.PlaceholderProvenanceEvent;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.RepositoryConfiguration;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.StandardLineageResult;
+import org.apache.nifi.provenance.StandardQueryResult;
+import org.apache.nifi.provenance.authorization.EventAuthorizer;
+import org.apache.nifi.provenance.authorization.EventTransformer;
+import org.apache.nifi.provenance.index.EventIndex;
+import org.apache.nifi.provenance.index.lucene.CachedQuery;
+import org.apache.nifi.provenance.index.lucene.LatestEventsPerProcessorQuery;
+import org.apache.nifi.provenance.index.lucene.LatestEventsQuery;
+import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
+import org.apache.nifi.provenance.lineage.LineageComputationType;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QuerySubmission;
+import org.apache.nifi.provenance.search.SearchTerm;
+import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.provenance.serialization.StorageSummary;
+import org.apache.nifi.provenance.store.EventStore;
+import org.apache.nifi.provenance.util.NamedThreadFactory;
+import org.apache.nifi.reporting.Severity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * An {@link EventIndex} that does not use Lucene. Instead, each partition of the repository is indexed as a series of segments. Events are added
+ * to an in-memory segment, and once that segment holds the configured number of events it is written to disk as a small, sorted file
+ * (see {@link SegmentFormat}) that holds a Bloom Filter and a hash table of FlowFile identifiers along with Component ID and Event Type
+ * posting lists. Indexing an event is therefore little more than appending a few longs to in-memory arrays, which is far cheaper than
+ * building and writing a Lucene document.
+ * </p>
+ *
+ * <p>
+ * The trade-off is in query flexibility. Lineage, Component ID, Event Type, and FlowFile UUID searches are served from the index, and the
+ * latest events overall and per component are served from the same in-memory caches used by the Lucene index. Any other search term is
+ * evaluated by reading the events of each segment whose time range overlaps the query, newest segment first, until enough results have
+ * been found. Every candidate event is verified against the query after it is read from the Event Store.
+ * </p>
+ *
+ * <p>
+ * Segments are held in a <code>compact-index</code> directory within each storage directory and are removed once all of their events have
+ * aged off. Events that were held only in memory when NiFi was stopped are re-indexed from the Event Store on restart.
+ * </p>
+ */
+public class CompactEventIndex implements EventIndex {
+    private static final Logger logger = LoggerFactory.getLogger(CompactEventIndex.class);
+    private static final String EVENT_CATEGORY = "Provenance Repository";
+
+    public static final String INDEX_DIRECTORY_NAME = "compact-index";
+    public static final int DEFAULT_MAX_EVENTS_PER_SEGMENT = 65536;
+    public static final int MAX_UNDELETED_QUERY_RESULTS = 10;
+    public static final int MAX_LINEAGE_NODES = 1000;
+    public static final int MAX_LINEAGE_UUIDS = 100;
+    private static final int EVENT_FETCH_BATCH_SIZE = 1000;
+
+    private final ConcurrentMap<String, AsyncQuerySubmission> querySubmissionMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AsyncLineageSubmission> lineageSubmissionMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PartitionIndex> partitionIndices = new ConcurrentHashMap<>();
+    private final List<CachedQuery> cachedQueries = new ArrayList<>();
+    private final ExecutorService queryExecutor;
+    private final RepositoryConfiguration config;
+    private final EventReporter eventReporter;
+    private final int maxEventsPerSegment;
+
+    private ScheduledExecutorService maintenanceExecutor; // effectively final
+    private EventStore eventStore;
+
+    public CompactEventIndex(final RepositoryConfiguration config, final EventReporter eventReporter) {
+        this(config, DEFAULT_MAX_EVENTS_PER_SEGMENT, eventReporter);
+    }
+
+    public CompactEventIndex(final RepositoryConfiguration config, final int maxEventsPerSegment, final EventReporter eventReporter) {
+        this.config = config;
+        this.eventReporter = eventReporter;
+        this.maxEventsPerSegment = maxEventsPerSegment;
+        this.queryExecutor = Executors.newFixedThreadPool(config.getQueryThreadPoolSize(), new NamedThreadFactory("Provenance Query"));
+    }
+
+    @Override
+    public void initialize(final EventStore eventStore) {
+        this.eventStore = eventStore;
+
+        for (final Map.Entry<String, File> entry : config.getStorageDirectories().entrySet()) {
+            final PartitionIndex partitionIndex = new PartitionIndex(entry.getKey(), new File(entry.getValue(), INDEX_DIRECTORY_NAME));
+            partitionIndex.loadSegments();
+            partitionIndices.put(entry.getKey(), partitionIndex);
+        }
+
+        maintenanceExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("Provenance Repository Maintenance"));
+        maintenanceExecutor.scheduleWithFixedDelay(this::performMaintenance, 1, 1, TimeUnit.MINUTES);
+        maintenanceExecutor.scheduleWithFixedDelay(this::purgeObsoleteQueries, 30, 30, TimeUnit.SECONDS);
+
+        cachedQueries.add(new LatestEventsQuery());
+        cachedQueries.add(new LatestEventsPerProcessorQuery());
+    }
+
+    @Override
+    public void close() throws IOException {
+        queryExecutor.shutdownNow();
+
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdown();
+        }
+
+        // Persist any events that are held only in memory so that they need not be re-indexed on restart.
+        for (final PartitionIndex partitionIndex : partitionIndices.values()) {
+            try {
+                partitionIndex.commit();
+            } catch (final IOException ioe) {
+                logger.warn("Failed to persist Provenance Index for partition {}; its latest events will be re-indexed on restart", partitionIndex.getPartitionName(), ioe);
+            }
+        }
+    }
+
+    @Override
+    public void addEvents(final Map<ProvenanceEventRecord, StorageSummary> events) {
+        for (final Map.Entry<ProvenanceEventRecord, StorageSummary> entry : events.entrySet()) {
+            addEvent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void addEvent(final ProvenanceEventRecord event, final StorageSummary summary) {
+        for (final CachedQuery cachedQuery : cachedQueries) {
+            cachedQuery.update(event, summary);
+        }
+
+        final String partitionName = summary.getPartitionName().get();
+        final PartitionIndex partitionIndex = partitionIndices.computeIfAbsent(partitionName, this::createPartitionIndex);
+        partitionIndex.addEvent(event, summary.getEventId());
+    }
+
+    private PartitionIndex createPartitionIndex(final String partitionName) {
+        final File storageDirectory = config.getStorageDirectories().get(partitionName);
+        if (storageDirectory == null) {
+            throw new IllegalStateException("Cannot index Provenance Event because it belongs to unknown partition " + partitionName);
+        }
+
+        return new PartitionIndex(partitionName, new File(storageDirectory, INDEX_DIRECTORY_NAME));
+    }
+
+    @Override
+    public boolean isReindexNecessary() {
+        return true;
+    }
+
+    @Override
+    public void reindexEvents(final Map<ProvenanceEventRecord, StorageSummary> events) {
+        addEvents(events);
+    }
+
+    @Override
+    public void commitChanges(final String partitionName) throws IOException {
+        final PartitionIndex partitionIndex = partitionIndices.get(partitionName);
+        if (partitionIndex != null) {
+            partitionIndex.commit();
+        }
+    }
+
+    @Override
+    public long getMinimumEventIdToReindex(final String partitionName) {
+        final PartitionIndex partitionIndex = partitionIndices.get(partitionName);
+        if (partitionIndex == null) {
+            return 0L;
+        }
+
+        // Events are not necessarily added to the index in the order of their ID's, because multiple threads register events
+        // concurrently. So an event with an ID slightly smaller than the largest persisted ID may have been held in memory.
+        // We re-index one segment's worth of events before that ID in order to account for this; any event that is indexed
+        // twice is only returned once from a query.
+        return Math.max(0L, partitionIndex.getMaxPersistedEventId() - maxEventsPerSegment);
+    }
+
+    @Override
+    public long getSize() {
+        long total = 0L;
+        for (final PartitionIndex partitionIndex : partitionIndices.values()) {
+            for (final IndexSegment segment : partitionIndex.getSegments()) {
+                total += segment.getSize();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns all segments that may hold events within the given time range, ordered such that the segment with the largest event ID is first
+     */
+    private List<IndexSegment> getSegments(final long startTimestamp, final long endTimestamp) {
+        final List<IndexSegment> segments = new ArrayList<>();
+        for (final PartitionIndex partitionIndex : partitionIndices.values()) {
+            for (final IndexSegment segment : partitionIndex.getSegments()) {
+                if (segment.getEventCount() > 0 && segment.getMaxEventTime() >= startTimestamp && segment.getMinEventTime() <= endTimestamp) {
+                    segments.add(segment);
+                }
+            }
+        }
+
+        segments.sort(Comparator.comparingLong(IndexSegment::getMaxEventId).reversed());
+        return segments;
+    }
+
+    @Override
+    public QuerySubmission submitQuery(final Query query, final EventAuthorizer authorizer, final String userId) {
+        validate(query);
+
+        final AsyncQuerySubmission submission = new AsyncQuerySubmission(query, 1, userId);
+        querySubmissionMap.put(query.getIdentifier(), submission);
+
+        // Check if we have any cached queries first that can give us the answer
+        Optional<List<Long>> cachedEventIds = Optional.empty();
+        for (final CachedQuery cachedQuery : cachedQueries) {
+            cachedEventIds = cachedQuery.evaluate(query);
+            if (cachedEventIds.isPresent()) {
+                logger.debug("Cached Query {} produced {} Event IDs for {}", cachedQuery, cachedEventIds.get().size(), query);
+                break;
+            }
+        }
+
+        if (cachedEventIds.isPresent()) {
+            final List<Long> eventIds = cachedEventIds.get();
+            queryExecutor.submit(() -> {
+                try {
+                    final List<ProvenanceEventRecord> events = eventStore.getEvents(eventIds, authorizer, EventTransformer.EMPTY_TRANSFORMER);
+                    submission.getResult().update(events, eventIds.size());
+                } catch (final Exception e) {
+                    submission.getResult().setError("Failed to retrieve Provenance Events from store; see logs for more details");
+                    logger.error("Failed to retrieve Provenance Events from store", e);
+                }
+            });
+        } else {
+            queryExecutor.submit(() -> {
+                try {
+                    executeQuery(query, submission, authorizer);
+                } catch (final Exception e) {
+                    submission.getResult().setError("Failed to query Provenance Events; see logs for more details");
+                    logger.error("Failed to execute Provenance Query {}", query, e);
+                }
+            });
+        }
+
+        // There are some queries that are optimized and will complete very quickly. As a result,
+        // we don't want to wait for the client to issue a second request, so we will give the query
+        // up to 500 milliseconds to complete before running.
+        try {
+            submission.getResult().awaitCompletion(500, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return submission;
+    }
+
+    private void executeQuery(final Query query, final AsyncQuerySubmission submission, final EventAuthorizer authorizer) throws IOException {
+        final long startTimestamp = query.getStartDate() == null ? 0L : query.getStartDate().getTime();
+        final long endTimestamp = query.getEndDate() == null ? Long.MAX_VALUE : query.getEndDate().getTime();
+        final int maxResults = query.getMaxResults();
+        final EventMatcher matcher = new EventMatcher(query);
+
+        // Keep the newest matching events, with the oldest of them at the head of the queue so that it can be evicted.
+        final PriorityQueue<ProvenanceEventRecord> newestMatches = new PriorityQueue<>(Comparator.comparingLong(ProvenanceEventRecord::getEventId));
+        final Set<Long> eventIdsSeen = new HashSet<>();
+        long totalHits = 0L;
+
+        for (final IndexSegment segment : getSegments(startTimestamp, endTimestamp)) {
+            final long minUsefulEventId = newestMatches.size() < maxResults ? -1L : newestMatches.peek().getEventId();
+            if (segment.getMaxEventId() <= minUsefulEventId) {
+                break;
+            }
+
+            final long[] candidates = getCandidateEventIds(segment, query);
+            logger.debug("Found {} candidate events for {} in {}", candidates.length, query, segment);
+
+            int index = candidates.length - 1;
+            while (index >= 0 && candidates[index] > minUsefulEventId) {
+                if (submission.isCanceled()) {
+                    return;
+                }
+
+                final List<Long> batch = new ArrayList<>(EVENT_FETCH_BATCH_SIZE);
+                while (index >= 0 && candidates[index] > minUsefulEventId && batch.size() < EVENT_FETCH_BATCH_SIZE) {
+                    final long eventId = candidates[index--];
+                    if (eventIdsSeen.add(eventId)) {
+                        batch.add(eventId);
+                    }
+                }
+
+                for (final ProvenanceEventRecord event : eventStore.getEvents(batch, authorizer, EventTransformer.EMPTY_TRANSFORMER)) {
+                    if (matcher.matches(event)) {
+                        totalHits++;
+                        newestMatches.add(event);
+                        if (newestMatches.size() > maxResults) {
+                            newestMatches.poll();
+                        }
+                    }
+                }
+
+                if (newestMatches.size() >= maxResults) {
+                    break;
+                }
+            }
+        }
+
+        submission.getResult().update(new ArrayList<>(newestMatches), totalHits);
+    }
+
+    /**
+     * Uses the posting lists and identifier table of the given segment to narrow the events that could match the query. Terms that
+     * are inverted, contain wildcards, or are not indexed cannot be used to narrow the events, so they are left to the {@link EventMatcher}.
+     */
+    private long[] getCandidateEventIds(final IndexSegment segment, final Query query) throws IOException {
+        long[] candidates = null;
+
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            if (Boolean.TRUE.equals(searchTerm.isInverted()) || EventMatcher.isWildcard(searchTerm.getValue())) {
+                continue;
+            }
+
+            final SearchableField field = searchTerm.getSearchableField();
+            final String term = searchTerm.getValue().toLowerCase();
+            final long[] termEventIds;
+            if (SegmentFormat.isPostingField(field)) {
+                termEventIds = segment.getEventIds(field, term);
+            } else if (SearchableFields.FlowFileUUID.equals(field)) {
+                termEventIds = segment.getEventIdsForIdentifiers(Collections.singleton(term));
+            } else {
+                continue;
+            }
+
+            candidates = candidates == null ? termEventIds : intersect(candidates, termEventIds);
+            if (candidates.length == 0) {
+                return candidates;
+            }
+        }
+
+        return candidates == null ? segment.getEventIds() : candidates;
+    }
+
+    static long[] intersect(final long[] sortedA, final long[] sortedB) {
+        final long[] intersection = new long[Math.min(sortedA.length, sortedB.length)];
+        int count = 0;
+        int a = 0;
+        int b = 0;
+        while (a < sortedA.length && b < sortedB.length) {
+            if (sortedA[a] < sortedB[b]) {
+                a++;
+            } else if (sortedA[a] > sortedB[b]) {
+                b++;
+            } else {
+                intersection[count++] = sortedA[a];
+                a++;
+                b++;
+            }
+        }
+
+        return count == intersection.length ? intersection : Arrays.copyOf(intersection, count);
+    }
+
+    @Override
+    public ComputeLineageSubmission submitLineageComputation(final long eventId, final NiFiUser user, final EventAuthorizer eventAuthorizer) {
+        final Optional<ProvenanceEventRecord> eventOption;
+        try {
+            eventOption = eventStore.getEvent(eventId);
+        } catch (final Exception e) {
+            logger.error("Failed to retrieve Provenance Event with ID " + eventId + " to calculate data lineage due to: " + e, e);
+            final AsyncLineageSubmission result = new AsyncLineageSubmission(LineageComputationType.FLOWFILE_LINEAGE, eventId, Collections.emptySet(), 1, user == null ? null : user.getIdentity());
+            result.getResult().setError("Failed to retrieve Provenance Event with ID " + eventId + ". See logs for more information.");
+            return result;
+        }
+
+        if (!eventOption.isPresent()) {
+            final AsyncLineageSubmission result = new AsyncLineageSubmission(LineageComputationType.FLOWFILE_LINEAGE, eventId, Collections.emptySet(), 1, user == null ? null : user.getIdentity());
+            result.getResult().setError("Could not find Provenance Event with ID " + eventId);
+            lineageSubmissionMap.put(result.getLineageIdentifier(), result);
+            return result;
+        }
+
+        final ProvenanceEventRecord event = eventOption.get();
+        return submitLineageComputation(Collections.singleton(event.getFlowFileUuid()), user, eventAuthorizer, LineageComputationType.FLOWFILE_LINEAGE,
+            eventId, event.getLineageStartDate(), Long.MAX_VALUE);
+    }
+
+    @Override
+    public ComputeLineageSubmission submitLineageComputation(final String flowFileUuid, final NiFiUser user, final EventAuthorizer eventAuthorizer) {
+        return submitLineageComputation(Collections.singleton(flowFileUuid), user, eventAuthorizer, LineageComputationType.FLOWFILE_LINEAGE, null, 0L, Long.MAX_VALUE);
+    }
+
+    private ComputeLineageSubmission submitLineageComputation(final Collection<String> flowFileUuids, final NiFiUser user, final EventAuthorizer eventAuthorizer,
+        final LineageComputationType computationType, final Long eventId, final long startTimestamp, final long endTimestamp) {
+
+        if (flowFileUuids.size() > MAX_LINEAGE_UUIDS) {
+            throw new IllegalArgumentException(String.format("Cannot compute lineage for more than %s FlowFiles. This lineage contains %s.", MAX_LINEAGE_UUIDS, flowFileUuids.size()));
+        }
+
+        final AsyncLineageSubmission submission = new AsyncLineageSubmission(computationType, eventId, flowFileUuids, 1, user == null ? null : user.getIdentity());
+        lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+
+        queryExecutor.submit(() -> {
+            try {
+                computeLineage(flowFileUuids, submission, eventAuthorizer, startTimestamp, endTimestamp);
+            } catch (final Exception e) {
+                submission.getResult().setError("Failed to compute lineage; see logs for more details");
+                logger.error("Failed to compute lineage for FlowFiles {}", flowFileUuids, e);
+            }
+        });
+
+        // Some computations will complete very quickly. In this case, we don't want to wait
+        // for the client to submit a second query to obtain the result. Instead, we want to just
+        // wait some short period of time for the computation to complete before returning the submission.
+        try {
+            submission.getResult().awaitCompletion(500, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        return submission;
+    }
+
+    private void computeLineage(final Collection<String> flowFileUuids, final AsyncLineageSubmission submission, final EventAuthorizer authorizer,
+                                final long startTimestamp, final long endTimestamp) throws IOException {
+        final Set<String> identifiers = new HashSet<>(flowFileUuids.size());
+        for (final String flowFileUuid : flowFileUuids) {
+            identifiers.add(flowFileUuid.toLowerCase());
+        }
+
+        final TreeSet<Long> eventIds = new TreeSet<>();
+        for (final IndexSegment segment : getSegments(startTimestamp, endTimestamp)) {
+            for (final long eventId : segment.getEventIdsForIdentifiers(identifiers)) {
+                eventIds.add(eventId);
+            }
+        }
+
+        // As with the Lucene index, limit the lineage to the most recent events.
+        final List<Long> lineageEventIds = new ArrayList<>(Math.min(eventIds.size(), MAX_LINEAGE_NODES));
+        final Iterator<Long> itr = eventIds.descendingIterator();
+        while (itr.hasNext() && lineageEventIds.size() < MAX_LINEAGE_NODES) {
+            lineageEventIds.add(itr.next());
+        }
+        Collections.reverse(lineageEventIds);
+
+        final List<ProvenanceEventRecord> events = eventStore.getEvents(lineageEventIds, authorizer, EventTransformer.PLACEHOLDER_TRANSFORMER);
+
+        // Identifiers are indexed by hash, so discard any event that matched only because of a hash collision. Placeholder events
+        // do not carry the parent and child UUIDs, so they cannot be verified.
+        final List<ProvenanceEventRecord> lineageEvents = new ArrayList<>(events.size());
+        for (final ProvenanceEventRecord event : events) {
+            if (event instanceof PlaceholderProvenanceEvent || !Collections.disjoint(identifiers, SegmentFormat.getLineageIdentifiers(event))) {
+                lineageEvents.add(event);
+            }
+        }
+
+        submission.getResult().update(lineageEvents, eventIds.size());
+    }
+
+    @Override
+    public ComputeLineageSubmission submitExpandChildren(final long eventId, final NiFiUser user, final EventAuthorizer authorizer) {
+        final String userId = user == null ? null : user.getIdentity();
+
+        try {
+            final Optional<ProvenanceEventRecord> eventOption = eventStore.getEvent(eventId);
+            if (!eventOption.isPresent()) {
+                final AsyncLineageSubmission submission = new AsyncLineageSubmission(LineageComputationType.EXPAND_CHILDREN, eventId, Collections.emptyList(), 1, userId);
+                lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+                submission.getResult().update(Collections.emptyList(), 0L);
+                return submission;
+            }
+
+            final ProvenanceEventRecord event = eventOption.get();
+            switch (event.getEventType()) {
+                case CLONE:
+                case FORK:
+                case JOIN:
+                case REPLAY: {
+                    return submitLineageComputation(event.getChildUuids(), user, authorizer, LineageComputationType.EXPAND_CHILDREN,
+                        eventId, event.getEventTime(), Long.MAX_VALUE);
+                }
+                default: {
+                    final AsyncLineageSubmission submission = new AsyncLineageSubmission(LineageComputationType.EXPAND_CHILDREN,
+                        eventId, Collections.emptyList(), 1, userId);
+
+                    lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+                    submission.getResult().setError("Event ID " + eventId + " indicates an event of type " + event.getEventType() + " so its children cannot be expanded");
+                    return submission;
+                }
+            }
+        } catch (final Exception e) {
+            final AsyncLineageSubmission submission = new AsyncLineageSubmission(LineageComputationType.EXPAND_CHILDREN,
+                eventId, Collections.emptyList(), 1, userId);
+            lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+            submission.getResult().setError("Failed to expand children for lineage of event with ID " + eventId + " due to: " + e);
+            return submission;
+        }
+    }
+
+    @Override
+    public ComputeLineageSubmission submitExpandParents(final long eventId, final NiFiUser user, final EventAuthorizer authorizer) {
+        final String userId = user == null ? null : user.getIdentity();
+
+        try {
+            final Optional<ProvenanceEventRecord> eventOption = eventStore.getEvent(eventId);
+            if (!eventOption.isPresent()) {
+                final AsyncLineageSubmission submission = new AsyncLineageSubmission(LineageComputationType.EXPAND_PARENTS, eventId, Collections.emptyList(), 1, userId);
+                lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+                submission.getResult().update(Collections.emptyList(), 0L);
+                return submission;
+            }
+
+            final ProvenanceEventRecord event = eventOption.get();
+            switch (event.getEventType()) {
+                case JOIN:
+                case FORK:
+                case CLONE:
+                case REPLAY: {
+                    return submitLineageComputation(event.getParentUuids(), user, authorizer, LineageComputationType.EXPAND_PARENTS,
+                        eventId, event.getLineageStartDate(), event.getEventTime());
+                }
+                default: {
+                    final AsyncLineageSubmission submission = new AsyncLineageSubmission(LineageComputationType.EXPAND_PARENTS,
+                        eventId, Collections.emptyList(), 1, userId);
+
+                    lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+                    submission.getResult().setError("Event ID " + eventId + " indicates an event of type " + event.getEventType() + " so its parents cannot be expanded");
+                    return submission;
+                }
+            }
+        } catch (final Exception e) {
+            final AsyncLineageSubmission submission = new AsyncLineageSubmission(LineageComputationType.EXPAND_PARENTS,
+                eventId, Collections.emptyList(), 1, userId);
+            lineageSubmissionMap.put(submission.getLineageIdentifier(), submission);
+
+            submission.getResult().setError("Failed to expand parents for lineage of event with ID " + eventId + " due to: " + e);
+            return submission;
+        }
+    }
+
+    @Override
+    public AsyncLineageSubmission retrieveLineageSubmission(final String lineageIdentifier, final NiFiUser user) {
+        final AsyncLineageSubmission submission = lineageSubmissionMap.get(lineageIdentifier);
+        final String userId = submission.getSubmitterIdentity();
+
+        if (user == null && userId == null) {
+            return submission;
+        }
+
+        if (user == null) {
+            throw new AccessDeniedException("Cannot retrieve Provenance Lineage Submission because no user id was provided");
+        }
+
+        if (userId == null || userId.equals(user.getIdentity())) {
+            return submission;
+        }
+
+        throw new AccessDeniedException("Cannot retrieve Provenance Lineage Submission because " + user.getIdentity() + " is not the user who submitted the request");
+    }
+
+    @Override
+    public QuerySubmission retrieveQuerySubmission(final String queryIdentifier, final NiFiUser user) {
+        final QuerySubmission submission = querySubmissionMap.get(queryIdentifier);
+
+        final String userId = submission.getSubmitterIdentity();
+
+        if (user == null && userId == null) {
+            return submission;
+        }
+
+        if (user == null) {
+            throw new AccessDeniedException("Cannot retrieve Provenance Query Submission because no user id was provided");
+        }
+
+        if (userId == null || userId.equals(user.getIdentity())) {
+            return submission;
+        }
+
+        throw new AccessDeniedException("Cannot retrieve Provenance Query Submission because " + user.getIdentity() + " is not the user who submitted the request");
+    }
+
+    private void validate(final Query query) {
+        final int numQueries = querySubmissionMap.size();
+        if (numQueries > MAX_UNDELETED_QUERY_RESULTS) {
+            purgeObsoleteQueries();
+            if (querySubmissionMap.size() > MAX_UNDELETED_QUERY_RESULTS) {
+                throw new IllegalStateException("Cannot process query because there are currently " + numQueries + " queries whose results have not "
+                    + "been deleted due to poorly behaving clients not issuing DELETE requests. Please try again later.");
+            }
+        }
+
+        if (query.getEndDate() != null && query.getStartDate() != null && query.getStartDate().getTime() > query.getEndDate().getTime()) {
+            throw new IllegalArgumentException("Query End Time cannot be before Query Start Time");
+        }
+    }
+
+    void performMaintenance() {
+        try {
+            final List<ProvenanceEventRecord> firstEvents = eventStore.getEvents(0, 1);
+
+            final long firstEventId;
+            if (firstEvents.isEmpty()) {
+                firstEventId = Long.MAX_VALUE;
+                logger.debug("Found no events in the Provenance Repository, so all persisted Provenance Index Segments are expired");
+            } else {
+                firstEventId = firstEvents.get(0).getEventId();
+                logger.debug("First Event ID is {}; will delete any Provenance Index Segment whose events are all older than this", firstEventId);
+            }
+
+            for (final PartitionIndex partitionIndex : partitionIndices.values()) {
+                partitionIndex.removeSegmentsBefore(firstEventId);
+            }
+        } catch (final Exception e) {
+            logger.error("Failed to perform background maintenance procedures", e);
+            eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to perform maintenance of Provenance Repository. See logs for more information.");
+        }
+    }
+
+    private void purgeObsoleteQueries() {
+        try {
+            final Date now = new Date();
+
+            final Iterator<Map.Entry<String, AsyncQuerySubmission>> queryIterator = querySubmissionMap.entrySet().iterator();
+            while (queryIterator.hasNext()) {
+                final Map.Entry<String, AsyncQuerySubmission> entry = queryIterator.next();
+
+                final StandardQueryResult result = entry.getValue().getResult();
+                if (entry.getValue().isCanceled() || result.isFinished() && result.getExpiration().before(now)) {
+                    queryIterator.remove();
+                }
+            }
+
+            final Iterator<Map.Entry<String, AsyncLineageSubmission>> lineageIterator = lineageSubmissionMap.entrySet().iterator();
+            while (lineageIterator.hasNext()) {
+                final Map.Entry<String, AsyncLineageSubmission> entry = lineageIterator.next();
+
+                final StandardLineageResult result = entry.getValue().getResult();
+                if (entry.getValue().isCanceled() || result.isFinished() && result.getExpiration().before(now)) {
+                    lineageIterator.remove();
+                }
+            }
+        } catch (final Exception e) {
+            logger.error("Failed to expire Provenance Query Results due to {}", e.toString());
+            logger.error("", e);
+        }
+    }
+
+
+    /**
+     * The segments that index the events of a single partition. Segments are ordered from oldest to newest, and the list includes segments
+     * that are in the process of being persisted, so that their events remain searchable while they are written.
+     */
+    private class PartitionIndex {
+        private final String partitionName;
+        private final File directory;
+        private final List<IndexSegment> segments = new CopyOnWriteArrayList<>();
+        private ActiveIndexSegment activeSegment = new ActiveIndexSegment();
+
+        PartitionIndex(final String partitionName, final File directory) {
+            this.partitionName = partitionName;
+            this.directory = directory;
+        }
+
+        String getPartitionName() {
+            return partitionName;
+        }
+
+        void loadSegments() {
+            final File[] files = directory.listFiles();
+            if (files == null) {
+                return;
+            }
+
+            final List<PersistedIndexSegment> loaded = new ArrayList<>();
+            for (final File file : files) {
+                if (!file.getName().endsWith(SegmentFormat.FILE_EXTENSION)) {
+                    // A temporary file is left behind only if NiFi stopped while a segment was being persisted. Its events will be re-indexed.
+                    if (!file.delete()) {
+                        logger.warn("Failed to delete incomplete Provenance Index Segment {}", file);
+                    }
+                    continue;
+                }
+
+                try {
+                    loaded.add(PersistedIndexSegment.open(file));
+                } catch (final IOException ioe) {
+                    logger.warn("Unable to read Provenance Index Segment {}; will delete it and re-index events as necessary", file, ioe);
+                    if (!file.delete()) {
+                        logger.warn("Failed to delete unreadable Provenance Index Segment {}", file);
+                    }
+                }
+            }
+
+            loaded.sort(Comparator.comparingLong(PersistedIndexSegment::getMinEventId));
+            segments.addAll(loaded);
+            logger.info("Loaded {} Provenance Index Segments for partition {}", loaded.size(), partitionName);
+        }
+
+        void addEvent(final ProvenanceEventRecord event, final long eventId) {
+            final ActiveIndexSegment fullSegment;
+            synchronized (this) {
+                activeSegment.addEvent(event, eventId);
+                if (activeSegment.getEventCount() < maxEventsPerSegment) {
+                    return;
+                }
+
+                fullSegment = activeSegment;
+                segments.add(fullSegment);
+                activeSegment = new ActiveIndexSegment();
+            }
+
+            try {
+                persist(fullSegment);
+            } catch (final IOException ioe) {
+                logger.error("Failed to persist Provenance Index Segment for partition {}; its events remain searchable but will be re-indexed on restart", partitionName, ioe);
+                eventReporter.reportEvent(Severity.ERROR, EVENT_CATEGORY, "Failed to persist Provenance Index for partition " + partitionName + ". See logs for more information.");
+            }
+        }
+
+        void commit() throws IOException {
+            final ActiveIndexSegment segmentToPersist;
+            synchronized (this) {
+                if (activeSegment.getEventCount() == 0) {
+                    return;
+                }
+
+                segmentToPersist = activeSegment;
+                segments.add(segmentToPersist);
+                activeSegment = new ActiveIndexSegment();
+            }
+
+            persist(segmentToPersist);
+        }
+
+        private void persist(final ActiveIndexSegment segment) throws IOException {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Unable to create Provenance Index directory " + directory);
+            }
+
+            final File file = new File(directory, segment.getMinEventId() + "-" + segment.getMaxEventId() + SegmentFormat.FILE_EXTENSION);
+            final PersistedIndexSegment persisted = segment.persist(file);
+            segments.replaceAll(existing -> existing == segment ? persisted : existing);
+            logger.debug("Persisted {} to {}", segment, file);
+        }
+
+        List<IndexSegment> getSegments() {
+            final List<IndexSegment> allSegments = new ArrayList<>(segments);
+            synchronized (this) {
+                allSegments.add(activeSegment);
+            }
+            return allSegments;
+        }
+
+        long getMaxPersistedEventId() {
+            long maxEventId = -1L;
+            for (final IndexSegment segment : segments) {
+                if (segment instanceof PersistedIndexSegment) {
+                    maxEventId = Math.max(maxEventId, segment.getMaxEventId());
+                }
+            }
+            return maxEventId;
+        }
+
+        void removeSegmentsBefore(final long firstEventId) {
+            for (final IndexSegment segment : segments) {
+                if (!(segment instanceof PersistedIndexSegment) || segment.getMaxEventId() >= firstEventId) {
+                    continue;
+                }
+
+                segments.remove(segment);
+                final File file = ((PersistedIndexSegment) segment).getFile();
+                if (file.delete()) {
+                    logger.info("Successfully removed expired Provenance Index Segment {}", file);
+                } else {
+                    logger.warn("Provenance Index Segment {} has expired and contains no Provenance Events that still exist in the repository. "
+                        + "However, the file could not be deleted.", file);
+                }
+            }
+        }
+    }
+}
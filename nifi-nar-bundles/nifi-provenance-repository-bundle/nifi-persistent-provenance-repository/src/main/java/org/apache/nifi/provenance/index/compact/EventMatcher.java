@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.SearchTerm;
+import org.apache.nifi.provenance.search.SearchableField;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates a {@link Query} against a Provenance Event. Because the Compact Event Index stores only event id's, every candidate event that
+ * it finds is verified against the query once it has been read from the Event Store. Values are compared case-insensitively and search
+ * terms may contain the '*' and '?' wildcards, consistent with the Lucene-based index.
+ */
+final class EventMatcher {
+    private final long minEventTime;
+    private final long maxEventTime;
+    private final long minFileSize;
+    private final long maxFileSize;
+    private final List<TermMatcher> termMatchers = new ArrayList<>();
+
+    EventMatcher(final Query query) {
+        minEventTime = query.getStartDate() == null ? 0L : query.getStartDate().getTime();
+        maxEventTime = query.getEndDate() == null ? Long.MAX_VALUE : query.getEndDate().getTime();
+        minFileSize = query.getMinFileSize() == null ? 0L : DataUnit.parseDataSize(query.getMinFileSize(), DataUnit.B).longValue();
+        maxFileSize = query.getMaxFileSize() == null ? Long.MAX_VALUE : DataUnit.parseDataSize(query.getMaxFileSize(), DataUnit.B).longValue();
+
+        for (final SearchTerm searchTerm : query.getSearchTerms()) {
+            termMatchers.add(new TermMatcher(searchTerm));
+        }
+    }
+
+    boolean matches(final ProvenanceEventRecord event) {
+        if (event.getEventTime() < minEventTime || event.getEventTime() > maxEventTime) {
+            return false;
+        }
+
+        if (event.getFileSize() < minFileSize || event.getFileSize() > maxFileSize) {
+            return false;
+        }
+
+        for (final TermMatcher termMatcher : termMatchers) {
+            if (!termMatcher.matches(event)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static boolean isWildcard(final String value) {
+        return value.contains("*") || value.contains("?");
+    }
+
+    private static List<String> getFieldValues(final ProvenanceEventRecord event, final SearchableField field) {
+        if (field.isAttribute()) {
+            return Collections.singletonList(event.getAttributes().get(field.getIdentifier()));
+        }
+
+        if (SearchableFields.FlowFileUUID.equals(field)) {
+            // As with the other Provenance Repositories, a search for a FlowFile UUID also matches the parent and child UUIDs.
+            final List<String> uuids = new ArrayList<>(1 + event.getParentUuids().size() + event.getChildUuids().size());
+            uuids.add(event.getFlowFileUuid());
+            uuids.addAll(event.getParentUuids());
+            uuids.addAll(event.getChildUuids());
+            return uuids;
+        }
+
+        final Object value;
+        if (SearchableFields.AlternateIdentifierURI.equals(field)) {
+            value = event.getAlternateIdentifierUri();
+        } else if (SearchableFields.ComponentID.equals(field)) {
+            value = event.getComponentId();
+        } else if (SearchableFields.Details.equals(field)) {
+            value = event.getDetails();
+        } else if (SearchableFields.EventType.equals(field)) {
+            value = event.getEventType();
+        } else if (SearchableFields.Filename.equals(field)) {
+            value = event.getAttributes().get(CoreAttributes.FILENAME.key());
+        } else if (SearchableFields.Relationship.equals(field)) {
+            value = event.getRelationship();
+        } else if (SearchableFields.TransitURI.equals(field)) {
+            value = event.getTransitUri();
+        } else if (SearchableFields.SourceQueueIdentifier.equals(field)) {
+            value = event.getSourceQueueIdentifier();
+        } else {
+            value = null;
+        }
+
+        return Collections.singletonList(value == null ? null : value.toString());
+    }
+
+    private static class TermMatcher {
+        private final SearchableField field;
+        private final String value;
+        private final Pattern pattern;
+        private final boolean inverted;
+
+        TermMatcher(final SearchTerm searchTerm) {
+            this.field = searchTerm.getSearchableField();
+            this.value = searchTerm.getValue();
+            this.inverted = Boolean.TRUE.equals(searchTerm.isInverted());
+
+            if (isWildcard(value)) {
+                final String regex = Pattern.quote(value).replace("?", "\\E.\\Q").replace("*", "\\E.*\\Q");
+                this.pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            } else {
+                this.pattern = null;
+            }
+        }
+
+        boolean matches(final ProvenanceEventRecord event) {
+            boolean found = false;
+            for (final String fieldValue : getFieldValues(event, field)) {
+                if (fieldValue == null) {
+                    continue;
+                }
+
+                final boolean valueMatches = pattern == null ? value.equalsIgnoreCase(fieldValue) : pattern.matcher(fieldValue).matches();
+                if (valueMatches) {
+                    found = true;
+                    break;
+                }
+            }
+
+            return found != inverted;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.provenance.search.SearchableField;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A contiguous range of indexed Provenance Events within a single partition. All event id's that are returned are sorted in ascending order
+ * and refer to events in the Event Store; the caller is responsible for fetching the events and verifying that they match.
+ */
+interface IndexSegment {
+
+    long getMinEventId();
+
+    long getMaxEventId();
+
+    long getMinEventTime();
+
+    long getMaxEventTime();
+
+    int getEventCount();
+
+    /**
+     * @return the id's of all events in the segment
+     * @throws IOException if unable to read the segment
+     */
+    long[] getEventIds() throws IOException;
+
+    /**
+     * Returns the id's of events whose value for the given field equals the given term
+     *
+     * @param field one of the {@link SegmentFormat#POSTING_FIELDS}
+     * @param term the lower-cased term
+     * @return the id's of the events with the given term
+     * @throws IOException if unable to read the segment
+     */
+    long[] getEventIds(SearchableField field, String term) throws IOException;
+
+    /**
+     * Returns the id's of events that may pertain to any of the given FlowFile identifiers. Because identifiers are indexed by hash, the
+     * result may include a small number of events that do not pertain to the identifiers.
+     *
+     * @param identifiers the lower-cased FlowFile identifiers
+     * @return the id's of the events that may pertain to the identifiers
+     * @throws IOException if unable to read the segment
+     */
+    long[] getEventIdsForIdentifiers(Collection<String> identifiers) throws IOException;
+
+    /**
+     * @return the number of bytes that the segment occupies on disk, or 0 if the segment is held only in memory
+     */
+    long getSize();
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.provenance.search.SearchableField;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A segment that has been written to disk in the layout described by {@link SegmentFormat}. Only the header and the Bloom Filter are held
+ * in memory; event id's are read from the file when the segment is queried.
+ */
+final class PersistedIndexSegment implements IndexSegment {
+    private static final long[] EMPTY = new long[0];
+
+    private final File file;
+    private final long minEventId;
+    private final long maxEventId;
+    private final long minEventTime;
+    private final long maxEventTime;
+    private final int eventCount;
+    private final BloomFilter bloomFilter;
+    private final long eventIdsOffset;
+    private final int eventIdsLength;
+    private final long identifiersOffset;
+    private final int identifierCount;
+    private final long postingsOffset;
+    private final int postingsLength;
+
+    PersistedIndexSegment(final File file, final long minEventId, final long maxEventId, final long minEventTime, final long maxEventTime, final int eventCount,
+                          final BloomFilter bloomFilter, final long eventIdsOffset, final int eventIdsLength, final long identifiersOffset, final int identifierCount,
+                          final long postingsOffset, final int postingsLength) {
+        this.file = file;
+        this.minEventId = minEventId;
+        this.maxEventId = maxEventId;
+        this.minEventTime = minEventTime;
+        this.maxEventTime = maxEventTime;
+        this.eventCount = eventCount;
+        this.bloomFilter = bloomFilter;
+        this.eventIdsOffset = eventIdsOffset;
+        this.eventIdsLength = eventIdsLength;
+        this.identifiersOffset = identifiersOffset;
+        this.identifierCount = identifierCount;
+        this.postingsOffset = postingsOffset;
+        this.postingsLength = postingsLength;
+    }
+
+    static PersistedIndexSegment open(final File file) throws IOException {
+        try (final InputStream fis = new FileInputStream(file);
+             final DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 65536))) {
+
+            final int version = in.readInt();
+            if (version > SegmentFormat.VERSION) {
+                throw new IOException("Unable to read Provenance Index Segment " + file + " because its format version is " + version
+                    + " but this version of NiFi supports only up to version " + SegmentFormat.VERSION);
+            }
+
+            final long minEventId = in.readLong();
+            final long maxEventId = in.readLong();
+            final long minEventTime = in.readLong();
+            final long maxEventTime = in.readLong();
+            final int eventCount = in.readInt();
+            final long eventIdsOffset = in.readLong();
+            final int eventIdsLength = in.readInt();
+            final long identifiersOffset = in.readLong();
+            final int identifierCount = in.readInt();
+            final long postingsOffset = in.readLong();
+            final int postingsLength = in.readInt();
+            final BloomFilter bloomFilter = BloomFilter.read(in);
+
+            return new PersistedIndexSegment(file, minEventId, maxEventId, minEventTime, maxEventTime, eventCount, bloomFilter,
+                eventIdsOffset, eventIdsLength, identifiersOffset, identifierCount, postingsOffset, postingsLength);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    @Override
+    public long getMinEventId() {
+        return minEventId;
+    }
+
+    @Override
+    public long getMaxEventId() {
+        return maxEventId;
+    }
+
+    @Override
+    public long getMinEventTime() {
+        return minEventTime;
+    }
+
+    @Override
+    public long getMaxEventTime() {
+        return maxEventTime;
+    }
+
+    @Override
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public long getSize() {
+        return file.length();
+    }
+
+    private DataInputStream readSection(final long offset, final int length) throws IOException {
+        final byte[] section = new byte[length];
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            raf.readFully(section);
+        }
+        return new DataInputStream(new ByteArrayInputStream(section));
+    }
+
+    @Override
+    public long[] getEventIds() throws IOException {
+        return SegmentFormat.readEventIds(readSection(eventIdsOffset, eventIdsLength), eventCount);
+    }
+
+    @Override
+    public long[] getEventIds(final SearchableField field, final String term) throws IOException {
+        if (!SegmentFormat.isPostingField(field)) {
+            throw new IllegalArgumentException("Field " + field + " is not indexed by the Provenance Index Segment");
+        }
+
+        final DataInputStream in = readSection(postingsOffset, postingsLength);
+        final int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            final boolean fieldMatches = field.getSearchableFieldName().equals(in.readUTF());
+            final int termCount = in.readInt();
+            for (int j = 0; j < termCount; j++) {
+                final String segmentTerm = in.readUTF();
+                final int idCount = in.readInt();
+                if (fieldMatches && segmentTerm.equals(term)) {
+                    return SegmentFormat.readEventIds(in, idCount);
+                }
+
+                for (int k = 0; k < idCount; k++) {
+                    SegmentFormat.readVarLong(in);
+                }
+            }
+        }
+
+        return EMPTY;
+    }
+
+    @Override
+    public long[] getEventIdsForIdentifiers(final Collection<String> identifiers) throws IOException {
+        long[] hashes = new long[identifiers.size()];
+        int hashCount = 0;
+        for (final String identifier : identifiers) {
+            final long hash = SegmentFormat.hashIdentifier(identifier);
+            if (bloomFilter.mightContain(hash)) {
+                hashes[hashCount++] = hash;
+            }
+        }
+
+        // If the Bloom Filter rules out all identifiers, there is no need to touch the file.
+        if (hashCount == 0) {
+            return EMPTY;
+        }
+
+        hashes = Arrays.copyOf(hashes, hashCount);
+        final ActiveIndexSegment.LongList matching = new ActiveIndexSegment.LongList();
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            for (final long hash : hashes) {
+                long entryIndex = findFirstEntry(raf, hash);
+                while (entryIndex < identifierCount) {
+                    raf.seek(identifiersOffset + entryIndex * SegmentFormat.IDENTIFIER_ENTRY_LENGTH);
+                    if (raf.readLong() != hash) {
+                        break;
+                    }
+
+                    matching.add(raf.readLong());
+                    entryIndex++;
+                }
+            }
+        }
+
+        return ActiveIndexSegment.distinct(matching.toSortedArray());
+    }
+
+    /**
+     * Binary searches the identifier section for the first entry whose hash is not less than the given hash
+     */
+    private long findFirstEntry(final RandomAccessFile raf, final long hash) throws IOException {
+        long low = 0;
+        long high = identifierCount;
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            raf.seek(identifiersOffset + mid * SegmentFormat.IDENTIFIER_ENTRY_LENGTH);
+            if (raf.readLong() < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "PersistedIndexSegment[file=" + file + ", events=" + eventCount + ", eventIds=" + minEventId + "-" + maxEventId + "]";
+    }
+}
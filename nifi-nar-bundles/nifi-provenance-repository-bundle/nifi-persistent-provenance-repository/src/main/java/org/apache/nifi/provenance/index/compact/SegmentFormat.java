@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.search.SearchableField;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Describes the layout of a segment file that is written by {@link ActiveIndexSegment#persist(java.io.File)} and read by
+ * {@link PersistedIndexSegment}. A segment file consists of:
+ * </p>
+ *
+ * <ul>
+ * <li>A fixed-length header: format version, min/max event id, min/max event time, event count, and the offset and length of each section</li>
+ * <li>A Bloom Filter over the hashes of all FlowFile identifiers that the segment indexes</li>
+ * <li>The event id section: all event id's in the segment, in ascending order, delta-encoded as var-ints</li>
+ * <li>The identifier section: fixed-length (identifier hash, event id) pairs sorted by hash, so that it can be binary searched on disk</li>
+ * <li>The postings section: for each {@link #POSTING_FIELDS posting field}, a list of terms, each followed by the delta-encoded event id's of the events that have that term</li>
+ * </ul>
+ */
+final class SegmentFormat {
+    static final int VERSION = 1;
+    static final String FILE_EXTENSION = ".segment";
+
+    // version, 4 longs for id/time range, event count, and (offset, length) for each of the 3 sections
+    static final int HEADER_LENGTH = 4 + 4 * 8 + 4 + 3 * (8 + 4);
+    static final int IDENTIFIER_ENTRY_LENGTH = 16;
+
+    /**
+     * The fields for which posting lists are maintained. Queries against any other field are answered by filtering the events of each segment.
+     */
+    static final List<SearchableField> POSTING_FIELDS = Collections.unmodifiableList(Arrays.asList(SearchableFields.ComponentID, SearchableFields.EventType));
+
+    private SegmentFormat() {
+    }
+
+    static boolean isPostingField(final SearchableField field) {
+        return POSTING_FIELDS.contains(field);
+    }
+
+    static String getPostingTerm(final ProvenanceEventRecord event, final SearchableField field) {
+        if (SearchableFields.ComponentID.equals(field)) {
+            return event.getComponentId() == null ? null : event.getComponentId().toLowerCase();
+        }
+        if (SearchableFields.EventType.equals(field)) {
+            return event.getEventType() == null ? null : event.getEventType().name().toLowerCase();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the lower-cased FlowFile identifiers under which the given event should be found when computing lineage. This mirrors
+     * the identifiers that the Lucene-based index stores in the FlowFile UUID field of each document.
+     *
+     * @param event the event
+     * @return the identifiers for the event
+     */
+    static List<String> getLineageIdentifiers(final ProvenanceEventRecord event) {
+        final String flowFileUuid = event.getFlowFileUuid();
+        final List<String> identifiers = new ArrayList<>(2);
+        if (flowFileUuid != null) {
+            identifiers.add(flowFileUuid.toLowerCase());
+        }
+
+        final ProvenanceEventType eventType = event.getEventType();
+        if (eventType == ProvenanceEventType.FORK || eventType == ProvenanceEventType.CLONE || eventType == ProvenanceEventType.REPLAY) {
+            for (final String uuid : event.getChildUuids()) {
+                if (!uuid.equals(flowFileUuid)) {
+                    identifiers.add(uuid.toLowerCase());
+                }
+            }
+        } else if (eventType == ProvenanceEventType.JOIN) {
+            for (final String uuid : event.getParentUuids()) {
+                if (!uuid.equals(flowFileUuid)) {
+                    identifiers.add(uuid.toLowerCase());
+                }
+            }
+        } else if (eventType == ProvenanceEventType.RECEIVE && event.getSourceSystemFlowFileIdentifier() != null) {
+            final String sourceIdentifier = event.getSourceSystemFlowFileIdentifier();
+            final int lastColon = sourceIdentifier.lastIndexOf(":");
+            if (lastColon > -1 && lastColon < sourceIdentifier.length() - 2) {
+                identifiers.add(sourceIdentifier.substring(lastColon + 1).toLowerCase());
+            }
+        }
+
+        return identifiers;
+    }
+
+    /**
+     * Computes a 64-bit hash of the given identifier, using FNV-1a followed by the MurmurHash3 finalizer so that the upper and lower
+     * halves of the hash are both well distributed for use by the Bloom Filter.
+     *
+     * @param identifier the lower-cased identifier
+     * @return the hash of the identifier
+     */
+    static long hashIdentifier(final String identifier) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < identifier.length(); i++) {
+            hash ^= identifier.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    static void writeVarLong(final DataOutput out, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    static long readVarLong(final DataInput in) throws IOException {
+        long value = 0L;
+        int shift = 0;
+        while (true) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Encountered malformed var-int in Provenance Index Segment");
+            }
+        }
+    }
+
+    /**
+     * Writes the given ascending event id's as deltas from the previous id
+     */
+    static void writeEventIds(final DataOutput out, final long[] eventIds) throws IOException {
+        long previous = 0L;
+        for (final long eventId : eventIds) {
+            writeVarLong(out, eventId - previous);
+            previous = eventId;
+        }
+    }
+
+    static long[] readEventIds(final DataInput in, final int count) throws IOException {
+        final long[] eventIds = new long[count];
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            previous += readVarLong(in);
+            eventIds[i] = previous;
+        }
+        return eventIds;
+    }
+}
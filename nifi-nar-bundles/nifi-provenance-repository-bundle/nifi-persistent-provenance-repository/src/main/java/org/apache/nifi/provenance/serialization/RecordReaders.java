@@ -34,6 +34,8 @@ import org.apache.nifi.provenance.EncryptedSchemaRecordReader;
 import org.apache.nifi.provenance.EventIdFirstSchemaRecordReader;
 import org.apache.nifi.provenance.EventIdFirstSchemaRecordWriter;
 import org.apache.nifi.provenance.StandardRecordReader;
+import org.apache.nifi.provenance.columnar.ColumnarRecordReader;
+import org.apache.nifi.provenance.columnar.ColumnarRecordWriter;
 import org.apache.nifi.provenance.lucene.LuceneUtil;
 import org.apache.nifi.provenance.toc.StandardTocReader;
 import org.apache.nifi.provenance.toc.TocReader;
@@ -160,6 +162,14 @@ public class RecordReaders {
                     final TocReader tocReader = new StandardTocReader(tocFile);
                     return new EventIdFirstSchemaRecordReader(bufferedInStream, filename, tocReader, maxAttributeChars);
                 }
+                case ColumnarRecordWriter.SERIALIZATION_NAME: {
+                    if (!tocFile.exists()) {
+                        throw new FileNotFoundException("Cannot create TOC Reader because the file " + tocFile + " does not exist");
+                    }
+
+                    final TocReader tocReader = new StandardTocReader(tocFile);
+                    return new ColumnarRecordReader(bufferedInStream, filename, tocReader, maxAttributeChars, ColumnarRecordWriter.getActiveWriter(file));
+                }
                 case EncryptedSchemaRecordReader.SERIALIZATION_NAME: {
                     if (!tocFile.exists()) {
                         throw new FileNotFoundException("Cannot create TOC Reader because the file " + tocFile + " does not exist");
@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.store;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * Decouples the registration of Provenance Events from the writing of those events. Callers of {@link #register(Iterable)} hand their events
+ * to a bounded queue and dedicated writer threads drain that queue, combining the events of many callers into a single, larger batch that is
+ * handed to the {@link EventBatchWriter}. This keeps a slow or stalled disk from directly lengthening the time taken to commit a Process Session.
+ * </p>
+ *
+ * <p>
+ * The queue is bounded by the number of events that it holds. When it is full, callers block until the writer threads have made room; the amount
+ * of time spent blocked in this way is reported by {@link #getBackPressureTime(TimeUnit)}. If the registrar was created to wait for writes, a caller
+ * additionally waits until the batch that contains its events has been written, so that the events are durable (and searchable) once the call returns,
+ * as they would be without the registrar. Otherwise, the call returns as soon as the events have been queued.
+ * </p>
+ */
+public class AsyncEventRegistrar {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncEventRegistrar.class);
+    static final int MAX_EVENTS_PER_WRITE = 10_000;
+    private static final long POLL_MILLIS = 100L;
+
+    private final EventBatchWriter writer;
+    private final boolean waitForWrite;
+    private final int capacity;
+    private final int maxEventsPerWrite;
+    private final Semaphore capacityPermits;
+    private final LinkedBlockingQueue<PendingEvents> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService writerExecutor;
+    private final Object shutdownLock = new Object();
+    private volatile boolean shutdown = false;
+
+    private final LongAdder eventsWritten = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final AtomicLong maxWriteNanos = new AtomicLong(0L);
+    private final LongAdder backPressureNanos = new LongAdder();
+
+    public AsyncEventRegistrar(final EventBatchWriter writer, final int capacity, final int writerThreads, final boolean waitForWrite) {
+        this(writer, capacity, writerThreads, waitForWrite, MAX_EVENTS_PER_WRITE);
+    }
+
+    AsyncEventRegistrar(final EventBatchWriter writer, final int capacity, final int writerThreads, final boolean waitForWrite, final int maxEventsPerWrite) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Registration queue capacity must be at least 1 but was " + capacity);
+        }
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("Number of registration threads must be at least 1 but was " + writerThreads);
+        }
+
+        this.writer = writer;
+        this.capacity = capacity;
+        this.waitForWrite = waitForWrite;
+        this.maxEventsPerWrite = maxEventsPerWrite;
+        this.capacityPermits = new Semaphore(capacity);
+
+        writerExecutor = Executors.newFixedThreadPool(writerThreads, new NamedThreadFactory("Provenance Registration Thread", true));
+        for (int i = 0; i < writerThreads; i++) {
+            writerExecutor.submit(this::drainQueue);
+        }
+    }
+
+    /**
+     * Queues the given events to be written. The events are copied from the given Iterable before this method returns, so the Iterable and
+     * any objects that it is backed by may be reused by the caller once this method returns.
+     *
+     * @param events the events to register
+     */
+    public void register(final Iterable<ProvenanceEventRecord> events) {
+        final List<ProvenanceEventRecord> eventList = new ArrayList<>();
+        for (final ProvenanceEventRecord event : events) {
+            eventList.add(event);
+        }
+
+        if (eventList.isEmpty()) {
+            return;
+        }
+
+        if (shutdown) {
+            // The writer threads are no longer running, so write the events directly.
+            writer.writeEvents(eventList);
+            return;
+        }
+
+        // A single registration that is larger than the entire queue is allowed to fill the queue rather than block indefinitely.
+        final int permits = Math.min(eventList.size(), capacity);
+        if (!capacityPermits.tryAcquire(permits)) {
+            final long start = System.nanoTime();
+            try {
+                capacityPermits.acquire(permits);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for room to register {} Provenance Events; the events will be written by the registering thread", eventList.size());
+                writer.writeEvents(eventList);
+                return;
+            } finally {
+                backPressureNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        // The registrar may have been shut down while this thread waited for room. The shutdown flag is checked and the events queued
+        // while holding the lock that shutdown() takes to set the flag, so the events are either queued before the shutdown thread's
+        // final drain of the queue, or written here.
+        final PendingEvents pending = new PendingEvents(eventList, permits, waitForWrite);
+        final boolean queued;
+        synchronized (shutdownLock) {
+            queued = !shutdown && queue.offer(pending);
+        }
+
+        if (!queued) {
+            capacityPermits.release(permits);
+            writer.writeEvents(eventList);
+            return;
+        }
+
+        if (waitForWrite) {
+            pending.awaitWrite();
+        }
+    }
+
+    private void drainQueue() {
+        final List<PendingEvents> drained = new ArrayList<>();
+        final List<ProvenanceEventRecord> batch = new ArrayList<>();
+
+        while (true) {
+            PendingEvents pending;
+            try {
+                pending = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (pending == null) {
+                if (shutdown) {
+                    return;
+                }
+                continue;
+            }
+
+            // Combine as many queued registrations as possible into a single write.
+            while (pending != null) {
+                drained.add(pending);
+                batch.addAll(pending.getEvents());
+                if (batch.size() >= maxEventsPerWrite) {
+                    break;
+                }
+                pending = queue.poll();
+            }
+
+            final long start = System.nanoTime();
+            try {
+                writer.writeEvents(batch);
+            } catch (final Throwable t) {
+                logger.error("Failed to write {} Provenance Events", batch.size(), t);
+            } finally {
+                final long nanos = System.nanoTime() - start;
+                recordWrite(batch.size(), nanos);
+
+                for (final PendingEvents written : drained) {
+                    capacityPermits.release(written.getPermits());
+                    written.markWritten();
+                }
+
+                drained.clear();
+                batch.clear();
+            }
+        }
+    }
+
+    private void recordWrite(final int eventCount, final long nanos) {
+        eventsWritten.add(eventCount);
+        batchesWritten.increment();
+        writeNanos.add(nanos);
+
+        long currentMax = maxWriteNanos.get();
+        while (nanos > currentMax && !maxWriteNanos.compareAndSet(currentMax, nanos)) {
+            currentMax = maxWriteNanos.get();
+        }
+
+        logger.debug("Wrote {} Provenance Events in {} millis; {} events remain queued", eventCount, TimeUnit.NANOSECONDS.toMillis(nanos), getQueuedEventCount());
+    }
+
+    /**
+     * Stops accepting events into the queue, waits for all events that have already been queued to be written, and stops the writer threads.
+     * Any events registered after this method is called are written by the registering thread.
+     */
+    public void shutdown() {
+        synchronized (shutdownLock) {
+            shutdown = true;
+        }
+
+        writerExecutor.shutdown();
+        try {
+            if (!writerExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Provenance Registration Threads did not finish writing queued events within 1 minute; remaining events will be written by the shutdown thread");
+                writerExecutor.shutdownNow();
+            }
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+
+        // A registration may have been queued after the writer threads observed the shutdown flag. No registration can be queued once the flag
+        // has been set, so this drain leaves the queue empty.
+        PendingEvents pending;
+        while ((pending = queue.poll()) != null) {
+            try {
+                writer.writeEvents(pending.getEvents());
+            } finally {
+                capacityPermits.release(pending.getPermits());
+                pending.markWritten();
+            }
+        }
+    }
+
+    /**
+     * @return the number of events that have been registered but not yet written
+     */
+    public int getQueuedEventCount() {
+        return capacity - capacityPermits.availablePermits();
+    }
+
+    /**
+     * @return the maximum number of events that may be queued before registration blocks
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of events that have been written
+     */
+    public long getEventsWritten() {
+        return eventsWritten.sum();
+    }
+
+    /**
+     * @return the number of writes that have been performed, each of which may contain the events of many registrations
+     */
+    public long getBatchesWritten() {
+        return batchesWritten.sum();
+    }
+
+    /**
+     * @param timeUnit the unit of time to return
+     * @return the average amount of time taken to write a batch of events
+     */
+    public long getAverageWriteLatency(final TimeUnit timeUnit) {
+        final long batches = batchesWritten.sum();
+        return batches == 0 ? 0L : timeUnit.convert(writeNanos.sum() / batches, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit the unit of time to return
+     * @return the longest amount of time taken to write a batch of events
+     */
+    public long getMaxWriteLatency(final TimeUnit timeUnit) {
+        return timeUnit.convert(maxWriteNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit the unit of time to return
+     * @return the total amount of time that registering threads have spent waiting for room in the queue
+     */
+    public long getBackPressureTime(final TimeUnit timeUnit) {
+        return timeUnit.convert(backPressureNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isWaitForWrite() {
+        return waitForWrite;
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncEventRegistrar[queued=" + getQueuedEventCount() + "/" + capacity + ", eventsWritten=" + getEventsWritten() + ", batchesWritten=" + getBatchesWritten()
+            + ", averageWriteMillis=" + getAverageWriteLatency(TimeUnit.MILLISECONDS) + ", maxWriteMillis=" + getMaxWriteLatency(TimeUnit.MILLISECONDS)
+            + ", backPressureMillis=" + getBackPressureTime(TimeUnit.MILLISECONDS) + "]";
+    }
+
+
+    /**
+     * Writes a batch of Provenance Events. Implementations are responsible for handling and reporting any failure to write the events.
+     */
+    public interface EventBatchWriter {
+        void writeEvents(List<ProvenanceEventRecord> events);
+    }
+
+    private static class PendingEvents {
+        private final List<ProvenanceEventRecord> events;
+        private final int permits;
+        private final CountDownLatch writtenLatch;
+
+        PendingEvents(final List<ProvenanceEventRecord> events, final int permits, final boolean trackWrite) {
+            this.events = events;
+            this.permits = permits;
+            this.writtenLatch = trackWrite ? new CountDownLatch(1) : null;
+        }
+
+        List<ProvenanceEventRecord> getEvents() {
+            return events;
+        }
+
+        int getPermits() {
+            return permits;
+        }
+
+        void markWritten() {
+            if (writtenLatch != null) {
+                writtenLatch.countDown();
+            }
+        }
+
+        void awaitWrite() {
+            try {
+                writtenLatch.await();
+            } catch (final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.columnar;
+
+import org.apache.nifi.provenance.AbstractTestRecordReaderWriter;
+import org.apache.nifi.provenance.EventIdFirstSchemaRecordWriter;
+import org.apache.nifi.provenance.IdentifierLookup;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.serialization.RecordReader;
+import org.apache.nifi.provenance.serialization.RecordReaders;
+import org.apache.nifi.provenance.serialization.RecordWriter;
+import org.apache.nifi.provenance.toc.StandardTocReader;
+import org.apache.nifi.provenance.toc.StandardTocWriter;
+import org.apache.nifi.provenance.toc.TocReader;
+import org.apache.nifi.provenance.toc.TocUtil;
+import org.apache.nifi.provenance.toc.TocWriter;
+import org.apache.nifi.stream.io.GZIPOutputStream;
+import org.apache.nifi.stream.io.StreamUtils;
+import org.apache.nifi.util.file.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestColumnarRecordReaderWriter extends AbstractTestRecordReaderWriter {
+    private static final Logger logger = LoggerFactory.getLogger(TestColumnarRecordReaderWriter.class);
+
+    private final AtomicLong idGenerator = new AtomicLong(0L);
+    private File storageDir;
+
+    @Before
+    public void setup() {
+        storageDir = new File("target/storage/" + UUID.randomUUID().toString());
+        idGenerator.set(0L);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        if (storageDir.exists()) {
+            FileUtils.deleteFile(storageDir, true);
+        }
+    }
+
+    @Override
+    protected RecordWriter createWriter(final File file, final TocWriter tocWriter, final boolean compressed, final int uncompressedBlockSize) throws IOException {
+        return new ColumnarRecordWriter(file, idGenerator, tocWriter, BlockCodecs.getCodec(BlockCodecs.DEFLATE), uncompressedBlockSize);
+    }
+
+    @Override
+    protected RecordReader createReader(final InputStream in, final String journalFilename, final TocReader tocReader, final int maxAttributeSize) throws IOException {
+        return new ColumnarRecordReader(in, journalFilename, tocReader, maxAttributeSize);
+    }
+
+    private ProvenanceEventRecord createFullEvent(final int index) {
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("filename", "file-" + index + ".txt");
+        previousAttributes.put("path", "./");
+
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("filename", "file-" + index + ".txt.gz");
+        updatedAttributes.put("mime.type", null);
+
+        final long now = System.currentTimeMillis();
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventTime(now + index)
+            .setFlowFileEntryDate(now - 5000L)
+            .setLineageStartDate(now - 10000L)
+            .setEventDuration(index % 3 == 0 ? -1L : index)
+            .setEventType(index % 2 == 0 ? ProvenanceEventType.FORK : ProvenanceEventType.CONTENT_MODIFIED)
+            .setComponentId("1234")
+            .setComponentType("dummy processor")
+            .setSourceQueueIdentifier(index % 2 == 0 ? null : "queue-1")
+            .setFlowFileUUID(index % 4 == 0 ? "not a uuid " + index : UUID.randomUUID().toString())
+            .setParentUuids(Arrays.asList(UUID.randomUUID().toString(), UUID.randomUUID().toString().toUpperCase()))
+            .setChildUuids(Arrays.asList(UUID.randomUUID().toString()))
+            .setTransitUri(index % 2 == 0 ? null : "nifi://unit-test")
+            .setAlternateIdentifierUri(index % 2 == 0 ? "urn:alternate:" + index : null)
+            .setSourceSystemFlowFileIdentifier(null)
+            .setDetails(index % 2 == 0 ? null : "Compressed")
+            .setRelationship("success")
+            .setAttributes(previousAttributes, updatedAttributes)
+            .setPreviousContentClaim("default", "1", "1234-" + index, index % 2 == 0 ? null : 12L, 100L)
+            .setCurrentContentClaim("default", "2", "5678-" + index, 0L, 10L * index)
+            .build();
+    }
+
+    private void assertFieldsEqual(final ProvenanceEventRecord expected, final ProvenanceEventRecord actual) {
+        assertEquals(expected.getEventTime(), actual.getEventTime());
+        assertEquals(expected.getFlowFileEntryDate(), actual.getFlowFileEntryDate());
+        assertEquals(expected.getLineageStartDate(), actual.getLineageStartDate());
+        assertEquals(expected.getEventDuration(), actual.getEventDuration());
+        assertEquals(expected.getEventType(), actual.getEventType());
+        assertEquals(expected.getComponentId(), actual.getComponentId());
+        assertEquals(expected.getComponentType(), actual.getComponentType());
+        assertEquals(expected.getSourceQueueIdentifier(), actual.getSourceQueueIdentifier());
+        assertEquals(expected.getFlowFileUuid(), actual.getFlowFileUuid());
+        assertEquals(expected.getParentUuids(), actual.getParentUuids());
+        assertEquals(expected.getChildUuids(), actual.getChildUuids());
+        assertEquals(expected.getTransitUri(), actual.getTransitUri());
+        assertEquals(expected.getAlternateIdentifierUri(), actual.getAlternateIdentifierUri());
+        assertEquals(expected.getSourceSystemFlowFileIdentifier(), actual.getSourceSystemFlowFileIdentifier());
+        assertEquals(expected.getDetails(), actual.getDetails());
+        assertEquals(expected.getRelationship(), actual.getRelationship());
+        assertEquals(expected.getPreviousAttributes(), actual.getPreviousAttributes());
+        assertEquals(expected.getUpdatedAttributes(), actual.getUpdatedAttributes());
+        assertEquals(expected.getContentClaimContainer(), actual.getContentClaimContainer());
+        assertEquals(expected.getContentClaimSection(), actual.getContentClaimSection());
+        assertEquals(expected.getContentClaimIdentifier(), actual.getContentClaimIdentifier());
+        assertEquals(expected.getContentClaimOffset(), actual.getContentClaimOffset());
+        assertEquals(expected.getFileSize(), actual.getFileSize());
+        assertEquals(expected.getPreviousContentClaimContainer(), actual.getPreviousContentClaimContainer());
+        assertEquals(expected.getPreviousContentClaimSection(), actual.getPreviousContentClaimSection());
+        assertEquals(expected.getPreviousContentClaimIdentifier(), actual.getPreviousContentClaimIdentifier());
+        assertEquals(expected.getPreviousContentClaimOffset(), actual.getPreviousContentClaimOffset());
+        assertEquals(expected.getPreviousFileSize(), actual.getPreviousFileSize());
+    }
+
+    @Test
+    public void testAllFieldsRoundTripWithEachCodec() throws IOException {
+        for (final String codecName : Arrays.asList(BlockCodecs.NONE, BlockCodecs.DEFLATE)) {
+            final File journalFile = new File(storageDir, codecName + ".prov");
+            final File tocFile = TocUtil.getTocFile(journalFile);
+            final ProvenanceEventRecord[] events = new ProvenanceEventRecord[100];
+
+            try (final RecordWriter writer = new ColumnarRecordWriter(journalFile, idGenerator, new StandardTocWriter(tocFile, false, false),
+                BlockCodecs.getCodec(codecName), 1024)) {
+                writer.writeHeader(idGenerator.get());
+                for (int i = 0; i < events.length; i++) {
+                    events[i] = createFullEvent(i);
+                    writer.writeRecord(events[i]);
+                }
+            }
+
+            try (final FileInputStream fis = new FileInputStream(journalFile);
+                final RecordReader reader = createReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+                assertTrue(reader.getTocReader().getBlockOffset(1) > 0);
+
+                for (final ProvenanceEventRecord expected : events) {
+                    final StandardProvenanceEventRecord recovered = reader.nextRecord();
+                    assertNotNull(recovered);
+                    assertFieldsEqual(expected, recovered);
+                    assertEquals(journalFile.getName(), recovered.getStorageFilename());
+                }
+
+                assertNull(reader.nextRecord());
+            }
+        }
+    }
+
+    @Test
+    public void testAttributeValuesTruncated() throws IOException {
+        final File journalFile = new File(storageDir, "truncate.prov");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+
+        final char[] longValue = new char[100];
+        Arrays.fill(longValue, 'a');
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("long", new String(longValue));
+
+        final ProvenanceEventRecord event = new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.RECEIVE)
+            .setComponentId("1234")
+            .setComponentType("dummy processor")
+            .setFlowFileUUID(UUID.randomUUID().toString())
+            .setTransitUri("nifi://unit-test")
+            .setAttributes(attributes, attributes)
+            .setCurrentContentClaim(null, null, null, null, 0L)
+            .build();
+
+        try (final RecordWriter writer = createWriter(journalFile, new StandardTocWriter(tocFile, false, false), false, 1024)) {
+            writer.writeHeader(0L);
+            writer.writeRecord(event);
+        }
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final RecordReader reader = createReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 40)) {
+            final StandardProvenanceEventRecord recovered = reader.nextRecord();
+            assertEquals(40, recovered.getPreviousAttributes().get("long").length());
+            assertEquals(40, recovered.getUpdatedAttributes().get("long").length());
+            assertNull(recovered.getContentClaimIdentifier());
+        }
+    }
+
+    @Test
+    public void testEventsReadableAfterFlush() throws IOException {
+        final File journalFile = new File(storageDir, "flush.prov");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+
+        try (final RecordWriter writer = createWriter(journalFile, new StandardTocWriter(tocFile, false, false), false, 1024 * 1024)) {
+            writer.writeHeader(0L);
+            for (int i = 0; i < 5; i++) {
+                writer.writeRecord(createEvent());
+            }
+            writer.flush();
+            writer.writeRecord(createEvent());
+            writer.flush();
+
+            // The block size was never reached, so the block is still open and nothing but the header is in the file
+            try (final FileInputStream fis = new FileInputStream(journalFile);
+                final RecordReader reader = createReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+                assertNull(reader.nextRecord());
+            }
+
+            // A reader that is created for the file obtains the events of the open block from the writer
+            try (final RecordReader reader = RecordReaders.newRecordReader(journalFile, Collections.emptyList(), 2048)) {
+                assertEquals(5L, reader.getMaxEventId());
+            }
+
+            try (final RecordReader reader = RecordReaders.newRecordReader(journalFile, Collections.emptyList(), 2048)) {
+                final Optional<ProvenanceEventRecord> event = reader.skipToEvent(3L);
+                assertTrue(event.isPresent());
+                assertEquals(3L, event.get().getEventId());
+                assertEquals(0, reader.getBlockIndex());
+            }
+        }
+
+        // Both flushes were written as a single block when the writer was closed
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final TocReader tocReader = new StandardTocReader(tocFile);
+            final RecordReader reader = createReader(fis, journalFile.getName(), tocReader, 2048)) {
+            assertEquals(-1L, tocReader.getBlockOffset(1));
+            assertEquals(5L, reader.getMaxEventId());
+        }
+    }
+
+    @Test
+    public void testOpenBlockWrittenOnSync() throws IOException {
+        final File journalFile = new File(storageDir, "sync.prov");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+
+        try (final RecordWriter writer = createWriter(journalFile, new StandardTocWriter(tocFile, false, false), false, 1024 * 1024)) {
+            writer.writeHeader(0L);
+            for (int i = 0; i < 3; i++) {
+                writer.writeRecord(createEvent());
+            }
+            writer.flush();
+            writer.sync();
+
+            try (final FileInputStream fis = new FileInputStream(journalFile);
+                final RecordReader reader = createReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+                assertEquals(2L, reader.getMaxEventId());
+            }
+
+            // Events written after the sync go into a new block, which is served from memory
+            writer.writeRecord(createEvent());
+            writer.flush();
+            try (final RecordReader reader = RecordReaders.newRecordReader(journalFile, Collections.emptyList(), 2048)) {
+                for (long id = 0; id < 4; id++) {
+                    assertEquals(id, reader.nextRecord().getEventId());
+                }
+                assertNull(reader.nextRecord());
+            }
+        }
+    }
+
+    @Test
+    public void testOpenBlockWrittenOnceOld() throws IOException, InterruptedException {
+        final File journalFile = new File(storageDir, "age.prov");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+
+        try (final ColumnarRecordWriter writer = (ColumnarRecordWriter) createWriter(journalFile, new StandardTocWriter(tocFile, false, false), false, 1024 * 1024)) {
+            writer.writeHeader(0L);
+            writer.writeRecord(createEvent());
+            writer.flush();
+
+            // A block that is not yet old enough is kept open
+            assertFalse(writer.writeBlockIfExpired());
+
+            // Once no more events are added, the block is written in the background rather than waiting for the next flush
+            Thread.sleep(ColumnarRecordWriter.MAX_OPEN_BLOCK_MILLIS + 500L);
+            try (final FileInputStream fis = new FileInputStream(journalFile);
+                final RecordReader reader = createReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+                assertEquals(0L, reader.getMaxEventId());
+            }
+
+            // With the block written, there is no open block left to write
+            assertFalse(writer.writeBlockIfExpired());
+        }
+    }
+
+    /**
+     * The Repository flushes after every session commit, which typically holds only a few events. This compares the size of a file written that way
+     * with the row format, both as the row format is written and after it is compressed on rollover.
+     */
+    @Test
+    public void testSmallBatchesSmallerThanRowFormat() throws IOException {
+        final int eventCount = 20_000;
+        final int batchSize = 5;
+
+        final File rowFile = new File(storageDir, "row.prov");
+        final File columnarFile = new File(storageDir, "columnar.prov");
+        final AtomicLong rowIdGenerator = new AtomicLong(0L);
+
+        // Use the block sizes of the WriteAheadProvenanceRepository
+        final long rowNanos;
+        final long columnarNanos;
+        try (final RecordWriter rowWriter = new EventIdFirstSchemaRecordWriter(rowFile, rowIdGenerator, new StandardTocWriter(TocUtil.getTocFile(rowFile), false, false),
+                false, 32 * 1024, IdentifierLookup.EMPTY);
+            final RecordWriter columnarWriter = createWriter(columnarFile, new StandardTocWriter(TocUtil.getTocFile(columnarFile), false, false), false, 256 * 1024)) {
+
+            rowWriter.writeHeader(0L);
+            columnarWriter.writeHeader(0L);
+
+            final List<ProvenanceEventRecord> events = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                events.add(createTypicalEvent(i));
+            }
+
+            rowNanos = writeInBatches(rowWriter, events, batchSize);
+            columnarNanos = writeInBatches(columnarWriter, events, batchSize);
+        }
+
+        final File gzippedRowFile = new File(storageDir, "row.prov.gz");
+        try (final InputStream in = new FileInputStream(rowFile);
+            final OutputStream out = new GZIPOutputStream(new FileOutputStream(gzippedRowFile), 1)) {
+            StreamUtils.copy(in, out);
+        }
+
+        logger.info("Wrote {} events in batches of {}: row format {} bytes ({} bytes compressed on rollover) in {} millis, columnar format {} bytes in {} millis",
+            eventCount, batchSize, rowFile.length(), gzippedRowFile.length(), TimeUnit.NANOSECONDS.toMillis(rowNanos), columnarFile.length(),
+            TimeUnit.NANOSECONDS.toMillis(columnarNanos));
+
+        assertTrue(columnarFile.length() < rowFile.length() / 4);
+        assertTrue(columnarFile.length() < gzippedRowFile.length());
+
+        try (final RecordReader reader = RecordReaders.newRecordReader(columnarFile, Collections.emptyList(), 2048)) {
+            assertEquals(eventCount - 1, reader.getMaxEventId());
+        }
+    }
+
+    /**
+     * Creates an event such as a flow of a few components would generate: each FlowFile has its own UUID and filename, while the components,
+     * event types, relationships and most attributes repeat from one event to the next
+     */
+    private ProvenanceEventRecord createTypicalEvent(final int index) {
+        final String flowFileUuid = UUID.randomUUID().toString();
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", flowFileUuid);
+        attributes.put("filename", "file-" + index + ".json");
+        attributes.put("path", "./");
+        attributes.put("mime.type", "application/json");
+
+        final int component = index % 5;
+        final long now = System.currentTimeMillis();
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventTime(now)
+            .setFlowFileEntryDate(now - 50L)
+            .setLineageStartDate(now - 100L)
+            .setEventDuration(index % 7)
+            .setEventType(component == 0 ? ProvenanceEventType.RECEIVE : ProvenanceEventType.ATTRIBUTES_MODIFIED)
+            .setComponentId("00000000-0000-0000-0000-00000000000" + component)
+            .setComponentType(component == 0 ? "ListenHTTP" : "UpdateAttribute")
+            .setSourceQueueIdentifier(component == 0 ? null : "00000000-0000-0000-0000-10000000000" + component)
+            .setFlowFileUUID(flowFileUuid)
+            .setTransitUri(component == 0 ? "http://localhost:8080/contentListener" : null)
+            .setAttributes(attributes, attributes)
+            .setCurrentContentClaim("default", String.valueOf(index / 100 % 1024), "1600000000000-" + index / 100, (index % 100) * 1024L, 1024L)
+            .build();
+    }
+
+    private long writeInBatches(final RecordWriter writer, final List<ProvenanceEventRecord> events, final int batchSize) throws IOException {
+        final long start = System.nanoTime();
+        for (int i = 0; i < events.size(); i++) {
+            writer.writeRecord(events.get(i));
+            if (i % batchSize == batchSize - 1) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void testIncompleteFinalBlockIgnored() throws IOException {
+        final File journalFile = new File(storageDir, "truncated.prov");
+        final File tocFile = TocUtil.getTocFile(journalFile);
+
+        try (final RecordWriter writer = createWriter(journalFile, new StandardTocWriter(tocFile, false, false), false, 100)) {
+            writer.writeHeader(0L);
+            for (int i = 0; i < 10; i++) {
+                writer.writeRecord(createEvent());
+            }
+        }
+
+        // Chop off the end of the last block, as would happen if NiFi were killed while writing it
+        try (final RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        try (final FileInputStream fis = new FileInputStream(journalFile);
+            final RecordReader reader = createReader(fis, journalFile.getName(), new StandardTocReader(tocFile), 2048)) {
+            assertEquals(8L, reader.getMaxEventId());
+        }
+    }
+
+    @Test
+    public void testCodecsRoundTrip() throws IOException {
+        final byte[] data = new byte[100_000];
+        final Random random = new Random(1L);
+        for (int i = 0; i < data.length; i++) {
+            // Limit the alphabet so that the data is compressible
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        for (final String codecName : Arrays.asList(BlockCodecs.NONE, BlockCodecs.DEFLATE)) {
+            final BlockCodec codec = BlockCodecs.getCodec(codecName);
+            assertEquals(codecName, codec.getName());
+
+            final byte[] compressed = codec.compress(data, data.length - 10);
+            final byte[] decompressed = codec.decompress(compressed, data.length - 10);
+            assertArrayEquals(Arrays.copyOf(data, data.length - 10), decompressed);
+
+            if (!BlockCodecs.NONE.equals(codecName)) {
+                assertTrue(codecName + " did not compress data", compressed.length < data.length / 2);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownCodec() {
+        BlockCodecs.getCodec("brotli");
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.index.compact;
+
+import org.apache.nifi.events.EventReporter;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.RepositoryConfiguration;
+import org.apache.nifi.provenance.SearchableFields;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.apache.nifi.provenance.authorization.EventAuthorizer;
+import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
+import org.apache.nifi.provenance.lineage.LineageNode;
+import org.apache.nifi.provenance.lineage.LineageNodeType;
+import org.apache.nifi.provenance.lineage.ProvenanceEventLineageNode;
+import org.apache.nifi.provenance.search.Query;
+import org.apache.nifi.provenance.search.QueryResult;
+import org.apache.nifi.provenance.search.QuerySubmission;
+import org.apache.nifi.provenance.search.SearchTerms;
+import org.apache.nifi.provenance.store.ArrayListEventStore;
+import org.apache.nifi.provenance.store.StorageResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestCompactEventIndex {
+
+    private final AtomicLong idGenerator = new AtomicLong(0L);
+
+    @Rule
+    public TestName testName = new TestName();
+
+    @Before
+    public void setup() {
+        idGenerator.set(0L);
+    }
+
+    @Test
+    public void testPersistedSegmentMatchesActiveSegment() throws IOException {
+        final ActiveIndexSegment active = new ActiveIndexSegment();
+        final String forkedUuid = UUID.randomUUID().toString();
+        for (int i = 0; i < 100; i++) {
+            final ProvenanceEventRecord event = createEvent(1000L + i, UUID.randomUUID().toString(), "component-" + (i % 3));
+            active.addEvent(event, event.getEventId());
+        }
+
+        final ProvenanceEventRecord fork = createForkEvent(2000L, UUID.randomUUID().toString(), forkedUuid);
+        active.addEvent(fork, fork.getEventId());
+
+        final File storageDir = new File("target/storage/" + testName.getMethodName() + "/" + UUID.randomUUID().toString());
+        assertTrue(storageDir.mkdirs());
+        final PersistedIndexSegment persisted = active.persist(new File(storageDir, "segment" + SegmentFormat.FILE_EXTENSION));
+        final PersistedIndexSegment reopened = PersistedIndexSegment.open(persisted.getFile());
+
+        for (final IndexSegment segment : Arrays.asList(persisted, reopened)) {
+            assertEquals(101, segment.getEventCount());
+            assertEquals(0L, segment.getMinEventId());
+            assertEquals(100L, segment.getMaxEventId());
+            assertEquals(1000L, segment.getMinEventTime());
+            assertEquals(2000L, segment.getMaxEventTime());
+            assertArrayEquals(active.getEventIds(), segment.getEventIds());
+            assertArrayEquals(active.getEventIds(SearchableFields.ComponentID, "component-1"), segment.getEventIds(SearchableFields.ComponentID, "component-1"));
+            assertEquals(34, segment.getEventIds(SearchableFields.ComponentID, "component-1").length);
+            assertArrayEquals(new long[] {100L}, segment.getEventIds(SearchableFields.EventType, "fork"));
+            assertEquals(0, segment.getEventIds(SearchableFields.ComponentID, "no-such-component").length);
+            assertArrayEquals(new long[] {100L}, segment.getEventIdsForIdentifiers(Collections.singleton(forkedUuid)));
+            assertEquals(0, segment.getEventIdsForIdentifiers(Collections.singleton(UUID.randomUUID().toString())).length);
+        }
+    }
+
+    @Test
+    public void testBloomFilterHasNoFalseNegatives() {
+        final BloomFilter bloomFilter = BloomFilter.create(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.add(SegmentFormat.hashIdentifier("identifier-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(bloomFilter.mightContain(SegmentFormat.hashIdentifier("identifier-" + i)));
+            if (bloomFilter.mightContain(SegmentFormat.hashIdentifier("other-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 500);
+    }
+
+    @Test(timeout = 60000)
+    public void testQueryByComponentIdSpansSegments() throws InterruptedException {
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final CompactEventIndex index = new CompactEventIndex(createConfig(), 10, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        for (int i = 0; i < 25; i++) {
+            addEvent(index, eventStore, createEvent(System.currentTimeMillis(), UUID.randomUUID().toString(), "component-" + (i % 2)));
+        }
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "COMPONENT-1", null));
+        query.setMaxResults(100);
+
+        final List<ProvenanceEventRecord> events = submitQuery(index, query);
+        assertEquals(12, events.size());
+        for (final ProvenanceEventRecord event : events) {
+            assertEquals("component-1", event.getComponentId());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testQueryReturnsNewestMatches() throws InterruptedException {
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final CompactEventIndex index = new CompactEventIndex(createConfig(), 10, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        for (int i = 0; i < 50; i++) {
+            addEvent(index, eventStore, createEvent(System.currentTimeMillis(), UUID.randomUUID().toString(), "component-1"));
+        }
+
+        // Details is not indexed, so the query must be answered by filtering the events of each segment.
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.Details, "details for*", null));
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "FORK", true));
+        query.setMaxResults(15);
+
+        final List<ProvenanceEventRecord> events = submitQuery(index, query);
+        final Set<Long> eventIds = events.stream().map(ProvenanceEventRecord::getEventId).collect(Collectors.toSet());
+        assertEquals(15, eventIds.size());
+        for (long id = 35; id < 50; id++) {
+            assertTrue(eventIds.contains(id));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLineageIncludesForkedChildren() throws InterruptedException {
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final CompactEventIndex index = new CompactEventIndex(createConfig(), 3, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        final String parentUuid = UUID.randomUUID().toString();
+        final String childUuid = UUID.randomUUID().toString();
+        final long now = System.currentTimeMillis();
+
+        addEvent(index, eventStore, createEvent(now, parentUuid, "component-1"));
+        for (int i = 0; i < 5; i++) {
+            addEvent(index, eventStore, createEvent(now, UUID.randomUUID().toString(), "component-1"));
+        }
+        addEvent(index, eventStore, createForkEvent(now, parentUuid, childUuid));
+        addEvent(index, eventStore, createEvent(now, childUuid, "component-2"));
+
+        final ComputeLineageSubmission submission = index.submitLineageComputation(childUuid, null, EventAuthorizer.GRANT_ALL);
+        assertTrue(submission.getResult().awaitCompletion(15, TimeUnit.SECONDS));
+        assertNull(submission.getResult().getError());
+
+        final List<Long> eventIds = submission.getResult().getNodes().stream()
+            .filter(node -> node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE)
+            .map(node -> ((ProvenanceEventLineageNode) node).getEventIdentifier())
+            .sorted()
+            .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(6L, 7L), eventIds);
+    }
+
+    @Test(timeout = 60000)
+    public void testUnauthorizedEventsGetPlaceholdersForLineage() throws InterruptedException {
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final CompactEventIndex index = new CompactEventIndex(createConfig(), 2, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        for (int i = 0; i < 3; i++) {
+            addEvent(index, eventStore, createEvent(System.currentTimeMillis(), "1234", "component-1"));
+        }
+
+        final ComputeLineageSubmission submission = index.submitLineageComputation(1L, null, EventAuthorizer.DENY_ALL);
+        assertTrue(submission.getResult().awaitCompletion(15, TimeUnit.SECONDS));
+
+        final List<LineageNode> nodes = submission.getResult().getNodes();
+        assertEquals(3, nodes.size());
+        for (final LineageNode node : nodes) {
+            assertEquals(LineageNodeType.PROVENANCE_EVENT_NODE, node.getNodeType());
+            assertEquals(ProvenanceEventType.UNKNOWN, ((ProvenanceEventLineageNode) node).getEventType());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testSegmentsAreRestoredOnRestart() throws IOException, InterruptedException {
+        final RepositoryConfiguration config = createConfig();
+        final ArrayListEventStore eventStore = new ArrayListEventStore();
+        final CompactEventIndex index = new CompactEventIndex(config, 10, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        for (int i = 0; i < 25; i++) {
+            addEvent(index, eventStore, createEvent(System.currentTimeMillis(), UUID.randomUUID().toString(), "component-1"));
+        }
+
+        // Only the full segments have been persisted; the remaining events are held in memory until the index is closed.
+        assertEquals(9L, index.getMinimumEventIdToReindex("1"));
+        index.close();
+        assertEquals(14L, index.getMinimumEventIdToReindex("1"));
+
+        final CompactEventIndex restored = new CompactEventIndex(config, 10, EventReporter.NO_OP);
+        restored.initialize(eventStore);
+        assertEquals(14L, restored.getMinimumEventIdToReindex("1"));
+        assertTrue(restored.getSize() > 0L);
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.EventType, "CONTENT_MODIFIED", null));
+        query.setMaxResults(1000);
+        assertEquals(25, submitQuery(restored, query).size());
+
+        restored.close();
+    }
+
+    @Test
+    public void testMaintenanceRemovesExpiredSegments() throws IOException {
+        final ArrayListEventStore eventStore = new ArrayListEventStore() {
+            @Override
+            public List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxResults) throws IOException {
+                // Simulate the first 20 events having aged off
+                return Collections.singletonList(getEvent(20L).get());
+            }
+        };
+
+        final CompactEventIndex index = new CompactEventIndex(createConfig(), 10, EventReporter.NO_OP);
+        index.initialize(eventStore);
+
+        for (int i = 0; i < 35; i++) {
+            addEvent(index, eventStore, createEvent(System.currentTimeMillis(), UUID.randomUUID().toString(), "component-1"));
+        }
+
+        final long sizeBefore = index.getSize();
+        index.performMaintenance();
+        assertTrue(index.getSize() < sizeBefore);
+        assertEquals(19L, index.getMinimumEventIdToReindex("1"));
+        index.close();
+    }
+
+    @Test
+    public void testIntersect() {
+        assertArrayEquals(new long[] {3L, 7L}, CompactEventIndex.intersect(new long[] {1L, 3L, 5L, 7L}, new long[] {2L, 3L, 7L, 9L}));
+        assertArrayEquals(new long[0], CompactEventIndex.intersect(new long[] {1L, 3L}, new long[] {2L, 4L}));
+        assertFalse(CompactEventIndex.intersect(new long[] {1L}, new long[] {1L}).length == 0);
+    }
+
+    private List<ProvenanceEventRecord> submitQuery(final CompactEventIndex index, final Query query) throws InterruptedException {
+        final QuerySubmission submission = index.submitQuery(query, EventAuthorizer.GRANT_ALL, null);
+        final QueryResult result = submission.getResult();
+        assertTrue(result.awaitCompletion(15, TimeUnit.SECONDS));
+        assertNull(result.getError());
+        return result.getMatchingEvents();
+    }
+
+    private void addEvent(final CompactEventIndex index, final ArrayListEventStore eventStore, final ProvenanceEventRecord event) {
+        final StorageResult storageResult = eventStore.addEvent(event);
+        index.addEvents(storageResult.getStorageLocations());
+    }
+
+    private RepositoryConfiguration createConfig() {
+        final RepositoryConfiguration config = new RepositoryConfiguration();
+        final File storageDir = new File("target/storage/" + testName.getMethodName() + "/" + UUID.randomUUID().toString());
+        config.addStorageDirectory("1", storageDir);
+        assertTrue(storageDir.exists() || storageDir.mkdirs());
+        return config;
+    }
+
+    private ProvenanceEventRecord createEvent(final long timestamp, final String uuid, final String componentId) {
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("uuid", uuid);
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("updated", "true");
+
+        final long eventId = idGenerator.getAndIncrement();
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.CONTENT_MODIFIED)
+            .setAttributes(previousAttributes, updatedAttributes)
+            .setComponentId(componentId)
+            .setComponentType("unit test")
+            .setDetails("Details for event " + eventId)
+            .setEventId(eventId)
+            .setEventTime(timestamp)
+            .setFlowFileEntryDate(timestamp)
+            .setFlowFileUUID(uuid)
+            .setLineageStartDate(timestamp)
+            .setCurrentContentClaim("container", "section", "unit-test-id", 0L, 1024L)
+            .build();
+    }
+
+    private ProvenanceEventRecord createForkEvent(final long timestamp, final String parentUuid, final String childUuid) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", parentUuid);
+
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.FORK)
+            .setAttributes(attributes, Collections.emptyMap())
+            .setComponentId("component-1")
+            .setComponentType("unit test")
+            .setEventId(idGenerator.getAndIncrement())
+            .setEventTime(timestamp)
+            .setFlowFileEntryDate(timestamp)
+            .setFlowFileUUID(parentUuid)
+            .addParentUuid(parentUuid)
+            .addChildUuid(childUuid)
+            .setLineageStartDate(timestamp)
+            .setCurrentContentClaim("container", "section", "unit-test-id", 0L, 1024L)
+            .build();
+    }
+}
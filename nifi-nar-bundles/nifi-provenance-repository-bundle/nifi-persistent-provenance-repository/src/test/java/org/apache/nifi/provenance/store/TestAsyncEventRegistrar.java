@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance.store;
+
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.provenance.StandardProvenanceEventRecord;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAsyncEventRegistrar {
+
+    @Test(timeout = 10000)
+    public void testWaitForWriteReturnsAfterEventsWritten() {
+        final List<ProvenanceEventRecord> written = Collections.synchronizedList(new ArrayList<>());
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(written::addAll, 100, 1, true);
+
+        try {
+            final List<ProvenanceEventRecord> events = createEvents(5);
+            registrar.register(events);
+
+            assertEquals(events, written);
+            assertEquals(0, registrar.getQueuedEventCount());
+            assertEquals(5, registrar.getEventsWritten());
+        } finally {
+            registrar.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testEventsCopiedBeforeRegisterReturns() throws InterruptedException {
+        final CountDownLatch writeLatch = new CountDownLatch(1);
+        final List<ProvenanceEventRecord> written = Collections.synchronizedList(new ArrayList<>());
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(events -> {
+            awaitQuietly(writeLatch);
+            written.addAll(events);
+        }, 100, 1, false);
+
+        final List<ProvenanceEventRecord> events = createEvents(3);
+        final List<ProvenanceEventRecord> expected = new ArrayList<>(events);
+        registrar.register(events);
+
+        // The caller is free to reuse the collection once the events have been registered.
+        events.clear();
+        assertEquals(3, registrar.getQueuedEventCount());
+
+        writeLatch.countDown();
+        registrar.shutdown();
+
+        assertEquals(expected, written);
+        assertEquals(0, registrar.getQueuedEventCount());
+    }
+
+    @Test(timeout = 10000)
+    public void testRegistrationBlocksWhenQueueFull() throws Exception {
+        final CountDownLatch writeLatch = new CountDownLatch(1);
+        final List<ProvenanceEventRecord> written = Collections.synchronizedList(new ArrayList<>());
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(events -> {
+            awaitQuietly(writeLatch);
+            written.addAll(events);
+        }, 4, 1, false);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            registrar.register(createEvents(4));
+            assertEquals(4, registrar.getQueuedEventCount());
+
+            final Future<?> blocked = executor.submit(() -> registrar.register(createEvents(2)));
+            Thread.sleep(200L);
+            assertFalse(blocked.isDone());
+
+            writeLatch.countDown();
+            blocked.get(5, TimeUnit.SECONDS);
+            registrar.shutdown();
+
+            assertEquals(6, written.size());
+            assertTrue(registrar.getBackPressureTime(TimeUnit.MILLISECONDS) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRegistrationLargerThanCapacity() {
+        final List<ProvenanceEventRecord> written = Collections.synchronizedList(new ArrayList<>());
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(written::addAll, 2, 1, true);
+
+        try {
+            registrar.register(createEvents(10));
+            assertEquals(10, written.size());
+            assertEquals(0, registrar.getQueuedEventCount());
+        } finally {
+            registrar.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testQueuedRegistrationsCombinedIntoSingleWrite() {
+        final CountDownLatch writeLatch = new CountDownLatch(1);
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(events -> {
+            awaitQuietly(writeLatch);
+            batchSizes.add(events.size());
+        }, 1000, 1, false, 50);
+
+        // The first registration occupies the writer thread, so the remaining registrations queue up behind it.
+        registrar.register(createEvents(1));
+        for (int i = 0; i < 20; i++) {
+            registrar.register(createEvents(5));
+        }
+
+        writeLatch.countDown();
+        registrar.shutdown();
+
+        assertEquals(101, registrar.getEventsWritten());
+        assertEquals(101, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue("Expected queued registrations to be combined but batch sizes were " + batchSizes, batchSizes.size() <= 4);
+        assertEquals(batchSizes.size(), registrar.getBatchesWritten());
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteFailureDoesNotBlockRegistration() {
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(events -> {
+            throw new RuntimeException("Intentional Unit Test Exception");
+        }, 10, 1, true);
+
+        try {
+            registrar.register(createEvents(3));
+            registrar.register(createEvents(3));
+
+            assertEquals(0, registrar.getQueuedEventCount());
+            assertEquals(2, registrar.getBatchesWritten());
+        } finally {
+            registrar.shutdown();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testRegisterAfterShutdownWritesDirectly() {
+        final List<ProvenanceEventRecord> written = Collections.synchronizedList(new ArrayList<>());
+        final AsyncEventRegistrar registrar = new AsyncEventRegistrar(written::addAll, 10, 2, false);
+        registrar.shutdown();
+
+        registrar.register(createEvents(2));
+        assertEquals(2, written.size());
+    }
+
+    @Test(timeout = 60000)
+    public void testRegisterRacingShutdownDoesNotLoseEvents() throws Exception {
+        final int registeringThreads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(registeringThreads);
+
+        try {
+            for (int iteration = 0; iteration < 50; iteration++) {
+                final List<ProvenanceEventRecord> written = Collections.synchronizedList(new ArrayList<>());
+                // A capacity of 1 keeps registering threads blocked waiting for room while the registrar is shut down.
+                final AsyncEventRegistrar registrar = new AsyncEventRegistrar(written::addAll, 1, 1, true);
+
+                final CountDownLatch startLatch = new CountDownLatch(1);
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < registeringThreads; i++) {
+                    futures.add(executor.submit(() -> {
+                        awaitQuietly(startLatch);
+                        for (int j = 0; j < 5; j++) {
+                            registrar.register(createEvents(1));
+                        }
+                    }));
+                }
+
+                startLatch.countDown();
+                registrar.shutdown();
+
+                // Every registration returns once its events have been written, whether by a writer thread, the shutdown thread, or the caller.
+                for (final Future<?> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+
+                assertEquals(registeringThreads * 5, written.size());
+                assertEquals(0, registrar.getQueuedEventCount());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<ProvenanceEventRecord> createEvents(final int count) {
+        final List<ProvenanceEventRecord> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(createEvent());
+        }
+        return events;
+    }
+
+    private ProvenanceEventRecord createEvent() {
+        final String uuid = UUID.randomUUID().toString();
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("uuid", uuid);
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("updated", "true");
+
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.CONTENT_MODIFIED)
+            .setAttributes(previousAttributes, updatedAttributes)
+            .setComponentId("component-1")
+            .setComponentType("unit test")
+            .setEventTime(System.currentTimeMillis())
+            .setFlowFileEntryDate(System.currentTimeMillis())
+            .setFlowFileUUID(uuid)
+            .setLineageStartDate(System.currentTimeMillis())
+            .setCurrentContentClaim("container", "section", "unit-test-id", 0L, 1024L)
+            .build();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import org.apache.nifi.util.RingBuffer.Filter;
+import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
+import org.apache.nifi.util.RingBuffer.IterationDirection;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the Provenance Events of the {@link VolatileProvenanceRepository}, discarding the oldest events once the buffer is full.
+ */
+interface EventBuffer {
+
+    /**
+     * Assigns the event the next ID from the given generator and adds it to the buffer
+     *
+     * @param event the event to add
+     * @param idGenerator the generator of Event ID's
+     */
+    void add(ProvenanceEventRecord event, AtomicLong idGenerator);
+
+    /**
+     * @return the number of events held in the buffer
+     */
+    int getSize();
+
+    /**
+     * @return the most recently added event, or <code>null</code> if the buffer is empty
+     */
+    ProvenanceEventRecord getNewestEvent();
+
+    /**
+     * @param eventId the ID of the event
+     * @return the event with the given ID, or <code>null</code> if the event is not held in the buffer
+     */
+    ProvenanceEventRecord getEvent(long eventId);
+
+    /**
+     * @param firstEventId the smallest Event ID to return
+     * @param filter the filter that events must match
+     * @param maxEvents the maximum number of events to return
+     * @return the oldest events whose ID is at least the given ID and that match the given filter, in the order in which they were added
+     */
+    List<ProvenanceEventRecord> getEvents(long firstEventId, Filter<ProvenanceEventRecord> filter, int maxEvents);
+
+    /**
+     * Returns every event whose FlowFile UUID, or one of whose Parent or Child UUIDs, is in the given collection. Implementations may
+     * also return other events, so callers must verify each event that is returned.
+     *
+     * @param flowFileUuids the FlowFile UUIDs
+     * @return the candidate events, in the order in which they were added
+     */
+    List<ProvenanceEventRecord> getEventsForFlowFiles(Collection<String> flowFileUuids);
+
+    /**
+     * Returns every event that was generated by the component with the given ID, compared case-insensitively. Implementations may also
+     * return other events, so callers must verify each event that is returned.
+     *
+     * @param componentId the ID of the component
+     * @return the candidate events, in the order in which they were added
+     */
+    List<ProvenanceEventRecord> getEventsForComponent(String componentId);
+
+    /**
+     * Evaluates each event in the buffer until the evaluator returns <code>false</code>. Implementations may skip events whose Event Time
+     * is outside of the given range, so callers must still verify the Event Time of each event that is evaluated.
+     *
+     * @param evaluator the evaluator
+     * @param direction whether to begin with the oldest or the newest event
+     * @param minEventTime the earliest Event Time of interest
+     * @param maxEventTime the latest Event Time of interest
+     */
+    void forEach(ForEachEvaluator<ProvenanceEventRecord> evaluator, IterationDirection direction, long minEventTime, long maxEventTime);
+
+    /**
+     * @return the capacity of the buffer, in the units reported by {@link #getUsableSpace()}
+     */
+    long getCapacity();
+
+    /**
+     * @return the remaining capacity of the buffer
+     */
+    long getUsableSpace();
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes Provenance Events to and from the compact binary form that is held by the {@link SegmentedEventBuffer}. The Event ID is not
+ * serialized, as it is implied by the position of the event within its segment.
+ */
+final class EventCodec {
+    private static final ProvenanceEventType[] EVENT_TYPES = ProvenanceEventType.values();
+    private static final int NULL_LENGTH = -1;
+
+    private EventCodec() {
+    }
+
+    static byte[] serialize(final ProvenanceEventRecord event) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(512);
+        try (final DataOutputStream out = new DataOutputStream(baos)) {
+            out.writeByte(event.getEventType().ordinal());
+            out.writeLong(event.getEventTime());
+            out.writeLong(event.getFlowFileEntryDate());
+            out.writeLong(event.getLineageStartDate());
+            out.writeLong(event.getEventDuration());
+            out.writeLong(event.getFileSize());
+            writeNullableLong(out, event.getPreviousFileSize());
+
+            writeString(out, event.getComponentId());
+            writeString(out, event.getComponentType());
+            writeString(out, event.getFlowFileUuid());
+            writeStrings(out, event.getParentUuids());
+            writeStrings(out, event.getChildUuids());
+            writeString(out, event.getTransitUri());
+            writeString(out, event.getSourceSystemFlowFileIdentifier());
+            writeString(out, event.getAlternateIdentifierUri());
+            writeString(out, event.getDetails());
+            writeString(out, event.getRelationship());
+            writeString(out, event.getSourceQueueIdentifier());
+
+            writeString(out, event.getContentClaimContainer());
+            writeString(out, event.getContentClaimSection());
+            writeString(out, event.getContentClaimIdentifier());
+            writeNullableLong(out, event.getContentClaimOffset());
+            writeString(out, event.getPreviousContentClaimContainer());
+            writeString(out, event.getPreviousContentClaimSection());
+            writeString(out, event.getPreviousContentClaimIdentifier());
+            writeNullableLong(out, event.getPreviousContentClaimOffset());
+
+            writeAttributes(out, event.getPreviousAttributes());
+            writeAttributes(out, event.getUpdatedAttributes());
+        } catch (final IOException e) {
+            // cannot happen when writing to a ByteArrayOutputStream
+            throw new IllegalStateException("Failed to serialize Provenance Event " + event, e);
+        }
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Reads the event that begins at the buffer's current position, advancing the position past the event
+     *
+     * @param buffer the buffer to read from
+     * @param eventId the ID to assign to the event
+     * @return the event
+     */
+    static ProvenanceEventRecord deserialize(final ByteBuffer buffer, final long eventId) {
+        final StandardProvenanceEventRecord.Builder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventId(eventId);
+        builder.setEventType(EVENT_TYPES[buffer.get()]);
+        builder.setEventTime(buffer.getLong());
+        builder.setFlowFileEntryDate(buffer.getLong());
+        builder.setLineageStartDate(buffer.getLong());
+        builder.setEventDuration(buffer.getLong());
+        final long fileSize = buffer.getLong();
+        final Long previousFileSize = readNullableLong(buffer);
+
+        builder.setComponentId(readString(buffer));
+        builder.setComponentType(readString(buffer));
+        builder.setFlowFileUUID(readString(buffer));
+        builder.setParentUuids(readStrings(buffer));
+        builder.setChildUuids(readStrings(buffer));
+        builder.setTransitUri(readString(buffer));
+        builder.setSourceSystemFlowFileIdentifier(readString(buffer));
+        builder.setAlternateIdentifierUri(readString(buffer));
+        builder.setDetails(readString(buffer));
+        builder.setRelationship(readString(buffer));
+        builder.setSourceQueueIdentifier(readString(buffer));
+
+        final String container = readString(buffer);
+        final String section = readString(buffer);
+        final String identifier = readString(buffer);
+        final Long offset = readNullableLong(buffer);
+        builder.setCurrentContentClaim(container, section, identifier, offset, fileSize);
+
+        final String previousContainer = readString(buffer);
+        final String previousSection = readString(buffer);
+        final String previousIdentifier = readString(buffer);
+        final Long previousOffset = readNullableLong(buffer);
+        if (previousFileSize != null) {
+            builder.setPreviousContentClaim(previousContainer, previousSection, previousIdentifier, previousOffset, previousFileSize);
+        }
+
+        builder.setAttributes(readAttributes(buffer), readAttributes(buffer));
+        return builder.build();
+    }
+
+    private static void writeNullableLong(final DataOutputStream out, final Long value) throws IOException {
+        if (value == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(final ByteBuffer buffer) {
+        return buffer.get() == 0 ? null : buffer.getLong();
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        final String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static void writeStrings(final DataOutputStream out, final List<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(0);
+            return;
+        }
+
+        out.writeInt(values.size());
+        for (final String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(final ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        if (count == 0) {
+            return new ArrayList<>(0);
+        }
+
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(buffer));
+        }
+        return values;
+    }
+
+    private static void writeAttributes(final DataOutputStream out, final Map<String, String> attributes) throws IOException {
+        if (attributes == null) {
+            out.writeInt(0);
+            return;
+        }
+
+        out.writeInt(attributes.size());
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            writeString(out, entry.getKey());
+            writeString(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readAttributes(final ByteBuffer buffer) {
+        final int count = buffer.getInt();
+        if (count == 0) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, String> attributes = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            attributes.put(readString(buffer), readString(buffer));
+        }
+        return attributes;
+    }
+}
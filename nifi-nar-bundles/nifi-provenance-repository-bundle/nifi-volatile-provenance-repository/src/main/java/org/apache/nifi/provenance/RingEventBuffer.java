@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import org.apache.nifi.util.RingBuffer;
+import org.apache.nifi.util.RingBuffer.Filter;
+import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
+import org.apache.nifi.util.RingBuffer.IterationDirection;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link EventBuffer} that holds a fixed number of Provenance Event objects on the Java heap. Every lookup is performed by scanning the buffer.
+ */
+class RingEventBuffer implements EventBuffer {
+    private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+    private final int maxSize;
+
+    RingEventBuffer(final int maxSize) {
+        this.maxSize = maxSize;
+        this.ringBuffer = new RingBuffer<>(maxSize);
+    }
+
+    @Override
+    public void add(final ProvenanceEventRecord event, final AtomicLong idGenerator) {
+        final long id = idGenerator.getAndIncrement();
+        ringBuffer.add(new VolatileProvenanceRepository.IdEnrichedProvEvent(event, id));
+    }
+
+    @Override
+    public int getSize() {
+        return ringBuffer.getSize();
+    }
+
+    @Override
+    public ProvenanceEventRecord getNewestEvent() {
+        return ringBuffer.getNewestElement();
+    }
+
+    @Override
+    public ProvenanceEventRecord getEvent(final long eventId) {
+        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(event -> event.getEventId() == eventId, 1);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEvents(final long firstEventId, final Filter<ProvenanceEventRecord> filter, final int maxEvents) {
+        return ringBuffer.getSelectedElements(event -> event.getEventId() >= firstEventId && filter.select(event), maxEvents);
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEventsForFlowFiles(final Collection<String> flowFileUuids) {
+        return ringBuffer.getSelectedElements(event -> {
+            if (flowFileUuids.contains(event.getFlowFileUuid())) {
+                return true;
+            }
+
+            for (final String parentId : event.getParentUuids()) {
+                if (flowFileUuids.contains(parentId)) {
+                    return true;
+                }
+            }
+
+            for (final String childId : event.getChildUuids()) {
+                if (flowFileUuids.contains(childId)) {
+                    return true;
+                }
+            }
+
+            return false;
+        });
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEventsForComponent(final String componentId) {
+        return ringBuffer.getSelectedElements(event -> componentId.equalsIgnoreCase(event.getComponentId()));
+    }
+
+    @Override
+    public void forEach(final ForEachEvaluator<ProvenanceEventRecord> evaluator, final IterationDirection direction, final long minEventTime, final long maxEventTime) {
+        ringBuffer.forEach(evaluator, direction);
+    }
+
+    @Override
+    public long getCapacity() {
+        return maxSize;
+    }
+
+    @Override
+    public long getUsableSpace() {
+        return maxSize - ringBuffer.getSize();
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import org.apache.nifi.util.RingBuffer.Filter;
+import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
+import org.apache.nifi.util.RingBuffer.IterationDirection;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ * An {@link EventBuffer} that holds Provenance Events as serialized bytes in direct (off-heap) memory, rather than as objects on the Java heap.
+ * Events are appended to a series of segments. A new segment is started when the current segment is full or when it has been accepting events
+ * for longer than the configured bucket duration, so that each segment covers a bounded range of time. When starting a new segment would cause
+ * the segments to hold more than the configured number of bytes, the oldest segments are discarded.
+ * </p>
+ *
+ * <p>
+ * Each segment keeps a small, on-heap index of the events that it holds by FlowFile UUID (including Parent and Child UUIDs) and by Component ID,
+ * so that lineage and component queries do not need to deserialize every event. Events are deserialized only when they are read, and reads take
+ * place outside of the buffer's lock: the bytes of an event never change once it has been written, and a discarded segment remains readable
+ * until any query that is reading it has finished.
+ * </p>
+ */
+class SegmentedEventBuffer implements EventBuffer {
+    private static final int INITIAL_EVENTS_PER_SEGMENT = 1024;
+
+    private final long maxBytes;
+    private final int segmentBytes;
+    private final long bucketMillis;
+
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final Lock readLock = rwLock.readLock();
+    private final Lock writeLock = rwLock.writeLock();
+
+    // guarded by rwLock. The last segment is the segment to which events are added.
+    private final List<Segment> segments = new ArrayList<>();
+    private long bytesHeld = 0L;
+    private int eventCount = 0;
+
+    /**
+     * @param maxBytes the maximum number of bytes of serialized events to hold
+     * @param segmentBytes the size of each segment
+     * @param bucketMillis the maximum amount of time for which a segment accepts new events
+     */
+    SegmentedEventBuffer(final long maxBytes, final int segmentBytes, final long bucketMillis) {
+        if (segmentBytes < 1 || maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("Cannot create buffer of " + maxBytes + " bytes with segments of " + segmentBytes + " bytes");
+        }
+
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        this.bucketMillis = bucketMillis;
+    }
+
+    @Override
+    public void add(final ProvenanceEventRecord event, final AtomicLong idGenerator) {
+        // Serialize outside of the lock so that concurrent registrations contend only for the copy into the segment.
+        final byte[] serialized = EventCodec.serialize(event);
+        final long now = System.currentTimeMillis();
+
+        writeLock.lock();
+        try {
+            final long eventId = idGenerator.getAndIncrement();
+
+            Segment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (active == null || !active.hasRoom(serialized.length) || now - active.getCreatedMillis() >= bucketMillis) {
+                active = startSegment(eventId, serialized.length, now);
+            }
+
+            active.append(serialized, event);
+            eventCount++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Segment startSegment(final long firstEventId, final int eventLength, final long now) {
+        if (!segments.isEmpty()) {
+            final int activeIndex = segments.size() - 1;
+            final Segment sealed = segments.get(activeIndex).trim();
+            bytesHeld -= segments.get(activeIndex).getCapacity() - sealed.getCapacity();
+            segments.set(activeIndex, sealed);
+        }
+
+        // An event that is larger than a segment is given a segment of its own.
+        final int capacity = Math.max(segmentBytes, eventLength);
+        while (!segments.isEmpty() && bytesHeld + capacity > maxBytes) {
+            final Segment discarded = segments.remove(0);
+            bytesHeld -= discarded.getCapacity();
+            eventCount -= discarded.getEventCount();
+        }
+
+        final Segment segment = new Segment(ByteBuffer.allocateDirect(capacity), firstEventId, now);
+        segments.add(segment);
+        bytesHeld += capacity;
+        return segment;
+    }
+
+    private List<SegmentSnapshot> snapshot() {
+        readLock.lock();
+        try {
+            final List<SegmentSnapshot> snapshots = new ArrayList<>(segments.size());
+            for (final Segment segment : segments) {
+                snapshots.add(segment.snapshot());
+            }
+            return snapshots;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        readLock.lock();
+        try {
+            return eventCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public ProvenanceEventRecord getNewestEvent() {
+        final SegmentSnapshot newest;
+        readLock.lock();
+        try {
+            if (segments.isEmpty()) {
+                return null;
+            }
+            newest = segments.get(segments.size() - 1).snapshot();
+        } finally {
+            readLock.unlock();
+        }
+
+        return newest.getEventCount() == 0 ? null : newest.read(newest.getEventCount() - 1);
+    }
+
+    @Override
+    public ProvenanceEventRecord getEvent(final long eventId) {
+        final List<SegmentSnapshot> snapshots = snapshot();
+        final int segmentIndex = findSegment(snapshots, eventId);
+        if (segmentIndex < 0) {
+            return null;
+        }
+
+        final SegmentSnapshot snapshot = snapshots.get(segmentIndex);
+        final long index = eventId - snapshot.getFirstEventId();
+        return index < snapshot.getEventCount() ? snapshot.read((int) index) : null;
+    }
+
+    /**
+     * @return the index of the last segment whose first Event ID is not greater than the given ID, or -1 if there is no such segment
+     */
+    private static int findSegment(final List<SegmentSnapshot> snapshots, final long eventId) {
+        int low = 0;
+        int high = snapshots.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (snapshots.get(mid).getFirstEventId() <= eventId) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEvents(final long firstEventId, final Filter<ProvenanceEventRecord> filter, final int maxEvents) {
+        final List<SegmentSnapshot> snapshots = snapshot();
+        final List<ProvenanceEventRecord> selected = new ArrayList<>(Math.min(maxEvents, 1000));
+
+        final int firstSegment = Math.max(0, findSegment(snapshots, firstEventId));
+        for (int i = firstSegment; i < snapshots.size() && selected.size() < maxEvents; i++) {
+            final SegmentSnapshot snapshot = snapshots.get(i);
+            final int firstIndex = (int) Math.max(0L, Math.min(snapshot.getEventCount(), firstEventId - snapshot.getFirstEventId()));
+            for (int index = firstIndex; index < snapshot.getEventCount() && selected.size() < maxEvents; index++) {
+                final ProvenanceEventRecord event = snapshot.read(index);
+                if (filter.select(event)) {
+                    selected.add(event);
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEventsForFlowFiles(final Collection<String> flowFileUuids) {
+        return getIndexedEvents(flowFileUuids, false);
+    }
+
+    @Override
+    public List<ProvenanceEventRecord> getEventsForComponent(final String componentId) {
+        return getIndexedEvents(Collections.singleton(componentId), true);
+    }
+
+    private List<ProvenanceEventRecord> getIndexedEvents(final Collection<String> keys, final boolean component) {
+        final List<SegmentSnapshot> snapshots = new ArrayList<>();
+        final List<int[]> matchingIndices = new ArrayList<>();
+
+        readLock.lock();
+        try {
+            for (final Segment segment : segments) {
+                final int[] indices = segment.lookup(keys, component);
+                if (indices.length > 0) {
+                    snapshots.add(segment.snapshot());
+                    matchingIndices.add(indices);
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        final List<ProvenanceEventRecord> events = new ArrayList<>();
+        for (int i = 0; i < snapshots.size(); i++) {
+            final SegmentSnapshot snapshot = snapshots.get(i);
+            for (final int index : matchingIndices.get(i)) {
+                events.add(snapshot.read(index));
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public void forEach(final ForEachEvaluator<ProvenanceEventRecord> evaluator, final IterationDirection direction, final long minEventTime, final long maxEventTime) {
+        final List<SegmentSnapshot> snapshots = snapshot();
+        if (direction == IterationDirection.BACKWARD) {
+            Collections.reverse(snapshots);
+        }
+
+        for (final SegmentSnapshot snapshot : snapshots) {
+            // Skip any segment that cannot contain events in the time range of interest
+            if (snapshot.getMaxEventTime() < minEventTime || snapshot.getMinEventTime() > maxEventTime) {
+                continue;
+            }
+
+            final int count = snapshot.getEventCount();
+            for (int i = 0; i < count; i++) {
+                final int index = direction == IterationDirection.BACKWARD ? count - 1 - i : i;
+                if (!evaluator.evaluate(snapshot.read(index))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public long getCapacity() {
+        return maxBytes;
+    }
+
+    @Override
+    public long getUsableSpace() {
+        readLock.lock();
+        try {
+            long bytesUsed = 0L;
+            for (final Segment segment : segments) {
+                bytesUsed += segment.getBytesUsed();
+            }
+            return maxBytes - bytesUsed;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of segments currently held, for testing
+     */
+    int getSegmentCount() {
+        readLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+
+    private static final class Segment {
+        private final ByteBuffer buffer;
+        private final long firstEventId;
+        private final long createdMillis;
+        private final Map<String, IntList> flowFileIndex;
+        private final Map<String, IntList> componentIndex;
+
+        private int[] offsets;
+        private int eventCount = 0;
+        private long minEventTime = Long.MAX_VALUE;
+        private long maxEventTime = Long.MIN_VALUE;
+
+        Segment(final ByteBuffer buffer, final long firstEventId, final long createdMillis) {
+            this(buffer, firstEventId, createdMillis, new int[INITIAL_EVENTS_PER_SEGMENT], new HashMap<>(), new HashMap<>());
+        }
+
+        private Segment(final ByteBuffer buffer, final long firstEventId, final long createdMillis, final int[] offsets,
+                        final Map<String, IntList> flowFileIndex, final Map<String, IntList> componentIndex) {
+            this.buffer = buffer;
+            this.firstEventId = firstEventId;
+            this.createdMillis = createdMillis;
+            this.offsets = offsets;
+            this.flowFileIndex = flowFileIndex;
+            this.componentIndex = componentIndex;
+        }
+
+        long getCreatedMillis() {
+            return createdMillis;
+        }
+
+        int getCapacity() {
+            return buffer.capacity();
+        }
+
+        int getBytesUsed() {
+            return buffer.position();
+        }
+
+        int getEventCount() {
+            return eventCount;
+        }
+
+        boolean hasRoom(final int length) {
+            return buffer.remaining() >= length;
+        }
+
+        void append(final byte[] serialized, final ProvenanceEventRecord event) {
+            if (eventCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, eventCount * 2);
+            }
+
+            final int index = eventCount;
+            offsets[index] = buffer.position();
+            buffer.put(serialized);
+
+            minEventTime = Math.min(minEventTime, event.getEventTime());
+            maxEventTime = Math.max(maxEventTime, event.getEventTime());
+
+            index(flowFileIndex, event.getFlowFileUuid(), index);
+            for (final String parentUuid : event.getParentUuids()) {
+                index(flowFileIndex, parentUuid, index);
+            }
+            for (final String childUuid : event.getChildUuids()) {
+                index(flowFileIndex, childUuid, index);
+            }
+
+            if (event.getComponentId() != null) {
+                index(componentIndex, event.getComponentId().toLowerCase(Locale.ROOT), index);
+            }
+
+            eventCount++;
+        }
+
+        private static void index(final Map<String, IntList> index, final String key, final int eventIndex) {
+            if (key == null) {
+                return;
+            }
+
+            final IntList eventIndices = index.computeIfAbsent(key, k -> new IntList());
+            // An event may list the same UUID more than once, as both the FlowFile UUID and a Parent UUID, for example.
+            if (eventIndices.size() == 0 || eventIndices.get(eventIndices.size() - 1) != eventIndex) {
+                eventIndices.add(eventIndex);
+            }
+        }
+
+        int[] lookup(final Collection<String> keys, final boolean component) {
+            final Map<String, IntList> index = component ? componentIndex : flowFileIndex;
+            if (keys.size() == 1) {
+                final String key = keys.iterator().next();
+                final IntList eventIndices = index.get(component ? key.toLowerCase(Locale.ROOT) : key);
+                return eventIndices == null ? IntList.EMPTY : eventIndices.toArray();
+            }
+
+            final IntList matching = new IntList();
+            for (final String key : keys) {
+                final IntList eventIndices = index.get(component ? key.toLowerCase(Locale.ROOT) : key);
+                if (eventIndices != null) {
+                    matching.addAll(eventIndices);
+                }
+            }
+
+            final int[] sorted = matching.toArray();
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return Arrays.copyOf(sorted, distinct);
+        }
+
+        /**
+         * @return a segment that holds the same events in a buffer that is no larger than is necessary. A segment that is closed early because
+         *         its time bucket elapsed may be mostly empty, and there is no need to hold on to the unused portion of its buffer.
+         */
+        Segment trim() {
+            if (buffer.remaining() == 0) {
+                return this;
+            }
+
+            final ByteBuffer trimmed = ByteBuffer.allocateDirect(buffer.position());
+            final ByteBuffer source = buffer.duplicate();
+            source.flip();
+            trimmed.put(source);
+
+            final Segment segment = new Segment(trimmed, firstEventId, createdMillis, Arrays.copyOf(offsets, eventCount), flowFileIndex, componentIndex);
+            segment.eventCount = eventCount;
+            segment.minEventTime = minEventTime;
+            segment.maxEventTime = maxEventTime;
+            return segment;
+        }
+
+        SegmentSnapshot snapshot() {
+            return new SegmentSnapshot(buffer, offsets, eventCount, firstEventId, minEventTime, maxEventTime);
+        }
+    }
+
+    /**
+     * A point-in-time view of a segment, which may be read without holding the buffer's lock
+     */
+    private static final class SegmentSnapshot {
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final int eventCount;
+        private final long firstEventId;
+        private final long minEventTime;
+        private final long maxEventTime;
+
+        SegmentSnapshot(final ByteBuffer buffer, final int[] offsets, final int eventCount, final long firstEventId, final long minEventTime, final long maxEventTime) {
+            this.buffer = buffer.duplicate();
+            this.offsets = offsets;
+            this.eventCount = eventCount;
+            this.firstEventId = firstEventId;
+            this.minEventTime = minEventTime;
+            this.maxEventTime = maxEventTime;
+        }
+
+        int getEventCount() {
+            return eventCount;
+        }
+
+        long getFirstEventId() {
+            return firstEventId;
+        }
+
+        long getMinEventTime() {
+            return minEventTime;
+        }
+
+        long getMaxEventTime() {
+            return maxEventTime;
+        }
+
+        ProvenanceEventRecord read(final int index) {
+            buffer.limit(buffer.capacity());
+            buffer.position(offsets[index]);
+            return EventCodec.deserialize(buffer, firstEventId + index);
+        }
+    }
+
+    /**
+     * A growable list of primitive ints, which avoids boxing every index entry
+     */
+    private static final class IntList {
+        private static final int[] EMPTY = new int[0];
+
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(final int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(final IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int get(final int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
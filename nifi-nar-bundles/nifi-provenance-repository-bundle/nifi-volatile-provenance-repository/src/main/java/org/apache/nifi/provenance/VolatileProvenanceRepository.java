@@ -35,8 +35,8 @@ import org.apache.nifi.provenance.search.QueryResult;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerm;
 import org.apache.nifi.provenance.search.SearchableField;
+import org.apache.nifi.util.FormatUtils;
 import org.apache.nifi.util.NiFiProperties;
-import org.apache.nifi.util.RingBuffer;
 import org.apache.nifi.util.RingBuffer.Filter;
 import org.apache.nifi.util.RingBuffer.ForEachEvaluator;
 import org.apache.nifi.util.RingBuffer.IterationDirection;
@@ -67,14 +67,23 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     // properties
     public static final String BUFFER_SIZE = "nifi.provenance.repository.buffer.size";
+    public static final String BUFFER_TYPE = "nifi.provenance.repository.buffer.type";
+    public static final String BUFFER_MAX_MEMORY = "nifi.provenance.repository.buffer.max.memory";
+    public static final String BUFFER_BUCKET_DURATION = "nifi.provenance.repository.buffer.bucket.duration";
 
     // default property values
     public static final int DEFAULT_BUFFER_SIZE = 10000;
+    public static final String DEFAULT_BUFFER_TYPE = "ring";
+    public static final String DEFAULT_BUFFER_MAX_MEMORY = "100 MB";
+    public static final String DEFAULT_BUFFER_BUCKET_DURATION = "1 min";
+
+    public static final String SEGMENTED_BUFFER_TYPE = "segmented";
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+    private static final int MAX_SEGMENT_BYTES = 32 * 1024 * 1024;
 
     public static String CONTAINER_NAME = "in-memory";
 
-    private final RingBuffer<ProvenanceEventRecord> ringBuffer;
-    private final int maxSize;
+    private final EventBuffer eventBuffer;
     private final List<SearchableField> searchableFields;
     private final List<SearchableField> searchableAttributes;
     private final ExecutorService queryExecService;
@@ -92,25 +101,27 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
      * Default no args constructor for service loading only
      */
     public VolatileProvenanceRepository() {
-        ringBuffer = null;
+        eventBuffer = null;
         searchableFields = null;
         searchableAttributes = null;
         queryExecService = null;
         scheduledExecService = null;
         authorizer = null;
         resourceFactory = null;
-        maxSize = DEFAULT_BUFFER_SIZE;
     }
 
     public VolatileProvenanceRepository(final NiFiProperties nifiProperties) {
-        this(nifiProperties.getIntegerProperty(BUFFER_SIZE, DEFAULT_BUFFER_SIZE),
+        this(createEventBuffer(nifiProperties),
             nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_FIELDS),
             nifiProperties.getProperty(NiFiProperties.PROVENANCE_INDEXED_ATTRIBUTES));
     }
 
     public VolatileProvenanceRepository(final int maxEvents, final String indexedFieldString, final String indexAttributeString) {
-        maxSize = maxEvents;
-        ringBuffer = new RingBuffer<>(maxSize);
+        this(new RingEventBuffer(maxEvents), indexedFieldString, indexAttributeString);
+    }
+
+    VolatileProvenanceRepository(final EventBuffer eventBuffer, final String indexedFieldString, final String indexAttributeString) {
+        this.eventBuffer = eventBuffer;
         searchableFields = Collections.unmodifiableList(SearchableFieldParser.extractSearchableFields(indexedFieldString, true));
         searchableAttributes = Collections.unmodifiableList(SearchableFieldParser.extractSearchableFields(indexAttributeString, false));
 
@@ -129,6 +140,25 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         scheduledExecService = Executors.newScheduledThreadPool(2);
     }
 
+    private static EventBuffer createEventBuffer(final NiFiProperties nifiProperties) {
+        final String bufferType = nifiProperties.getProperty(BUFFER_TYPE, DEFAULT_BUFFER_TYPE).trim();
+        if (DEFAULT_BUFFER_TYPE.equalsIgnoreCase(bufferType)) {
+            return new RingEventBuffer(nifiProperties.getIntegerProperty(BUFFER_SIZE, DEFAULT_BUFFER_SIZE));
+        }
+
+        if (!SEGMENTED_BUFFER_TYPE.equalsIgnoreCase(bufferType)) {
+            throw new IllegalArgumentException("Invalid value for property " + BUFFER_TYPE + ": " + bufferType + "; valid values are '"
+                + DEFAULT_BUFFER_TYPE + "' and '" + SEGMENTED_BUFFER_TYPE + "'");
+        }
+
+        final long maxBytes = DataUnit.parseDataSize(nifiProperties.getProperty(BUFFER_MAX_MEMORY, DEFAULT_BUFFER_MAX_MEMORY), DataUnit.B).longValue();
+        final long bucketMillis = FormatUtils.getTimeDuration(nifiProperties.getProperty(BUFFER_BUCKET_DURATION, DEFAULT_BUFFER_BUCKET_DURATION), TimeUnit.MILLISECONDS);
+
+        // Use segments of around 1/16th of the buffer so that discarding the oldest segment discards only a small portion of the events.
+        final int segmentBytes = (int) Math.max(MIN_SEGMENT_BYTES, Math.min(MAX_SEGMENT_BYTES, maxBytes / 16));
+        return new SegmentedEventBuffer(Math.max(maxBytes, segmentBytes), segmentBytes, bucketMillis);
+    }
+
     @Override
     public void initialize(final EventReporter eventReporter, final Authorizer authorizer, final ProvenanceAuthorizableFactory resourceFactory,
         final IdentifierLookup idLookup) throws IOException {
@@ -154,8 +184,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public void registerEvent(final ProvenanceEventRecord event) {
-        final long id = idGenerator.getAndIncrement();
-        ringBuffer.add(new IdEnrichedProvEvent(event, id));
+        eventBuffer.add(event, idGenerator);
     }
 
     @Override
@@ -172,44 +201,32 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public List<ProvenanceEventRecord> getEvents(final long firstRecordId, final int maxRecords, final NiFiUser user) throws IOException {
-        return ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
+        return eventBuffer.getEvents(firstRecordId, new Filter<ProvenanceEventRecord>() {
             @Override
             public boolean select(final ProvenanceEventRecord value) {
-                if (!isAuthorized(value, user)) {
-                    return false;
-                }
-
-                return value.getEventId() >= firstRecordId;
+                return isAuthorized(value, user);
             }
         }, maxRecords);
     }
 
     @Override
     public Long getMaxEventId() {
-        final ProvenanceEventRecord newest = ringBuffer.getNewestElement();
+        final ProvenanceEventRecord newest = eventBuffer.getNewestEvent();
         return (newest == null) ? null : newest.getEventId();
     }
 
     public ProvenanceEventRecord getEvent(final String identifier) throws IOException {
-        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                return identifier.equals(event.getFlowFileUuid());
+        for (final ProvenanceEventRecord event : eventBuffer.getEventsForFlowFiles(Collections.singleton(identifier))) {
+            if (identifier.equals(event.getFlowFileUuid())) {
+                return event;
             }
-        }, 1);
-        return records.isEmpty() ? null : records.get(0);
+        }
+        return null;
     }
 
     @Override
     public ProvenanceEventRecord getEvent(final long id) {
-        final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(new Filter<ProvenanceEventRecord>() {
-            @Override
-            public boolean select(final ProvenanceEventRecord event) {
-                return event.getEventId() == id;
-            }
-        }, 1);
-
-        return records.isEmpty() ? null : records.get(0);
+        return eventBuffer.getEvent(id);
     }
 
     @Override
@@ -478,14 +495,14 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         final String userId = user == null ? null : user.getIdentity();
         if (query.getSearchTerms().isEmpty() && query.getStartDate() == null && query.getEndDate() == null) {
             final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1, userId);
-            queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query, user), query.getMaxResults(), result));
+            queryExecService.submit(new QueryRunnable(eventBuffer, query, createFilter(query, user), query.getMaxResults(), result));
             querySubmissionMap.put(query.getIdentifier(), result);
             return result;
         }
 
         final AsyncQuerySubmission result = new AsyncQuerySubmission(query, 1, userId);
         querySubmissionMap.put(query.getIdentifier(), result);
-        queryExecService.submit(new QueryRunnable(ringBuffer, createFilter(query, user), query.getMaxResults(), result));
+        queryExecService.submit(new QueryRunnable(eventBuffer, query, createFilter(query, user), query.getMaxResults(), result));
 
         return result;
     }
@@ -634,7 +651,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public long getContainerCapacity(final String containerName) throws IOException {
-        return maxSize;
+        return eventBuffer.getCapacity();
     }
 
     @Override
@@ -644,7 +661,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
     @Override
     public long getContainerUsableSpace(String containerName) throws IOException {
-        return maxSize - ringBuffer.getSize();
+        return eventBuffer.getUsableSpace();
     }
 
     @Override
@@ -685,20 +702,23 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
             }
         };
 
-        queryExecService.submit(new ComputeLineageRunnable(ringBuffer, filter, result));
+        queryExecService.submit(new ComputeLineageRunnable(eventBuffer, flowFileUuids, filter, result));
 
         return result;
     }
 
     private static class QueryRunnable implements Runnable {
 
-        private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+        private final EventBuffer eventBuffer;
+        private final Query query;
         private final Filter<ProvenanceEventRecord> filter;
         private final AsyncQuerySubmission submission;
         private final int maxRecords;
 
-        public QueryRunnable(final RingBuffer<ProvenanceEventRecord> ringBuffer, final Filter<ProvenanceEventRecord> filter, final int maxRecords, final AsyncQuerySubmission submission) {
-            this.ringBuffer = ringBuffer;
+        public QueryRunnable(final EventBuffer eventBuffer, final Query query, final Filter<ProvenanceEventRecord> filter, final int maxRecords,
+                             final AsyncQuerySubmission submission) {
+            this.eventBuffer = eventBuffer;
+            this.query = query;
             this.filter = filter;
             this.submission = submission;
             this.maxRecords = maxRecords;
@@ -709,7 +729,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
             // Retrieve the most recent results and count the total number of matches
             final AtomicInteger matchingCount = new AtomicInteger(0);
             final List<ProvenanceEventRecord> matchingRecords = new ArrayList<>(maxRecords);
-            ringBuffer.forEach(new ForEachEvaluator<ProvenanceEventRecord>() {
+            final ForEachEvaluator<ProvenanceEventRecord> evaluator = new ForEachEvaluator<ProvenanceEventRecord>() {
                 @Override
                 public boolean evaluate(final ProvenanceEventRecord record) {
                     if (filter.select(record)) {
@@ -720,28 +740,69 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
 
                     return true;
                 }
-
-            }, IterationDirection.BACKWARD);
+            };
+
+            final List<ProvenanceEventRecord> candidates = getIndexedCandidates();
+            if (candidates == null) {
+                final long minEventTime = query.getStartDate() == null ? Long.MIN_VALUE : query.getStartDate().getTime();
+                final long maxEventTime = query.getEndDate() == null ? Long.MAX_VALUE : query.getEndDate().getTime();
+                eventBuffer.forEach(evaluator, IterationDirection.BACKWARD, minEventTime, maxEventTime);
+            } else {
+                for (int i = candidates.size() - 1; i >= 0; i--) {
+                    evaluator.evaluate(candidates.get(i));
+                }
+            }
 
             submission.getResult().update(matchingRecords, matchingCount.get());
         }
+
+        /**
+         * @return the events that may match the query, if the query contains an exact Component ID or FlowFile UUID term that the Event Buffer
+         *         can use to look up events, or <code>null</code> if every event must be considered
+         */
+        private List<ProvenanceEventRecord> getIndexedCandidates() {
+            for (final SearchTerm searchTerm : query.getSearchTerms()) {
+                final String value = searchTerm.getValue();
+                if (Boolean.TRUE.equals(searchTerm.isInverted()) || value.contains("?") || value.contains("*")) {
+                    continue;
+                }
+
+                final SearchableField field = searchTerm.getSearchableField();
+                if (SearchableFields.FlowFileUUID.equals(field)) {
+                    return eventBuffer.getEventsForFlowFiles(Collections.singleton(value));
+                }
+                if (SearchableFields.ComponentID.equals(field)) {
+                    return eventBuffer.getEventsForComponent(value);
+                }
+            }
+
+            return null;
+        }
     }
 
     private static class ComputeLineageRunnable implements Runnable {
 
-        private final RingBuffer<ProvenanceEventRecord> ringBuffer;
+        private final EventBuffer eventBuffer;
+        private final Collection<String> flowFileUuids;
         private final Filter<ProvenanceEventRecord> filter;
         private final AsyncLineageSubmission submission;
 
-        public ComputeLineageRunnable(final RingBuffer<ProvenanceEventRecord> ringBuffer, final Filter<ProvenanceEventRecord> filter, final AsyncLineageSubmission submission) {
-            this.ringBuffer = ringBuffer;
+        public ComputeLineageRunnable(final EventBuffer eventBuffer, final Collection<String> flowFileUuids, final Filter<ProvenanceEventRecord> filter,
+                                      final AsyncLineageSubmission submission) {
+            this.eventBuffer = eventBuffer;
+            this.flowFileUuids = flowFileUuids;
             this.filter = filter;
             this.submission = submission;
         }
 
         @Override
         public void run() {
-            final List<ProvenanceEventRecord> records = ringBuffer.getSelectedElements(filter);
+            final List<ProvenanceEventRecord> records = new ArrayList<>();
+            for (final ProvenanceEventRecord candidate : eventBuffer.getEventsForFlowFiles(flowFileUuids)) {
+                if (filter.select(candidate)) {
+                    records.add(candidate);
+                }
+            }
             submission.getResult().update(records, records.size());
         }
     }
@@ -774,7 +835,7 @@ public class VolatileProvenanceRepository implements ProvenanceRepository {
         }
     }
 
-    private static class IdEnrichedProvEvent implements ProvenanceEventRecord {
+    static class IdEnrichedProvEvent implements ProvenanceEventRecord {
 
         private final ProvenanceEventRecord record;
         private final long id;
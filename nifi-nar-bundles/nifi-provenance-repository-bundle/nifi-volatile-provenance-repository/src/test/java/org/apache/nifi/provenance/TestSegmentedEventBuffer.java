@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.provenance;
+
+import org.apache.nifi.util.RingBuffer.IterationDirection;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestSegmentedEventBuffer {
+    private final AtomicLong idGenerator = new AtomicLong(0L);
+
+    @Test
+    public void testEventRoundTrip() {
+        final SegmentedEventBuffer buffer = new SegmentedEventBuffer(1024 * 1024, 64 * 1024, 60_000L);
+
+        final Map<String, String> previousAttributes = new HashMap<>();
+        previousAttributes.put("uuid", "parent-1");
+        previousAttributes.put("filename", "file.txt");
+        final Map<String, String> updatedAttributes = new HashMap<>();
+        updatedAttributes.put("mime.type", "text/plain");
+        updatedAttributes.put("removed", null);
+
+        final ProvenanceEventRecord original = new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.FORK)
+            .setEventTime(1000L)
+            .setFlowFileEntryDate(900L)
+            .setLineageStartDate(800L)
+            .setEventDuration(12L)
+            .setComponentId("component-1")
+            .setComponentType("UnitTest")
+            .setFlowFileUUID("parent-1")
+            .addParentUuid("parent-1")
+            .addChildUuid("child-1")
+            .addChildUuid("child-2")
+            .setDetails("split é")
+            .setSourceQueueIdentifier("queue-1")
+            .setAttributes(previousAttributes, updatedAttributes)
+            .setPreviousContentClaim("container", "section", "previous-id", 4L, 10L)
+            .setCurrentContentClaim("container", "section", "current-id", 14L, 20L)
+            .build();
+
+        buffer.add(original, idGenerator);
+
+        final ProvenanceEventRecord restored = buffer.getEvent(0L);
+        assertEquals(0L, restored.getEventId());
+        assertEquals(original.getEventType(), restored.getEventType());
+        assertEquals(original.getEventTime(), restored.getEventTime());
+        assertEquals(original.getFlowFileEntryDate(), restored.getFlowFileEntryDate());
+        assertEquals(original.getLineageStartDate(), restored.getLineageStartDate());
+        assertEquals(original.getEventDuration(), restored.getEventDuration());
+        assertEquals(original.getComponentId(), restored.getComponentId());
+        assertEquals(original.getFlowFileUuid(), restored.getFlowFileUuid());
+        assertEquals(original.getParentUuids(), restored.getParentUuids());
+        assertEquals(original.getChildUuids(), restored.getChildUuids());
+        assertEquals(original.getDetails(), restored.getDetails());
+        assertEquals(original.getSourceQueueIdentifier(), restored.getSourceQueueIdentifier());
+        assertEquals(original.getPreviousAttributes(), restored.getPreviousAttributes());
+        assertEquals(original.getUpdatedAttributes(), restored.getUpdatedAttributes());
+        assertEquals(original.getAttributes(), restored.getAttributes());
+        assertEquals(original.getContentClaimIdentifier(), restored.getContentClaimIdentifier());
+        assertEquals(original.getContentClaimOffset(), restored.getContentClaimOffset());
+        assertEquals(original.getFileSize(), restored.getFileSize());
+        assertEquals(original.getPreviousContentClaimIdentifier(), restored.getPreviousContentClaimIdentifier());
+        assertEquals(original.getPreviousFileSize(), restored.getPreviousFileSize());
+        assertNull(restored.getTransitUri());
+    }
+
+    @Test
+    public void testOldestSegmentsDiscardedWhenFull() {
+        final SegmentedEventBuffer buffer = new SegmentedEventBuffer(4 * 4096, 4096, 60_000L);
+
+        for (int i = 0; i < 1000; i++) {
+            buffer.add(createEvent("flowfile-" + i, "component-1"), idGenerator);
+        }
+
+        assertTrue(buffer.getSegmentCount() <= 4);
+        assertTrue(buffer.getUsableSpace() >= 0);
+        assertTrue(buffer.getSize() < 1000);
+        assertEquals(999L, buffer.getNewestEvent().getEventId());
+
+        // The events that remain are the newest events, and they are still found by ID
+        final long oldestRemaining = 1000 - buffer.getSize();
+        assertNull(buffer.getEvent(oldestRemaining - 1));
+        assertEquals("flowfile-" + oldestRemaining, buffer.getEvent(oldestRemaining).getFlowFileUuid());
+        assertNull(buffer.getEvent(1000L));
+
+        final List<ProvenanceEventRecord> events = buffer.getEvents(0L, event -> true, Integer.MAX_VALUE);
+        assertEquals(buffer.getSize(), events.size());
+        assertEquals(oldestRemaining, events.get(0).getEventId());
+        assertTrue(buffer.getEventsForFlowFiles(Collections.singleton("flowfile-0")).isEmpty());
+    }
+
+    @Test
+    public void testSegmentStartedWhenBucketElapses() throws InterruptedException {
+        final SegmentedEventBuffer buffer = new SegmentedEventBuffer(1024 * 1024, 64 * 1024, 1L);
+
+        buffer.add(createEvent("flowfile-1", "component-1"), idGenerator);
+        Thread.sleep(5L);
+        buffer.add(createEvent("flowfile-2", "component-1"), idGenerator);
+
+        assertEquals(2, buffer.getSegmentCount());
+        assertEquals(2, buffer.getSize());
+
+        // The first segment is trimmed to the size of its events when the second segment is started
+        assertTrue(buffer.getUsableSpace() > 1024 * 1024 - 64 * 1024);
+        assertEquals("flowfile-1", buffer.getEvent(0L).getFlowFileUuid());
+        assertEquals("flowfile-2", buffer.getEvent(1L).getFlowFileUuid());
+    }
+
+    @Test
+    public void testIndexedLookups() {
+        final SegmentedEventBuffer buffer = new SegmentedEventBuffer(64 * 1024, 4096, 60_000L);
+
+        for (int i = 0; i < 50; i++) {
+            buffer.add(createEvent("flowfile-" + (i % 5), "component-" + (i % 2)), idGenerator);
+        }
+
+        final ProvenanceEventRecord fork = new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.FORK)
+            .setComponentId("component-2")
+            .setComponentType("UnitTest")
+            .setFlowFileUUID("flowfile-1")
+            .addParentUuid("flowfile-1")
+            .addChildUuid("child-1")
+            .setCurrentContentClaim(null, null, null, null, 0L)
+            .build();
+        buffer.add(fork, idGenerator);
+
+        final List<ProvenanceEventRecord> forFlowFile = buffer.getEventsForFlowFiles(Collections.singleton("flowfile-1"));
+        assertEquals(11, forFlowFile.size());
+        assertEventIdsAscending(forFlowFile);
+
+        final List<ProvenanceEventRecord> forChild = buffer.getEventsForFlowFiles(Collections.singleton("child-1"));
+        assertEquals(1, forChild.size());
+        assertEquals(50L, forChild.get(0).getEventId());
+
+        final List<ProvenanceEventRecord> forBoth = buffer.getEventsForFlowFiles(Arrays.asList("flowfile-2", "child-1"));
+        assertEquals(11, forBoth.size());
+        assertEventIdsAscending(forBoth);
+
+        assertEquals(25, buffer.getEventsForComponent("COMPONENT-1").size());
+        assertEquals(1, buffer.getEventsForComponent("component-2").size());
+        assertTrue(buffer.getEventsForComponent("component-3").isEmpty());
+    }
+
+    @Test
+    public void testForEachSkipsSegmentsOutsideTimeRange() throws InterruptedException {
+        final SegmentedEventBuffer buffer = new SegmentedEventBuffer(1024 * 1024, 64 * 1024, 1L);
+
+        for (int i = 0; i < 3; i++) {
+            final ProvenanceEventRecord event = new StandardProvenanceEventRecord.Builder()
+                .setEventType(ProvenanceEventType.CREATE)
+                .setEventTime(1000L * (i + 1))
+                .setComponentId("component-1")
+                .setComponentType("UnitTest")
+                .setFlowFileUUID("flowfile-" + i)
+                .setCurrentContentClaim(null, null, null, null, 0L)
+                .build();
+            buffer.add(event, idGenerator);
+            Thread.sleep(5L);
+        }
+
+        final List<Long> backward = new ArrayList<>();
+        buffer.forEach(event -> backward.add(event.getEventId()), IterationDirection.BACKWARD, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(Arrays.asList(2L, 1L, 0L), backward);
+
+        final List<Long> inRange = new ArrayList<>();
+        buffer.forEach(event -> inRange.add(event.getEventId()), IterationDirection.FORWARD, 1500L, 2500L);
+        assertEquals(Collections.singletonList(1L), inRange);
+
+        final List<Long> first = new ArrayList<>();
+        buffer.forEach(event -> first.add(event.getEventId()) && false, IterationDirection.FORWARD, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(Collections.singletonList(0L), first);
+    }
+
+    @Test
+    public void testEventLargerThanSegment() {
+        final SegmentedEventBuffer buffer = new SegmentedEventBuffer(64 * 1024, 1024, 60_000L);
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("large", String.join("", Collections.nCopies(4096, "x")));
+        final ProvenanceEventRecord event = new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.CREATE)
+            .setComponentId("component-1")
+            .setComponentType("UnitTest")
+            .setFlowFileUUID("flowfile-1")
+            .setAttributes(Collections.emptyMap(), attributes)
+            .setCurrentContentClaim(null, null, null, null, 0L)
+            .build();
+
+        buffer.add(createEvent("flowfile-0", "component-1"), idGenerator);
+        buffer.add(event, idGenerator);
+        buffer.add(createEvent("flowfile-2", "component-1"), idGenerator);
+
+        assertEquals(3, buffer.getSize());
+        assertEquals(attributes, buffer.getEvent(1L).getAttributes());
+        assertEquals("flowfile-2", buffer.getEvent(2L).getFlowFileUuid());
+    }
+
+    private void assertEventIdsAscending(final List<ProvenanceEventRecord> events) {
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i - 1).getEventId() < events.get(i).getEventId());
+        }
+    }
+
+    private ProvenanceEventRecord createEvent(final String flowFileUuid, final String componentId) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("uuid", flowFileUuid);
+
+        return new StandardProvenanceEventRecord.Builder()
+            .setEventType(ProvenanceEventType.RECEIVE)
+            .setTransitUri("nifi://unit-test")
+            .setComponentId(componentId)
+            .setComponentType("UnitTest")
+            .setFlowFileUUID(flowFileUuid)
+            .setAttributes(Collections.emptyMap(), attributes)
+            .setCurrentContentClaim("container", "section", "identifier", 0L, 1024L)
+            .build();
+    }
+}
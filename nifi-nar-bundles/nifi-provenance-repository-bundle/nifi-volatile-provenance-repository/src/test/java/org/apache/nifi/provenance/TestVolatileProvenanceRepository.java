@@ -18,6 +18,8 @@ package org.apache.nifi.provenance;
 
 import org.apache.nifi.authorization.user.NiFiUser;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.provenance.lineage.ComputeLineageSubmission;
+import org.apache.nifi.provenance.lineage.LineageNodeType;
 import org.apache.nifi.provenance.search.Query;
 import org.apache.nifi.provenance.search.QuerySubmission;
 import org.apache.nifi.provenance.search.SearchTerms;
@@ -169,6 +171,61 @@ public class TestVolatileProvenanceRepository {
         assertEquals("00000000-0000-0000-0000-0000000000001", submission.getResult().getMatchingEvents().get(0).getFlowFileUuid());
     }
 
+    @Test(timeout = 10000)
+    public void testSegmentedBufferQueryAndLineage() throws InterruptedException {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put(VolatileProvenanceRepository.BUFFER_TYPE, VolatileProvenanceRepository.SEGMENTED_BUFFER_TYPE);
+        properties.put(VolatileProvenanceRepository.BUFFER_MAX_MEMORY, "1 MB");
+        repo = new VolatileProvenanceRepository(NiFiProperties.createBasicNiFiProperties(null, properties));
+
+        final Map<String, String> attributes = new HashMap<>();
+        final ProvenanceEventBuilder builder = new StandardProvenanceEventRecord.Builder();
+        builder.setEventTime(System.currentTimeMillis());
+        builder.setEventType(ProvenanceEventType.CONTENT_MODIFIED);
+        builder.setComponentType("dummy processor");
+
+        // StandardProvenanceEventRecord ignores an Event ID of 0 when comparing events, so do not make it part of the lineage
+        attributes.put("uuid", UUID.randomUUID().toString());
+        builder.fromFlowFile(createFlowFile(0L, 3000L, attributes));
+        builder.setComponentId("9999");
+        repo.registerEvent(builder.build());
+
+        final String uuidPrefix = "00000000-0000-0000-0000-00000000000";
+        for (int i = 0; i < 10; i++) {
+            attributes.put("uuid", uuidPrefix + (i % 2));
+            builder.fromFlowFile(createFlowFile(i, 3000L, attributes));
+            builder.setComponentId(i < 5 ? "1234" : "5678");
+            builder.setDetails("event " + i);
+            repo.registerEvent(builder.build());
+        }
+
+        assertEquals(Long.valueOf(10L), repo.getMaxEventId());
+        assertEquals(uuidPrefix + "1", repo.getEvent(4L).getFlowFileUuid());
+
+        final Query query = new Query(UUID.randomUUID().toString());
+        query.addSearchTerm(SearchTerms.newSearchTerm(SearchableFields.ComponentID, "1234", null));
+        query.setMaxResults(100);
+
+        final QuerySubmission submission = repo.submitQuery(query, createUser());
+        while (!submission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+
+        final List<ProvenanceEventRecord> matches = submission.getResult().getMatchingEvents();
+        assertEquals(5, matches.size());
+        assertEquals(5L, matches.get(0).getEventId());
+
+        final ComputeLineageSubmission lineageSubmission = repo.submitLineageComputation(uuidPrefix + "0", createUser());
+        while (!lineageSubmission.getResult().isFinished()) {
+            Thread.sleep(100L);
+        }
+
+        final long eventNodes = lineageSubmission.getResult().getNodes().stream()
+            .filter(node -> node.getNodeType() == LineageNodeType.PROVENANCE_EVENT_NODE)
+            .count();
+        assertEquals(5L, eventNodes);
+    }
+
     private FlowFile createFlowFile(final long id, final long fileSize, final Map<String, String> attributes) {
         final Map<String, String> attrCopy = new HashMap<>(attributes);
 
@@ -99,6 +99,17 @@ public class RouteOnAttribute extends AbstractProcessor {
             .defaultValue(ROUTE_PROPERTY_NAME.getValue())
             .build();
 
+    public static final PropertyDescriptor BATCH_SIZE = new PropertyDescriptor.Builder()
+            .name("batch-size")
+            .displayName("Batch Size")
+            .description("The maximum number of FlowFiles to route in a single execution of this processor. Each Expression is evaluated against all of "
+                    + "the FlowFiles at once, which is more efficient for larger batches. However, if an Expression fails to evaluate for any one of the "
+                    + "FlowFiles, the entire batch is rolled back and penalized.")
+            .required(true)
+            .defaultValue("1")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
     public static final Relationship REL_NO_MATCH = new Relationship.Builder()
             .name("unmatched")
             .description("FlowFiles that do not match any user-define expression will be routed here")
@@ -127,6 +138,7 @@ public class RouteOnAttribute extends AbstractProcessor {
 
         final List<PropertyDescriptor> properties = new ArrayList<>();
         properties.add(ROUTE_STRATEGY);
+        properties.add(BATCH_SIZE);
         this.properties = Collections.unmodifiableList(properties);
     }
 
@@ -204,28 +216,46 @@ public class RouteOnAttribute extends AbstractProcessor {
 
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) {
-        FlowFile flowFile = session.get();
-        if (flowFile == null) {
+        final List<FlowFile> flowFiles = session.get(context.getProperty(BATCH_SIZE).asInteger());
+        if (flowFiles.isEmpty()) {
             return;
         }
 
-        final ComponentLog logger = getLogger();
-
         final Map<Relationship, PropertyValue> propMap = this.propertyMap;
-        final Set<Relationship> matchingRelationships = new HashSet<>();
+        final String routeStrategy = context.getProperty(ROUTE_STRATEGY).getValue();
+
+        // Evaluate each property against the whole batch at once so that the evaluation context is created once per property rather than once per FlowFile
+        final Map<Relationship, boolean[]> matchesByRelationship = new HashMap<>();
+        String[] results = null;
         for (final Map.Entry<Relationship, PropertyValue> entry : propMap.entrySet()) {
-            final PropertyValue value = entry.getValue();
+            results = entry.getValue().evaluateAttributeExpressions(flowFiles, results);
+
+            final boolean[] matches = new boolean[flowFiles.size()];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = results[i] != null && Boolean.parseBoolean(results[i].trim());
+            }
+            matchesByRelationship.put(entry.getKey(), matches);
+        }
 
-            final boolean matches = value.evaluateAttributeExpressions(flowFile).asBoolean();
-            if (matches) {
-                matchingRelationships.add(entry.getKey());
+        for (int i = 0; i < flowFiles.size(); i++) {
+            final Set<Relationship> matchingRelationships = new HashSet<>();
+            for (final Map.Entry<Relationship, boolean[]> entry : matchesByRelationship.entrySet()) {
+                if (entry.getValue()[i]) {
+                    matchingRelationships.add(entry.getKey());
+                }
             }
+
+            route(session, flowFiles.get(i), matchingRelationships, propMap.size(), routeStrategy);
         }
+    }
+
+    private void route(final ProcessSession session, FlowFile flowFile, final Set<Relationship> matchingRelationships, final int propertyCount, final String routeStrategy) {
+        final ComponentLog logger = getLogger();
 
         final Set<Relationship> destinationRelationships = new HashSet<>();
-        switch (context.getProperty(ROUTE_STRATEGY).getValue()) {
+        switch (routeStrategy) {
             case routeAllMatchValue:
-                if (matchingRelationships.size() == propMap.size()) {
+                if (matchingRelationships.size() == propertyCount) {
                     destinationRelationships.add(REL_MATCH);
                 } else {
                     destinationRelationships.add(REL_NO_MATCH);
@@ -68,6 +68,29 @@ public class TestRouteOnAttribute {
         flowFiles.get(0).assertAttributeEquals(RouteOnAttribute.ROUTE_ATTRIBUTE_KEY, "RouteA");
     }
 
+    @Test
+    public void testBatchSize() {
+        final TestRunner runner = TestRunners.newTestRunner(new RouteOnAttribute());
+        runner.setProperty("RouteA", "${a:equals('b')}");
+
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put("a", "b");
+        for (int i = 0; i < 3; i++) {
+            runner.enqueue(new byte[0], attributes);
+        }
+
+        // By default, one FlowFile is routed at a time
+        runner.run();
+        runner.assertAllFlowFilesTransferred(new Relationship.Builder().name("RouteA").build(), 1);
+        assertEquals(2, runner.getQueueSize().getObjectCount());
+
+        runner.clearTransferState();
+        runner.setProperty(RouteOnAttribute.BATCH_SIZE, "10");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(new Relationship.Builder().name("RouteA").build(), 2);
+        assertEquals(0, runner.getQueueSize().getObjectCount());
+    }
+
     @Test
     public void testMatchAll() {
         final TestRunner runner = TestRunners.newTestRunner(new RouteOnAttribute());
@@ -20,6 +20,9 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>This interface defines an API that can be used for interacting with a
@@ -50,6 +53,27 @@ public interface AtomicDistributedMapCacheClient<R> extends DistributedMapCacheC
      */
     <K, V> AtomicCacheEntry<K, V, R> fetch(K key, Serializer<K> keySerializer, Deserializer<V> valueDeserializer) throws IOException;
 
+    /**
+     * Fetch the CacheEntries for a set of keys. Implementations should send the entire batch to the cache in as few exchanges as possible.
+     * @param <K> the key type
+     * @param <V> the value type
+     * @param keys the keys to lookup in the map
+     * @param keySerializer key serializer
+     * @param valueDeserializer value deserializer
+     * @return A map containing a CacheEntry for each of the given keys that exists in the cache. Keys that do not exist are not included.
+     * @throws IOException if unable to communicate with the remote instance
+     */
+    default <K, V> Map<K, AtomicCacheEntry<K, V, R>> fetchAll(Set<K> keys, Serializer<K> keySerializer, Deserializer<V> valueDeserializer) throws IOException {
+        final Map<K, AtomicCacheEntry<K, V, R>> entries = new HashMap<>(keys.size());
+        for (K key : keys) {
+            final AtomicCacheEntry<K, V, R> entry = fetch(key, keySerializer, valueDeserializer);
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entries;
+    }
+
     /**
      * Replace an existing key with new value.
      * @param <K> the key type
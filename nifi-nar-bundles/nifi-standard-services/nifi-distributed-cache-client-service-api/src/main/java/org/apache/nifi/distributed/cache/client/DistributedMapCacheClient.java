@@ -22,6 +22,7 @@ import org.apache.nifi.controller.ControllerService;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -89,6 +90,27 @@ public interface DistributedMapCacheClient extends ControllerService {
      */
     <K> boolean containsKey(K key, Serializer<K> keySerializer) throws IOException;
 
+    /**
+     * Determines which of the given keys are present in the cache. Implementations should send the entire batch to the cache
+     * in as few exchanges as possible.
+     *
+     * @param <K> type of key
+     * @param keys the keys to check
+     * @param keySerializer key serializer
+     * @return the subset of the given keys that are present in the cache
+     *
+     * @throws IOException if unable to communicate with the remote instance
+     */
+    default <K> Set<K> containsKeys(Set<K> keys, Serializer<K> keySerializer) throws IOException {
+        final Set<K> contained = new HashSet<>();
+        for (K key : keys) {
+            if (containsKey(key, keySerializer)) {
+                contained.add(key);
+            }
+        }
+        return contained;
+    }
+
     /**
      * Adds the specified key and value to the cache, overwriting any value that is
      * currently set.
@@ -122,6 +144,28 @@ public interface DistributedMapCacheClient extends ControllerService {
         }
     }
 
+    /**
+     * Performs a bulk putIfAbsent operation, adding each of the given keys and values to the cache if the key is not already present.
+     * Implementations should send the entire batch to the cache in as few exchanges as possible.
+     *
+     * @param keysAndValues   A java.util.Map that contains an association between keys and values to be added to the cache
+     * @param keySerializer   The Serializer that will be used to serialize the key into bytes
+     * @param valueSerializer The Serializer that will be used to serialize the value into bytes
+     * @param <K>             The key type
+     * @param <V>             The value type
+     * @return the keys whose values were added to the cache; any key that is not returned was already present in the cache
+     * @throws IOException if unable to communicate with the remote instance
+     */
+    default <K, V> Set<K> putAllIfAbsent(Map<K, V> keysAndValues, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        final Set<K> added = new HashSet<>();
+        for (Map.Entry<K, V> entry : keysAndValues.entrySet()) {
+            if (putIfAbsent(entry.getKey(), entry.getValue(), keySerializer, valueSerializer)) {
+                added.add(entry.getKey());
+            }
+        }
+        return added;
+    }
+
     /**
      * Returns the value in the cache for the given key, if one exists;
      * otherwise returns <code>null</code>
@@ -184,6 +228,26 @@ public interface DistributedMapCacheClient extends ControllerService {
      */
     <K> boolean remove(K key, Serializer<K> serializer) throws IOException;
 
+    /**
+     * Removes the entries with the given keys from the cache, if they are present. Implementations should send the entire batch
+     * to the cache in as few exchanges as possible.
+     *
+     * @param <K> type of key
+     * @param keys the keys to remove
+     * @param serializer serializer
+     * @return the number of entries that were removed from the cache
+     * @throws IOException ex
+     */
+    default <K> long removeAll(Set<K> keys, Serializer<K> serializer) throws IOException {
+        long removed = 0;
+        for (K key : keys) {
+            if (remove(key, serializer)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
     /**
      * Removes the entry with the given key from the cache, if it is present,
      * and returns the value that was removed from the map.
@@ -20,9 +20,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -84,6 +87,12 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         .defaultValue("30 secs")
         .build();
 
+    /**
+     * The number of single-key requests that are written before their responses are read, when a batch operation is sent
+     * to a server that does not support the multi-key requests of protocol version 4
+     */
+    private static final int PIPELINE_WINDOW_SIZE = 100;
+
     private final BlockingQueue<CommsSession> queue = new LinkedBlockingQueue<>();
     private volatile ConfigurationContext configContext;
     private volatile boolean closed = false;
@@ -127,6 +136,44 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         });
     }
 
+    @Override
+    public <K, V> Set<K> putAllIfAbsent(final Map<K, V> keysAndValues, final Serializer<K> keySerializer, final Serializer<V> valueSerializer) throws IOException {
+        return withCommsSession(session -> {
+            final List<Map.Entry<K, V>> entries = new ArrayList<>(keysAndValues.entrySet());
+            final Set<K> added = new HashSet<>();
+
+            final DataOutputStream dos = new DataOutputStream(session.getOutputStream());
+            final DataInputStream dis = new DataInputStream(session.getInputStream());
+            if (session.getProtocolVersion() >= 4) {
+                dos.writeUTF("putAllIfAbsent");
+                dos.writeInt(entries.size());
+                for (final Map.Entry<K, V> entry : entries) {
+                    serialize(entry.getKey(), keySerializer, dos);
+                    serialize(entry.getValue(), valueSerializer, dos);
+                }
+                dos.flush();
+
+                for (final Map.Entry<K, V> entry : entries) {
+                    if (dis.readBoolean()) {
+                        added.add(entry.getKey());
+                    }
+                }
+            } else {
+                pipeline(session, entries, PIPELINE_WINDOW_SIZE, entry -> {
+                    dos.writeUTF("putIfAbsent");
+                    serialize(entry.getKey(), keySerializer, dos);
+                    serialize(entry.getValue(), valueSerializer, dos);
+                }, entry -> {
+                    if (dis.readBoolean()) {
+                        added.add(entry.getKey());
+                    }
+                });
+            }
+
+            return added;
+        });
+    }
+
     @Override
     public <K, V> void put(final K key, final V value, final Serializer<K> keySerializer, final Serializer<V> valueSerializer) throws IOException {
         withCommsSession(new CommsAction<Object>() {
@@ -167,6 +214,39 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         });
     }
 
+    @Override
+    public <K> Set<K> containsKeys(final Set<K> keys, final Serializer<K> keySerializer) throws IOException {
+        return withCommsSession(session -> {
+            final List<K> keyList = new ArrayList<>(keys);
+            final Set<K> contained = new HashSet<>();
+
+            final DataOutputStream dos = new DataOutputStream(session.getOutputStream());
+            final DataInputStream dis = new DataInputStream(session.getInputStream());
+            if (session.getProtocolVersion() >= 4) {
+                dos.writeUTF("containsKeys");
+                serialize(keyList, keySerializer, dos);
+                dos.flush();
+
+                for (final K key : keyList) {
+                    if (dis.readBoolean()) {
+                        contained.add(key);
+                    }
+                }
+            } else {
+                pipeline(session, keyList, PIPELINE_WINDOW_SIZE, key -> {
+                    dos.writeUTF("containsKey");
+                    serialize(key, keySerializer, dos);
+                }, key -> {
+                    if (dis.readBoolean()) {
+                        contained.add(key);
+                    }
+                });
+            }
+
+            return contained;
+        });
+    }
+
     @Override
     public <K, V> V getAndPutIfAbsent(final K key, final V value, final Serializer<K> keySerializer, final Serializer<V> valueSerializer, final Deserializer<V> valueDeserializer) throws IOException {
         return withCommsSession(new CommsAction<V>() {
@@ -254,6 +334,33 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         });
     }
 
+    @Override
+    public <K> long removeAll(final Set<K> keys, final Serializer<K> serializer) throws IOException {
+        return withCommsSession(session -> {
+            final DataOutputStream dos = new DataOutputStream(session.getOutputStream());
+            final DataInputStream dis = new DataInputStream(session.getInputStream());
+            if (session.getProtocolVersion() >= 4) {
+                dos.writeUTF("removeAll");
+                serialize(keys, serializer, dos);
+                dos.flush();
+
+                return dis.readLong();
+            }
+
+            final long[] removed = new long[1];
+            pipeline(session, keys, PIPELINE_WINDOW_SIZE, key -> {
+                dos.writeUTF("remove");
+                serialize(key, serializer, dos);
+            }, key -> {
+                if (dis.readBoolean()) {
+                    removed[0]++;
+                }
+            });
+
+            return removed[0];
+        });
+    }
+
     @Override
     public <K, V> V removeAndGet(K key, Serializer<K> keySerializer, Deserializer<V> valueDeserializer) throws IOException {
         return withCommsSession(new CommsAction<V>() {
@@ -343,6 +450,48 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         });
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, AtomicCacheEntry<K, V, Long>> fetchAll(final Set<K> keys, final Serializer<K> keySerializer, final Deserializer<V> valueDeserializer) throws IOException {
+        return withCommsSession(session -> {
+            validateProtocolVersion(session, 2);
+
+            final List<K> keyList = new ArrayList<>(keys);
+            final Map<K, AtomicCacheEntry<K, V, Long>> entries = new HashMap<>(keyList.size());
+
+            final DataOutputStream dos = new DataOutputStream(session.getOutputStream());
+            final DataInputStream dis = new DataInputStream(session.getInputStream());
+            final ResponseReader<K> responseReader = key -> {
+                final long revision = dis.readLong();
+                final byte[] responseBuffer = readLengthDelimitedResponse(dis);
+
+                // A negative revision indicates that the key was not found.
+                if (revision >= 0) {
+                    entries.put(key, new AtomicCacheEntry(key, valueDeserializer.deserialize(responseBuffer), revision));
+                }
+            };
+
+            if (session.getProtocolVersion() >= 4) {
+                dos.writeUTF("fetchAll");
+                serialize(keyList, keySerializer, dos);
+                dos.flush();
+
+                for (final K key : keyList) {
+                    responseReader.read(key);
+                }
+            } else {
+                // Responses to 'fetch' carry values of unbounded size, so they are not pipelined; the server could otherwise
+                // block writing responses while this client is still writing requests.
+                pipeline(session, keyList, 1, key -> {
+                    dos.writeUTF("fetch");
+                    serialize(key, keySerializer, dos);
+                }, responseReader);
+            }
+
+            return entries;
+        });
+    }
+
     private void validateProtocolVersion(final CommsSession session, final int requiredProtocolVersion) {
         if (session.getProtocolVersion() < requiredProtocolVersion) {
             throw new UnsupportedOperationException("Remote cache server doesn't support protocol version " + requiredProtocolVersion);
@@ -421,7 +570,7 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         }
 
         session = createCommsSession(configContext);
-        final VersionNegotiator versionNegotiator = new StandardVersionNegotiator(3, 2, 1);
+        final VersionNegotiator versionNegotiator = new StandardVersionNegotiator(4, 3, 2, 1);
         try {
             ProtocolHandshake.initiateHandshake(session.getInputStream(), session.getOutputStream(), versionNegotiator);
             session.setProtocolVersion(versionNegotiator.getVersion());
@@ -470,7 +619,7 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         baos.writeTo(dos);
     }
 
-    private <T> void serialize(final Set<T> values, final Serializer<T> serializer, final DataOutputStream dos) throws IOException {
+    private <T> void serialize(final Collection<T> values, final Serializer<T> serializer, final DataOutputStream dos) throws IOException {
         // Write the number of elements to follow, then each element and its size
         dos.writeInt(values.size());
         for(T value : values) {
@@ -481,6 +630,31 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         }
     }
 
+    /**
+     * Sends a single-key request for each of the given items over the given session. Up to <code>windowSize</code> requests are written
+     * before the corresponding responses are read, which avoids a network round trip per item. The window is bounded so that the
+     * responses that the server writes while this client is still writing requests fit within the socket buffers.
+     */
+    private <T> void pipeline(final CommsSession session, final Collection<T> items, final int windowSize,
+                              final RequestWriter<T> requestWriter, final ResponseReader<T> responseReader) throws IOException {
+        final OutputStream out = session.getOutputStream();
+        final List<T> window = new ArrayList<>(Math.min(windowSize, items.size()));
+        final Iterator<T> itr = items.iterator();
+        while (itr.hasNext()) {
+            window.clear();
+            while (itr.hasNext() && window.size() < windowSize) {
+                final T item = itr.next();
+                requestWriter.write(item);
+                window.add(item);
+            }
+            out.flush();
+
+            for (final T item : window) {
+                responseReader.read(item);
+            }
+        }
+    }
+
     private <T> T withCommsSession(final CommsAction<T> action) throws IOException {
         if (closed) {
             throw new IllegalStateException("Client is closed");
@@ -506,4 +680,14 @@ public class DistributedMapCacheClientService extends AbstractControllerService
         T execute(CommsSession commsSession) throws IOException;
     }
 
+    private interface RequestWriter<T> {
+
+        void write(T item) throws IOException;
+    }
+
+    private interface ResponseReader<T> {
+
+        void read(T item) throws IOException;
+    }
+
 }
@@ -18,15 +18,26 @@ package org.apache.nifi.distributed.cache.server;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.SocketTimeoutException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.ssl.SSLContext;
 
@@ -43,17 +54,39 @@ import org.apache.nifi.remote.io.socket.ssl.SSLSocketChannelOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>
+ * Base class for the cache servers. All client connections are multiplexed over a single Selector, and a connection is handed to a small,
+ * fixed pool of worker threads only when the client has sent data, whether that is the protocol handshake of a newly accepted connection
+ * or a request. This allows a cache server to be shared by a large number of pooled client connections without requiring a dedicated
+ * thread for each of them, and prevents clients that connect without sending anything from occupying the workers.
+ * </p>
+ *
+ * <p>
+ * Requests are still read and answered by {@link #listen(InputStream, OutputStream, int)} using blocking stream semantics, so the wire
+ * protocol and the {@link ProtocolHandshake} are unchanged. As was the case when each connection had its own thread, a connection
+ * that remains idle for 30 seconds is closed.
+ * </p>
+ */
 public abstract class AbstractCacheServer implements CacheServer {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractCacheServer.class);
 
+    static final long IDLE_CONNECTION_TIMEOUT_MILLIS = 30000L;
+    static final int WORKER_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final long SELECT_TIMEOUT_MILLIS = 1000L;
+
     private final String identifier;
     private final int port;
     private final SSLContext sslContext;
     protected volatile boolean stopped = false;
-    private final Set<Thread> processInputThreads = new CopyOnWriteArraySet<>();
+
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<ClientConnection> awaitingRequest = new ConcurrentLinkedQueue<>();
 
     private volatile ServerSocketChannel serverSocketChannel;
+    private volatile Selector selector;
+    private volatile ExecutorService workerPool;
 
     public AbstractCacheServer(final String identifier, final SSLContext sslContext, final int port) {
         this.identifier = identifier;
@@ -68,99 +101,186 @@ public abstract class AbstractCacheServer implements CacheServer {
 
     @Override
     public void start() throws IOException {
+        selector = Selector.open();
         serverSocketChannel = ServerSocketChannel.open();
-        serverSocketChannel.configureBlocking(true);
+        serverSocketChannel.configureBlocking(false);
         serverSocketChannel.bind(new InetSocketAddress(port));
+        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
 
-        final Runnable runnable = new Runnable() {
+        final AtomicInteger threadCounter = new AtomicInteger(0);
+        workerPool = Executors.newFixedThreadPool(WORKER_THREAD_COUNT, runnable -> {
+            final Thread workerThread = new Thread(runnable);
+            workerThread.setName("Distributed Cache Server Communications Thread-" + threadCounter.incrementAndGet() + ": " + identifier);
+            workerThread.setDaemon(true);
+            return workerThread;
+        });
+
+        final Thread thread = new Thread(this::runEventLoop);
+        thread.setDaemon(true);
+        thread.setName("Distributed Cache Server: " + identifier);
+        thread.start();
+    }
+
+    private void runEventLoop() {
+        try {
+            while (!stopped) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                if (stopped) {
+                    break;
+                }
+
+                // Resume watching the connections whose requests have been handled by the workers.
+                ClientConnection connection;
+                while ((connection = awaitingRequest.poll()) != null) {
+                    connection.awaitRequest();
+                }
+
+                final Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    final SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
 
-            @Override
-            public void run() {
-                while (true) {
-                    final SocketChannel socketChannel;
                     try {
-                        socketChannel = serverSocketChannel.accept();
-                        logger.debug("Connected to {}", new Object[]{socketChannel});
-                    } catch (final IOException e) {
-                        if (!stopped) {
-                            logger.error("{} unable to accept connection from remote peer due to {}", this, e.toString());
-                            if (logger.isDebugEnabled()) {
-                                logger.error("", e);
-                            }
+                        if (key.isAcceptable()) {
+                            acceptConnections();
+                        } else if (key.isReadable()) {
+                            // Stop watching the connection until the worker has finished handling the request.
+                            key.interestOps(0);
+                            dispatch((ClientConnection) key.attachment());
                         }
-                        return;
+                    } catch (final CancelledKeyException e) {
+                        // the connection was closed while it was selected
                     }
+                }
 
-                    final Runnable processInputRunnable = new Runnable() {
-                        @Override
-                        public void run() {
-                            final InputStream rawInputStream;
-                            final OutputStream rawOutputStream;
-                            final String peer = socketChannel.socket().getInetAddress().getHostName();
-
-                            try {
-                                if (sslContext == null) {
-                                    rawInputStream = new SocketChannelInputStream(socketChannel);
-                                    rawOutputStream = new SocketChannelOutputStream(socketChannel);
-                                } else {
-                                    final SSLSocketChannel sslSocketChannel = new SSLSocketChannel(sslContext, socketChannel, false);
-                                    sslSocketChannel.connect();
-                                    rawInputStream = new SSLSocketChannelInputStream(sslSocketChannel);
-                                    rawOutputStream = new SSLSocketChannelOutputStream(sslSocketChannel);
-                                }
-                            } catch (IOException e) {
-                                logger.error("Cannot create input and/or output streams for {}", new Object[]{identifier}, e);
-                                if (logger.isDebugEnabled()) {
-                                    logger.error("", e);
-                                }
-                                try {
-                                    socketChannel.close();
-                                } catch (IOException swallow) {
-                                }
-
-                                return;
-                            }
-                            try (final InputStream in = new BufferedInputStream(rawInputStream);
-                                 final OutputStream out = new BufferedOutputStream(rawOutputStream)) {
-
-                                final VersionNegotiator versionNegotiator = getVersionNegotiator();
-
-                                ProtocolHandshake.receiveHandshake(in, out, versionNegotiator);
-
-                                boolean continueComms = true;
-                                while (continueComms) {
-                                    continueComms = listen(in, out, versionNegotiator.getVersion());
-                                }
-                                // client has issued 'close'
-                                logger.debug("Client issued close on {}", new Object[]{socketChannel});
-                            } catch (final SocketTimeoutException e) {
-                                logger.debug("30 sec timeout reached", e);
-                            } catch (final IOException | HandshakeException e) {
-                                if (!stopped) {
-                                    logger.error("{} unable to communicate with remote peer {} due to {}", new Object[]{this, peer, e.toString()});
-                                    if (logger.isDebugEnabled()) {
-                                        logger.error("", e);
-                                    }
-                                }
-                            } finally {
-                                processInputThreads.remove(Thread.currentThread());
-                            }
-                        }
-                    };
+                closeIdleConnections();
+            }
+        } catch (final IOException e) {
+            if (!stopped) {
+                logger.error("{} unable to select connections due to {}; no further connections will be serviced", this, e.toString());
+                if (logger.isDebugEnabled()) {
+                    logger.error("", e);
+                }
+            }
+        } finally {
+            for (final ClientConnection connection : connections) {
+                connection.close();
+            }
+
+            try {
+                selector.close();
+            } catch (final IOException ignored) {
+            }
+        }
+    }
 
-                    final Thread processInputThread = new Thread(processInputRunnable);
-                    processInputThread.setName("Distributed Cache Server Communications Thread: " + identifier);
-                    processInputThread.setDaemon(true);
-                    processInputThread.start();
-                    processInputThreads.add(processInputThread);
+    private void acceptConnections() {
+        while (true) {
+            final SocketChannel socketChannel;
+            try {
+                socketChannel = serverSocketChannel.accept();
+                if (socketChannel == null) {
+                    return;
                 }
+
+                logger.debug("Connected to {}", new Object[]{socketChannel});
+                socketChannel.configureBlocking(false);
+                // responses are small and are flushed once complete, so they should not wait on the acknowledgement of the previous response
+                socketChannel.socket().setTcpNoDelay(true);
+            } catch (final IOException e) {
+                if (!stopped) {
+                    logger.error("{} unable to accept connection from remote peer due to {}", this, e.toString());
+                    if (logger.isDebugEnabled()) {
+                        logger.error("", e);
+                    }
+                }
+                return;
             }
-        };
 
-        final Thread thread = new Thread(runnable);
-        thread.setDaemon(true);
-        thread.setName("Distributed Cache Server: " + identifier);
-        thread.start();
+            final ClientConnection connection = new ClientConnection(socketChannel);
+            try {
+                connection.register(selector);
+            } catch (final IOException e) {
+                logger.error("{} unable to register connection from remote peer due to {}", this, e.toString());
+                connection.close();
+                continue;
+            }
+
+            connections.add(connection);
+            // The client initiates the handshake, so the connection is not handed to a worker until the handshake can be read.
+            connection.awaitRequest();
+        }
+    }
+
+    private void dispatch(final ClientConnection connection) {
+        connection.setBusy(true);
+        try {
+            workerPool.execute(() -> handle(connection));
+        } catch (final RejectedExecutionException e) {
+            // the server is being stopped
+            connection.close();
+        }
+    }
+
+    private void closeIdleConnections() {
+        final long idleThreshold = System.currentTimeMillis() - IDLE_CONNECTION_TIMEOUT_MILLIS;
+        for (final ClientConnection connection : connections) {
+            if (!connection.isBusy() && connection.getLastActivity() < idleThreshold) {
+                logger.debug("{} timeout reached for idle connection to {}", this, connection);
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Performs the protocol handshake for a newly accepted connection once the client has started it, if necessary, and then answers every
+     * request that is available for the connection. Once no more data is available, the connection is handed back to the Selector.
+     */
+    private void handle(final ClientConnection connection) {
+        boolean keepOpen = false;
+        try {
+            boolean requestPending = connection.isHandshakeComplete();
+            if (!connection.isHandshakeComplete()) {
+                connection.open(sslContext);
+
+                final VersionNegotiator versionNegotiator = getVersionNegotiator();
+                ProtocolHandshake.receiveHandshake(connection.getInputStream(), connection.getOutputStream(), versionNegotiator);
+                connection.setProtocolVersion(versionNegotiator.getVersion());
+            }
+
+            // A client may send its next request before the Selector has been consulted, or data may already have been buffered
+            // by the input streams, in which case the Selector would not report the connection as readable.
+            while (requestPending || connection.isDataAvailable()) {
+                requestPending = false;
+
+                if (!listen(connection.getInputStream(), connection.getOutputStream(), connection.getProtocolVersion())) {
+                    // client has issued 'close'
+                    logger.debug("Client issued close on {}", connection);
+                    return;
+                }
+            }
+
+            keepOpen = true;
+        } catch (final SocketTimeoutException e) {
+            logger.debug("30 sec timeout reached", e);
+        } catch (final EOFException e) {
+            logger.debug("Remote peer {} closed the connection", connection);
+        } catch (final IOException | HandshakeException e) {
+            if (!stopped) {
+                logger.error("{} unable to communicate with remote peer {} due to {}", new Object[]{this, connection.getPeer(), e.toString()});
+                if (logger.isDebugEnabled()) {
+                    logger.error("", e);
+                }
+            }
+        } finally {
+            if (keepOpen && !stopped) {
+                connection.setBusy(false);
+                awaitingRequest.offer(connection);
+                selector.wakeup();
+            } else {
+                connection.close();
+            }
+        }
     }
 
     /**
@@ -179,19 +299,23 @@ public abstract class AbstractCacheServer implements CacheServer {
         if (serverSocketChannel != null && serverSocketChannel.isOpen()) {
             serverSocketChannel.close();
         }
-        // need to close out the created SocketChannels...this is done by interrupting
-        // the created threads that loop on listen().
-        for (Thread processInputThread : processInputThreads) {
-            processInputThread.interrupt();
-            int i = 0;
-            while (!processInputThread.isInterrupted() && i++ < 5) {
-                try {
-                    Thread.sleep(50); // allow thread to gracefully terminate
-                } catch (InterruptedException e) {
-                }
-            }
+
+        // the event loop closes all of the client connections when it exits
+        if (selector != null) {
+            selector.wakeup();
+        }
+
+        // interrupt any worker that is waiting on a request from a client
+        if (workerPool != null) {
+            workerPool.shutdownNow();
         }
-        processInputThreads.clear();
+    }
+
+    /**
+     * @return the number of client connections that are currently open
+     */
+    int getConnectionCount() {
+        return connections.size();
     }
 
     @Override
@@ -209,4 +333,136 @@ public abstract class AbstractCacheServer implements CacheServer {
      * @throws IOException ex
      */
     protected abstract boolean listen(InputStream in, OutputStream out, int version) throws IOException;
+
+    /**
+     * The state of a single client connection. The connection is either registered with the Selector, waiting for a request, or it is
+     * busy, meaning that a worker thread owns its streams.
+     */
+    private class ClientConnection {
+        private final SocketChannel socketChannel;
+        private final String peer;
+
+        private SelectionKey selectionKey;
+        private SSLSocketChannel sslSocketChannel;
+        private InputStream in;
+        private OutputStream out;
+        private int protocolVersion = -1;
+
+        private volatile boolean busy = false;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        ClientConnection(final SocketChannel socketChannel) {
+            this.socketChannel = socketChannel;
+            // Avoid a reverse DNS lookup, as connections are accepted by the event loop thread
+            final InetSocketAddress remoteAddress = (InetSocketAddress) socketChannel.socket().getRemoteSocketAddress();
+            this.peer = remoteAddress == null ? null : remoteAddress.getHostString();
+        }
+
+        void register(final Selector selector) throws IOException {
+            selectionKey = socketChannel.register(selector, 0, this);
+        }
+
+        void open(final SSLContext sslContext) throws IOException {
+            final InputStream rawInputStream;
+            final OutputStream rawOutputStream;
+            if (sslContext == null) {
+                rawInputStream = new SocketChannelInputStream(socketChannel);
+                rawOutputStream = new SocketChannelOutputStream(socketChannel);
+            } else {
+                sslSocketChannel = new SSLSocketChannel(sslContext, socketChannel, false);
+                sslSocketChannel.connect();
+                rawInputStream = new SSLSocketChannelInputStream(sslSocketChannel);
+                rawOutputStream = new SSLSocketChannelOutputStream(sslSocketChannel);
+            }
+
+            in = new BufferedInputStream(rawInputStream);
+            out = new BufferedOutputStream(rawOutputStream);
+        }
+
+        boolean isHandshakeComplete() {
+            return protocolVersion > 0;
+        }
+
+        void setProtocolVersion(final int protocolVersion) {
+            this.protocolVersion = protocolVersion;
+        }
+
+        int getProtocolVersion() {
+            return protocolVersion;
+        }
+
+        InputStream getInputStream() {
+            return in;
+        }
+
+        OutputStream getOutputStream() {
+            return out;
+        }
+
+        String getPeer() {
+            return peer;
+        }
+
+        /**
+         * @return <code>true</code> if data from the client is buffered or can be read from the socket without blocking
+         * @throws IOException if the client has closed the connection
+         */
+        boolean isDataAvailable() throws IOException {
+            if (in.available() > 0) {
+                return true;
+            }
+
+            // SSLSocketChannelInputStream does not report the data that its channel has already received
+            return sslSocketChannel != null && sslSocketChannel.available() > 0;
+        }
+
+        boolean isBusy() {
+            return busy;
+        }
+
+        void setBusy(final boolean busy) {
+            this.busy = busy;
+            this.lastActivity = System.currentTimeMillis();
+        }
+
+        long getLastActivity() {
+            return lastActivity;
+        }
+
+        /**
+         * Must be called by the event loop thread to resume watching the connection for the next request
+         */
+        void awaitRequest() {
+            if (selectionKey.isValid()) {
+                selectionKey.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            if (selectionKey != null) {
+                selectionKey.cancel();
+            }
+
+            try {
+                if (sslSocketChannel != null) {
+                    sslSocketChannel.close();
+                } else if (in != null) {
+                    // also closes the read selector of the SocketChannelInputStream
+                    in.close();
+                }
+            } catch (final IOException ignored) {
+            }
+
+            try {
+                socketChannel.close();
+            } catch (final IOException ignored) {
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ClientConnection[peer=" + peer + ", channel=" + socketChannel + "]";
+        }
+    }
 }
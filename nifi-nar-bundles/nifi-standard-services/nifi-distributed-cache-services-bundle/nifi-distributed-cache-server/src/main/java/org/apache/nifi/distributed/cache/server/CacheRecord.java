@@ -34,6 +34,17 @@ public class CacheRecord {
         id = idGenerator.getAndIncrement();
     }
 
+    /**
+     * Creates a record whose statistics were maintained outside of the JVM, such as in an on-disk index, so that it can be
+     * compared with the {@link EvictionPolicy} comparators.
+     */
+    protected CacheRecord(final long id, final long entryDate, final long lastHitDate, final int hitCount) {
+        this.id = id;
+        this.entryDate = entryDate;
+        this.lastHitDate = lastHitDate;
+        this.hitCount.set(hitCount);
+    }
+
     public long getEntryDate() {
         return entryDate;
     }
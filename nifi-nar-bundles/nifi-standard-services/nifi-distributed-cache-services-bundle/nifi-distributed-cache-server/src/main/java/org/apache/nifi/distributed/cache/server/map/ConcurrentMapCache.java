@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.distributed.cache.server.map;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import org.apache.nifi.distributed.cache.server.CacheRecord;
+import org.apache.nifi.distributed.cache.server.EvictionPolicy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A MapCache that allows concurrent updates to distinct keys. Records are held in a ConcurrentHashMap, so reads do not take any lock,
+ * and the keys are partitioned into stripes, each with its own lock. Every update to a key is made while holding the lock of the key's
+ * stripe, which keeps putIfAbsent and replace atomic without serializing updates to keys in other stripes.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link SimpleMapCache}, this cache does not keep all records sorted by the {@link EvictionPolicy}. When the cache is full, the
+ * record to evict is chosen from a random sample of the records in the stripe that is being updated, so eviction only approximates the
+ * order defined by the policy. Small caches use a single stripe, and a stripe that holds no more records than the sample size is scanned
+ * in its entirety, in which case eviction is exact.
+ * </p>
+ */
+public class ConcurrentMapCache implements MapCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrentMapCache.class);
+
+    static final int MAX_STRIPES = 32;
+    static final int MIN_ENTRIES_PER_STRIPE = 64;
+    static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private final ConcurrentMap<ByteBuffer, MapCacheRecord> cache = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final Stripe[] stripes;
+    private final Comparator<CacheRecord> evictionComparator;
+
+    private final String serviceIdentifier;
+    private final int maxSize;
+
+    public ConcurrentMapCache(final String serviceIdentifier, final int maxSize, final EvictionPolicy evictionPolicy) {
+        this.serviceIdentifier = serviceIdentifier;
+        this.maxSize = maxSize;
+        this.evictionComparator = evictionPolicy.getComparator();
+
+        final int stripeCount = Math.max(1, Math.min(MAX_STRIPES, Integer.highestOneBit(maxSize / MIN_ENTRIES_PER_STRIPE)));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentMapCache[service id=" + serviceIdentifier + "]";
+    }
+
+    private Stripe getStripe(final ByteBuffer key) {
+        final int hash = key.hashCode();
+        // the stripe count is a power of 2; spread the higher bits because ByteBuffer hash codes vary little in the low bits for similar keys
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    @Override
+    public MapPutResult putIfAbsent(final ByteBuffer key, final ByteBuffer value) {
+        final Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            final MapCacheRecord record = cache.get(key);
+            if (record == null) {
+                return put(stripe, key, value, null);
+            }
+
+            record.hit();
+            return new MapPutResult(false, record, record, null);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public MapPutResult put(final ByteBuffer key, final ByteBuffer value) {
+        final Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            return put(stripe, key, value, cache.get(key));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of the given stripe
+     */
+    private MapPutResult put(final Stripe stripe, final ByteBuffer key, final ByteBuffer value, final MapCacheRecord existing) {
+        final long revision;
+        final MapCacheRecord evicted;
+        if (existing == null) {
+            // evict if we need to in order to make room for a new entry.
+            evicted = evict(stripe);
+            revision = 0;
+        } else {
+            evicted = null;
+            revision = existing.getRevision() + 1;
+        }
+
+        final MapCacheRecord record = new MapCacheRecord(key, value, revision);
+        cache.put(key, record);
+        if (existing == null) {
+            stripe.add(key);
+            size.incrementAndGet();
+        }
+
+        return new MapPutResult(true, record, existing, evicted);
+    }
+
+    /**
+     * Evicts a record if the cache is full. The record is chosen from the given stripe, whose lock must be held by the caller. If that
+     * stripe holds no records, a record is evicted from the first other stripe whose lock is available, so that the lock of one stripe
+     * is never awaited while holding the lock of another.
+     *
+     * At most one record is evicted for each record that is added, as callers such as {@link PersistentMapCache} must be told about every
+     * evicted record. Concurrent updates to different stripes may therefore leave the cache holding slightly more than its maximum size.
+     */
+    private MapCacheRecord evict(final Stripe stripe) {
+        if (size.get() < maxSize) {
+            return null;
+        }
+
+        final MapCacheRecord evicted = evictFrom(stripe);
+        if (evicted != null) {
+            return evicted;
+        }
+
+        for (final Stripe other : stripes) {
+            if (other != stripe && other.lock.tryLock()) {
+                try {
+                    final MapCacheRecord evictedFromOther = evictFrom(other);
+                    if (evictedFromOther != null) {
+                        return evictedFromOther;
+                    }
+                } finally {
+                    other.lock.unlock();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private MapCacheRecord evictFrom(final Stripe stripe) {
+        final MapCacheRecord recordToEvict = selectRecordToEvict(stripe);
+        if (recordToEvict == null) {
+            return null;
+        }
+
+        final ByteBuffer keyToEvict = recordToEvict.getKey();
+        cache.remove(keyToEvict);
+        stripe.remove(keyToEvict);
+        size.decrementAndGet();
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Evicting value {} from cache", new String(keyToEvict.array(), StandardCharsets.UTF_8));
+        }
+
+        return recordToEvict;
+    }
+
+    private MapCacheRecord selectRecordToEvict(final Stripe stripe) {
+        final List<ByteBuffer> keys = stripe.keys;
+        final int stripeSize = keys.size();
+        if (stripeSize == 0) {
+            return null;
+        }
+
+        MapCacheRecord selected = null;
+        if (stripeSize <= EVICTION_SAMPLE_SIZE) {
+            for (final ByteBuffer key : keys) {
+                selected = selectRecordToEvict(selected, cache.get(key));
+            }
+        } else {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < EVICTION_SAMPLE_SIZE; i++) {
+                selected = selectRecordToEvict(selected, cache.get(keys.get(random.nextInt(stripeSize))));
+            }
+        }
+
+        return selected;
+    }
+
+    private MapCacheRecord selectRecordToEvict(final MapCacheRecord selected, final MapCacheRecord candidate) {
+        if (selected == null) {
+            return candidate;
+        }
+
+        return evictionComparator.compare(candidate, selected) < 0 ? candidate : selected;
+    }
+
+    @Override
+    public boolean containsKey(final ByteBuffer key) {
+        final MapCacheRecord record = cache.get(key);
+        if (record == null) {
+            return false;
+        }
+
+        record.hit();
+        return true;
+    }
+
+    @Override
+    public ByteBuffer get(final ByteBuffer key) {
+        final MapCacheRecord record = cache.get(key);
+        if (record == null) {
+            return null;
+        }
+
+        record.hit();
+        return record.getValue();
+    }
+
+    @Override
+    public Map<ByteBuffer, ByteBuffer> subMap(final List<ByteBuffer> keys) {
+        if (keys == null) {
+            return null;
+        }
+
+        final Map<ByteBuffer, ByteBuffer> results = new HashMap<>(keys.size());
+        for (final ByteBuffer key : keys) {
+            results.put(key, get(key));
+        }
+        return results;
+    }
+
+    @Override
+    public ByteBuffer remove(final ByteBuffer key) {
+        final MapCacheRecord record = removeRecord(key);
+        return record == null ? null : record.getValue();
+    }
+
+    private MapCacheRecord removeRecord(final ByteBuffer key) {
+        final Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            final MapCacheRecord record = cache.remove(key);
+            if (record == null) {
+                return null;
+            }
+
+            stripe.remove(key);
+            size.decrementAndGet();
+            return record;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<ByteBuffer, ByteBuffer> removeByPattern(final String regex) {
+        final Map<ByteBuffer, ByteBuffer> removedMap = new HashMap<>();
+        final Pattern p = Pattern.compile(regex);
+        for (final ByteBuffer key : cache.keySet()) {
+            // Key must be backed by something that array() returns a byte[] that can be converted into a String via the default charset
+            if (p.matcher(new String(key.array())).matches()) {
+                final MapCacheRecord removed = removeRecord(key);
+                if (removed != null) {
+                    removedMap.put(removed.getKey(), removed.getValue());
+                }
+            }
+        }
+
+        return removedMap;
+    }
+
+    @Override
+    public MapCacheRecord fetch(final ByteBuffer key) {
+        final MapCacheRecord record = cache.get(key);
+        if (record == null) {
+            return null;
+        }
+
+        record.hit();
+        return record;
+    }
+
+    @Override
+    public MapPutResult replace(final MapCacheRecord inputRecord) {
+        final ByteBuffer key = inputRecord.getKey();
+        final Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            final MapCacheRecord existing = fetch(key);
+            if (existing != null && inputRecord.getRevision() != existing.getRevision()) {
+                // The key has been updated by other operation.
+                return new MapPutResult(false, inputRecord, existing, null);
+            }
+
+            return put(stripe, key, inputRecord.getValue(), existing);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<ByteBuffer> keySet() {
+        // return a copy, as the caller expects the size of the set to match the number of keys that it iterates over
+        return new HashSet<>(cache.keySet());
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * The keys of a stripe, held in a list so that a random sample can be taken from them in constant time.
+     * Must only be accessed while holding the stripe's lock.
+     */
+    private static class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<ByteBuffer> keys = new ArrayList<>();
+        private final Map<ByteBuffer, Integer> positions = new HashMap<>();
+
+        void add(final ByteBuffer key) {
+            positions.put(key, keys.size());
+            keys.add(key);
+        }
+
+        void remove(final ByteBuffer key) {
+            final Integer position = positions.remove(key);
+            if (position == null) {
+                return;
+            }
+
+            // move the last key into the vacated position
+            final ByteBuffer last = keys.remove(keys.size() - 1);
+            if (position < keys.size()) {
+                keys.set(position, last);
+                positions.put(last, position);
+            }
+        }
+    }
+}
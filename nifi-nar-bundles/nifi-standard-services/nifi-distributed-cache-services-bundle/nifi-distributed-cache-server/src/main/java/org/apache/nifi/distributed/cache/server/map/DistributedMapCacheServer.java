@@ -18,10 +18,13 @@ package org.apache.nifi.distributed.cache.server.map;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import javax.net.ssl.SSLContext;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.components.AllowableValue;
+import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.controller.ConfigurationContext;
 import org.apache.nifi.distributed.cache.server.CacheServer;
 import org.apache.nifi.distributed.cache.server.DistributedCacheServer;
@@ -34,6 +37,45 @@ import org.apache.nifi.ssl.SSLContextService;
 @SeeAlso(classNames = {"org.apache.nifi.distributed.cache.client.DistributedMapCacheClientService", "org.apache.nifi.ssl.StandardSSLContextService"})
 public class DistributedMapCacheServer extends DistributedCacheServer {
 
+    public static final AllowableValue EVICTION_MODE_EXACT = new AllowableValue("Exact", "Exact",
+        "Entries are evicted in exactly the order defined by the Eviction Strategy. All updates to the cache are performed one at a time in order to maintain that order.");
+    public static final AllowableValue EVICTION_MODE_APPROXIMATE = new AllowableValue("Approximate", "Approximate",
+        "The entry to evict is the one that comes first in the order defined by the Eviction Strategy out of a sample of the cached entries. "
+            + "Updates to different keys are performed concurrently, which provides higher throughput when many clients update the cache at once.");
+
+    public static final PropertyDescriptor EVICTION_MODE = new PropertyDescriptor.Builder()
+        .name("Eviction Mode")
+        .description("Determines how closely the cache follows the Eviction Strategy when choosing an entry to evict, which in turn determines "
+            + "whether updates to different keys can be performed concurrently")
+        .required(true)
+        .allowableValues(EVICTION_MODE_EXACT, EVICTION_MODE_APPROXIMATE)
+        .defaultValue(EVICTION_MODE_EXACT.getValue())
+        .build();
+
+    public static final AllowableValue PERSISTENCE_MODE_WRITE_AHEAD_LOG = new AllowableValue("Write-Ahead Log", "Write-Ahead Log",
+        "All entries are held in memory, and every update is recorded in a write-ahead log in the Persistence Directory. "
+            + "The log is replayed into memory when the service is enabled.");
+    public static final AllowableValue PERSISTENCE_MODE_MEMORY_MAPPED = new AllowableValue("Memory-Mapped Files", "Memory-Mapped Files",
+        "Entries are stored in memory-mapped files in the Persistence Directory and are located through an on-disk hash index, so the number of entries "
+            + "is limited by disk space rather than heap space, and the service is enabled without replaying a log. Entries are always evicted as described "
+            + "for the Approximate Eviction Mode.");
+
+    public static final PropertyDescriptor PERSISTENCE_MODE = new PropertyDescriptor.Builder()
+        .name("Persistence Mode")
+        .description("Determines how entries are stored when a Persistence Directory is specified. This property is ignored if no Persistence Directory is specified.")
+        .required(true)
+        .allowableValues(PERSISTENCE_MODE_WRITE_AHEAD_LOG, PERSISTENCE_MODE_MEMORY_MAPPED)
+        .defaultValue(PERSISTENCE_MODE_WRITE_AHEAD_LOG.getValue())
+        .build();
+
+    @Override
+    protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        final List<PropertyDescriptor> properties = super.getSupportedPropertyDescriptors();
+        properties.add(properties.indexOf(EVICTION_POLICY) + 1, EVICTION_MODE);
+        properties.add(properties.indexOf(PERSISTENCE_PATH) + 1, PERSISTENCE_MODE);
+        return properties;
+    }
+
     @Override
     protected CacheServer createCacheServer(final ConfigurationContext context) {
         final int port = context.getProperty(PORT).asInteger();
@@ -41,6 +83,8 @@ public class DistributedMapCacheServer extends DistributedCacheServer {
         final SSLContextService sslContextService = context.getProperty(SSL_CONTEXT_SERVICE).asControllerService(SSLContextService.class);
         final int maxSize = context.getProperty(MAX_CACHE_ENTRIES).asInteger();
         final String evictionPolicyName = context.getProperty(EVICTION_POLICY).getValue();
+        final boolean approximateEviction = EVICTION_MODE_APPROXIMATE.getValue().equals(context.getProperty(EVICTION_MODE).getValue());
+        final boolean memoryMapped = PERSISTENCE_MODE_MEMORY_MAPPED.getValue().equals(context.getProperty(PERSISTENCE_MODE).getValue());
 
         final SSLContext sslContext;
         if (sslContextService == null) {
@@ -66,15 +110,32 @@ public class DistributedMapCacheServer extends DistributedCacheServer {
 
         try {
             final File persistenceDir = persistencePath == null ? null : new File(persistencePath);
+            if (persistenceDir != null && memoryMapped) {
+                return createMemoryMappedMapCacheServer(port, maxSize, sslContext, evictionPolicy, persistenceDir);
+            }
 
-            return createMapCacheServer(port, maxSize, sslContext, evictionPolicy, persistenceDir);
+            return createMapCacheServer(port, maxSize, sslContext, evictionPolicy, persistenceDir, approximateEviction);
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    protected MapCacheServer createMapCacheServer(int port, int maxSize, SSLContext sslContext, EvictionPolicy evictionPolicy, File persistenceDir,
+                                                  boolean approximateEviction) throws IOException {
+        if (!approximateEviction) {
+            return createMapCacheServer(port, maxSize, sslContext, evictionPolicy, persistenceDir);
+        }
+
+        return new MapCacheServer(getIdentifier(), sslContext, port, maxSize, evictionPolicy, persistenceDir, true);
+    }
+
     protected MapCacheServer createMapCacheServer(int port, int maxSize, SSLContext sslContext, EvictionPolicy evictionPolicy, File persistenceDir) throws IOException {
         return new MapCacheServer(getIdentifier(), sslContext, port, maxSize, evictionPolicy, persistenceDir);
     }
 
+    protected MapCacheServer createMemoryMappedMapCacheServer(int port, int maxSize, SSLContext sslContext, EvictionPolicy evictionPolicy, File persistenceDir) throws IOException {
+        final MapCache cache = new MemoryMappedMapCache(getIdentifier(), persistenceDir, maxSize, evictionPolicy);
+        return new MapCacheServer(getIdentifier(), sslContext, port, cache);
+    }
+
 }
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -39,25 +41,47 @@ public class MapCacheServer extends AbstractCacheServer {
 
     public MapCacheServer(final String identifier, final SSLContext sslContext, final int port, final int maxSize,
             final EvictionPolicy evictionPolicy, final File persistencePath) throws IOException {
+        this(identifier, sslContext, port, maxSize, evictionPolicy, persistencePath, false);
+    }
+
+    /**
+     * @param approximateEviction if <code>true</code>, the cache is a {@link ConcurrentMapCache}, which performs updates to distinct keys
+     *            concurrently but only approximates the eviction order of the given policy; otherwise, the cache is a {@link SimpleMapCache}
+     */
+    public MapCacheServer(final String identifier, final SSLContext sslContext, final int port, final int maxSize,
+            final EvictionPolicy evictionPolicy, final File persistencePath, final boolean approximateEviction) throws IOException {
         super(identifier, sslContext, port);
 
-        final MapCache simpleCache = new SimpleMapCache(identifier, maxSize, evictionPolicy);
+        final MapCache inMemoryCache;
+        if (approximateEviction) {
+            inMemoryCache = new ConcurrentMapCache(identifier, maxSize, evictionPolicy);
+        } else {
+            inMemoryCache = new SimpleMapCache(identifier, maxSize, evictionPolicy);
+        }
 
         if (persistencePath == null) {
-            this.cache = simpleCache;
+            this.cache = inMemoryCache;
         } else {
-            final PersistentMapCache persistentCache = new PersistentMapCache(identifier, persistencePath, simpleCache);
+            final PersistentMapCache persistentCache = new PersistentMapCache(identifier, persistencePath, inMemoryCache);
             persistentCache.restore();
             this.cache = persistentCache;
         }
     }
 
+    /**
+     * @param cache the cache to serve, which is shut down when the server is stopped
+     */
+    public MapCacheServer(final String identifier, final SSLContext sslContext, final int port, final MapCache cache) {
+        super(identifier, sslContext, port);
+        this.cache = cache;
+    }
+
     /**
      * Refer {@link org.apache.nifi.distributed.cache.protocol.ProtocolHandshake#initiateHandshake(InputStream, OutputStream, VersionNegotiator)}
      * for details of each version enhancements.
      */
     protected StandardVersionNegotiator getVersionNegotiator() {
-        return new StandardVersionNegotiator(3, 2, 1);
+        return new StandardVersionNegotiator(4, 3, 2, 1);
     }
 
     @Override
@@ -223,6 +247,55 @@ public class MapCacheServer extends AbstractCacheServer {
                 }
                 break;
             }
+            case "putAllIfAbsent": {
+                // read the entire batch before responding so that the client never has to read while it is still writing
+                final int numEntries = dis.readInt();
+                final List<byte[]> keys = new ArrayList<>(numEntries);
+                final List<byte[]> values = new ArrayList<>(numEntries);
+                for (int i = 0; i < numEntries; i++) {
+                    keys.add(readValue(dis));
+                    values.add(readValue(dis));
+                }
+                for (int i = 0; i < numEntries; i++) {
+                    final MapPutResult putResult = cache.putIfAbsent(ByteBuffer.wrap(keys.get(i)), ByteBuffer.wrap(values.get(i)));
+                    dos.writeBoolean(putResult.isSuccessful());
+                }
+                break;
+            }
+            case "containsKeys": {
+                final List<byte[]> keys = readValues(dis);
+                for (final byte[] key : keys) {
+                    dos.writeBoolean(cache.containsKey(ByteBuffer.wrap(key)));
+                }
+                break;
+            }
+            case "removeAll": {
+                final List<byte[]> keys = readValues(dis);
+                long removed = 0;
+                for (final byte[] key : keys) {
+                    if (cache.remove(ByteBuffer.wrap(key)) != null) {
+                        removed++;
+                    }
+                }
+                dos.writeLong(removed);
+                break;
+            }
+            case "fetchAll": {
+                final List<byte[]> keys = readValues(dis);
+                for (final byte[] key : keys) {
+                    final MapCacheRecord existing = cache.fetch(ByteBuffer.wrap(key));
+                    if (existing == null) {
+                        dos.writeLong(-1);
+                        dos.writeInt(0);
+                    } else {
+                        dos.writeLong(existing.getRevision());
+                        final byte[] byteArray = existing.getValue().array();
+                        dos.writeInt(byteArray.length);
+                        dos.write(byteArray);
+                    }
+                }
+                break;
+            }
             default: {
                 throw new IOException("Illegal Request");
             }
@@ -257,4 +330,13 @@ public class MapCacheServer extends AbstractCacheServer {
         return buffer;
     }
 
+    private List<byte[]> readValues(final DataInputStream dis) throws IOException {
+        final int numValues = dis.readInt();
+        final List<byte[]> values = new ArrayList<>(numValues);
+        for (int i = 0; i < numValues; i++) {
+            values.add(readValue(dis));
+        }
+        return values;
+    }
+
 }
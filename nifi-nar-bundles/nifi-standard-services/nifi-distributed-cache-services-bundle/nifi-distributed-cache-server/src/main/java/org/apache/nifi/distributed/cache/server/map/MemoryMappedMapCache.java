@@ -0,0 +1,1030 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.distributed.cache.server.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.nifi.distributed.cache.server.CacheRecord;
+import org.apache.nifi.distributed.cache.server.EvictionPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A MapCache that keeps its entries on disk rather than on the heap, so that the number of entries that it can hold is bounded by
+ * disk space instead of heap space, and so that it can be opened without replaying a journal.
+ * </p>
+ *
+ * <p>
+ * Keys and values are appended to memory-mapped segment files. Each entry is located through an open-addressing hash index that is
+ * itself a memory-mapped file, and each slot of the index holds the hash of the key, the location of the entry, its revision, and the
+ * statistics that are used for eviction. When a segment is rolled over, any segment in which most of the data is no longer referenced
+ * by the index is compacted by copying its live entries to the active segment.
+ * </p>
+ *
+ * <p>
+ * Because the entries are never held in a sorted structure, the entry to evict is chosen by sampling the index, in the same way as the
+ * {@link ConcurrentMapCache}. Changes are written to the page cache and so survive the process being killed, but they are forced to
+ * disk only when the cache is shut down.
+ * </p>
+ */
+public class MemoryMappedMapCache implements MapCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryMappedMapCache.class);
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String LOCK_FILENAME = "cache.lock";
+    private static final String INDEX_FILENAME = "index.bin";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile(Pattern.quote(SEGMENT_PREFIX) + "(\\d+)" + Pattern.quote(SEGMENT_SUFFIX));
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+    private static final double COMPACTION_THRESHOLD = 0.5D;
+
+    // segment header: write position followed by the number of bytes that are still referenced by the index
+    private static final int SEGMENT_WRITE_POSITION = 0;
+    private static final int SEGMENT_LIVE_BYTES = 8;
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    // entry header: key length followed by value length
+    private static final int ENTRY_HEADER_SIZE = 8;
+
+    private final String serviceIdentifier;
+    private final File directory;
+    private final int maxSize;
+    private final int segmentSize;
+    private final Comparator<CacheRecord> evictionComparator;
+
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final Lock readLock = rwLock.readLock();
+    private final Lock writeLock = rwLock.writeLock();
+
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Index index;
+    private Segment activeSegment;
+    private boolean compactionNeeded = false;
+
+    public MemoryMappedMapCache(final String serviceIdentifier, final File directory, final int maxSize, final EvictionPolicy evictionPolicy) throws IOException {
+        this(serviceIdentifier, directory, maxSize, evictionPolicy, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MemoryMappedMapCache(final String serviceIdentifier, final File directory, final int maxSize, final EvictionPolicy evictionPolicy, final int segmentSize) throws IOException {
+        this.serviceIdentifier = serviceIdentifier;
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.segmentSize = segmentSize;
+        this.evictionComparator = evictionPolicy.getComparator();
+
+        Files.createDirectories(directory.toPath());
+        lockChannel = FileChannel.open(new File(directory, LOCK_FILENAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            directoryLock = lockChannel.tryLock();
+            if (directoryLock == null) {
+                throw new IOException("Unable to obtain lock on " + directory + " because it is in use by another process");
+            }
+
+            openIndex();
+            openSegments();
+        } catch (final IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+
+        logger.info("{} opened with {} entries in {} segments", this, index.getCount(), segments.size());
+    }
+
+    private void openIndex() throws IOException {
+        final long requiredCapacity = (long) Math.ceil(maxSize / LOAD_FACTOR) + 1;
+        final File indexFile = new File(directory, INDEX_FILENAME);
+        final File tempIndexFile = new File(directory, INDEX_FILENAME + ".tmp");
+        Files.deleteIfExists(tempIndexFile.toPath());
+
+        if (!indexFile.exists()) {
+            Index.create(tempIndexFile, requiredCapacity).close();
+            Files.move(tempIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        index = Index.open(indexFile);
+        if (index.getCapacity() >= requiredCapacity) {
+            return;
+        }
+
+        // The maximum number of entries was increased, so the entries are copied to a larger index. Because each slot holds the hash
+        // of its key, this requires only a pass over the index and not over the segments.
+        logger.info("{} increasing index capacity from {} to {} slots", this, index.getCapacity(), requiredCapacity);
+        final Index resized = Index.create(tempIndexFile, requiredCapacity);
+        for (long slot = 0; slot < index.getCapacity(); slot++) {
+            if (index.isOccupied(slot)) {
+                resized.copySlot(index, slot, resized.findEmptySlot(index.getHash(slot)));
+            }
+        }
+        resized.setCount(index.getCount());
+        resized.setActiveSegmentId(index.getActiveSegmentId());
+        resized.setSequence(index.getSequence());
+        resized.close();
+        index.close();
+
+        Files.move(tempIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = Index.open(indexFile);
+    }
+
+    private void openSegments() throws IOException {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final Matcher matcher = SEGMENT_PATTERN.matcher(file.getName());
+                if (matcher.matches()) {
+                    final int segmentId = Integer.parseInt(matcher.group(1));
+                    segments.put(segmentId, Segment.open(segmentId, file));
+                }
+            }
+        }
+
+        // if the process was killed after a segment was created but before the index was updated, the newest segment is the active one
+        int activeSegmentId = index.getActiveSegmentId();
+        if (!segments.isEmpty()) {
+            activeSegmentId = Math.max(activeSegmentId, segments.lastKey());
+            index.setActiveSegmentId(activeSegmentId);
+        }
+
+        activeSegment = segments.get(activeSegmentId);
+        if (activeSegment == null) {
+            activeSegment = createSegment(activeSegmentId, segmentSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryMappedMapCache[service id=" + serviceIdentifier + "]";
+    }
+
+    int size() {
+        readLock.lock();
+        try {
+            return (int) index.getCount();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int getSegmentCount() {
+        readLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    int getHitCount(final ByteBuffer key) {
+        final byte[] keyBytes = toBytes(key);
+
+        readLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash(keyBytes));
+            return slot < 0 ? -1 : index.getStatistics(slot).getHitCount();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public MapPutResult putIfAbsent(final ByteBuffer key, final ByteBuffer value) throws IOException {
+        final byte[] keyBytes = toBytes(key);
+        final int hash = hash(keyBytes);
+
+        writeLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash);
+            if (slot >= 0) {
+                index.hit(slot, System.currentTimeMillis());
+                final MapCacheRecord existing = toRecord(key, slot);
+                return new MapPutResult(false, existing, existing, null);
+            }
+
+            return put(key, keyBytes, hash, value, null, -1L);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public MapPutResult put(final ByteBuffer key, final ByteBuffer value) throws IOException {
+        final byte[] keyBytes = toBytes(key);
+        final int hash = hash(keyBytes);
+
+        writeLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash);
+            final MapCacheRecord existing = slot < 0 ? null : toRecord(key, slot);
+            return put(key, keyBytes, hash, value, existing, slot);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // must be called while holding the write lock
+    private MapPutResult put(final ByteBuffer key, final byte[] keyBytes, final int hash, final ByteBuffer value, final MapCacheRecord existing, final long existingSlot)
+            throws IOException {
+        final byte[] valueBytes = toBytes(value);
+        final long now = System.currentTimeMillis();
+        final long location = append(keyBytes, valueBytes);
+
+        final MapCacheRecord record;
+        final MapCacheRecord evicted;
+        if (existing == null) {
+            evicted = evict();
+
+            // if the maximum number of entries was reduced since the cache was last opened, shrink the cache to the new maximum
+            while (index.getCount() >= maxSize) {
+                evict();
+            }
+
+            // eviction may have moved entries within the index, so the slot is found only after evicting
+            final long slot = index.findEmptySlot(hash);
+            index.setSlot(slot, hash, location, 0L, now);
+            index.setCount(index.getCount() + 1);
+            record = new MapCacheRecord(key, value, 0L);
+        } else {
+            final long previousLocation = index.getLocation(existingSlot);
+            final long revision = existing.getRevision() + 1;
+            index.setSlot(existingSlot, hash, location, revision, now);
+            release(previousLocation);
+            evicted = null;
+            record = new MapCacheRecord(key, value, revision);
+        }
+
+        compactIfNecessary();
+        return new MapPutResult(true, record, existing, evicted);
+    }
+
+    @Override
+    public boolean containsKey(final ByteBuffer key) throws IOException {
+        final byte[] keyBytes = toBytes(key);
+
+        readLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot < 0) {
+                return false;
+            }
+
+            index.hit(slot, System.currentTimeMillis());
+            return true;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public ByteBuffer get(final ByteBuffer key) throws IOException {
+        final MapCacheRecord record = fetch(key);
+        return record == null ? null : record.getValue();
+    }
+
+    @Override
+    public Map<ByteBuffer, ByteBuffer> subMap(final List<ByteBuffer> keys) throws IOException {
+        if (keys == null) {
+            return null;
+        }
+
+        final Map<ByteBuffer, ByteBuffer> results = new HashMap<>(keys.size());
+        for (final ByteBuffer key : keys) {
+            results.put(key, get(key));
+        }
+        return results;
+    }
+
+    @Override
+    public MapCacheRecord fetch(final ByteBuffer key) throws IOException {
+        final byte[] keyBytes = toBytes(key);
+
+        readLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot < 0) {
+                return null;
+            }
+
+            index.hit(slot, System.currentTimeMillis());
+            return toRecord(key, slot);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public MapPutResult replace(final MapCacheRecord inputRecord) throws IOException {
+        final ByteBuffer key = inputRecord.getKey();
+        final byte[] keyBytes = toBytes(key);
+        final int hash = hash(keyBytes);
+
+        writeLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash);
+            final MapCacheRecord existing = slot < 0 ? null : toRecord(key, slot);
+            if (existing != null && inputRecord.getRevision() != existing.getRevision()) {
+                // The key has been updated by other operation.
+                return new MapPutResult(false, inputRecord, existing, null);
+            }
+
+            return put(key, keyBytes, hash, inputRecord.getValue(), existing, slot);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public ByteBuffer remove(final ByteBuffer key) throws IOException {
+        final byte[] keyBytes = toBytes(key);
+
+        writeLock.lock();
+        try {
+            final long slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot < 0) {
+                return null;
+            }
+
+            final long location = index.getLocation(slot);
+            final ByteBuffer value = ByteBuffer.wrap(readValue(location));
+            removeSlot(slot);
+            return value;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Map<ByteBuffer, ByteBuffer> removeByPattern(final String regex) throws IOException {
+        final Pattern pattern = Pattern.compile(regex);
+
+        writeLock.lock();
+        try {
+            final List<byte[]> matchingKeys = new ArrayList<>();
+            for (long slot = 0; slot < index.getCapacity(); slot++) {
+                if (index.isOccupied(slot)) {
+                    final byte[] key = readKey(index.getLocation(slot));
+                    // Key must be backed by something that array() returns a byte[] that can be converted into a String via the default charset
+                    if (pattern.matcher(new String(key)).matches()) {
+                        matchingKeys.add(key);
+                    }
+                }
+            }
+
+            // entries are removed only after the scan because removing an entry may move others within the index
+            final Map<ByteBuffer, ByteBuffer> removedMap = new HashMap<>();
+            for (final byte[] key : matchingKeys) {
+                final long slot = findSlot(key, hash(key));
+                removedMap.put(ByteBuffer.wrap(key), ByteBuffer.wrap(readValue(index.getLocation(slot))));
+                removeSlot(slot);
+            }
+
+            return removedMap;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Set<ByteBuffer> keySet() throws IOException {
+        readLock.lock();
+        try {
+            final Set<ByteBuffer> keys = new HashSet<>();
+            for (long slot = 0; slot < index.getCapacity(); slot++) {
+                if (index.isOccupied(slot)) {
+                    keys.add(ByteBuffer.wrap(readKey(index.getLocation(slot))));
+                }
+            }
+            return keys;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() throws IOException {
+        writeLock.lock();
+        try {
+            index.close();
+            for (final Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+        } finally {
+            try {
+                directoryLock.release();
+                lockChannel.close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the slot holding the given key or, if the key is not in the index, a negative value
+     */
+    private long findSlot(final byte[] key, final int hash) {
+        long slot = index.getHomeSlot(hash);
+        while (index.isOccupied(slot)) {
+            if (index.getHash(slot) == hash && keyEquals(index.getLocation(slot), key)) {
+                return slot;
+            }
+            slot = index.nextSlot(slot);
+        }
+        return -1L;
+    }
+
+    // must be called while holding the write lock
+    private void removeSlot(final long slot) throws IOException {
+        final long location = index.getLocation(slot);
+        index.removeSlot(slot);
+        index.setCount(index.getCount() - 1);
+        release(location);
+    }
+
+    // must be called while holding the write lock
+    private MapCacheRecord evict() throws IOException {
+        if (index.getCount() < maxSize) {
+            return null;
+        }
+
+        // sample the index for the entry that comes first in the order of the eviction policy
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long capacity = index.getCapacity();
+        long victim = -1L;
+        CacheRecord victimStatistics = null;
+        int sampled = 0;
+        for (int attempts = 0; sampled < EVICTION_SAMPLE_SIZE && attempts < EVICTION_SAMPLE_SIZE * 8; attempts++) {
+            final long slot = random.nextLong(capacity);
+            if (!index.isOccupied(slot)) {
+                continue;
+            }
+
+            sampled++;
+            final CacheRecord statistics = index.getStatistics(slot);
+            if (victimStatistics == null || evictionComparator.compare(statistics, victimStatistics) < 0) {
+                victim = slot;
+                victimStatistics = statistics;
+            }
+        }
+
+        if (victim < 0) {
+            victim = random.nextLong(capacity);
+            while (!index.isOccupied(victim)) {
+                victim = index.nextSlot(victim);
+            }
+        }
+
+        final long location = index.getLocation(victim);
+        final byte[] key = readKey(location);
+        final byte[] value = readValue(location);
+        final MapCacheRecord evicted = new MapCacheRecord(ByteBuffer.wrap(key), ByteBuffer.wrap(value), index.getRevision(victim));
+        removeSlot(victim);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Evicting value {} from cache", new String(value));
+        }
+
+        return evicted;
+    }
+
+    private MapCacheRecord toRecord(final ByteBuffer key, final long slot) {
+        final byte[] value = readValue(index.getLocation(slot));
+        return new MapCacheRecord(key, ByteBuffer.wrap(value), index.getRevision(slot));
+    }
+
+    // must be called while holding the write lock
+    private long append(final byte[] key, final byte[] value) throws IOException {
+        final int entrySize = ENTRY_HEADER_SIZE + key.length + value.length;
+        if (activeSegment.getWritePosition() + (long) entrySize > activeSegment.getSize()) {
+            final int nextSegmentId = activeSegment.getId() + 1;
+            activeSegment = createSegment(nextSegmentId, Math.max(segmentSize, SEGMENT_HEADER_SIZE + entrySize));
+            index.setActiveSegmentId(nextSegmentId);
+            compactionNeeded = true;
+        }
+
+        final int position = activeSegment.getWritePosition();
+        final ByteBuffer buffer = activeSegment.duplicate();
+        buffer.position(position);
+        buffer.putInt(key.length);
+        buffer.putInt(value.length);
+        buffer.put(key);
+        buffer.put(value);
+
+        activeSegment.setWritePosition(position + entrySize);
+        activeSegment.setLiveBytes(activeSegment.getLiveBytes() + entrySize);
+        return toLocation(activeSegment.getId(), position);
+    }
+
+    /**
+     * Indicates that the entry at the given location is no longer referenced by the index
+     */
+    private void release(final long location) throws IOException {
+        final Segment segment = segments.get(getSegmentId(location));
+        final ByteBuffer buffer = segment.duplicate();
+        final int position = getPosition(location);
+        final int entrySize = ENTRY_HEADER_SIZE + buffer.getInt(position) + buffer.getInt(position + 4);
+        segment.setLiveBytes(segment.getLiveBytes() - entrySize);
+
+        if (segment.getLiveBytes() <= 0 && segment != activeSegment) {
+            deleteSegment(segment);
+        }
+    }
+
+    private void compactIfNecessary() throws IOException {
+        while (compactionNeeded) {
+            compactionNeeded = false;
+
+            final List<Segment> candidates = new ArrayList<>();
+            for (final Segment segment : segments.values()) {
+                if (segment != activeSegment && segment.getLiveBytes() < (segment.getWritePosition() - SEGMENT_HEADER_SIZE) * COMPACTION_THRESHOLD) {
+                    candidates.add(segment);
+                }
+            }
+
+            for (final Segment segment : candidates) {
+                compact(segment);
+            }
+        }
+    }
+
+    /**
+     * Copies every entry in the given segment that is still referenced by the index to the active segment, and then deletes the segment.
+     */
+    private void compact(final Segment segment) throws IOException {
+        logger.debug("{} compacting {} with {} live bytes", this, segment, segment.getLiveBytes());
+
+        final ByteBuffer buffer = segment.duplicate();
+        int position = SEGMENT_HEADER_SIZE;
+        while (position < segment.getWritePosition()) {
+            final long location = toLocation(segment.getId(), position);
+            final byte[] key = readKey(location);
+            final int entrySize = ENTRY_HEADER_SIZE + key.length + buffer.getInt(position + 4);
+
+            final long slot = findSlot(key, hash(key));
+            if (slot >= 0 && index.getLocation(slot) == location) {
+                index.setLocation(slot, append(key, readValue(location)));
+                segment.setLiveBytes(segment.getLiveBytes() - entrySize);
+            }
+
+            position += entrySize;
+        }
+
+        deleteSegment(segment);
+    }
+
+    private Segment createSegment(final int segmentId, final int size) throws IOException {
+        final Segment segment = Segment.create(segmentId, new File(directory, SEGMENT_PREFIX + segmentId + SEGMENT_SUFFIX), size);
+        segments.put(segmentId, segment);
+        return segment;
+    }
+
+    private void deleteSegment(final Segment segment) throws IOException {
+        segments.remove(segment.getId());
+        segment.close();
+        Files.deleteIfExists(segment.getFile().toPath());
+    }
+
+    private byte[] readKey(final long location) {
+        final ByteBuffer buffer = segments.get(getSegmentId(location)).duplicate();
+        final int position = getPosition(location);
+        final byte[] key = new byte[buffer.getInt(position)];
+        buffer.position(position + ENTRY_HEADER_SIZE);
+        buffer.get(key);
+        return key;
+    }
+
+    private byte[] readValue(final long location) {
+        final ByteBuffer buffer = segments.get(getSegmentId(location)).duplicate();
+        final int position = getPosition(location);
+        final byte[] value = new byte[buffer.getInt(position + 4)];
+        buffer.position(position + ENTRY_HEADER_SIZE + buffer.getInt(position));
+        buffer.get(value);
+        return value;
+    }
+
+    private boolean keyEquals(final long location, final byte[] key) {
+        final ByteBuffer buffer = segments.get(getSegmentId(location)).duplicate();
+        final int position = getPosition(location);
+        if (buffer.getInt(position) != key.length) {
+            return false;
+        }
+
+        final int keyPosition = position + ENTRY_HEADER_SIZE;
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(keyPosition + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long toLocation(final int segmentId, final int position) {
+        return ((long) segmentId << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    private static int getSegmentId(final long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int getPosition(final long location) {
+        return (int) location;
+    }
+
+    private static byte[] toBytes(final ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * The hash is stored in the index, so it must not depend on anything other than the content of the key
+     */
+    private static int hash(final byte[] key) {
+        int hash = Arrays.hashCode(key);
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * A file of entries, each of which is the length of the key, the length of the value, the key, and the value
+     */
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(final int id, final File file, final FileChannel channel, final MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(final int id, final File file, final int size) throws IOException {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putLong(SEGMENT_WRITE_POSITION, SEGMENT_HEADER_SIZE);
+            buffer.putLong(SEGMENT_LIVE_BYTES, 0L);
+            return new Segment(id, file, channel, buffer);
+        }
+
+        static Segment open(final int id, final File file) throws IOException {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final long size = channel.size();
+            if (size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Cache segment " + file + " is corrupt: unexpected size of " + size + " bytes");
+            }
+
+            return new Segment(id, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        int getId() {
+            return id;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        int getSize() {
+            return buffer.capacity();
+        }
+
+        int getWritePosition() {
+            return (int) buffer.getLong(SEGMENT_WRITE_POSITION);
+        }
+
+        void setWritePosition(final int position) {
+            buffer.putLong(SEGMENT_WRITE_POSITION, position);
+        }
+
+        long getLiveBytes() {
+            return buffer.getLong(SEGMENT_LIVE_BYTES);
+        }
+
+        void setLiveBytes(final long liveBytes) {
+            buffer.putLong(SEGMENT_LIVE_BYTES, liveBytes);
+        }
+
+        ByteBuffer duplicate() {
+            return buffer.duplicate();
+        }
+
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+
+        @Override
+        public String toString() {
+            return "Segment[id=" + id + ", file=" + file + "]";
+        }
+    }
+
+    /**
+     * An open-addressing hash table with linear probing, stored in a memory-mapped file. Entries are removed by shifting later
+     * entries of the same probe sequence backward, so the table never accumulates tombstones.
+     */
+    private static class Index {
+        private static final int MAGIC = 0x4E434D49;
+        private static final int VERSION = 1;
+
+        private static final int HEADER_MAGIC = 0;
+        private static final int HEADER_VERSION = 4;
+        private static final int HEADER_CAPACITY = 8;
+        private static final int HEADER_COUNT = 16;
+        private static final int HEADER_ACTIVE_SEGMENT = 24;
+        private static final int HEADER_SEQUENCE = 32;
+        private static final int HEADER_SIZE = 64;
+
+        private static final int SLOT_STATE = 0;
+        private static final int SLOT_HASH = 4;
+        private static final int SLOT_LOCATION = 8;
+        private static final int SLOT_REVISION = 16;
+        private static final int SLOT_ENTRY_DATE = 24;
+        private static final int SLOT_LAST_HIT_DATE = 32;
+        private static final int SLOT_HIT_COUNT = 40;
+        private static final int SLOT_SEQUENCE = 48;
+        private static final int SLOT_SIZE = 56;
+
+        private static final int STATE_EMPTY = 0;
+        private static final int STATE_OCCUPIED = 1;
+
+        // a single MappedByteBuffer is limited to 2 GB, so the slots are mapped in chunks
+        private static final int CHUNK_SHIFT = 24;
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+        // number of locks that hits are striped across; must be a power of 2
+        private static final int HIT_LOCK_STRIPES = 64;
+
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        private final MappedByteBuffer[] chunks;
+        private final long capacity;
+        private final Object[] hitLocks = new Object[HIT_LOCK_STRIPES];
+
+        private Index(final FileChannel channel, final MappedByteBuffer header, final MappedByteBuffer[] chunks, final long capacity) {
+            this.channel = channel;
+            this.header = header;
+            this.chunks = chunks;
+            this.capacity = capacity;
+
+            for (int i = 0; i < hitLocks.length; i++) {
+                hitLocks[i] = new Object();
+            }
+        }
+
+        static Index create(final File file, final long capacity) throws IOException {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(HEADER_MAGIC, MAGIC);
+            header.putInt(HEADER_VERSION, VERSION);
+            header.putLong(HEADER_CAPACITY, capacity);
+            header.putLong(HEADER_COUNT, 0L);
+            header.putInt(HEADER_ACTIVE_SEGMENT, 0);
+            header.putLong(HEADER_SEQUENCE, 0L);
+            return new Index(channel, header, mapChunks(channel, capacity), capacity);
+        }
+
+        static Index open(final File file) throws IOException {
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                if (header.getInt(HEADER_MAGIC) != MAGIC) {
+                    throw new IOException("Cache index " + file + " is corrupt or is not a cache index");
+                }
+                if (header.getInt(HEADER_VERSION) != VERSION) {
+                    throw new IOException("Cache index " + file + " has version " + header.getInt(HEADER_VERSION) + ", but only version " + VERSION + " is supported");
+                }
+
+                final long capacity = header.getLong(HEADER_CAPACITY);
+                return new Index(channel, header, mapChunks(channel, capacity), capacity);
+            } catch (final IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static MappedByteBuffer[] mapChunks(final FileChannel channel, final long capacity) throws IOException {
+            final int chunkCount = (int) ((capacity + CHUNK_MASK) >>> CHUNK_SHIFT);
+            final MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                final long firstSlot = (long) i << CHUNK_SHIFT;
+                final long slots = Math.min(1L << CHUNK_SHIFT, capacity - firstSlot);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + firstSlot * SLOT_SIZE, slots * SLOT_SIZE);
+            }
+            return chunks;
+        }
+
+        long getCapacity() {
+            return capacity;
+        }
+
+        long getCount() {
+            return header.getLong(HEADER_COUNT);
+        }
+
+        void setCount(final long count) {
+            header.putLong(HEADER_COUNT, count);
+        }
+
+        int getActiveSegmentId() {
+            return header.getInt(HEADER_ACTIVE_SEGMENT);
+        }
+
+        void setActiveSegmentId(final int segmentId) {
+            header.putInt(HEADER_ACTIVE_SEGMENT, segmentId);
+        }
+
+        long getSequence() {
+            return header.getLong(HEADER_SEQUENCE);
+        }
+
+        void setSequence(final long sequence) {
+            header.putLong(HEADER_SEQUENCE, sequence);
+        }
+
+        long getHomeSlot(final int hash) {
+            return (hash & 0xFFFFFFFFL) % capacity;
+        }
+
+        long nextSlot(final long slot) {
+            final long next = slot + 1;
+            return next == capacity ? 0L : next;
+        }
+
+        private MappedByteBuffer chunk(final long slot) {
+            return chunks[(int) (slot >>> CHUNK_SHIFT)];
+        }
+
+        private static int offset(final long slot) {
+            return (int) (slot & CHUNK_MASK) * SLOT_SIZE;
+        }
+
+        boolean isOccupied(final long slot) {
+            return chunk(slot).getInt(offset(slot) + SLOT_STATE) == STATE_OCCUPIED;
+        }
+
+        int getHash(final long slot) {
+            return chunk(slot).getInt(offset(slot) + SLOT_HASH);
+        }
+
+        long getLocation(final long slot) {
+            return chunk(slot).getLong(offset(slot) + SLOT_LOCATION);
+        }
+
+        void setLocation(final long slot, final long location) {
+            chunk(slot).putLong(offset(slot) + SLOT_LOCATION, location);
+        }
+
+        long getRevision(final long slot) {
+            return chunk(slot).getLong(offset(slot) + SLOT_REVISION);
+        }
+
+        CacheRecord getStatistics(final long slot) {
+            final ByteBuffer chunk = chunk(slot);
+            final int offset = offset(slot);
+            return new SlotStatistics(chunk.getLong(offset + SLOT_SEQUENCE), chunk.getLong(offset + SLOT_ENTRY_DATE), chunk.getLong(offset + SLOT_LAST_HIT_DATE),
+                chunk.getInt(offset + SLOT_HIT_COUNT));
+        }
+
+        /**
+         * Records a hit on the given slot. Hits are recorded while holding only the read lock, so concurrent readers of the same slot
+         * would otherwise lose increments. The slot's statistics are otherwise read and written only while holding the write lock.
+         */
+        void hit(final long slot, final long timestamp) {
+            final ByteBuffer chunk = chunk(slot);
+            final int offset = offset(slot);
+            synchronized (hitLocks[(int) (slot & (HIT_LOCK_STRIPES - 1))]) {
+                chunk.putInt(offset + SLOT_HIT_COUNT, chunk.getInt(offset + SLOT_HIT_COUNT) + 1);
+                chunk.putLong(offset + SLOT_LAST_HIT_DATE, Math.max(timestamp, chunk.getLong(offset + SLOT_LAST_HIT_DATE)));
+            }
+        }
+
+        long findEmptySlot(final int hash) {
+            long slot = getHomeSlot(hash);
+            while (isOccupied(slot)) {
+                slot = nextSlot(slot);
+            }
+            return slot;
+        }
+
+        /**
+         * Populates the given slot. The state is written last so that a slot is never seen as occupied before its location is written.
+         * Each populated slot is given the next sequence number, which orders entries that were added within the same millisecond.
+         */
+        void setSlot(final long slot, final int hash, final long location, final long revision, final long timestamp) {
+            final ByteBuffer chunk = chunk(slot);
+            final int offset = offset(slot);
+            final long sequence = getSequence();
+            setSequence(sequence + 1);
+            chunk.putLong(offset + SLOT_SEQUENCE, sequence);
+            chunk.putInt(offset + SLOT_HASH, hash);
+            chunk.putLong(offset + SLOT_LOCATION, location);
+            chunk.putLong(offset + SLOT_REVISION, revision);
+            chunk.putLong(offset + SLOT_ENTRY_DATE, timestamp);
+            chunk.putLong(offset + SLOT_LAST_HIT_DATE, timestamp);
+            chunk.putInt(offset + SLOT_HIT_COUNT, 0);
+            chunk.putInt(offset + SLOT_STATE, STATE_OCCUPIED);
+        }
+
+        void copySlot(final Index source, final long sourceSlot, final long destinationSlot) {
+            final ByteBuffer sourceChunk = source.chunk(sourceSlot);
+            final int sourceOffset = offset(sourceSlot);
+            final ByteBuffer chunk = chunk(destinationSlot);
+            final int offset = offset(destinationSlot);
+            chunk.putInt(offset + SLOT_HASH, sourceChunk.getInt(sourceOffset + SLOT_HASH));
+            chunk.putLong(offset + SLOT_LOCATION, sourceChunk.getLong(sourceOffset + SLOT_LOCATION));
+            chunk.putLong(offset + SLOT_REVISION, sourceChunk.getLong(sourceOffset + SLOT_REVISION));
+            chunk.putLong(offset + SLOT_ENTRY_DATE, sourceChunk.getLong(sourceOffset + SLOT_ENTRY_DATE));
+            chunk.putLong(offset + SLOT_LAST_HIT_DATE, sourceChunk.getLong(sourceOffset + SLOT_LAST_HIT_DATE));
+            chunk.putInt(offset + SLOT_HIT_COUNT, sourceChunk.getInt(sourceOffset + SLOT_HIT_COUNT));
+            chunk.putLong(offset + SLOT_SEQUENCE, sourceChunk.getLong(sourceOffset + SLOT_SEQUENCE));
+            chunk.putInt(offset + SLOT_STATE, STATE_OCCUPIED);
+        }
+
+        void removeSlot(final long slot) {
+            long hole = slot;
+            long next = nextSlot(hole);
+            while (isOccupied(next)) {
+                // the entry can fill the hole only if the hole is not before the entry's home slot in its probe sequence
+                final long home = getHomeSlot(getHash(next));
+                final boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+                if (movable) {
+                    copySlot(this, next, hole);
+                    hole = next;
+                }
+                next = nextSlot(next);
+            }
+
+            chunk(hole).putInt(offset(hole) + SLOT_STATE, STATE_EMPTY);
+        }
+
+        void close() throws IOException {
+            for (final MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+            header.force();
+            channel.close();
+        }
+    }
+
+    private static class SlotStatistics extends CacheRecord {
+        SlotStatistics(final long sequence, final long entryDate, final long lastHitDate, final int hitCount) {
+            super(sequence, entryDate, lastHitDate, hitCount);
+        }
+    }
+}
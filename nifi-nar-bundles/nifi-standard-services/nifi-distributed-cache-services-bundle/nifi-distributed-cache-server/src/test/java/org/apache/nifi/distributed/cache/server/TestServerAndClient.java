@@ -22,12 +22,20 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.ConnectException;
+import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +49,7 @@ import org.apache.nifi.distributed.cache.client.DistributedMapCacheClientService
 import org.apache.nifi.distributed.cache.client.DistributedSetCacheClientService;
 import org.apache.nifi.distributed.cache.client.Serializer;
 import org.apache.nifi.distributed.cache.client.exception.DeserializationException;
+import org.apache.nifi.distributed.cache.protocol.ProtocolHandshake;
 import org.apache.nifi.distributed.cache.server.map.DistributedMapCacheServer;
 import org.apache.nifi.distributed.cache.server.map.MapCacheServer;
 import org.apache.nifi.processor.Processor;
@@ -740,6 +749,158 @@ public class TestServerAndClient {
     }
 
 
+    @Test
+    public void testBatchOperations() throws Exception {
+        /**
+         * This bypasses the test for build environments in OS X running Java 1.8 due to a JVM bug
+         * See:  https://issues.apache.org/jira/browse/NIFI-437
+         */
+        Assume.assumeFalse("test is skipped due to build environment being OS X with JDK 1.8. See https://issues.apache.org/jira/browse/NIFI-437",
+                SystemUtils.IS_OS_MAC && SystemUtils.IS_JAVA_1_8);
+
+        LOGGER.info("Testing " + Thread.currentThread().getStackTrace()[1].getMethodName());
+
+        final TestRunner runner = TestRunners.newTestRunner(Mockito.mock(Processor.class));
+        final DistributedMapCacheServer server = new MapServer();
+        runner.addControllerService("server", server);
+        runner.enableControllerService(server);
+
+        verifyBatchOperations(server.getPort());
+        server.shutdownServer();
+    }
+
+    @Test
+    public void testApproximateEvictionMode() throws Exception {
+        /**
+         * This bypasses the test for build environments in OS X running Java 1.8 due to a JVM bug
+         * See:  https://issues.apache.org/jira/browse/NIFI-437
+         */
+        Assume.assumeFalse("test is skipped due to build environment being OS X with JDK 1.8. See https://issues.apache.org/jira/browse/NIFI-437",
+                SystemUtils.IS_OS_MAC && SystemUtils.IS_JAVA_1_8);
+
+        LOGGER.info("Testing " + Thread.currentThread().getStackTrace()[1].getMethodName());
+
+        final TestRunner runner = TestRunners.newTestRunner(Mockito.mock(Processor.class));
+        final DistributedMapCacheServer server = new MapServer();
+        runner.addControllerService("server", server);
+        runner.setProperty(server, DistributedMapCacheServer.EVICTION_MODE, DistributedMapCacheServer.EVICTION_MODE_APPROXIMATE.getValue());
+        runner.enableControllerService(server);
+
+        verifyBatchOperations(server.getPort());
+        server.shutdownServer();
+    }
+
+    @Test
+    public void testMemoryMappedPersistenceMode() throws Exception {
+        /**
+         * This bypasses the test for build environments in OS X running Java 1.8 due to a JVM bug
+         * See:  https://issues.apache.org/jira/browse/NIFI-437
+         */
+        Assume.assumeFalse("test is skipped due to build environment being OS X with JDK 1.8. See https://issues.apache.org/jira/browse/NIFI-437",
+                SystemUtils.IS_OS_MAC && SystemUtils.IS_JAVA_1_8);
+
+        LOGGER.info("Testing " + Thread.currentThread().getStackTrace()[1].getMethodName());
+        final File dataFile = new File("target/cache-data-mmap");
+        deleteRecursively(dataFile);
+
+        final TestRunner runner = TestRunners.newTestRunner(Mockito.mock(Processor.class));
+        final DistributedMapCacheServer server = new MapServer();
+        runner.addControllerService("server", server);
+        runner.setProperty(server, DistributedMapCacheServer.PERSISTENCE_PATH, dataFile.getAbsolutePath());
+        runner.setProperty(server, DistributedMapCacheServer.PERSISTENCE_MODE, DistributedMapCacheServer.PERSISTENCE_MODE_MEMORY_MAPPED.getValue());
+        runner.enableControllerService(server);
+
+        verifyBatchOperations(server.getPort());
+
+        DistributedMapCacheClientService client = createMapClient(server.getPort());
+        final Serializer<String> serializer = new StringSerializer();
+        assertTrue(client.putIfAbsent("persisted", "1", serializer, serializer));
+        client.close();
+        server.shutdownServer();
+
+        final DistributedMapCacheServer newServer = new MapServer();
+        runner.addControllerService("server2", newServer);
+        runner.setProperty(newServer, DistributedMapCacheServer.PERSISTENCE_PATH, dataFile.getAbsolutePath());
+        runner.setProperty(newServer, DistributedMapCacheServer.PERSISTENCE_MODE, DistributedMapCacheServer.PERSISTENCE_MODE_MEMORY_MAPPED.getValue());
+        runner.enableControllerService(newServer);
+
+        client = createMapClient(newServer.getPort());
+        assertEquals("1", client.get("persisted", serializer, new StringDeserializer()));
+        client.close();
+        newServer.shutdownServer();
+    }
+
+    @Test
+    public void testBatchOperationsWithProtocolVersion3Server() throws Exception {
+        /**
+         * This bypasses the test for build environments in OS X running Java 1.8 due to a JVM bug
+         * See:  https://issues.apache.org/jira/browse/NIFI-437
+         */
+        Assume.assumeFalse("test is skipped due to build environment being OS X with JDK 1.8. See https://issues.apache.org/jira/browse/NIFI-437",
+                SystemUtils.IS_OS_MAC && SystemUtils.IS_JAVA_1_8);
+
+        LOGGER.info("Testing " + Thread.currentThread().getStackTrace()[1].getMethodName());
+
+        // Create a server that does not support the multi-key requests so that the client pipelines single-key requests instead.
+        final TestRunner runner = TestRunners.newTestRunner(Mockito.mock(Processor.class));
+        final DistributedMapCacheServer server = new MapServer() {
+            @Override
+            protected MapCacheServer createMapCacheServer(int port, int maxSize, SSLContext sslContext, EvictionPolicy evictionPolicy, File persistenceDir) throws IOException {
+                return new MapCacheServer(getIdentifier(), sslContext, port, maxSize, evictionPolicy, persistenceDir) {
+                    @Override
+                    protected StandardVersionNegotiator getVersionNegotiator() {
+                        return new StandardVersionNegotiator(3, 2, 1);
+                    }
+                };
+            }
+        };
+        runner.addControllerService("server", server);
+        runner.enableControllerService(server);
+
+        verifyBatchOperations(server.getPort());
+        server.shutdownServer();
+    }
+
+    private void verifyBatchOperations(final int port) throws Exception {
+        final DistributedMapCacheClientService client = createMapClient(port);
+        final Serializer<String> stringSerializer = new StringSerializer();
+        final Deserializer<String> stringDeserializer = new StringDeserializer();
+
+        // Use more keys than fit in a single pipeline window
+        final Map<String, String> keysAndValues = new LinkedHashMap<>();
+        for (int i = 0; i < 250; i++) {
+            keysAndValues.put("key-" + i, "value-" + i);
+        }
+        client.put("key-0", "existing", stringSerializer, stringSerializer);
+
+        final Set<String> added = client.putAllIfAbsent(keysAndValues, stringSerializer, stringSerializer);
+        assertEquals(249, added.size());
+        assertFalse(added.contains("key-0"));
+        assertEquals("existing", client.get("key-0", stringSerializer, stringDeserializer));
+        assertEquals("value-249", client.get("key-249", stringSerializer, stringDeserializer));
+
+        assertTrue(client.putAllIfAbsent(keysAndValues, stringSerializer, stringSerializer).isEmpty());
+
+        final Set<String> keys = new HashSet<>(Arrays.asList("key-1", "key-100", "missing-1", "key-200", "missing-2"));
+        assertEquals(new HashSet<>(Arrays.asList("key-1", "key-100", "key-200")), client.containsKeys(keys, stringSerializer));
+
+        final Map<String, AtomicCacheEntry<String, String, Long>> entries = client.fetchAll(keys, stringSerializer, stringDeserializer);
+        assertEquals(3, entries.size());
+        assertEquals("value-100", entries.get("key-100").getValue());
+        assertEquals(Long.valueOf(0L), entries.get("key-100").getRevision().orElse(-1L));
+        assertNull(entries.get("missing-1"));
+
+        assertEquals(3, client.removeAll(keys, stringSerializer));
+        assertTrue(client.containsKeys(keys, stringSerializer).isEmpty());
+        assertEquals(0, client.removeAll(keys, stringSerializer));
+        assertTrue(client.containsKey("key-2", stringSerializer));
+
+        // Single-key operations must still work on the same connections after a batch
+        assertTrue(client.putIfAbsent("key-1", "value-1", stringSerializer, stringSerializer));
+
+        client.close();
+    }
+
     private void waitABit() {
         try {
             Thread.sleep(10L);
@@ -747,6 +908,116 @@ public class TestServerAndClient {
         }
     }
 
+    @Test
+    public void testManyConnectionsShareWorkerThreads() throws Exception {
+        /**
+         * This bypasses the test for build environments in OS X running Java 1.8 due to a JVM bug
+         * See:  https://issues.apache.org/jira/browse/NIFI-437
+         */
+        Assume.assumeFalse("test is skipped due to build environment being OS X with JDK 1.8. See https://issues.apache.org/jira/browse/NIFI-437",
+                SystemUtils.IS_OS_MAC && SystemUtils.IS_JAVA_1_8);
+
+        LOGGER.info("Testing " + Thread.currentThread().getStackTrace()[1].getMethodName());
+
+        final AbstractCacheServer server = new MapCacheServer("many-connections", null, 0, 1000, EvictionPolicy.FIFO, null);
+        server.start();
+
+        final int connectionCount = 100;
+        final List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < connectionCount; i++) {
+                final Socket socket = new Socket("localhost", server.getPort());
+                socket.setSoTimeout(10000);
+                sockets.add(socket);
+                ProtocolHandshake.initiateHandshake(socket.getInputStream(), socket.getOutputStream(), new StandardVersionNegotiator(3, 2, 1));
+            }
+
+            // Interleave requests across all of the open connections
+            for (int round = 0; round < 3; round++) {
+                for (int i = 0; i < connectionCount; i++) {
+                    final Socket socket = sockets.get(i);
+                    final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    final byte[] key = ("key-" + i).getBytes(StandardCharsets.UTF_8);
+                    dos.writeUTF("putIfAbsent");
+                    dos.writeInt(key.length);
+                    dos.write(key);
+                    dos.writeInt(key.length);
+                    dos.write(key);
+                    dos.flush();
+
+                    final boolean added = new DataInputStream(socket.getInputStream()).readBoolean();
+                    assertEquals(round == 0, added);
+                }
+            }
+
+            assertEquals(connectionCount, server.getConnectionCount());
+
+            final long communicationThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("Distributed Cache Server Communications Thread") && thread.getName().endsWith("many-connections"))
+                .count();
+            assertTrue(communicationThreads <= AbstractCacheServer.WORKER_THREAD_COUNT);
+
+            for (final Socket socket : sockets) {
+                final DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+                dos.writeUTF("close");
+                dos.flush();
+            }
+
+            final long start = System.currentTimeMillis();
+            while (server.getConnectionCount() > 0 && System.currentTimeMillis() < start + 10000L) {
+                Thread.sleep(10L);
+            }
+            assertEquals(0, server.getConnectionCount());
+        } finally {
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSilentConnectionsDoNotOccupyWorkerThreads() throws Exception {
+        /**
+         * This bypasses the test for build environments in OS X running Java 1.8 due to a JVM bug
+         * See:  https://issues.apache.org/jira/browse/NIFI-437
+         */
+        Assume.assumeFalse("test is skipped due to build environment being OS X with JDK 1.8. See https://issues.apache.org/jira/browse/NIFI-437",
+                SystemUtils.IS_OS_MAC && SystemUtils.IS_JAVA_1_8);
+
+        LOGGER.info("Testing " + Thread.currentThread().getStackTrace()[1].getMethodName());
+
+        final AbstractCacheServer server = new MapCacheServer("silent-connections", null, 0, 1000, EvictionPolicy.FIFO, null);
+        server.start();
+
+        final List<Socket> sockets = new ArrayList<>();
+        try {
+            // Connect more clients than there are workers, none of which sends the handshake
+            for (int i = 0; i < AbstractCacheServer.WORKER_THREAD_COUNT * 2; i++) {
+                sockets.add(new Socket("localhost", server.getPort()));
+            }
+
+            // A client that does send its handshake must still be served well before the silent connections time out
+            final Socket socket = new Socket("localhost", server.getPort());
+            sockets.add(socket);
+            socket.setSoTimeout(5000);
+            ProtocolHandshake.initiateHandshake(socket.getInputStream(), socket.getOutputStream(), new StandardVersionNegotiator(3, 2, 1));
+
+            final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final byte[] key = "key".getBytes(StandardCharsets.UTF_8);
+            dos.writeUTF("containsKey");
+            dos.writeInt(key.length);
+            dos.write(key);
+            dos.flush();
+            assertFalse(new DataInputStream(socket.getInputStream()).readBoolean());
+        } finally {
+            for (final Socket socket : sockets) {
+                socket.close();
+            }
+            server.stop();
+        }
+    }
+
     private DistributedSetCacheClientService createClient(final int port) throws InitializationException {
         final DistributedSetCacheClientService client = new DistributedSetCacheClientService();
         final MockControllerServiceInitializationContext clientInitContext = new MockControllerServiceInitializationContext(client, "client");
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.distributed.cache.server.map;
+
+import org.apache.nifi.distributed.cache.server.EvictionPolicy;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentMapCache {
+
+    private static ByteBuffer toBuffer(final String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBasicOperations() throws Exception {
+        final ConcurrentMapCache cache = new ConcurrentMapCache("service-id", 2, EvictionPolicy.FIFO);
+
+        final ByteBuffer key1 = toBuffer("key1");
+        final ByteBuffer key2 = toBuffer("key2");
+        final ByteBuffer key3 = toBuffer("key3");
+
+        assertNull(cache.get(key1));
+        assertNull(cache.fetch(key1));
+
+        MapPutResult putResult = cache.put(key1, toBuffer("value1-0"));
+        assertTrue(putResult.isSuccessful());
+        assertNull(putResult.getExisting());
+        assertEquals(0, putResult.getRecord().getRevision());
+
+        putResult = cache.put(key1, toBuffer("value1-1"));
+        assertTrue(putResult.isSuccessful());
+        assertEquals(1, putResult.getRecord().getRevision());
+        assertEquals("value1-0", new String(putResult.getExisting().getValue().array()));
+        assertNull(putResult.getEvicted());
+
+        assertFalse(cache.putIfAbsent(key1, toBuffer("value1-2")).isSuccessful());
+        assertTrue(cache.putIfAbsent(key2, toBuffer("value2-0")).isSuccessful());
+
+        // The cache is full, so the first key is evicted
+        putResult = cache.put(key3, toBuffer("value3-0"));
+        assertNotNull(putResult.getEvicted());
+        assertEquals("key1", new String(putResult.getEvicted().getKey().array()));
+        assertFalse(cache.containsKey(key1));
+        assertEquals(2, cache.size());
+
+        assertEquals("value2-0", new String(cache.remove(key2).array()));
+        assertNull(cache.remove(key2));
+        assertEquals(1, cache.size());
+
+        final Map<ByteBuffer, ByteBuffer> results = cache.subMap(Arrays.asList(key1, key2, key3));
+        assertEquals(3, results.size());
+        assertNull(results.get(key1));
+        assertEquals("value3-0", new String(results.get(key3).array()));
+
+        cache.put(toBuffer("other"), toBuffer("value"));
+        final Map<ByteBuffer, ByteBuffer> removed = cache.removeByPattern("key.*");
+        assertEquals(1, removed.size());
+        assertEquals(1, cache.keySet().size());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testOptimisticLock() throws Exception {
+        final ConcurrentMapCache cache = new ConcurrentMapCache("service-id", 2, EvictionPolicy.FIFO);
+
+        final ByteBuffer key = toBuffer("key1");
+        assertTrue(cache.replace(new MapCacheRecord(key, toBuffer("valueC1-0"))).isSuccessful());
+        assertFalse(cache.replace(new MapCacheRecord(key, toBuffer("valueC2-0"))).isSuccessful());
+
+        final MapCacheRecord c1 = cache.fetch(key);
+        final MapCacheRecord c2 = cache.fetch(key);
+        assertEquals(0, c1.getRevision());
+
+        final MapPutResult putResult = cache.replace(new MapCacheRecord(key, toBuffer("valueC1-1"), c1.getRevision()));
+        assertTrue(putResult.isSuccessful());
+        assertEquals(1, putResult.getRecord().getRevision());
+
+        assertFalse(cache.replace(new MapCacheRecord(key, toBuffer("valueC2-1"), c2.getRevision())).isSuccessful());
+    }
+
+    @Test
+    public void testLeastFrequentlyUsedIsEvicted() throws Exception {
+        final ConcurrentMapCache cache = new ConcurrentMapCache("service-id", 3, EvictionPolicy.LFU);
+        cache.put(toBuffer("a"), toBuffer("a"));
+        cache.put(toBuffer("b"), toBuffer("b"));
+        cache.put(toBuffer("c"), toBuffer("c"));
+
+        cache.get(toBuffer("a"));
+        cache.get(toBuffer("c"));
+
+        final MapPutResult putResult = cache.put(toBuffer("d"), toBuffer("d"));
+        assertEquals("b", new String(putResult.getEvicted().getKey().array()));
+    }
+
+    @Test
+    public void testSizeBoundedWithManyStripes() throws Exception {
+        final int maxSize = 10_000;
+        final ConcurrentMapCache cache = new ConcurrentMapCache("service-id", maxSize, EvictionPolicy.LRU);
+
+        int evictions = 0;
+        for (int i = 0; i < maxSize * 3; i++) {
+            if (cache.put(toBuffer("key-" + i), toBuffer("value")).getEvicted() != null) {
+                evictions++;
+            }
+        }
+
+        assertEquals(maxSize, cache.size());
+        assertEquals(maxSize, cache.keySet().size());
+        assertEquals(maxSize * 2, evictions);
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentPutIfAbsent() throws Exception {
+        final ConcurrentMapCache cache = new ConcurrentMapCache("service-id", 100_000, EvictionPolicy.LFU);
+        final int threads = 8;
+        final int keys = 10_000;
+        final AtomicInteger added = new AtomicInteger(0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < keys; i++) {
+                        if (cache.putIfAbsent(toBuffer("key-" + i), toBuffer("value")).isSuccessful()) {
+                            added.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                future.get(20, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // every key must have been added exactly once
+        assertEquals(keys, added.get());
+        assertEquals(keys, cache.size());
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.distributed.cache.server.map;
+
+import org.apache.nifi.distributed.cache.server.EvictionPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestMemoryMappedMapCache {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static ByteBuffer toBuffer(final String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toString(final ByteBuffer buffer) {
+        return buffer == null ? null : new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testBasicOperations() throws Exception {
+        final MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", tempFolder.newFolder(), 2, EvictionPolicy.FIFO);
+        try {
+            final ByteBuffer key1 = toBuffer("key1");
+            final ByteBuffer key2 = toBuffer("key2");
+            final ByteBuffer key3 = toBuffer("key3");
+
+            assertNull(cache.get(key1));
+            assertNull(cache.fetch(key1));
+
+            MapPutResult putResult = cache.put(key1, toBuffer("value1-0"));
+            assertTrue(putResult.isSuccessful());
+            assertNull(putResult.getExisting());
+            assertEquals(0, putResult.getRecord().getRevision());
+
+            putResult = cache.put(key1, toBuffer("value1-1"));
+            assertTrue(putResult.isSuccessful());
+            assertEquals(1, putResult.getRecord().getRevision());
+            assertEquals("value1-0", toString(putResult.getExisting().getValue()));
+            assertNull(putResult.getEvicted());
+
+            assertFalse(cache.putIfAbsent(key1, toBuffer("value1-2")).isSuccessful());
+            assertTrue(cache.putIfAbsent(key2, toBuffer("value2-0")).isSuccessful());
+
+            // With two entries, every entry is sampled, so the first key is evicted
+            putResult = cache.put(key3, toBuffer("value3-0"));
+            assertNotNull(putResult.getEvicted());
+            assertEquals("key1", toString(putResult.getEvicted().getKey()));
+            assertFalse(cache.containsKey(key1));
+            assertEquals(2, cache.size());
+
+            assertEquals("value2-0", toString(cache.remove(key2)));
+            assertNull(cache.remove(key2));
+            assertEquals(1, cache.size());
+
+            // Optimistic locking
+            final MapCacheRecord record = cache.fetch(key3);
+            assertEquals(0, record.getRevision());
+            assertTrue(cache.replace(new MapCacheRecord(key3, toBuffer("value3-1"), 0)).isSuccessful());
+            assertFalse(cache.replace(new MapCacheRecord(key3, toBuffer("value3-2"), 0)).isSuccessful());
+            assertEquals("value3-1", toString(cache.get(key3)));
+            assertEquals(1, cache.fetch(key3).getRevision());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testRestoredWithoutReplay() throws Exception {
+        final File directory = tempFolder.newFolder();
+        MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", directory, 1000, EvictionPolicy.LRU);
+        for (int i = 0; i < 500; i++) {
+            cache.put(toBuffer("key-" + i), toBuffer("value-" + i));
+        }
+        cache.replace(new MapCacheRecord(toBuffer("key-1"), toBuffer("updated"), 0));
+        cache.remove(toBuffer("key-2"));
+        cache.shutdown();
+
+        cache = new MemoryMappedMapCache("service-id", directory, 1000, EvictionPolicy.LRU);
+        try {
+            assertEquals(499, cache.size());
+            assertEquals("value-0", toString(cache.get(toBuffer("key-0"))));
+            assertEquals("updated", toString(cache.get(toBuffer("key-1"))));
+            assertEquals(1, cache.fetch(toBuffer("key-1")).getRevision());
+            assertFalse(cache.containsKey(toBuffer("key-2")));
+            assertEquals(499, cache.keySet().size());
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testIndexGrowsWhenMaximumIncreases() throws Exception {
+        final File directory = tempFolder.newFolder();
+        MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", directory, 100, EvictionPolicy.FIFO);
+        for (int i = 0; i < 100; i++) {
+            cache.put(toBuffer("key-" + i), toBuffer("value-" + i));
+        }
+        cache.shutdown();
+
+        cache = new MemoryMappedMapCache("service-id", directory, 1000, EvictionPolicy.FIFO);
+        try {
+            assertEquals(100, cache.size());
+            for (int i = 100; i < 1000; i++) {
+                assertNull(cache.put(toBuffer("key-" + i), toBuffer("value-" + i)).getEvicted());
+            }
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("value-" + i, toString(cache.get(toBuffer("key-" + i))));
+            }
+        } finally {
+            cache.shutdown();
+        }
+
+        // Reducing the maximum shrinks the cache as entries are added
+        cache = new MemoryMappedMapCache("service-id", directory, 10, EvictionPolicy.FIFO);
+        try {
+            cache.put(toBuffer("new-key"), toBuffer("new-value"));
+            assertEquals(10, cache.size());
+            assertTrue(cache.containsKey(toBuffer("new-key")));
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testSegmentsCompacted() throws Exception {
+        final File directory = tempFolder.newFolder();
+        MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", directory, 100, EvictionPolicy.LFU, 4096);
+        final String value = new String(new char[100]).replace('\0', 'v');
+        for (int i = 0; i < 10000; i++) {
+            cache.put(toBuffer("key-" + (i % 50)), toBuffer(value + i));
+        }
+
+        // 50 live entries of about 120 bytes each fit in two segments, and at most half of every other segment may be garbage
+        assertTrue("Found " + cache.getSegmentCount() + " segments", cache.getSegmentCount() <= 6);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(value + (9950 + i), toString(cache.get(toBuffer("key-" + i))));
+        }
+        cache.shutdown();
+
+        cache = new MemoryMappedMapCache("service-id", directory, 100, EvictionPolicy.LFU, 4096);
+        try {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(value + (9950 + i), toString(cache.get(toBuffer("key-" + i))));
+            }
+
+            // An entry larger than a segment gets a segment of its own
+            final String largeValue = new String(new char[10000]).replace('\0', 'x');
+            cache.put(toBuffer("large"), toBuffer(largeValue));
+            assertEquals(largeValue, toString(cache.get(toBuffer("large"))));
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testEvictionBoundsSize() throws Exception {
+        final MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", tempFolder.newFolder(), 100, EvictionPolicy.LRU);
+        try {
+            for (int i = 0; i < 10000; i++) {
+                cache.put(toBuffer("key-" + i), toBuffer("value-" + i));
+            }
+
+            assertEquals(100, cache.size());
+            assertEquals(100, cache.keySet().size());
+            assertTrue(cache.containsKey(toBuffer("key-9999")));
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentHitsCounted() throws Exception {
+        final MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", tempFolder.newFolder(), 100, EvictionPolicy.LFU);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final ByteBuffer key = toBuffer("key");
+            cache.put(key, toBuffer("value"));
+
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 10000; j++) {
+                        assertNotNull(cache.fetch(toBuffer("key")));
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+
+            assertEquals(80000, cache.getHitCount(key));
+        } finally {
+            executor.shutdownNow();
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    public void testRemoveByPattern() throws Exception {
+        final MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", tempFolder.newFolder(), 100, EvictionPolicy.FIFO);
+        try {
+            for (int i = 0; i < 50; i++) {
+                cache.put(toBuffer("a." + i), toBuffer("value"));
+                cache.put(toBuffer("b." + i), toBuffer("value"));
+            }
+
+            final Map<ByteBuffer, ByteBuffer> removed = cache.removeByPattern("a\\..*");
+            assertEquals(50, removed.size());
+            assertEquals(50, cache.size());
+
+            final Set<ByteBuffer> keys = cache.keySet();
+            for (int i = 0; i < 50; i++) {
+                assertTrue(removed.containsKey(toBuffer("a." + i)));
+                assertTrue(keys.contains(toBuffer("b." + i)));
+                assertEquals("value", toString(cache.get(toBuffer("b." + i))));
+            }
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    @Test(expected = OverlappingFileLockException.class)
+    public void testDuplicatePersistenceDirectory() throws Exception {
+        final File directory = tempFolder.newFolder();
+        final MemoryMappedMapCache cache = new MemoryMappedMapCache("service-id", directory, 100, EvictionPolicy.FIFO);
+        try {
+            new MemoryMappedMapCache("other-id", directory, 100, EvictionPolicy.FIFO);
+        } finally {
+            cache.shutdown();
+        }
+    }
+}
@@ -20,14 +20,13 @@ package org.apache.nifi.avro;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.nifi.serialization.MalformedRecordException;
 import org.apache.nifi.serialization.RecordReader;
-import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.Record;
 import org.apache.nifi.serialization.record.RecordSchema;
 
 import com.google.common.base.Throwables;
 
 import java.io.IOException;
-import java.util.Map;
 
 public abstract class AvroRecordReader implements RecordReader {
 
@@ -42,8 +41,8 @@ public abstract class AvroRecordReader implements RecordReader {
             }
 
             final RecordSchema schema = getSchema();
-            final Map<String, Object> values = AvroTypeUtil.convertAvroRecordToMap(record, schema);
-            return new MapRecord(schema, values);
+            final Object[] values = AvroTypeUtil.convertAvroRecordToValues(record, schema);
+            return new ArrayRecord(schema, values);
         } catch (IOException e) {
             throw e;
         } catch (MalformedRecordException e) {
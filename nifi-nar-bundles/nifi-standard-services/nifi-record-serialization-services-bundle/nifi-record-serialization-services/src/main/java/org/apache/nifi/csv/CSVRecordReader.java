@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,8 +36,8 @@ import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.DataType;
-import org.apache.nifi.serialization.record.MapRecord;
 import org.apache.nifi.serialization.record.Record;
 import org.apache.nifi.serialization.record.RecordField;
 import org.apache.nifi.serialization.record.RecordFieldType;
@@ -49,6 +50,7 @@ public class CSVRecordReader extends AbstractCSVRecordReader {
     private final CSVParser csvParser;
 
     private List<RecordField> recordFields;
+    private int[] schemaFieldIndices;
 
     public CSVRecordReader(final InputStream in, final ComponentLog logger, final RecordSchema schema, final CSVFormat csvFormat, final boolean hasHeader, final boolean ignoreHeader,
                            final String dateFormat, final String timeFormat, final String timestampFormat, final String encoding) throws IOException {
@@ -79,9 +81,13 @@ public class CSVRecordReader extends AbstractCSVRecordReader {
             final RecordSchema schema = getSchema();
 
             final List<RecordField> recordFields = getRecordFields();
+            final int[] schemaFieldIndices = this.schemaFieldIndices;
             final int numFieldNames = recordFields.size();
             for (final CSVRecord csvRecord : csvParser) {
-                final Map<String, Object> values = new LinkedHashMap<>(recordFields.size() * 2);
+                final Object[] values = new Object[schema.getFieldCount()];
+                Arrays.fill(values, ArrayRecord.ABSENT);
+                Map<String, Object> unknownValues = null;
+
                 for (int i = 0; i < csvRecord.size(); i++) {
                     final String rawValue = csvRecord.get(i);
 
@@ -89,7 +95,10 @@ public class CSVRecordReader extends AbstractCSVRecordReader {
                     final DataType dataType;
                     if (i >= numFieldNames) {
                         if (!dropUnknownFields) {
-                            values.put("unknown_field_index_" + i, rawValue);
+                            if (unknownValues == null) {
+                                unknownValues = new LinkedHashMap<>();
+                            }
+                            unknownValues.put("unknown_field_index_" + i, rawValue);
                         }
 
                         continue;
@@ -110,10 +119,18 @@ public class CSVRecordReader extends AbstractCSVRecordReader {
                         value = convertSimpleIfPossible(rawValue, dataType, rawFieldName);
                     }
 
-                    values.put(rawFieldName, value);
+                    final int schemaFieldIndex = schemaFieldIndices[i];
+                    if (schemaFieldIndex >= 0) {
+                        values[schemaFieldIndex] = value;
+                    } else {
+                        if (unknownValues == null) {
+                            unknownValues = new LinkedHashMap<>();
+                        }
+                        unknownValues.put(rawFieldName, value);
+                    }
                 }
 
-                return new MapRecord(schema, values, coerceTypes, dropUnknownFields);
+                return new ArrayRecord(schema, values, unknownValues, null, coerceTypes, dropUnknownFields);
             }
         } catch (Exception e) {
             throw new MalformedRecordException("Error while getting next record. Root cause: " +  Throwables.getRootCause(e), e);
@@ -136,8 +153,10 @@ public class CSVRecordReader extends AbstractCSVRecordReader {
 
         final List<RecordField> fields = new ArrayList<>();
         final List<String> rawFieldNames = new ArrayList<>(sortedMap.values());
+        final int[] indices = new int[rawFieldNames.size()];
         for (final String rawFieldName : rawFieldNames) {
             final Optional<RecordField> option = schema.getField(rawFieldName);
+            indices[fields.size()] = schema.getFieldIndex(rawFieldName);
             if (option.isPresent()) {
                 fields.add(option.get());
             } else {
@@ -145,6 +164,7 @@ public class CSVRecordReader extends AbstractCSVRecordReader {
             }
         }
 
+        this.schemaFieldIndices = indices;
         this.recordFields = fields;
         return fields;
     }
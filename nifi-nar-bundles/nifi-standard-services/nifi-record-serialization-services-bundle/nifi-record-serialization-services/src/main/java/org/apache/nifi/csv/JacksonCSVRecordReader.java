@@ -23,10 +23,9 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.io.input.BOMInputStream;
@@ -34,8 +33,8 @@ import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.DataType;
-import org.apache.nifi.serialization.record.MapRecord;
 import org.apache.nifi.serialization.record.Record;
 import org.apache.nifi.serialization.record.RecordSchema;
 
@@ -49,6 +48,8 @@ import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 public class JacksonCSVRecordReader extends AbstractCSVRecordReader {
     private final MappingIterator<String[]> recordStream;
     private List<String> rawFieldNames = null;
+    private int[] schemaFieldIndices = null;
+    private boolean[] canonicalFieldNames = null;
 
     private volatile static CsvMapper mapper = new CsvMapper().enable(CsvParser.Feature.WRAP_AS_ARRAY);
 
@@ -138,34 +139,58 @@ public class JacksonCSVRecordReader extends AbstractCSVRecordReader {
                 return null;
             }
 
-            final Map<String, Object> values = new HashMap<>(rawFieldNames.size() * 2);
+            if (schemaFieldIndices == null) {
+                schemaFieldIndices = new int[rawFieldNames.size()];
+                canonicalFieldNames = new boolean[rawFieldNames.size()];
+                for (int i = 0; i < schemaFieldIndices.length; i++) {
+                    final String rawFieldName = rawFieldNames.get(i);
+                    schemaFieldIndices[i] = schema.getFieldIndex(rawFieldName);
+                    canonicalFieldNames[i] = schemaFieldIndices[i] >= 0 && schema.getField(schemaFieldIndices[i]).getFieldName().equals(rawFieldName);
+                }
+            }
+
+            final Object[] values = new Object[schema.getFieldCount()];
+            Arrays.fill(values, ArrayRecord.ABSENT);
+            Map<String, Object> unknownValues = null;
+
             final int numFieldNames = rawFieldNames.size();
             for (int i = 0; i < csvRecord.length; i++) {
                 final String rawFieldName = numFieldNames <= i ? "unknown_field_index_" + i : rawFieldNames.get(i);
                 String rawValue = (i >= csvRecord.length) ? null : csvRecord[i];
 
-                final Optional<DataType> dataTypeOption = schema.getDataType(rawFieldName);
+                final int schemaFieldIndex = numFieldNames <= i ? schema.getFieldIndex(rawFieldName) : schemaFieldIndices[i];
+
+                if (schemaFieldIndex < 0) {
+                    if (!dropUnknownFields) {
+                        if (unknownValues == null) {
+                            unknownValues = new LinkedHashMap<>();
+                        }
+                        unknownValues.put(rawFieldName, rawValue);
+                    }
 
-                if (!dataTypeOption.isPresent() && dropUnknownFields) {
                     continue;
                 }
 
+                // A column that is named with one of the aliases of a field does not replace the value of a column named with the field's name
+                if (values[schemaFieldIndex] != ArrayRecord.ABSENT && (numFieldNames <= i || !canonicalFieldNames[i])) {
+                    continue;
+                }
+
+                final DataType dataType = schema.getField(schemaFieldIndex).getDataType();
                 final Object value;
-                if (coerceTypes && dataTypeOption.isPresent()) {
-                    value = convert(rawValue, dataTypeOption.get(), rawFieldName);
-                } else if (dataTypeOption.isPresent()) {
+                if (coerceTypes) {
+                    value = convert(rawValue, dataType, rawFieldName);
+                } else {
                     // The CSV Reader is going to return all fields as Strings, because CSV doesn't have any way to
                     // dictate a field type. As a result, we will use the schema that we have to attempt to convert
                     // the value into the desired type if it's a simple type.
-                    value = convertSimpleIfPossible(rawValue, dataTypeOption.get(), rawFieldName);
-                } else {
-                    value = rawValue;
+                    value = convertSimpleIfPossible(rawValue, dataType, rawFieldName);
                 }
 
-                values.put(rawFieldName, value);
+                values[schemaFieldIndex] = value;
             }
 
-            return new MapRecord(schema, values, coerceTypes, dropUnknownFields);
+            return new ArrayRecord(schema, values, unknownValues, null, coerceTypes, dropUnknownFields);
         }
 
         return null;
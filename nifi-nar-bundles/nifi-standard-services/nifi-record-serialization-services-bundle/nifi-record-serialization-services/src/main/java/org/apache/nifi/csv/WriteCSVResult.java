@@ -29,6 +29,7 @@ import org.apache.nifi.serialization.record.Record;
 import org.apache.nifi.serialization.record.RecordField;
 import org.apache.nifi.serialization.record.RecordFieldType;
 import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.serialization.record.util.DataTypeUtils;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -141,16 +142,23 @@ public class WriteCSVResult extends AbstractRecordSetWriter implements RecordSet
 
         includeHeaderIfNecessary(record, true);
 
-        int i = 0;
-        for (final RecordField recordField : recordSchema.getFields()) {
-            fieldValues[i++] = getFieldValue(record, recordField);
+        // When the Record uses the schema that is being written, its values can be retrieved by position rather than by name
+        final boolean sameSchema = record.getSchema() == recordSchema;
+        for (int i = 0; i < fieldValues.length; i++) {
+            final RecordField recordField = recordSchema.getField(i);
+            final Object value = sameSchema ? record.getValue(i) : record.getValue(recordField);
+            fieldValues[i] = getFieldValue(value, recordField);
         }
 
         printer.printRecord(fieldValues);
         return schemaWriter.getAttributes(recordSchema);
     }
 
-    private Object getFieldValue(final Record record, final RecordField recordField) {
+    private Object getFieldValue(final Object value, final RecordField recordField) {
+        if (value == null) {
+            return null;
+        }
+
         final RecordFieldType fieldType = recordField.getDataType().getFieldType();
 
         switch (fieldType) {
@@ -162,14 +170,13 @@ public class WriteCSVResult extends AbstractRecordSetWriter implements RecordSet
             case LONG:
             case INT:
             case SHORT:
-                final Object value = record.getValue(recordField);
                 if (value instanceof Number) {
                     return value;
                 }
                 break;
         }
 
-        return record.getAsString(recordField, getFormat(recordField));
+        return DataTypeUtils.toString(value, getFormat(recordField));
     }
 
     @Override
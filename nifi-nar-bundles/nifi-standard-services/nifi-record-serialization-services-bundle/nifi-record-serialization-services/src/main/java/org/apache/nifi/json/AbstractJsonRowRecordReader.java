@@ -21,9 +21,10 @@ import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.serialization.MalformedRecordException;
 import org.apache.nifi.serialization.RecordReader;
 import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.DataType;
-import org.apache.nifi.serialization.record.MapRecord;
 import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
 import org.apache.nifi.serialization.record.RecordFieldType;
 import org.apache.nifi.serialization.record.RecordSchema;
 import org.apache.nifi.serialization.record.type.ArrayDataType;
@@ -42,9 +43,11 @@ import org.codehaus.jackson.node.ArrayNode;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -266,17 +269,50 @@ public abstract class AbstractJsonRowRecordReader implements RecordReader {
 
     private Record createRecordFromRawValue(final JsonNode fieldNode, final RecordSchema childSchema) throws IOException {
         final Iterator<String> fieldNames = fieldNode.getFieldNames();
-        final Map<String, Object> childValues = new HashMap<>();
+        final Object[] childValues = new Object[childSchema.getFieldCount()];
+        Arrays.fill(childValues, ArrayRecord.ABSENT);
+        Map<String, Object> unknownValues = null;
+
         while (fieldNames.hasNext()) {
             final String childFieldName = fieldNames.next();
 
-            final DataType childDataType = childSchema.getDataType(childFieldName).orElse(null);
-            final Object childValue = getRawNodeValue(fieldNode.get(childFieldName), childDataType, childFieldName);
-            childValues.put(childFieldName, childValue);
+            final int childFieldIndex = childSchema.getFieldIndex(childFieldName);
+            if (childFieldIndex < 0) {
+                if (unknownValues == null) {
+                    unknownValues = new LinkedHashMap<>();
+                }
+                unknownValues.put(childFieldName, getRawNodeValue(fieldNode.get(childFieldName), null, childFieldName));
+                continue;
+            }
+
+            final RecordField childField = childSchema.getField(childFieldIndex);
+            final JsonNode childNode = fieldNode.get(childFieldName);
+            if (!childField.getFieldName().equals(childFieldName) && getChildNode(fieldNode, childField) != childNode) {
+                continue;
+            }
+
+            childValues[childFieldIndex] = getRawNodeValue(childNode, childField.getDataType(), childFieldName);
+        }
+
+        return new ArrayRecord(childSchema, childValues, unknownValues, null, false, false);
+    }
+
+    /**
+     * Returns the child of the given node for the given field, which is the child named with the field's name if there is one, or otherwise the child
+     * named with the first of the field's aliases that is present
+     */
+    protected JsonNode getChildNode(final JsonNode jsonNode, final RecordField field) {
+        if (jsonNode.has(field.getFieldName())) {
+            return jsonNode.get(field.getFieldName());
         }
 
-        final MapRecord record = new MapRecord(childSchema, childValues);
-        return record;
+        for (final String alias : field.getAliases()) {
+            if (jsonNode.has(alias)) {
+                return jsonNode.get(alias);
+            }
+        }
+
+        return null;
     }
 
     protected JsonNode getNextJsonNode() throws IOException, MalformedRecordException {
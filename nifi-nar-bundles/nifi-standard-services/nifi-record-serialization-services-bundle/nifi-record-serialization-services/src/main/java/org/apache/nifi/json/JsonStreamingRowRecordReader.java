@@ -0,0 +1,578 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.json;
+
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.ArrayRecord;
+import org.apache.nifi.serialization.record.DataType;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.serialization.record.type.ArrayDataType;
+import org.apache.nifi.serialization.record.type.ChoiceDataType;
+import org.apache.nifi.serialization.record.type.MapDataType;
+import org.apache.nifi.serialization.record.type.RecordDataType;
+import org.apache.nifi.serialization.record.util.DataTypeUtils;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonStreamContext;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * A RecordReader that reads JSON by consuming the stream of tokens from the parser and placing each value directly into the slot of its field,
+ * rather than first reading each JSON object into a tree of JsonNodes as the {@link JsonTreeRowRecordReader} does. For each schema that is
+ * encountered, a table is built once that maps each field name and alias to the index of the field in the schema, so that the value of each
+ * field can be read according to its data type as soon as its name is read. When unknown fields are to be dropped, their values are skipped
+ * without being read into objects.
+ * </p>
+ *
+ * <p>
+ * The Records that are produced are the same as those produced by the {@link JsonTreeRowRecordReader} for the same schema, except that they
+ * do not retain the JSON text from which they were read.
+ * </p>
+ */
+public class JsonStreamingRowRecordReader implements RecordReader {
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final RecordSchema EMPTY_SCHEMA = new SimpleRecordSchema(Collections.emptyList());
+
+    private final ComponentLog logger;
+    private final RecordSchema schema;
+    private final JsonParser jsonParser;
+    private final boolean firstTokenIsObject;
+    private final Supplier<DateFormat> LAZY_DATE_FORMAT;
+    private final Supplier<DateFormat> LAZY_TIME_FORMAT;
+    private final Supplier<DateFormat> LAZY_TIMESTAMP_FORMAT;
+    private final Map<RecordSchema, FieldTable> fieldTables = new IdentityHashMap<>();
+
+    private boolean firstObjectConsumed = false;
+
+    public JsonStreamingRowRecordReader(final InputStream in, final ComponentLog logger, final RecordSchema schema,
+                                        final String dateFormat, final String timeFormat, final String timestampFormat) throws IOException, MalformedRecordException {
+        this.logger = logger;
+        this.schema = schema;
+
+        final DateFormat df = dateFormat == null ? null : DataTypeUtils.getDateFormat(dateFormat);
+        final DateFormat tf = timeFormat == null ? null : DataTypeUtils.getDateFormat(timeFormat);
+        final DateFormat tsf = timestampFormat == null ? null : DataTypeUtils.getDateFormat(timestampFormat);
+
+        LAZY_DATE_FORMAT = () -> df;
+        LAZY_TIME_FORMAT = () -> tf;
+        LAZY_TIMESTAMP_FORMAT = () -> tsf;
+
+        try {
+            jsonParser = jsonFactory.createJsonParser(in);
+
+            JsonToken token = jsonParser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = jsonParser.nextToken(); // advance to START_OBJECT token
+            }
+
+            firstTokenIsObject = token == JsonToken.START_OBJECT; // could be END_ARRAY also
+        } catch (final JsonParseException e) {
+            throw new MalformedRecordException("Could not parse data as JSON", e);
+        }
+    }
+
+    @Override
+    public Record nextRecord(final boolean coerceTypes, final boolean dropUnknownFields) throws IOException, MalformedRecordException {
+        try {
+            if (!advanceToNextObject()) {
+                return null;
+            }
+        } catch (final JsonParseException e) {
+            throw new MalformedRecordException("Could not parse data as JSON", e);
+        }
+
+        final int recordDepth = getDepth(jsonParser.getParsingContext());
+        try {
+            return readRecord(jsonParser, schema, null, coerceTypes, dropUnknownFields);
+        } catch (final JsonParseException e) {
+            throw new MalformedRecordException("Could not parse data as JSON", e);
+        } catch (final MalformedRecordException mre) {
+            skipRemainderOfRecord(recordDepth);
+            throw mre;
+        } catch (final IOException ioe) {
+            throw ioe;
+        } catch (final Exception e) {
+            skipRemainderOfRecord(recordDepth);
+            logger.debug("Failed to convert JSON Object into a Record object using schema {} due to {}", new Object[] {schema, e.toString(), e});
+            throw new MalformedRecordException("Successfully parsed a JSON object from input but failed to convert into a Record object with the given schema", e);
+        }
+    }
+
+    private boolean advanceToNextObject() throws IOException, MalformedRecordException {
+        if (!firstObjectConsumed) {
+            firstObjectConsumed = true;
+            return firstTokenIsObject;
+        }
+
+        while (true) {
+            final JsonToken token = jsonParser.nextToken();
+            if (token == null) {
+                return false;
+            }
+
+            switch (token) {
+                case END_OBJECT:
+                    continue;
+                case START_OBJECT:
+                    return true;
+                case END_ARRAY:
+                case START_ARRAY:
+                    continue;
+
+                default:
+                    throw new MalformedRecordException("Expected to get a JSON Object but got a token of type " + token.name());
+            }
+        }
+    }
+
+    private static int getDepth(final JsonStreamContext context) {
+        int depth = 0;
+        for (JsonStreamContext current = context; current != null; current = current.getParent()) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * If a record cannot be converted, consumes the rest of its tokens so that the next call to nextRecord() begins with the next record
+     */
+    private void skipRemainderOfRecord(final int recordDepth) {
+        try {
+            while (getDepth(jsonParser.getParsingContext()) >= recordDepth) {
+                if (jsonParser.nextToken() == null) {
+                    return;
+                }
+            }
+        } catch (final IOException e) {
+            logger.debug("Failed to skip the remainder of a JSON Object that could not be converted into a Record", e);
+        }
+    }
+
+    private FieldTable getFieldTable(final RecordSchema recordSchema) {
+        FieldTable fieldTable = fieldTables.get(recordSchema);
+        if (fieldTable == null) {
+            fieldTable = new FieldTable(recordSchema);
+            fieldTables.put(recordSchema, fieldTable);
+        }
+        return fieldTable;
+    }
+
+    /**
+     * Reads the JSON Object at the current position of the parser into a Record with the given schema, converting each field that is part of the
+     * schema into the field's data type if coercing types. This produces the same Record as JsonTreeRowRecordReader#convertJsonNodeToRecord.
+     */
+    private Record readRecord(final JsonParser parser, final RecordSchema recordSchema, final String fieldNamePrefix, final boolean coerceTypes, final boolean dropUnknown)
+            throws IOException, MalformedRecordException {
+        final FieldTable fieldTable = getFieldTable(recordSchema);
+        final Object[] values = fieldTable.newValues();
+        final int[] matchedPriorities = fieldTable.hasAliases() ? new int[values.length] : null;
+        Map<String, Object> unknownValues = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String fieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            final FieldSlot slot = fieldTable.getSlot(fieldName);
+            if (slot == null) {
+                if (dropUnknown) {
+                    parser.skipChildren();
+                } else {
+                    if (unknownValues == null) {
+                        unknownValues = new LinkedHashMap<>();
+                    }
+                    unknownValues.put(fieldName, readRawValue(parser, null, fieldName));
+                }
+                continue;
+            }
+
+            // When a field is present under both its name and an alias, the name takes precedence, followed by the aliases in order.
+            if (matchedPriorities != null && values[slot.index] != ArrayRecord.ABSENT && matchedPriorities[slot.index] < slot.priority) {
+                parser.skipChildren();
+                continue;
+            }
+
+            final RecordField recordField = slot.field;
+            final String recordFieldName = recordField.getFieldName();
+            final Object value;
+            if (coerceTypes) {
+                final String fullFieldName = fieldNamePrefix == null ? recordFieldName : fieldNamePrefix + recordFieldName;
+                value = convertValue(parser, recordField.getDataType(), fullFieldName, dropUnknown);
+            } else {
+                value = readRawValue(parser, recordField.getDataType(), recordFieldName);
+            }
+
+            values[slot.index] = value;
+            if (matchedPriorities != null) {
+                matchedPriorities[slot.index] = slot.priority;
+            }
+        }
+
+        return fieldTable.createRecord(values, unknownValues, dropUnknown);
+    }
+
+    /**
+     * Reads the value at the current position of the parser and converts it into the given data type. This produces the same value as
+     * JsonTreeRowRecordReader#convertField.
+     */
+    private Object convertValue(final JsonParser parser, final DataType desiredType, final String fieldName, final boolean dropUnknown) throws IOException, MalformedRecordException {
+        final JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        switch (desiredType.getFieldType()) {
+            case BOOLEAN:
+            case BYTE:
+            case CHAR:
+            case DECIMAL:
+            case DOUBLE:
+            case FLOAT:
+            case INT:
+            case BIGINT:
+            case LONG:
+            case SHORT:
+            case STRING:
+            case ENUM:
+            case DATE:
+            case TIME:
+            case TIMESTAMP: {
+                final Object rawValue = readRawValue(parser, null, fieldName);
+                return DataTypeUtils.convertType(rawValue, desiredType, LAZY_DATE_FORMAT, LAZY_TIME_FORMAT, LAZY_TIMESTAMP_FORMAT, fieldName);
+            }
+            case MAP: {
+                final Map<String, Object> map = new HashMap<>();
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    return map;
+                }
+
+                final DataType valueType = ((MapDataType) desiredType).getValueType();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String childName = parser.getCurrentName();
+                    parser.nextToken();
+                    map.put(childName, convertValue(parser, valueType, fieldName, dropUnknown));
+                }
+
+                return map;
+            }
+            case ARRAY: {
+                if (token != JsonToken.START_ARRAY) {
+                    throw new MalformedRecordException("Expected a JSON Array for field " + fieldName + " but got a token of type " + token.name());
+                }
+
+                final DataType elementType = ((ArrayDataType) desiredType).getElementType();
+                final List<Object> elements = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    elements.add(convertValue(parser, elementType, fieldName, dropUnknown));
+                }
+
+                return elements.toArray();
+            }
+            case RECORD: {
+                if (token != JsonToken.START_OBJECT || !(desiredType instanceof RecordDataType)) {
+                    parser.skipChildren();
+                    return null;
+                }
+
+                final RecordSchema childSchema = ((RecordDataType) desiredType).getChildSchema();
+                if (childSchema == null) {
+                    return readRecordOfStrings(parser, fieldName, dropUnknown);
+                }
+
+                return readRecord(parser, childSchema, fieldName + ".", true, dropUnknown);
+            }
+            case CHOICE: {
+                return DataTypeUtils.convertType(readRawValue(parser, desiredType, fieldName), desiredType, fieldName);
+            }
+        }
+
+        parser.skipChildren();
+        return null;
+    }
+
+    /**
+     * Reads a JSON Object for a field of type Record that has no child schema, in which case every field is treated as a String
+     */
+    private Record readRecordOfStrings(final JsonParser parser, final String fieldName, final boolean dropUnknown) throws IOException, MalformedRecordException {
+        final List<RecordField> fields = new ArrayList<>();
+        final List<Object> values = new ArrayList<>();
+        final DataType stringType = RecordFieldType.STRING.getDataType();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String childName = parser.getCurrentName();
+            parser.nextToken();
+
+            fields.add(new RecordField(childName, stringType));
+            values.add(convertValue(parser, stringType, fieldName + "." + childName, dropUnknown));
+        }
+
+        return new ArrayRecord(new SimpleRecordSchema(fields), values.toArray(), false, dropUnknown);
+    }
+
+    /**
+     * Reads the value at the current position of the parser without coercing it into the given data type, other than parsing Strings into
+     * Dates, Times and Timestamps where the data type calls for it. This produces the same value as AbstractJsonRowRecordReader#getRawNodeValue.
+     */
+    private Object readRawValue(final JsonParser parser, final DataType dataType, final String fieldName) throws IOException {
+        final JsonToken token = parser.getCurrentToken();
+        switch (token) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberValue();
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.getEmbeddedObject();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_STRING: {
+                final String textValue = parser.getText();
+                if (dataType == null) {
+                    return textValue;
+                }
+
+                switch (dataType.getFieldType()) {
+                    case DATE:
+                    case TIME:
+                    case TIMESTAMP:
+                        try {
+                            return DataTypeUtils.convertType(textValue, dataType, LAZY_DATE_FORMAT, LAZY_TIME_FORMAT, LAZY_TIMESTAMP_FORMAT, fieldName);
+                        } catch (final Exception e) {
+                            return textValue;
+                        }
+                    default:
+                        return textValue;
+                }
+            }
+            case START_ARRAY: {
+                final DataType elementDataType;
+                if (dataType != null && dataType.getFieldType() == RecordFieldType.ARRAY) {
+                    elementDataType = ((ArrayDataType) dataType).getElementType();
+                } else {
+                    elementDataType = dataType;
+                }
+
+                final List<Object> elements = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    elements.add(readRawValue(parser, elementDataType, fieldName));
+                }
+
+                return elements.toArray();
+            }
+            case START_OBJECT: {
+                if (dataType != null && dataType.getFieldType() == RecordFieldType.MAP) {
+                    final DataType valueType = ((MapDataType) dataType).getValueType();
+                    final Map<String, Object> map = new HashMap<>();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        final String elementName = parser.getCurrentName();
+                        parser.nextToken();
+                        map.put(elementName, readRawValue(parser, valueType, fieldName + "['" + elementName + "']"));
+                    }
+
+                    return map;
+                }
+
+                if (dataType != null && dataType.getFieldType() == RecordFieldType.RECORD) {
+                    final RecordSchema childSchema = ((RecordDataType) dataType).getChildSchema();
+                    return readRawRecord(parser, childSchema == null ? EMPTY_SCHEMA : childSchema);
+                }
+
+                if (dataType != null && dataType.getFieldType() == RecordFieldType.CHOICE) {
+                    return readChoiceOfRecords(parser, (ChoiceDataType) dataType);
+                }
+
+                return readRawRecord(parser, EMPTY_SCHEMA);
+            }
+            default:
+                parser.skipChildren();
+                return null;
+        }
+    }
+
+    /**
+     * Reads a JSON Object into a Record without coercing its values, as AbstractJsonRowRecordReader#createRecordFromRawValue does
+     */
+    private Record readRawRecord(final JsonParser parser, final RecordSchema childSchema) throws IOException {
+        final FieldTable fieldTable = getFieldTable(childSchema);
+        final Object[] childValues = fieldTable.newValues();
+        final int[] matchedPriorities = fieldTable.hasAliases() ? new int[childValues.length] : null;
+        Map<String, Object> unknownValues = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String childFieldName = parser.getCurrentName();
+            parser.nextToken();
+
+            final FieldSlot slot = fieldTable.getSlot(childFieldName);
+            if (slot == null) {
+                if (unknownValues == null) {
+                    unknownValues = new LinkedHashMap<>();
+                }
+                unknownValues.put(childFieldName, readRawValue(parser, null, childFieldName));
+                continue;
+            }
+
+            if (matchedPriorities != null && childValues[slot.index] != ArrayRecord.ABSENT && matchedPriorities[slot.index] < slot.priority) {
+                parser.skipChildren();
+                continue;
+            }
+
+            childValues[slot.index] = readRawValue(parser, slot.field.getDataType(), childFieldName);
+            if (matchedPriorities != null) {
+                matchedPriorities[slot.index] = slot.priority;
+            }
+        }
+
+        return fieldTable.createRecord(childValues, unknownValues, false);
+    }
+
+    /**
+     * Reads a JSON Object for a field whose type is a choice. Because the Object must be read once for each of the possible Record types until a
+     * compatible one is found, it is buffered as tokens rather than being read into a tree of JsonNodes.
+     */
+    private Record readChoiceOfRecords(final JsonParser parser, final ChoiceDataType dataType) throws IOException {
+        final TokenBuffer buffer = new TokenBuffer(null);
+        buffer.copyCurrentStructure(parser);
+
+        for (final DataType possibleDataType : dataType.getPossibleSubTypes()) {
+            final Record record = readOptionalRecord(buffer, possibleDataType);
+            if (record != null) {
+                return record;
+            }
+        }
+
+        return readRawRecord(startParser(buffer), EMPTY_SCHEMA);
+    }
+
+    private Record readOptionalRecord(final TokenBuffer buffer, final DataType dataType) throws IOException {
+        if (dataType.getFieldType() == RecordFieldType.RECORD) {
+            final RecordSchema possibleSchema = ((RecordDataType) dataType).getChildSchema();
+            final Record possibleRecord = readRawRecord(startParser(buffer), possibleSchema);
+
+            if (DataTypeUtils.isCompatibleDataType(possibleRecord, dataType)) {
+                return possibleRecord;
+            }
+        } else if (dataType.getFieldType() == RecordFieldType.ARRAY) {
+            final DataType elementType = ((ArrayDataType) dataType).getElementType();
+            return readOptionalRecord(buffer, elementType);
+        }
+
+        return null;
+    }
+
+    private static JsonParser startParser(final TokenBuffer buffer) throws IOException {
+        final JsonParser bufferParser = buffer.asParser();
+        bufferParser.nextToken();
+        return bufferParser;
+    }
+
+    @Override
+    public RecordSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonParser.close();
+    }
+
+    private static class FieldSlot {
+        private final RecordField field;
+        private final int index;
+        private final int priority;
+
+        private FieldSlot(final RecordField field, final int index, final int priority) {
+            this.field = field;
+            this.index = index;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Maps each field name and alias of a schema to the field's index, so that each value can be placed in the slot of its field as it is read
+     */
+    private static class FieldTable {
+        private final RecordSchema schema;
+        private final int fieldCount;
+        private final Map<String, FieldSlot> slots;
+        private final boolean hasAliases;
+
+        private FieldTable(final RecordSchema schema) {
+            this.schema = schema;
+
+            final List<RecordField> fields = schema.getFields();
+            fieldCount = fields.size();
+            slots = new HashMap<>(fields.size() * 2);
+
+            boolean aliases = false;
+            for (int i = 0; i < fields.size(); i++) {
+                final RecordField field = fields.get(i);
+                slots.putIfAbsent(field.getFieldName(), new FieldSlot(field, i, 0));
+
+                int priority = 1;
+                for (final String alias : field.getAliases()) {
+                    slots.putIfAbsent(alias, new FieldSlot(field, i, priority++));
+                    aliases = true;
+                }
+            }
+
+            hasAliases = aliases;
+        }
+
+        private FieldSlot getSlot(final String fieldName) {
+            return slots.get(fieldName);
+        }
+
+        private boolean hasAliases() {
+            return hasAliases;
+        }
+
+        private Object[] newValues() {
+            final Object[] values = new Object[fieldCount];
+            Arrays.fill(values, ArrayRecord.ABSENT);
+            return values;
+        }
+
+        private Record createRecord(final Object[] values, final Map<String, Object> unknownValues, final boolean dropUnknown) {
+            return new ArrayRecord(schema, values, unknownValues, null, false, dropUnknown);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
 import org.apache.nifi.context.PropertyContext;
 import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.expression.ExpressionLanguageScope;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.schema.access.SchemaAccessStrategy;
 import org.apache.nifi.schema.access.SchemaNotFoundException;
@@ -63,6 +64,27 @@ import static org.apache.nifi.schema.inference.SchemaInferenceUtil.SCHEMA_CACHE;
 @SeeAlso(JsonPathReader.class)
 public class JsonTreeReader extends SchemaRegistryService implements RecordReaderFactory {
 
+    // JSON parsers
+    public static final AllowableValue TREE_PARSER = new AllowableValue("json-tree", "Tree",
+            "Each JSON object is first read into a tree of JSON nodes, which is then converted into a Record.");
+
+    public static final AllowableValue STREAMING_PARSER = new AllowableValue("json-streaming", "Streaming",
+            "Each JSON object is read field by field directly into a Record, using the schema to determine how each value is to be read. Fields that are not "
+                + "part of the schema are skipped without being read into objects when they are to be dropped. The JSON text of each record is not retained, "
+                + "so a Record Writer must always serialize the Records that are produced.");
+
+    public static final PropertyDescriptor JSON_PARSER = new PropertyDescriptor.Builder()
+            .name("json-reader-json-parser")
+            .displayName("JSON Parser")
+            .description("Specifies how JSON objects are parsed into Records. Both parsers produce the same Records, but the Streaming parser "
+                + "avoids creating an intermediate object for every JSON value and so is typically faster, especially for wide or nested objects.")
+            .expressionLanguageSupported(ExpressionLanguageScope.NONE)
+            .allowableValues(TREE_PARSER, STREAMING_PARSER)
+            .defaultValue(TREE_PARSER.getValue())
+            .required(true)
+            .build();
+
+    private volatile String jsonParser;
     private volatile String dateFormat;
     private volatile String timeFormat;
     private volatile String timestampFormat;
@@ -74,6 +96,7 @@ public class JsonTreeReader extends SchemaRegistryService implements RecordReade
             .fromPropertyDescriptor(SCHEMA_CACHE)
             .dependsOn(SCHEMA_ACCESS_STRATEGY, INFER_SCHEMA)
             .build());
+        properties.add(JSON_PARSER);
         properties.add(DateTimeUtils.DATE_FORMAT);
         properties.add(DateTimeUtils.TIME_FORMAT);
         properties.add(DateTimeUtils.TIMESTAMP_FORMAT);
@@ -82,6 +105,7 @@ public class JsonTreeReader extends SchemaRegistryService implements RecordReade
 
     @OnEnabled
     public void storeFormats(final ConfigurationContext context) {
+        this.jsonParser = context.getProperty(JSON_PARSER).getValue();
         this.dateFormat = context.getProperty(DateTimeUtils.DATE_FORMAT).getValue();
         this.timeFormat = context.getProperty(DateTimeUtils.TIME_FORMAT).getValue();
         this.timestampFormat = context.getProperty(DateTimeUtils.TIMESTAMP_FORMAT).getValue();
@@ -113,6 +137,10 @@ public class JsonTreeReader extends SchemaRegistryService implements RecordReade
     public RecordReader createRecordReader(final Map<String, String> variables, final InputStream in, final long inputLength, final ComponentLog logger)
             throws IOException, MalformedRecordException, SchemaNotFoundException {
         final RecordSchema schema = getSchema(variables, in, null);
+
+        if (STREAMING_PARSER.getValue().equals(jsonParser)) {
+            return new JsonStreamingRowRecordReader(in, logger, schema, dateFormat, timeFormat, timestampFormat);
+        }
         return new JsonTreeRowRecordReader(in, logger, schema, dateFormat, timeFormat, timestampFormat);
     }
 }
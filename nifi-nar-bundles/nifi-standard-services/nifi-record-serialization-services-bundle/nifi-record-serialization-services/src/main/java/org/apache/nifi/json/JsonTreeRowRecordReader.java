@@ -20,8 +20,8 @@ package org.apache.nifi.json;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.serialization.MalformedRecordException;
 import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.ArrayRecord;
 import org.apache.nifi.serialization.record.DataType;
-import org.apache.nifi.serialization.record.MapRecord;
 import org.apache.nifi.serialization.record.Record;
 import org.apache.nifi.serialization.record.RecordField;
 import org.apache.nifi.serialization.record.RecordFieldType;
@@ -37,8 +37,10 @@ import org.codehaus.jackson.node.ArrayNode;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -70,27 +72,16 @@ public class JsonTreeRowRecordReader extends AbstractJsonRowRecordReader {
         return convertJsonNodeToRecord(jsonNode, schema, fieldNamePrefix, coerceTypes, dropUnknown);
     }
 
-    private JsonNode getChildNode(final JsonNode jsonNode, final RecordField field) {
-        if (jsonNode.has(field.getFieldName())) {
-            return jsonNode.get(field.getFieldName());
-        }
-
-        for (final String alias : field.getAliases()) {
-            if (jsonNode.has(alias)) {
-                return jsonNode.get(alias);
-            }
-        }
-
-        return null;
-    }
-
     private Record convertJsonNodeToRecord(final JsonNode jsonNode, final RecordSchema schema, final String fieldNamePrefix,
             final boolean coerceTypes, final boolean dropUnknown) throws IOException, MalformedRecordException {
 
-        final Map<String, Object> values = new HashMap<>(schema.getFieldCount() * 2);
+        final Object[] values = new Object[schema.getFieldCount()];
+        Arrays.fill(values, ArrayRecord.ABSENT);
+        Map<String, Object> unknownValues = null;
 
         if (dropUnknown) {
-            for (final RecordField recordField : schema.getFields()) {
+            for (int i = 0; i < values.length; i++) {
+                final RecordField recordField = schema.getField(i);
                 final JsonNode childNode = getChildNode(jsonNode, recordField);
                 if (childNode == null) {
                     continue;
@@ -104,10 +95,10 @@ public class JsonTreeRowRecordReader extends AbstractJsonRowRecordReader {
                     final String fullFieldName = fieldNamePrefix == null ? fieldName : fieldNamePrefix + fieldName;
                     value = convertField(childNode, fullFieldName, desiredType, dropUnknown);
                 } else {
-                    value = getRawNodeValue(childNode, recordField == null ? null : recordField.getDataType(), fieldName);
+                    value = getRawNodeValue(childNode, recordField.getDataType(), fieldName);
                 }
 
-                values.put(fieldName, value);
+                values[i] = value;
             }
         } else {
             final Iterator<String> fieldNames = jsonNode.getFieldNames();
@@ -115,7 +106,13 @@ public class JsonTreeRowRecordReader extends AbstractJsonRowRecordReader {
                 final String fieldName = fieldNames.next();
                 final JsonNode childNode = jsonNode.get(fieldName);
 
-                final RecordField recordField = schema.getField(fieldName).orElse(null);
+                final int fieldIndex = schema.getFieldIndex(fieldName);
+                final RecordField recordField = fieldIndex < 0 ? null : schema.getField(fieldIndex);
+
+                // If an object contains both the name of a field and one of its aliases, the name takes precedence, followed by the aliases in order
+                if (recordField != null && !recordField.getFieldName().equals(fieldName) && getChildNode(jsonNode, recordField) != childNode) {
+                    continue;
+                }
 
                 final Object value;
                 if (coerceTypes && recordField != null) {
@@ -126,12 +123,19 @@ public class JsonTreeRowRecordReader extends AbstractJsonRowRecordReader {
                     value = getRawNodeValue(childNode, recordField == null ? null : recordField.getDataType(), fieldName);
                 }
 
-                values.put(fieldName, value);
+                if (recordField == null) {
+                    if (unknownValues == null) {
+                        unknownValues = new LinkedHashMap<>();
+                    }
+                    unknownValues.put(fieldName, value);
+                } else {
+                    values[fieldIndex] = value;
+                }
             }
         }
 
         final Supplier<String> supplier = jsonNode::toString;
-        return new MapRecord(schema, values, SerializedForm.of(supplier, "application/json"), false, dropUnknown);
+        return new ArrayRecord(schema, values, unknownValues, SerializedForm.of(supplier, "application/json"), false, dropUnknown);
     }
 
 
@@ -182,9 +182,13 @@ public class WriteJsonResult extends AbstractRecordSetWriter implements RecordSe
             startTask.apply(generator);
 
             if (schemaAware) {
-                for (final RecordField field : writeSchema.getFields()) {
+                // When the Record uses the schema that is being written, its values can be retrieved by position rather than by name
+                final boolean sameSchema = record.getSchema() == writeSchema;
+                final int fieldCount = writeSchema.getFieldCount();
+                for (int i = 0; i < fieldCount; i++) {
+                    final RecordField field = writeSchema.getField(i);
                     final String fieldName = field.getFieldName();
-                    final Object value = record.getValue(field);
+                    final Object value = sameSchema ? record.getValue(i) : record.getValue(field);
                     if (value == null) {
                         if (nullSuppression == NullSuppression.NEVER_SUPPRESS || (nullSuppression == NullSuppression.SUPPRESS_MISSING) && isFieldPresent(field, record)) {
                             generator.writeNullField(fieldName);
@@ -195,8 +199,7 @@ public class WriteJsonResult extends AbstractRecordSetWriter implements RecordSe
 
                     generator.writeFieldName(fieldName);
 
-                    final DataType dataType = writeSchema.getDataType(fieldName).get();
-                    writeValue(generator, value, fieldName, dataType);
+                    writeValue(generator, value, fieldName, field.getDataType());
                 }
             } else {
                 for (final String fieldName : record.getRawFieldNames()) {
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.nifi.json;
+
+import org.apache.avro.Schema;
+import org.apache.nifi.avro.AvroTypeUtil;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.schema.inference.InferSchemaAccessStrategy;
+import org.apache.nifi.schema.inference.TimeValueInference;
+import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.apache.nifi.util.MockComponentLog;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestJsonStreamingRowRecordReader {
+    private final String dateFormat = RecordFieldType.DATE.getDefaultFormat();
+    private final String timeFormat = RecordFieldType.TIME.getDefaultFormat();
+    private final String timestampFormat = RecordFieldType.TIMESTAMP.getDefaultFormat();
+
+    private final ComponentLog logger = new MockComponentLog("id", "id");
+
+    @Test
+    public void testSameRecordsAsTreeReaderWithInferredSchema() throws IOException, MalformedRecordException {
+        final List<String> files = Arrays.asList("bank-account-array.json", "bank-account-array-different-schemas.json", "bank-account-array-optional-balance.json",
+            "bank-account-mixed.json", "bank-account-multiarray.json", "bank-account-multiline.json", "bank-account-oneline.json", "data-types.json", "docs-example.json",
+            "json-with-unicode.json", "primitive-type-array.json", "prov-events.json", "single-bank-account.json", "single-element-nested-array.json",
+            "single-element-nested.json", "timestamp.json");
+
+        for (final String file : files) {
+            final File jsonFile = new File("src/test/resources/json/" + file);
+            assertSameRecords(jsonFile, inferSchema(jsonFile));
+        }
+    }
+
+    @Test
+    public void testSameRecordsAsTreeReaderWithChoices() throws IOException, MalformedRecordException {
+        assertSameRecords(new File("src/test/resources/json/choice-of-string-or-array-record.json"),
+            AvroTypeUtil.createSchema(new Schema.Parser().parse(new File("src/test/resources/json/choice-of-string-or-array-record.avsc"))));
+        assertSameRecords(new File("src/test/resources/json/elements-for-record-choice.json"),
+            AvroTypeUtil.createSchema(new Schema.Parser().parse(new File("src/test/resources/json/record-choice.avsc"))));
+    }
+
+    @Test
+    public void testSameRecordsAsTreeReaderWithPartialSchema() throws IOException, MalformedRecordException {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("id", RecordFieldType.LONG.getDataType()));
+        fields.add(new RecordField("balance", RecordFieldType.STRING.getDataType()));
+        fields.add(new RecordField("country", RecordFieldType.STRING.getDataType()));
+        final RecordSchema schema = new SimpleRecordSchema(fields);
+
+        assertSameRecords(new File("src/test/resources/json/bank-account-array.json"), schema);
+        assertSameRecords(new File("src/test/resources/json/bank-account-mixed.json"), schema);
+    }
+
+    @Test
+    public void testUnknownFieldsDropped() throws IOException, MalformedRecordException {
+        final RecordSchema schema = new SimpleRecordSchema(Collections.singletonList(new RecordField("id", RecordFieldType.INT.getDataType())));
+        final String json = "{\"extra\": {\"a\": [1, 2, {\"b\": null}]}, \"id\": \"17\", \"other\": [[]]}";
+
+        try (final RecordReader reader = createReader(json, schema)) {
+            final Record record = reader.nextRecord(true, true);
+            assertEquals(17, record.getValue("id"));
+            assertEquals(Collections.singleton("id"), record.getRawFieldNames());
+            assertNull(reader.nextRecord());
+        }
+
+        try (final RecordReader reader = createReader(json, schema)) {
+            final Record record = reader.nextRecord(true, false);
+            assertEquals(17, record.getValue("id"));
+            assertEquals(3, record.getRawFieldNames().size());
+            assertTrue(record.getValue("extra") instanceof Record);
+            assertArrayEquals(new Object[] {new Object[0]}, (Object[]) record.getValue("other"));
+        }
+    }
+
+    @Test
+    public void testFieldNamePrecedesAlias() throws IOException, MalformedRecordException {
+        final RecordSchema schema = new SimpleRecordSchema(Collections.singletonList(
+            new RecordField("name", RecordFieldType.STRING.getDataType(), new HashSet<>(Collections.singletonList("fullName")))));
+
+        try (final RecordReader reader = createReader("{\"fullName\": \"alias\"}\n{\"name\": \"name\", \"fullName\": \"alias\"}\n{\"fullName\": \"alias\", \"name\": \"name\"}", schema)) {
+            assertEquals("alias", reader.nextRecord().getValue("name"));
+            assertEquals("name", reader.nextRecord().getValue("name"));
+            assertEquals("name", reader.nextRecord().getValue("name"));
+            assertNull(reader.nextRecord());
+        }
+    }
+
+    @Test
+    public void testMalformedRecordSkipped() throws IOException, MalformedRecordException {
+        final List<RecordField> fields = new ArrayList<>();
+        fields.add(new RecordField("id", RecordFieldType.INT.getDataType()));
+        fields.add(new RecordField("values", RecordFieldType.ARRAY.getArrayDataType(RecordFieldType.INT.getDataType())));
+        final RecordSchema schema = new SimpleRecordSchema(fields);
+
+        try (final RecordReader reader = createReader("[{\"id\": 1, \"values\": [1, \"two\", 3], \"after\": {\"x\": 1}}, {\"id\": 2, \"values\": [4]}]", schema)) {
+            try {
+                reader.nextRecord();
+                fail("Expected MalformedRecordException");
+            } catch (final MalformedRecordException expected) {
+            }
+
+            final Record record = reader.nextRecord();
+            assertEquals(2, record.getValue("id"));
+            assertArrayEquals(new Object[] {4}, (Object[]) record.getValue("values"));
+            assertNull(reader.nextRecord());
+        }
+    }
+
+    @Test(expected = MalformedRecordException.class)
+    public void testInvalidJson() throws IOException, MalformedRecordException {
+        try (final RecordReader reader = createReader("{\"id\": 1, \"name\": }", new SimpleRecordSchema(Collections.emptyList()))) {
+            reader.nextRecord();
+        }
+    }
+
+    private RecordReader createReader(final String json, final RecordSchema schema) throws IOException, MalformedRecordException {
+        return new JsonStreamingRowRecordReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), logger, schema, dateFormat, timeFormat, timestampFormat);
+    }
+
+    private RecordSchema inferSchema(final File file) throws IOException {
+        try (final InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            final InferSchemaAccessStrategy<?> accessStrategy = new InferSchemaAccessStrategy<>((var, content) -> new JsonRecordSource(content),
+                new JsonSchemaInference(new TimeValueInference(dateFormat, timeFormat, timestampFormat)), Mockito.mock(ComponentLog.class));
+            return accessStrategy.getSchema(null, in, null);
+        }
+    }
+
+    private void assertSameRecords(final File file, final RecordSchema schema) throws IOException, MalformedRecordException {
+        for (final boolean coerceTypes : new boolean[] {true, false}) {
+            for (final boolean dropUnknownFields : new boolean[] {true, false}) {
+                final List<Object> expected = readAll(new JsonTreeRowRecordReader(new FileInputStream(file), logger, schema, dateFormat, timeFormat, timestampFormat),
+                    coerceTypes, dropUnknownFields);
+                final List<Object> actual = readAll(new JsonStreamingRowRecordReader(new FileInputStream(file), logger, schema, dateFormat, timeFormat, timestampFormat),
+                    coerceTypes, dropUnknownFields);
+
+                final String description = file.getName() + " coerceTypes=" + coerceTypes + " dropUnknownFields=" + dropUnknownFields;
+                assertFalse(description, expected.isEmpty());
+                assertEquals(description, expected, actual);
+            }
+        }
+    }
+
+    private List<Object> readAll(final RecordReader recordReader, final boolean coerceTypes, final boolean dropUnknownFields) throws IOException, MalformedRecordException {
+        final List<Object> records = new ArrayList<>();
+        try (final RecordReader reader = recordReader) {
+            Record record;
+            while ((record = reader.nextRecord(coerceTypes, dropUnknownFields)) != null) {
+                records.add(normalize(record));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Converts Records and arrays into Maps and Lists so that the values read by different readers can be compared with equals()
+     */
+    private Object normalize(final Object value) {
+        if (value instanceof Record) {
+            final Record record = (Record) value;
+            final Map<String, Object> normalized = new HashMap<>();
+            normalized.put("$schema", record.getSchema().getFields());
+            for (final String fieldName : record.getRawFieldNames()) {
+                normalized.put(fieldName, normalize(record.getValue(fieldName)));
+            }
+            return normalized;
+        }
+
+        if (value instanceof Object[]) {
+            final List<Object> normalized = new ArrayList<>();
+            for (final Object element : (Object[]) value) {
+                normalized.add(normalize(element));
+            }
+            return normalized;
+        }
+
+        if (value instanceof Map) {
+            final Map<Object, Object> normalized = new HashMap<>();
+            for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                normalized.put(entry.getKey(), normalize(entry.getValue()));
+            }
+            return normalized;
+        }
+
+        return value;
+    }
+}
@@ -205,6 +205,8 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
     private volatile boolean debugEnabled;
     private volatile boolean stateful = false;
 
+    private static final int FLOWFILE_BATCH_SIZE = 100;
+
 
     public UpdateAttribute() {
         relationships = statelessRelationshipSet;
@@ -437,6 +439,12 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
         final ComponentLog logger = getLogger();
         final Criteria criteria = criteriaCache.get();
 
+        // without state or rules, every FlowFile is updated by the same default actions, so they can be evaluated for many FlowFiles at once
+        if (!stateful && (criteria == null || criteria.getRules().isEmpty())) {
+            onTriggerDefaultActions(context, session);
+            return;
+        }
+
         FlowFile incomingFlowFile = session.get();
         if (incomingFlowFile == null) {
             return;
@@ -483,7 +491,7 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
                 boolean updateWorking = incomingFlowFile.equals(match);
 
                 // execute each matching rule(s)
-                match = executeActions(session, context, rules, defaultActions, match, stateInitialAttributes, stateWorkingAttributes);
+                match = executeActions(session, context, rules, defaultActions, match, stateInitialAttributes, stateWorkingAttributes, null, 0);
 
                 if (updateWorking) {
                     incomingFlowFile = match;
@@ -498,7 +506,7 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
             }
         } else {
             // Either we're running without any rules or the FlowFile didn't match any
-            incomingFlowFile = executeActions(session, context, null, defaultActions, incomingFlowFile, stateInitialAttributes, stateWorkingAttributes);
+            incomingFlowFile = executeActions(session, context, null, defaultActions, incomingFlowFile, stateInitialAttributes, stateWorkingAttributes, null, 0);
 
             if (debugEnabled) {
                 logger.debug("Updated attributes for {}; transferring to '{}'", new Object[]{incomingFlowFile, REL_SUCCESS.getName()});
@@ -548,6 +556,44 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
         session.transfer(flowFilesToTransfer, REL_SUCCESS);
     }
 
+    // Applies the default actions to a batch of flowfiles, evaluating the value of each action for the whole batch at once.
+    private void onTriggerDefaultActions(final ProcessContext context, final ProcessSession session) {
+        final List<FlowFile> flowFiles = session.get(FLOWFILE_BATCH_SIZE);
+        if (flowFiles.isEmpty()) {
+            return;
+        }
+
+        final Map<String, Action> defaultActions = this.defaultActions;
+        final Map<String, String[]> evaluatedValues = new HashMap<>();
+        for (final Action action : defaultActions.values()) {
+            final String value = action.getValue();
+            if (value == null || evaluatedValues.containsKey(value)) {
+                continue;
+            }
+
+            try {
+                evaluatedValues.put(value, getPropertyValue(value, context).evaluateAttributeExpressions(flowFiles, null));
+            } catch (final Exception e) {
+                // the value is left to be evaluated for each flowfile so that the failure is reported for the flowfile that caused it
+                evaluatedValues.remove(value);
+            }
+        }
+
+        final List<FlowFile> flowFilesToTransfer = new ArrayList<>(flowFiles.size());
+        for (int i = 0; i < flowFiles.size(); i++) {
+            final FlowFile flowFile = executeActions(session, context, null, defaultActions, flowFiles.get(i), null, null, evaluatedValues, i);
+
+            if (debugEnabled) {
+                getLogger().debug("Updated attributes for {}; transferring to '{}'", new Object[]{flowFile, REL_SUCCESS.getName()});
+            }
+
+            session.getProvenanceReporter().modifyAttributes(flowFile);
+            flowFilesToTransfer.add(flowFile);
+        }
+
+        session.transfer(flowFilesToTransfer, REL_SUCCESS);
+    }
+
     //Evaluates the specified Criteria on the specified flowfile. Clones the
     // specified flow file for each rule that is applied.
     private boolean evaluateCriteria(final ProcessSession session, final ProcessContext context, final Criteria criteria, final FlowFile flowfile, final Map<FlowFile,
@@ -616,9 +662,22 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
         }
     }
 
-    // Executes the specified action on the specified flowfile.
+    // Evaluates the value of an action for the specified flowfile, using the value evaluated for the flowfile's batch if there is one.
+    private String evaluateActionValue(final String value, final ProcessContext context, final FlowFile flowfile, final Map<String, String> stateInitialAttributes,
+                                       final Map<String, String[]> evaluatedValues, final int index) {
+        final String[] evaluated = (evaluatedValues == null) ? null : evaluatedValues.get(value);
+        if (evaluated != null) {
+            return evaluated[index];
+        }
+
+        return getPropertyValue(value, context).evaluateAttributeExpressions(flowfile, null, null, stateInitialAttributes).getValue();
+    }
+
+    // Executes the specified action on the specified flowfile. If evaluatedValues is provided, it holds the values of the actions
+    // already evaluated for a batch of flowfiles, of which the specified flowfile is at the given index.
     private FlowFile executeActions(final ProcessSession session, final ProcessContext context, final List<Rule> rules, final Map<String, Action> defaultActions, final FlowFile flowfile,
-                                    final Map<String, String> stateInitialAttributes, final Map<String, String> stateWorkingAttributes) {
+                                    final Map<String, String> stateInitialAttributes, final Map<String, String> stateWorkingAttributes,
+                                    final Map<String, String[]> evaluatedValues, final int index) {
             final ComponentLog logger = getLogger();
         final Map<String, Action> actions = new HashMap<>(defaultActions);
         final String ruleName = (rules == null || rules.isEmpty()) ? "default" : rules.get(rules.size() - 1).getName();
@@ -657,7 +716,7 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
                 try {
                     final String actionValue = action.getValue();
                     final String regex = (actionValue == null) ? null :
-                            getPropertyValue(actionValue, context).evaluateAttributeExpressions(flowfile).getValue();
+                            evaluateActionValue(actionValue, context, flowfile, null, evaluatedValues, index);
                     if (regex != null) {
                         Pattern pattern = Pattern.compile(regex);
                         final Set<String> attributeKeys = flowfile.getAttributes().keySet();
@@ -685,7 +744,7 @@ public class UpdateAttribute extends AbstractProcessor implements Searchable {
 
                 if (notDeleted || setStatefulAttribute) {
                     try {
-                        String newAttributeValue = getPropertyValue(action.getValue(), context).evaluateAttributeExpressions(flowfile, null, null, stateInitialAttributes).getValue();
+                        String newAttributeValue = evaluateActionValue(action.getValue(), context, flowfile, stateInitialAttributes, evaluatedValues, index);
                         newAttributeValue = canonicalValueLookup.get(newAttributeValue);
 
                         // log if appropriate
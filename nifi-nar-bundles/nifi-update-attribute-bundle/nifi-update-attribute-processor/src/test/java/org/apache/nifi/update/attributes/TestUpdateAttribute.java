@@ -124,6 +124,36 @@ public class TestUpdateAttribute {
         runner.getFlowFilesForRelationship(UpdateAttribute.REL_SUCCESS).get(0).assertAttributeEquals("NewAttr", "3");
     }
 
+    @Test
+    public void testDefaultWithManyFlowFiles() throws Exception {
+        final TestRunner runner = TestRunners.newTestRunner(new UpdateAttribute());
+        runner.setProperty("NewAttr", "${one:plus(${two})}");
+        runner.setProperty("Copy", "${one}");
+        runner.setProperty(UpdateAttribute.DELETE_ATTRIBUTES, "${deleteMe:replaceNull('none')}");
+
+        for (int i = 0; i < 3; i++) {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put("one", String.valueOf(i));
+            attributes.put("two", "2");
+            if (i == 1) {
+                attributes.put("deleteMe", "two");
+            }
+            runner.enqueue(new byte[0], attributes);
+        }
+
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(UpdateAttribute.REL_SUCCESS, 3);
+        final List<MockFlowFile> result = runner.getFlowFilesForRelationship(UpdateAttribute.REL_SUCCESS);
+        for (int i = 0; i < 3; i++) {
+            result.get(i).assertAttributeEquals("NewAttr", String.valueOf(i + 2));
+            result.get(i).assertAttributeEquals("Copy", String.valueOf(i));
+        }
+        result.get(0).assertAttributeEquals("two", "2");
+        result.get(1).assertAttributeNotExists("two");
+        result.get(2).assertAttributeEquals("two", "2");
+    }
+
     @Test
     public void testBasicState() throws Exception {
         final TestRunner runner = TestRunners.newTestRunner(new UpdateAttribute());